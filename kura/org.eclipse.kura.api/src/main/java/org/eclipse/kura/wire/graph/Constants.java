@@ -24,7 +24,21 @@ public enum Constants {
     RECEIVER_PORT_COUNT_PROP_NAME("receiver.port.count"),
     EMITTER_PORT_COUNT_PROP_NAME("emitter.port.count"),
     RECEIVER_KURA_SERVICE_PID_PROP_NAME("receiver.kura.service.pid"),
-    EMITTER_KURA_SERVICE_PID_PROP_NAME("emitter.kura.service.pid");
+    EMITTER_KURA_SERVICE_PID_PROP_NAME("emitter.kura.service.pid"),
+    /**
+     * The capacity of the queue holding the envelopes received by a component. If greater than zero, the envelopes
+     * are delivered to the component by a shared pool of threads instead of the thread of the emitter.
+     *
+     * @since 2.1
+     */
+    RECEIVER_QUEUE_SIZE_PROP_NAME("receiver.queue.size"),
+    /**
+     * What to do when the queue of a component is full: {@code block} the emitter, {@code drop.oldest} or
+     * {@code drop.newest} envelope.
+     *
+     * @since 2.1
+     */
+    RECEIVER_QUEUE_POLICY_PROP_NAME("receiver.queue.policy");
 
     private final String value;
 
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Eurotech
+ *
+ *******************************************************************************/
+package org.eclipse.kura.wire.graph;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * The execution metrics of a Wire Component. Counters are cumulative since the component has been activated, latencies
+ * are in nanoseconds and refer to the time spent by the component processing a received envelope, excluding the time
+ * spent by the downstream components processing the envelopes it emits on the same thread.
+ *
+ * @see WireGraphMetricsService
+ * @noimplement This interface is not intended to be implemented by clients.
+ * @since 2.1
+ */
+@ProviderType
+public interface WireComponentMetrics {
+
+    public String getPid();
+
+    public long getReceivedEnvelopes();
+
+    public long getReceivedRecords();
+
+    public long getEmittedEnvelopes();
+
+    public long getEmittedRecords();
+
+    /**
+     * Returns the estimated size of the values of the emitted records.
+     */
+    public long getEmittedBytes();
+
+    /**
+     * Returns the number of received envelopes discarded because the receive queue of the component was full.
+     */
+    public long getDroppedEnvelopes();
+
+    /**
+     * Returns the number of received envelopes waiting to be processed, always 0 if the component has no receive
+     * queue.
+     */
+    public int getQueueSize();
+
+    /**
+     * Returns the latency below which the given fraction of the received envelopes has been processed.
+     *
+     * @param quantile
+     *            a value between 0 and 1, e.g. 0.99 for the 99th percentile
+     * @return the latency in nanoseconds, with a relative error below 13%, or 0 if no envelope was received
+     */
+    public long getLatency(double quantile);
+
+    public long getMaxLatency();
+}
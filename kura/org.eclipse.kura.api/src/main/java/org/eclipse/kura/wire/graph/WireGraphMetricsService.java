@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Eurotech
+ *
+ *******************************************************************************/
+package org.eclipse.kura.wire.graph;
+
+import java.util.List;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * Provides the execution metrics of the Wire Graph, collected by the {@link org.eclipse.kura.wire.WireSupport}
+ * instances of the Wire Components.
+ *
+ * @noimplement This interface is not intended to be implemented by clients.
+ * @since 2.1
+ */
+@ProviderType
+public interface WireGraphMetricsService {
+
+    /**
+     * Returns a snapshot of the metrics of the active Wire Components.
+     *
+     * @return a list of {@link WireComponentMetrics}, one for each Wire Component
+     */
+    public List<WireComponentMetrics> getWireComponentMetrics();
+
+    /**
+     * Returns a snapshot of the metrics of the wires connecting the active Wire Components.
+     *
+     * @return a list of {@link WireMetrics}, one for each wire
+     */
+    public List<WireMetrics> getWireMetrics();
+}
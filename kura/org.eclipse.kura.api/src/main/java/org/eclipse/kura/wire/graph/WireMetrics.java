@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Eurotech
+ *
+ *******************************************************************************/
+package org.eclipse.kura.wire.graph;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * The execution metrics of a wire. Counters are cumulative since the wire has been connected.
+ *
+ * @see WireGraphMetricsService
+ * @noimplement This interface is not intended to be implemented by clients.
+ * @since 2.1
+ */
+@ProviderType
+public interface WireMetrics {
+
+    public String getEmitterPid();
+
+    public int getEmitterPort();
+
+    public String getReceiverPid();
+
+    public int getReceiverPort();
+
+    public long getEnvelopes();
+
+    public long getRecords();
+
+    /**
+     * Returns the estimated size of the values of the records.
+     */
+    public long getBytes();
+}
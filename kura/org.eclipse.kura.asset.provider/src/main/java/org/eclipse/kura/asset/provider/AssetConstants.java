@@ -30,6 +30,9 @@ public enum AssetConstants {
     /** Driver PID Property to be used in the configuration. */
     ASSET_DRIVER_PROP("driver.pid"),
 
+    /** I/O weight Property to be used in the configuration. */
+    ASSET_IO_WEIGHT_PROP("asset.io.weight"),
+
     /** Enabled Property to be used in the configuration. */
     ENABLED(CHANNEL_DEFAULT_PROPERTY_PREFIX.value() + "enabled"),
 
@@ -0,0 +1,358 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.asset.provider;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.kura.driver.Driver;
+
+/**
+ * Schedules the I/O operations of the assets on a shared thread pool, so that the assets attached to different
+ * driver instances perform their I/O in parallel.
+ * <p>
+ * The operations are queued per driver instance and at most {@link #DRIVER_CONCURRENCY_PROP_NAME} operations run
+ * concurrently on a driver, the others wait in the driver queue. The operations of an asset still run one at a time
+ * and in submission order. When several assets wait for the same driver, the driver is given to the asset that used
+ * it for the shortest time in proportion to its weight, so that an asset performing long reads cannot starve the
+ * others and an asset with a weight of 2 gets twice the driver time of an asset with a weight of 1.
+ * <p>
+ * A driver declares its limits with the {@link #DRIVER_CONCURRENCY_PROP_NAME} and
+ * {@link #DRIVER_QUEUE_DEPTH_PROP_NAME} service properties, either in its component definition or in its
+ * configuration. A driver that does not declare them is accessed by one operation at a time with an unbounded queue.
+ *
+ * @since 2.1
+ */
+public class AssetIoScheduler {
+
+    /**
+     * The driver service property that defines the maximum number of operations that can run concurrently on the
+     * driver.
+     */
+    public static final String DRIVER_CONCURRENCY_PROP_NAME = "driver.io.concurrency";
+
+    /**
+     * The driver service property that defines the maximum number of operations waiting for the driver, the
+     * operations submitted when the queue is full fail with a {@link RejectedExecutionException}. If not greater than
+     * 0 the queue is unbounded.
+     */
+    public static final String DRIVER_QUEUE_DEPTH_PROP_NAME = "driver.io.queue.depth";
+
+    private static final AssetIoScheduler DEFAULT = new AssetIoScheduler(createDefaultExecutor());
+
+    private final Executor executor;
+
+    private final Map<Driver, DriverQueue> driverQueues = new WeakHashMap<>();
+
+    /** The queue of the operations that do not access a driver, no limit applies */
+    private final DriverQueue unlimitedQueue = new DriverQueue();
+
+    /**
+     * Creates a scheduler that runs the operations on the provided executor, the executor must not queue the
+     * operations.
+     *
+     * @param executor
+     *            the executor
+     */
+    public AssetIoScheduler(final Executor executor) {
+        this.executor = executor;
+        this.unlimitedQueue.setLimits(Integer.MAX_VALUE, 0);
+    }
+
+    /**
+     * Returns the scheduler shared by the assets.
+     *
+     * @return the shared scheduler
+     */
+    public static AssetIoScheduler getDefault() {
+        return DEFAULT;
+    }
+
+    private static Executor createDefaultExecutor() {
+        final AtomicInteger threadCount = new AtomicInteger();
+
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            final Thread thread = new Thread(r, "AssetIO-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates the queue of the operations of an asset.
+     *
+     * @return the asset queue
+     */
+    public AssetQueue newAssetQueue() {
+        return new AssetQueue();
+    }
+
+    /**
+     * Sets the limits of a driver instance, the limits apply to the operations submitted afterwards.
+     *
+     * @param driver
+     *            the driver
+     * @param concurrency
+     *            the maximum number of concurrent operations, at least one operation is allowed
+     * @param queueDepth
+     *            the maximum number of waiting operations, the queue is unbounded if not greater than 0
+     */
+    public void setDriverLimits(final Driver driver, final int concurrency, final int queueDepth) {
+        requireNonNull(driver, "Driver cannot be null");
+        getDriverQueue(driver).setLimits(concurrency, queueDepth);
+    }
+
+    /**
+     * Submits an operation of an asset that accesses the provided driver.
+     *
+     * @param assetQueue
+     *            the queue of the asset
+     * @param driver
+     *            the driver accessed by the operation, or null if the operation is not subject to the limits of a
+     *            driver
+     * @param task
+     *            the operation
+     * @return a future completed with the result of the operation
+     */
+    public <T> CompletableFuture<T> submit(final AssetQueue assetQueue, final Driver driver, final Callable<T> task) {
+        final DriverQueue driverQueue = getDriverQueue(driver);
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        if (!driverQueue.reserve()) {
+            result.completeExceptionally(new RejectedExecutionException("Driver I/O queue is full"));
+            return result;
+        }
+
+        final CompletableFuture<Void> next = new CompletableFuture<>();
+        final CompletableFuture<Void> previous = assetQueue.tail.getAndSet(next);
+
+        previous.whenComplete((ok, err) -> driverQueue.enqueue(new Operation<>(assetQueue, task, result, next)));
+
+        return result;
+    }
+
+    private synchronized DriverQueue getDriverQueue(final Driver driver) {
+        if (driver == null) {
+            return this.unlimitedQueue;
+        }
+        return this.driverQueues.computeIfAbsent(driver, d -> new DriverQueue());
+    }
+
+    /**
+     * The queue of the operations of an asset.
+     */
+    public static final class AssetQueue {
+
+        private final AtomicReference<CompletableFuture<Void>> tail = new AtomicReference<>(
+                CompletableFuture.completedFuture(null));
+
+        private volatile int weight = 1;
+
+        /** The driver time used by the asset divided by its weight, guarded by the driver queue */
+        private long virtualTime;
+
+        private AssetQueue() {
+        }
+
+        /**
+         * Sets the weight of the asset, the driver time given to the asset when the driver is contended is proportional
+         * to its weight.
+         *
+         * @param weight
+         *            the weight, at least 1
+         */
+        public void setWeight(final int weight) {
+            this.weight = Math.max(1, weight);
+        }
+
+        public int getWeight() {
+            return this.weight;
+        }
+    }
+
+    private static final class Operation<T> {
+
+        private final AssetQueue assetQueue;
+        private final Callable<T> task;
+        private final CompletableFuture<T> result;
+        private final CompletableFuture<Void> next;
+
+        private T value;
+        private Throwable failure;
+
+        Operation(final AssetQueue assetQueue, final Callable<T> task, final CompletableFuture<T> result,
+                final CompletableFuture<Void> next) {
+            this.assetQueue = assetQueue;
+            this.task = task;
+            this.result = result;
+            this.next = next;
+        }
+
+        void execute() {
+            try {
+                this.value = this.task.call();
+            } catch (Throwable e) {
+                this.failure = e;
+            }
+        }
+
+        void fail(final Throwable e) {
+            this.failure = e;
+        }
+
+        /**
+         * Enqueues the next operation of the asset, if any.
+         */
+        void completeNext() {
+            this.next.complete(null);
+        }
+
+        /**
+         * Completes the result, the consumers of the result run on the calling thread.
+         */
+        void completeResult() {
+            if (this.failure != null) {
+                this.result.completeExceptionally(this.failure);
+            } else {
+                this.result.complete(this.value);
+            }
+        }
+    }
+
+    private final class DriverQueue {
+
+        /** The ready operations, at most one for each asset */
+        private final List<Operation<?>> ready = new ArrayList<>();
+
+        private int concurrency = 1;
+        private int queueDepth = Integer.MAX_VALUE;
+
+        private int running;
+        private int waiting;
+
+        /** The virtual time of the last operation started, an asset that was idle restarts from it */
+        private long virtualTime;
+
+        void setLimits(final int concurrency, final int queueDepth) {
+            final List<Operation<?>> rejected;
+            synchronized (this) {
+                this.concurrency = Math.max(1, concurrency);
+                this.queueDepth = queueDepth > 0 ? queueDepth : Integer.MAX_VALUE;
+                rejected = dispatch();
+            }
+            complete(rejected);
+        }
+
+        synchronized boolean reserve() {
+            if (this.waiting >= this.queueDepth) {
+                return false;
+            }
+            this.waiting++;
+            return true;
+        }
+
+        void enqueue(final Operation<?> operation) {
+            final List<Operation<?>> rejected;
+            synchronized (this) {
+                final AssetQueue assetQueue = operation.assetQueue;
+                assetQueue.virtualTime = Math.max(assetQueue.virtualTime, this.virtualTime);
+                this.ready.add(operation);
+                rejected = dispatch();
+            }
+            complete(rejected);
+        }
+
+        /**
+         * Starts the ready operations allowed by the concurrency limit.
+         *
+         * @return the operations rejected by the executor, to be completed without holding the lock
+         */
+        private List<Operation<?>> dispatch() {
+            List<Operation<?>> rejected = null;
+
+            while (this.running < this.concurrency && !this.ready.isEmpty()) {
+                final Operation<?> operation = removeNext();
+                this.waiting--;
+
+                try {
+                    AssetIoScheduler.this.executor.execute(() -> run(operation));
+                    this.running++;
+                    this.virtualTime = operation.assetQueue.virtualTime;
+                } catch (RejectedExecutionException e) {
+                    operation.fail(e);
+                    if (rejected == null) {
+                        rejected = new ArrayList<>();
+                    }
+                    rejected.add(operation);
+                }
+            }
+            return rejected;
+        }
+
+        private Operation<?> removeNext() {
+            int next = 0;
+            for (int i = 1; i < this.ready.size(); i++) {
+                if (this.ready.get(i).assetQueue.virtualTime < this.ready.get(next).assetQueue.virtualTime) {
+                    next = i;
+                }
+            }
+            return this.ready.remove(next);
+        }
+
+        private void run(final Operation<?> operation) {
+            final long start = System.nanoTime();
+            operation.execute();
+            final long elapsed = System.nanoTime() - start;
+
+            synchronized (this) {
+                operation.assetQueue.virtualTime += elapsed / operation.assetQueue.getWeight();
+            }
+
+            // the next operation of the asset is enqueued while the driver is still held, so that it competes with
+            // the operations of the other assets for the driver released below
+            operation.completeNext();
+
+            final List<Operation<?>> rejected;
+            synchronized (this) {
+                this.running--;
+                rejected = dispatch();
+            }
+            complete(rejected);
+
+            // the result consumers, for example a whole downstream wire graph, run without holding the driver, they
+            // can submit and wait for other operations on the same driver
+            operation.completeResult();
+        }
+
+        private void complete(final List<Operation<?>> operations) {
+            if (operations != null) {
+                for (final Operation<?> operation : operations) {
+                    operation.completeNext();
+                    operation.completeResult();
+                }
+            }
+        }
+    }
+}
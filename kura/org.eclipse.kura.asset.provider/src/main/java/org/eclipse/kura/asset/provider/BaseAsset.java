@@ -35,6 +35,7 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import org.eclipse.kura.KuraErrorCode;
 import org.eclipse.kura.KuraException;
@@ -76,6 +77,9 @@ import org.slf4j.LoggerFactory;
  * the driver instance PID (kura.service.pid) to be consumed by this asset</li>
  * <li>A value associated with <b><i>asset.desc</i></b> key denotes the asset
  * description</li>
+ * <li>A value associated with <b><i>asset.io.weight</i></b> key denotes the share
+ * of the driver time given to the asset when other assets wait for the same driver,
+ * see {@link AssetIoScheduler}</li>
  * <li>[name#property]</li> where name is a string denoting the channel's unique
  * name and the {@code [property]} denotes the protocol specific properties.
  * The name of a channel must be unique in the channels configurations of an Asset, and is not
@@ -164,9 +168,19 @@ public class BaseAsset implements Asset, SelfConfiguringComponent {
         }
         logger.info("loading asset configuration...done in {} ms", System.currentTimeMillis() - start);
 
+        this.executor.setIoWeight(getIoWeight(properties));
+
         reopenDriverTracker(this.config.getAssetConfiguration().getDriverPid());
     }
 
+    private static int getIoWeight(final Map<String, Object> properties) {
+        try {
+            return Integer.parseInt(properties.get(AssetConstants.ASSET_IO_WEIGHT_PROP.value()).toString().trim());
+        } catch (final Exception e) {
+            return 1;
+        }
+    }
+
     /**
      * OSGi service component callback while deactivation.
      *
@@ -298,6 +312,22 @@ public class BaseAsset implements Asset, SelfConfiguringComponent {
     public List<ChannelRecord> readAllChannels() throws KuraException {
         logger.debug("Reading asset channels...");
 
+        final List<ChannelRecord> channelRecords = unwrap(readAllChannelsAsync());
+
+        logger.debug("Reading asset channels...Done");
+        return channelRecords;
+    }
+
+    /**
+     * Reads all the READ and READ_WRITE channels as {@link #readAllChannels()}, without waiting for the read to
+     * complete.
+     *
+     * @return a future completed with the read channel records, or exceptionally if the read fails
+     * @throws KuraException
+     *             if the driver is not attached
+     * @since 2.1
+     */
+    public CompletableFuture<List<ChannelRecord>> readAllChannelsAsync() throws KuraException {
         final DriverState state = this.driverState.get();
 
         if (state == null) {
@@ -306,7 +336,7 @@ public class BaseAsset implements Asset, SelfConfiguringComponent {
 
         final BaseAssetConfiguration conf = this.config;
 
-        final List<ChannelRecord> channelRecords = unwrap(executor.runIO(() -> {
+        return this.executor.runIO(state.getDriver(), () -> {
             final List<ChannelRecord> records;
             final PreparedRead preparedRead = state.getPreparedRead();
             if (preparedRead != null) {
@@ -316,10 +346,7 @@ public class BaseAsset implements Asset, SelfConfiguringComponent {
                 state.getDriver().read(records);
             }
             return records;
-        }));
-
-        logger.debug("Reading asset channels...Done");
-        return channelRecords;
+        });
     }
 
     private void validateChannel(final Channel channel, final EnumSet<ChannelType> allowedTypes,
@@ -338,6 +365,13 @@ public class BaseAsset implements Asset, SelfConfiguringComponent {
     public List<ChannelRecord> read(final Set<String> channelNames) throws KuraException {
         logger.debug("Reading asset channels...");
 
+        final List<ChannelRecord> channelRecords = unwrap(readAsync(channelNames));
+
+        logger.debug("Reading asset channels...Done");
+        return channelRecords;
+    }
+
+    private CompletableFuture<List<ChannelRecord>> readAsync(final Set<String> channelNames) throws KuraException {
         final DriverState state = this.driverState.get();
 
         if (state == null) {
@@ -368,14 +402,77 @@ public class BaseAsset implements Asset, SelfConfiguringComponent {
             channelRecords.add(record);
         }
 
-        if (!validRecords.isEmpty()) {
-            unwrap(executor.runIO(() -> {
-                state.getDriver().read(validRecords);
-                return (Void) null;
-            }));
+        if (validRecords.isEmpty()) {
+            return CompletableFuture.completedFuture(channelRecords);
         }
-        logger.debug("Reading asset channels...Done");
-        return channelRecords;
+
+        return this.executor.runIO(state.getDriver(), () -> {
+            state.getDriver().read(validRecords);
+            return channelRecords;
+        });
+    }
+
+    /**
+     * Reads the provided READ or READ_WRITE channels with a {@link PreparedRead}. The prepared reads of the last used
+     * channel sets are kept, so that the driver does not repeat the request aggregation when the same channels are
+     * read together again. If the driver does not support prepared reads, the channels are read as in
+     * {@link #read(Set)}.
+     *
+     * @param channelNames
+     *            the names of the channels to be read
+     * @return the list of the read channel records
+     * @throws KuraException
+     *             if the driver is not attached or the read fails
+     * @since 2.1
+     */
+    public List<ChannelRecord> readPrepared(final Set<String> channelNames) throws KuraException {
+        return unwrap(readPreparedAsync(channelNames));
+    }
+
+    /**
+     * Reads the provided channels as {@link #readPrepared(Set)}, without waiting for the read to complete.
+     *
+     * @param channelNames
+     *            the names of the channels to be read
+     * @return a future completed with the read channel records, or exceptionally if the read fails
+     * @throws KuraException
+     *             if the driver is not attached
+     * @since 2.1
+     */
+    public CompletableFuture<List<ChannelRecord>> readPreparedAsync(final Set<String> channelNames)
+            throws KuraException {
+        final DriverState state = this.driverState.get();
+
+        if (state == null) {
+            throw new KuraException(KuraErrorCode.CONFIGURATION_ERROR, "Driver not attached");
+        }
+
+        final Map<String, Channel> channels = this.config.getAssetConfiguration().getAssetChannels();
+
+        for (final String name : channelNames) {
+            final Channel channel = channels.get(name);
+            if (channel == null || !channel.isEnabled() || channel.getType() == WRITE) {
+                return readAsync(channelNames);
+            }
+        }
+
+        final Supplier<List<ChannelRecord>> recordsSupplier = () -> {
+            final List<ChannelRecord> records = new ArrayList<>(channelNames.size());
+            for (final String name : channelNames) {
+                records.add(channels.get(name).createReadRecord());
+            }
+            return records;
+        };
+
+        return this.executor.runIO(state.getDriver(), () -> {
+            final PreparedRead preparedRead = state.getPreparedRead(channelNames, recordsSupplier);
+            if (preparedRead != null) {
+                return preparedRead.execute();
+            }
+            final List<ChannelRecord> records = recordsSupplier.get();
+            state.getDriver().read(records);
+            return records;
+        });
     }
 
     public boolean hasReadChannels() {
@@ -454,14 +551,10 @@ public class BaseAsset implements Asset, SelfConfiguringComponent {
 
     protected BaseAssetExecutor initBaseAssetExecutor() {
 
-        // TODO make this configurable and maybe allow using shared thread pools
-
-        final ExecutorService ioExecutor = new ThreadPoolExecutor(1, 5, 60L, TimeUnit.SECONDS,
-                new LinkedBlockingQueue<>());
         final ExecutorService configExecutor = new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS,
                 new LinkedBlockingQueue<>());
 
-        return new BaseAssetExecutor(ioExecutor, configExecutor);
+        return new BaseAssetExecutor(AssetIoScheduler.getDefault(), configExecutor);
     }
 
     /** {@inheritDoc} */
@@ -469,6 +562,22 @@ public class BaseAsset implements Asset, SelfConfiguringComponent {
     public void write(final List<ChannelRecord> channelRecords) throws KuraException {
         logger.debug("Writing to channels...");
 
+        unwrap(writeAsync(channelRecords));
+
+        logger.debug("Writing to channels...Done");
+    }
+
+    /**
+     * Writes the provided channel records as {@link #write(List)}, without waiting for the write to complete.
+     *
+     * @param channelRecords
+     *            the channel records to be written
+     * @return a future completed when the write completes, or exceptionally if the write fails
+     * @throws KuraException
+     *             if the driver is not attached
+     * @since 2.1
+     */
+    public CompletableFuture<Void> writeAsync(final List<ChannelRecord> channelRecords) throws KuraException {
         final DriverState state = this.driverState.get();
 
         if (state == null) {
@@ -496,13 +605,14 @@ public class BaseAsset implements Asset, SelfConfiguringComponent {
             validRecords.add(channelRecord);
         }
 
-        if (!validRecords.isEmpty()) {
-            unwrap(executor.runIO(() -> {
-                state.getDriver().write(validRecords);
-                return (Void) null;
-            }));
+        if (validRecords.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
         }
-        logger.debug("Writing to channels...Done");
+
+        return this.executor.runIO(state.getDriver(), () -> {
+            state.getDriver().write(validRecords);
+            return (Void) null;
+        });
     }
 
     private static <T> T unwrap(final CompletableFuture<T> future) throws KuraException {
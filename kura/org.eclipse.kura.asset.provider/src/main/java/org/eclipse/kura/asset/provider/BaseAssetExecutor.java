@@ -14,6 +14,8 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.eclipse.kura.asset.provider.AssetIoScheduler.AssetQueue;
+import org.eclipse.kura.driver.Driver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,6 +26,9 @@ public class BaseAssetExecutor {
     private final ExecutorService ioExecutor;
     private final boolean isIoExecutorShared;
 
+    private final AssetIoScheduler ioScheduler;
+    private final AssetQueue ioQueue;
+
     private final ExecutorService configExecutor;
     private final boolean isConfigExecutorShared;
 
@@ -38,11 +43,32 @@ public class BaseAssetExecutor {
             final ExecutorService configExecutor, final boolean isConfigExecutorShared) {
         this.ioExecutor = ioExecutor;
         this.isIoExecutorShared = isIoExecutorShared;
+        this.ioScheduler = null;
+        this.ioQueue = null;
         this.configExecutor = configExecutor;
         this.isConfigExecutorShared = isConfigExecutorShared;
     }
 
+    /**
+     * Creates an executor that performs the I/O operations with the provided scheduler, the operations accessing
+     * different driver instances run in parallel.
+     *
+     * @since 2.1
+     */
+    public BaseAssetExecutor(final AssetIoScheduler ioScheduler, final ExecutorService configExecutor) {
+        this.ioExecutor = null;
+        this.isIoExecutorShared = true;
+        this.ioScheduler = ioScheduler;
+        this.ioQueue = ioScheduler.newAssetQueue();
+        this.configExecutor = configExecutor;
+        this.isConfigExecutorShared = false;
+    }
+
     public <T> CompletableFuture<T> runIO(final Callable<T> task) {
+        if (this.ioScheduler != null) {
+            return this.ioScheduler.submit(this.ioQueue, null, task);
+        }
+
         final CompletableFuture<T> result = new CompletableFuture<>();
 
         ioExecutor.execute(() -> {
@@ -56,6 +82,43 @@ public class BaseAssetExecutor {
         return result;
     }
 
+    /**
+     * Runs an I/O operation that accesses the provided driver, subject to the limits of the driver if this executor
+     * uses an {@link AssetIoScheduler}.
+     *
+     * @since 2.1
+     */
+    public <T> CompletableFuture<T> runIO(final Driver driver, final Callable<T> task) {
+        if (this.ioScheduler != null) {
+            return this.ioScheduler.submit(this.ioQueue, driver, task);
+        }
+        return runIO(task);
+    }
+
+    /**
+     * Sets the limits of a driver instance, see {@link AssetIoScheduler#setDriverLimits(Driver, int, int)}. Has no
+     * effect if this executor does not use an {@link AssetIoScheduler}.
+     *
+     * @since 2.1
+     */
+    public void setDriverLimits(final Driver driver, final int concurrency, final int queueDepth) {
+        if (this.ioScheduler != null) {
+            this.ioScheduler.setDriverLimits(driver, concurrency, queueDepth);
+        }
+    }
+
+    /**
+     * Sets the weight of the asset in the driver queues, see {@link AssetQueue#setWeight(int)}. Has no effect if this
+     * executor does not use an {@link AssetIoScheduler}.
+     *
+     * @since 2.1
+     */
+    public void setIoWeight(final int weight) {
+        if (this.ioQueue != null) {
+            this.ioQueue.setWeight(weight);
+        }
+    }
+
     public CompletableFuture<Void> runConfig(final Runnable task) {
 
         final CompletableFuture<Void> next = new CompletableFuture<>();
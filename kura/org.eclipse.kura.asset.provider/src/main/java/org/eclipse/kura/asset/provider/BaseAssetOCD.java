@@ -14,6 +14,7 @@ package org.eclipse.kura.asset.provider;
 
 import static org.eclipse.kura.asset.provider.AssetConstants.ASSET_DESC_PROP;
 import static org.eclipse.kura.asset.provider.AssetConstants.ASSET_DRIVER_PROP;
+import static org.eclipse.kura.asset.provider.AssetConstants.ASSET_IO_WEIGHT_PROP;
 
 import org.eclipse.kura.core.configuration.metatype.Tad;
 import org.eclipse.kura.core.configuration.metatype.Tocd;
@@ -42,8 +43,20 @@ public class BaseAssetOCD extends Tocd {
         driverNameAd.setDescription("Driver Name");
         driverNameAd.setRequired(true);
 
+        final Tad ioWeightAd = new Tad();
+        ioWeightAd.setId(ASSET_IO_WEIGHT_PROP.value());
+        ioWeightAd.setName(ASSET_IO_WEIGHT_PROP.value());
+        ioWeightAd.setCardinality(0);
+        ioWeightAd.setType(Tscalar.INTEGER);
+        ioWeightAd.setDescription("The share of the driver time given to this asset when other assets wait for the"
+                + " same driver, relative to the weight of the other assets");
+        ioWeightAd.setRequired(false);
+        ioWeightAd.setDefault("1");
+        ioWeightAd.setMin("1");
+
         addAD(assetDescriptionAd);
         addAD(driverNameAd);
+        addAD(ioWeightAd);
     }
 
 }
@@ -15,9 +15,11 @@ package org.eclipse.kura.asset.provider;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import org.eclipse.kura.asset.provider.BaseAsset.ChannelListenerRegistration;
 import org.eclipse.kura.channel.Channel;
@@ -31,11 +33,28 @@ public class DriverState {
 
     private static final Logger logger = LoggerFactory.getLogger(DriverState.class);
 
+    private static final int MAX_CHANNEL_SET_PREPARED_READS = 16;
+
     private final Driver driver;
     private final Set<ChannelListenerRegistration> attachedListeners;
 
     private PreparedRead preparedRead;
 
+    /** The prepared reads of subsets of the channels, the least recently used one is closed when full */
+    @SuppressWarnings("serial")
+    private final Map<Set<String>, PreparedRead> channelSetPreparedReads = new LinkedHashMap<Set<String>, PreparedRead>(
+            MAX_CHANNEL_SET_PREPARED_READS, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Set<String>, PreparedRead> eldest) {
+            if (size() > MAX_CHANNEL_SET_PREPARED_READS) {
+                close(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    };
+
     public DriverState(final Driver driver) {
         this.driver = driver;
         this.attachedListeners = new HashSet<>();
@@ -65,15 +84,47 @@ public class DriverState {
         return pRead;
     }
 
-    private void closePreparedRead() {
-        if (this.preparedRead != null) {
+    /**
+     * Returns the prepared read of the provided set of channels, creating it with the provided records if needed.
+     *
+     * @return the prepared read, or null if the driver does not support prepared reads
+     */
+    public synchronized PreparedRead getPreparedRead(final Set<String> channelNames,
+            final Supplier<List<ChannelRecord>> records) {
+        PreparedRead pRead = this.channelSetPreparedReads.get(channelNames);
+
+        if (pRead == null) {
             try {
-                this.preparedRead.close();
-            } catch (Exception e) {
-                logger.warn("Failed to close prepared read", e);
+                pRead = driver.prepareRead(records.get());
+            } catch (final Exception e) {
+                return null;
+            }
+
+            if (pRead != null) {
+                this.channelSetPreparedReads.put(new HashSet<>(channelNames), pRead);
             }
+        }
+
+        return pRead;
+    }
+
+    private static void close(final PreparedRead preparedRead) {
+        try {
+            preparedRead.close();
+        } catch (Exception e) {
+            logger.warn("Failed to close prepared read", e);
+        }
+    }
+
+    private void closePreparedRead() {
+        if (this.preparedRead != null) {
+            close(this.preparedRead);
             this.preparedRead = null;
         }
+        for (final PreparedRead pRead : this.channelSetPreparedReads.values()) {
+            close(pRead);
+        }
+        this.channelSetPreparedReads.clear();
     }
 
     public void syncChannelListeners(final Set<ChannelListenerRegistration> targetState,
@@ -15,6 +15,7 @@ package org.eclipse.kura.internal.asset.provider;
 import static java.util.Objects.requireNonNull;
 import static org.eclipse.kura.configuration.ConfigurationService.KURA_SERVICE_PID;
 
+import org.eclipse.kura.asset.provider.AssetIoScheduler;
 import org.eclipse.kura.asset.provider.BaseAsset;
 import org.eclipse.kura.driver.Driver;
 import org.osgi.framework.BundleContext;
@@ -66,11 +67,28 @@ public final class DriverTrackerCustomizer implements ServiceTrackerCustomizer<D
         final Driver driver = this.context.getService(reference);
         if (reference.getProperty(KURA_SERVICE_PID).equals(this.driverId)) {
             logger.info("Driver has been found by the driver tracker... ==> adding service");
+            this.baseAsset.getBaseAssetExecutor().setDriverLimits(driver,
+                    getIntProperty(reference, AssetIoScheduler.DRIVER_CONCURRENCY_PROP_NAME, 1),
+                    getIntProperty(reference, AssetIoScheduler.DRIVER_QUEUE_DEPTH_PROP_NAME, 0));
             this.baseAsset.setDriver(driver);
         }
         return driver;
     }
 
+    private static int getIntProperty(final ServiceReference<Driver> reference, final String key,
+            final int defaultValue) {
+        final Object value = reference.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.toString().trim());
+        } catch (final NumberFormatException e) {
+            logger.warn("Invalid value for driver property {}: {}", key, value);
+            return defaultValue;
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     public void modifiedService(final ServiceReference<Driver> reference, final Driver service) {
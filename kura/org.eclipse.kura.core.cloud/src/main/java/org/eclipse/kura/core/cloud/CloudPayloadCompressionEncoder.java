@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.cloud;
+
+import java.io.IOException;
+
+import org.eclipse.kura.core.message.codec.PayloadCodec;
+
+/**
+ * Compresses the bytes of the decorated encoder with a {@link PayloadCodec}, when this makes them shorter.
+ */
+public class CloudPayloadCompressionEncoder implements CloudPayloadEncoder {
+
+    private final CloudPayloadEncoder decorated;
+    private final PayloadCodec codec;
+    private final String topic;
+    private final int minSize;
+
+    /**
+     * @param topic
+     *            the topic the payload is published on, may be null
+     * @param minSize
+     *            payloads shorter than this are not compressed
+     */
+    public CloudPayloadCompressionEncoder(CloudPayloadEncoder decorated, PayloadCodec codec, String topic,
+            int minSize) {
+        this.decorated = decorated;
+        this.codec = codec;
+        this.topic = topic;
+        this.minSize = minSize;
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        byte[] source = this.decorated.getBytes();
+        if (source.length < this.minSize) {
+            return source;
+        }
+
+        byte[] compressed = this.codec.encode(source, this.topic);
+        return compressed != null ? compressed : source;
+    }
+}
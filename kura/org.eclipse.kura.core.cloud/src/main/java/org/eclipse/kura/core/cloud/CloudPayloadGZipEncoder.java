@@ -11,24 +11,11 @@
  *******************************************************************************/
 package org.eclipse.kura.core.cloud;
 
-import java.io.IOException;
+import org.eclipse.kura.core.message.codec.PayloadCodecs;
 
-import org.eclipse.kura.core.util.GZipUtil;
-
-public class CloudPayloadGZipEncoder implements CloudPayloadEncoder {
-
-    private final CloudPayloadEncoder decorated;
+public class CloudPayloadGZipEncoder extends CloudPayloadCompressionEncoder {
 
     public CloudPayloadGZipEncoder(CloudPayloadEncoder decorated) {
-        this.decorated = decorated;
-    }
-
-    @Override
-    public byte[] getBytes() throws IOException {
-        byte[] source = this.decorated.getBytes();
-        byte[] compressed = GZipUtil.compress(source);
-
-        // Return gzip compressed data only if shorter than uncompressed one
-        return compressed.length < source.length ? compressed : source;
+        super(decorated, PayloadCodecs.getCodec(PayloadCodecs.GZIP), null, 0);
     }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2016 Eurotech and/or its affiliates
+ * Copyright (c) 2011, 2018 Eurotech and/or its affiliates
  *
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
@@ -16,8 +16,10 @@ import java.util.Date;
 
 import org.eclipse.kura.KuraInvalidMessageException;
 import org.eclipse.kura.KuraInvalidMetricTypeException;
+import org.eclipse.kura.core.message.codec.PayloadCodec;
+import org.eclipse.kura.core.message.codec.PayloadCodecRegistry;
+import org.eclipse.kura.core.message.codec.PayloadCodecs;
 import org.eclipse.kura.core.message.protobuf.KuraPayloadProto;
-import org.eclipse.kura.core.util.GZipUtil;
 import org.eclipse.kura.message.KuraPayload;
 import org.eclipse.kura.message.KuraPosition;
 import org.slf4j.Logger;
@@ -31,9 +33,19 @@ public class CloudPayloadProtoBufDecoderImpl {
     private static final Logger s_logger = LoggerFactory.getLogger(CloudPayloadProtoBufDecoderImpl.class);
 
     private byte[] m_bytes;
+    private final PayloadCodecRegistry m_codecs;
 
     public CloudPayloadProtoBufDecoderImpl(byte[] bytes) {
+        this(bytes, null);
+    }
+
+    /**
+     * @param codecs
+     *            the registry holding the dictionaries of compressed payloads, null for the default one
+     */
+    public CloudPayloadProtoBufDecoderImpl(byte[] bytes, PayloadCodecRegistry codecs) {
         this.m_bytes = bytes;
+        this.m_codecs = codecs;
     }
 
     /**
@@ -46,12 +58,14 @@ public class CloudPayloadProtoBufDecoderImpl {
      */
     public KuraPayload buildFromByteArray() throws KuraInvalidMessageException, IOException {
         // Check if a compressed payload and try to decompress it
-        if (GZipUtil.isCompressed(this.m_bytes)) {
+        PayloadCodec codec = this.m_codecs != null ? this.m_codecs.getDecoder(this.m_bytes)
+                : PayloadCodecs.getDecoder(this.m_bytes);
+        if (codec != null) {
             try {
-                this.m_bytes = GZipUtil.decompress(this.m_bytes);
+                this.m_bytes = codec.decode(this.m_bytes);
             } catch (IOException e) {
                 s_logger.info("Decompression failed");
-                // do not rethrow the exception here as isCompressed may return some false positives
+                // do not rethrow the exception here as isEncoded may return some false positives
             }
         }
 
@@ -31,6 +31,7 @@ import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -69,6 +70,9 @@ import org.eclipse.kura.configuration.ConfigurationService;
 import org.eclipse.kura.core.cloud.publisher.NotificationPublisherImpl;
 import org.eclipse.kura.core.cloud.subscriber.CloudSubscriptionRecord;
 import org.eclipse.kura.core.data.DataServiceImpl;
+import org.eclipse.kura.core.message.codec.PayloadCodec;
+import org.eclipse.kura.core.message.codec.PayloadCodecRegistry;
+import org.eclipse.kura.core.message.codec.PayloadCodecs;
 import org.eclipse.kura.data.DataService;
 import org.eclipse.kura.data.listener.DataServiceListener;
 import org.eclipse.kura.marshalling.Marshaller;
@@ -104,6 +108,8 @@ public class CloudServiceImpl
 
     private static final String CONNECTION_EVENT_PID_PROPERTY_KEY = "cloud.service.pid";
 
+    private static final int MAX_TRACKED_DICTIONARY_MESSAGES = 256;
+
     private static final int NUM_CONCURRENT_CALLBACKS = 2;
 
     private static ExecutorService callbackExecutor = Executors.newFixedThreadPool(NUM_CONCURRENT_CALLBACKS);
@@ -140,6 +146,15 @@ public class CloudServiceImpl
 
     private final AtomicInteger messageId;
 
+    private final PayloadCodecRegistry payloadCodecs;
+
+    /**
+     * The identifiers of the payload dictionaries sent inline, by the ID of the message carrying them. QoS 0 messages
+     * are never confirmed, their publication is the only delivery notification.
+     */
+    private final Map<Integer, Integer> unpublishedDictionaries;
+    private final Map<Integer, Integer> unconfirmedDictionaries;
+
     private ServiceRegistration<?> cloudServiceRegistration;
 
     private final Map<String, RequestHandler> registeredRequestHandlers;
@@ -150,6 +165,9 @@ public class CloudServiceImpl
     public CloudServiceImpl() {
         this.cloudClients = new CopyOnWriteArrayList<>();
         this.messageId = new AtomicInteger();
+        this.payloadCodecs = new PayloadCodecRegistry();
+        this.unpublishedDictionaries = newDictionaryMessages();
+        this.unconfirmedDictionaries = newDictionaryMessages();
         this.registeredRequestHandlers = new HashMap<>();
         this.registeredSubscribers = new ConcurrentHashMap<>();
         this.registeredCloudConnectionListeners = new CopyOnWriteArraySet<>();
@@ -443,11 +461,19 @@ public class CloudServiceImpl
     }
 
     public byte[] encodePayload(KuraPayload payload) throws KuraException {
+        return encodePayload(payload, null);
+    }
+
+    /**
+     * Encodes a payload published on the given topic. The topic lets the payload codecs that adapt to the content of
+     * each topic compress the payload better.
+     */
+    public byte[] encodePayload(KuraPayload payload, String topic) throws KuraException {
         byte[] bytes;
         CloudPayloadEncoding preferencesEncoding = this.options.getPayloadEncoding();
 
         if (preferencesEncoding == KURA_PROTOBUF) {
-            bytes = encodeProtobufPayload(payload);
+            bytes = encodeProtobufPayload(payload, topic);
         } else if (preferencesEncoding == SIMPLE_JSON) {
             bytes = encodeJsonPayload(payload);
         } else {
@@ -643,6 +669,8 @@ public class CloudServiceImpl
 
     @Override
     public void onMessagePublished(int messageId, String topic) {
+        confirmInlineDictionary(this.unpublishedDictionaries, messageId);
+
         synchronized (this.messageId) {
             if (this.messageId.get() != -1 && this.messageId.get() == messageId) {
                 if (CloudServiceOptions.getLifeCycleMessageQos() == 0) {
@@ -663,6 +691,8 @@ public class CloudServiceImpl
 
     @Override
     public void onMessageConfirmed(int messageId, String topic) {
+        confirmInlineDictionary(this.unconfirmedDictionaries, messageId);
+
         synchronized (this.messageId) {
             if (this.messageId.get() != -1 && this.messageId.get() == messageId) {
                 this.messageId.set(-1);
@@ -715,7 +745,7 @@ public class CloudServiceImpl
 
     @Override
     public KuraPayload buildFromByteArray(byte[] payload) throws KuraException {
-        CloudPayloadProtoBufDecoderImpl encoder = new CloudPayloadProtoBufDecoderImpl(payload);
+        CloudPayloadProtoBufDecoderImpl encoder = new CloudPayloadProtoBufDecoderImpl(payload, this.payloadCodecs);
         KuraPayload kuraPayload;
 
         try {
@@ -830,10 +860,11 @@ public class CloudServiceImpl
         // has been published (i.e. written to the socket).
         synchronized (this.messageId) {
             this.messageId.set(-1);
-            byte[] encodedPayload = encodePayload(payload);
+            byte[] encodedPayload = encodePayload(payload, topic);
             int messageId = this.dataService.publish(topic, encodedPayload,
                     CloudServiceOptions.getLifeCycleMessageQos(), CloudServiceOptions.getLifeCycleMessageRetain(),
                     CloudServiceOptions.getLifeCycleMessagePriority());
+            trackInlineDictionary(messageId, CloudServiceOptions.getLifeCycleMessageQos(), encodedPayload);
             this.messageId.set(messageId);
             try {
                 this.messageId.wait(1000);
@@ -844,15 +875,16 @@ public class CloudServiceImpl
         }
     }
 
-    private byte[] encodeProtobufPayload(KuraPayload payload) throws KuraException {
+    private byte[] encodeProtobufPayload(KuraPayload payload, String topic) throws KuraException {
         byte[] bytes = new byte[0];
         if (payload == null) {
             return bytes;
         }
 
         CloudPayloadEncoder encoder = new CloudPayloadProtoBufEncoderImpl(payload);
-        if (this.options.getEncodeGzip()) {
-            encoder = new CloudPayloadGZipEncoder(encoder);
+        PayloadCodec codec = this.options.getPayloadCodec(this.payloadCodecs);
+        if (codec != null) {
+            encoder = new CloudPayloadCompressionEncoder(encoder, codec, topic, this.options.getEncodeMinSize());
         }
 
         try {
@@ -863,6 +895,38 @@ public class CloudServiceImpl
         return bytes;
     }
 
+    private static Map<Integer, Integer> newDictionaryMessages() {
+        // the messages dropped before delivery are never notified, only the most recent ones are tracked
+        return Collections.synchronizedMap(new LinkedHashMap<Integer, Integer>() {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+                return size() > MAX_TRACKED_DICTIONARY_MESSAGES;
+            }
+        });
+    }
+
+    /**
+     * Tracks the delivery of a message carrying a payload dictionary, so that the next payloads stop carrying it once
+     * the message is delivered. If the delivery is notified before the message is tracked, the dictionary is sent
+     * again with the next payload.
+     */
+    private void trackInlineDictionary(int messageId, int qos, byte[] payload) {
+        Integer dictionary = PayloadCodecs.getInlineDictionary(payload);
+        if (dictionary != null) {
+            (qos == 0 ? this.unpublishedDictionaries : this.unconfirmedDictionaries).put(messageId, dictionary);
+        }
+    }
+
+    private void confirmInlineDictionary(Map<Integer, Integer> dictionaries, int messageId) {
+        Integer dictionary = dictionaries.remove(messageId);
+        if (dictionary != null) {
+            this.payloadCodecs.confirmDictionary(dictionary);
+        }
+    }
+
     private byte[] encodeJsonPayload(KuraPayload payload) throws KuraException {
         return this.jsonMarshaller.marshal(payload).getBytes(StandardCharsets.UTF_8);
     }
@@ -875,7 +939,7 @@ public class CloudServiceImpl
         KuraPayload kuraPayload;
         try {
             // try to decode the message into an KuraPayload
-            kuraPayload = new CloudPayloadProtoBufDecoderImpl(payload).buildFromByteArray();
+            kuraPayload = new CloudPayloadProtoBufDecoderImpl(payload, this.payloadCodecs).buildFromByteArray();
         } catch (Exception e) {
             // Wrap the received bytes payload into an KuraPayload
             logger.debug("Received message on topic {} that could not be decoded. Wrapping it into an KuraPayload.",
@@ -986,9 +1050,10 @@ public class CloudServiceImpl
             fullTopic = encodeTopic(appId, deviceId, appTopic, isControl);
         }
 
-        byte[] appPayload = encodePayload(message.getPayload());
+        byte[] appPayload = encodePayload(message.getPayload(), fullTopic);
 
         int id = this.dataService.publish(fullTopic, appPayload, qos, retain, priority);
+        trackInlineDictionary(id, qos, appPayload);
 
         if (qos == 0) {
             return null;
@@ -17,6 +17,9 @@ import static org.eclipse.kura.core.cloud.CloudServiceLifecycleCertsPolicy.PUBLI
 import java.util.Map;
 
 import org.eclipse.kura.cloud.CloudPayloadEncoding;
+import org.eclipse.kura.core.message.codec.PayloadCodec;
+import org.eclipse.kura.core.message.codec.PayloadCodecRegistry;
+import org.eclipse.kura.core.message.codec.PayloadCodecs;
 import org.eclipse.kura.system.SystemService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,6 +41,8 @@ public class CloudServiceOptions {
     private static final String DEVICE_DISPLAY_NAME = "device.display-name";
     private static final String DEVICE_CUSTOM_NAME = "device.custom-name";
     private static final String ENCODE_GZIP = "encode.gzip";
+    private static final String ENCODE_CODEC = "encode.codec";
+    private static final String ENCODE_MIN_SIZE = "encode.min-size";
     private static final String REPUB_BIRTH_ON_GPS_LOCK = "republish.mqtt.birth.cert.on.gps.lock";
     private static final String REPUB_BIRTH_ON_MODEM_DETECT = "republish.mqtt.birth.cert.on.modem.detect";
     private static final String ENABLE_DFLT_SUBSCRIPTIONS = "enable.default.subscriptions";
@@ -104,6 +109,53 @@ public class CloudServiceOptions {
         return encodeGzip;
     }
 
+    /**
+     * Returns the codec used to compress outgoing payloads. If no codec is configured, the GZip codec is returned
+     * when {@link #getEncodeGzip()} is true.
+     *
+     * @return the codec, or null if payloads are not compressed
+     */
+    public PayloadCodec getPayloadCodec() {
+        return getPayloadCodec(null);
+    }
+
+    /**
+     * Returns the codec of the given registry used to compress outgoing payloads.
+     *
+     * @param registry
+     *            the registry of the codec, null for the default one
+     * @return the codec, or null if payloads are not compressed
+     * @see #getPayloadCodec()
+     */
+    public PayloadCodec getPayloadCodec(PayloadCodecRegistry registry) {
+        String codecName = "";
+        if (this.properties != null && this.properties.get(ENCODE_CODEC) instanceof String) {
+            codecName = (String) this.properties.get(ENCODE_CODEC);
+        }
+
+        if (codecName.isEmpty()) {
+            return getEncodeGzip() ? PayloadCodecs.getCodec(PayloadCodecs.GZIP) : null;
+        }
+        PayloadCodec codec = registry != null ? registry.getCodec(codecName) : PayloadCodecs.getCodec(codecName);
+        if (codec == null && !PayloadCodecs.NONE.equals(codecName)) {
+            logger.warn("Unknown payload codec: {}", codecName);
+        }
+        return codec;
+    }
+
+    /**
+     * Returns the size in bytes below which outgoing payloads are not compressed.
+     *
+     * @return an int value.
+     */
+    public int getEncodeMinSize() {
+        int minSize = 0;
+        if (this.properties != null && this.properties.get(ENCODE_MIN_SIZE) instanceof Integer) {
+            minSize = (Integer) this.properties.get(ENCODE_MIN_SIZE);
+        }
+        return minSize;
+    }
+
     /**
      * Returns true if the current CloudService configuration
      * specifies the cloud client should republish the MQTT birth
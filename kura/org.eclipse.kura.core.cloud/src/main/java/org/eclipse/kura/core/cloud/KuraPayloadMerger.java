@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.cloud;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.kura.KuraInvalidMessageException;
+import org.eclipse.kura.core.data.PayloadMerger;
+import org.eclipse.kura.core.message.codec.PayloadCodec;
+import org.eclipse.kura.core.message.codec.PayloadCodecRegistry;
+import org.eclipse.kura.message.KuraPayload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Merges the metrics of Kura payloads queued on the same topic. The metrics of the newer payloads replace the ones
+ * with the same name of the older payloads, while timestamp, position and body are taken from the newest payload.
+ * The merged payload is compressed with the codec of the newest payload, if any.
+ * <p>
+ * The merger does not share the dictionaries of the cloud services, it learns the dictionaries carried by the queued
+ * payloads. Payloads only referencing a dictionary the merger has not seen cannot be merged.
+ */
+public class KuraPayloadMerger implements PayloadMerger {
+
+    private static final Logger logger = LoggerFactory.getLogger(KuraPayloadMerger.class);
+
+    private final PayloadCodecRegistry payloadCodecs = new PayloadCodecRegistry();
+
+    @Override
+    public byte[] merge(List<byte[]> olderPayloads, byte[] payload) {
+        try {
+            KuraPayload merged = new KuraPayload();
+            for (byte[] olderPayload : olderPayloads) {
+                addMetrics(merged, decode(olderPayload));
+            }
+
+            KuraPayload newest = decode(payload);
+            addMetrics(merged, newest);
+            merged.setTimestamp(newest.getTimestamp());
+            merged.setPosition(newest.getPosition());
+            merged.setBody(newest.getBody());
+
+            CloudPayloadEncoder encoder = new CloudPayloadProtoBufEncoderImpl(merged);
+            PayloadCodec codec = this.payloadCodecs.getDecoder(payload);
+            if (codec != null) {
+                encoder = new CloudPayloadCompressionEncoder(encoder, codec, null, 0);
+            }
+            return encoder.getBytes();
+        } catch (KuraInvalidMessageException | IOException e) {
+            logger.warn("Cannot merge payloads", e);
+            return null;
+        }
+    }
+
+    private KuraPayload decode(byte[] payload) throws KuraInvalidMessageException, IOException {
+        return new CloudPayloadProtoBufDecoderImpl(payload, this.payloadCodecs).buildFromByteArray();
+    }
+
+    private static void addMetrics(KuraPayload target, KuraPayload source) {
+        for (String name : source.metricNames()) {
+            target.addMetric(name, source.getMetric(name));
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2017 Eurotech and/or its affiliates
+ * Copyright (c) 2011, 2018 Eurotech and/or its affiliates
  *
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
@@ -17,6 +17,7 @@ import org.eclipse.kura.core.message.KuraBirthPayload;
 import org.eclipse.kura.core.message.KuraBirthPayload.KuraBirthPayloadBuilder;
 import org.eclipse.kura.core.message.KuraDeviceProfile;
 import org.eclipse.kura.core.message.KuraDisconnectPayload;
+import org.eclipse.kura.core.message.codec.PayloadCodec;
 import org.eclipse.kura.core.util.NetUtil;
 import org.eclipse.kura.message.KuraPosition;
 import org.eclipse.kura.net.NetInterface;
@@ -219,8 +220,9 @@ public class LifeCyclePayloadBuilder {
     private String buildAcceptEncoding() {
         String acceptEncoding = "";
         CloudServiceOptions options = this.cloudServiceImpl.getCloudServiceOptions();
-        if (options.getEncodeGzip()) {
-            acceptEncoding = "gzip";
+        PayloadCodec codec = options.getPayloadCodec();
+        if (codec != null) {
+            acceptEncoding = codec.getName();
         }
         return acceptEncoding;
     }
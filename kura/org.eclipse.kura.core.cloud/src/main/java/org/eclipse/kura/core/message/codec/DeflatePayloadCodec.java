@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.message.codec;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.eclipse.kura.core.message.codec.PayloadDictionaries.Dictionary;
+
+/**
+ * Compresses payloads as zlib streams, optionally with a preset dictionary trained for each topic.
+ * <p>
+ * A zlib stream compressed with a preset dictionary carries the Adler-32 checksum of the dictionary, which the
+ * decoder uses to find it. The dictionary itself is sent before the stream, under a distinct codec identifier, until
+ * the delivery of a payload carrying it is confirmed and then periodically.
+ */
+final class DeflatePayloadCodec implements PayloadCodec {
+
+    // the size of the deflate window, larger dictionaries are useless
+    private static final int MAX_RECEIVED_DICTIONARY_SIZE = 32 * 1024;
+
+    private static final byte[] HEADER = { PayloadCodecs.MAGIC_0, PayloadCodecs.MAGIC_1, PayloadCodecs.DEFLATE_ID };
+
+    private final String name;
+    private final DeflaterPool pool;
+    private final PayloadDictionaries trainer;
+    private final PayloadDictionaries dictionaries;
+
+    /**
+     * @param trainer
+     *            trains the dictionaries used for encoding, null to encode without dictionaries
+     * @param dictionaries
+     *            the dictionaries known for decoding
+     */
+    DeflatePayloadCodec(String name, DeflaterPool pool, PayloadDictionaries trainer,
+            PayloadDictionaries dictionaries) {
+        this.name = name;
+        this.pool = pool;
+        this.trainer = trainer;
+        this.dictionaries = dictionaries;
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public boolean isEncoded(byte[] bytes) {
+        return PayloadCodecs.hasHeader(bytes, PayloadCodecs.DEFLATE_ID)
+                || PayloadCodecs.hasHeader(bytes, PayloadCodecs.DEFLATE_WITH_DICTIONARY_ID);
+    }
+
+    @Override
+    public byte[] encode(byte[] source, String topic) throws IOException {
+        Dictionary dictionary = null;
+        if (this.trainer != null && topic != null) {
+            dictionary = this.trainer.select(topic, source);
+        }
+
+        if (dictionary != null && dictionary.nextUseInline()) {
+            byte[] prefix = new byte[PayloadCodecs.HEADER_LENGTH + PayloadCodecs.varintSize(dictionary.bytes.length)
+                    + dictionary.bytes.length];
+            int offset = PayloadCodecs.writeHeader(prefix, PayloadCodecs.DEFLATE_WITH_DICTIONARY_ID);
+            offset = PayloadCodecs.writeVarint(prefix, offset, dictionary.bytes.length);
+            System.arraycopy(dictionary.bytes, 0, prefix, offset, dictionary.bytes.length);
+
+            // the dictionary is sent even if the result is longer than the source, the next payloads will be shorter
+            int limit = prefix.length + source.length + (source.length >> 8) + 64;
+            return this.pool.deflate(prefix, dictionary.bytes, source, limit, 0);
+        }
+
+        return this.pool.deflate(HEADER, dictionary != null ? dictionary.bytes : null, source, source.length - 1, 0);
+    }
+
+    @Override
+    public byte[] decode(byte[] bytes) throws IOException {
+        int offset = PayloadCodecs.HEADER_LENGTH;
+        if (bytes[2] == PayloadCodecs.DEFLATE_WITH_DICTIONARY_ID) {
+            int[] position = { offset };
+            int length = PayloadCodecs.readVarint(bytes, position);
+            if (length > MAX_RECEIVED_DICTIONARY_SIZE || length > bytes.length - position[0]) {
+                throw new IOException("Invalid dictionary length " + length);
+            }
+            offset = position[0] + length;
+            byte[] dictionary = Arrays.copyOfRange(bytes, position[0], offset);
+            this.dictionaries.register(dictionary);
+            // the stream is decoded with the dictionary it carries, even if the registry kept another one
+            return this.pool.inflate(bytes, offset, id -> dictionary, PayloadCodecs.MAX_DECODED_LENGTH);
+        }
+        return this.pool.inflate(bytes, offset, this.dictionaries::get, PayloadCodecs.MAX_DECODED_LENGTH);
+    }
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.message.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.IntFunction;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Keeps a few {@link Deflater} and {@link Inflater} instances for reuse, as creating one allocates the native zlib
+ * state, and a per-thread buffer for the compressed output.
+ */
+final class DeflaterPool {
+
+    private static final int MAX_POOLED = 8;
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private final boolean nowrap;
+    private final BlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<>(MAX_POOLED);
+    private final BlockingQueue<Inflater> inflaters = new ArrayBlockingQueue<>(MAX_POOLED);
+    private final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[1024]);
+
+    /**
+     * @param nowrap
+     *            true to produce raw deflate data, false to produce zlib streams
+     */
+    DeflaterPool(boolean nowrap) {
+        this.nowrap = nowrap;
+    }
+
+    /**
+     * Compresses the source after a prefix.
+     *
+     * @param prefix
+     *            the bytes copied before the compressed data
+     * @param dictionary
+     *            the preset dictionary, may be null
+     * @param limit
+     *            the maximum length of the prefix and the compressed data
+     * @param suffixLength
+     *            the number of bytes left free at the end of the returned array
+     * @return the prefix followed by the compressed data, or null if they would be longer than the limit
+     */
+    byte[] deflate(byte[] prefix, byte[] dictionary, byte[] source, int limit, int suffixLength) {
+        if (limit <= prefix.length) {
+            return null;
+        }
+        byte[] buffer = this.buffers.get();
+        if (buffer.length < limit) {
+            buffer = new byte[limit];
+            if (limit <= MAX_RETAINED_BUFFER) {
+                this.buffers.set(buffer);
+            }
+        }
+
+        Deflater deflater = this.deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, this.nowrap);
+        }
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(source);
+            deflater.finish();
+
+            System.arraycopy(prefix, 0, buffer, 0, prefix.length);
+            int length = prefix.length;
+            while (!deflater.finished()) {
+                if (length == limit) {
+                    return null;
+                }
+                length += deflater.deflate(buffer, length, limit - length);
+            }
+            return Arrays.copyOf(buffer, length + suffixLength);
+        } finally {
+            deflater.reset();
+            if (!this.deflaters.offer(deflater)) {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Decompresses the data starting at the offset.
+     *
+     * @param dictionaries
+     *            returns the preset dictionary with the given Adler-32 checksum, or null if unknown
+     * @param maxLength
+     *            the maximum length of the decompressed data
+     * @throws IOException
+     *             if the data is not valid, its dictionary is not known or it decompresses to more than the maximum
+     *             length
+     */
+    byte[] inflate(byte[] source, int offset, IntFunction<byte[]> dictionaries, int maxLength) throws IOException {
+        Inflater inflater = this.inflaters.poll();
+        if (inflater == null) {
+            inflater = new Inflater(this.nowrap);
+        }
+        try {
+            inflater.setInput(source, offset, source.length - offset);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(source.length * 4, maxLength));
+            byte[] buffer = new byte[1024];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count > maxLength - out.size()) {
+                    throw new IOException("Inflated data longer than " + maxLength + " bytes");
+                }
+                if (count > 0) {
+                    out.write(buffer, 0, count);
+                } else if (inflater.needsDictionary()) {
+                    byte[] dictionary = dictionaries.apply(inflater.getAdler());
+                    if (dictionary == null) {
+                        throw new IOException("Unknown dictionary " + Integer.toHexString(inflater.getAdler()));
+                    }
+                    inflater.setDictionary(dictionary);
+                } else if (inflater.needsInput()) {
+                    throw new EOFException("Truncated deflate stream");
+                }
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.reset();
+            if (!this.inflaters.offer(inflater)) {
+                inflater.end();
+            }
+        }
+    }
+}
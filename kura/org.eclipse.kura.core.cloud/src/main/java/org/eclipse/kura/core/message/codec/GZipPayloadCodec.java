@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.message.codec;
+
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+
+import org.eclipse.kura.core.util.GZipUtil;
+
+/**
+ * Produces the same GZip streams as {@link GZipUtil#compress(byte[])} with pooled deflaters.
+ */
+final class GZipPayloadCodec implements PayloadCodec {
+
+    private static final byte[] HEADER = { (byte) GZIPInputStream.GZIP_MAGIC,
+            (byte) (GZIPInputStream.GZIP_MAGIC >> 8), 8, 0, 0, 0, 0, 0, 0, 0 };
+    private static final int TRAILER_LENGTH = 8;
+
+    private final DeflaterPool pool;
+
+    GZipPayloadCodec(DeflaterPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public String getName() {
+        return PayloadCodecs.GZIP;
+    }
+
+    @Override
+    public boolean isEncoded(byte[] bytes) {
+        return bytes != null && bytes.length >= 2 && bytes[0] == HEADER[0] && bytes[1] == HEADER[1];
+    }
+
+    @Override
+    public byte[] encode(byte[] source, String topic) throws IOException {
+        byte[] result = this.pool.deflate(HEADER, null, source, source.length - TRAILER_LENGTH - 1,
+                TRAILER_LENGTH);
+        if (result == null) {
+            return null;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(source);
+        int offset = result.length - TRAILER_LENGTH;
+        writeIntLE(result, offset, (int) crc.getValue());
+        writeIntLE(result, offset + 4, source.length);
+        return result;
+    }
+
+    @Override
+    public byte[] decode(byte[] bytes) throws IOException {
+        return GZipUtil.decompress(bytes);
+    }
+
+    private static void writeIntLE(byte[] dest, int offset, int value) {
+        dest[offset] = (byte) value;
+        dest[offset + 1] = (byte) (value >> 8);
+        dest[offset + 2] = (byte) (value >> 16);
+        dest[offset + 3] = (byte) (value >> 24);
+    }
+}
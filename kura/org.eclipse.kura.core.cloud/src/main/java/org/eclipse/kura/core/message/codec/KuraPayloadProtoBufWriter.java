@@ -0,0 +1,325 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.message.codec;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.kura.KuraInvalidMetricTypeException;
+import org.eclipse.kura.message.KuraPayload;
+import org.eclipse.kura.message.KuraPosition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+/**
+ * Serializes a {@link KuraPayload} in the kurapayload.proto binary format without building the intermediate
+ * protobuf message objects.
+ * <p>
+ * A first pass computes the exact serialized size, so that the metrics are written with a {@link CodedOutputStream}
+ * directly into the returned array. The UTF-8 encoding of the strings and the sizes of the metrics computed by the
+ * first pass are kept in per-thread buffers and reused by the second one. The output is byte for byte the one of the
+ * generated {@code KuraPayloadProto} classes.
+ *
+ * @since 1.0
+ */
+public final class KuraPayloadProtoBufWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(KuraPayloadProtoBufWriter.class);
+
+    private static final int PAYLOAD_TIMESTAMP = 1;
+    private static final int PAYLOAD_POSITION = 2;
+    private static final int PAYLOAD_METRIC = 5000;
+    private static final int PAYLOAD_BODY = 5001;
+
+    private static final int METRIC_NAME = 1;
+    private static final int METRIC_TYPE = 2;
+    private static final int METRIC_DOUBLE_VALUE = 3;
+    private static final int METRIC_FLOAT_VALUE = 4;
+    private static final int METRIC_LONG_VALUE = 5;
+    private static final int METRIC_INT_VALUE = 6;
+    private static final int METRIC_BOOL_VALUE = 7;
+    private static final int METRIC_STRING_VALUE = 8;
+    private static final int METRIC_BYTES_VALUE = 9;
+
+    private static final int TYPE_DOUBLE = 0;
+    private static final int TYPE_FLOAT = 1;
+    private static final int TYPE_INT64 = 2;
+    private static final int TYPE_INT32 = 3;
+    private static final int TYPE_BOOL = 4;
+    private static final int TYPE_STRING = 5;
+    private static final int TYPE_BYTES = 6;
+
+    private static final int POSITION_LATITUDE = 1;
+    private static final int POSITION_LONGITUDE = 2;
+    private static final int POSITION_ALTITUDE = 3;
+    private static final int POSITION_PRECISION = 4;
+    private static final int POSITION_HEADING = 5;
+    private static final int POSITION_SPEED = 6;
+    private static final int POSITION_TIMESTAMP = 7;
+    private static final int POSITION_SATELLITES = 8;
+    private static final int POSITION_STATUS = 9;
+
+    // Buffers larger than this are not kept after an encoding
+    private static final int MAX_RETAINED_METRICS = 4096;
+
+    private static final ThreadLocal<KuraPayloadProtoBufWriter> writers = ThreadLocal
+            .withInitial(KuraPayloadProtoBufWriter::new);
+
+    // The UTF-8 encoded metric names and string values, in the order they are written
+    private final List<byte[]> strings = new ArrayList<>();
+    // The serialized size of each metric, in the order they are written
+    private int[] metricSizes = new int[64];
+
+    private KuraPayloadProtoBufWriter() {
+    }
+
+    /**
+     * Serializes a payload.
+     *
+     * @throws IOException
+     *             if the payload cannot be serialized
+     * @throws RuntimeException
+     *             if a metric has a type that is not supported by the format
+     */
+    public static byte[] encode(KuraPayload payload) throws IOException {
+        return writers.get().write(payload);
+    }
+
+    private byte[] write(KuraPayload payload) throws IOException {
+        try {
+            byte[] result = new byte[computePayloadSize(payload)];
+            CodedOutputStream out = CodedOutputStream.newInstance(result);
+            writePayload(out, payload);
+            out.checkNoSpaceLeft();
+            return result;
+        } finally {
+            this.strings.clear();
+            if (this.metricSizes.length > MAX_RETAINED_METRICS) {
+                this.metricSizes = new int[64];
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------
+    //
+    // Size computation
+    //
+    // ----------------------------------------------------------------
+
+    private int computePayloadSize(KuraPayload payload) {
+        int size = 0;
+        if (payload.getTimestamp() != null) {
+            size += CodedOutputStream.computeInt64Size(PAYLOAD_TIMESTAMP, payload.getTimestamp().getTime());
+        }
+        if (payload.getPosition() != null) {
+            size += computeLengthDelimitedSize(PAYLOAD_POSITION, computePositionSize(payload.getPosition()));
+        }
+
+        int metricIndex = 0;
+        for (Map.Entry<String, Object> entry : payload.metrics().entrySet()) {
+            int metricSize = computeMetricSize(entry.getKey(), entry.getValue());
+            if (metricSize < 0) {
+                continue;
+            }
+            if (metricIndex == this.metricSizes.length) {
+                this.metricSizes = Arrays.copyOf(this.metricSizes, metricIndex * 2);
+            }
+            this.metricSizes[metricIndex++] = metricSize;
+            size += computeLengthDelimitedSize(PAYLOAD_METRIC, metricSize);
+        }
+
+        if (payload.getBody() != null) {
+            size += computeLengthDelimitedSize(PAYLOAD_BODY, payload.getBody().length);
+        }
+        return size;
+    }
+
+    /**
+     * @return the size of the metric, -1 if the metric is skipped
+     */
+    private int computeMetricSize(String name, Object value) {
+        if (value == null) {
+            return -1;
+        }
+
+        int size = computeStringSize(METRIC_NAME, name);
+        if (value instanceof String) {
+            size += CodedOutputStream.computeEnumSize(METRIC_TYPE, TYPE_STRING);
+            size += computeStringSize(METRIC_STRING_VALUE, (String) value);
+        } else if (value instanceof Double) {
+            size += CodedOutputStream.computeEnumSize(METRIC_TYPE, TYPE_DOUBLE);
+            size += CodedOutputStream.computeDoubleSize(METRIC_DOUBLE_VALUE, (Double) value);
+        } else if (value instanceof Integer) {
+            size += CodedOutputStream.computeEnumSize(METRIC_TYPE, TYPE_INT32);
+            size += CodedOutputStream.computeInt32Size(METRIC_INT_VALUE, (Integer) value);
+        } else if (value instanceof Float) {
+            size += CodedOutputStream.computeEnumSize(METRIC_TYPE, TYPE_FLOAT);
+            size += CodedOutputStream.computeFloatSize(METRIC_FLOAT_VALUE, (Float) value);
+        } else if (value instanceof Long) {
+            size += CodedOutputStream.computeEnumSize(METRIC_TYPE, TYPE_INT64);
+            size += CodedOutputStream.computeInt64Size(METRIC_LONG_VALUE, (Long) value);
+        } else if (value instanceof Boolean) {
+            size += CodedOutputStream.computeEnumSize(METRIC_TYPE, TYPE_BOOL);
+            size += CodedOutputStream.computeBoolSize(METRIC_BOOL_VALUE, (Boolean) value);
+        } else if (value instanceof byte[]) {
+            size += CodedOutputStream.computeEnumSize(METRIC_TYPE, TYPE_BYTES);
+            size += computeLengthDelimitedSize(METRIC_BYTES_VALUE, ((byte[]) value).length);
+        } else {
+            logger.error("During serialization, ignoring metric named: {}. Unrecognized value type: {}.", name,
+                    value.getClass().getName());
+            throw new RuntimeException(new KuraInvalidMetricTypeException(value.getClass().getName()));
+        }
+        return size;
+    }
+
+    private static int computePositionSize(KuraPosition position) {
+        if (position.getLatitude() == null || position.getLongitude() == null) {
+            throw new IllegalArgumentException("Position latitude and longitude are required");
+        }
+
+        int size = CodedOutputStream.computeDoubleSize(POSITION_LATITUDE, position.getLatitude());
+        size += CodedOutputStream.computeDoubleSize(POSITION_LONGITUDE, position.getLongitude());
+        if (position.getAltitude() != null) {
+            size += CodedOutputStream.computeDoubleSize(POSITION_ALTITUDE, position.getAltitude());
+        }
+        if (position.getPrecision() != null) {
+            size += CodedOutputStream.computeDoubleSize(POSITION_PRECISION, position.getPrecision());
+        }
+        if (position.getHeading() != null) {
+            size += CodedOutputStream.computeDoubleSize(POSITION_HEADING, position.getHeading());
+        }
+        if (position.getSpeed() != null) {
+            size += CodedOutputStream.computeDoubleSize(POSITION_SPEED, position.getSpeed());
+        }
+        if (position.getTimestamp() != null) {
+            size += CodedOutputStream.computeInt64Size(POSITION_TIMESTAMP, position.getTimestamp().getTime());
+        }
+        if (position.getSatellites() != null) {
+            size += CodedOutputStream.computeInt32Size(POSITION_SATELLITES, position.getSatellites());
+        }
+        if (position.getStatus() != null) {
+            size += CodedOutputStream.computeInt32Size(POSITION_STATUS, position.getStatus());
+        }
+        return size;
+    }
+
+    private int computeStringSize(int fieldNumber, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        this.strings.add(bytes);
+        return computeLengthDelimitedSize(fieldNumber, bytes.length);
+    }
+
+    private static int computeLengthDelimitedSize(int fieldNumber, int length) {
+        return CodedOutputStream.computeTagSize(fieldNumber) + CodedOutputStream.computeRawVarint32Size(length)
+                + length;
+    }
+
+    // ----------------------------------------------------------------
+    //
+    // Writing
+    //
+    // ----------------------------------------------------------------
+
+    private void writePayload(CodedOutputStream out, KuraPayload payload) throws IOException {
+        if (payload.getTimestamp() != null) {
+            out.writeInt64(PAYLOAD_TIMESTAMP, payload.getTimestamp().getTime());
+        }
+        if (payload.getPosition() != null) {
+            KuraPosition position = payload.getPosition();
+            writeLengthDelimitedHeader(out, PAYLOAD_POSITION, computePositionSize(position));
+            writePosition(out, position);
+        }
+
+        int metricIndex = 0;
+        int stringIndex = 0;
+        for (Map.Entry<String, Object> entry : payload.metrics().entrySet()) {
+            Object value = entry.getValue();
+            if (value == null) {
+                logger.warn("Received a metric with a null value!");
+                continue;
+            }
+
+            writeLengthDelimitedHeader(out, PAYLOAD_METRIC, this.metricSizes[metricIndex++]);
+            writeBytes(out, METRIC_NAME, this.strings.get(stringIndex++));
+            if (value instanceof String) {
+                out.writeEnum(METRIC_TYPE, TYPE_STRING);
+                writeBytes(out, METRIC_STRING_VALUE, this.strings.get(stringIndex++));
+            } else if (value instanceof Double) {
+                out.writeEnum(METRIC_TYPE, TYPE_DOUBLE);
+                out.writeDouble(METRIC_DOUBLE_VALUE, (Double) value);
+            } else if (value instanceof Integer) {
+                out.writeEnum(METRIC_TYPE, TYPE_INT32);
+                out.writeInt32(METRIC_INT_VALUE, (Integer) value);
+            } else if (value instanceof Float) {
+                out.writeEnum(METRIC_TYPE, TYPE_FLOAT);
+                out.writeFloat(METRIC_FLOAT_VALUE, (Float) value);
+            } else if (value instanceof Long) {
+                out.writeEnum(METRIC_TYPE, TYPE_INT64);
+                out.writeInt64(METRIC_LONG_VALUE, (Long) value);
+            } else if (value instanceof Boolean) {
+                out.writeEnum(METRIC_TYPE, TYPE_BOOL);
+                out.writeBool(METRIC_BOOL_VALUE, (Boolean) value);
+            } else {
+                out.writeEnum(METRIC_TYPE, TYPE_BYTES);
+                writeBytes(out, METRIC_BYTES_VALUE, (byte[]) value);
+            }
+        }
+
+        if (payload.getBody() != null) {
+            writeBytes(out, PAYLOAD_BODY, payload.getBody());
+        }
+    }
+
+    private static void writePosition(CodedOutputStream out, KuraPosition position) throws IOException {
+        out.writeDouble(POSITION_LATITUDE, position.getLatitude());
+        out.writeDouble(POSITION_LONGITUDE, position.getLongitude());
+        if (position.getAltitude() != null) {
+            out.writeDouble(POSITION_ALTITUDE, position.getAltitude());
+        }
+        if (position.getPrecision() != null) {
+            out.writeDouble(POSITION_PRECISION, position.getPrecision());
+        }
+        if (position.getHeading() != null) {
+            out.writeDouble(POSITION_HEADING, position.getHeading());
+        }
+        if (position.getSpeed() != null) {
+            out.writeDouble(POSITION_SPEED, position.getSpeed());
+        }
+        if (position.getTimestamp() != null) {
+            out.writeInt64(POSITION_TIMESTAMP, position.getTimestamp().getTime());
+        }
+        if (position.getSatellites() != null) {
+            out.writeInt32(POSITION_SATELLITES, position.getSatellites());
+        }
+        if (position.getStatus() != null) {
+            out.writeInt32(POSITION_STATUS, position.getStatus());
+        }
+    }
+
+    private static void writeBytes(CodedOutputStream out, int fieldNumber, byte[] value) throws IOException {
+        writeLengthDelimitedHeader(out, fieldNumber, value.length);
+        out.writeRawBytes(value);
+    }
+
+    private static void writeLengthDelimitedHeader(CodedOutputStream out, int fieldNumber, int length)
+            throws IOException {
+        out.writeTag(fieldNumber, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeRawVarint32(length);
+    }
+}
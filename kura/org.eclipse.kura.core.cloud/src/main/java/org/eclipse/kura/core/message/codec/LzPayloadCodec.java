@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.message.codec;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A fast compressor of the LZ77 family. The payload is encoded in the LZ4 block format, preceded by the codec header
+ * and by the uncompressed length as a varint.
+ * <p>
+ * It compresses much less than deflate but with a fraction of its CPU cost, which suits devices whose processor is
+ * more constrained than their link.
+ */
+final class LzPayloadCodec implements PayloadCodec {
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MIN_LAST_MATCH_DISTANCE = 12;
+    private static final int MAX_OFFSET = 0xFFFF;
+    private static final int RUN_MASK = 0x0F;
+    // LZ4 cannot expand a run of bytes more than this
+    private static final int MAX_EXPANSION = 255;
+
+    private static final int HASH_LOG = 12;
+
+    private final ThreadLocal<int[]> hashTables = ThreadLocal.withInitial(() -> new int[1 << HASH_LOG]);
+
+    @Override
+    public String getName() {
+        return PayloadCodecs.LZ;
+    }
+
+    @Override
+    public boolean isEncoded(byte[] bytes) {
+        return PayloadCodecs.hasHeader(bytes, PayloadCodecs.LZ_ID);
+    }
+
+    @Override
+    public byte[] encode(byte[] source, String topic) throws IOException {
+        int limit = source.length - 1;
+        int offset = PayloadCodecs.HEADER_LENGTH + PayloadCodecs.varintSize(source.length);
+        if (offset >= limit) {
+            return null;
+        }
+        byte[] dest = new byte[limit];
+        PayloadCodecs.writeHeader(dest, PayloadCodecs.LZ_ID);
+        PayloadCodecs.writeVarint(dest, PayloadCodecs.HEADER_LENGTH, source.length);
+
+        int length = compress(source, dest, offset, this.hashTables.get());
+        return length < 0 ? null : Arrays.copyOf(dest, length);
+    }
+
+    @Override
+    public byte[] decode(byte[] bytes) throws IOException {
+        int[] position = { PayloadCodecs.HEADER_LENGTH };
+        int length = PayloadCodecs.readVarint(bytes, position);
+        if (length / MAX_EXPANSION > bytes.length || length > PayloadCodecs.MAX_DECODED_LENGTH) {
+            throw new IOException("Invalid uncompressed length " + length);
+        }
+
+        try {
+            return decompress(bytes, position[0], length);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Malformed LZ block", e);
+        }
+    }
+
+    /**
+     * @return the end of the compressed data in the destination, or -1 if it does not fit
+     */
+    private static int compress(byte[] src, byte[] dest, int destOffset, int[] hashTable) {
+        int anchor = 0;
+        int dp = destOffset;
+
+        if (src.length > MIN_LAST_MATCH_DISTANCE) {
+            Arrays.fill(hashTable, -1);
+            int matchLimit = src.length - LAST_LITERALS;
+            int ipLimit = src.length - MIN_LAST_MATCH_DISTANCE;
+
+            int ip = 0;
+            while (ip < ipLimit) {
+                int sequence = readInt(src, ip);
+                int hash = sequence * -1640531535 >>> 32 - HASH_LOG;
+                int ref = hashTable[hash];
+                hashTable[hash] = ip;
+                if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                    ip++;
+                    continue;
+                }
+
+                while (ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1]) {
+                    ip--;
+                    ref--;
+                }
+                int matchLength = MIN_MATCH;
+                while (ip + matchLength < matchLimit && src[ip + matchLength] == src[ref + matchLength]) {
+                    matchLength++;
+                }
+
+                dp = writeSequence(src, anchor, ip - anchor, ip - ref, matchLength - MIN_MATCH, dest, dp);
+                if (dp < 0) {
+                    return -1;
+                }
+                ip += matchLength;
+                anchor = ip;
+            }
+        }
+
+        return writeSequence(src, anchor, src.length - anchor, 0, -1, dest, dp);
+    }
+
+    /**
+     * Writes literals followed by a match, or only literals if the match length is negative.
+     */
+    private static int writeSequence(byte[] src, int literalStart, int literalLength, int matchOffset,
+            int matchLength, byte[] dest, int dp) {
+        int needed = 1 + literalLength / 255 + 1 + literalLength;
+        if (matchLength >= 0) {
+            needed += 2 + matchLength / 255 + 1;
+        }
+        if (dp + needed > dest.length) {
+            return -1;
+        }
+
+        int token = dp++;
+        dest[token] = (byte) (Math.min(literalLength, RUN_MASK) << 4);
+        dp = writeLength(literalLength, dest, dp);
+        System.arraycopy(src, literalStart, dest, dp, literalLength);
+        dp += literalLength;
+
+        if (matchLength >= 0) {
+            dest[dp++] = (byte) matchOffset;
+            dest[dp++] = (byte) (matchOffset >>> 8);
+            dest[token] |= (byte) Math.min(matchLength, RUN_MASK);
+            dp = writeLength(matchLength, dest, dp);
+        }
+        return dp;
+    }
+
+    private static int writeLength(int length, byte[] dest, int dp) {
+        if (length >= RUN_MASK) {
+            int remaining = length - RUN_MASK;
+            while (remaining >= 255) {
+                dest[dp++] = (byte) 255;
+                remaining -= 255;
+            }
+            dest[dp++] = (byte) remaining;
+        }
+        return dp;
+    }
+
+    private static byte[] decompress(byte[] src, int sp, int length) throws IOException {
+        byte[] dest = new byte[length];
+        int dp = 0;
+        while (true) {
+            int token = src[sp++] & 0xFF;
+
+            int literalLength = token >>> 4;
+            if (literalLength == RUN_MASK) {
+                int b;
+                do {
+                    b = src[sp++] & 0xFF;
+                    literalLength += b;
+                } while (b == 255);
+            }
+            System.arraycopy(src, sp, dest, dp, literalLength);
+            sp += literalLength;
+            dp += literalLength;
+            if (sp == src.length) {
+                break;
+            }
+
+            int offset = src[sp++] & 0xFF | (src[sp++] & 0xFF) << 8;
+            int matchLength = token & RUN_MASK;
+            if (matchLength == RUN_MASK) {
+                int b;
+                do {
+                    b = src[sp++] & 0xFF;
+                    matchLength += b;
+                } while (b == 255);
+            }
+            matchLength += MIN_MATCH;
+
+            int ref = dp - offset;
+            if (offset == 0 || ref < 0) {
+                throw new IOException("Invalid match offset " + offset);
+            }
+            // the match may overlap the bytes it produces
+            for (int i = 0; i < matchLength; i++) {
+                dest[dp++] = dest[ref++];
+            }
+        }
+
+        if (dp != length) {
+            throw new IOException("Uncompressed length mismatch");
+        }
+        return dest;
+    }
+
+    private static int readInt(byte[] src, int offset) {
+        return src[offset] & 0xFF | (src[offset + 1] & 0xFF) << 8 | (src[offset + 2] & 0xFF) << 16
+                | (src[offset + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.message.codec;
+
+import java.io.IOException;
+
+/**
+ * Compresses the serialized payloads published to the cloud.
+ * <p>
+ * The encoded bytes start with a header that identifies the codec, so that a receiver can decode a payload without
+ * knowing the configuration of the sender. The available codecs are returned by {@link PayloadCodecs}.
+ *
+ * @since 1.0
+ */
+public interface PayloadCodec {
+
+    /**
+     * Returns the name of the codec, as used in the configuration and advertised in the birth certificate.
+     */
+    public String getName();
+
+    /**
+     * Tells whether the bytes have been encoded by this codec, based on their header.
+     */
+    public boolean isEncoded(byte[] bytes);
+
+    /**
+     * Encodes a payload.
+     *
+     * @param source
+     *            the serialized payload
+     * @param topic
+     *            the topic the payload is published on, used by the codecs that adapt to the content of each topic.
+     *            May be null.
+     * @return the encoded payload, or null if the encoding is not shorter than the source
+     * @throws IOException
+     *             if the payload cannot be encoded
+     */
+    public byte[] encode(byte[] source, String topic) throws IOException;
+
+    /**
+     * Decodes a payload encoded by this codec.
+     *
+     * @throws IOException
+     *             if the bytes are not a valid encoding
+     */
+    public byte[] decode(byte[] bytes) throws IOException;
+}
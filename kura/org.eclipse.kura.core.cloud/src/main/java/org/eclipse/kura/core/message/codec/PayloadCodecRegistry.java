@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.message.codec;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A set of {@link PayloadCodec}s sharing their own preset dictionaries.
+ * <p>
+ * The dictionaries trained for the published topics and the ones received from remote encoders are kept by the
+ * registry, so that each cloud service only learns and references the dictionaries of its own connection.
+ *
+ * @since 1.0
+ */
+public final class PayloadCodecRegistry {
+
+    private final PayloadDictionaries dictionaries = new PayloadDictionaries();
+    private final List<PayloadCodec> codecs;
+
+    public PayloadCodecRegistry() {
+        this.codecs = Collections.unmodifiableList(Arrays.asList(PayloadCodecs.GZIP_CODEC, PayloadCodecs.LZ_CODEC,
+                new DeflatePayloadCodec(PayloadCodecs.DEFLATE, PayloadCodecs.DEFLATE_POOL, null, this.dictionaries),
+                new DeflatePayloadCodec(PayloadCodecs.DEFLATE_DICTIONARY, PayloadCodecs.DEFLATE_POOL,
+                        this.dictionaries, this.dictionaries)));
+    }
+
+    /**
+     * Returns all the codecs of the registry.
+     */
+    public List<PayloadCodec> getCodecs() {
+        return this.codecs;
+    }
+
+    /**
+     * Returns the codec with the given name.
+     *
+     * @return the codec, or null if the name is {@link PayloadCodecs#NONE}, empty or unknown
+     */
+    public PayloadCodec getCodec(String name) {
+        for (PayloadCodec codec : this.codecs) {
+            if (codec.getName().equals(name)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a codec able to decode the bytes.
+     *
+     * @return the codec, or null if the bytes are not encoded
+     */
+    public PayloadCodec getDecoder(byte[] bytes) {
+        for (PayloadCodec codec : this.codecs) {
+            if (codec.isEncoded(bytes)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Records that a payload carrying the preset dictionary with the given identifier has been delivered. Until
+     * then, the dictionary is sent with every payload that uses it.
+     *
+     * @see PayloadCodecs#getInlineDictionary(byte[])
+     */
+    public void confirmDictionary(int id) {
+        this.dictionaries.confirm(id);
+    }
+}
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.message.codec;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Gives access to the available {@link PayloadCodec}s.
+ * <p>
+ * The codecs returned by the static methods belong to a default {@link PayloadCodecRegistry}, used by the callers
+ * that do not own a registry. The cloud services create their own registry, so that the preset dictionaries of a
+ * connection are never looked up by another one.
+ * <p>
+ * The GZip codec produces standard GZip streams. The other codecs prefix the payload with the {@code 'K' 'C'} magic
+ * bytes followed by a codec identifier. Neither prefix is a valid start of a serialized Kura payload.
+ *
+ * @since 1.0
+ */
+public final class PayloadCodecs {
+
+    public static final String NONE = "none";
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+    public static final String DEFLATE_DICTIONARY = "deflate-dictionary";
+    public static final String LZ = "lz";
+
+    static final byte MAGIC_0 = 'K';
+    static final byte MAGIC_1 = 'C';
+    static final int HEADER_LENGTH = 3;
+
+    static final byte DEFLATE_ID = 1;
+    static final byte LZ_ID = 2;
+    static final byte DEFLATE_WITH_DICTIONARY_ID = 3;
+
+    /** The maximum length of a decoded payload, longer payloads are rejected as invalid */
+    static final int MAX_DECODED_LENGTH = 16 * 1024 * 1024;
+
+    // the codecs without state are shared by all the registries
+    static final DeflaterPool DEFLATE_POOL = new DeflaterPool(false);
+    static final PayloadCodec GZIP_CODEC = new GZipPayloadCodec(new DeflaterPool(true));
+    static final PayloadCodec LZ_CODEC = new LzPayloadCodec();
+
+    private static final PayloadCodecRegistry DEFAULT_REGISTRY = new PayloadCodecRegistry();
+
+    private PayloadCodecs() {
+    }
+
+    /**
+     * Returns all the available codecs.
+     */
+    public static List<PayloadCodec> getCodecs() {
+        return DEFAULT_REGISTRY.getCodecs();
+    }
+
+    /**
+     * Returns the codec with the given name.
+     *
+     * @return the codec, or null if the name is {@link #NONE}, empty or unknown
+     */
+    public static PayloadCodec getCodec(String name) {
+        return DEFAULT_REGISTRY.getCodec(name);
+    }
+
+    /**
+     * Returns a codec able to decode the bytes.
+     *
+     * @return the codec, or null if the bytes are not encoded
+     */
+    public static PayloadCodec getDecoder(byte[] bytes) {
+        return DEFAULT_REGISTRY.getDecoder(bytes);
+    }
+
+    /**
+     * Returns the identifier of the preset dictionary carried by an encoded payload.
+     *
+     * @return the dictionary identifier, or null if the payload does not carry a dictionary
+     */
+    public static Integer getInlineDictionary(byte[] bytes) {
+        if (!hasHeader(bytes, DEFLATE_WITH_DICTIONARY_ID)) {
+            return null;
+        }
+        try {
+            int[] position = { HEADER_LENGTH };
+            int length = readVarint(bytes, position);
+            if (length > bytes.length - position[0]) {
+                return null;
+            }
+            return PayloadDictionaries.checksum(bytes, position[0], length);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Records that a payload carrying the preset dictionary with the given identifier has been delivered. Until
+     * then, the dictionary is sent with every payload that uses it.
+     *
+     * @see #getInlineDictionary(byte[])
+     */
+    public static void confirmDictionary(int id) {
+        DEFAULT_REGISTRY.confirmDictionary(id);
+    }
+
+    static boolean hasHeader(byte[] bytes, byte codecId) {
+        return bytes != null && bytes.length > HEADER_LENGTH && bytes[0] == MAGIC_0 && bytes[1] == MAGIC_1
+                && bytes[2] == codecId;
+    }
+
+    static int writeHeader(byte[] dest, byte codecId) {
+        dest[0] = MAGIC_0;
+        dest[1] = MAGIC_1;
+        dest[2] = codecId;
+        return HEADER_LENGTH;
+    }
+
+    static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    static int writeVarint(byte[] dest, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            dest[offset++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        dest[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * Reads a varint at {@code position[0]} and moves the position after it.
+     */
+    static int readVarint(byte[] src, int[] position) throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (position[0] >= src.length) {
+                throw new IOException("Truncated varint");
+            }
+            byte b = src[position[0]++];
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (result < 0) {
+                    throw new IOException("Invalid length");
+                }
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
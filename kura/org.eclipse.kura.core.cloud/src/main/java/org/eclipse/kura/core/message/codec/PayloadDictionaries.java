@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.message.codec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Adler32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Trains a preset deflate dictionary for each topic on its first payloads, and keeps the known dictionaries by their
+ * Adler-32 checksum, which is also the dictionary identifier found in the zlib streams. As different dictionaries
+ * can have the same checksum, the bytes of a dictionary are compared with the known one before replacing it.
+ * <p>
+ * Payloads published on the same topic usually share most of their metric names and part of their values, so a
+ * dictionary made of a few recent payloads lets deflate reference them even in payloads too small to compress on
+ * their own.
+ * <p>
+ * A trained dictionary is sent inline with every payload until the delivery of one of these payloads is confirmed
+ * with {@link #confirm(int)}, so that a lost payload never leaves the receivers unable to decode the next ones.
+ */
+final class PayloadDictionaries {
+
+    private static final Logger logger = LoggerFactory.getLogger(PayloadDictionaries.class);
+
+    static final int MAX_DICTIONARY_SIZE = 4096;
+    static final int TRAINING_SAMPLES = 8;
+    static final int INLINE_INTERVAL = 100;
+
+    private static final int MAX_SAMPLE_SIZE = 64 * 1024;
+    private static final int MAX_TOPICS = 128;
+    private static final int MAX_DICTIONARIES = 256;
+
+    private final Map<String, TopicState> topics = new LinkedHashMap<String, TopicState>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TopicState> eldest) {
+            return size() > MAX_TOPICS;
+        }
+    };
+
+    private final Map<Integer, byte[]> dictionaries = new LinkedHashMap<Integer, byte[]>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+            return size() > MAX_DICTIONARIES;
+        }
+    };
+
+    /**
+     * Records a payload published on a topic.
+     *
+     * @return the dictionary to compress the payload with, or null if the topic has not been trained yet
+     */
+    synchronized Dictionary select(String topic, byte[] payload) {
+        TopicState state = this.topics.computeIfAbsent(topic, t -> new TopicState());
+        if (state.dictionary == null && payload.length <= MAX_SAMPLE_SIZE) {
+            state.samples.add(payload);
+            if (state.samples.size() >= TRAINING_SAMPLES) {
+                Dictionary dictionary = train(state.samples);
+                state.samples.clear();
+                // on a checksum collision with another trained dictionary the topic is trained again on the next
+                // samples, the identifier would not tell which dictionary a stream uses
+                if (isTrained(dictionary.id, dictionary.bytes)) {
+                    logger.debug("Dictionary {} of topic {} collides with another dictionary, retraining",
+                            Integer.toHexString(dictionary.id), topic);
+                } else {
+                    state.dictionary = dictionary;
+                    this.dictionaries.put(dictionary.id, dictionary.bytes);
+                }
+            }
+        }
+        return state.dictionary;
+    }
+
+    /**
+     * Returns the dictionary with the given identifier, or null if it is not known.
+     */
+    synchronized byte[] get(int id) {
+        return this.dictionaries.get(id);
+    }
+
+    /**
+     * Adds a dictionary received from a remote encoder. A known dictionary with the same identifier but different
+     * bytes is replaced, unless it has been trained locally.
+     */
+    synchronized void register(byte[] dictionary) {
+        int id = checksum(dictionary, 0, dictionary.length);
+        byte[] known = this.dictionaries.get(id);
+        if (known != null && Arrays.equals(known, dictionary)) {
+            return;
+        }
+        if (isTrained(id, dictionary)) {
+            logger.warn("Received dictionary {} collides with a trained dictionary, ignoring it",
+                    Integer.toHexString(id));
+            return;
+        }
+        this.dictionaries.put(id, dictionary);
+    }
+
+    /**
+     * Records that a payload carrying the dictionary with the given identifier has been delivered, the next payloads
+     * compressed with the dictionary can reference it without carrying it.
+     */
+    synchronized void confirm(int id) {
+        for (TopicState state : this.topics.values()) {
+            if (state.dictionary != null && state.dictionary.id == id) {
+                state.dictionary.confirm();
+            }
+        }
+    }
+
+    /**
+     * Tells whether a topic uses a dictionary with the given identifier and bytes other than the given ones.
+     */
+    private boolean isTrained(int id, byte[] bytes) {
+        for (TopicState state : this.topics.values()) {
+            Dictionary dictionary = state.dictionary;
+            if (dictionary != null && dictionary.id == id && !Arrays.equals(dictionary.bytes, bytes)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Dictionary train(List<byte[]> samples) {
+        int size = 0;
+        for (byte[] sample : samples) {
+            size += sample.length;
+        }
+
+        // zlib favours the end of the dictionary, so the most recent samples are kept
+        byte[] bytes = new byte[Math.min(size, MAX_DICTIONARY_SIZE)];
+        int end = bytes.length;
+        for (int i = samples.size() - 1; i >= 0 && end > 0; i--) {
+            byte[] sample = samples.get(i);
+            int length = Math.min(sample.length, end);
+            System.arraycopy(sample, sample.length - length, bytes, end - length, length);
+            end -= length;
+        }
+        return new Dictionary(checksum(bytes, 0, bytes.length), bytes);
+    }
+
+    /**
+     * Returns the identifier of a dictionary, its Adler-32 checksum.
+     */
+    static int checksum(byte[] bytes, int offset, int length) {
+        Adler32 adler = new Adler32();
+        adler.update(bytes, offset, length);
+        return (int) adler.getValue();
+    }
+
+    static final class Dictionary {
+
+        final int id;
+        final byte[] bytes;
+        private boolean confirmed;
+        private int uses;
+
+        Dictionary(int id, byte[] bytes) {
+            this.id = id;
+            this.bytes = bytes;
+        }
+
+        /**
+         * Tells whether the dictionary should be sent along with the next payload, which is the case until a payload
+         * carrying it is delivered and then periodically, so that receivers that restarted can learn it.
+         */
+        synchronized boolean nextUseInline() {
+            if (!this.confirmed || ++this.uses >= INLINE_INTERVAL) {
+                this.uses = 0;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void confirm() {
+            this.confirmed = true;
+        }
+    }
+
+    private static final class TopicState {
+
+        private final List<byte[]> samples = new ArrayList<>();
+        private Dictionary dictionary;
+    }
+}
@@ -11,14 +11,20 @@
  *******************************************************************************/
 package org.eclipse.kura.core.data;
 
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -32,12 +38,15 @@ import java.util.regex.Pattern;
 import org.eclipse.kura.KuraConnectException;
 import org.eclipse.kura.KuraException;
 import org.eclipse.kura.KuraNotConnectedException;
+import org.eclipse.kura.KuraStoreCapacityReachedException;
 import org.eclipse.kura.KuraStoreException;
 import org.eclipse.kura.KuraTooManyInflightMessagesException;
 import org.eclipse.kura.configuration.ConfigurableComponent;
 import org.eclipse.kura.configuration.ConfigurationService;
 import org.eclipse.kura.core.data.store.DbDataStore;
+import org.eclipse.kura.core.data.store.SegmentDataStore;
 import org.eclipse.kura.core.internal.data.TokenBucket;
+import org.eclipse.kura.core.util.MqttTopicUtil;
 import org.eclipse.kura.data.DataService;
 import org.eclipse.kura.data.DataTransportService;
 import org.eclipse.kura.data.DataTransportToken;
@@ -68,6 +77,11 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
 
     private static final int TRANSPORT_TASK_TIMEOUT = 1; // In seconds
 
+    // Confirmations received before the publisher tracked their token are kept at most for this time
+    private static final long EARLY_CONFIRMATION_TIMEOUT = 10000; // In milliseconds
+
+    private static final int MAX_CONFIRMATION_BATCH_SIZE = 100;
+
     private DataServiceOptions dataServiceOptions;
 
     private DataTransportService dataTransportService;
@@ -82,16 +96,28 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
 
     private DataStore store;
 
-    private Map<DataTransportToken, Integer> inFlightMsgIds;
+    // In-flight messages without payload, they keep the topic needed to notify the confirmation
+    private Map<DataTransportToken, DataMessage> inFlightMessages;
+
+    // Tokens confirmed by the transport before being tracked in inFlightMessages, with their confirmation time
+    private final Map<DataTransportToken, Long> earlyConfirmations = new ConcurrentHashMap<>();
+
+    // Confirmed messages waiting to be applied to the store by the confirmation task
+    private final BlockingQueue<DataMessage> confirmedMessages = new LinkedBlockingQueue<>();
+    private ExecutorService confirmationExecutor;
 
     private ScheduledExecutorService congestionExecutor;
-    private ScheduledFuture<?> congestionFuture;
+    private volatile ScheduledFuture<?> congestionFuture;
 
     private CloudConnectionStatusService cloudConnectionStatusService;
     private CloudConnectionStatusEnum notificationStatus = CloudConnectionStatusEnum.OFF;
 
     private TokenBucket throttle;
 
+    private volatile PublishLanes publishLanes;
+
+    private volatile PayloadMerger payloadMerger;
+
     private final Lock lock = new ReentrantLock();
     private boolean notifyPending;
     private final Condition lockCondition = this.lock.newCondition();
@@ -122,13 +148,20 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
         this.connectionMonitorExecutor = Executors.newSingleThreadScheduledExecutor();
         this.publisherExecutor = Executors.newSingleThreadExecutor();
         this.congestionExecutor = Executors.newSingleThreadScheduledExecutor();
+        this.confirmationExecutor = Executors.newSingleThreadExecutor();
 
         createThrottle();
+        createPublishLanes();
         submitPublishingWork();
+        this.confirmationExecutor.execute(this::applyConfirmationsLoop);
 
-        this.store = new DbDataStore(pid);
+        this.store = createStore(pid);
 
-        restartDbServiceTracker(this.dataServiceOptions.getDbServiceInstancePid());
+        if (this.dataServiceOptions.isH2DbStore()) {
+            restartDbServiceTracker(this.dataServiceOptions.getDbServiceInstancePid());
+        } else {
+            startDbStore();
+        }
 
         this.dataServiceListeners = new DataServiceListenerS(componentContext);
 
@@ -140,6 +173,18 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
         startConnectionMonitorTask();
     }
 
+    private DataStore createStore(String pid) {
+        if (this.dataServiceOptions.isH2DbStore()) {
+            return new DbDataStore(pid);
+        }
+        return new SegmentDataStore(Paths.get(this.dataServiceOptions.getStoreSegmentDirectory(), pid),
+                this.dataServiceOptions.getStoreSegmentSize());
+    }
+
+    private boolean isStoreAttached() {
+        return this.dbService != null || !this.dataServiceOptions.isH2DbStore();
+    }
+
     private void restartDbServiceTracker(String kuraServicePid) {
         stopDbServiceTracker();
         try {
@@ -161,6 +206,9 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
                         public void modifiedService(ServiceReference<H2DbService> reference, H2DbService service) {
                             logger.info("H2DbService instance updated, recreating table if needed...");
                             synchronized (DataServiceImpl.this) {
+                                DataServiceImpl.this.store.setWriteBatching(
+                                        DataServiceImpl.this.dataServiceOptions.getStoreWriteBatchSize(),
+                                        DataServiceImpl.this.dataServiceOptions.getStoreWriteLingerTime());
                                 DataServiceImpl.this.store.update(
                                         DataServiceImpl.this.dataServiceOptions.getStoreHousekeeperInterval(),
                                         DataServiceImpl.this.dataServiceOptions.getStorePurgeAge(),
@@ -190,6 +238,8 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
 
     private synchronized void startDbStore() {
         try {
+            this.store.setWriteBatching(this.dataServiceOptions.getStoreWriteBatchSize(),
+                    this.dataServiceOptions.getStoreWriteLingerTime());
             this.store.start(this.dbService, this.dataServiceOptions.getStoreHousekeeperInterval(),
                     this.dataServiceOptions.getStorePurgeAge(), this.dataServiceOptions.getStoreCapacity());
 
@@ -197,14 +247,14 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
             List<DataMessage> inFlightMsgs = this.store.allInFlightMessagesNoPayload();
 
             // The map associating a DataTransportToken with a message ID
-            this.inFlightMsgIds = new ConcurrentHashMap<>();
+            this.inFlightMessages = new ConcurrentHashMap<>();
 
             if (inFlightMsgs != null) {
                 for (DataMessage message : inFlightMsgs) {
 
                     DataTransportToken token = new DataTransportToken(message.getPublishedMessageId(),
                             message.getSessionId());
-                    this.inFlightMsgIds.put(token, message.getId());
+                    this.inFlightMessages.put(token, message);
 
                     logger.debug("Restored in-fligh messages from store. Topic: {}, ID: {}, MQTT message ID: {}",
                             new Object[] { message.getTopic(), message.getId(), message.getPublishedMessageId() });
@@ -220,16 +270,36 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
 
         stopConnectionMonitorTask();
 
-        final String oldDbServicePid = this.dataServiceOptions.getDbServiceInstancePid();
+        final DataServiceOptions oldOptions = this.dataServiceOptions;
+        final String oldDbServicePid = oldOptions.getDbServiceInstancePid();
 
         this.dataServiceOptions = new DataServiceOptions(properties);
 
         createThrottle();
+        if (!oldOptions.getPublishLanes().equals(this.dataServiceOptions.getPublishLanes())) {
+            createPublishLanes();
+        }
 
         final String currentDbServicePid = this.dataServiceOptions.getDbServiceInstancePid();
 
-        if (oldDbServicePid.equals(currentDbServicePid)) {
+        if (isStoreTypeChanged(oldOptions)) {
+            logger.info("Data Store configuration changed, switching to the {} store",
+                    this.dataServiceOptions.getStoreType());
+            stopDbServiceTracker();
+            this.store.stop();
+            this.store = createStore(this.dataServiceOptions.getKuraServicePid());
+            if (this.dataServiceOptions.isH2DbStore()) {
+                restartDbServiceTracker(currentDbServicePid);
+            } else {
+                startDbStore();
+            }
+        } else if (!this.dataServiceOptions.isH2DbStore()) {
+            this.store.update(this.dataServiceOptions.getStoreHousekeeperInterval(),
+                    this.dataServiceOptions.getStorePurgeAge(), this.dataServiceOptions.getStoreCapacity());
+        } else if (oldDbServicePid.equals(currentDbServicePid)) {
             if (this.dbService != null) {
+                this.store.setWriteBatching(this.dataServiceOptions.getStoreWriteBatchSize(),
+                        this.dataServiceOptions.getStoreWriteLingerTime());
                 this.store.update(this.dataServiceOptions.getStoreHousekeeperInterval(),
                         this.dataServiceOptions.getStorePurgeAge(), this.dataServiceOptions.getStoreCapacity());
             }
@@ -242,6 +312,15 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
         }
     }
 
+    private boolean isStoreTypeChanged(DataServiceOptions oldOptions) {
+        if (oldOptions.isH2DbStore() != this.dataServiceOptions.isH2DbStore()) {
+            return true;
+        }
+        return !this.dataServiceOptions.isH2DbStore()
+                && (!oldOptions.getStoreSegmentDirectory().equals(this.dataServiceOptions.getStoreSegmentDirectory())
+                        || oldOptions.getStoreSegmentSize() != this.dataServiceOptions.getStoreSegmentSize());
+    }
+
     protected void deactivate(ComponentContext componentContext) {
         logger.info("Deactivating {}...", this.dataServiceOptions.getKuraServicePid());
 
@@ -268,6 +347,14 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
 
         this.dataTransportService.removeDataTransportListener(this);
 
+        // Apply the confirmations still queued before stopping the store
+        this.confirmationExecutor.shutdownNow();
+        List<DataMessage> pendingConfirmations = new ArrayList<>();
+        this.confirmedMessages.drainTo(pendingConfirmations);
+        if (!pendingConfirmations.isEmpty()) {
+            applyConfirmations(pendingConfirmations);
+        }
+
         this.store.stop();
 
         stopDbServiceTracker();
@@ -315,6 +402,16 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
         this.watchdogService = null;
     }
 
+    public void setPayloadMerger(PayloadMerger payloadMerger) {
+        this.payloadMerger = payloadMerger;
+    }
+
+    public void unsetPayloadMerger(PayloadMerger payloadMerger) {
+        if (this.payloadMerger == payloadMerger) {
+            this.payloadMerger = null;
+        }
+    }
+
     @Override
     public void addDataServiceListener(DataServiceListener listener) {
         this.dataServiceListeners.add(listener);
@@ -359,7 +456,7 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
                         "New session established. Unpublishing all in-flight messages. Disregarding the QoS level, this may cause duplicate messages.");
                 try {
                     this.store.unpublishAllInFlighMessages();
-                    this.inFlightMsgIds.clear();
+                    this.inFlightMessages.clear();
                 } catch (KuraStoreException e) {
                     logger.error("Failed to unpublish in-flight messages", e);
                 }
@@ -367,7 +464,7 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
                 logger.info("New session established. Dropping all in-flight messages.");
                 try {
                     this.store.dropAllInFlightMessages();
-                    this.inFlightMsgIds.clear();
+                    this.inFlightMessages.clear();
                 } catch (KuraStoreException e) {
                     logger.error("Failed to drop in-flight messages", e);
                 }
@@ -440,48 +537,110 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
     }
 
     @Override
-    // It's very important that the publishInternal and messageConfirmed methods are synchronized
-    public synchronized void onMessageConfirmed(DataTransportToken token) {
+    // Not synchronized: acknowledgements are handled concurrently with publishing,
+    // the store is updated asynchronously by the confirmation task
+    public void onMessageConfirmed(DataTransportToken token) {
 
         logger.debug("Confirmed message with MQTT message ID: {} on session ID: {}", token.getMessageId(),
                 token.getSessionId());
 
-        Integer messageId = this.inFlightMsgIds.remove(token);
-        if (messageId == null) {
-            logger.info(
-                    "Confirmed message published with MQTT message ID: {} not tracked in the map of in-flight messages",
-                    token.getMessageId());
-        } else {
-
-            DataMessage confirmedMessage = null;
-            try {
-                logger.info("Confirmed message ID: {} to store", messageId);
-                this.store.confirmed(messageId);
-                confirmedMessage = this.store.get(messageId);
-            } catch (KuraStoreException e) {
-                logger.error("Cannot confirm message to store", e);
-            }
-
-            // Notify the listeners
-            if (confirmedMessage != null) {
-                String topic = confirmedMessage.getTopic();
-                this.dataServiceListeners.onMessageConfirmed(messageId, topic);
+        DataMessage message = this.inFlightMessages.remove(token);
+        if (message == null) {
+            // The publisher may not have tracked the token yet. Whoever removes it from
+            // the map of in-flight messages is in charge of queuing the confirmation.
+            purgeEarlyConfirmations();
+            this.earlyConfirmations.put(token, System.currentTimeMillis());
+            message = this.inFlightMessages.remove(token);
+            if (message == null) {
+                logger.debug(
+                        "Confirmed message published with MQTT message ID: {} not yet tracked in the map of in-flight messages",
+                        token.getMessageId());
             } else {
-                logger.error("Confirmed Message with ID {} could not be loaded from the DataStore.", messageId);
+                this.earlyConfirmations.remove(token);
             }
         }
 
-        if (this.inFlightMsgIds.size() < this.dataServiceOptions.getMaxInFlightMessages()) {
+        if (message != null) {
+            this.confirmedMessages.add(message);
+        }
+
+        if (this.inFlightMessages.size() < this.dataServiceOptions.getMaxInFlightMessages()) {
             handleInFlightDecongestion();
         }
 
         signalPublisher();
     }
 
+    private void purgeEarlyConfirmations() {
+        long expired = System.currentTimeMillis() - EARLY_CONFIRMATION_TIMEOUT;
+        Iterator<Map.Entry<DataTransportToken, Long>> iterator = this.earlyConfirmations.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<DataTransportToken, Long> entry = iterator.next();
+            if (entry.getValue() < expired) {
+                logger.info(
+                        "Confirmed message published with MQTT message ID: {} not tracked in the map of in-flight messages",
+                        entry.getKey().getMessageId());
+                iterator.remove();
+            }
+        }
+    }
+
+    private void trackInFlightMessage(DataTransportToken token, DataMessage message) {
+        // Check if the token is already tracked in the map (in which case we are in trouble)
+        DataMessage trackedMessage = this.inFlightMessages.put(token, message);
+        if (trackedMessage != null) {
+            logger.error("Token already tracked: {} - {}", token.getSessionId(), token.getMessageId());
+        }
+
+        // The confirmation may have been received before the token was tracked
+        Long confirmedOn = this.earlyConfirmations.remove(token);
+        if (confirmedOn != null && System.currentTimeMillis() - confirmedOn < EARLY_CONFIRMATION_TIMEOUT
+                && this.inFlightMessages.remove(token, message)) {
+            logger.debug("Message with ID: {} confirmed before being tracked", message.getId());
+            this.confirmedMessages.add(message);
+            signalPublisher();
+        }
+    }
+
+    private void applyConfirmationsLoop() {
+        Thread.currentThread().setName("DataServiceImpl:Confirm");
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<DataMessage> messages = new ArrayList<>();
+                messages.add(this.confirmedMessages.take());
+                this.confirmedMessages.drainTo(messages, MAX_CONFIRMATION_BATCH_SIZE - 1);
+                applyConfirmations(messages);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.debug("Exited confirmation loop.");
+    }
+
+    private void applyConfirmations(List<DataMessage> messages) {
+        List<Integer> msgIds = new ArrayList<>(messages.size());
+        for (DataMessage message : messages) {
+            msgIds.add(message.getId());
+        }
+
+        try {
+            logger.info("Confirmed {} messages to store", msgIds.size());
+            logger.debug("Confirmed message IDs: {}", msgIds);
+            this.store.confirmed(msgIds);
+        } catch (KuraStoreException e) {
+            logger.error("Cannot confirm messages to store", e);
+        }
+
+        // Notify the listeners, the in-flight messages keep their topic
+        for (DataMessage message : messages) {
+            this.dataServiceListeners.onMessageConfirmed(message.getId(), message.getTopic());
+        }
+    }
+
     @Override
     public void connect() throws KuraConnectException {
         stopConnectionMonitorTask();
-        if (this.dbService == null) {
+        if (!isStoreAttached()) {
             throw new KuraConnectException("H2DbService instance not attached, not connecting");
         }
 
@@ -526,14 +685,114 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
 
         logger.info("Storing message on topic: {}, priority: {}", topic, priority);
 
-        DataMessage dataMsg = this.store.store(topic, payload, qos, retain, priority);
+        checkPublishLaneDepth(priority);
+
+        List<DataMessage> supersededMessages = getSupersededMessages(topic, qos);
+        byte[] storedPayload = payload;
+        if (!supersededMessages.isEmpty()
+                && matchesAny(this.dataServiceOptions.getStoreCoalescingMergeTopics(), topic)) {
+            storedPayload = mergePayloads(supersededMessages, payload);
+        }
+
+        DataMessage dataMsg = this.store.store(topic, storedPayload, qos, retain, priority);
         logger.info("Stored message on topic: {}, priority: {}", topic, priority);
 
+        if (!supersededMessages.isEmpty()) {
+            deleteSupersededMessages(supersededMessages, topic);
+        }
+
         signalPublisher();
 
         return dataMsg.getId();
     }
 
+    /**
+     * Returns the unpublished messages that will be superseded by a new message on the given topic,
+     * if the topic is configured for coalescing.
+     */
+    private List<DataMessage> getSupersededMessages(String topic, int qos) throws KuraStoreException {
+        int maxQos = this.dataServiceOptions.getStoreCoalescingMaxQos();
+        if (qos > maxQos || !matchesAny(this.dataServiceOptions.getStoreCoalescingTopics(), topic)) {
+            return Collections.emptyList();
+        }
+
+        List<DataMessage> supersededMessages = new ArrayList<>();
+        for (DataMessage message : this.store.unpublishedMessagesNoPayload(topic)) {
+            if (message.getQos() <= maxQos) {
+                supersededMessages.add(message);
+            }
+        }
+        return supersededMessages;
+    }
+
+    private byte[] mergePayloads(List<DataMessage> supersededMessages, byte[] payload) throws KuraStoreException {
+        PayloadMerger merger = this.payloadMerger;
+        if (merger == null) {
+            logger.warn("No payload merger available, superseded messages will be discarded");
+            return payload;
+        }
+
+        List<DataMessage> oldestFirst = new ArrayList<>(supersededMessages);
+        oldestFirst.sort(Comparator.comparing(DataMessage::getCreatedOn).thenComparingInt(DataMessage::getId));
+
+        List<byte[]> olderPayloads = new ArrayList<>(oldestFirst.size());
+        for (DataMessage message : oldestFirst) {
+            DataMessage storedMessage = this.store.get(message.getId());
+            if (storedMessage != null && storedMessage.getPayload() != null) {
+                olderPayloads.add(storedMessage.getPayload());
+            }
+        }
+
+        byte[] mergedPayload = merger.merge(olderPayloads, payload);
+        if (mergedPayload == null) {
+            logger.warn("Cannot merge the payloads of the superseded messages, they will be discarded");
+            return payload;
+        }
+        return mergedPayload;
+    }
+
+    private void deleteSupersededMessages(List<DataMessage> supersededMessages, String topic) {
+        List<Integer> msgIds = new ArrayList<>(supersededMessages.size());
+        for (DataMessage message : supersededMessages) {
+            msgIds.add(message.getId());
+        }
+
+        try {
+            int deleted = this.store.deleteUnpublishedMessages(msgIds);
+            logger.info("Removed {} superseded messages on topic: {}", deleted, topic);
+        } catch (KuraStoreException e) {
+            logger.warn("Cannot remove superseded messages on topic: {}", topic, e);
+        }
+    }
+
+    private static boolean matchesAny(List<String> topicFilters, String topic) {
+        for (String topicFilter : topicFilters) {
+            try {
+                if (MqttTopicUtil.isMatched(topicFilter, topic)) {
+                    return true;
+                }
+            } catch (IllegalArgumentException e) {
+                logger.warn("Invalid topic filter: {}", topicFilter);
+            }
+        }
+        return false;
+    }
+
+    private void checkPublishLaneDepth(int priority) throws KuraStoreException {
+        PublishLanes lanes = this.publishLanes;
+        // Priority 0 and 1 messages bypass the queue depth check, like the store capacity check
+        if (lanes == null || priority == 0 || priority == 1) {
+            return;
+        }
+
+        PublishLanes.Lane lane = lanes.getLane(priority);
+        if (lane.getMaxQueueDepth() > 0 && this.store.getUnpublishedMessageCount(lane.getMinPriority(),
+                lane.getMaxPriority()) >= lane.getMaxQueueDepth()) {
+            logger.error("Publish lane {} queue depth exceeded", lane);
+            throw new KuraStoreCapacityReachedException("Publish lane " + lane + " queue depth exceeded");
+        }
+    }
+
     @Override
     public List<Integer> getUnpublishedMessageIds(String topicRegex) throws KuraStoreException {
         List<DataMessage> messages = this.store.allUnpublishedMessagesNoPayload();
@@ -593,7 +852,7 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
                     Thread.currentThread().setName("DataServiceImpl:ReconnectTask");
                     boolean connected = false;
                     try {
-                        if (DataServiceImpl.this.dbService == null) {
+                        if (!isStoreAttached()) {
                             logger.warn("H2DbService instance not attached, not connecting");
                             return;
                         }
@@ -668,6 +927,18 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
         }
     }
 
+    private void createPublishLanes() {
+        try {
+            this.publishLanes = PublishLanes.parse(this.dataServiceOptions.getPublishLanes());
+            if (this.publishLanes != null) {
+                logger.info("Publishing with lanes {}", this.publishLanes.getLanes());
+            }
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid publish lanes configuration, publishing strictly by priority", e);
+            this.publishLanes = null;
+        }
+    }
+
     private void stopConnectionMonitorTask() {
         if (this.connectionMonitorFuture != null && !this.connectionMonitorFuture.isDone()) {
 
@@ -693,8 +964,8 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
         this.publisherExecutor.execute(new PublishManager());
     }
 
-    // It's very important that the publishInternal and messageConfirmed methods are synchronized
-    private synchronized void publishInternal(DataMessage message) throws KuraException {
+    // The token is tracked by trackInFlightMessage which copes with confirmations received before tracking
+    private void publishInternal(DataMessage message) throws KuraException {
 
         String topic = message.getTopic();
         byte[] payload = message.getPayload();
@@ -710,19 +981,47 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
             DataServiceImpl.this.store.published(msgId);
             logger.debug("Published message with ID: {}", msgId);
         } else {
-
-            // Check if the token is already tracked in the map (in which case we are in trouble)
-            Integer trackedMsgId = DataServiceImpl.this.inFlightMsgIds.get(token);
-            if (trackedMsgId != null) {
-                logger.error("Token already tracked: {} - {}", token.getSessionId(), token.getMessageId());
-            }
-
-            DataServiceImpl.this.inFlightMsgIds.put(token, msgId);
+            trackInFlightMessage(token, new DataMessage.Builder(msgId).withTopic(topic).build());
             DataServiceImpl.this.store.published(msgId, token.getMessageId(), token.getSessionId());
             logger.debug("Published message with ID: {} and MQTT message ID: {}", msgId, token.getMessageId());
         }
     }
 
+    private List<DataMessage> publishBatchInternal(List<DataMessage> messages) throws KuraException {
+
+        List<DataMessage> publishedMessages = new ArrayList<>(messages.size());
+
+        try {
+            for (DataMessage message : messages) {
+                int msgId = message.getId();
+
+                logger.debug("Publishing message with ID: {} on topic: {}, priority: {}", msgId, message.getTopic(),
+                        message.getPriority());
+
+                DataTransportToken token = this.dataTransportService.publish(message.getTopic(), message.getPayload(),
+                        message.getQos(), message.isRetain());
+
+                DataMessage.Builder builder = new DataMessage.Builder(msgId).withTopic(message.getTopic());
+                if (token == null) {
+                    builder.withPublishedMessageId(-1);
+                } else {
+                    builder.withPublishedMessageId(token.getMessageId()).withSessionId(token.getSessionId());
+                }
+                DataMessage publishedMessage = builder.build();
+                if (token != null) {
+                    trackInFlightMessage(token, publishedMessage);
+                }
+                publishedMessages.add(publishedMessage);
+            }
+        } finally {
+            // Whatever has been handed over to the transport must be marked as published
+            this.store.published(publishedMessages);
+            logger.debug("Published {} messages", publishedMessages.size());
+        }
+
+        return publishedMessages;
+    }
+
     private List<Integer> buildMessageIds(List<DataMessage> messages, String topicRegex) {
         Pattern topicPattern = Pattern.compile(topicRegex);
         List<Integer> ids = new ArrayList<>();
@@ -762,6 +1061,8 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
 
     private final class PublishManager implements Runnable {
 
+        private long laneWaitTime;
+
         @Override
         public void run() {
             Thread.currentThread().setName("DataServiceImpl:Submit");
@@ -771,18 +1072,34 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
 
                 if (DataServiceImpl.this.dataTransportService.isConnected()) {
                     try {
-                        DataMessage message = DataServiceImpl.this.store.getNextMessage();
-
-                        if (message != null) {
-                            checkInFlightMessages(message);
-
-                            if (DataServiceImpl.this.dataServiceOptions.isRateLimitEnabled()
-                                    && message.getPriority() >= 5) {
-                                messagePublished = publishMessageTokenBucket(message);
-                                sleepingTime = DataServiceImpl.this.throttle.getTokenWaitTime();
-                            } else {
-                                publishMessageUnbound(message);
-                                messagePublished = true;
+                        int batchSize = DataServiceImpl.this.dataServiceOptions.getPublishBatchSize();
+                        PublishLanes lanes = DataServiceImpl.this.publishLanes;
+                        if (lanes != null) {
+                            messagePublished = publishFromLanes(lanes, batchSize);
+                            if (!messagePublished) {
+                                sleepingTime = this.laneWaitTime;
+                            }
+                        } else if (batchSize > 1) {
+                            List<DataMessage> messages = DataServiceImpl.this.store.getNextMessages(batchSize);
+
+                            if (!messages.isEmpty()) {
+                                List<DataMessage> publishableMessages = selectPublishableMessages(messages, null);
+
+                                if (publishableMessages.isEmpty()) {
+                                    // the first message of the batch is waiting for a token
+                                    sleepingTime = DataServiceImpl.this.throttle.getTokenWaitTime();
+                                } else {
+                                    publishMessageBatch(publishableMessages);
+                                    messagePublished = true;
+                                }
+                            }
+                        } else {
+                            DataMessage message = DataServiceImpl.this.store.getNextMessage();
+                            if (message != null) {
+                                messagePublished = publishMessage(message);
+                                if (!messagePublished) {
+                                    sleepingTime = DataServiceImpl.this.throttle.getTokenWaitTime();
+                                }
                             }
                         }
                     } catch (KuraNotConnectedException e) {
@@ -805,13 +1122,125 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
         }
 
         private void checkInFlightMessages(DataMessage message) throws KuraTooManyInflightMessagesException {
-            if (message.getQos() > 0 && DataServiceImpl.this.inFlightMsgIds
+            if (message.getQos() > 0 && DataServiceImpl.this.inFlightMessages
                     .size() >= DataServiceImpl.this.dataServiceOptions.getMaxInFlightMessages()) {
                 logger.warn("The configured maximum number of in-flight messages has been reached");
                 throw new KuraTooManyInflightMessagesException("Too many in-flight messages");
             }
         }
 
+        private boolean publishMessage(DataMessage message) throws KuraException {
+            checkInFlightMessages(message);
+
+            if (DataServiceImpl.this.dataServiceOptions.isRateLimitEnabled() && message.getPriority() >= 5) {
+                return publishMessageTokenBucket(message);
+            }
+            publishMessageUnbound(message);
+            return true;
+        }
+
+        /**
+         * Serves the lanes with weighted fair queuing: the lanes are visited in scheduling order and the
+         * first one with publishable messages publishes a batch and is charged for it. A lane blocked by the
+         * in-flight window or by a rate limit does not prevent the other lanes from publishing.
+         * If nothing is published, {@link #laneWaitTime} is set to the time to wait before retrying.
+         */
+        private boolean publishFromLanes(PublishLanes lanes, int batchSize) throws KuraException {
+            this.laneWaitTime = -1;
+            boolean inFlightCongestion = false;
+
+            for (PublishLanes.Lane lane : lanes.getSchedulingOrder()) {
+                List<DataMessage> messages = DataServiceImpl.this.store.getNextMessages(batchSize,
+                        lane.getMinPriority(), lane.getMaxPriority());
+                if (messages.isEmpty()) {
+                    continue;
+                }
+
+                List<DataMessage> publishableMessages;
+                try {
+                    publishableMessages = selectPublishableMessages(messages, lane.getRateLimit());
+                } catch (KuraTooManyInflightMessagesException e) {
+                    inFlightCongestion = true;
+                    continue;
+                }
+
+                if (publishableMessages.isEmpty()) {
+                    updateLaneWaitTime(lane);
+                    continue;
+                }
+
+                publishMessageBatch(publishableMessages);
+                lanes.charge(lane, publishableMessages.size());
+                return true;
+            }
+
+            if (inFlightCongestion) {
+                logger.info("Too many in-flight messages");
+                handleInFlightCongestion();
+            }
+            return false;
+        }
+
+        private void updateLaneWaitTime(PublishLanes.Lane lane) {
+            TokenBucket laneRateLimit = lane.getRateLimit();
+            long waitTime;
+            if (laneRateLimit != null && !laneRateLimit.hasToken()) {
+                waitTime = laneRateLimit.getTokenWaitTime();
+            } else if (DataServiceImpl.this.throttle != null) {
+                waitTime = DataServiceImpl.this.throttle.getTokenWaitTime();
+            } else {
+                return;
+            }
+
+            if (this.laneWaitTime == -1 || waitTime < this.laneWaitTime) {
+                this.laneWaitTime = waitTime;
+            }
+        }
+
+        /**
+         * Returns the longest prefix of the given messages that can be published without exceeding the
+         * maximum number of in-flight messages and the rate limits. Priority ordering is preserved by stopping
+         * at the first message that cannot be published.
+         */
+        private List<DataMessage> selectPublishableMessages(List<DataMessage> messages, TokenBucket laneRateLimit)
+                throws KuraTooManyInflightMessagesException {
+            int availableInFlightSlots = DataServiceImpl.this.dataServiceOptions.getMaxInFlightMessages()
+                    - DataServiceImpl.this.inFlightMessages.size();
+            boolean rateLimitEnabled = DataServiceImpl.this.dataServiceOptions.isRateLimitEnabled();
+
+            List<DataMessage> publishableMessages = new ArrayList<>(messages.size());
+            for (DataMessage message : messages) {
+                if (message.getQos() > 0 && availableInFlightSlots <= 0) {
+                    if (publishableMessages.isEmpty()) {
+                        checkInFlightMessages(message);
+                    }
+                    break;
+                }
+                if (laneRateLimit != null && !laneRateLimit.hasToken()) {
+                    break;
+                }
+                if (rateLimitEnabled && message.getPriority() >= 5 && !DataServiceImpl.this.throttle.getToken()) {
+                    break;
+                }
+                if (laneRateLimit != null) {
+                    laneRateLimit.getToken();
+                }
+                if (message.getQos() > 0) {
+                    availableInFlightSlots--;
+                }
+                publishableMessages.add(message);
+            }
+            return publishableMessages;
+        }
+
+        private void publishMessageBatch(List<DataMessage> messages) throws KuraException {
+            List<DataMessage> publishedMessages = publishBatchInternal(messages);
+            // Notify the listeners
+            for (DataMessage message : publishedMessages) {
+                DataServiceImpl.this.dataServiceListeners.onMessagePublished(message.getId(), message.getTopic());
+            }
+        }
+
         private void suspendPublisher(long timeout, TimeUnit timeUnit) {
             if (!DataServiceImpl.this.publisherEnabled.get()) {
                 return;
@@ -13,7 +13,9 @@ package org.eclipse.kura.core.data;
 
 import static java.util.Objects.requireNonNull;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -25,13 +27,23 @@ public class DataServiceOptions {
     private static final String AUTOCONNECT_PROP_NAME = "connect.auto-on-startup";
     private static final String CONNECT_DELAY_PROP_NAME = "connect.retry-interval";
     private static final String DISCONNECT_DELAY_PROP_NAME = "disconnect.quiesce-timeout";
+    private static final String STORE_TYPE_PROP_NAME = "store.type";
+    private static final String STORE_SEGMENT_DIRECTORY_PROP_NAME = "store.segment.directory";
+    private static final String STORE_SEGMENT_SIZE_PROP_NAME = "store.segment.size";
     private static final String STORE_DB_SERVICE_INSTANCE_PROP_NAME = "store.db.service.pid";
     private static final String STORE_HOUSEKEEPER_INTERVAL_PROP_NAME = "store.housekeeper-interval";
     private static final String STORE_PURGE_AGE_PROP_NAME = "store.purge-age";
     private static final String STORE_CAPACITY_PROP_NAME = "store.capacity";
+    private static final String STORE_WRITE_BATCH_SIZE_PROP_NAME = "store.write-batch-size";
+    private static final String STORE_WRITE_LINGER_TIME_PROP_NAME = "store.write-linger-time";
+    private static final String STORE_COALESCING_TOPICS_PROP_NAME = "store.coalescing.topics";
+    private static final String STORE_COALESCING_MAX_QOS_PROP_NAME = "store.coalescing.max-qos";
+    private static final String STORE_COALESCING_MERGE_TOPICS_PROP_NAME = "store.coalescing.merge-metrics.topics";
     private static final String REPUBLISH_IN_FLIGHT_MSGS_PROP_NAME = "in-flight-messages.republish-on-new-session";
     private static final String MAX_IN_FLIGHT_MSGS_PROP_NAME = "in-flight-messages.max-number";
     private static final String IN_FLIGHT_MSGS_CONGESTION_TIMEOUT_PROP_NAME = "in-flight-messages.congestion-timeout";
+    private static final String PUBLISH_BATCH_SIZE_PROP_NAME = "publish.batch-size";
+    private static final String PUBLISH_LANES_PROP_NAME = "publish.lanes";
     private static final String RATE_LIMIT_ENABLE_PROP_NAME = "enable.rate.limit";
     private static final String RATE_LIMIT_AVERAGE_RATE_PROP_NAME = "rate.limit.average";
     private static final String RATE_LIMIT_TIME_UNIT_PROP_NAME = "rate.limit.time.unit";
@@ -42,13 +54,26 @@ public class DataServiceOptions {
     private static final boolean AUTOCONNECT_PROP_DEFAULT = false;
     private static final int CONNECT_DELAY_DEFAULT = 60;
     private static final int DISCONNECT_DELAY_DEFAULT = 10;
+    static final String STORE_TYPE_H2DB = "H2DB";
+    static final String STORE_TYPE_SEGMENTS = "SEGMENTS";
+
+    private static final String STORE_TYPE_DEFAULT = STORE_TYPE_H2DB;
+    private static final String STORE_SEGMENT_DIRECTORY_DEFAULT = "/opt/eclipse/kura/data/message-store";
+    private static final int STORE_SEGMENT_SIZE_DEFAULT = 1024;
     private static final String DB_SERVICE_INSTANCE_DEFAULT = H2DbService.DEFAULT_INSTANCE_PID;
     private static final int STORE_HOUSEKEEPER_INTERVAL_DEFAULT = 900;
     private static final int STORE_PURGE_AGE_DEFAULT = 60;
     private static final int STORE_CAPACITY_DEFAULT = 10000;
+    private static final int STORE_WRITE_BATCH_SIZE_DEFAULT = 1;
+    private static final int STORE_WRITE_LINGER_TIME_DEFAULT = 0;
+    private static final String STORE_COALESCING_TOPICS_DEFAULT = "";
+    private static final int STORE_COALESCING_MAX_QOS_DEFAULT = 0;
+    private static final String STORE_COALESCING_MERGE_TOPICS_DEFAULT = "";
     private static final boolean REPUBLISH_IN_FLIGHT_MSGS_DEFAULT = true;
     private static final int MAX_IN_FLIGHT_MSGS_DEFAULT = 9;
     private static final int IN_FLIGHT_MSGS_CONGESTION_TIMEOUT_DEFAULT = 0;
+    private static final int PUBLISH_BATCH_SIZE_DEFAULT = 1;
+    private static final String PUBLISH_LANES_DEFAULT = "";
     private static final boolean RATE_LIMIT_ENABLE_DEFAULT = true;
     private static final int RATE_LIMIT_AVERAGE_RATE_DEFAULT = 1;
     private static final String RATE_LIMIT_TIME_UNIT_DEFAULT = "SECONDS";
@@ -78,6 +103,44 @@ public class DataServiceOptions {
         return (int) this.properties.getOrDefault(STORE_CAPACITY_PROP_NAME, STORE_CAPACITY_DEFAULT);
     }
 
+    int getStoreWriteBatchSize() {
+        return (int) this.properties.getOrDefault(STORE_WRITE_BATCH_SIZE_PROP_NAME, STORE_WRITE_BATCH_SIZE_DEFAULT);
+    }
+
+    int getStoreWriteLingerTime() {
+        return (int) this.properties.getOrDefault(STORE_WRITE_LINGER_TIME_PROP_NAME, STORE_WRITE_LINGER_TIME_DEFAULT);
+    }
+
+    List<String> getStoreCoalescingTopics() {
+        return parseTopicFilters((String) this.properties.getOrDefault(STORE_COALESCING_TOPICS_PROP_NAME,
+                STORE_COALESCING_TOPICS_DEFAULT));
+    }
+
+    int getStoreCoalescingMaxQos() {
+        return (int) this.properties.getOrDefault(STORE_COALESCING_MAX_QOS_PROP_NAME,
+                STORE_COALESCING_MAX_QOS_DEFAULT);
+    }
+
+    List<String> getStoreCoalescingMergeTopics() {
+        return parseTopicFilters((String) this.properties.getOrDefault(STORE_COALESCING_MERGE_TOPICS_PROP_NAME,
+                STORE_COALESCING_MERGE_TOPICS_DEFAULT));
+    }
+
+    private static List<String> parseTopicFilters(String topicFilters) {
+        if (topicFilters == null) {
+            return Collections.emptyList();
+        }
+
+        List<String> result = new ArrayList<>();
+        for (String topicFilter : topicFilters.split(",")) {
+            String trimmed = topicFilter.trim();
+            if (!trimmed.isEmpty()) {
+                result.add(trimmed);
+            }
+        }
+        return result;
+    }
+
     boolean isPublishInFlightMessages() {
         return (boolean) this.properties.getOrDefault(REPUBLISH_IN_FLIGHT_MSGS_PROP_NAME,
                 REPUBLISH_IN_FLIGHT_MSGS_DEFAULT);
@@ -92,6 +155,16 @@ public class DataServiceOptions {
                 IN_FLIGHT_MSGS_CONGESTION_TIMEOUT_DEFAULT);
     }
 
+    int getPublishBatchSize() {
+        int batchSize = (int) this.properties.getOrDefault(PUBLISH_BATCH_SIZE_PROP_NAME, PUBLISH_BATCH_SIZE_DEFAULT);
+        return Math.max(1, batchSize);
+    }
+
+    String getPublishLanes() {
+        String lanes = (String) this.properties.getOrDefault(PUBLISH_LANES_PROP_NAME, PUBLISH_LANES_DEFAULT);
+        return lanes == null ? PUBLISH_LANES_DEFAULT : lanes.trim();
+    }
+
     boolean isAutoConnect() {
         return (boolean) this.properties.getOrDefault(AUTOCONNECT_PROP_NAME, AUTOCONNECT_PROP_DEFAULT);
     }
@@ -138,6 +211,26 @@ public class DataServiceOptions {
         return timeUnit.toMillis(1);
     }
 
+    String getStoreType() {
+        return (String) this.properties.getOrDefault(STORE_TYPE_PROP_NAME, STORE_TYPE_DEFAULT);
+    }
+
+    boolean isH2DbStore() {
+        return !STORE_TYPE_SEGMENTS.equals(getStoreType());
+    }
+
+    String getStoreSegmentDirectory() {
+        return (String) this.properties.getOrDefault(STORE_SEGMENT_DIRECTORY_PROP_NAME,
+                STORE_SEGMENT_DIRECTORY_DEFAULT);
+    }
+
+    /**
+     * @return the size in bytes of the message store segments
+     */
+    int getStoreSegmentSize() {
+        return (int) this.properties.getOrDefault(STORE_SEGMENT_SIZE_PROP_NAME, STORE_SEGMENT_SIZE_DEFAULT) * 1024;
+    }
+
     String getDbServiceInstancePid() {
         return (String) this.properties.getOrDefault(STORE_DB_SERVICE_INSTANCE_PROP_NAME, DB_SERVICE_INSTANCE_DEFAULT);
     }
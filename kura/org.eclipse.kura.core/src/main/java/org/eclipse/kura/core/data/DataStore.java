@@ -32,6 +32,19 @@ public interface DataStore {
 
     public void stop();
 
+    /**
+     * Configures the group commit of stored messages. Concurrent invocations of
+     * {@link #store(String, byte[], int, boolean, int)} are queued and written in a single transaction
+     * as soon as either batchSize messages are queued or lingerTime milliseconds elapsed since the first
+     * queued message. A batchSize of 1 stores each message in its own transaction.
+     *
+     * @param batchSize
+     *            the maximum number of messages written in a single transaction
+     * @param lingerTime
+     *            the maximum time in milliseconds a message waits for a batch to fill up
+     */
+    public void setWriteBatching(int batchSize, int lingerTime);
+
     /**
      * Stores an MQTT message for deferred publication. An identifier is always
      * generated and returned, even for messages published with QoS = 0. The
@@ -71,6 +84,17 @@ public interface DataStore {
      */
     public void published(int msgId) throws KuraStoreException;
 
+    /**
+     * Acknowledges the publication of a batch of DataMessages in a single transaction.
+     * For each message the ID, the protocol (e.g. MQTT) message ID and the session ID are taken into account;
+     * messages published with QoS = 0 are expected to carry a protocol message ID of -1 and a null session ID.
+     *
+     * @param messages
+     *            the published messages
+     * @throws KuraStoreException
+     */
+    public void published(List<DataMessage> messages) throws KuraStoreException;
+
     /**
      * Acknowledges the delivery of the DataMessage published with the given
      * protocol (e.g. MQTT) message ID. This method is only called for messages
@@ -81,6 +105,16 @@ public interface DataStore {
      */
     public void confirmed(int msgId) throws KuraStoreException;
 
+    /**
+     * Acknowledges the delivery of a batch of DataMessages, applying all the
+     * changes in a single store transaction.
+     *
+     * @param msgIds
+     *            the IDs of the confirmed messages
+     * @throws KuraStoreException
+     */
+    public void confirmed(List<Integer> msgIds) throws KuraStoreException;
+
     /**
      * Gets the next unpublished message. Messages with higher
      * priority (0 is the highest priority) are returned first. Within each
@@ -91,6 +125,66 @@ public interface DataStore {
      */
     public DataMessage getNextMessage() throws KuraStoreException;
 
+    /**
+     * Gets up to maxMessages unpublished messages, including their payload, in the same order
+     * used by {@link #getNextMessage()}.
+     *
+     * @param maxMessages
+     *            the maximum number of messages to be returned
+     * @return the list of unpublished messages, never null
+     * @throws KuraStoreException
+     */
+    public List<DataMessage> getNextMessages(int maxMessages) throws KuraStoreException;
+
+    /**
+     * Gets up to maxMessages unpublished messages with a priority between minPriority
+     * and maxPriority, including their payload, in the same order used by {@link #getNextMessage()}.
+     *
+     * @param maxMessages
+     *            the maximum number of messages to be returned
+     * @param minPriority
+     *            the lowest priority value, inclusive
+     * @param maxPriority
+     *            the highest priority value, inclusive
+     * @return the list of unpublished messages, never null
+     * @throws KuraStoreException
+     */
+    public List<DataMessage> getNextMessages(int maxMessages, int minPriority, int maxPriority)
+            throws KuraStoreException;
+
+    /**
+     * Returns the number of unpublished messages with a priority between minPriority and maxPriority.
+     *
+     * @param minPriority
+     *            the lowest priority value, inclusive
+     * @param maxPriority
+     *            the highest priority value, inclusive
+     * @return the number of unpublished messages
+     * @throws KuraStoreException
+     */
+    public int getUnpublishedMessageCount(int minPriority, int maxPriority) throws KuraStoreException;
+
+    /**
+     * Finds the list of all unpublished messages on the given topic and returns them WITHOUT the message payload.
+     *
+     * @param topic
+     *            the topic of the messages
+     * @return the list of unpublished messages on the topic, ordered by priority and creation time
+     * @throws KuraStoreException
+     */
+    public List<DataMessage> unpublishedMessagesNoPayload(String topic) throws KuraStoreException;
+
+    /**
+     * Deletes the messages with the given IDs that have not been published yet.
+     * Messages already published are left untouched.
+     *
+     * @param msgIds
+     *            the IDs of the messages to be deleted
+     * @return the number of deleted messages
+     * @throws KuraStoreException
+     */
+    public int deleteUnpublishedMessages(List<Integer> msgIds) throws KuraStoreException;
+
     /**
      * Returns a message from the DataStore by its message id.
      * 
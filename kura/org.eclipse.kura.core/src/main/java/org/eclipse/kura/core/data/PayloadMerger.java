@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.data;
+
+import java.util.List;
+
+/**
+ * Merges the payloads of messages queued on the same topic into a single payload.
+ * <p>
+ * The DataService does not know the encoding of the payloads it stores. When a topic is configured for metrics
+ * merging, the DataService uses the PayloadMerger registered as an OSGi service to merge the payloads of the
+ * superseded messages into the payload of the newest one.
+ */
+public interface PayloadMerger {
+
+    /**
+     * Merges the given payloads.
+     *
+     * @param olderPayloads
+     *            the payloads of the superseded messages, from the oldest to the newest
+     * @param payload
+     *            the payload of the new message, which takes precedence over the older ones
+     * @return the merged payload, or null if the payloads cannot be merged
+     */
+    public byte[] merge(List<byte[]> olderPayloads, byte[] payload);
+}
@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.kura.core.internal.data.TokenBucket;
+
+/**
+ * Priority lanes of the publish queue, served with start-time fair queuing.
+ * <p>
+ * Each lane covers a contiguous range of message priorities and has a weight, an optional maximum number of
+ * unpublished messages and an optional rate limit. Every time a lane publishes a message its finish tag advances by
+ * the inverse of its weight, the lane with the lowest start tag is served first. A lane that has been idle starts
+ * again from the current virtual time, so it cannot accumulate credit while it has nothing to publish.
+ * <p>
+ * This class is not thread safe, it is meant to be used by the publisher thread only, except for
+ * {@link #getLane(int)} that only reads immutable state.
+ */
+class PublishLanes {
+
+    private static final String LANE_SEPARATOR = ",";
+    private static final String FIELD_SEPARATOR = ":";
+
+    private final List<Lane> lanes;
+    private double virtualTime;
+
+    private PublishLanes(List<Lane> lanes) {
+        this.lanes = lanes;
+    }
+
+    /**
+     * Parses the lanes configuration, a comma separated list of lanes in the form
+     * {@code maxPriority:weight[:maxQueueDepth[:maxRate]]}.
+     *
+     * @param spec
+     *            the lanes configuration
+     * @return the lanes, or {@code null} if the configuration is empty
+     * @throws IllegalArgumentException
+     *             if the configuration is not valid
+     */
+    static PublishLanes parse(String spec) {
+        if (spec == null || spec.trim().isEmpty()) {
+            return null;
+        }
+
+        List<int[]> definitions = new ArrayList<>();
+        for (String laneSpec : spec.split(LANE_SEPARATOR)) {
+            String[] fields = laneSpec.trim().split(FIELD_SEPARATOR);
+            if (fields.length < 2 || fields.length > 4) {
+                throw new IllegalArgumentException("Invalid publish lane: " + laneSpec);
+            }
+
+            int[] definition = new int[4];
+            try {
+                for (int i = 0; i < fields.length; i++) {
+                    definition[i] = Integer.parseInt(fields[i].trim());
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid publish lane: " + laneSpec, e);
+            }
+
+            if (definition[1] <= 0 || definition[2] < 0 || definition[3] < 0) {
+                throw new IllegalArgumentException("Invalid publish lane: " + laneSpec);
+            }
+            definitions.add(definition);
+        }
+
+        definitions.sort(Comparator.comparingInt(d -> d[0]));
+
+        List<Lane> lanes = new ArrayList<>(definitions.size());
+        int minPriority = Integer.MIN_VALUE;
+        for (int i = 0; i < definitions.size(); i++) {
+            int[] definition = definitions.get(i);
+            if (minPriority != Integer.MIN_VALUE && definition[0] < minPriority) {
+                throw new IllegalArgumentException("Duplicate publish lane for priority " + definition[0]);
+            }
+            int maxPriority = i == definitions.size() - 1 ? Integer.MAX_VALUE : definition[0];
+            lanes.add(new Lane(minPriority, maxPriority, definition[1], definition[2], definition[3]));
+            minPriority = definition[0] + 1;
+        }
+
+        return new PublishLanes(Collections.unmodifiableList(lanes));
+    }
+
+    List<Lane> getLanes() {
+        return this.lanes;
+    }
+
+    Lane getLane(int priority) {
+        for (Lane lane : this.lanes) {
+            if (priority >= lane.minPriority && priority <= lane.maxPriority) {
+                return lane;
+            }
+        }
+        // not reachable, the lanes cover all the priorities
+        return this.lanes.get(this.lanes.size() - 1);
+    }
+
+    /**
+     * Returns the lanes in the order they should be served, that is by increasing start tag.
+     * Ties are broken in favour of the lane with the highest priority.
+     */
+    List<Lane> getSchedulingOrder() {
+        List<Lane> order = new ArrayList<>(this.lanes);
+        order.sort(Comparator.comparingDouble(this::getStartTag));
+        return order;
+    }
+
+    /**
+     * Accounts the messages published by the given lane.
+     */
+    void charge(Lane lane, int messages) {
+        double startTag = getStartTag(lane);
+        this.virtualTime = startTag;
+        lane.finishTag = startTag + (double) messages / lane.weight;
+    }
+
+    private double getStartTag(Lane lane) {
+        return Math.max(this.virtualTime, lane.finishTag);
+    }
+
+    static final class Lane {
+
+        private final int minPriority;
+        private final int maxPriority;
+        private final int weight;
+        private final int maxQueueDepth;
+        private final TokenBucket rateLimit;
+
+        private double finishTag;
+
+        Lane(int minPriority, int maxPriority, int weight, int maxQueueDepth, int maxRate) {
+            this.minPriority = minPriority;
+            this.maxPriority = maxPriority;
+            this.weight = weight;
+            this.maxQueueDepth = maxQueueDepth;
+            this.rateLimit = maxRate > 0 ? new TokenBucket(maxRate, Math.max(1, 1000L / maxRate)) : null;
+        }
+
+        int getMinPriority() {
+            return this.minPriority;
+        }
+
+        int getMaxPriority() {
+            return this.maxPriority;
+        }
+
+        int getWeight() {
+            return this.weight;
+        }
+
+        int getMaxQueueDepth() {
+            return this.maxQueueDepth;
+        }
+
+        TokenBucket getRateLimit() {
+            return this.rateLimit;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + this.minPriority + ", " + this.maxPriority + "]";
+        }
+    }
+}
@@ -18,13 +18,18 @@ import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.kura.KuraStoreCapacityReachedException;
 import org.eclipse.kura.KuraStoreException;
@@ -57,12 +62,23 @@ public class DbDataStore implements DataStore {
 
     private static final String DATA_SERVICE_REPAIR_ENABLED_PROPNAME = "db.store.repair.enabled";
 
-    private H2DbService dbService;
+    private volatile H2DbService dbService;
     private final Calendar utcCalendar;
     private ScheduledExecutorService houseKeeperExecutor;
     private ScheduledFuture<?> houseKeeperTask;
     private int capacity;
 
+    // Kept in memory to avoid a COUNT(*) on each stored message, initialized from the table in update()
+    private final AtomicInteger messageCount = new AtomicInteger();
+
+    // Unpublished messages in publishing order, rebuilt from the table in update()
+    private final UnpublishedMessageIndex unpublishedIndex = new UnpublishedMessageIndex();
+
+    private volatile int writeBatchSize = 1;
+    private volatile int writeLingerTime;
+    private final BlockingQueue<StoreRequest> storeRequests = new LinkedBlockingQueue<>();
+    private ExecutorService groupCommitExecutor;
+
     private final String tableName;
     private final String sanitizedTableName;
 
@@ -72,11 +88,12 @@ public class DbDataStore implements DataStore {
     private final String sqlResetId;
     private final String sqlStore;
     private final String sqlGetMessage;
-    private final String sqlGetNextMessage;
     private final String sqlSetPublished;
     private final String sqlSetPublished2;
     private final String sqlSetConfirmed;
     private final String sqlAllUnpublishedMessages;
+    private final String sqlUnpublishedMessagesByTopic;
+    private final String sqlDeleteUnpublishedMessage;
     private final String sqlAllInFlightMessages;
     private final String sqlAllDroppedInFlightMessages;
     private final String sqlUnpublishAllInFlightMessages;
@@ -107,15 +124,16 @@ public class DbDataStore implements DataStore {
                 + " (topic, qos, retain, createdOn, publishedOn, publishedMessageId, confirmedOn, payload, priority, sessionId, droppedOn) VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);";
         this.sqlGetMessage = "SELECT id, topic, qos, retain, createdOn, publishedOn, publishedMessageId, confirmedOn, payload, priority, sessionId, droppedOn FROM "
                 + this.sanitizedTableName + " WHERE id = ?";
-        this.sqlGetNextMessage = "SELECT a.id, a.topic, a.qos, a.retain, a.createdOn, a.publishedOn, a.publishedMessageId, a.confirmedOn, a.payload, a.priority, a.sessionId, a.droppedOn FROM "
-                + this.sanitizedTableName + " AS a JOIN (SELECT id, publishedOn FROM " + this.sanitizedTableName
-                + " ORDER BY publishedOn ASC NULLS FIRST, priority ASC, createdOn ASC LIMIT 1) AS b WHERE a.id = b.id AND b.publishedOn IS NULL;";
         this.sqlSetPublished = UPDATE + this.sanitizedTableName
                 + " SET publishedOn = ?, publishedMessageId = ?, sessionId = ? WHERE id = ?;";
         this.sqlSetPublished2 = UPDATE + this.sanitizedTableName + " SET publishedOn = ? WHERE id = ?;";
         this.sqlSetConfirmed = UPDATE + this.sanitizedTableName + " SET confirmedOn = ? WHERE id = ?;";
         this.sqlAllUnpublishedMessages = SELECT_MESSAGE_METADATA_FROM + this.sanitizedTableName
                 + " WHERE publishedOn IS NULL ORDER BY priority ASC, createdOn ASC;";
+        this.sqlUnpublishedMessagesByTopic = SELECT_MESSAGE_METADATA_FROM + this.sanitizedTableName
+                + " WHERE publishedOn IS NULL AND topic = ? ORDER BY priority ASC, createdOn ASC;";
+        this.sqlDeleteUnpublishedMessage = DELETE_FROM + this.sanitizedTableName
+                + " WHERE id = ? AND publishedOn IS NULL;";
         this.sqlAllInFlightMessages = SELECT_MESSAGE_METADATA_FROM + this.sanitizedTableName
                 + " WHERE publishedOn IS NOT NULL AND qos > 0 AND confirmedOn IS NULL AND droppedOn IS NULL ORDER BY priority ASC, createdOn ASC";
         this.sqlAllDroppedInFlightMessages = SELECT_MESSAGE_METADATA_FROM + this.sanitizedTableName
@@ -156,6 +174,9 @@ public class DbDataStore implements DataStore {
 
         this.houseKeeperExecutor = Executors.newSingleThreadScheduledExecutor();
 
+        this.groupCommitExecutor = Executors.newSingleThreadExecutor();
+        this.groupCommitExecutor.execute(this::groupCommit);
+
         //
         // Set up the schema tables required by the DataStore
         update(houseKeeperInterval, purgeAge, capacity);
@@ -169,9 +190,21 @@ public class DbDataStore implements DataStore {
             this.houseKeeperExecutor.shutdownNow();
             this.houseKeeperTask = null;
         }
+        if (this.groupCommitExecutor != null) {
+            this.groupCommitExecutor.shutdownNow();
+            this.groupCommitExecutor = null;
+        }
+        failStoreRequests(new KuraStoreException("DbService instance not attached"));
+        this.unpublishedIndex.clear();
         this.dbService = null;
     }
 
+    @Override
+    public void setWriteBatching(int batchSize, int lingerTime) {
+        this.writeBatchSize = Math.max(1, batchSize);
+        this.writeLingerTime = Math.max(0, lingerTime);
+    }
+
     private boolean isRepairEnabled() {
         final BundleContext context = FrameworkUtil.getBundle(DbDataStore.class).getBundleContext();
         ServiceReference<SystemService> reference = context.getServiceReference(SystemService.class);
@@ -199,6 +232,9 @@ public class DbDataStore implements DataStore {
 
             execute(this.sqlCreateTable);
 
+            this.messageCount.set(getMessageCount());
+            rebuildUnpublishedIndex();
+
             execute(this.sqlCreateIndex);
 
             createIndex(sanitizeSql(this.tableName + "_PUBLISHEDON"), this.sanitizedTableName, "(PUBLISHEDON DESC)");
@@ -241,7 +277,7 @@ public class DbDataStore implements DataStore {
     }
 
     @Override
-    public synchronized DataMessage store(String topic, byte[] payload, int qos, boolean retain, int priority)
+    public DataMessage store(String topic, byte[] payload, int qos, boolean retain, int priority)
             throws KuraStoreException {
         if (this.dbService == null) {
             throw new KuraStoreException("DbService instance not attached");
@@ -255,7 +291,7 @@ public class DbDataStore implements DataStore {
         // For those messages, bypass the max message count check of the DB cache;
         // we want to publish those message even if the db is full, so allow their storage.
         if (priority != 0 && priority != 1) {
-            int count = getMessageCount();
+            int count = this.messageCount.get() + this.storeRequests.size();
             logger.debug("Store message count: {}", count);
             if (count >= this.capacity) {
                 logger.error("Store capacity exceeded");
@@ -263,73 +299,145 @@ public class DbDataStore implements DataStore {
             }
         }
 
-        DataMessage message = null;
+        final StoreRequest request = new StoreRequest(topic, payload, qos, retain, priority,
+                new Timestamp(new Date().getTime()));
+
+        if (this.writeBatchSize > 1) {
+            // the group commit task will complete the request
+            this.storeRequests.add(request);
+            if (this.dbService == null) {
+                // stopped in the meantime
+                failStoreRequests(new KuraStoreException("DbService instance not attached"));
+            }
+        } else {
+            storeBatch(Collections.singletonList(request));
+        }
+
+        return request.await();
+    }
+
+    private void groupCommit() {
+        Thread.currentThread().setName("DbDataStore:GroupCommit");
+
+        final List<StoreRequest> batch = new ArrayList<>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(this.storeRequests.take());
+
+                final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.writeLingerTime);
+                while (batch.size() < this.writeBatchSize) {
+                    final long remaining = deadline - System.nanoTime();
+                    final StoreRequest next = remaining > 0 ? this.storeRequests.poll(remaining, TimeUnit.NANOSECONDS)
+                            : this.storeRequests.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                storeBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            final KuraStoreException e = new KuraStoreException("DbService instance not attached");
+            for (StoreRequest request : batch) {
+                request.fail(e);
+            }
+        }
+        logger.debug("Exited group commit loop.");
+    }
+
+    private void failStoreRequests(KuraStoreException e) {
+        StoreRequest request;
+        while ((request = this.storeRequests.poll()) != null) {
+            request.fail(e);
+        }
+    }
+
+    private synchronized void storeBatch(List<StoreRequest> requests) {
+        List<Integer> msgIds;
         try {
-            message = storeInternal(topic, payload, qos, retain, priority);
-        } catch (KuraStoreException e) {
-            // Try to reset the sequence generator and store the message again.
-            // FIXME: it doesn't work but if we restart Kura the sequence generator restarts from 0!
-            Throwable cause = e.getCause();
-            if (cause instanceof SQLException) {
-                SQLException sqle = (SQLException) cause;
-                int errorCode = sqle.getErrorCode();
-                if (errorCode == 22003) {
+            try {
+                msgIds = storeInternal(requests);
+            } catch (KuraStoreException e) {
+                // Try to reset the sequence generator and store the messages again.
+                // FIXME: it doesn't work but if we restart Kura the sequence generator restarts from 0!
+                if (isIdentityOverflow(e.getCause())) {
                     logger.warn("Identity generator limit exceeded. Resetting it...");
                     resetIdentityGenerator();
-                    message = storeInternal(topic, payload, qos, retain, priority);
+                    msgIds = storeInternal(requests);
                 } else {
                     throw e;
                 }
-            } else {
-                throw e;
             }
+        } catch (KuraStoreException e) {
+            for (StoreRequest request : requests) {
+                request.fail(e);
+            }
+            return;
         }
 
-        return message;
+        this.messageCount.addAndGet(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            final StoreRequest request = requests.get(i);
+            this.unpublishedIndex.add(msgIds.get(i), request.getPriority(), request.getCreatedOn().getTime());
+            request.complete(msgIds.get(i));
+        }
     }
 
-    private synchronized DataMessage storeInternal(String topic, byte[] payload, int qos, boolean retain, int priority)
-            throws KuraStoreException {
-        if (topic == null || topic.trim().length() == 0) {
-            throw new IllegalArgumentException(TOPIC_ELEMENT);
+    private boolean isIdentityOverflow(Throwable cause) {
+        if (cause instanceof SQLException) {
+            SQLException sqle = (SQLException) cause;
+            while (sqle != null) {
+                if (sqle.getErrorCode() == 22003) {
+                    return true;
+                }
+                sqle = sqle.getNextException();
+            }
         }
+        return false;
+    }
 
-        final Timestamp now = new Timestamp(new Date().getTime());
+    private synchronized List<Integer> storeInternal(List<StoreRequest> requests) throws KuraStoreException {
 
-        final int msgId = withConnection(c -> {
-
-            int result = -1;
-
-            // store message
-            try (PreparedStatement pstmt = c.prepareStatement(this.sqlStore)) {
-                pstmt.setString(1, topic);              // topic
-                pstmt.setInt(2, qos);               // qos
-                pstmt.setBoolean(3, retain);                // retain
-                pstmt.setTimestamp(4, now, this.utcCalendar); // createdOn
-                pstmt.setTimestamp(5, null);                // publishedOn
-                pstmt.setInt(6, -1);                 // publishedMessageId
-                pstmt.setTimestamp(7, null);                // confirmedOn
-                pstmt.setBytes(8, payload);         // payload
-                pstmt.setInt(9, priority);            // priority
-                pstmt.setString(10, null);               // sessionId
-                pstmt.setTimestamp(11, null);               // droppedOn
-                pstmt.execute();
-            }
+        return withConnection(c -> {
+
+            // store messages
+            final List<Integer> result = new ArrayList<>(requests.size());
+            try (PreparedStatement pstmt = c.prepareStatement(this.sqlStore, Statement.RETURN_GENERATED_KEYS)) {
+                for (StoreRequest request : requests) {
+                    pstmt.setString(1, request.getTopic());              // topic
+                    pstmt.setInt(2, request.getQos());               // qos
+                    pstmt.setBoolean(3, request.isRetain());                // retain
+                    pstmt.setTimestamp(4, request.getCreatedOn(), this.utcCalendar); // createdOn
+                    pstmt.setTimestamp(5, null);                // publishedOn
+                    pstmt.setInt(6, -1);                 // publishedMessageId
+                    pstmt.setTimestamp(7, null);                // confirmedOn
+                    pstmt.setBytes(8, request.getPayload());         // payload
+                    pstmt.setInt(9, request.getPriority());            // priority
+                    pstmt.setString(10, null);               // sessionId
+                    pstmt.setTimestamp(11, null);               // droppedOn
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
 
-            // retrieve message id
-            try (PreparedStatement cstmt = c.prepareStatement("CALL IDENTITY();");
-                    ResultSet rs = cstmt.executeQuery()) {
-                if (rs != null && rs.next()) {
-                    result = rs.getInt(1);
+                // retrieve message ids, one generated key per inserted row in batch order
+                try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                    while (rs.next()) {
+                        result.add(rs.getInt(1));
+                    }
                 }
             }
+            if (result.size() != requests.size()) {
+                throw new SQLException("Cannot retrieve the identifiers of the stored messages");
+            }
 
             c.commit();
 
             return result;
         }, "Cannot store message");
-
-        return get(msgId);
     }
 
     @Override
@@ -337,31 +445,63 @@ public class DbDataStore implements DataStore {
 
         return withConnection(c -> {
             try (PreparedStatement stmt = c.prepareStatement(this.sqlGetMessage)) {
-                stmt.setInt(1, msgId);
-                try (final ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        return buildDataMessage(rs);
-                    } else {
-                        return null;
-                    }
-                }
+                return getMessage(stmt, msgId);
             }
         }, "Cannot get message by ID: " + msgId);
     }
 
     @Override
     public synchronized DataMessage getNextMessage() throws KuraStoreException {
+        final List<DataMessage> messages = getNextMessages(1);
+        return messages.isEmpty() ? null : messages.get(0);
+    }
+
+    @Override
+    public synchronized List<DataMessage> getNextMessages(int maxMessages) throws KuraStoreException {
+        return getNextMessages(maxMessages, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized List<DataMessage> getNextMessages(int maxMessages, int minPriority, int maxPriority)
+            throws KuraStoreException {
 
         return withConnection(c -> {
-            try (PreparedStatement stmt = c.prepareStatement(this.sqlGetNextMessage);
-                    ResultSet rs = stmt.executeQuery()) {
-                if (rs != null && rs.next()) {
-                    return buildDataMessage(rs);
-                } else {
-                    return null;
-                }
+            final List<DataMessage> messages = new ArrayList<>();
+            try (PreparedStatement stmt = c.prepareStatement(this.sqlGetMessage)) {
+                boolean staleIndex;
+                do {
+                    staleIndex = false;
+                    messages.clear();
+                    for (Integer msgId : this.unpublishedIndex.first(maxMessages, minPriority, maxPriority)) {
+                        final DataMessage message = getMessage(stmt, msgId);
+                        if (message == null || message.getPublishedOn() != null) {
+                            // deleted or updated behind the index, e.g. by the housekeeper
+                            this.unpublishedIndex.remove(msgId);
+                            staleIndex = true;
+                        } else {
+                            messages.add(message);
+                        }
+                    }
+                } while (staleIndex);
             }
-        }, "Cannot get message next message");
+            return messages;
+        }, "Cannot get next messages");
+    }
+
+    @Override
+    public synchronized int getUnpublishedMessageCount(int minPriority, int maxPriority) {
+        return this.unpublishedIndex.size(minPriority, maxPriority);
+    }
+
+    private DataMessage getMessage(PreparedStatement stmt, int msgId) throws SQLException {
+        stmt.setInt(1, msgId);
+        try (final ResultSet rs = stmt.executeQuery()) {
+            if (rs.next()) {
+                return buildDataMessage(rs);
+            } else {
+                return null;
+            }
+        }
     }
 
     @Override
@@ -381,11 +521,42 @@ public class DbDataStore implements DataStore {
             }
         }, "Cannot update timestamp");
 
+        this.unpublishedIndex.remove(msgId);
     }
 
     @Override
     public synchronized void published(int msgId) throws KuraStoreException {
         updateTimestamp(this.sqlSetPublished2, msgId);
+        this.unpublishedIndex.remove(msgId);
+    }
+
+    @Override
+    public synchronized void published(List<DataMessage> messages) throws KuraStoreException {
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        final Timestamp now = new Timestamp(new Date().getTime());
+
+        withConnection(c -> {
+            try (final PreparedStatement stmt = c.prepareStatement(this.sqlSetPublished)) {
+                for (DataMessage message : messages) {
+                    stmt.setTimestamp(1, now, this.utcCalendar); // timestamp
+                    stmt.setInt(2, message.getPublishedMessageId());
+                    stmt.setString(3, message.getSessionId());
+                    stmt.setInt(4, message.getId());
+                    stmt.addBatch();
+                }
+
+                stmt.executeBatch();
+                c.commit();
+                return (Void) null;
+            }
+        }, "Cannot update timestamps");
+
+        for (DataMessage message : messages) {
+            this.unpublishedIndex.remove(message.getId());
+        }
     }
 
     @Override
@@ -393,12 +564,76 @@ public class DbDataStore implements DataStore {
         updateTimestamp(this.sqlSetConfirmed, msgId);
     }
 
+    @Override
+    public synchronized void confirmed(List<Integer> msgIds) throws KuraStoreException {
+        if (msgIds.isEmpty()) {
+            return;
+        }
+
+        final Timestamp now = new Timestamp(new Date().getTime());
+
+        withConnection(c -> {
+            try (final PreparedStatement stmt = c.prepareStatement(this.sqlSetConfirmed)) {
+                for (Integer msgId : msgIds) {
+                    stmt.setTimestamp(1, now, this.utcCalendar);
+                    stmt.setInt(2, msgId);
+                    stmt.addBatch();
+                }
+
+                stmt.executeBatch();
+                c.commit();
+                return (Void) null;
+            }
+        }, "Cannot update timestamps");
+    }
+
     @Override
     public synchronized List<DataMessage> allUnpublishedMessagesNoPayload() throws KuraStoreException {
         // Order by priority, createdOn
         return listMessages(this.sqlAllUnpublishedMessages);
     }
 
+    @Override
+    public synchronized List<DataMessage> unpublishedMessagesNoPayload(String topic) throws KuraStoreException {
+        return withConnection(c -> {
+            try (final PreparedStatement stmt = c.prepareStatement(this.sqlUnpublishedMessagesByTopic)) {
+                stmt.setString(1, topic);
+                try (final ResultSet rs = stmt.executeQuery()) {
+                    return buildDataMessagesNoPayload(rs);
+                }
+            }
+        }, "Cannot list messages");
+    }
+
+    @Override
+    public synchronized int deleteUnpublishedMessages(List<Integer> msgIds) throws KuraStoreException {
+        if (msgIds.isEmpty()) {
+            return 0;
+        }
+
+        final int deleted = withConnection(c -> {
+            try (final PreparedStatement stmt = c.prepareStatement(this.sqlDeleteUnpublishedMessage)) {
+                for (Integer msgId : msgIds) {
+                    stmt.setInt(1, msgId);
+                    stmt.addBatch();
+                }
+
+                int count = 0;
+                for (int result : stmt.executeBatch()) {
+                    count += Math.max(0, result);
+                }
+                c.commit();
+                return count;
+            }
+        }, "Cannot delete messages");
+
+        for (Integer msgId : msgIds) {
+            this.unpublishedIndex.remove(msgId);
+        }
+        this.messageCount.addAndGet(-deleted);
+        return deleted;
+    }
+
     @Override
     public synchronized List<DataMessage> allInFlightMessagesNoPayload() throws KuraStoreException {
         // Order by priority, createdOn
@@ -414,6 +649,7 @@ public class DbDataStore implements DataStore {
     @Override
     public synchronized void unpublishAllInFlighMessages() throws KuraStoreException {
         execute(this.sqlUnpublishAllInFlightMessages);
+        rebuildUnpublishedIndex();
     }
 
     @Override
@@ -425,13 +661,15 @@ public class DbDataStore implements DataStore {
     public synchronized void deleteStaleMessages(int purgeAge) throws KuraStoreException {
         final Timestamp now = new Timestamp(System.currentTimeMillis());
         // Delete dropped messages (published with QoS > 0)
-        executeDeleteMessagesQuery(this.sqlDeleteDroppedMessages, now, purgeAge);
+        int deleted = executeDeleteMessagesQuery(this.sqlDeleteDroppedMessages, now, purgeAge);
 
         // Delete stale confirmed messages (published with QoS > 0)
-        executeDeleteMessagesQuery(this.sqlDeleteConfirmedMessages, now, purgeAge);
+        deleted += executeDeleteMessagesQuery(this.sqlDeleteConfirmedMessages, now, purgeAge);
 
         // Delete stale published messages with QoS == 0
-        executeDeleteMessagesQuery(this.sqlDeletePublishedMessages, now, purgeAge);
+        deleted += executeDeleteMessagesQuery(this.sqlDeletePublishedMessages, now, purgeAge);
+
+        this.messageCount.addAndGet(-deleted);
     }
 
     @Override
@@ -480,6 +718,8 @@ public class DbDataStore implements DataStore {
             return (Void) null;
         }, "Cannot repair database");
 
+        this.messageCount.set(getMessageCount());
+        rebuildUnpublishedIndex();
     }
 
     // ------------------------------------------------------------------
@@ -488,6 +728,11 @@ public class DbDataStore implements DataStore {
     //
     // ------------------------------------------------------------------
 
+    private synchronized void rebuildUnpublishedIndex() throws KuraStoreException {
+        this.unpublishedIndex.rebuild(listMessages(this.sqlAllUnpublishedMessages));
+        logger.debug("Unpublished message index rebuilt, {} messages", this.unpublishedIndex.size());
+    }
+
     private synchronized void updateTimestamp(String sql, Integer... msgIds) throws KuraStoreException {
         final Timestamp now = new Timestamp(new Date().getTime());
 
@@ -534,16 +779,16 @@ public class DbDataStore implements DataStore {
         }, "Cannot execute query");
     }
 
-    private synchronized void executeDeleteMessagesQuery(String sql, Timestamp timestamp, int purgeAge)
+    private synchronized int executeDeleteMessagesQuery(String sql, Timestamp timestamp, int purgeAge)
             throws KuraStoreException {
-        withConnection(c -> {
+        return withConnection(c -> {
             try (final PreparedStatement stmt = c.prepareStatement(sql)) {
                 stmt.setInt(1, purgeAge);
                 stmt.setTimestamp(2, timestamp, this.utcCalendar);
 
-                stmt.execute();
+                final int deleted = stmt.executeUpdate();
                 c.commit();
-                return (Void) null;
+                return deleted;
             }
         }, "Cannot execute query");
     }
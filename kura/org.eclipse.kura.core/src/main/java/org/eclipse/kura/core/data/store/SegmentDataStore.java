@@ -0,0 +1,869 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.data.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+import org.eclipse.kura.KuraStoreCapacityReachedException;
+import org.eclipse.kura.KuraStoreException;
+import org.eclipse.kura.core.data.DataMessage;
+import org.eclipse.kura.core.data.DataStore;
+import org.eclipse.kura.db.H2DbService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An implementation of the DataStore which appends messages and their state transitions to memory-mapped log
+ * segments. The state of the messages is kept in an in-memory index which is rebuilt by replaying the segments on
+ * start. Purged and deleted messages are recorded as well, so that the replay does not restore them. Segments are
+ * never rewritten: a segment is deleted as a whole as soon as none of its records is needed to rebuild the index.
+ */
+public class SegmentDataStore implements DataStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentDataStore.class);
+
+    private static final String SEGMENT_FILE_SUFFIX = ".seg";
+
+    // body length (int), record type (byte), body CRC32 (int)
+    private static final int RECORD_HEADER_SIZE = 9;
+
+    private static final byte RECORD_STORED = 1;
+    private static final byte RECORD_PUBLISHED = 2;
+    private static final byte RECORD_CONFIRMED = 3;
+    private static final byte RECORD_UNPUBLISHED = 4;
+    private static final byte RECORD_DROPPED = 5;
+    private static final byte RECORD_DELETED = 6;
+
+    // id (int), createdOn (long), qos (byte), retain (byte), priority (int), topic length (int)
+    private static final int STORED_RECORD_FIXED_SIZE = 22;
+
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private static final Comparator<Entry> PRIORITY_ORDER = Comparator.<Entry> comparingInt(e -> e.priority)
+            .thenComparingLong(e -> e.createdOn).thenComparingInt(e -> e.id);
+
+    private final Path directory;
+    private final int segmentSize;
+
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final TreeSet<Entry> unpublished = new TreeSet<>(PRIORITY_ORDER);
+    private int lastId;
+    private boolean started;
+
+    private ScheduledExecutorService houseKeeperExecutor;
+    private ScheduledFuture<?> houseKeeperTask;
+    private int capacity;
+
+    public SegmentDataStore(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    // ----------------------------------------------------------
+    //
+    // Start/Stop
+    //
+    // ----------------------------------------------------------
+
+    @Override
+    public synchronized void start(H2DbService dbService, int houseKeeperInterval, int purgeAge, int capacity)
+            throws KuraStoreException {
+        // the H2DbService is not needed by this store
+        if (this.started) {
+            update(houseKeeperInterval, purgeAge, capacity);
+            return;
+        }
+
+        try {
+            load(false);
+        } catch (IOException e) {
+            closeSegments();
+            throw new KuraStoreException(e, "Cannot load message store segments from " + this.directory);
+        }
+        this.started = true;
+
+        this.houseKeeperExecutor = Executors.newSingleThreadScheduledExecutor();
+
+        update(houseKeeperInterval, purgeAge, capacity);
+    }
+
+    @Override
+    public synchronized void update(int houseKeeperInterval, int purgeAge, int capacity) {
+        this.capacity = capacity;
+
+        if (!this.started) {
+            return;
+        }
+        if (this.houseKeeperTask != null) {
+            this.houseKeeperTask.cancel(true);
+        }
+        this.houseKeeperTask = this.houseKeeperExecutor.scheduleWithFixedDelay(
+                new HouseKeeperTask(this, purgeAge, false), 1, houseKeeperInterval, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        logger.info("Canceling the Housekeeper Task...");
+        if (this.houseKeeperTask != null) {
+            this.houseKeeperTask.cancel(true);
+            this.houseKeeperExecutor.shutdownNow();
+            this.houseKeeperTask = null;
+        }
+        closeSegments();
+        this.started = false;
+    }
+
+    @Override
+    public void setWriteBatching(int batchSize, int lingerTime) {
+        // appending to the active segment does not involve a database transaction, nothing to batch
+    }
+
+    // ----------------------------------------------------------
+    //
+    // Message APIs
+    //
+    // ----------------------------------------------------------
+
+    @Override
+    public synchronized DataMessage store(String topic, byte[] payload, int qos, boolean retain, int priority)
+            throws KuraStoreException {
+        checkStarted();
+        if (topic == null || topic.trim().length() == 0) {
+            throw new IllegalArgumentException("topic");
+        }
+
+        // Priority 0 and 1 messages bypass the capacity check, see DbDataStore
+        if (priority != 0 && priority != 1 && this.entries.size() >= this.capacity) {
+            logger.error("Store capacity exceeded");
+            throw new KuraStoreCapacityReachedException("Store capacity exceeded");
+        }
+
+        final Entry entry = new Entry(nextId(), topic, qos, retain, priority, System.currentTimeMillis());
+        final byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        final byte[] payloadBytes = payload != null ? payload : new byte[0];
+
+        try {
+            final int bodyStart = appendRecord(RECORD_STORED,
+                    STORED_RECORD_FIXED_SIZE + topicBytes.length + 4 + payloadBytes.length, buffer -> {
+                        buffer.putInt(entry.id);
+                        buffer.putLong(entry.createdOn);
+                        buffer.put((byte) qos);
+                        buffer.put((byte) (retain ? 1 : 0));
+                        buffer.putInt(priority);
+                        buffer.putInt(topicBytes.length);
+                        buffer.put(topicBytes);
+                        buffer.putInt(payloadBytes.length);
+                        buffer.put(payloadBytes);
+                    });
+            this.segments.getLast().buffer.force();
+
+            entry.segment = this.segments.getLast();
+            entry.payloadOffset = bodyStart + STORED_RECORD_FIXED_SIZE + topicBytes.length + 4;
+            entry.payloadLength = payloadBytes.length;
+        } catch (IOException e) {
+            throw new KuraStoreException(e, "Cannot store message");
+        }
+
+        this.lastId = entry.id;
+        index(entry);
+
+        return entry.toDataMessage(payloadBytes);
+    }
+
+    @Override
+    public synchronized void published(int msgId, int publishedMsgId, String sessionId) throws KuraStoreException {
+        checkStarted();
+        appendPublished(msgId, publishedMsgId, sessionId, System.currentTimeMillis());
+        force();
+    }
+
+    @Override
+    public synchronized void published(int msgId) throws KuraStoreException {
+        published(msgId, -1, null);
+    }
+
+    @Override
+    public synchronized void published(List<DataMessage> messages) throws KuraStoreException {
+        checkStarted();
+        final long now = System.currentTimeMillis();
+        for (DataMessage message : messages) {
+            appendPublished(message.getId(), message.getPublishedMessageId(), message.getSessionId(), now);
+        }
+        force();
+    }
+
+    @Override
+    public synchronized void confirmed(int msgId) throws KuraStoreException {
+        checkStarted();
+        appendStateChange(RECORD_CONFIRMED, msgId, System.currentTimeMillis());
+        force();
+    }
+
+    @Override
+    public synchronized void confirmed(List<Integer> msgIds) throws KuraStoreException {
+        checkStarted();
+        final long now = System.currentTimeMillis();
+        for (Integer msgId : msgIds) {
+            appendStateChange(RECORD_CONFIRMED, msgId, now);
+        }
+        force();
+    }
+
+    @Override
+    public synchronized DataMessage getNextMessage() throws KuraStoreException {
+        checkStarted();
+        if (this.unpublished.isEmpty()) {
+            return null;
+        }
+        final Entry entry = this.unpublished.first();
+        return entry.toDataMessage(readPayload(entry));
+    }
+
+    @Override
+    public synchronized List<DataMessage> getNextMessages(int maxMessages) throws KuraStoreException {
+        return getNextMessages(maxMessages, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized List<DataMessage> getNextMessages(int maxMessages, int minPriority, int maxPriority)
+            throws KuraStoreException {
+        checkStarted();
+        final List<DataMessage> messages = new ArrayList<>(Math.min(maxMessages, this.unpublished.size()));
+        for (Entry entry : this.unpublished) {
+            if (messages.size() >= maxMessages || entry.priority > maxPriority) {
+                break;
+            }
+            if (entry.priority >= minPriority) {
+                messages.add(entry.toDataMessage(readPayload(entry)));
+            }
+        }
+        return messages;
+    }
+
+    @Override
+    public synchronized int getUnpublishedMessageCount(int minPriority, int maxPriority) throws KuraStoreException {
+        checkStarted();
+        int count = 0;
+        for (Entry entry : this.unpublished) {
+            if (entry.priority > maxPriority) {
+                break;
+            }
+            if (entry.priority >= minPriority) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized DataMessage get(int msgId) throws KuraStoreException {
+        checkStarted();
+        final Entry entry = this.entries.get(msgId);
+        if (entry == null) {
+            return null;
+        }
+        return entry.toDataMessage(readPayload(entry));
+    }
+
+    @Override
+    public synchronized List<DataMessage> allUnpublishedMessagesNoPayload() throws KuraStoreException {
+        checkStarted();
+        final List<DataMessage> messages = new ArrayList<>(this.unpublished.size());
+        for (Entry entry : this.unpublished) {
+            messages.add(entry.toDataMessage(null));
+        }
+        return messages;
+    }
+
+    @Override
+    public synchronized List<DataMessage> unpublishedMessagesNoPayload(String topic) throws KuraStoreException {
+        checkStarted();
+        final List<DataMessage> messages = new ArrayList<>();
+        for (Entry entry : this.unpublished) {
+            if (entry.topic.equals(topic)) {
+                messages.add(entry.toDataMessage(null));
+            }
+        }
+        return messages;
+    }
+
+    @Override
+    public synchronized int deleteUnpublishedMessages(List<Integer> msgIds) throws KuraStoreException {
+        checkStarted();
+        final long now = System.currentTimeMillis();
+        int deleted = 0;
+        for (Integer msgId : msgIds) {
+            final Entry entry = this.entries.get(msgId);
+            if (entry != null && entry.publishedOn == NO_TIMESTAMP) {
+                appendStateChange(RECORD_DELETED, msgId, now);
+                deleted++;
+            }
+        }
+        if (deleted > 0) {
+            force();
+            reclaimSegments();
+        }
+        return deleted;
+    }
+
+    @Override
+    public synchronized List<DataMessage> allInFlightMessagesNoPayload() throws KuraStoreException {
+        checkStarted();
+        return listMessages(Entry::isInFlight);
+    }
+
+    @Override
+    public synchronized List<DataMessage> allDroppedInFlightMessagesNoPayload() throws KuraStoreException {
+        checkStarted();
+        return listMessages(e -> e.droppedOn != NO_TIMESTAMP);
+    }
+
+    @Override
+    public synchronized void unpublishAllInFlighMessages() throws KuraStoreException {
+        checkStarted();
+        // same selection as DbDataStore: dropped messages are not excluded
+        for (Entry entry : selectEntries(Entry::isPublishedNotConfirmed)) {
+            appendStateChange(RECORD_UNPUBLISHED, entry.id, System.currentTimeMillis());
+        }
+        force();
+    }
+
+    @Override
+    public synchronized void dropAllInFlightMessages() throws KuraStoreException {
+        checkStarted();
+        final long now = System.currentTimeMillis();
+        for (Entry entry : selectEntries(Entry::isPublishedNotConfirmed)) {
+            appendStateChange(RECORD_DROPPED, entry.id, now);
+        }
+        force();
+    }
+
+    @Override
+    public synchronized void deleteStaleMessages(int purgeAge) throws KuraStoreException {
+        checkStarted();
+        final long now = System.currentTimeMillis();
+        final long threshold = now - purgeAge * 1000L;
+
+        final List<Entry> stale = selectEntries(entry -> entry.isStale(threshold));
+        for (Entry entry : stale) {
+            appendStateChange(RECORD_DELETED, entry.id, now);
+        }
+
+        if (!stale.isEmpty()) {
+            force();
+            reclaimSegments();
+        }
+    }
+
+    @Override
+    public synchronized void repair() throws KuraStoreException {
+        checkStarted();
+        // the segments are replayed again, truncating each of them after its last valid record
+        closeSegments();
+        try {
+            load(true);
+        } catch (IOException e) {
+            closeSegments();
+            this.started = false;
+            throw new KuraStoreException(e, "Cannot repair message store segments in " + this.directory);
+        }
+    }
+
+    // ------------------------------------------------------------------
+    //
+    // Private Methods: Index
+    //
+    // ------------------------------------------------------------------
+
+    private void checkStarted() throws KuraStoreException {
+        if (!this.started) {
+            throw new KuraStoreException("Message store not started");
+        }
+    }
+
+    private int nextId() {
+        int id = this.lastId;
+        do {
+            id = id == Integer.MAX_VALUE ? 1 : id + 1;
+        } while (this.entries.containsKey(id));
+        return id;
+    }
+
+    private void index(Entry entry) {
+        final Entry previous = this.entries.put(entry.id, entry);
+        if (previous != null) {
+            // identifier reused after a wrap around, the old message had been purged without a deleted record
+            release(previous, null);
+        }
+        this.unpublished.add(entry);
+        addRecordSegment(entry, entry.segment);
+    }
+
+    /**
+     * Records that a segment holds a record of a message, the segment is needed to rebuild the state of the message.
+     */
+    private static void addRecordSegment(Entry entry, Segment segment) {
+        // the records of a message are appended in segment order
+        final List<Segment> recordSegments = entry.recordSegments;
+        if (recordSegments.isEmpty() || recordSegments.get(recordSegments.size() - 1) != segment) {
+            recordSegments.add(segment);
+            segment.references++;
+        }
+    }
+
+    /**
+     * Releases the segments holding the records of a message removed from the index.
+     *
+     * @param tombstoneSegment
+     *            the segment holding the deleted record of the message, or null if there is none
+     */
+    private void release(Entry entry, Segment tombstoneSegment) {
+        this.unpublished.remove(entry);
+        for (Segment segment : entry.recordSegments) {
+            segment.references--;
+        }
+        entry.recordSegments.clear();
+
+        // the deleted record must be kept as long as the stored record, otherwise the replay restores the message
+        final List<Segment> pinned = entry.segment.pinnedTombstones;
+        if (tombstoneSegment != null && tombstoneSegment != entry.segment
+                && (pinned.isEmpty() || pinned.get(pinned.size() - 1) != tombstoneSegment)) {
+            pinned.add(tombstoneSegment);
+            tombstoneSegment.pins++;
+        }
+    }
+
+    private List<Entry> selectEntries(Predicate<Entry> filter) {
+        final List<Entry> selected = new ArrayList<>();
+        for (Entry entry : this.entries.values()) {
+            if (filter.test(entry)) {
+                selected.add(entry);
+            }
+        }
+        Collections.sort(selected, PRIORITY_ORDER);
+        return selected;
+    }
+
+    private List<DataMessage> listMessages(Predicate<Entry> filter) {
+        final List<DataMessage> messages = new ArrayList<>();
+        for (Entry entry : selectEntries(filter)) {
+            messages.add(entry.toDataMessage(null));
+        }
+        return messages;
+    }
+
+    private void applyStateChange(Segment segment, byte type, int msgId, long timestamp, int publishedMsgId,
+            String sessionId) {
+        final Entry entry = this.entries.get(msgId);
+        if (entry == null) {
+            return;
+        }
+        if (type != RECORD_DELETED) {
+            addRecordSegment(entry, segment);
+        }
+        switch (type) {
+        case RECORD_PUBLISHED:
+            entry.publishedOn = timestamp;
+            entry.publishedMessageId = publishedMsgId;
+            entry.sessionId = sessionId;
+            this.unpublished.remove(entry);
+            break;
+        case RECORD_CONFIRMED:
+            entry.confirmedOn = timestamp;
+            break;
+        case RECORD_UNPUBLISHED:
+            entry.publishedOn = NO_TIMESTAMP;
+            this.unpublished.add(entry);
+            break;
+        case RECORD_DROPPED:
+            entry.droppedOn = timestamp;
+            break;
+        case RECORD_DELETED:
+            this.entries.remove(msgId);
+            release(entry, segment);
+            break;
+        default:
+            logger.warn("Unknown record type {} for message ID {}", type, msgId);
+        }
+    }
+
+    // ------------------------------------------------------------------
+    //
+    // Private Methods: Segments
+    //
+    // ------------------------------------------------------------------
+
+    private void appendPublished(int msgId, int publishedMsgId, String sessionId, long timestamp)
+            throws KuraStoreException {
+        final byte[] sessionBytes = sessionId != null ? sessionId.getBytes(StandardCharsets.UTF_8) : null;
+        try {
+            appendRecord(RECORD_PUBLISHED, 20 + (sessionBytes != null ? sessionBytes.length : 0), buffer -> {
+                buffer.putInt(msgId);
+                buffer.putLong(timestamp);
+                buffer.putInt(publishedMsgId);
+                if (sessionBytes == null) {
+                    buffer.putInt(-1);
+                } else {
+                    buffer.putInt(sessionBytes.length);
+                    buffer.put(sessionBytes);
+                }
+            });
+        } catch (IOException e) {
+            throw new KuraStoreException(e, "Cannot update message state");
+        }
+        applyStateChange(this.segments.getLast(), RECORD_PUBLISHED, msgId, timestamp, publishedMsgId, sessionId);
+    }
+
+    private void appendStateChange(byte type, int msgId, long timestamp) throws KuraStoreException {
+        try {
+            appendRecord(type, 12, buffer -> {
+                buffer.putInt(msgId);
+                buffer.putLong(timestamp);
+            });
+        } catch (IOException e) {
+            throw new KuraStoreException(e, "Cannot update message state");
+        }
+        applyStateChange(this.segments.getLast(), type, msgId, timestamp, -1, null);
+    }
+
+    /**
+     * Appends a record to the active segment, rolling a new segment if needed.
+     *
+     * @return the offset of the record body in the active segment
+     */
+    private int appendRecord(byte type, int bodyLength, Consumer<ByteBuffer> bodyWriter) throws IOException {
+        Segment segment = this.segments.getLast();
+        if (segment.buffer.remaining() < RECORD_HEADER_SIZE + bodyLength) {
+            segment.buffer.force();
+            segment = createSegment(segment.sequence + 1, RECORD_HEADER_SIZE + bodyLength);
+            this.segments.addLast(segment);
+        }
+
+        final MappedByteBuffer buffer = segment.buffer;
+        final int recordStart = buffer.position();
+        final int bodyStart = recordStart + RECORD_HEADER_SIZE;
+
+        buffer.position(bodyStart);
+        bodyWriter.accept(buffer);
+
+        final ByteBuffer body = buffer.duplicate();
+        body.position(bodyStart);
+        body.limit(bodyStart + bodyLength);
+        final CRC32 crc = new CRC32();
+        crc.update(body);
+
+        // the record type is written last, a record is not valid until it is set
+        buffer.putInt(recordStart + 5, (int) crc.getValue());
+        buffer.putInt(recordStart, bodyLength);
+        buffer.put(recordStart + 4, type);
+
+        return bodyStart;
+    }
+
+    private void force() {
+        this.segments.getLast().buffer.force();
+    }
+
+    private byte[] readPayload(Entry entry) {
+        final byte[] payload = new byte[entry.payloadLength];
+        final ByteBuffer buffer = entry.segment.buffer.duplicate();
+        buffer.position(entry.payloadOffset);
+        buffer.get(payload);
+        return payload;
+    }
+
+    /**
+     * Loads the segments and rebuilds the index.
+     *
+     * @param truncate
+     *            if true, the bytes following the last valid record of each segment are cleared
+     */
+    private void load(boolean truncate) throws IOException {
+        Files.createDirectories(this.directory);
+
+        final List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, "*" + SEGMENT_FILE_SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+
+        for (Path file : files) {
+            final String name = file.getFileName().toString();
+            final long sequence = Long.parseLong(name.substring(0, name.length() - SEGMENT_FILE_SUFFIX.length()));
+            final Segment segment = new Segment(sequence, file, 0);
+            this.segments.addLast(segment);
+            replay(segment, truncate);
+        }
+
+        if (this.segments.isEmpty()) {
+            this.segments.addLast(createSegment(0, 0));
+        }
+        reclaimSegments();
+
+        logger.info("Loaded {} messages from {} segments in {}", this.entries.size(), this.segments.size(),
+                this.directory);
+    }
+
+    private void replay(Segment segment, boolean truncate) {
+        final MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+
+        while (buffer.limit() - position >= RECORD_HEADER_SIZE) {
+            final int bodyLength = buffer.getInt(position);
+            final byte type = buffer.get(position + 4);
+            final int bodyStart = position + RECORD_HEADER_SIZE;
+
+            if (type == 0 || bodyLength <= 0 || bodyLength > buffer.limit() - bodyStart) {
+                break;
+            }
+
+            final ByteBuffer body = buffer.duplicate();
+            body.position(bodyStart);
+            body.limit(bodyStart + bodyLength);
+            final CRC32 crc = new CRC32();
+            crc.update(body);
+            if ((int) crc.getValue() != buffer.getInt(position + 5)) {
+                logger.warn("Corrupted record found in segment {} at offset {}, skipping the rest of the segment",
+                        segment.path, position);
+                break;
+            }
+
+            body.position(bodyStart);
+            replayRecord(segment, type, body, bodyStart);
+            position = bodyStart + bodyLength;
+        }
+
+        if (truncate && truncate(segment, position)) {
+            logger.warn("Truncated segment {} at offset {}", segment.path, position);
+        }
+        buffer.position(position);
+    }
+
+    /**
+     * Clears the bytes of a segment starting from the provided offset.
+     *
+     * @return true if the segment has been modified
+     */
+    private static boolean truncate(Segment segment, int position) {
+        final MappedByteBuffer buffer = segment.buffer;
+        boolean modified = false;
+        for (int i = position; i < buffer.limit(); i++) {
+            if (buffer.get(i) != 0) {
+                buffer.put(i, (byte) 0);
+                modified = true;
+            }
+        }
+        if (modified) {
+            buffer.force();
+        }
+        return modified;
+    }
+
+    private void replayRecord(Segment segment, byte type, ByteBuffer body, int bodyStart) {
+        final int msgId = body.getInt();
+        if (type == RECORD_STORED) {
+            final long createdOn = body.getLong();
+            final int qos = body.get();
+            final boolean retain = body.get() != 0;
+            final int priority = body.getInt();
+            final byte[] topic = new byte[body.getInt()];
+            body.get(topic);
+
+            final Entry entry = new Entry(msgId, new String(topic, StandardCharsets.UTF_8), qos, retain, priority,
+                    createdOn);
+            entry.segment = segment;
+            entry.payloadLength = body.getInt();
+            entry.payloadOffset = body.position();
+            index(entry);
+            this.lastId = msgId;
+        } else if (type == RECORD_PUBLISHED) {
+            final long timestamp = body.getLong();
+            final int publishedMsgId = body.getInt();
+            final int sessionLength = body.getInt();
+            String sessionId = null;
+            if (sessionLength >= 0) {
+                final byte[] session = new byte[sessionLength];
+                body.get(session);
+                sessionId = new String(session, StandardCharsets.UTF_8);
+            }
+            applyStateChange(segment, type, msgId, timestamp, publishedMsgId, sessionId);
+        } else {
+            applyStateChange(segment, type, msgId, body.getLong(), -1, null);
+        }
+    }
+
+    private Segment createSegment(long sequence, int minimumSize) throws IOException {
+        final Path path = this.directory.resolve(String.format("%020d%s", sequence, SEGMENT_FILE_SUFFIX));
+        logger.debug("Creating segment {}", path);
+        return new Segment(sequence, path, Math.max(this.segmentSize, minimumSize));
+    }
+
+    /**
+     * Deletes the segments, other than the active one, whose records are not needed to rebuild the index.
+     */
+    private void reclaimSegments() {
+        // a segment only pins the deleted records of later segments, a single pass in segment order is enough
+        final Iterator<Segment> iterator = this.segments.iterator();
+        while (iterator.hasNext()) {
+            final Segment segment = iterator.next();
+            if (!iterator.hasNext()) {
+                break;
+            }
+            if (segment.references > 0 || segment.pins > 0) {
+                continue;
+            }
+
+            iterator.remove();
+            for (Segment tombstoneSegment : segment.pinnedTombstones) {
+                tombstoneSegment.pins--;
+            }
+            segment.close();
+            try {
+                Files.delete(segment.path);
+                logger.info("Deleted segment {}", segment.path);
+            } catch (IOException e) {
+                logger.warn("Cannot delete segment {}", segment.path, e);
+            }
+        }
+    }
+
+    private void closeSegments() {
+        for (Segment segment : this.segments) {
+            segment.close();
+        }
+        this.segments.clear();
+        this.entries.clear();
+        this.unpublished.clear();
+    }
+
+    private static final class Segment {
+
+        private final long sequence;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        /** The number of messages in the index with a record in this segment */
+        private int references;
+
+        /** The number of deleted records in this segment of messages stored in segments not deleted yet */
+        private int pins;
+
+        /** The segments holding the deleted records of messages stored in this segment */
+        private final List<Segment> pinnedTombstones = new ArrayList<>();
+
+        Segment(long sequence, Path path, int size) throws IOException {
+            this.sequence = sequence;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.buffer = this.channel.map(MapMode.READ_WRITE, 0, Math.max(size, this.channel.size()));
+        }
+
+        void close() {
+            this.buffer.force();
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                logger.warn("Cannot close segment {}", this.path, e);
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final int id;
+        private final String topic;
+        private final int qos;
+        private final boolean retain;
+        private final int priority;
+        private final long createdOn;
+
+        private long publishedOn = NO_TIMESTAMP;
+        private int publishedMessageId = -1;
+        private String sessionId;
+        private long confirmedOn = NO_TIMESTAMP;
+        private long droppedOn = NO_TIMESTAMP;
+
+        private Segment segment;
+        private int payloadOffset;
+        private int payloadLength;
+
+        /** The segments holding the records of the message, in segment order */
+        private final List<Segment> recordSegments = new ArrayList<>(2);
+
+        Entry(int id, String topic, int qos, boolean retain, int priority, long createdOn) {
+            this.id = id;
+            this.topic = topic;
+            this.qos = qos;
+            this.retain = retain;
+            this.priority = priority;
+            this.createdOn = createdOn;
+        }
+
+        boolean isPublishedNotConfirmed() {
+            return this.publishedOn != NO_TIMESTAMP && this.qos > 0 && this.confirmedOn == NO_TIMESTAMP;
+        }
+
+        boolean isInFlight() {
+            return isPublishedNotConfirmed() && this.droppedOn == NO_TIMESTAMP;
+        }
+
+        boolean isStale(long threshold) {
+            return this.droppedOn != NO_TIMESTAMP && this.droppedOn <= threshold
+                    || this.confirmedOn != NO_TIMESTAMP && this.confirmedOn <= threshold
+                    || this.qos == 0 && this.publishedOn != NO_TIMESTAMP && this.publishedOn <= threshold;
+        }
+
+        DataMessage toDataMessage(byte[] payload) {
+            return new DataMessage.Builder(this.id).withTopic(this.topic).withQos(this.qos).withRetain(this.retain)
+                    .withCreatedOn(toDate(this.createdOn)).withPublishedOn(toDate(this.publishedOn))
+                    .withPublishedMessageId(this.publishedMessageId).withConfirmedOn(toDate(this.confirmedOn))
+                    .withPayload(payload).withPriority(this.priority).withSessionId(this.sessionId)
+                    .withDroppedOn(toDate(this.droppedOn)).build();
+        }
+
+        private static Date toDate(long timestamp) {
+            return timestamp == NO_TIMESTAMP ? null : new Date(timestamp);
+        }
+    }
+}
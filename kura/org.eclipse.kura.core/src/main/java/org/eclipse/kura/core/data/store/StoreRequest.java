@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.data.store;
+
+import java.sql.Timestamp;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.eclipse.kura.KuraStoreException;
+import org.eclipse.kura.core.data.DataMessage;
+
+/**
+ * A message waiting to be written to the store, together with the future that will be completed
+ * with the stored {@link DataMessage} once the transaction including it has been committed.
+ */
+class StoreRequest {
+
+    private final String topic;
+    private final byte[] payload;
+    private final int qos;
+    private final boolean retain;
+    private final int priority;
+    private final Timestamp createdOn;
+
+    private final CompletableFuture<DataMessage> result = new CompletableFuture<>();
+
+    StoreRequest(String topic, byte[] payload, int qos, boolean retain, int priority, Timestamp createdOn) {
+        this.topic = topic;
+        this.payload = payload;
+        this.qos = qos;
+        this.retain = retain;
+        this.priority = priority;
+        this.createdOn = createdOn;
+    }
+
+    String getTopic() {
+        return this.topic;
+    }
+
+    byte[] getPayload() {
+        return this.payload;
+    }
+
+    int getQos() {
+        return this.qos;
+    }
+
+    boolean isRetain() {
+        return this.retain;
+    }
+
+    int getPriority() {
+        return this.priority;
+    }
+
+    Timestamp getCreatedOn() {
+        return this.createdOn;
+    }
+
+    void complete(int msgId) {
+        this.result.complete(new DataMessage.Builder(msgId).withTopic(this.topic).withQos(this.qos)
+                .withRetain(this.retain).withCreatedOn(this.createdOn).withPublishedMessageId(-1)
+                .withPayload(this.payload).withPriority(this.priority).build());
+    }
+
+    void fail(KuraStoreException e) {
+        this.result.completeExceptionally(e);
+    }
+
+    DataMessage await() throws KuraStoreException {
+        try {
+            return this.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KuraStoreException(e, "Interrupted while waiting for the message to be stored");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof KuraStoreException) {
+                throw (KuraStoreException) cause;
+            }
+            throw new KuraStoreException(cause, "Cannot store message");
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.data.store;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.eclipse.kura.core.data.DataMessage;
+
+/**
+ * Keeps the identifiers of the unpublished messages ordered by priority and creation time, so that the next
+ * messages to be published can be selected without querying the database.
+ * This class is not thread safe, the owning store is responsible for the synchronization.
+ */
+class UnpublishedMessageIndex {
+
+    private static final Comparator<Key> ORDER = Comparator.<Key> comparingInt(k -> k.priority)
+            .thenComparingLong(k -> k.createdOn).thenComparingInt(k -> k.id);
+
+    private final TreeSet<Key> keys = new TreeSet<>(ORDER);
+    private final Map<Integer, Key> keysById = new HashMap<>();
+    private final TreeMap<Integer, Integer> countsByPriority = new TreeMap<>();
+
+    void add(int id, int priority, long createdOn) {
+        final Key key = new Key(id, priority, createdOn);
+        final Key previous = this.keysById.put(id, key);
+        if (previous != null) {
+            removeKey(previous);
+        }
+        this.keys.add(key);
+        this.countsByPriority.merge(priority, 1, Integer::sum);
+    }
+
+    void remove(int id) {
+        final Key key = this.keysById.remove(id);
+        if (key != null) {
+            removeKey(key);
+        }
+    }
+
+    private void removeKey(Key key) {
+        this.keys.remove(key);
+        this.countsByPriority.computeIfPresent(key.priority, (priority, count) -> count > 1 ? count - 1 : null);
+    }
+
+    void rebuild(List<DataMessage> unpublishedMessages) {
+        clear();
+        for (DataMessage message : unpublishedMessages) {
+            add(message.getId(), message.getPriority(), message.getCreatedOn().getTime());
+        }
+    }
+
+    void clear() {
+        this.keys.clear();
+        this.keysById.clear();
+        this.countsByPriority.clear();
+    }
+
+    /**
+     * Returns the identifiers of the first messages in publishing order.
+     *
+     * @param maxMessages
+     *            the maximum number of identifiers to be returned
+     */
+    List<Integer> first(int maxMessages) {
+        return first(maxMessages, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the identifiers of the first messages in publishing order among the ones with a priority
+     * in the given range.
+     *
+     * @param maxMessages
+     *            the maximum number of identifiers to be returned
+     * @param minPriority
+     *            the lowest priority value, inclusive
+     * @param maxPriority
+     *            the highest priority value, inclusive
+     */
+    List<Integer> first(int maxMessages, int minPriority, int maxPriority) {
+        final List<Integer> ids = new ArrayList<>(Math.min(maxMessages, this.keys.size()));
+        final Key from = new Key(Integer.MIN_VALUE, minPriority, Long.MIN_VALUE);
+        for (Key key : this.keys.tailSet(from)) {
+            if (ids.size() >= maxMessages || key.priority > maxPriority) {
+                break;
+            }
+            ids.add(key.id);
+        }
+        return ids;
+    }
+
+    int size() {
+        return this.keys.size();
+    }
+
+    int size(int minPriority, int maxPriority) {
+        int size = 0;
+        for (int count : this.countsByPriority.subMap(minPriority, true, maxPriority, true).values()) {
+            size += count;
+        }
+        return size;
+    }
+
+    private static final class Key {
+
+        private final int id;
+        private final int priority;
+        private final long createdOn;
+
+        Key(int id, int priority, long createdOn) {
+            this.id = id;
+            this.priority = priority;
+            this.createdOn = createdOn;
+        }
+    }
+}
@@ -0,0 +1,646 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.data.transport.mqtt;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.net.SocketFactory;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.eclipse.kura.core.data.transport.mqtt.Mqtt5Codec.Ack;
+import org.eclipse.kura.core.data.transport.mqtt.Mqtt5Codec.Connack;
+import org.eclipse.kura.core.data.transport.mqtt.Mqtt5Codec.Packet;
+import org.eclipse.kura.core.data.transport.mqtt.Mqtt5Codec.Publish;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A minimal MQTT 5 client supporting the features needed by {@link Mqtt5DataTransport}: QoS 0, 1 and 2 publishing
+ * and subscriptions, outbound topic aliases, session expiry and the flow control negotiated through the server
+ * Receive Maximum.
+ * <p>
+ * In-flight QoS 1 and QoS 2 messages are kept in memory and retransmitted when reconnecting to a session that is still
+ * present on the server. They are discarded when the server starts a new session.
+ */
+class Mqtt5Client {
+
+    private static final Logger logger = LoggerFactory.getLogger(Mqtt5Client.class);
+
+    private static final int DEFAULT_PORT = 1883;
+    private static final int DEFAULT_SECURE_PORT = 8883;
+    private static final int MAX_PACKET_ID = 65535;
+
+    /**
+     * Receives the events of a {@link Mqtt5Client}. The methods are called by the client reader thread.
+     */
+    interface Callback {
+
+        void connectionLost(Throwable cause);
+
+        /**
+         * Called when a QoS 1 or QoS 2 message is acknowledged by the server.
+         */
+        void deliveryComplete(int packetId);
+
+        void messageArrived(String topic, byte[] payload, int qos, boolean retained);
+    }
+
+    private final String brokerUrl;
+    private final String host;
+    private final int port;
+    private final boolean secure;
+    private final Callback callback;
+
+    // Guarded by itself, also guards the packet ID allocation
+    private final Map<Integer, InFlightMessage> inFlight = new LinkedHashMap<>();
+    private final Map<Integer, CompletableFuture<Ack>> pendingAcks = new ConcurrentHashMap<>();
+    private final Set<Integer> pendingReleases = ConcurrentHashMap.newKeySet();
+    private int nextPacketId = 1;
+
+    private volatile Connection connection;
+
+    /**
+     * @param brokerUrl
+     *            the broker URL, tcp://host[:port] or ssl://host[:port]
+     */
+    Mqtt5Client(String brokerUrl, Callback callback) {
+        URI uri = URI.create(brokerUrl);
+        String scheme = uri.getScheme();
+        if (!"tcp".equals(scheme) && !"ssl".equals(scheme)) {
+            throw new IllegalArgumentException("Unsupported broker URL scheme: " + scheme);
+        }
+        if (uri.getHost() == null) {
+            throw new IllegalArgumentException("Missing host in broker URL: " + brokerUrl);
+        }
+
+        this.brokerUrl = brokerUrl;
+        this.host = uri.getHost();
+        this.secure = "ssl".equals(scheme);
+        this.port = uri.getPort() > 0 ? uri.getPort() : this.secure ? DEFAULT_SECURE_PORT : DEFAULT_PORT;
+        this.callback = callback;
+    }
+
+    String getBrokerUrl() {
+        return this.brokerUrl;
+    }
+
+    boolean isConnected() {
+        return this.connection != null;
+    }
+
+    /**
+     * Opens the network connection and waits for the CONNACK.
+     *
+     * @param topicAliasMaximum
+     *            the maximum number of outbound topic aliases, further capped by the server
+     * @return true if the server resumed an existing session
+     */
+    synchronized boolean connect(Mqtt5ConnectOptions options, int topicAliasMaximum) throws Mqtt5Exception {
+        if (this.connection != null) {
+            throw new IllegalStateException("Already connected");
+        }
+
+        Socket socket = null;
+        try {
+            int timeoutMillis = options.getConnectionTimeout() * 1000;
+
+            SocketFactory socketFactory = options.getSocketFactory();
+            if (socketFactory == null) {
+                socketFactory = this.secure ? SSLSocketFactory.getDefault() : SocketFactory.getDefault();
+            }
+            socket = socketFactory.createSocket();
+            socket.connect(new InetSocketAddress(this.host, this.port), timeoutMillis);
+            socket.setSoTimeout(timeoutMillis);
+            socket.setTcpNoDelay(true);
+            if (socket instanceof SSLSocket) {
+                ((SSLSocket) socket).startHandshake();
+            }
+
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            out.write(Mqtt5Codec.encodeConnect(options));
+            out.flush();
+
+            Packet packet = Mqtt5Codec.readPacket(in);
+            if (packet.getType() != Mqtt5Codec.CONNACK) {
+                throw new IOException("Expected CONNACK, received packet type " + packet.getType());
+            }
+            Connack connack = Mqtt5Codec.decodeConnack(packet);
+            if (connack.getReasonCode() >= Mqtt5Codec.REASON_UNSPECIFIED_ERROR) {
+                closeQuietly(socket);
+                throw new Mqtt5Exception(connack.getReasonCode(), String
+                        .format("Connection refused by the server, reason code 0x%02X", connack.getReasonCode()));
+            }
+            socket.setSoTimeout(0);
+
+            Connection newConnection = new Connection(socket, in, out, connack, options, topicAliasMaximum);
+            boolean sessionPresent = connack.isSessionPresent();
+            synchronized (this.inFlight) {
+                if (!sessionPresent) {
+                    this.inFlight.clear();
+                    this.pendingReleases.clear();
+                }
+                newConnection.resend(new ArrayList<>(this.inFlight.values()));
+            }
+
+            this.connection = newConnection;
+            newConnection.start();
+            return sessionPresent;
+        } catch (IOException e) {
+            closeQuietly(socket);
+            throw new Mqtt5Exception(Mqtt5Exception.REASON_CODE_CONNECTION_LOST, "Cannot connect to " + this.brokerUrl,
+                    e);
+        }
+    }
+
+    /**
+     * Waits up to the quiesce timeout for the in-flight messages to be acknowledged and closes the connection.
+     * The callback is not notified.
+     */
+    synchronized void disconnect(long quiesceTimeout) {
+        Connection current = this.connection;
+        if (current == null) {
+            return;
+        }
+
+        long deadline = System.currentTimeMillis() + quiesceTimeout;
+        synchronized (this.inFlight) {
+            long remaining = quiesceTimeout;
+            while (!this.inFlight.isEmpty() && remaining > 0 && this.connection == current) {
+                try {
+                    this.inFlight.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+
+        this.connection = null;
+        try {
+            current.write(Mqtt5Codec.encodeDisconnect(Mqtt5Codec.REASON_SUCCESS));
+        } catch (IOException e) {
+            logger.debug("Cannot send DISCONNECT", e);
+        }
+        current.close();
+    }
+
+    /**
+     * Publishes a message.
+     *
+     * @return the packet ID of a QoS 1 or QoS 2 message, confirmed later through
+     *         {@link Callback#deliveryComplete(int)}, 0 for a QoS 0 message
+     * @throws Mqtt5Exception
+     *             with {@link Mqtt5Exception#REASON_CODE_MAX_INFLIGHT} if the server Receive Maximum is reached
+     */
+    int publish(String topic, byte[] payload, int qos, boolean retain, long messageExpiryInterval,
+            List<String[]> userProperties) throws Mqtt5Exception {
+        return requireConnection().publish(topic, payload, qos, retain, messageExpiryInterval, userProperties);
+    }
+
+    void subscribe(String topicFilter, int qos, long timeoutMillis) throws Mqtt5Exception {
+        Connection current = requireConnection();
+        CompletableFuture<Ack> future = new CompletableFuture<>();
+        int packetId;
+        synchronized (this.inFlight) {
+            packetId = allocatePacketId();
+            this.pendingAcks.put(packetId, future);
+        }
+        awaitAck(current, Mqtt5Codec.encodeSubscribe(packetId, topicFilter, qos), packetId, future, timeoutMillis);
+    }
+
+    void unsubscribe(String topicFilter, long timeoutMillis) throws Mqtt5Exception {
+        Connection current = requireConnection();
+        CompletableFuture<Ack> future = new CompletableFuture<>();
+        int packetId;
+        synchronized (this.inFlight) {
+            packetId = allocatePacketId();
+            this.pendingAcks.put(packetId, future);
+        }
+        awaitAck(current, Mqtt5Codec.encodeUnsubscribe(packetId, topicFilter), packetId, future, timeoutMillis);
+    }
+
+    /**
+     * @return the number of QoS 1 and QoS 2 messages not yet acknowledged by the server
+     */
+    int getInFlightCount() {
+        synchronized (this.inFlight) {
+            return this.inFlight.size();
+        }
+    }
+
+    private void awaitAck(Connection current, byte[] packet, int packetId, CompletableFuture<Ack> future,
+            long timeoutMillis) throws Mqtt5Exception {
+        try {
+            current.write(packet);
+            Ack ack = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            if (ack.getReasonCode() >= Mqtt5Codec.REASON_UNSPECIFIED_ERROR) {
+                throw new Mqtt5Exception(ack.getReasonCode(),
+                        String.format("Request refused by the server, reason code 0x%02X", ack.getReasonCode()));
+            }
+        } catch (IOException e) {
+            current.failed(e);
+            throw new Mqtt5Exception(Mqtt5Exception.REASON_CODE_CONNECTION_LOST, "Connection lost", e);
+        } catch (TimeoutException e) {
+            throw new Mqtt5Exception(Mqtt5Exception.REASON_CODE_CLIENT_TIMEOUT, "Timeout waiting for the server", e);
+        } catch (ExecutionException e) {
+            throw new Mqtt5Exception(Mqtt5Exception.REASON_CODE_CONNECTION_LOST, "Connection lost", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new Mqtt5Exception(Mqtt5Exception.REASON_CODE_CONNECTION_LOST, "Interrupted", e);
+        } finally {
+            this.pendingAcks.remove(packetId);
+        }
+    }
+
+    private Connection requireConnection() throws Mqtt5Exception {
+        Connection current = this.connection;
+        if (current == null) {
+            throw new Mqtt5Exception(Mqtt5Exception.REASON_CODE_CLIENT_NOT_CONNECTED, "Not connected");
+        }
+        return current;
+    }
+
+    // Must be called holding the inFlight lock
+    private int allocatePacketId() {
+        for (int i = 0; i < MAX_PACKET_ID; i++) {
+            int packetId = this.nextPacketId;
+            this.nextPacketId = packetId == MAX_PACKET_ID ? 1 : packetId + 1;
+            if (!this.inFlight.containsKey(packetId) && !this.pendingAcks.containsKey(packetId)) {
+                return packetId;
+            }
+        }
+        throw new IllegalStateException("No packet identifier available");
+    }
+
+    private void messageAcknowledged(Connection current, int packetId, int reasonCode) {
+        InFlightMessage message;
+        synchronized (this.inFlight) {
+            message = this.inFlight.remove(packetId);
+            if (this.inFlight.isEmpty()) {
+                this.inFlight.notifyAll();
+            }
+        }
+        if (message == null) {
+            logger.debug("Ignoring acknowledgement of unknown packet ID: {}", packetId);
+            return;
+        }
+
+        current.sendQuota.release();
+        if (reasonCode >= Mqtt5Codec.REASON_UNSPECIFIED_ERROR) {
+            logger.warn("Message with ID {} on topic {} rejected by the server, reason code 0x{}", packetId,
+                    message.topic, Integer.toHexString(reasonCode));
+        }
+        this.callback.deliveryComplete(packetId);
+    }
+
+    private static void closeQuietly(Socket socket) {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.debug("Cannot close socket", e);
+        }
+    }
+
+    /**
+     * A QoS 1 or QoS 2 message not yet acknowledged by the server.
+     */
+    private static final class InFlightMessage {
+
+        private final int packetId;
+        private final String topic;
+        private final byte[] payload;
+        private final int qos;
+        private final boolean retain;
+        private final long messageExpiryInterval;
+        private final List<String[]> userProperties;
+        private volatile boolean received;
+
+        InFlightMessage(int packetId, String topic, byte[] payload, int qos, boolean retain,
+                long messageExpiryInterval, List<String[]> userProperties) {
+            this.packetId = packetId;
+            this.topic = topic;
+            this.payload = payload;
+            this.qos = qos;
+            this.retain = retain;
+            this.messageExpiryInterval = messageExpiryInterval;
+            this.userProperties = userProperties;
+        }
+    }
+
+    /**
+     * The state of a network connection: topic aliases and flow control are negotiated for each connection.
+     */
+    private final class Connection implements Runnable {
+
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+        private final Thread reader;
+        private final ScheduledExecutorService pinger;
+
+        private final Semaphore sendQuota;
+        private final Mqtt5TopicAliases topicAliases;
+        private final int maximumQos;
+        private final boolean retainAvailable;
+        private final long maximumPacketSize;
+        private final long keepAliveMillis;
+
+        private volatile long lastSent = System.currentTimeMillis();
+        private volatile long pingSent;
+        private boolean closed;
+
+        Connection(Socket socket, InputStream in, OutputStream out, Connack connack, Mqtt5ConnectOptions options,
+                int topicAliasMaximum) {
+            this.socket = socket;
+            this.in = in;
+            this.out = out;
+
+            Mqtt5Codec.Properties properties = connack.getProperties();
+            Integer receiveMaximum = properties.getInt(Mqtt5Codec.PROP_RECEIVE_MAXIMUM);
+            Integer serverTopicAliasMaximum = properties.getInt(Mqtt5Codec.PROP_TOPIC_ALIAS_MAXIMUM);
+            Integer maxQos = properties.getInt(Mqtt5Codec.PROP_MAXIMUM_QOS);
+            Integer retain = properties.getInt(Mqtt5Codec.PROP_RETAIN_AVAILABLE);
+            Long maxPacketSize = properties.getLong(Mqtt5Codec.PROP_MAXIMUM_PACKET_SIZE);
+            Integer serverKeepAlive = properties.getInt(Mqtt5Codec.PROP_SERVER_KEEP_ALIVE);
+
+            int quota = receiveMaximum != null ? receiveMaximum : MAX_PACKET_ID;
+            this.sendQuota = new Semaphore(Math.max(0, quota - getInFlightCount()));
+            this.topicAliases = new Mqtt5TopicAliases(
+                    Math.min(topicAliasMaximum, serverTopicAliasMaximum != null ? serverTopicAliasMaximum : 0));
+            this.maximumQos = maxQos != null ? maxQos : 2;
+            this.retainAvailable = retain == null || retain != 0;
+            this.maximumPacketSize = maxPacketSize != null ? maxPacketSize : 0;
+            this.keepAliveMillis = (serverKeepAlive != null ? serverKeepAlive : options.getKeepAliveInterval())
+                    * 1000L;
+
+            logger.info("Connected to {}: receive maximum {}, topic alias maximum {}, maximum QoS {}",
+                    Mqtt5Client.this.brokerUrl, quota, serverTopicAliasMaximum, this.maximumQos);
+
+            this.reader = new Thread(this, "MQTT5 Rcv: " + options.getClientId());
+            this.reader.setDaemon(true);
+            this.pinger = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "MQTT5 Ping: " + options.getClientId());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        void start() {
+            this.reader.start();
+            if (this.keepAliveMillis > 0) {
+                long period = Math.max(1000, this.keepAliveMillis / 2);
+                this.pinger.scheduleAtFixedRate(this::keepAlive, period, period, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        // Called holding the inFlight lock, before the reader is started
+        void resend(List<InFlightMessage> messages) throws IOException {
+            for (InFlightMessage message : messages) {
+                if (message.received) {
+                    write(Mqtt5Codec.encodeAck(Mqtt5Codec.PUBREL, message.packetId, Mqtt5Codec.REASON_SUCCESS));
+                } else {
+                    write(Mqtt5Codec.encodePublish(message.topic, message.payload, message.qos, message.retain, true,
+                            message.packetId, 0, message.messageExpiryInterval, message.userProperties));
+                }
+            }
+            if (!messages.isEmpty()) {
+                logger.info("Resent {} in-flight messages", messages.size());
+            }
+        }
+
+        int publish(String topic, byte[] payload, int qos, boolean retain, long messageExpiryInterval,
+                List<String[]> userProperties) throws Mqtt5Exception {
+            int effectiveQos = Math.min(qos, this.maximumQos);
+            boolean effectiveRetain = retain && this.retainAvailable;
+            if (effectiveQos != qos || effectiveRetain != retain) {
+                logger.debug("Publishing on topic {} with QoS {} and retain {} as allowed by the server", topic,
+                        effectiveQos, effectiveRetain);
+            }
+
+            if (this.maximumPacketSize > 0) {
+                int size = Mqtt5Codec.encodePublish(topic, payload, effectiveQos, effectiveRetain, false, 1, 0,
+                        messageExpiryInterval, userProperties).length;
+                if (size > this.maximumPacketSize) {
+                    throw new Mqtt5Exception(Mqtt5Exception.REASON_CODE_PACKET_TOO_LARGE,
+                            "Packet size " + size + " exceeds the server maximum " + this.maximumPacketSize);
+                }
+            }
+
+            int packetId = 0;
+            if (effectiveQos > 0) {
+                if (!this.sendQuota.tryAcquire()) {
+                    throw new Mqtt5Exception(Mqtt5Exception.REASON_CODE_MAX_INFLIGHT,
+                            "Server receive maximum reached");
+                }
+                synchronized (Mqtt5Client.this.inFlight) {
+                    packetId = allocatePacketId();
+                    Mqtt5Client.this.inFlight.put(packetId, new InFlightMessage(packetId, topic, payload,
+                            effectiveQos, effectiveRetain, messageExpiryInterval, userProperties));
+                }
+            }
+
+            try {
+                // The alias must be assigned in the same order the packets are written
+                synchronized (this.out) {
+                    Mqtt5TopicAliases.Mapping mapping = this.topicAliases.map(topic);
+                    write(Mqtt5Codec.encodePublish(mapping.isEstablished() ? "" : topic, payload, effectiveQos,
+                            effectiveRetain, false, packetId, mapping.getAlias(), messageExpiryInterval,
+                            userProperties));
+                }
+            } catch (IOException e) {
+                // The message stays in flight and is resent if the session is resumed
+                failed(e);
+                throw new Mqtt5Exception(Mqtt5Exception.REASON_CODE_CONNECTION_LOST, "Connection lost", e);
+            }
+            return packetId;
+        }
+
+        void write(byte[] packet) throws IOException {
+            synchronized (this.out) {
+                this.out.write(packet);
+                this.out.flush();
+                this.lastSent = System.currentTimeMillis();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!isClosed()) {
+                    handle(Mqtt5Codec.readPacket(this.in));
+                }
+            } catch (IOException | RuntimeException e) {
+                failed(e);
+            }
+        }
+
+        private void handle(Packet packet) throws IOException {
+            switch (packet.getType()) {
+            case Mqtt5Codec.PUBLISH:
+                handlePublish(Mqtt5Codec.decodePublish(packet));
+                break;
+            case Mqtt5Codec.PUBACK:
+            case Mqtt5Codec.PUBCOMP:
+                Ack ack = Mqtt5Codec.decodeAck(packet);
+                messageAcknowledged(this, ack.getPacketId(), ack.getReasonCode());
+                break;
+            case Mqtt5Codec.PUBREC:
+                handlePubrec(Mqtt5Codec.decodeAck(packet));
+                break;
+            case Mqtt5Codec.PUBREL:
+                int packetId = Mqtt5Codec.decodeAck(packet).getPacketId();
+                Mqtt5Client.this.pendingReleases.remove(packetId);
+                write(Mqtt5Codec.encodeAck(Mqtt5Codec.PUBCOMP, packetId, Mqtt5Codec.REASON_SUCCESS));
+                break;
+            case Mqtt5Codec.SUBACK:
+            case Mqtt5Codec.UNSUBACK:
+                Ack subscriptionAck = Mqtt5Codec.decodeAck(packet);
+                CompletableFuture<Ack> future = Mqtt5Client.this.pendingAcks.get(subscriptionAck.getPacketId());
+                if (future != null) {
+                    future.complete(subscriptionAck);
+                }
+                break;
+            case Mqtt5Codec.PINGRESP:
+                this.pingSent = 0;
+                break;
+            case Mqtt5Codec.DISCONNECT:
+                throw new IOException(String.format("Disconnected by the server, reason code 0x%02X",
+                        Mqtt5Codec.decodeDisconnectReasonCode(packet)));
+            default:
+                throw new IOException("Unexpected packet type " + packet.getType());
+            }
+        }
+
+        private void handlePublish(Publish publish) throws IOException {
+            int qos = publish.getQos();
+            if (qos == 2 && !Mqtt5Client.this.pendingReleases.add(publish.getPacketId())) {
+                // Duplicate of a message already delivered to the callback
+                write(Mqtt5Codec.encodeAck(Mqtt5Codec.PUBREC, publish.getPacketId(), Mqtt5Codec.REASON_SUCCESS));
+                return;
+            }
+
+            try {
+                Mqtt5Client.this.callback.messageArrived(publish.getTopic(), publish.getPayload(), qos,
+                        publish.isRetain());
+            } catch (RuntimeException e) {
+                logger.warn("Message listener failed for topic {}", publish.getTopic(), e);
+            }
+
+            if (qos == 1) {
+                write(Mqtt5Codec.encodeAck(Mqtt5Codec.PUBACK, publish.getPacketId(), Mqtt5Codec.REASON_SUCCESS));
+            } else if (qos == 2) {
+                write(Mqtt5Codec.encodeAck(Mqtt5Codec.PUBREC, publish.getPacketId(), Mqtt5Codec.REASON_SUCCESS));
+            }
+        }
+
+        private void handlePubrec(Ack ack) throws IOException {
+            if (ack.getReasonCode() >= Mqtt5Codec.REASON_UNSPECIFIED_ERROR) {
+                // The QoS 2 flow ends here
+                messageAcknowledged(this, ack.getPacketId(), ack.getReasonCode());
+                return;
+            }
+
+            InFlightMessage message;
+            synchronized (Mqtt5Client.this.inFlight) {
+                message = Mqtt5Client.this.inFlight.get(ack.getPacketId());
+            }
+            if (message != null) {
+                message.received = true;
+            }
+            write(Mqtt5Codec.encodeAck(Mqtt5Codec.PUBREL, ack.getPacketId(), Mqtt5Codec.REASON_SUCCESS));
+        }
+
+        private void keepAlive() {
+            long now = System.currentTimeMillis();
+            if (this.pingSent > 0 && now - this.pingSent > this.keepAliveMillis) {
+                failed(new IOException("No PINGRESP received from the server"));
+                return;
+            }
+
+            if (this.pingSent == 0 && now - this.lastSent >= this.keepAliveMillis / 2) {
+                try {
+                    write(Mqtt5Codec.encodePingreq());
+                    this.pingSent = now;
+                } catch (IOException e) {
+                    failed(e);
+                }
+            }
+        }
+
+        /**
+         * Closes the connection after an unexpected failure and notifies the callback, unless the connection was
+         * already closed.
+         */
+        void failed(Throwable cause) {
+            if (!close()) {
+                return;
+            }
+            synchronized (Mqtt5Client.this.inFlight) {
+                if (Mqtt5Client.this.connection == this) {
+                    Mqtt5Client.this.connection = null;
+                }
+                Mqtt5Client.this.inFlight.notifyAll();
+            }
+            Mqtt5Client.this.callback.connectionLost(cause);
+        }
+
+        /**
+         * @return true if this call closed the connection
+         */
+        boolean close() {
+            synchronized (this) {
+                if (this.closed) {
+                    return false;
+                }
+                this.closed = true;
+            }
+
+            this.pinger.shutdownNow();
+            closeQuietly(this.socket);
+            IOException closedException = new IOException("Connection closed");
+            for (CompletableFuture<Ack> future : Mqtt5Client.this.pendingAcks.values()) {
+                future.completeExceptionally(closedException);
+            }
+            return true;
+        }
+
+        private synchronized boolean isClosed() {
+            return this.closed;
+        }
+    }
+}
@@ -0,0 +1,667 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.data.transport.mqtt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes and decodes the MQTT 5 control packets used by {@link Mqtt5Client}.
+ */
+final class Mqtt5Codec {
+
+    static final int CONNECT = 1;
+    static final int CONNACK = 2;
+    static final int PUBLISH = 3;
+    static final int PUBACK = 4;
+    static final int PUBREC = 5;
+    static final int PUBREL = 6;
+    static final int PUBCOMP = 7;
+    static final int SUBSCRIBE = 8;
+    static final int SUBACK = 9;
+    static final int UNSUBSCRIBE = 10;
+    static final int UNSUBACK = 11;
+    static final int PINGREQ = 12;
+    static final int PINGRESP = 13;
+    static final int DISCONNECT = 14;
+    static final int AUTH = 15;
+
+    static final int PROP_PAYLOAD_FORMAT_INDICATOR = 0x01;
+    static final int PROP_MESSAGE_EXPIRY_INTERVAL = 0x02;
+    static final int PROP_CONTENT_TYPE = 0x03;
+    static final int PROP_RESPONSE_TOPIC = 0x08;
+    static final int PROP_CORRELATION_DATA = 0x09;
+    static final int PROP_SUBSCRIPTION_IDENTIFIER = 0x0B;
+    static final int PROP_SESSION_EXPIRY_INTERVAL = 0x11;
+    static final int PROP_ASSIGNED_CLIENT_IDENTIFIER = 0x12;
+    static final int PROP_SERVER_KEEP_ALIVE = 0x13;
+    static final int PROP_AUTHENTICATION_METHOD = 0x15;
+    static final int PROP_AUTHENTICATION_DATA = 0x16;
+    static final int PROP_REQUEST_PROBLEM_INFORMATION = 0x17;
+    static final int PROP_WILL_DELAY_INTERVAL = 0x18;
+    static final int PROP_REQUEST_RESPONSE_INFORMATION = 0x19;
+    static final int PROP_RESPONSE_INFORMATION = 0x1A;
+    static final int PROP_SERVER_REFERENCE = 0x1C;
+    static final int PROP_REASON_STRING = 0x1F;
+    static final int PROP_RECEIVE_MAXIMUM = 0x21;
+    static final int PROP_TOPIC_ALIAS_MAXIMUM = 0x22;
+    static final int PROP_TOPIC_ALIAS = 0x23;
+    static final int PROP_MAXIMUM_QOS = 0x24;
+    static final int PROP_RETAIN_AVAILABLE = 0x25;
+    static final int PROP_USER_PROPERTY = 0x26;
+    static final int PROP_MAXIMUM_PACKET_SIZE = 0x27;
+    static final int PROP_WILDCARD_SUBSCRIPTION_AVAILABLE = 0x28;
+    static final int PROP_SUBSCRIPTION_IDENTIFIER_AVAILABLE = 0x29;
+    static final int PROP_SHARED_SUBSCRIPTION_AVAILABLE = 0x2A;
+
+    static final int REASON_SUCCESS = 0x00;
+    static final int REASON_NO_MATCHING_SUBSCRIBERS = 0x10;
+    static final int REASON_UNSPECIFIED_ERROR = 0x80;
+
+    private static final byte PROTOCOL_VERSION = 5;
+    private static final int MAX_REMAINING_LENGTH = 268_435_455;
+    private static final int MAX_VARIABLE_BYTE_INTEGER_LENGTH = 4;
+
+    private Mqtt5Codec() {
+    }
+
+    // ----------------------------------------------------------------
+    //
+    // Packets
+    //
+    // ----------------------------------------------------------------
+
+    /**
+     * A control packet read from the network: the fixed header type and flags and the remaining bytes.
+     */
+    static final class Packet {
+
+        private final int type;
+        private final int flags;
+        private final ByteBuffer body;
+
+        Packet(int type, int flags, byte[] body) {
+            this.type = type;
+            this.flags = flags;
+            this.body = ByteBuffer.wrap(body);
+        }
+
+        int getType() {
+            return this.type;
+        }
+
+        int getFlags() {
+            return this.flags;
+        }
+
+        ByteBuffer getBody() {
+            return this.body;
+        }
+    }
+
+    /**
+     * The decoded properties of a packet.
+     */
+    static final class Properties {
+
+        private final Map<Integer, Object> values = new HashMap<>();
+        private final List<String[]> userProperties = new ArrayList<>();
+
+        Integer getInt(int id) {
+            Object value = this.values.get(id);
+            return value instanceof Integer ? (Integer) value : null;
+        }
+
+        Long getLong(int id) {
+            Object value = this.values.get(id);
+            return value instanceof Long ? (Long) value : null;
+        }
+
+        String getString(int id) {
+            Object value = this.values.get(id);
+            return value instanceof String ? (String) value : null;
+        }
+
+        List<String[]> getUserProperties() {
+            return Collections.unmodifiableList(this.userProperties);
+        }
+    }
+
+    static final class Connack {
+
+        private final boolean sessionPresent;
+        private final int reasonCode;
+        private final Properties properties;
+
+        Connack(boolean sessionPresent, int reasonCode, Properties properties) {
+            this.sessionPresent = sessionPresent;
+            this.reasonCode = reasonCode;
+            this.properties = properties;
+        }
+
+        boolean isSessionPresent() {
+            return this.sessionPresent;
+        }
+
+        int getReasonCode() {
+            return this.reasonCode;
+        }
+
+        Properties getProperties() {
+            return this.properties;
+        }
+    }
+
+    static final class Publish {
+
+        private final String topic;
+        private final byte[] payload;
+        private final int qos;
+        private final boolean retain;
+        private final int packetId;
+        private final Properties properties;
+
+        Publish(String topic, byte[] payload, int qos, boolean retain, int packetId, Properties properties) {
+            this.topic = topic;
+            this.payload = payload;
+            this.qos = qos;
+            this.retain = retain;
+            this.packetId = packetId;
+            this.properties = properties;
+        }
+
+        String getTopic() {
+            return this.topic;
+        }
+
+        byte[] getPayload() {
+            return this.payload;
+        }
+
+        int getQos() {
+            return this.qos;
+        }
+
+        boolean isRetain() {
+            return this.retain;
+        }
+
+        int getPacketId() {
+            return this.packetId;
+        }
+
+        Properties getProperties() {
+            return this.properties;
+        }
+    }
+
+    /**
+     * The acknowledgement of a packet identified by a packet ID: PUBACK, PUBREC, PUBREL, PUBCOMP, SUBACK and
+     * UNSUBACK. For SUBACK and UNSUBACK the reason code is the one of the first topic filter.
+     */
+    static final class Ack {
+
+        private final int packetId;
+        private final int reasonCode;
+
+        Ack(int packetId, int reasonCode) {
+            this.packetId = packetId;
+            this.reasonCode = reasonCode;
+        }
+
+        int getPacketId() {
+            return this.packetId;
+        }
+
+        int getReasonCode() {
+            return this.reasonCode;
+        }
+    }
+
+    // ----------------------------------------------------------------
+    //
+    // Encoding
+    //
+    // ----------------------------------------------------------------
+
+    static byte[] encodeConnect(Mqtt5ConnectOptions options) {
+        PacketWriter variableHeader = new PacketWriter();
+        variableHeader.writeString("MQTT");
+        variableHeader.writeByte(PROTOCOL_VERSION);
+
+        int flags = 0;
+        if (options.getUserName() != null) {
+            flags |= 0x80;
+        }
+        if (options.getPassword() != null) {
+            flags |= 0x40;
+        }
+        if (options.getWillTopic() != null) {
+            flags |= 0x04 | options.getWillQos() << 3;
+            if (options.isWillRetain()) {
+                flags |= 0x20;
+            }
+        }
+        if (options.isCleanStart()) {
+            flags |= 0x02;
+        }
+        variableHeader.writeByte(flags);
+        variableHeader.writeShort(options.getKeepAliveInterval());
+
+        PacketWriter properties = new PacketWriter();
+        if (options.getSessionExpiryInterval() > 0) {
+            properties.writeByte(PROP_SESSION_EXPIRY_INTERVAL);
+            properties.writeInt(options.getSessionExpiryInterval());
+        }
+        if (options.getReceiveMaximum() > 0 && options.getReceiveMaximum() < 65535) {
+            properties.writeByte(PROP_RECEIVE_MAXIMUM);
+            properties.writeShort(options.getReceiveMaximum());
+        }
+        if (options.getMaximumPacketSize() > 0) {
+            properties.writeByte(PROP_MAXIMUM_PACKET_SIZE);
+            properties.writeInt(options.getMaximumPacketSize());
+        }
+        writeUserProperties(properties, options.getUserProperties());
+        variableHeader.writeProperties(properties);
+
+        PacketWriter payload = new PacketWriter();
+        payload.writeString(options.getClientId());
+        if (options.getWillTopic() != null) {
+            payload.writeProperties(new PacketWriter());
+            payload.writeString(options.getWillTopic());
+            payload.writeBinary(options.getWillPayload());
+        }
+        if (options.getUserName() != null) {
+            payload.writeString(options.getUserName());
+        }
+        if (options.getPassword() != null) {
+            payload.writeBinary(new String(options.getPassword()).getBytes(StandardCharsets.UTF_8));
+        }
+
+        return packet(CONNECT, 0, variableHeader, payload);
+    }
+
+    /**
+     * Encodes a PUBLISH packet.
+     *
+     * @param topic
+     *            the topic name, an empty string to rely only on a topic alias already known by the server
+     * @param topicAlias
+     *            the topic alias, 0 for none
+     * @param messageExpiryInterval
+     *            the message expiry interval in seconds, 0 for none
+     */
+    static byte[] encodePublish(String topic, byte[] payload, int qos, boolean retain, boolean dup, int packetId,
+            int topicAlias, long messageExpiryInterval, List<String[]> userProperties) {
+        PacketWriter variableHeader = new PacketWriter();
+        variableHeader.writeString(topic);
+        if (qos > 0) {
+            variableHeader.writeShort(packetId);
+        }
+
+        PacketWriter properties = new PacketWriter();
+        if (messageExpiryInterval > 0) {
+            properties.writeByte(PROP_MESSAGE_EXPIRY_INTERVAL);
+            properties.writeInt(messageExpiryInterval);
+        }
+        if (topicAlias > 0) {
+            properties.writeByte(PROP_TOPIC_ALIAS);
+            properties.writeShort(topicAlias);
+        }
+        writeUserProperties(properties, userProperties);
+        variableHeader.writeProperties(properties);
+
+        PacketWriter body = new PacketWriter();
+        body.writeBytes(payload);
+
+        int flags = qos << 1;
+        if (dup) {
+            flags |= 0x08;
+        }
+        if (retain) {
+            flags |= 0x01;
+        }
+        return packet(PUBLISH, flags, variableHeader, body);
+    }
+
+    static byte[] encodeAck(int type, int packetId, int reasonCode) {
+        PacketWriter variableHeader = new PacketWriter();
+        variableHeader.writeShort(packetId);
+        if (reasonCode != REASON_SUCCESS) {
+            variableHeader.writeByte(reasonCode);
+        }
+        return packet(type, type == PUBREL ? 0x02 : 0, variableHeader, new PacketWriter());
+    }
+
+    static byte[] encodeSubscribe(int packetId, String topicFilter, int qos) {
+        PacketWriter variableHeader = new PacketWriter();
+        variableHeader.writeShort(packetId);
+        variableHeader.writeProperties(new PacketWriter());
+
+        PacketWriter payload = new PacketWriter();
+        payload.writeString(topicFilter);
+        payload.writeByte(qos);
+
+        return packet(SUBSCRIBE, 0x02, variableHeader, payload);
+    }
+
+    static byte[] encodeUnsubscribe(int packetId, String topicFilter) {
+        PacketWriter variableHeader = new PacketWriter();
+        variableHeader.writeShort(packetId);
+        variableHeader.writeProperties(new PacketWriter());
+
+        PacketWriter payload = new PacketWriter();
+        payload.writeString(topicFilter);
+
+        return packet(UNSUBSCRIBE, 0x02, variableHeader, payload);
+    }
+
+    static byte[] encodePingreq() {
+        return new byte[] { (byte) (PINGREQ << 4), 0 };
+    }
+
+    static byte[] encodeDisconnect(int reasonCode) {
+        if (reasonCode == REASON_SUCCESS) {
+            return new byte[] { (byte) (DISCONNECT << 4), 0 };
+        }
+        return new byte[] { (byte) (DISCONNECT << 4), 1, (byte) reasonCode };
+    }
+
+    private static void writeUserProperties(PacketWriter properties, List<String[]> userProperties) {
+        if (userProperties == null) {
+            return;
+        }
+        for (String[] userProperty : userProperties) {
+            properties.writeByte(PROP_USER_PROPERTY);
+            properties.writeString(userProperty[0]);
+            properties.writeString(userProperty[1]);
+        }
+    }
+
+    private static byte[] packet(int type, int flags, PacketWriter variableHeader, PacketWriter payload) {
+        int remainingLength = variableHeader.size() + payload.size();
+        if (remainingLength > MAX_REMAINING_LENGTH) {
+            throw new IllegalArgumentException("Packet too large");
+        }
+        PacketWriter packet = new PacketWriter();
+        packet.writeByte(type << 4 | flags);
+        packet.writeVariableByteInteger(remainingLength);
+        packet.writeBytes(variableHeader.toByteArray());
+        packet.writeBytes(payload.toByteArray());
+        return packet.toByteArray();
+    }
+
+    // ----------------------------------------------------------------
+    //
+    // Decoding
+    //
+    // ----------------------------------------------------------------
+
+    /**
+     * Reads a control packet, blocking until it is fully received.
+     *
+     * @throws EOFException
+     *             if the stream is closed
+     */
+    static Packet readPacket(InputStream in) throws IOException {
+        int header = in.read();
+        if (header < 0) {
+            throw new EOFException("Connection closed by the server");
+        }
+
+        int remainingLength = 0;
+        int length = 0;
+        int encodedByte;
+        do {
+            if (length == MAX_VARIABLE_BYTE_INTEGER_LENGTH) {
+                throw new IOException("Malformed remaining length");
+            }
+            encodedByte = in.read();
+            if (encodedByte < 0) {
+                throw new EOFException("Connection closed by the server");
+            }
+            remainingLength |= (encodedByte & 0x7F) << 7 * length++;
+        } while ((encodedByte & 0x80) != 0);
+        if (remainingLength < 0 || remainingLength > MAX_REMAINING_LENGTH) {
+            throw new IOException("Malformed remaining length");
+        }
+
+        byte[] body = new byte[remainingLength];
+        int read = 0;
+        while (read < remainingLength) {
+            int count = in.read(body, read, remainingLength - read);
+            if (count < 0) {
+                throw new EOFException("Connection closed by the server");
+            }
+            read += count;
+        }
+
+        return new Packet(header >> 4 & 0x0F, header & 0x0F, body);
+    }
+
+    static Connack decodeConnack(Packet packet) throws IOException {
+        try {
+            ByteBuffer body = packet.getBody();
+            boolean sessionPresent = (body.get() & 0x01) != 0;
+            int reasonCode = body.get() & 0xFF;
+            Properties properties = body.hasRemaining() ? readProperties(body) : new Properties();
+            return new Connack(sessionPresent, reasonCode, properties);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Malformed CONNACK", e);
+        }
+    }
+
+    static Publish decodePublish(Packet packet) throws IOException {
+        try {
+            ByteBuffer body = packet.getBody();
+            int qos = packet.getFlags() >> 1 & 0x03;
+            boolean retain = (packet.getFlags() & 0x01) != 0;
+            String topic = readString(body);
+            int packetId = qos > 0 ? readShort(body) : 0;
+            Properties properties = readProperties(body);
+            byte[] payload = new byte[body.remaining()];
+            body.get(payload);
+            return new Publish(topic, payload, qos, retain, packetId, properties);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Malformed PUBLISH", e);
+        }
+    }
+
+    static Ack decodeAck(Packet packet) throws IOException {
+        try {
+            ByteBuffer body = packet.getBody();
+            int packetId = readShort(body);
+            int reasonCode = REASON_SUCCESS;
+            if (packet.getType() == SUBACK || packet.getType() == UNSUBACK) {
+                readProperties(body);
+                if (body.hasRemaining()) {
+                    reasonCode = body.get() & 0xFF;
+                }
+            } else if (body.hasRemaining()) {
+                reasonCode = body.get() & 0xFF;
+            }
+            return new Ack(packetId, reasonCode);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Malformed acknowledgement", e);
+        }
+    }
+
+    static int decodeDisconnectReasonCode(Packet packet) {
+        ByteBuffer body = packet.getBody();
+        return body.hasRemaining() ? body.get() & 0xFF : REASON_SUCCESS;
+    }
+
+    static Properties readProperties(ByteBuffer body) throws IOException {
+        Properties properties = new Properties();
+        int length = readVariableByteInteger(body);
+        if (length > body.remaining()) {
+            throw new IOException("Malformed properties length: " + length);
+        }
+        int end = body.position() + length;
+        while (body.position() < end) {
+            int id = readVariableByteInteger(body);
+            switch (id) {
+            case PROP_PAYLOAD_FORMAT_INDICATOR:
+            case PROP_REQUEST_PROBLEM_INFORMATION:
+            case PROP_REQUEST_RESPONSE_INFORMATION:
+            case PROP_MAXIMUM_QOS:
+            case PROP_RETAIN_AVAILABLE:
+            case PROP_WILDCARD_SUBSCRIPTION_AVAILABLE:
+            case PROP_SUBSCRIPTION_IDENTIFIER_AVAILABLE:
+            case PROP_SHARED_SUBSCRIPTION_AVAILABLE:
+                properties.values.put(id, body.get() & 0xFF);
+                break;
+            case PROP_SERVER_KEEP_ALIVE:
+            case PROP_RECEIVE_MAXIMUM:
+            case PROP_TOPIC_ALIAS_MAXIMUM:
+            case PROP_TOPIC_ALIAS:
+                properties.values.put(id, readShort(body));
+                break;
+            case PROP_MESSAGE_EXPIRY_INTERVAL:
+            case PROP_SESSION_EXPIRY_INTERVAL:
+            case PROP_WILL_DELAY_INTERVAL:
+            case PROP_MAXIMUM_PACKET_SIZE:
+                properties.values.put(id, body.getInt() & 0xFFFFFFFFL);
+                break;
+            case PROP_SUBSCRIPTION_IDENTIFIER:
+                properties.values.put(id, readVariableByteInteger(body));
+                break;
+            case PROP_CONTENT_TYPE:
+            case PROP_RESPONSE_TOPIC:
+            case PROP_ASSIGNED_CLIENT_IDENTIFIER:
+            case PROP_AUTHENTICATION_METHOD:
+            case PROP_RESPONSE_INFORMATION:
+            case PROP_SERVER_REFERENCE:
+            case PROP_REASON_STRING:
+                properties.values.put(id, readString(body));
+                break;
+            case PROP_CORRELATION_DATA:
+            case PROP_AUTHENTICATION_DATA:
+                byte[] data = new byte[readShort(body)];
+                body.get(data);
+                properties.values.put(id, data);
+                break;
+            case PROP_USER_PROPERTY:
+                properties.userProperties.add(new String[] { readString(body), readString(body) });
+                break;
+            default:
+                throw new IOException("Unknown property identifier: " + id);
+            }
+        }
+        if (body.position() != end) {
+            throw new IOException("Malformed properties: property exceeds the properties length");
+        }
+        return properties;
+    }
+
+    private static int readShort(ByteBuffer body) {
+        return body.getShort() & 0xFFFF;
+    }
+
+    private static String readString(ByteBuffer body) {
+        byte[] bytes = new byte[readShort(body)];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readVariableByteInteger(ByteBuffer body) throws IOException {
+        int value = 0;
+        int length = 0;
+        byte encodedByte;
+        do {
+            if (length == MAX_VARIABLE_BYTE_INTEGER_LENGTH) {
+                throw new IOException("Malformed variable byte integer");
+            }
+            encodedByte = body.get();
+            value |= (encodedByte & 0x7F) << 7 * length++;
+        } while ((encodedByte & 0x80) != 0);
+        if (value < 0 || value > MAX_REMAINING_LENGTH) {
+            throw new IOException("Malformed variable byte integer");
+        }
+        return value;
+    }
+
+    /**
+     * Accumulates the bytes of a packet section.
+     */
+    private static final class PacketWriter {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        void writeByte(int value) {
+            this.out.write(value);
+        }
+
+        void writeShort(int value) {
+            this.out.write(value >> 8 & 0xFF);
+            this.out.write(value & 0xFF);
+        }
+
+        void writeInt(long value) {
+            this.out.write((int) (value >> 24 & 0xFF));
+            this.out.write((int) (value >> 16 & 0xFF));
+            this.out.write((int) (value >> 8 & 0xFF));
+            this.out.write((int) (value & 0xFF));
+        }
+
+        void writeVariableByteInteger(int value) {
+            int remaining = value;
+            do {
+                int encodedByte = remaining % 128;
+                remaining /= 128;
+                if (remaining > 0) {
+                    encodedByte |= 0x80;
+                }
+                this.out.write(encodedByte);
+            } while (remaining > 0);
+        }
+
+        void writeString(String value) {
+            writeBinary(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void writeBinary(byte[] value) {
+            if (value.length > 65535) {
+                throw new IllegalArgumentException("Value too long");
+            }
+            writeShort(value.length);
+            writeBytes(value);
+        }
+
+        void writeBytes(byte[] value) {
+            this.out.write(value, 0, value.length);
+        }
+
+        void writeProperties(PacketWriter properties) {
+            writeVariableByteInteger(properties.size());
+            writeBytes(properties.toByteArray());
+        }
+
+        int size() {
+            return this.out.size();
+        }
+
+        byte[] toByteArray() {
+            return this.out.toByteArray();
+        }
+    }
+}
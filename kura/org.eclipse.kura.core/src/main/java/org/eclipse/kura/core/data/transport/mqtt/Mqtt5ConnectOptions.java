@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.data.transport.mqtt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.net.SocketFactory;
+
+/**
+ * The options used by {@link Mqtt5Client} to open a session.
+ */
+class Mqtt5ConnectOptions {
+
+    private String clientId;
+    private String userName;
+    private char[] password;
+    private int keepAliveInterval = 30;
+    private int connectionTimeout = 20;
+    private boolean cleanStart = true;
+    private long sessionExpiryInterval;
+    private int receiveMaximum = 65535;
+    private int maximumPacketSize;
+    private List<String[]> userProperties = Collections.emptyList();
+
+    private String willTopic;
+    private byte[] willPayload;
+    private int willQos;
+    private boolean willRetain;
+
+    private SocketFactory socketFactory;
+
+    String getClientId() {
+        return this.clientId;
+    }
+
+    void setClientId(String clientId) {
+        this.clientId = clientId;
+    }
+
+    String getUserName() {
+        return this.userName;
+    }
+
+    void setUserName(String userName) {
+        this.userName = userName;
+    }
+
+    char[] getPassword() {
+        return this.password;
+    }
+
+    void setPassword(char[] password) {
+        this.password = password;
+    }
+
+    /**
+     * @return the keep alive interval in seconds
+     */
+    int getKeepAliveInterval() {
+        return this.keepAliveInterval;
+    }
+
+    void setKeepAliveInterval(int keepAliveInterval) {
+        this.keepAliveInterval = keepAliveInterval;
+    }
+
+    /**
+     * @return the connection timeout in seconds
+     */
+    int getConnectionTimeout() {
+        return this.connectionTimeout;
+    }
+
+    void setConnectionTimeout(int connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    boolean isCleanStart() {
+        return this.cleanStart;
+    }
+
+    void setCleanStart(boolean cleanStart) {
+        this.cleanStart = cleanStart;
+    }
+
+    /**
+     * @return the session expiry interval in seconds, 0 if the session ends when the network connection is closed
+     */
+    long getSessionExpiryInterval() {
+        return this.sessionExpiryInterval;
+    }
+
+    void setSessionExpiryInterval(long sessionExpiryInterval) {
+        this.sessionExpiryInterval = sessionExpiryInterval;
+    }
+
+    /**
+     * @return the maximum number of QoS 1 and QoS 2 publications the client is willing to process concurrently
+     */
+    int getReceiveMaximum() {
+        return this.receiveMaximum;
+    }
+
+    void setReceiveMaximum(int receiveMaximum) {
+        this.receiveMaximum = receiveMaximum;
+    }
+
+    /**
+     * @return the maximum packet size accepted by the client, 0 for no limit
+     */
+    int getMaximumPacketSize() {
+        return this.maximumPacketSize;
+    }
+
+    void setMaximumPacketSize(int maximumPacketSize) {
+        this.maximumPacketSize = maximumPacketSize;
+    }
+
+    /**
+     * @return the user properties, as name/value pairs, sent with the CONNECT packet and every PUBLISH packet
+     */
+    List<String[]> getUserProperties() {
+        return this.userProperties;
+    }
+
+    void setUserProperties(List<String[]> userProperties) {
+        this.userProperties = Collections.unmodifiableList(new ArrayList<>(userProperties));
+    }
+
+    String getWillTopic() {
+        return this.willTopic;
+    }
+
+    byte[] getWillPayload() {
+        return this.willPayload;
+    }
+
+    int getWillQos() {
+        return this.willQos;
+    }
+
+    boolean isWillRetain() {
+        return this.willRetain;
+    }
+
+    void setWill(String topic, byte[] payload, int qos, boolean retain) {
+        this.willTopic = topic;
+        this.willPayload = payload;
+        this.willQos = qos;
+        this.willRetain = retain;
+    }
+
+    SocketFactory getSocketFactory() {
+        return this.socketFactory;
+    }
+
+    void setSocketFactory(SocketFactory socketFactory) {
+        this.socketFactory = socketFactory;
+    }
+}
@@ -0,0 +1,710 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.data.transport.mqtt;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.net.ssl.SSLSocketFactory;
+
+import org.eclipse.kura.KuraConnectException;
+import org.eclipse.kura.KuraException;
+import org.eclipse.kura.KuraNotConnectedException;
+import org.eclipse.kura.KuraTimeoutException;
+import org.eclipse.kura.KuraTooManyInflightMessagesException;
+import org.eclipse.kura.configuration.ConfigurableComponent;
+import org.eclipse.kura.configuration.ConfigurationService;
+import org.eclipse.kura.configuration.Password;
+import org.eclipse.kura.core.ssl.SslManagerServiceOptions;
+import org.eclipse.kura.core.util.ValidationUtil;
+import org.eclipse.kura.crypto.CryptoService;
+import org.eclipse.kura.data.DataTransportService;
+import org.eclipse.kura.data.DataTransportToken;
+import org.eclipse.kura.data.transport.listener.DataTransportListener;
+import org.eclipse.kura.ssl.SslManagerService;
+import org.eclipse.kura.ssl.SslServiceListener;
+import org.eclipse.kura.status.CloudConnectionStatusComponent;
+import org.eclipse.kura.status.CloudConnectionStatusEnum;
+import org.eclipse.kura.status.CloudConnectionStatusService;
+import org.eclipse.kura.system.SystemService;
+import org.osgi.service.component.ComponentContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link DataTransportService} speaking MQTT 5.
+ * <p>
+ * Compared to {@link MqttDataTransport} it replaces repeated topic names with topic aliases, honors the Receive
+ * Maximum advertised by the broker, reporting {@link KuraTooManyInflightMessagesException} to the DataService instead
+ * of overrunning the broker, and supports session and message expiry.
+ */
+public class Mqtt5DataTransport implements DataTransportService, Mqtt5Client.Callback, ConfigurableComponent,
+        SslServiceListener, CloudConnectionStatusComponent {
+
+    private static final String NOT_CONNECTED_MESSAGE = "Not connected";
+
+    private static final String ALREADY_CONNECTED_MESSAGE = "Already connected";
+
+    private static final String INVALID_CONFIGURATION_MESSAGE = "Invalid configuration";
+
+    private static final Logger logger = LoggerFactory.getLogger(Mqtt5DataTransport.class);
+
+    private static final String MQTT_SCHEME = "mqtt://";
+    private static final String MQTTS_SCHEME = "mqtts://";
+
+    private static final String MQTT_BROKER_URL_PROP_NAME = "broker-url";
+    private static final String MQTT_USERNAME_PROP_NAME = "username";
+    private static final String MQTT_PASSWORD_PROP_NAME = "password";
+    private static final String MQTT_CLIENT_ID_PROP_NAME = "client-id";
+    private static final String MQTT_KEEP_ALIVE_PROP_NAME = "keep-alive";
+    private static final String MQTT_CLEAN_START_PROP_NAME = "clean-start";
+    private static final String MQTT_SESSION_EXPIRY_INTERVAL_PROP_NAME = "session-expiry-interval";
+    private static final String MQTT_RECEIVE_MAXIMUM_PROP_NAME = "receive-maximum";
+    private static final String MQTT_TOPIC_ALIAS_MAXIMUM_PROP_NAME = "topic-alias.maximum";
+    private static final String MQTT_MESSAGE_EXPIRY_INTERVAL_PROP_NAME = "message-expiry-interval";
+    private static final String MQTT_USER_PROPERTIES_PROP_NAME = "user-properties";
+
+    // All timeouts
+    private static final String MQTT_TIMEOUT_PROP_NAME = "timeout";
+
+    private static final String MQTT_LWT_QOS_PROP_NAME = "lwt.qos";
+    private static final String MQTT_LWT_RETAIN_PROP_NAME = "lwt.retain";
+    private static final String MQTT_LWT_TOPIC_PROP_NAME = "lwt.topic";
+    private static final String MQTT_LWT_PAYLOAD_PROP_NAME = "lwt.payload";
+
+    private static final String CLOUD_ACCOUNT_NAME_PROP_NAME = "topic.context.account-name";
+
+    private static final String TOPIC_ACCOUNT_NAME_CTX_NAME = "account-name";
+    private static final String TOPIC_DEVICE_ID_CTX_NAME = "client-id";
+
+    private static final String SSL_PROTOCOL = SslManagerServiceOptions.PROP_PROTOCOL;
+    private static final String SSL_CIPHERS = SslManagerServiceOptions.PROP_CIPHERS;
+    private static final String SSL_HN_VERIFY = SslManagerServiceOptions.PROP_HN_VERIFY;
+    private static final String SSL_CERT_ALIAS = "ssl.certificate.alias";
+    private static final String SSL_DEFAULT_HN_VERIFY = "use-ssl-service-config";
+
+    private SystemService systemService;
+    private SslManagerService sslManagerService;
+    private CloudConnectionStatusService cloudConnectionStatusService;
+
+    private CloudConnectionStatusEnum notificationStatus = CloudConnectionStatusEnum.OFF;
+
+    private Mqtt5Client mqttClient;
+
+    private DataTransportListenerS dataTransportListeners;
+
+    private ClientConfiguration clientConf;
+    private boolean newSession;
+    private String sessionId;
+
+    private final Map<String, String> topicContext = new HashMap<>();
+    private final Map<String, Object> properties = new HashMap<>();
+
+    private CryptoService cryptoService;
+
+    // ----------------------------------------------------------------
+    //
+    // Dependencies
+    //
+    // ----------------------------------------------------------------
+
+    public void setSystemService(SystemService systemService) {
+        this.systemService = systemService;
+    }
+
+    public void unsetSystemService(SystemService systemService) {
+        this.systemService = null;
+    }
+
+    public void setSslManagerService(SslManagerService sslManagerService) {
+        this.sslManagerService = sslManagerService;
+    }
+
+    public void unsetSslManagerService(SslManagerService sslManagerService) {
+        this.sslManagerService = null;
+    }
+
+    public void setCryptoService(CryptoService cryptoService) {
+        this.cryptoService = cryptoService;
+    }
+
+    public void unsetCryptoService(CryptoService cryptoService) {
+        this.cryptoService = null;
+    }
+
+    public void setCloudConnectionStatusService(CloudConnectionStatusService cloudConnectionStatusService) {
+        this.cloudConnectionStatusService = cloudConnectionStatusService;
+    }
+
+    public void unsetCloudConnectionStatusService(CloudConnectionStatusService cloudConnectionStatusService) {
+        this.cloudConnectionStatusService = null;
+    }
+
+    // ----------------------------------------------------------------
+    //
+    // Activation APIs
+    //
+    // ----------------------------------------------------------------
+
+    protected void activate(ComponentContext componentContext, Map<String, Object> properties) {
+        logger.info("Activating {}...", properties.get(ConfigurationService.KURA_SERVICE_PID));
+
+        // We need to catch the configuration exception and activate anyway.
+        // Otherwise the ConfigurationService will not be able to track us.
+        this.properties.putAll(MqttTransportSupport.decryptProperties(this.cryptoService, properties));
+        try {
+            this.clientConf = buildConfiguration(this.properties);
+        } catch (RuntimeException e) {
+            logger.error(
+                    "Invalid client configuration. Service will not be able to connect until the configuration is updated",
+                    e);
+        }
+
+        this.dataTransportListeners = new DataTransportListenerS(componentContext);
+
+        // Do nothing waiting for the connect request from the upper layer.
+    }
+
+    protected void deactivate(ComponentContext componentContext) {
+        logger.debug("Deactivating {}...", this.properties.get(ConfigurationService.KURA_SERVICE_PID));
+
+        // Dependent components are expected to disconnect us cleanly in their deactivate method.
+        if (isConnected()) {
+            disconnect(0);
+        }
+    }
+
+    public void updated(Map<String, Object> properties) {
+        logger.info("Updating {}...", properties.get(ConfigurationService.KURA_SERVICE_PID));
+
+        this.properties.clear();
+        this.properties.putAll(MqttTransportSupport.decryptProperties(this.cryptoService, properties));
+
+        update();
+    }
+
+    private void update() {
+        boolean wasConnected = isConnected();
+
+        // We do nothing other than notifying the listeners which may later
+        // request to disconnect and reconnect again.
+        this.dataTransportListeners.onConfigurationUpdating(wasConnected);
+
+        // Throwing a RuntimeException here is fine.
+        // Listeners will not be notified of an invalid configuration update.
+        logger.info("Building new configuration...");
+        this.clientConf = buildConfiguration(this.properties);
+
+        this.dataTransportListeners.onConfigurationUpdated(wasConnected);
+    }
+
+    // ----------------------------------------------------------------
+    //
+    // Service APIs
+    //
+    // ----------------------------------------------------------------
+
+    @Override
+    public synchronized void connect() throws KuraConnectException {
+        // We treat this as an application bug.
+        if (isConnected()) {
+            logger.error(ALREADY_CONNECTED_MESSAGE);
+            throw new IllegalStateException(ALREADY_CONNECTED_MESSAGE);
+        }
+
+        setupMqttSession();
+
+        Mqtt5ConnectOptions options = this.clientConf.connectOptions;
+        logger.info("# ------------------------------------------------------------");
+        logger.info("#  Connection Properties");
+        logger.info("#  broker    = {}", this.clientConf.brokerUrl);
+        logger.info("#  clientId  = {}", options.getClientId());
+        logger.info("#  username  = {}", options.getUserName());
+        logger.info("#  password  = XXXXXXXXXXXXXX");
+        logger.info("#  keepAlive = {}", options.getKeepAliveInterval());
+        logger.info("#  timeout   = {}", options.getConnectionTimeout());
+        logger.info("#  cleanStart      = {}", options.isCleanStart());
+        logger.info("#  sessionExpiry   = {}", options.getSessionExpiryInterval());
+        logger.info("#  MQTT version    = 5");
+        logger.info("#  topicAliasMax   = {}", this.clientConf.topicAliasMaximum);
+        logger.info("#  willDestination = {}", options.getWillTopic());
+        logger.info("#");
+        logger.info("#  Connecting...");
+
+        // Register the component in the CloudConnectionStatus service
+        this.cloudConnectionStatusService.register(this);
+        // Update status notification service
+        this.cloudConnectionStatusService.updateStatus(this, CloudConnectionStatusEnum.FAST_BLINKING);
+
+        try {
+            boolean sessionPresent = this.mqttClient.connect(options, this.clientConf.topicAliasMaximum);
+            // A resumed session keeps the in-flight messages tracked by the upper layer
+            this.newSession = !sessionPresent;
+            logger.info("#  Connected! Session present: {}", sessionPresent);
+            logger.info("# ------------------------------------------------------------");
+
+            // Update status notification service
+            this.cloudConnectionStatusService.updateStatus(this, CloudConnectionStatusEnum.ON);
+        } catch (Mqtt5Exception e) {
+            logger.warn("xxxxx  Connect failed. xxxxx");
+
+            // Update status notification service
+            this.cloudConnectionStatusService.updateStatus(this, CloudConnectionStatusEnum.OFF);
+
+            throw new KuraConnectException(e, "Cannot connect");
+        } finally {
+            // Always unregister from CloudConnectionStatus service so to switch to the previous state
+            this.cloudConnectionStatusService.unregister(this);
+        }
+
+        // notify the listeners
+        this.dataTransportListeners.onConnectionEstablished(this.newSession);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return this.mqttClient != null && this.mqttClient.isConnected();
+    }
+
+    @Override
+    public String getBrokerUrl() {
+        if (this.clientConf != null && this.clientConf.brokerUrl != null) {
+            return this.clientConf.brokerUrl;
+        }
+        return "";
+    }
+
+    @Override
+    public String getAccountName() {
+        if (this.clientConf != null) {
+            String accountName = this.topicContext.get(TOPIC_ACCOUNT_NAME_CTX_NAME);
+            if (accountName != null) {
+                return accountName;
+            }
+        }
+        return "";
+    }
+
+    @Override
+    public String getUsername() {
+        if (this.clientConf != null) {
+            String username = this.clientConf.connectOptions.getUserName();
+            if (username != null) {
+                return username;
+            }
+        }
+        return "";
+    }
+
+    @Override
+    public String getClientId() {
+        if (this.clientConf != null) {
+            String clientId = this.clientConf.connectOptions.getClientId();
+            if (clientId != null) {
+                return clientId;
+            }
+        }
+        return "";
+    }
+
+    @Override
+    public synchronized void disconnect(long quiesceTimeout) {
+        // Don't throw an exception because the caller would not
+        // be able to handle it.
+        if (isConnected()) {
+            logger.info("Disconnecting...");
+
+            this.dataTransportListeners.onDisconnecting();
+
+            this.mqttClient.disconnect(quiesceTimeout);
+            logger.info("Disconnected");
+
+            this.dataTransportListeners.onDisconnected();
+        } else {
+            logger.warn("MQTT client already disconnected");
+        }
+    }
+
+    // ---------------------------------------------------------
+    //
+    // Subscription Management Methods
+    //
+    // ---------------------------------------------------------
+
+    @Override
+    public void subscribe(String topic, int qos) throws KuraException {
+
+        if (!isConnected()) {
+            throw new KuraNotConnectedException(NOT_CONNECTED_MESSAGE);
+        }
+
+        topic = MqttTransportSupport.replaceTopicVariables(topic, this.topicContext);
+
+        logger.info("Subscribing to topic: {} with QoS: {}", topic, qos);
+
+        try {
+            this.mqttClient.subscribe(topic, qos, getTimeToWaitMillis());
+        } catch (Mqtt5Exception e) {
+            if (e.getReasonCode() == Mqtt5Exception.REASON_CODE_CLIENT_TIMEOUT) {
+                logger.warn("Timeout subscribing to topic: {}", topic);
+                throw new KuraTimeoutException("Timeout subscribing to topic: " + topic, e);
+            } else {
+                logger.error("Cannot subscribe to topic: " + topic, e);
+                throw KuraException.internalError(e, "Cannot subscribe to topic: " + topic);
+            }
+        }
+    }
+
+    @Override
+    public void unsubscribe(String topic) throws KuraException {
+
+        if (!isConnected()) {
+            throw new KuraNotConnectedException(NOT_CONNECTED_MESSAGE);
+        }
+
+        topic = MqttTransportSupport.replaceTopicVariables(topic, this.topicContext);
+
+        logger.info("Unsubscribing to topic: {}", topic);
+
+        try {
+            this.mqttClient.unsubscribe(topic, getTimeToWaitMillis());
+        } catch (Mqtt5Exception e) {
+            if (e.getReasonCode() == Mqtt5Exception.REASON_CODE_CLIENT_TIMEOUT) {
+                logger.warn("Timeout unsubscribing to topic: {}", topic);
+                throw new KuraTimeoutException("Timeout unsubscribing to topic: " + topic, e);
+            } else {
+                logger.error("Cannot unsubscribe to topic: " + topic, e);
+                throw KuraException.internalError(e, "Cannot unsubscribe to topic: " + topic);
+            }
+        }
+    }
+
+    /*
+     * KuraNotConnectedException this can be easily recovered connecting the service.
+     * KuraTooManyInflightMessagesException the broker Receive Maximum is reached, the caller SHOULD retry
+     * publishing the message at a later time.
+     */
+    @Override
+    public DataTransportToken publish(String topic, byte[] payload, int qos, boolean retain) throws KuraException {
+
+        if (!isConnected()) {
+            throw new KuraNotConnectedException(NOT_CONNECTED_MESSAGE);
+        }
+
+        topic = MqttTransportSupport.replaceTopicVariables(topic, this.topicContext);
+
+        logger.info("Publishing message on topic: {} with QoS: {}", topic, qos);
+
+        ClientConfiguration conf = this.clientConf;
+        int messageId;
+        try {
+            messageId = this.mqttClient.publish(topic, payload, qos, retain, conf.messageExpiryInterval,
+                    conf.connectOptions.getUserProperties());
+            logger.debug("Published message with ID: {}", messageId);
+        } catch (Mqtt5Exception e) {
+            if (e.getReasonCode() == Mqtt5Exception.REASON_CODE_MAX_INFLIGHT) {
+                logger.info("Too many inflight messages");
+                throw new KuraTooManyInflightMessagesException(e, "Too many in-fligh messages");
+            } else if (e.getReasonCode() == Mqtt5Exception.REASON_CODE_CLIENT_NOT_CONNECTED) {
+                throw new KuraNotConnectedException(e, NOT_CONNECTED_MESSAGE);
+            } else {
+                logger.error("Cannot publish on topic: " + topic, e);
+                throw KuraException.internalError(e, "Cannot publish on topic: " + topic);
+            }
+        }
+
+        // The message ID is 0 for QoS 0 messages, which are never confirmed
+        DataTransportToken token = null;
+        if (messageId > 0) {
+            token = new DataTransportToken(messageId, this.sessionId);
+        }
+
+        return token;
+    }
+
+    @Override
+    public void addDataTransportListener(DataTransportListener listener) {
+        this.dataTransportListeners.add(listener);
+    }
+
+    @Override
+    public void removeDataTransportListener(DataTransportListener listener) {
+        this.dataTransportListeners.remove(listener);
+    }
+
+    // ---------------------------------------------------------
+    //
+    // Mqtt5Client.Callback methods
+    //
+    // ---------------------------------------------------------
+
+    @Override
+    public void connectionLost(Throwable cause) {
+        logger.warn("Connection Lost", cause);
+
+        // notify the listeners
+        this.dataTransportListeners.onConnectionLost(cause);
+    }
+
+    @Override
+    public void deliveryComplete(int packetId) {
+        logger.debug("Delivery complete for message with ID: {}", packetId);
+
+        // notify the listeners
+        this.dataTransportListeners.onMessageConfirmed(new DataTransportToken(packetId, this.sessionId));
+    }
+
+    @Override
+    public void messageArrived(String topic, byte[] payload, int qos, boolean retained) {
+        logger.debug("Message arrived on topic: {}", topic);
+
+        // notify the listeners
+        this.dataTransportListeners.onMessageArrived(topic, payload, qos, retained);
+    }
+
+    private long getTimeToWaitMillis() {
+        // We use the same value for every timeout
+        return this.clientConf.connectOptions.getConnectionTimeout() * 1000L;
+    }
+
+    // ---------------------------------------------------------
+    //
+    // SslServiceListener Overrides
+    //
+    // ---------------------------------------------------------
+    @Override
+    public void onConfigurationUpdated() {
+        // The SSL service was update, build a new socket connection
+        update();
+    }
+
+    // ---------------------------------------------------------
+    //
+    // CloudConnectionStatus Overrides
+    //
+    // ---------------------------------------------------------
+    @Override
+    public int getNotificationPriority() {
+        return CloudConnectionStatusService.PRIORITY_MEDIUM;
+    }
+
+    @Override
+    public CloudConnectionStatusEnum getNotificationStatus() {
+        return this.notificationStatus;
+    }
+
+    @Override
+    public void setNotificationStatus(CloudConnectionStatusEnum status) {
+        this.notificationStatus = status;
+    }
+
+    // ---------------------------------------------------------
+    //
+    // Private methods
+    //
+    // ---------------------------------------------------------
+
+    /*
+     * Builds the client configuration from the component configuration. If a valid
+     * configuration cannot be assembled the method throws a RuntimeException.
+     */
+    private ClientConfiguration buildConfiguration(Map<String, Object> properties) {
+
+        Mqtt5ConnectOptions conOpt = new Mqtt5ConnectOptions();
+        String clientId;
+        String brokerUrl;
+        int topicAliasMaximum;
+        long messageExpiryInterval;
+        try {
+            clientId = (String) properties.get(MQTT_CLIENT_ID_PROP_NAME);
+            if (clientId == null || clientId.trim().length() == 0) {
+                clientId = this.systemService.getPrimaryMacAddress();
+            }
+            ValidationUtil.notEmptyOrNull(clientId, "clientId");
+
+            // replace invalid token in the client ID as it is used as part of
+            // the topicname space
+            clientId = clientId.replace('/', '-');
+            clientId = clientId.replace('+', '-');
+            clientId = clientId.replace('#', '-');
+            clientId = clientId.replace('.', '-');
+            conOpt.setClientId(clientId);
+
+            brokerUrl = (String) properties.get(MQTT_BROKER_URL_PROP_NAME);
+            ValidationUtil.notEmptyOrNull(brokerUrl, MQTT_BROKER_URL_PROP_NAME);
+            brokerUrl = brokerUrl.trim();
+
+            brokerUrl = brokerUrl.replaceAll("^" + MQTT_SCHEME, "tcp://");
+            brokerUrl = brokerUrl.replaceAll("^" + MQTTS_SCHEME, "ssl://");
+
+            brokerUrl = brokerUrl.replaceAll("/$", "");
+            ValidationUtil.notEmptyOrNull(brokerUrl, "brokerUrl");
+
+            ValidationUtil.notNegative((Integer) properties.get(MQTT_KEEP_ALIVE_PROP_NAME), MQTT_KEEP_ALIVE_PROP_NAME);
+            ValidationUtil.notNegative((Integer) properties.get(MQTT_TIMEOUT_PROP_NAME), MQTT_TIMEOUT_PROP_NAME);
+
+            ValidationUtil.notNull(properties.get(MQTT_CLEAN_START_PROP_NAME), MQTT_CLEAN_START_PROP_NAME);
+
+            String userName = (String) properties.get(MQTT_USERNAME_PROP_NAME);
+            if (userName != null && !userName.isEmpty()) {
+                conOpt.setUserName(userName);
+            }
+
+            Password password = (Password) properties.get(MQTT_PASSWORD_PROP_NAME);
+            if (password != null && password.toString().length() != 0) {
+                conOpt.setPassword(password.getPassword());
+            }
+
+            conOpt.setKeepAliveInterval((Integer) properties.get(MQTT_KEEP_ALIVE_PROP_NAME));
+            conOpt.setConnectionTimeout((Integer) properties.get(MQTT_TIMEOUT_PROP_NAME));
+            conOpt.setCleanStart((Boolean) properties.get(MQTT_CLEAN_START_PROP_NAME));
+
+            conOpt.setSessionExpiryInterval(
+                    ((Number) properties.getOrDefault(MQTT_SESSION_EXPIRY_INTERVAL_PROP_NAME, 0L)).longValue());
+            conOpt.setReceiveMaximum((Integer) properties.getOrDefault(MQTT_RECEIVE_MAXIMUM_PROP_NAME, 65535));
+            conOpt.setUserProperties(
+                    parseUserProperties((String) properties.getOrDefault(MQTT_USER_PROPERTIES_PROP_NAME, "")));
+
+            topicAliasMaximum = (Integer) properties.getOrDefault(MQTT_TOPIC_ALIAS_MAXIMUM_PROP_NAME, 0);
+            messageExpiryInterval = ((Number) properties.getOrDefault(MQTT_MESSAGE_EXPIRY_INTERVAL_PROP_NAME, 0L))
+                    .longValue();
+
+            synchronized (this.topicContext) {
+                this.topicContext.clear();
+                if (properties.get(CLOUD_ACCOUNT_NAME_PROP_NAME) != null) {
+                    this.topicContext.put(TOPIC_ACCOUNT_NAME_CTX_NAME,
+                            (String) properties.get(CLOUD_ACCOUNT_NAME_PROP_NAME));
+                }
+                this.topicContext.put(TOPIC_DEVICE_ID_CTX_NAME, clientId);
+            }
+
+            String willTopic = (String) properties.get(MQTT_LWT_TOPIC_PROP_NAME);
+            if (!(willTopic == null || willTopic.isEmpty())) {
+                int willQos = 0;
+                boolean willRetain = false;
+
+                String willPayload = (String) properties.get(MQTT_LWT_PAYLOAD_PROP_NAME);
+                if (properties.get(MQTT_LWT_QOS_PROP_NAME) != null) {
+                    willQos = (Integer) properties.get(MQTT_LWT_QOS_PROP_NAME);
+                }
+                if (properties.get(MQTT_LWT_RETAIN_PROP_NAME) != null) {
+                    willRetain = (Boolean) properties.get(MQTT_LWT_RETAIN_PROP_NAME);
+                }
+
+                willTopic = MqttTransportSupport.replaceTopicVariables(willTopic, this.topicContext);
+
+                byte[] payload = {};
+                if (willPayload != null && !willPayload.isEmpty()) {
+                    payload = willPayload.getBytes(StandardCharsets.UTF_8);
+                }
+
+                conOpt.setWill(willTopic, payload, willQos, willRetain);
+            }
+        } catch (KuraException e) {
+            logger.error(INVALID_CONFIGURATION_MESSAGE);
+            throw new IllegalStateException("Invalid MQTT client configuration", e);
+        }
+
+        //
+        // SSL
+        if (brokerUrl.startsWith("ssl")) {
+            try {
+                String alias = (String) this.properties.get(SSL_CERT_ALIAS);
+                if (alias == null || "".equals(alias.trim())) {
+                    alias = this.topicContext.get(TOPIC_ACCOUNT_NAME_CTX_NAME);
+                }
+
+                String protocol = (String) this.properties.get(SSL_PROTOCOL);
+                String ciphers = (String) this.properties.get(SSL_CIPHERS);
+                String hnVerification = (String) this.properties.get(SSL_HN_VERIFY);
+
+                SSLSocketFactory ssf;
+                if (SSL_DEFAULT_HN_VERIFY.equals(hnVerification)) {
+                    ssf = this.sslManagerService.getSSLSocketFactory(protocol, ciphers, null, null, null, alias);
+                } else {
+                    ssf = this.sslManagerService.getSSLSocketFactory(protocol, ciphers, null, null, null, alias,
+                            Boolean.valueOf(hnVerification));
+                }
+
+                conOpt.setSocketFactory(ssf);
+            } catch (Exception e) {
+                logger.error("SSL setup failed", e);
+                throw new IllegalStateException("SSL setup failed");
+            }
+        }
+
+        return new ClientConfiguration(brokerUrl, conOpt, topicAliasMaximum, messageExpiryInterval);
+    }
+
+    /**
+     * Parses a comma separated list of name=value pairs.
+     */
+    static List<String[]> parseUserProperties(String userProperties) {
+        if (userProperties == null || userProperties.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String[]> result = new ArrayList<>();
+        for (String pair : userProperties.split(",")) {
+            int separator = pair.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid user property: " + pair);
+            }
+            result.add(new String[] { pair.substring(0, separator).trim(), pair.substring(separator + 1).trim() });
+        }
+        return result;
+    }
+
+    private void setupMqttSession() {
+
+        if (this.clientConf == null) {
+            logger.error(INVALID_CONFIGURATION_MESSAGE);
+            throw new IllegalStateException(INVALID_CONFIGURATION_MESSAGE);
+        }
+
+        // The client instance holds the in-flight messages and the packet ID sequence,
+        // so it is only replaced when the broker URL or the client ID changes.
+        String clientId = this.clientConf.connectOptions.getClientId();
+        String newSessionId = clientId + "-" + this.clientConf.brokerUrl;
+        if (this.mqttClient == null || !newSessionId.equals(this.sessionId)) {
+            logger.info("Creating a new client instance");
+            try {
+                this.mqttClient = new Mqtt5Client(this.clientConf.brokerUrl, this);
+            } catch (IllegalArgumentException e) {
+                logger.error("Client instantiation failed", e);
+                throw new IllegalStateException("Client instantiation failed");
+            }
+        }
+
+        this.sessionId = newSessionId;
+    }
+
+    private static final class ClientConfiguration {
+
+        private final String brokerUrl;
+        private final Mqtt5ConnectOptions connectOptions;
+        private final int topicAliasMaximum;
+        private final long messageExpiryInterval;
+
+        ClientConfiguration(String brokerUrl, Mqtt5ConnectOptions connectOptions, int topicAliasMaximum,
+                long messageExpiryInterval) {
+            this.brokerUrl = brokerUrl;
+            this.connectOptions = connectOptions;
+            this.topicAliasMaximum = topicAliasMaximum;
+            this.messageExpiryInterval = messageExpiryInterval;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.data.transport.mqtt;
+
+/**
+ * Reports the failure of an {@link Mqtt5Client} operation.
+ * <p>
+ * The reason code is either an MQTT 5 reason code returned by the server, in the 0x80..0xFF range, or one of the
+ * negative codes defined here for failures detected by the client.
+ */
+class Mqtt5Exception extends Exception {
+
+    private static final long serialVersionUID = -5371046468231052397L;
+
+    static final int REASON_CODE_CLIENT_NOT_CONNECTED = -1;
+    static final int REASON_CODE_MAX_INFLIGHT = -2;
+    static final int REASON_CODE_CLIENT_TIMEOUT = -3;
+    static final int REASON_CODE_CONNECTION_LOST = -4;
+    static final int REASON_CODE_PACKET_TOO_LARGE = 0x95;
+
+    private final int reasonCode;
+
+    Mqtt5Exception(int reasonCode, String message) {
+        super(message);
+        this.reasonCode = reasonCode;
+    }
+
+    Mqtt5Exception(int reasonCode, String message, Throwable cause) {
+        super(message, cause);
+        this.reasonCode = reasonCode;
+    }
+
+    int getReasonCode() {
+        return this.reasonCode;
+    }
+}
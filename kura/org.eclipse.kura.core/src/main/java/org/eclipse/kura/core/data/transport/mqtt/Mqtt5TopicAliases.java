@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.data.transport.mqtt;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Assigns outbound topic aliases for a network connection.
+ * <p>
+ * Aliases are only valid for the lifetime of a network connection, so a new instance must be used after every
+ * connect. When all the aliases allowed by the server are taken, the alias of the least recently published topic is
+ * reassigned.
+ * <p>
+ * This class is not thread safe.
+ */
+class Mqtt5TopicAliases {
+
+    private final int maximum;
+    private final Map<String, Integer> aliases = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param maximum
+     *            the number of aliases allowed by the server, the lower of the Topic Alias Maximum advertised in the
+     *            CONNACK and the configured limit; 0 disables aliasing
+     */
+    Mqtt5TopicAliases(int maximum) {
+        this.maximum = maximum;
+    }
+
+    /**
+     * Returns the alias to use for a topic.
+     *
+     * @return a {@link Mapping} with a 0 alias if aliasing is disabled
+     */
+    Mapping map(String topic) {
+        if (this.maximum <= 0) {
+            return new Mapping(0, false);
+        }
+
+        Integer alias = this.aliases.get(topic);
+        if (alias != null) {
+            return new Mapping(alias, true);
+        }
+
+        int newAlias;
+        if (this.aliases.size() < this.maximum) {
+            newAlias = this.aliases.size() + 1;
+        } else {
+            Iterator<Integer> eldest = this.aliases.values().iterator();
+            newAlias = eldest.next();
+            eldest.remove();
+        }
+        this.aliases.put(topic, newAlias);
+        return new Mapping(newAlias, false);
+    }
+
+    int size() {
+        return this.aliases.size();
+    }
+
+    static final class Mapping {
+
+        private final int alias;
+        private final boolean established;
+
+        Mapping(int alias, boolean established) {
+            this.alias = alias;
+            this.established = established;
+        }
+
+        /**
+         * @return the alias, 0 if none
+         */
+        int getAlias() {
+            return this.alias;
+        }
+
+        /**
+         * @return true if the server already knows the alias, so that the topic name can be omitted
+         */
+        boolean isEstablished() {
+            return this.established;
+        }
+    }
+}
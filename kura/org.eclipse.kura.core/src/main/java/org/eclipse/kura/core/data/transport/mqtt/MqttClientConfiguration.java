@@ -19,6 +19,7 @@ public class MqttClientConfiguration {
     private final String clientId;
     private final PersistenceType persistenceType;
     private final MqttConnectOptions connectOptions;
+    private final int connectionPoolSize;
 
     public enum PersistenceType {
         FILE, MEMORY
@@ -26,11 +27,17 @@ public class MqttClientConfiguration {
 
     public MqttClientConfiguration(String brokerUrl, String clientId, PersistenceType persistenceType,
             MqttConnectOptions connectOptions) {
+        this(brokerUrl, clientId, persistenceType, connectOptions, 1);
+    }
+
+    public MqttClientConfiguration(String brokerUrl, String clientId, PersistenceType persistenceType,
+            MqttConnectOptions connectOptions, int connectionPoolSize) {
         super();
         this.brokerUrl = brokerUrl;
         this.clientId = clientId;
         this.persistenceType = persistenceType;
         this.connectOptions = connectOptions;
+        this.connectionPoolSize = connectionPoolSize;
     }
 
     public String getBrokerUrl() {
@@ -48,4 +55,11 @@ public class MqttClientConfiguration {
     public MqttConnectOptions getConnectOptions() {
         return this.connectOptions;
     }
+
+    /**
+     * @return the number of MQTT connections opened to the broker, at least 1
+     */
+    public int getConnectionPoolSize() {
+        return this.connectionPoolSize;
+    }
 }
@@ -13,10 +13,11 @@
 package org.eclipse.kura.core.data.transport.mqtt;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.net.ssl.SSLSocketFactory;
 
@@ -71,11 +72,6 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
     private static final String MQTTS_SCHEME = "mqtts://";
     // TODO: add mqtt+ssl for secure mqtt
 
-    // '#' followed by one or more non-whitespace but not the '/'
-    private static final String TOPIC_PATTERN_STRING = "#([^\\s/]+)";
-
-    private static final Pattern TOPIC_PATTERN = Pattern.compile(TOPIC_PATTERN_STRING);
-
     private static final String MQTT_BROKER_URL_PROP_NAME = "broker-url";
     private static final String MQTT_USERNAME_PROP_NAME = "username";
     private static final String MQTT_PASSWORD_PROP_NAME = "password";
@@ -97,6 +93,8 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
 
     private static final String PERSISTENCE_TYPE_PROP_NAME = "in-flight.persistence";
 
+    private static final String MQTT_CONNECTION_POOL_SIZE_PROP_NAME = "connection-pool.size";
+
     private static final String TOPIC_ACCOUNT_NAME_CTX_NAME = "account-name";
     private static final String TOPIC_DEVICE_ID_CTX_NAME = "client-id";
 
@@ -114,6 +112,9 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
 
     private MqttAsyncClient mqttClient;
 
+    // The additional connections of the pool, the primary connection is mqttClient
+    private volatile List<PooledConnection> pooledConnections = Collections.emptyList();
+
     private DataTransportListenerS dataTransportListeners;
 
     private MqttClientConfiguration clientConf;
@@ -177,26 +178,7 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
 
         // We need to catch the configuration exception and activate anyway.
         // Otherwise the ConfigurationService will not be able to track us.
-        HashMap<String, Object> decryptedPropertiesMap = new HashMap<>();
-
-        for (Map.Entry<String, Object> entry : properties.entrySet()) {
-            String key = entry.getKey();
-            Object value = entry.getValue();
-            if (key.equals(MQTT_PASSWORD_PROP_NAME)) {
-                try {
-                    Password decryptedPassword = new Password(
-                            this.cryptoService.decryptAes(((String) value).toCharArray()));
-                    decryptedPropertiesMap.put(key, decryptedPassword);
-                } catch (Exception e) {
-                    logger.info("Password is not encrypted");
-                    decryptedPropertiesMap.put(key, new Password((String) value));
-                }
-            } else {
-                decryptedPropertiesMap.put(key, value);
-            }
-        }
-
-        this.properties.putAll(decryptedPropertiesMap);
+        this.properties.putAll(MqttTransportSupport.decryptProperties(this.cryptoService, properties));
         try {
             this.clientConf = buildConfiguration(this.properties);
         } catch (RuntimeException e) {
@@ -230,26 +212,7 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
 
         this.properties.clear();
 
-        HashMap<String, Object> decryptedPropertiesMap = new HashMap<>();
-
-        for (Map.Entry<String, Object> entry : properties.entrySet()) {
-            String key = entry.getKey();
-            Object value = entry.getValue();
-            if (key.equals(MQTT_PASSWORD_PROP_NAME)) {
-                try {
-                    Password decryptedPassword = new Password(
-                            this.cryptoService.decryptAes(((String) value).toCharArray()));
-                    decryptedPropertiesMap.put(key, decryptedPassword);
-                } catch (Exception e) {
-                    logger.info("Password is not encrypted");
-                    decryptedPropertiesMap.put(key, new Password((String) value));
-                }
-            } else {
-                decryptedPropertiesMap.put(key, value);
-            }
-        }
-
-        this.properties.putAll(decryptedPropertiesMap);
+        this.properties.putAll(MqttTransportSupport.decryptProperties(this.cryptoService, properties));
 
         update();
     }
@@ -308,6 +271,7 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
                 getMqttVersionLabel(this.clientConf.getConnectOptions().getMqttVersion()));
         logger.info("#  willDestination = {}", this.clientConf.getConnectOptions().getWillDestination());
         logger.info("#  willMessage     = {}", this.clientConf.getConnectOptions().getWillMessage());
+        logger.info("#  connections     = {}", this.clientConf.getConnectionPoolSize());
         logger.info("#");
         logger.info("#  Connecting...");
 
@@ -319,8 +283,11 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
         //
         // connect
         try {
-            IMqttToken connectToken = this.mqttClient.connect(this.clientConf.getConnectOptions());
-            connectToken.waitForCompletion(getTimeToWaitMillis() * 3);
+            if (!this.mqttClient.isConnected()) {
+                IMqttToken connectToken = this.mqttClient.connect(this.clientConf.getConnectOptions());
+                connectToken.waitForCompletion(getTimeToWaitMillis() * 3);
+            }
+            connectPooledConnections();
             logger.info("#  Connected!");
             logger.info("# ------------------------------------------------------------");
 
@@ -329,6 +296,11 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
 
         } catch (MqttException e) {
             logger.warn("xxxxx  Connect failed. Forcing disconnect. xxxxx");
+            // a pooled connection may have failed after the primary one, and the other pooled ones, were connected
+            disconnectForcibly(this.mqttClient);
+            for (PooledConnection connection : this.pooledConnections) {
+                disconnectForcibly(connection.client);
+            }
             closeMqttClient();
 
             // Update status notification service
@@ -347,11 +319,20 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
     @Override
     public boolean isConnected() {
         if (this.mqttClient != null) {
-            return this.mqttClient.isConnected();
+            return this.mqttClient.isConnected() && arePooledConnectionsConnected();
         }
         return false;
     }
 
+    private boolean arePooledConnectionsConnected() {
+        for (PooledConnection connection : this.pooledConnections) {
+            if (!connection.client.isConnected()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public String getBrokerUrl() {
         if (this.clientConf != null) {
@@ -412,6 +393,14 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
             // notify the listeners
             this.dataTransportListeners.onDisconnecting();
 
+            for (PooledConnection connection : this.pooledConnections) {
+                try {
+                    connection.client.disconnect(quiesceTimeout).waitForCompletion(getTimeToWaitMillis());
+                } catch (MqttException e) {
+                    logger.error("Disconnect of pooled client {} failed", connection.client.getClientId(), e);
+                }
+            }
+
             try {
                 this.mqttClient.disconnect(quiesceTimeout).waitForCompletion(getTimeToWaitMillis());
                 logger.info("Disconnected");
@@ -440,7 +429,7 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
             throw new KuraNotConnectedException(NOT_CONNECTED_MESSAGE);
         }
 
-        topic = replaceTopicVariables(topic);
+        topic = MqttTransportSupport.replaceTopicVariables(topic, this.topicContext);
 
         logger.info("Subscribing to topic: {} with QoS: {}", topic, qos);
 
@@ -465,7 +454,7 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
             throw new KuraNotConnectedException(NOT_CONNECTED_MESSAGE);
         }
 
-        topic = replaceTopicVariables(topic);
+        topic = MqttTransportSupport.replaceTopicVariables(topic, this.topicContext);
 
         logger.info("Unsubscribing to topic: {}", topic);
 
@@ -501,7 +490,23 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
             throw new KuraNotConnectedException(NOT_CONNECTED_MESSAGE);
         }
 
-        topic = replaceTopicVariables(topic);
+        topic = MqttTransportSupport.replaceTopicVariables(topic, this.topicContext);
+
+        // Messages on the same topic always go through the same connection so that their order is preserved
+        MqttAsyncClient client = this.mqttClient;
+        String clientSessionId = this.sessionId;
+        List<PooledConnection> pool = this.pooledConnections;
+        if (!pool.isEmpty()) {
+            int index = getConnectionIndex(topic, pool.size() + 1);
+            if (index > 0) {
+                PooledConnection connection = pool.get(index - 1);
+                if (!connection.client.isConnected()) {
+                    throw new KuraNotConnectedException(NOT_CONNECTED_MESSAGE);
+                }
+                client = connection.client;
+                clientSessionId = connection.sessionId;
+            }
+        }
 
         logger.info("Publishing message on topic: {} with QoS: {}", topic, qos);
 
@@ -512,7 +517,7 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
 
         Integer messageId = null;
         try {
-            IMqttDeliveryToken token = this.mqttClient.publish(topic, message);
+            IMqttDeliveryToken token = client.publish(topic, message);
             // At present Paho ALWAYS allocates (gets and increments) internally
             // a message ID,
             // even for messages published with QoS == 0.
@@ -545,7 +550,7 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
 
         DataTransportToken token = null;
         if (messageId != null) {
-            token = new DataTransportToken(messageId, this.sessionId);
+            token = new DataTransportToken(messageId, clientSessionId);
         }
 
         return token;
@@ -570,12 +575,21 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
     public void connectionLost(final Throwable cause) {
         logger.warn("Connection Lost", cause);
 
+        // The pool is seen as a single connection by the upper layer
+        for (PooledConnection connection : this.pooledConnections) {
+            disconnectForcibly(connection.client);
+        }
+
         // notify the listeners
         this.dataTransportListeners.onConnectionLost(cause);
     }
 
     @Override
     public void deliveryComplete(IMqttDeliveryToken token) {
+        deliveryComplete(token, this.sessionId);
+    }
+
+    private void deliveryComplete(IMqttDeliveryToken token, String clientSessionId) {
 
         if (token == null) {
             logger.error("null token");
@@ -629,7 +643,7 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
         // These confirms will be lost!
 
         // notify the listeners
-        DataTransportToken dataPublisherToken = new DataTransportToken(id, this.sessionId);
+        DataTransportToken dataPublisherToken = new DataTransportToken(id, clientSessionId);
         this.dataTransportListeners.onMessageConfirmed(dataPublisherToken);
     }
 
@@ -651,6 +665,42 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
                 message.isRetained());
     }
 
+    private void pooledConnectionLost(PooledConnection lostConnection, Throwable cause) {
+        logger.warn("Connection Lost on pooled client {}", lostConnection.client.getClientId(), cause);
+
+        // The pool is seen as a single connection by the upper layer:
+        // close the other connections so that the whole pool is reconnected
+        disconnectForcibly(this.mqttClient);
+        for (PooledConnection connection : this.pooledConnections) {
+            if (connection != lostConnection) {
+                disconnectForcibly(connection.client);
+            }
+        }
+
+        // notify the listeners
+        this.dataTransportListeners.onConnectionLost(cause);
+    }
+
+    private void disconnectForcibly(MqttAsyncClient client) {
+        if (client == null || !client.isConnected()) {
+            return;
+        }
+        try {
+            client.disconnectForcibly(0, getTimeToWaitMillis());
+        } catch (MqttException e) {
+            logger.warn("Cannot disconnect client {}", client.getClientId(), e);
+        }
+    }
+
+    /**
+     * Returns the index of the connection of the pool used to publish on the given topic. The index only depends
+     * on the topic and on the pool size: {@link String#hashCode()} is fully specified, so the mapping is the same
+     * across restarts.
+     */
+    static int getConnectionIndex(String topic, int poolSize) {
+        return (topic.hashCode() & Integer.MAX_VALUE) % poolSize;
+    }
+
     private long getTimeToWaitMillis() {
         // We use the same value for every timeout
         return this.clientConf.getConnectOptions().getConnectionTimeout() * 1000L;
@@ -777,7 +827,7 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
                     willRetain = (Boolean) properties.get(MQTT_LWT_RETAIN_PROP_NAME);
                 }
 
-                willTopic = replaceTopicVariables(willTopic);
+                willTopic = MqttTransportSupport.replaceTopicVariables(willTopic, this.topicContext);
 
                 byte[] payload = {};
                 if (willPayload != null && !willPayload.isEmpty()) {
@@ -829,43 +879,15 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
             throw new IllegalStateException("Invalid MQTT client configuration: persistenceType: " + persistenceType);
         }
 
-        clientConfiguration = new MqttClientConfiguration(brokerUrl, clientId, persistenceType, conOpt);
-
-        return clientConfiguration;
-    }
-
-    private String replaceTopicVariables(String topic) {
-        boolean found;
-        Matcher topicMatcher = TOPIC_PATTERN.matcher(topic);
-        StringBuffer sb = new StringBuffer();
-        do {
-
-            found = topicMatcher.find();
-            if (found) {
-                // By default replace #variable-name (group 0) with itself
-                String replacement = topicMatcher.group(0);
-
-                // TODO: Try to get variable-name (group 1) from the context
-                String variableName = topicMatcher.group(1);
-                synchronized (this.topicContext) {
-                    String value = this.topicContext.get(variableName);
-                    if (value != null) {
-                        replacement = value;
-                    }
-                }
-
-                // Replace #variable-name with the value of the variable
-                topicMatcher.appendReplacement(sb, replacement);
-            }
-        } while (found);
-
-        topicMatcher.appendTail(sb);
-
-        String replacedTopic = sb.toString();
+        int connectionPoolSize = 1;
+        if (properties.get(MQTT_CONNECTION_POOL_SIZE_PROP_NAME) != null) {
+            connectionPoolSize = Math.max(1, (Integer) properties.get(MQTT_CONNECTION_POOL_SIZE_PROP_NAME));
+        }
 
-        logger.debug("Replaced tokens in topic {} with: {}", topic, replacedTopic);
+        clientConfiguration = new MqttClientConfiguration(brokerUrl, clientId, persistenceType, conOpt,
+                connectionPoolSize);
 
-        return replacedTopic;
+        return clientConfiguration;
     }
 
     private String generateSessionId() {
@@ -897,6 +919,7 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
         // a new session.
         boolean newSession = this.clientConf.getConnectOptions().isCleanSession();
 
+        boolean primaryClientCreated = this.mqttClient == null;
         if (this.mqttClient == null) {
 
             logger.info("Creating a new client instance");
@@ -949,11 +972,7 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
                 logger.info("Using memory persistence for in-flight messages");
                 this.persistence = new MemoryPersistence();
             } else {
-                StringBuffer sb = new StringBuffer();
-                sb.append(this.systemService.getKuraDataDirectory()).append(this.systemService.getFileSeparator())
-                        .append("paho-persistence");
-
-                String dir = sb.toString();
+                String dir = getPersistenceDirectory();
 
                 logger.info("Using file persistence for in-flight messages: {}", dir);
 
@@ -1008,11 +1027,116 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
             }
         }
 
+        if (primaryClientCreated
+                || this.pooledConnections.size() != this.clientConf.getConnectionPoolSize() - 1) {
+            closePooledConnections();
+            this.pooledConnections = createPooledConnections();
+        }
+
         this.newSession = newSession;
         this.sessionId = generateSessionId();
     }
 
+    private List<PooledConnection> createPooledConnections() {
+        int poolSize = this.clientConf.getConnectionPoolSize();
+        if (poolSize <= 1) {
+            return Collections.emptyList();
+        }
+
+        logger.info("Creating {} pooled client instances", poolSize - 1);
+
+        List<PooledConnection> connections = new ArrayList<>(poolSize - 1);
+        try {
+            for (int i = 1; i < poolSize; i++) {
+                // Each client needs its own persistence instance. File persistence stores
+                // the state of each client in a subdirectory named after the client ID.
+                MqttClientPersistence clientPersistence;
+                if (this.clientConf.getPersistenceType() == PersistenceType.MEMORY) {
+                    clientPersistence = new MemoryPersistence();
+                } else {
+                    clientPersistence = new MqttDefaultFilePersistence(getPersistenceDirectory());
+                }
+
+                String clientId = this.clientConf.getClientId() + "-" + i;
+                MqttAsyncClient client = new MqttAsyncClient(this.clientConf.getBrokerUrl(), clientId,
+                        clientPersistence);
+                PooledConnection connection = new PooledConnection(client,
+                        clientId + "-" + this.clientConf.getBrokerUrl());
+                client.setCallback(connection);
+                connections.add(connection);
+            }
+        } catch (MqttException e) {
+            logger.error("Pooled client instantiation failed", e);
+            closeClients(connections);
+            throw new IllegalStateException("Client instantiation failed");
+        }
+        return Collections.unmodifiableList(connections);
+    }
+
+    private void connectPooledConnections() throws MqttException {
+        if (this.pooledConnections.isEmpty()) {
+            return;
+        }
+
+        // The last will is only set on the primary connection
+        MqttConnectOptions options = buildPooledConnectOptions(this.clientConf.getConnectOptions());
+        for (PooledConnection connection : this.pooledConnections) {
+            if (!connection.client.isConnected()) {
+                connection.client.connect(options).waitForCompletion(getTimeToWaitMillis() * 3);
+                logger.info("#  Connected pooled client {}", connection.client.getClientId());
+            }
+        }
+    }
+
+    static MqttConnectOptions buildPooledConnectOptions(MqttConnectOptions primaryOptions) {
+        MqttConnectOptions options = new MqttConnectOptions();
+        if (primaryOptions.getUserName() != null) {
+            options.setUserName(primaryOptions.getUserName());
+        }
+        if (primaryOptions.getPassword() != null) {
+            options.setPassword(primaryOptions.getPassword());
+        }
+        options.setKeepAliveInterval(primaryOptions.getKeepAliveInterval());
+        options.setConnectionTimeout(primaryOptions.getConnectionTimeout());
+        options.setCleanSession(primaryOptions.isCleanSession());
+        options.setMqttVersion(primaryOptions.getMqttVersion());
+        options.setMaxInflight(primaryOptions.getMaxInflight());
+        if (primaryOptions.getSocketFactory() != null) {
+            options.setSocketFactory(primaryOptions.getSocketFactory());
+        }
+        if (primaryOptions.getSSLProperties() != null) {
+            options.setSSLProperties(primaryOptions.getSSLProperties());
+        }
+        if (primaryOptions.getSSLHostnameVerifier() != null) {
+            options.setSSLHostnameVerifier(primaryOptions.getSSLHostnameVerifier());
+        }
+        return options;
+    }
+
+    private String getPersistenceDirectory() {
+        return this.systemService.getKuraDataDirectory() + this.systemService.getFileSeparator() + "paho-persistence";
+    }
+
+    private void closePooledConnections() {
+        List<PooledConnection> connections = this.pooledConnections;
+        this.pooledConnections = Collections.emptyList();
+        closeClients(connections);
+    }
+
+    private static void closeClients(List<PooledConnection> connections) {
+        for (PooledConnection connection : connections) {
+            try {
+                // prevent callbacks from a zombie client
+                connection.client.setCallback(null);
+                connection.client.close();
+            } catch (MqttException e) {
+                logger.warn("Cannot close pooled client", e);
+            }
+        }
+    }
+
     private void closeMqttClient() {
+        closePooledConnections();
         try {
             logger.info("Closing client...");
             // prevent callbacks from a zombie client
@@ -1037,4 +1161,33 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
             return String.valueOf(mqttVersion);
         }
     }
+
+    /**
+     * An additional connection of the pool, with its own client ID and session.
+     */
+    private final class PooledConnection implements MqttCallback {
+
+        private final MqttAsyncClient client;
+        private final String sessionId;
+
+        PooledConnection(MqttAsyncClient client, String sessionId) {
+            this.client = client;
+            this.sessionId = sessionId;
+        }
+
+        @Override
+        public void connectionLost(Throwable cause) {
+            pooledConnectionLost(this, cause);
+        }
+
+        @Override
+        public void deliveryComplete(IMqttDeliveryToken token) {
+            MqttDataTransport.this.deliveryComplete(token, this.sessionId);
+        }
+
+        @Override
+        public void messageArrived(String topic, MqttMessage message) throws Exception {
+            MqttDataTransport.this.messageArrived(topic, message);
+        }
+    }
 }
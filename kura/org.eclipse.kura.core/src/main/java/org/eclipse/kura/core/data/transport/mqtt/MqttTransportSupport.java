@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.data.transport.mqtt;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.kura.configuration.Password;
+import org.eclipse.kura.crypto.CryptoService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The configuration and topic handling shared by the MQTT data transports.
+ */
+final class MqttTransportSupport {
+
+    private static final Logger logger = LoggerFactory.getLogger(MqttTransportSupport.class);
+
+    static final String MQTT_PASSWORD_PROP_NAME = "password";
+
+    // '#' followed by one or more non-whitespace but not the '/'
+    private static final String TOPIC_PATTERN_STRING = "#([^\\s/]+)";
+
+    private static final Pattern TOPIC_PATTERN = Pattern.compile(TOPIC_PATTERN_STRING);
+
+    private MqttTransportSupport() {
+    }
+
+    /**
+     * Returns a copy of the configuration properties with the password decrypted, a password that is not encrypted
+     * is used as is.
+     */
+    static Map<String, Object> decryptProperties(CryptoService cryptoService, Map<String, Object> properties) {
+        HashMap<String, Object> decryptedPropertiesMap = new HashMap<>();
+
+        for (Map.Entry<String, Object> entry : properties.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if (key.equals(MQTT_PASSWORD_PROP_NAME)) {
+                try {
+                    Password decryptedPassword = new Password(cryptoService.decryptAes(((String) value).toCharArray()));
+                    decryptedPropertiesMap.put(key, decryptedPassword);
+                } catch (Exception e) {
+                    logger.info("Password is not encrypted");
+                    decryptedPropertiesMap.put(key, new Password((String) value));
+                }
+            } else {
+                decryptedPropertiesMap.put(key, value);
+            }
+        }
+        return decryptedPropertiesMap;
+    }
+
+    /**
+     * Replaces each #variable-name in the topic with the value of the variable in the topic context, the variables
+     * not defined in the context are left unchanged.
+     */
+    static String replaceTopicVariables(String topic, Map<String, String> topicContext) {
+        boolean found;
+        Matcher topicMatcher = TOPIC_PATTERN.matcher(topic);
+        StringBuffer sb = new StringBuffer();
+        do {
+
+            found = topicMatcher.find();
+            if (found) {
+                // By default replace #variable-name (group 0) with itself
+                String replacement = topicMatcher.group(0);
+
+                String variableName = topicMatcher.group(1);
+                synchronized (topicContext) {
+                    String value = topicContext.get(variableName);
+                    if (value != null) {
+                        replacement = value;
+                    }
+                }
+
+                // Replace #variable-name with the value of the variable
+                topicMatcher.appendReplacement(sb, replacement);
+            }
+        } while (found);
+
+        topicMatcher.appendTail(sb);
+
+        String replacedTopic = sb.toString();
+
+        logger.debug("Replaced tokens in topic {} with: {}", topic, replacedTopic);
+
+        return replacedTopic;
+    }
+}
@@ -35,6 +35,11 @@ public class TokenBucket {
         return result;
     }
 
+    public boolean hasToken() {
+        refill();
+        return isTokenAvailable();
+    }
+
     private boolean isTokenAvailable() {
         return this.remainingTokens != 0;
     }
@@ -19,8 +19,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import org.eclipse.kura.KuraException;
+import org.eclipse.kura.core.util.ProcessRunner;
+import org.eclipse.kura.core.util.ProcessRunner.Priority;
 import org.eclipse.kura.core.util.ProcessUtil;
 import org.eclipse.kura.core.util.SafeProcess;
 import org.eclipse.kura.system.SystemService;
@@ -35,6 +42,7 @@ public class LinuxProcessUtil {
     private static final Logger logger = LoggerFactory.getLogger(LinuxProcessUtil.class);
 
     private static final String PLATFORM_INTEL_EDISON = "intel-edison";
+    private static final long PS_TIMEOUT_SECONDS = 30;
     private static volatile Boolean usingBusybox;
 
     public static int start(String command, boolean wait, boolean background) throws Exception {
@@ -143,114 +151,44 @@ public class LinuxProcessUtil {
     }
 
     public static int getPid(String command) throws Exception {
-        StringTokenizer st = null;
-        String line = null;
-        String pid = null;
-        SafeProcess proc = null;
-        BufferedReader br = null;
-        try {
-
-            if (command != null && !command.isEmpty()) {
-                logger.trace("searching process list for {}", command);
-
-                if (isUsingBusyBox()) {
-                    proc = ProcessUtil.exec("ps");
-                } else {
-                    proc = ProcessUtil.exec("ps -ax");
-                }
-                proc.waitFor();
-
-                // get the output
-                br = new BufferedReader(new InputStreamReader(proc.getInputStream()));
-                while ((line = br.readLine()) != null) {
-                    st = new StringTokenizer(line);
-                    pid = st.nextToken();
-                    st.nextElement();
-                    st.nextElement();
-                    st.nextElement();
-
-                    // get the remainder of the line showing the command that
-                    // was issued
-                    line = line.substring(line.indexOf(st.nextToken()));
-
-                    // see if the line has our command
-                    if (line.indexOf(command) >= 0) {
-                        logger.trace("found pid {} for command: {}", pid, command);
-                        return Integer.parseInt(pid);
-                    }
-                }
-            }
+        return getPid(command, new String[0]);
+    }
 
-            // return failure
+    public static int getPid(String command, String[] tokens) throws Exception {
+        if (command == null || command.isEmpty()) {
             return -1;
-        } catch (Exception e) {
-            throw e;
-        } finally {
-            if (br != null) {
-                br.close();
-            }
-            if (proc != null) {
-                ProcessUtil.destroy(proc);
-            }
         }
-    }
 
-    public static int getPid(String command, String[] tokens) throws Exception {
-        StringTokenizer st = null;
-        String line = null;
-        String pid = null;
-        SafeProcess proc = null;
-        BufferedReader br = null;
-        try {
-            if (command != null && !command.isEmpty()) {
-                logger.trace("searching process list for {}", command);
-                if (isUsingBusyBox()) {
-                    proc = ProcessUtil.exec("ps");
-                } else {
-                    proc = ProcessUtil.exec("ps -ax");
-                }
-                proc.waitFor();
-
-                // get the output
-                br = new BufferedReader(new InputStreamReader(proc.getInputStream()));
-                while ((line = br.readLine()) != null) {
-                    st = new StringTokenizer(line);
-                    pid = st.nextToken();
-                    st.nextElement();
-                    st.nextElement();
-                    st.nextElement();
-
-                    // get the remainder of the line showing the command that was issued
-                    line = line.substring(line.indexOf(st.nextToken()));
-
-                    // see if the line has our command
-                    if (line.indexOf(command) >= 0) {
-                        boolean allTokensPresent = true;
-                        for (String token : tokens) {
-                            if (!line.contains(token)) {
-                                allTokensPresent = false;
-                                break;
-                            }
-                        }
-                        if (allTokensPresent) {
-                            logger.trace("found pid {} for command: {}", pid, command);
-                            return Integer.parseInt(pid);
-                        }
-                    }
-                }
+        logger.trace("searching process list for {}", command);
+        AtomicInteger result = new AtomicInteger(-1);
+        readProcessList(line -> {
+            if (result.get() >= 0) {
+                return;
             }
 
-            return -1;
-        } catch (Exception e) {
-            throw e;
-        } finally {
-            if (br != null) {
-                br.close();
+            StringTokenizer st = new StringTokenizer(line);
+            if (st.countTokens() < 5) {
+                return;
             }
-            if (proc != null) {
-                ProcessUtil.destroy(proc);
+            String pid = st.nextToken();
+            st.nextElement();
+            st.nextElement();
+            st.nextElement();
+
+            // get the remainder of the line showing the command that was issued
+            String processCommand = line.substring(line.indexOf(st.nextToken()));
+
+            // see if the line has our command
+            if (processCommand.indexOf(command) >= 0 && containsAll(processCommand, tokens)) {
+                try {
+                    result.set(Integer.parseInt(pid));
+                    logger.trace("found pid {} for command: {}", pid, command);
+                } catch (NumberFormatException e) {
+                    // header line
+                }
             }
-        }
+        });
+        return result.get();
     }
 
     public static int getKuraPid() throws Exception {
@@ -318,40 +256,19 @@ public class LinuxProcessUtil {
      *             if an I/O or execution error occurs
      */
     public static boolean isProcessRunning(int pid) throws IOException {
-        boolean isRunning = false;
-
-        SafeProcess proc = null;
-        BufferedReader br = null;
-        try {
-            logger.trace("searching process list for pid{}", pid);
-            if (isUsingBusyBox()) {
-                proc = ProcessUtil.exec("ps");
-            } else {
-                proc = ProcessUtil.exec("ps -ax");
-            }
-            proc.waitFor();
-
-            // get the output
-            br = new BufferedReader(new InputStreamReader(proc.getInputStream()));
-            String line = br.readLine(); // skip first line: PID TTY STAT TIME COMMAND
-            while ((line = br.readLine()) != null) {
-                if (parsePid(line) == pid) {
-                    isRunning = true;
-                    break;
-                }
-            }
-            return isRunning;
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new IOException(e);
-        } finally {
-            if (br != null) {
-                br.close();
+        logger.trace("searching process list for pid{}", pid);
+        AtomicBoolean isRunning = new AtomicBoolean(false);
+        AtomicBoolean header = new AtomicBoolean(true);
+        readProcessList(line -> {
+            // skip first line: PID TTY STAT TIME COMMAND
+            if (header.getAndSet(false)) {
+                return;
             }
-            if (proc != null) {
-                ProcessUtil.destroy(proc);
+            if (parsePid(line) == pid) {
+                isRunning.set(true);
             }
-        }
+        });
+        return isRunning.get();
     }
 
     /**
@@ -400,6 +317,33 @@ public class LinuxProcessUtil {
     //
     // Private Methods
     //
+
+    /**
+     * Streams the output of ps to the consumer. The process list is needed to stop processes, so ps runs with
+     * high priority and is not held up by long running commands.
+     */
+    private static void readProcessList(Consumer<String> lineConsumer) throws IOException {
+        String[] command = isUsingBusyBox() ? new String[] { "ps" } : new String[] { "ps", "-ax" };
+        try {
+            ProcessRunner.getDefault().run(command, Priority.HIGH, PS_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                    lineConsumer, null);
+        } catch (TimeoutException e) {
+            throw new IOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private static boolean containsAll(String line, String[] tokens) {
+        for (String token : tokens) {
+            if (!line.contains(token)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static boolean isUsingBusyBox() {
         if (usingBusybox != null) {
             return usingBusybox;
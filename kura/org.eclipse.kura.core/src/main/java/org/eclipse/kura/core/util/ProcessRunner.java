@@ -0,0 +1,358 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.util;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs external commands with bounded concurrency.
+ * <p>
+ * {@link Priority#HIGH} and {@link Priority#NORMAL} commands share a pool of slots and high priority commands are
+ * started first when commands are queued. {@link Priority#LOW} commands, typically long running scans, have a
+ * smaller pool of their own so that they can never take all the slots.
+ * <p>
+ * The output of a command can be consumed line by line while the command runs, or buffered in a {@link SafeProcess}
+ * for the callers of {@link ProcessUtil}. Timeouts include the time spent waiting for a free slot; a command still
+ * running when its timeout expires is killed.
+ *
+ * @since {@link org.eclipse.kura.core.util} 1.3.0
+ */
+public class ProcessRunner {
+
+    public enum Priority {
+        HIGH,
+        NORMAL,
+        LOW
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessRunner.class);
+
+    private static final String CONCURRENCY_PROP_NAME = "org.eclipse.kura.core.util.processRunner.concurrency";
+    private static final int DEFAULT_CONCURRENCY = 4;
+
+    private static final ProcessRunner defaultRunner = new ProcessRunner(
+            Math.max(1, Integer.getInteger(CONCURRENCY_PROP_NAME, DEFAULT_CONCURRENCY)));
+
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor lowPriorityExecutor;
+    private final ExecutorService errorStreamReaders;
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Creates a runner whose low priority commands can use half of the slots.
+     */
+    public ProcessRunner(int maxConcurrency) {
+        this(maxConcurrency, Math.max(1, maxConcurrency / 2));
+    }
+
+    /**
+     * @param maxConcurrency
+     *            the maximum number of high and normal priority commands running at the same time
+     * @param maxLowPriorityConcurrency
+     *            the maximum number of low priority commands running at the same time
+     */
+    public ProcessRunner(int maxConcurrency, int maxLowPriorityConcurrency) {
+        if (maxConcurrency < 1 || maxLowPriorityConcurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1");
+        }
+
+        this.executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(), new RunnerThreadFactory("ProcessRunner"));
+        this.executor.allowCoreThreadTimeOut(true);
+        this.lowPriorityExecutor = new ThreadPoolExecutor(maxLowPriorityConcurrency, maxLowPriorityConcurrency, 60,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new RunnerThreadFactory("ProcessRunner Low"));
+        this.lowPriorityExecutor.allowCoreThreadTimeOut(true);
+        this.errorStreamReaders = Executors.newCachedThreadPool(new RunnerThreadFactory("ProcessRunner ErrorStream"));
+    }
+
+    /**
+     * Returns the runner shared by the whole framework. Its concurrency is set by the
+     * {@code org.eclipse.kura.core.util.processRunner.concurrency} system property, 4 by default.
+     */
+    public static ProcessRunner getDefault() {
+        return defaultRunner;
+    }
+
+    /**
+     * Runs a command and passes its output to the consumers, one line at a time, while the command runs.
+     * The consumers are called by the runner threads.
+     *
+     * @param command
+     *            the command and its arguments
+     * @param priority
+     *            the priority class of the command
+     * @param timeout
+     *            the maximum time to wait for the command to complete, 0 or less to wait forever
+     * @param unit
+     *            the unit of the timeout
+     * @param stdoutConsumer
+     *            receives the lines of the standard output, may be null to discard them
+     * @param stderrConsumer
+     *            receives the lines of the standard error, may be null to discard them
+     * @return the exit value of the command
+     * @throws IOException
+     *             if the command cannot be started or its output cannot be read
+     * @throws TimeoutException
+     *             if the command did not complete in time, in which case it has been killed
+     * @throws InterruptedException
+     *             if the calling thread is interrupted, in which case the command has been killed
+     */
+    public int run(String[] command, Priority priority, long timeout, TimeUnit unit, Consumer<String> stdoutConsumer,
+            Consumer<String> stderrConsumer) throws IOException, TimeoutException, InterruptedException {
+        ProcessTask task = submit(command, priority, lineReader(stdoutConsumer), lineReader(stderrConsumer));
+        return await(task, timeout, unit);
+    }
+
+    /**
+     * Runs a command and buffers its output.
+     *
+     * @param timeout
+     *            the maximum time to wait for the command to complete, 0 or less to wait forever
+     * @return a completed {@link SafeProcess} holding the output and the exit value
+     * @throws IOException
+     *             if the command cannot be started, times out or the calling thread is interrupted
+     */
+    public SafeProcess exec(String[] command, Priority priority, long timeout, TimeUnit unit) throws IOException {
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream(1024);
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream(1024);
+        ProcessTask task = submit(command, priority, in -> copy(in, stdout), in -> copy(in, stderr));
+        try {
+            int exitValue = await(task, timeout, unit);
+            return new SafeProcess(stdout.toByteArray(), stderr.toByteArray(), exitValue);
+        } catch (TimeoutException e) {
+            throw new IOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Stops accepting commands. The commands already submitted are run.
+     */
+    public void shutdown() {
+        this.executor.shutdown();
+        this.lowPriorityExecutor.shutdown();
+        this.errorStreamReaders.shutdown();
+    }
+
+    private ProcessTask submit(String[] command, Priority priority, StreamReader stdoutReader,
+            StreamReader stderrReader) throws IOException {
+        ProcessTask task = new ProcessTask(new ProcessExecution(command, stdoutReader, stderrReader), priority,
+                this.sequence.getAndIncrement());
+        try {
+            if (priority == Priority.LOW) {
+                this.lowPriorityExecutor.execute(task);
+            } else {
+                this.executor.execute(task);
+            }
+        } catch (RejectedExecutionException e) {
+            throw new IOException("Process runner is shut down", e);
+        }
+        return task;
+    }
+
+    private int await(ProcessTask task, long timeout, TimeUnit unit)
+            throws IOException, TimeoutException, InterruptedException {
+        try {
+            if (timeout > 0) {
+                return task.get(timeout, unit);
+            }
+            return task.get();
+        } catch (TimeoutException e) {
+            logger.warn("Timeout executing: {}", Arrays.toString(task.execution.command));
+            kill(task);
+            throw e;
+        } catch (InterruptedException e) {
+            kill(task);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private void kill(ProcessTask task) {
+        task.kill();
+        // remove the command from the queue if it was not started yet
+        if (task.priority == Priority.LOW) {
+            this.lowPriorityExecutor.remove(task);
+        } else {
+            this.executor.remove(task);
+        }
+    }
+
+    private static StreamReader lineReader(Consumer<String> consumer) {
+        return in -> {
+            BufferedReader br = new BufferedReader(new InputStreamReader(in));
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (consumer != null) {
+                    consumer.accept(line);
+                }
+            }
+        };
+    }
+
+    private static void copy(InputStream in, ByteArrayOutputStream out) throws IOException {
+        int len;
+        byte[] buf = new byte[1024];
+        while ((len = in.read(buf)) != -1) {
+            out.write(buf, 0, len);
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            logger.warn("Failed to close process stream", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface StreamReader {
+
+        void read(InputStream in) throws IOException;
+    }
+
+    /**
+     * Starts a command and reads its output.
+     */
+    private final class ProcessExecution implements Callable<Integer> {
+
+        private final String[] command;
+        private final StreamReader stdoutReader;
+        private final StreamReader stderrReader;
+        private volatile Process process;
+        private volatile boolean killed;
+
+        ProcessExecution(String[] command, StreamReader stdoutReader, StreamReader stderrReader) {
+            this.command = command;
+            this.stdoutReader = stdoutReader;
+            this.stderrReader = stderrReader;
+        }
+
+        @Override
+        public Integer call() throws Exception {
+            logger.debug("Executing: {}", Arrays.toString(this.command));
+            Process p = new ProcessBuilder(this.command).start();
+            this.process = p;
+            if (this.killed) {
+                p.destroyForcibly();
+            }
+
+            try {
+                Future<?> stderr = ProcessRunner.this.errorStreamReaders.submit(() -> {
+                    this.stderrReader.read(p.getErrorStream());
+                    return null;
+                });
+                this.stdoutReader.read(p.getInputStream());
+                stderr.get();
+                return p.waitFor();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            } finally {
+                closeQuietly(p.getInputStream());
+                closeQuietly(p.getErrorStream());
+                closeQuietly(p.getOutputStream());
+                p.destroy();
+            }
+        }
+
+        void kill() {
+            this.killed = true;
+            Process p = this.process;
+            if (p != null) {
+                p.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * A queued command, ordered by priority and then by submission order.
+     */
+    private static final class ProcessTask extends FutureTask<Integer> implements Comparable<ProcessTask> {
+
+        private final ProcessExecution execution;
+        private final Priority priority;
+        private final long sequenceNumber;
+
+        ProcessTask(ProcessExecution execution, Priority priority, long sequenceNumber) {
+            super(execution);
+            this.execution = execution;
+            this.priority = priority;
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        void kill() {
+            cancel(false);
+            this.execution.kill();
+        }
+
+        @Override
+        public int compareTo(ProcessTask other) {
+            int result = this.priority.compareTo(other.priority);
+            if (result == 0) {
+                result = Long.compare(this.sequenceNumber, other.sequenceNumber);
+            }
+            return result;
+        }
+    }
+
+    private static final class RunnerThreadFactory implements ThreadFactory {
+
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        RunnerThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, this.name + " " + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
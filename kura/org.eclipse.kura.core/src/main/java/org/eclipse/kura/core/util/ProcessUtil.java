@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2016 Eurotech and/or its affiliates
+ * Copyright (c) 2011, 2018 Eurotech and/or its affiliates
  *
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
@@ -13,19 +13,20 @@ package org.eclipse.kura.core.util;
 
 import java.io.IOException;
 import java.util.StringTokenizer;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.eclipse.kura.core.util.ProcessRunner.Priority;
 
+/**
+ * Runs external commands and buffers their output.
+ * <p>
+ * Commands are run one at a time, with normal priority and without timeout, so that the existing callers do not
+ * overlap commands that change the same system state, such as iptables rules or interface settings. Callers needing
+ * concurrency, timeouts, priorities or streamed output should use {@link ProcessRunner#getDefault()} directly.
+ */
 public class ProcessUtil {
 
-    private static final Logger s_logger = LoggerFactory.getLogger(ProcessUtil.class);
-
-    private static final ExecutorService s_processExecutor = Executors.newSingleThreadExecutor();
+    private static final ProcessRunner serialRunner = new ProcessRunner(1);
 
     public static SafeProcess exec(String command) throws IOException {
         // Use StringTokenizer since this is the method documented by Runtime
@@ -41,24 +42,7 @@ public class ProcessUtil {
     }
 
     public static SafeProcess exec(final String[] cmdarray) throws IOException {
-        // Serialize process executions. One at a time so we can consume all streams.
-        Future<SafeProcess> futureSafeProcess = s_processExecutor.submit(new Callable<SafeProcess>() {
-
-            @Override
-            public SafeProcess call() throws Exception {
-                Thread.currentThread().setName("SafeProcessExecutor");
-                SafeProcess safeProcess = new SafeProcess();
-                safeProcess.exec(cmdarray);
-                return safeProcess;
-            }
-        });
-
-        try {
-            return futureSafeProcess.get();
-        } catch (Exception e) {
-            s_logger.error("Error waiting from SafeProcess output", e);
-            throw new IOException(e);
-        }
+        return serialRunner.exec(cmdarray, Priority.NORMAL, 0, TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2016 Eurotech and/or its affiliates
+ * Copyright (c) 2011, 2018 Eurotech and/or its affiliates
  *
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
@@ -44,6 +44,16 @@ public class SafeProcess {
         super();
     }
 
+    /**
+     * Creates an already completed process, used by {@link ProcessRunner#exec}.
+     */
+    SafeProcess(byte[] inBytes, byte[] errBytes, int exitValue) {
+        this.inBytes = inBytes;
+        this.errBytes = errBytes;
+        this.exitValue = exitValue;
+        this.waited = true;
+    }
+
     public OutputStream getOutputStream() {
         s_logger.warn("getOutputStream() is unsupported");
         return null;
@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Eurotech
+ */
+package org.eclipse.kura.internal.driver.modbus;
+
+import java.util.List;
+
+import org.eclipse.kura.core.configuration.metatype.Tad;
+import org.eclipse.kura.core.configuration.metatype.Toption;
+import org.eclipse.kura.core.configuration.metatype.Tscalar;
+import org.eclipse.kura.driver.ChannelDescriptor;
+import org.eclipse.kura.util.collection.CollectionUtil;
+
+/**
+ * Modbus specific channel descriptor. The descriptor contains the following
+ * attribute definition identifiers.
+ *
+ * <ul>
+ * <li>unit.id</li> the unit identifier of the device
+ * <li>memory.area</li> the Modbus table
+ * <li>memory.address</li> the zero based address of the first register or bit
+ * <li>modbus.data.type</li> the type of the value stored in a register table
+ * <li>bit.index</li> the index of the bit, for boolean channels of a register table
+ * </ul>
+ */
+public final class ModbusChannelDescriptor implements ChannelDescriptor {
+
+    public static final String UNIT_ID_ID = "unit.id";
+    public static final String MEMORY_AREA_ID = "memory.area";
+    public static final String MEMORY_ADDRESS_ID = "memory.address";
+    public static final String MODBUS_DATA_TYPE_ID = "modbus.data.type";
+    public static final String BIT_INDEX_ID = "bit.index";
+
+    private Toption generateOption(Enum<?> value) {
+        Toption option = new Toption();
+        option.setLabel(value.name());
+        option.setValue(value.name());
+        return option;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object getDescriptor() {
+        final List<Tad> elements = CollectionUtil.newArrayList();
+
+        final Tad unitId = new Tad();
+        unitId.setName(UNIT_ID_ID);
+        unitId.setId(UNIT_ID_ID);
+        unitId.setDescription("Unit Id");
+        unitId.setType(Tscalar.INTEGER);
+        unitId.setRequired(true);
+        unitId.setMin("0");
+        unitId.setMax("255");
+        unitId.setDefault("1");
+
+        elements.add(unitId);
+
+        final Tad memoryArea = new Tad();
+        memoryArea.setName(MEMORY_AREA_ID);
+        memoryArea.setId(MEMORY_AREA_ID);
+        memoryArea.setDescription("Memory Area");
+        memoryArea.setType(Tscalar.STRING);
+        memoryArea.setRequired(true);
+        memoryArea.setDefault(ModbusMemoryArea.HOLDING_REGISTERS.name());
+
+        for (ModbusMemoryArea area : ModbusMemoryArea.values()) {
+            memoryArea.setOption(generateOption(area));
+        }
+
+        elements.add(memoryArea);
+
+        final Tad memoryAddress = new Tad();
+        memoryAddress.setName(MEMORY_ADDRESS_ID);
+        memoryAddress.setId(MEMORY_ADDRESS_ID);
+        memoryAddress.setDescription("Memory Address");
+        memoryAddress.setType(Tscalar.INTEGER);
+        memoryAddress.setRequired(true);
+        memoryAddress.setMin("0");
+        memoryAddress.setMax("65535");
+        memoryAddress.setDefault("0");
+
+        elements.add(memoryAddress);
+
+        final Tad dataType = new Tad();
+        dataType.setName(MODBUS_DATA_TYPE_ID);
+        dataType.setId(MODBUS_DATA_TYPE_ID);
+        dataType.setDescription("Modbus Data Type");
+        dataType.setType(Tscalar.STRING);
+        dataType.setRequired(true);
+        dataType.setDefault(ModbusDataType.INT16.name());
+
+        for (ModbusDataType t : ModbusDataType.values()) {
+            dataType.setOption(generateOption(t));
+        }
+
+        elements.add(dataType);
+
+        final Tad bitIndex = new Tad();
+        bitIndex.setName(BIT_INDEX_ID);
+        bitIndex.setId(BIT_INDEX_ID);
+        bitIndex.setDescription("Bit Index");
+        bitIndex.setType(Tscalar.INTEGER);
+        bitIndex.setRequired(true);
+        bitIndex.setMin("0");
+        bitIndex.setMax("15");
+        bitIndex.setDefault("0");
+
+        elements.add(bitIndex);
+
+        return elements;
+    }
+
+}
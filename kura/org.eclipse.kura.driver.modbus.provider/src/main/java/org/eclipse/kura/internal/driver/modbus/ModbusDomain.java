@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Eurotech
+ */
+
+package org.eclipse.kura.internal.driver.modbus;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A (unit id, table) pair, the requests for channels in the same domain can be merged in a single PDU.
+ */
+public class ModbusDomain {
+
+    private final int unitId;
+    private final ModbusMemoryArea memoryArea;
+
+    public ModbusDomain(int unitId, ModbusMemoryArea memoryArea) {
+        requireNonNull(memoryArea, "Memory area cannot be null");
+        this.unitId = unitId;
+        this.memoryArea = memoryArea;
+    }
+
+    public int getUnitId() {
+        return unitId;
+    }
+
+    public ModbusMemoryArea getMemoryArea() {
+        return memoryArea;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * unitId + memoryArea.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        ModbusDomain other = (ModbusDomain) obj;
+        if (unitId != other.unitId)
+            return false;
+        if (memoryArea != other.memoryArea)
+            return false;
+        return true;
+    }
+}
@@ -0,0 +1,371 @@
+/**
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Eurotech
+ */
+
+package org.eclipse.kura.internal.driver.modbus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import org.eclipse.kura.KuraConnectionStatus;
+import org.eclipse.kura.KuraException;
+import org.eclipse.kura.channel.ChannelFlag;
+import org.eclipse.kura.channel.ChannelRecord;
+import org.eclipse.kura.channel.ChannelStatus;
+import org.eclipse.kura.configuration.ConfigurableComponent;
+import org.eclipse.kura.driver.ChannelDescriptor;
+import org.eclipse.kura.driver.PreparedRead;
+import org.eclipse.kura.driver.block.BlockFactory;
+import org.eclipse.kura.driver.block.task.AbstractBlockDriver;
+import org.eclipse.kura.driver.block.task.BlockTask;
+import org.eclipse.kura.driver.block.task.Mode;
+import org.eclipse.kura.driver.block.task.ToplevelBlockTask;
+import org.eclipse.kura.internal.driver.modbus.task.ModbusTaskBuilder;
+import org.eclipse.kura.internal.driver.modbus.task.ModbusToplevelBlockTask;
+import org.eclipse.kura.protocol.modbus.ModbusProtocolDevice;
+import org.eclipse.kura.protocol.modbus.ModbusProtocolDeviceService;
+import org.eclipse.kura.protocol.modbus.ModbusProtocolErrorCode;
+import org.eclipse.kura.protocol.modbus.ModbusProtocolException;
+import org.eclipse.kura.protocol.modbus.ModbusRequest;
+import org.eclipse.kura.usb.UsbService;
+import org.osgi.service.io.ConnectionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Kura ModbusDriver is a Modbus TCP and RTU Driver implementation for Kura Asset-Driver
+ * Topology.<br/>
+ * <br/>
+ *
+ * The driver groups the channels by unit id and table, and merges the channels with adjacent or close addresses
+ * of each group in the same request, so that a whole register map is usually read with a few requests. The
+ * {@link org.eclipse.kura.driver.PreparedRead} returned by {@link #prepareRead(List)} keeps the merged requests, the
+ * aggregation is not repeated at each read.<br/>
+ * <br/>
+ *
+ * With the TCP/IP connection type and a max.in.flight value greater than 1, the read requests of a read are sent
+ * to the device without waiting for the previous responses, so that a read costs a few network round trips instead of
+ * one per request.<br/>
+ * <br/>
+ *
+ * The required properties are enlisted in {@link ModbusChannelDescriptor} and
+ * the driver connection specific properties are enlisted in
+ * {@link ModbusOptions}
+ *
+ * @see ModbusChannelDescriptor
+ * @see ModbusOptions
+ */
+public class ModbusDriver extends AbstractBlockDriver<ModbusDomain> implements ConfigurableComponent {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModbusDriver.class);
+
+    private ModbusProtocolDeviceService device;
+    private ModbusOptions deviceOptions;
+    private AtomicReference<ModbusOptions> options = new AtomicReference<>();
+
+    private ConnectionFactory connectionFactory;
+    private UsbService usbService;
+
+    public void setConnectionFactory(ConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    public void unsetConnectionFactory(ConnectionFactory connectionFactory) {
+        this.connectionFactory = null;
+    }
+
+    public void setUsbService(UsbService usbService) {
+        this.usbService = usbService;
+    }
+
+    public void unsetUsbService(UsbService usbService) {
+        this.usbService = null;
+    }
+
+    public void activate(final Map<String, Object> properties) {
+        logger.debug("Activating Modbus Driver...");
+        updated(properties);
+        logger.debug("Activating Modbus Driver... Done");
+    }
+
+    public synchronized void deactivate() {
+        logger.debug("Deactivating Modbus Driver...");
+        try {
+            this.disconnect();
+        } catch (final ConnectionException e) {
+            logger.error("Error while disconnecting...", e);
+        }
+        logger.debug("Deactivating Modbus Driver.....Done");
+    }
+
+    public void updated(final Map<String, Object> properties) {
+        logger.debug("Updating Modbus Driver...");
+        this.options.set(new ModbusOptions(properties));
+        logger.debug("Updating Modbus Driver... Done");
+    }
+
+    @Override
+    public synchronized void connect() throws ConnectionException {
+        try {
+            final ModbusOptions currentOptions = this.options.get();
+
+            if (this.device != null && this.deviceOptions != currentOptions) {
+                logger.info("configuration changed, disconnecting...");
+                disconnect();
+                logger.info("configuration changed, disconnecting...Done");
+            }
+
+            if (this.device == null) {
+                logger.debug("Configuring Modbus connection...");
+                final ModbusProtocolDeviceService newDevice = createDevice();
+                newDevice.configureConnection(currentOptions.toConnectionProperties());
+                this.device = newDevice;
+                this.deviceOptions = currentOptions;
+                logger.debug("Configuring Modbus connection... Done");
+            }
+
+            if (this.device.getConnectStatus() != KuraConnectionStatus.CONNECTED) {
+                logger.debug("Connecting to Modbus device...");
+                this.device.connect();
+                if (this.device.getConnectStatus() != KuraConnectionStatus.CONNECTED) {
+                    throw new ConnectionException("Failed to connect to Modbus device");
+                }
+                logger.debug("Connecting to Modbus device... Done");
+            }
+        } catch (ConnectionException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ConnectionException("Connection failed, unexpected exception", e);
+        }
+    }
+
+    @Override
+    public synchronized void disconnect() throws ConnectionException {
+        if (this.device != null) {
+            logger.debug("Disconnecting from Modbus device...");
+            try {
+                this.device.disconnect();
+            } catch (ModbusProtocolException e) {
+                throw new ConnectionException(e);
+            } finally {
+                this.device = null;
+                this.deviceOptions = null;
+            }
+            logger.debug("Disconnecting from Modbus device... Done");
+        }
+    }
+
+    @Override
+    protected int getReadMinimumGapSizeForDomain(ModbusDomain domain) {
+        return this.options.get().getMinimumGapSize() * domain.getMemoryArea().getElementSize();
+    }
+
+    @Override
+    protected BlockFactory<ToplevelBlockTask> getTaskFactoryForDomain(final ModbusDomain domain, final Mode mode) {
+        return (start, end) -> new ModbusToplevelBlockTask(ModbusDriver.this, mode, domain, start, end);
+    }
+
+    @Override
+    protected Stream<Pair<ModbusDomain, BlockTask>> toTasks(List<ChannelRecord> records, Mode mode) {
+        return ModbusTaskBuilder.build(records, mode);
+    }
+
+    @Override
+    public ChannelDescriptor getChannelDescriptor() {
+        return new ModbusChannelDescriptor();
+    }
+
+    protected ModbusProtocolDeviceService createDevice() {
+        final ModbusProtocolDevice newDevice = new ModbusProtocolDevice();
+        newDevice.setConnectionFactory(this.connectionFactory);
+        newDevice.setUsbService(this.usbService);
+        return newDevice;
+    }
+
+    @Override
+    public synchronized void read(final List<ChannelRecord> records) throws ConnectionException {
+        connect();
+        try {
+            final List<BlockTask> tasks = optimize(records, Mode.READ);
+            prefetch(tasks);
+            tasks.forEach(this::runTask);
+        } catch (Exception e) {
+            logger.warn("Unexpected exception during read", e);
+            for (ChannelRecord record : records) {
+                record.setChannelStatus(new ChannelStatus(ChannelFlag.FAILURE, e.getMessage(), e));
+                record.setTimestamp(System.currentTimeMillis());
+            }
+        }
+    }
+
+    @Override
+    protected PreparedRead createPreparedRead(List<ChannelRecord> records, List<BlockTask> tasks) {
+        return new ModbusPreparedRead(records, tasks);
+    }
+
+    /**
+     * Executes the read requests of the provided tasks as a single pipelined batch, if enabled by the
+     * max.in.flight option. The failed requests are reported by the tasks when they run.
+     */
+    private void prefetch(List<BlockTask> tasks) {
+        if (this.deviceOptions.getMaxInFlight() <= 1) {
+            return;
+        }
+        final List<ModbusRequest> requests = new ArrayList<>();
+        for (final BlockTask task : tasks) {
+            if (task instanceof ModbusToplevelBlockTask && task.getMode() == Mode.READ) {
+                requests.addAll(((ModbusToplevelBlockTask) task).prepareReadRequests());
+            }
+        }
+        if (requests.isEmpty()) {
+            return;
+        }
+        try {
+            getDevice().executeBatch(requests);
+        } catch (ModbusProtocolException e) {
+            logger.debug("Batch read failed", e);
+        }
+    }
+
+    @Override
+    protected void runTask(BlockTask task) {
+        try {
+            task.run();
+        } catch (ModbusIOException e) {
+            handleModbusIOException(e);
+        } catch (Exception e) {
+            logger.warn("Unexpected exception", e);
+        }
+    }
+
+    private void handleModbusIOException(ModbusIOException e) {
+        logger.warn("Operation failed due to IO error", e);
+        final ModbusProtocolErrorCode code = e.getCause().getCode();
+        if (code == ModbusProtocolErrorCode.TRANSACTION_FAILURE || code == ModbusProtocolErrorCode.NOT_CONNECTED
+                || code == ModbusProtocolErrorCode.CONNECTION_FAILURE) {
+            logger.warn("Connection problems detected, disconnecting, will attempt to reconnect at next read/write");
+            try {
+                disconnect();
+            } catch (ConnectionException e1) {
+                logger.warn("Unable to Disconnect...", e1);
+            }
+        }
+    }
+
+    public synchronized int[] readRegisters(ModbusDomain domain, int address, int count) throws IOException {
+        try {
+            if (domain.getMemoryArea() == ModbusMemoryArea.INPUT_REGISTERS) {
+                return getDevice().readInputRegisters(domain.getUnitId(), address, count);
+            }
+            return getDevice().readHoldingRegisters(domain.getUnitId(), address, count);
+        } catch (ModbusProtocolException e) {
+            throw new ModbusIOException("Unit id: " + domain.getUnitId() + " " + domain.getMemoryArea() + " address: "
+                    + address + " count: " + count, e);
+        }
+    }
+
+    public synchronized boolean[] readBits(ModbusDomain domain, int address, int count) throws IOException {
+        try {
+            if (domain.getMemoryArea() == ModbusMemoryArea.DISCRETE_INPUTS) {
+                return getDevice().readDiscreteInputs(domain.getUnitId(), address, count);
+            }
+            return getDevice().readCoils(domain.getUnitId(), address, count);
+        } catch (ModbusProtocolException e) {
+            throw new ModbusIOException("Unit id: " + domain.getUnitId() + " " + domain.getMemoryArea() + " address: "
+                    + address + " count: " + count, e);
+        }
+    }
+
+    public synchronized void writeRegisters(ModbusDomain domain, int address, int[] data) throws IOException {
+        try {
+            if (data.length == 1) {
+                getDevice().writeSingleRegister(domain.getUnitId(), address, data[0]);
+            } else {
+                getDevice().writeMultipleRegister(domain.getUnitId(), address, data);
+            }
+        } catch (ModbusProtocolException e) {
+            throw new ModbusIOException("Unit id: " + domain.getUnitId() + " " + domain.getMemoryArea() + " address: "
+                    + address + " count: " + data.length, e);
+        }
+    }
+
+    public synchronized void writeBits(ModbusDomain domain, int address, boolean[] data) throws IOException {
+        try {
+            if (data.length == 1) {
+                getDevice().writeSingleCoil(domain.getUnitId(), address, data[0]);
+            } else {
+                getDevice().writeMultipleCoils(domain.getUnitId(), address, data);
+            }
+        } catch (ModbusProtocolException e) {
+            throw new ModbusIOException("Unit id: " + domain.getUnitId() + " " + domain.getMemoryArea() + " address: "
+                    + address + " count: " + data.length, e);
+        }
+    }
+
+    public int[] getRegisters(ModbusDomain domain, ModbusRequest request) throws IOException {
+        try {
+            return request.getRegisters();
+        } catch (ModbusProtocolException e) {
+            throw new ModbusIOException("Unit id: " + domain.getUnitId() + " " + domain.getMemoryArea(), e);
+        }
+    }
+
+    public boolean[] getBits(ModbusDomain domain, ModbusRequest request) throws IOException {
+        try {
+            return request.getBits();
+        } catch (ModbusProtocolException e) {
+            throw new ModbusIOException("Unit id: " + domain.getUnitId() + " " + domain.getMemoryArea(), e);
+        }
+    }
+
+    private ModbusProtocolDeviceService getDevice() throws ModbusProtocolException {
+        if (this.device == null) {
+            throw new ModbusProtocolException(ModbusProtocolErrorCode.NOT_CONNECTED);
+        }
+        return this.device;
+    }
+
+    private class ModbusPreparedRead extends BlockPreparedRead {
+
+        private final List<BlockTask> tasks;
+
+        ModbusPreparedRead(List<ChannelRecord> records, List<BlockTask> tasks) {
+            super(records, tasks);
+            this.tasks = tasks;
+        }
+
+        @Override
+        public List<ChannelRecord> execute() throws ConnectionException, KuraException {
+            synchronized (ModbusDriver.this) {
+                connect();
+                prefetch(this.tasks);
+                return super.execute();
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static final class ModbusIOException extends IOException {
+
+        public ModbusIOException(String message, ModbusProtocolException cause) {
+            super(message, cause);
+        }
+
+        @Override
+        public synchronized ModbusProtocolException getCause() {
+            return (ModbusProtocolException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+
+package org.eclipse.kura.internal.driver.modbus;
+
+/**
+ * The Modbus data model tables. The addresses of the blocks of a register table are expressed in bytes, two per
+ * register, those of a bit table are expressed in bits, one byte of the block buffer per coil or discrete input.
+ */
+public enum ModbusMemoryArea {
+
+    COILS(false, true, 2000, 1968),
+    DISCRETE_INPUTS(false, false, 2000, 0),
+    INPUT_REGISTERS(true, false, 125, 0),
+    HOLDING_REGISTERS(true, true, 125, 123);
+
+    private final boolean register;
+    private final boolean writable;
+    private final int maxReadCount;
+    private final int maxWriteCount;
+
+    private ModbusMemoryArea(boolean register, boolean writable, int maxReadCount, int maxWriteCount) {
+        this.register = register;
+        this.writable = writable;
+        this.maxReadCount = maxReadCount;
+        this.maxWriteCount = maxWriteCount;
+    }
+
+    public boolean isRegister() {
+        return register;
+    }
+
+    public boolean isWritable() {
+        return writable;
+    }
+
+    /**
+     * Returns the maximum number of registers or bits that can be read with a single request.
+     */
+    public int getMaxReadCount() {
+        return maxReadCount;
+    }
+
+    /**
+     * Returns the maximum number of registers or bits that can be written with a single request.
+     */
+    public int getMaxWriteCount() {
+        return maxWriteCount;
+    }
+
+    /**
+     * Returns the size in bytes of an element of this table in the block buffers.
+     */
+    public int getElementSize() {
+        return register ? 2 : 1;
+    }
+}
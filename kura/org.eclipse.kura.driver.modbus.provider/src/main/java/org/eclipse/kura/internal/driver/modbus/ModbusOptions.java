@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Eurotech
+ */
+
+package org.eclipse.kura.internal.driver.modbus;
+
+import java.util.Map;
+import java.util.Properties;
+
+import org.eclipse.kura.protocol.modbus.ModbusProtocolDevice;
+import org.eclipse.kura.protocol.modbus.ModbusTransmissionMode;
+
+final class ModbusOptions {
+
+    private static final Property<String> CONNECTION_TYPE_PROP = new Property<>("connection.type",
+            ModbusProtocolDevice.PROTOCOL_CONNECTION_TYPE_ETHER_TCP);
+    private static final Property<String> IP_PROP = new Property<>("host.ip", "");
+    private static final Property<Integer> PORT_PROP = new Property<>("host.port", 502);
+    private static final Property<String> SERIAL_PORT_PROP = new Property<>("serial.port", "/dev/ttyUSB0");
+    private static final Property<Integer> BAUDRATE_PROP = new Property<>("serial.baudrate", 9600);
+    private static final Property<Integer> DATA_BITS_PROP = new Property<>("serial.data.bits", 8);
+    private static final Property<Integer> STOP_BITS_PROP = new Property<>("serial.stop.bits", 1);
+    private static final Property<Integer> PARITY_PROP = new Property<>("serial.parity", 0);
+    private static final Property<Integer> RESPONSE_TIMEOUT_PROP = new Property<>("response.timeout", 1000);
+    private static final Property<Integer> MINIMUM_GAP_SIZE_PROP = new Property<>("read.minimum.gap.size", 0);
+    private static final Property<Integer> MAX_IN_FLIGHT_PROP = new Property<>("max.in.flight", 1);
+
+    private final String connectionType;
+    private final String ip;
+    private final int port;
+    private final String serialPort;
+    private final int baudrate;
+    private final int dataBits;
+    private final int stopBits;
+    private final int parity;
+    private final int responseTimeout;
+    private final int minimumGapSize;
+    private final int maxInFlight;
+
+    ModbusOptions(final Map<String, Object> properties) {
+        this.connectionType = CONNECTION_TYPE_PROP.get(properties);
+        this.ip = IP_PROP.get(properties);
+        this.port = PORT_PROP.get(properties);
+        this.serialPort = SERIAL_PORT_PROP.get(properties);
+        this.baudrate = BAUDRATE_PROP.get(properties);
+        this.dataBits = DATA_BITS_PROP.get(properties);
+        this.stopBits = STOP_BITS_PROP.get(properties);
+        this.parity = PARITY_PROP.get(properties);
+        this.responseTimeout = RESPONSE_TIMEOUT_PROP.get(properties);
+        this.minimumGapSize = MINIMUM_GAP_SIZE_PROP.get(properties);
+        this.maxInFlight = Math.max(1, MAX_IN_FLIGHT_PROP.get(properties));
+    }
+
+    String getConnectionType() {
+        return connectionType;
+    }
+
+    String getIp() {
+        return ip;
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    String getSerialPort() {
+        return serialPort;
+    }
+
+    int getBaudrate() {
+        return baudrate;
+    }
+
+    int getDataBits() {
+        return dataBits;
+    }
+
+    int getStopBits() {
+        return stopBits;
+    }
+
+    int getParity() {
+        return parity;
+    }
+
+    int getResponseTimeout() {
+        return responseTimeout;
+    }
+
+    int getMinimumGapSize() {
+        return minimumGapSize;
+    }
+
+    int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Returns the connection configuration in the format expected by
+     * {@link ModbusProtocolDevice#configureConnection(Properties)}.
+     */
+    Properties toConnectionProperties() {
+        final Properties properties = new Properties();
+        properties.setProperty("connectionType", this.connectionType);
+        properties.setProperty("transmissionMode", ModbusTransmissionMode.RTU);
+        properties.setProperty("respTimeout", Integer.toString(this.responseTimeout));
+        if (ModbusProtocolDevice.PROTOCOL_CONNECTION_TYPE_SERIAL.equals(this.connectionType)) {
+            properties.setProperty("port", this.serialPort);
+            properties.setProperty("baudRate", Integer.toString(this.baudrate));
+            properties.setProperty("bitsPerWord", Integer.toString(this.dataBits));
+            properties.setProperty("stopBits", Integer.toString(this.stopBits));
+            properties.setProperty("parity", Integer.toString(this.parity));
+        } else {
+            properties.setProperty("ipAddress", this.ip);
+            properties.setProperty("ethport", Integer.toString(this.port));
+            properties.setProperty("maxInFlight", Integer.toString(this.maxInFlight));
+        }
+        return properties;
+    }
+
+    private static class Property<T> {
+
+        private final String key;
+        private final T defaultValue;
+
+        public Property(String key, T defaultValue) {
+            this.key = key;
+            this.defaultValue = defaultValue;
+        }
+
+        @SuppressWarnings("unchecked")
+        public T get(Map<String, Object> properties) {
+            final Object value = properties.get(this.key);
+            if (this.defaultValue.getClass().isInstance(value)) {
+                return (T) value;
+            }
+            return defaultValue;
+        }
+    }
+
+}
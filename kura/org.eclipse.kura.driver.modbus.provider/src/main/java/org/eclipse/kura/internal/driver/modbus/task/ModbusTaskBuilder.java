@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+
+package org.eclipse.kura.internal.driver.modbus.task;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import org.eclipse.kura.KuraErrorCode;
+import org.eclipse.kura.KuraException;
+import org.eclipse.kura.channel.ChannelFlag;
+import org.eclipse.kura.channel.ChannelRecord;
+import org.eclipse.kura.channel.ChannelStatus;
+import org.eclipse.kura.driver.binary.BinaryData;
+import org.eclipse.kura.driver.binary.BinaryDataTypes;
+import org.eclipse.kura.driver.block.task.AbstractBlockDriver.Pair;
+import org.eclipse.kura.driver.block.task.BinaryDataTask;
+import org.eclipse.kura.driver.block.task.BlockTask;
+import org.eclipse.kura.driver.block.task.Mode;
+import org.eclipse.kura.internal.driver.modbus.ModbusChannelDescriptor;
+import org.eclipse.kura.internal.driver.modbus.ModbusDataType;
+import org.eclipse.kura.internal.driver.modbus.ModbusDomain;
+import org.eclipse.kura.internal.driver.modbus.ModbusMemoryArea;
+import org.eclipse.kura.type.DataType;
+
+public final class ModbusTaskBuilder {
+
+    private ModbusTaskBuilder() {
+    }
+
+    private static ModbusDomain getDomain(ChannelRecord record, Mode mode) throws KuraException {
+        final int unitId = getIntProperty(record, ModbusChannelDescriptor.UNIT_ID_ID, "Error while retrieving Unit Id");
+        final ModbusMemoryArea memoryArea = getEnumProperty(record, ModbusMemoryArea.class,
+                ModbusChannelDescriptor.MEMORY_AREA_ID, "Error while retrieving Memory Area");
+        if (mode == Mode.WRITE && !memoryArea.isWritable()) {
+            throw new KuraException(KuraErrorCode.CONFIGURATION_ERROR, memoryArea + " cannot be written");
+        }
+        return new ModbusDomain(unitId, memoryArea);
+    }
+
+    private static int getIntProperty(ChannelRecord record, String propertyName, String failureMessage)
+            throws KuraException {
+        try {
+            return Integer.parseInt(record.getChannelConfig().get(propertyName).toString());
+        } catch (Exception e) {
+            throw new KuraException(KuraErrorCode.CONFIGURATION_ERROR, failureMessage);
+        }
+    }
+
+    private static <E extends Enum<E>> E getEnumProperty(ChannelRecord record, Class<E> type, String propertyName,
+            String failureMessage) throws KuraException {
+        try {
+            return Enum.valueOf(type, record.getChannelConfig().get(propertyName).toString());
+        } catch (Exception e) {
+            throw new KuraException(KuraErrorCode.CONFIGURATION_ERROR, failureMessage);
+        }
+    }
+
+    private static void assertChannelType(ChannelRecord record, DataType channelType) throws KuraException {
+        if (channelType != record.getValueType()) {
+            throw new KuraException(KuraErrorCode.CONFIGURATION_ERROR, "Channel Value Type must be " + channelType);
+        }
+    }
+
+    private static BinaryData<?> getBinaryData(ModbusDataType modbusDataType) {
+        switch (modbusDataType) {
+        case INT16:
+            return BinaryDataTypes.INT16_BE;
+        case UINT16:
+            return BinaryDataTypes.UINT16_BE;
+        case INT32:
+            return BinaryDataTypes.INT32_BE;
+        case UINT32:
+            return BinaryDataTypes.UINT32_BE;
+        case INT64:
+            return BinaryDataTypes.INT64_BE;
+        case FLOAT:
+            return BinaryDataTypes.FLOAT_BE;
+        default:
+            return BinaryDataTypes.DOUBLE_BE;
+        }
+    }
+
+    private static BlockTask build(ChannelRecord record, ModbusMemoryArea memoryArea, Mode mode)
+            throws KuraException {
+
+        final DataType type = record.getValueType();
+
+        final int address = getIntProperty(record, ModbusChannelDescriptor.MEMORY_ADDRESS_ID,
+                "Error while retrieving Memory Address");
+        if (address < 0 || address > 0xffff) {
+            throw new KuraException(KuraErrorCode.CONFIGURATION_ERROR, "Memory Address must be in [0, 65535]");
+        }
+
+        if (!memoryArea.isRegister()) {
+
+            assertChannelType(record, DataType.BOOLEAN);
+            return new CoilTask(record, address, mode);
+
+        }
+
+        final int offset = address * 2;
+
+        if (type == DataType.BOOLEAN) {
+
+            int bitIndex = getIntProperty(record, ModbusChannelDescriptor.BIT_INDEX_ID,
+                    "Error while retreiving bit index");
+            if (bitIndex < 0 || bitIndex > 15) {
+                throw new KuraException(KuraErrorCode.CONFIGURATION_ERROR, "Bit Index must be in [0, 15]");
+            }
+            return new RegisterBitTask(record, offset, bitIndex, mode == Mode.WRITE ? Mode.UPDATE : Mode.READ);
+
+        } else if (type == DataType.BYTE_ARRAY || type == DataType.STRING) {
+
+            throw new KuraException(KuraErrorCode.CONFIGURATION_ERROR, "Unsupported Channel Value Type " + type);
+
+        }
+
+        final ModbusDataType modbusDataType = getEnumProperty(record, ModbusDataType.class,
+                ModbusChannelDescriptor.MODBUS_DATA_TYPE_ID, "Error while retrieving Modbus Data Type");
+
+        return new BinaryDataTask<>(record, offset, getBinaryData(modbusDataType), type, mode);
+    }
+
+    public static Stream<Pair<ModbusDomain, BlockTask>> build(List<ChannelRecord> records, Mode mode) {
+        return records.stream().map((record) -> {
+            try {
+                final ModbusDomain domain = getDomain(record, mode);
+                return new Pair<>(domain, build(record, domain.getMemoryArea(), mode));
+            } catch (Exception e) {
+                record.setTimestamp(System.currentTimeMillis());
+                record.setChannelStatus(new ChannelStatus(ChannelFlag.FAILURE, e.getMessage(), e));
+                return null;
+            }
+        }).filter(Objects::nonNull);
+    }
+
+}
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+
+package org.eclipse.kura.internal.driver.modbus.task;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.kura.driver.binary.Buffer;
+import org.eclipse.kura.driver.binary.ByteArrayBuffer;
+import org.eclipse.kura.driver.block.task.Mode;
+import org.eclipse.kura.driver.block.task.ToplevelBlockTask;
+import org.eclipse.kura.internal.driver.modbus.ModbusDomain;
+import org.eclipse.kura.internal.driver.modbus.ModbusDriver;
+import org.eclipse.kura.internal.driver.modbus.ModbusMemoryArea;
+import org.eclipse.kura.protocol.modbus.ModbusRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Transfers a block of registers or bits of a domain. A block larger than the maximum size of a Modbus PDU is
+ * transferred with the minimum number of requests.
+ * <p>
+ * The read requests can be executed in advance together with those of other tasks, see
+ * {@link #prepareReadRequests()}, the task then takes the data from their responses.
+ */
+public class ModbusToplevelBlockTask extends ToplevelBlockTask {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModbusToplevelBlockTask.class);
+
+    private final ModbusDomain domain;
+    private ByteArrayBuffer data;
+    private final ModbusDriver driver;
+    private List<ModbusRequest> readRequests;
+
+    public ModbusToplevelBlockTask(ModbusDriver driver, Mode mode, ModbusDomain domain, int start, int end) {
+        super(start, end, mode);
+        this.domain = domain;
+        this.driver = driver;
+    }
+
+    /**
+     * Creates the requests needed to read the block, they are used by the next execution of the task, which expects
+     * them to have been executed.
+     */
+    public List<ModbusRequest> prepareReadRequests() {
+        final ModbusMemoryArea area = this.domain.getMemoryArea();
+        final int elementSize = area.getElementSize();
+        final int first = getStart() / elementSize;
+        final int count = (getEnd() - getStart()) / elementSize;
+        final int maxCount = area.getMaxReadCount();
+        final int unitId = this.domain.getUnitId();
+
+        final List<ModbusRequest> requests = new ArrayList<>();
+        for (int done = 0; done < count; done += maxCount) {
+            final int address = first + done;
+            final int length = Math.min(maxCount, count - done);
+            switch (area) {
+            case COILS:
+                requests.add(ModbusRequest.readCoils(unitId, address, length));
+                break;
+            case DISCRETE_INPUTS:
+                requests.add(ModbusRequest.readDiscreteInputs(unitId, address, length));
+                break;
+            case INPUT_REGISTERS:
+                requests.add(ModbusRequest.readInputRegisters(unitId, address, length));
+                break;
+            default:
+                requests.add(ModbusRequest.readHoldingRegisters(unitId, address, length));
+                break;
+            }
+        }
+        this.readRequests = requests;
+        return requests;
+    }
+
+    @Override
+    public void processBuffer() throws IOException {
+        final List<ModbusRequest> requests = this.readRequests;
+        this.readRequests = null;
+
+        final ModbusMemoryArea area = this.domain.getMemoryArea();
+        final int elementSize = area.getElementSize();
+        final byte[] buffer = ((ByteArrayBuffer) getBuffer()).getBackingArray();
+        final int first = getStart() / elementSize;
+        final int count = buffer.length / elementSize;
+        final int maxCount = getMode() == Mode.READ ? area.getMaxReadCount() : area.getMaxWriteCount();
+
+        for (int done = 0; done < count; done += maxCount) {
+            final int address = first + done;
+            final int length = Math.min(maxCount, count - done);
+            if (getMode() == Mode.READ) {
+                logger.debug("Reading {}, unit id: {} address: {} count: {}", area, this.domain.getUnitId(), address,
+                        length);
+                final ModbusRequest request = requests != null ? requests.get(done / maxCount) : null;
+                if (area.isRegister()) {
+                    final int[] registers = request != null ? this.driver.getRegisters(this.domain, request)
+                            : this.driver.readRegisters(this.domain, address, length);
+                    for (int i = 0; i < length; i++) {
+                        buffer[(done + i) * 2] = (byte) (registers[i] >> 8);
+                        buffer[(done + i) * 2 + 1] = (byte) registers[i];
+                    }
+                } else {
+                    final boolean[] bits = request != null ? this.driver.getBits(this.domain, request)
+                            : this.driver.readBits(this.domain, address, length);
+                    for (int i = 0; i < length; i++) {
+                        buffer[done + i] = bits[i] ? (byte) 1 : (byte) 0;
+                    }
+                }
+            } else {
+                logger.debug("Writing {}, unit id: {} address: {} count: {}", area, this.domain.getUnitId(), address,
+                        length);
+                if (area.isRegister()) {
+                    final int[] registers = new int[length];
+                    for (int i = 0; i < length; i++) {
+                        registers[i] = (buffer[(done + i) * 2] & 0xff) << 8 | buffer[(done + i) * 2 + 1] & 0xff;
+                    }
+                    this.driver.writeRegisters(this.domain, address, registers);
+                } else {
+                    final boolean[] bits = new boolean[length];
+                    for (int i = 0; i < length; i++) {
+                        bits[i] = buffer[done + i] != 0;
+                    }
+                    this.driver.writeBits(this.domain, address, bits);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Buffer getBuffer() {
+        if (this.data == null) {
+            this.data = new ByteArrayBuffer(new byte[getEnd() - getStart()]);
+        }
+        return this.data;
+    }
+
+}
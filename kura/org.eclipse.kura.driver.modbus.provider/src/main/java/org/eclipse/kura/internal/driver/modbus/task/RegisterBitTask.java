@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+
+package org.eclipse.kura.internal.driver.modbus.task;
+
+import org.eclipse.kura.channel.ChannelRecord;
+import org.eclipse.kura.driver.binary.BinaryDataTypes;
+import org.eclipse.kura.driver.binary.Buffer;
+import org.eclipse.kura.driver.block.task.Mode;
+import org.eclipse.kura.driver.block.task.ToplevelBlockTask;
+import org.eclipse.kura.driver.block.task.UpdateBlockTask;
+import org.eclipse.kura.type.BooleanValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads or updates a single bit of a register. The task spans the whole register, since Modbus can only write
+ * registers, setting a bit is performed as a read-update-write of the register.
+ */
+public class RegisterBitTask extends UpdateBlockTask {
+
+    private static final Logger logger = LoggerFactory.getLogger(RegisterBitTask.class);
+    private final int bit;
+
+    public RegisterBitTask(ChannelRecord record, int start, int bit, Mode mode) {
+        super(record, start, start + 2, mode);
+        this.bit = bit;
+    }
+
+    @Override
+    protected void runRead() {
+        final ToplevelBlockTask parent = getParent();
+        final Buffer buffer = parent.getBuffer();
+
+        final int register = BinaryDataTypes.UINT16_BE.read(buffer, getStart() - parent.getStart());
+
+        final boolean result = (register >> this.bit & 0x01) == 1;
+
+        logger.debug("Reading Register Bit: offset {} bit index {} result {}", getStart(), this.bit, result);
+
+        this.record.setValue(new BooleanValue(result));
+        onSuccess();
+    }
+
+    @Override
+    protected void runWrite() {
+        logger.warn("Write mode not supported");
+        onFailure(new UnsupportedOperationException(
+                "RegisterBitTask does not support WRITE mode, only READ and UPDATE modes are supported"));
+    }
+
+    @Override
+    protected void runUpdate(ToplevelBlockTask write, ToplevelBlockTask read) {
+        final Buffer outBuffer = write.getBuffer();
+        final Buffer inBuffer = read.getBuffer();
+
+        final int previousValueOffset = getStart() - read.getStart();
+        final boolean value = (Boolean) this.record.getValue().getValue();
+
+        int register = BinaryDataTypes.UINT16_BE.read(inBuffer, previousValueOffset);
+
+        if (value) {
+            register |= 1 << this.bit;
+        } else {
+            register &= ~(1 << this.bit);
+        }
+
+        BinaryDataTypes.UINT16_BE.write(inBuffer, previousValueOffset, register);
+        logger.debug("Write Register Bit: offset: {} value: {}", getStart(), value);
+        BinaryDataTypes.UINT16_BE.write(outBuffer, getStart() - write.getStart(), register);
+    }
+}
@@ -31,6 +31,8 @@ public class WireGraphJsonMarshallUnmarshallImpl {
     private static final String RENDERING_PROPERTIES_KEY = "renderingProperties";
     private static final String OUTPUT_PORT_COUNT_KEY = "outputPortCount";
     private static final String INPUT_PORT_COUNT_KEY = "inputPortCount";
+    private static final String RECEIVER_QUEUE_SIZE_KEY = "receiverQueueSize";
+    private static final String RECEIVER_QUEUE_POLICY_KEY = "receiverQueuePolicy";
     private static final String PID_KEY = "pid";
     private static final String OUTPUT_PORT_NAMES_KEY = "outputPortNames";
     private static final String INPUT_PORT_NAMES_KEY = "inputPortNames";
@@ -105,6 +107,14 @@ public class WireGraphJsonMarshallUnmarshallImpl {
         result.add(PID_KEY, pid);
         result.add(INPUT_PORT_COUNT_KEY, (int) componentProperties.get(INPUT_PORT_COUNT_KEY));
         result.add(OUTPUT_PORT_COUNT_KEY, (int) componentProperties.get(OUTPUT_PORT_COUNT_KEY));
+        final Object queueSize = componentProperties.get(RECEIVER_QUEUE_SIZE_KEY);
+        if (queueSize instanceof Integer) {
+            result.add(RECEIVER_QUEUE_SIZE_KEY, (int) queueSize);
+        }
+        final Object queuePolicy = componentProperties.get(RECEIVER_QUEUE_POLICY_KEY);
+        if (queuePolicy instanceof String) {
+            result.add(RECEIVER_QUEUE_POLICY_KEY, (String) queuePolicy);
+        }
         result.add(RENDERING_PROPERTIES_KEY, resultElems);
 
         return result;
@@ -216,6 +226,10 @@ public class WireGraphJsonMarshallUnmarshallImpl {
                     properties.put(name, value.asInt());
                 } else if (OUTPUT_PORT_COUNT_KEY.equalsIgnoreCase(name) && value.isNumber()) {
                     properties.put(name, value.asInt());
+                } else if (RECEIVER_QUEUE_SIZE_KEY.equalsIgnoreCase(name) && value.isNumber()) {
+                    properties.put(name, value.asInt());
+                } else if (RECEIVER_QUEUE_POLICY_KEY.equalsIgnoreCase(name) && value.isString()) {
+                    properties.put(name, value.asString());
                 } else if (RENDERING_PROPERTIES_KEY.equalsIgnoreCase(name) && value.isObject()) {
                     Map<String, Object> renderingProperties = unmarshalRenderingProperties(value.asObject());
                     properties.putAll(renderingProperties);
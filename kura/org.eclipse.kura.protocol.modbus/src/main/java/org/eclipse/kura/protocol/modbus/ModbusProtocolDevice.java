@@ -12,6 +12,8 @@
  *******************************************************************************/
 package org.eclipse.kura.protocol.modbus;
 
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -19,7 +21,9 @@ import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import org.eclipse.kura.KuraConnectionStatus;
@@ -53,6 +57,7 @@ public class ModbusProtocolDevice implements ModbusProtocolDeviceService {
     public static final String PROTOCOL_CONNECTION_TYPE_ETHER_TCP = "TCP/IP";
     private int m_respTout;
     private int m_txMode;
+    private int m_maxInFlight = 1;
     private boolean m_connConfigd = false;
     private boolean m_protConfigd = false;
     private String m_connType = null;
@@ -188,6 +193,11 @@ public class ModbusProtocolDevice implements ModbusProtocolDeviceService {
      * <td>port</td>
      * <td>port on the field device to connect to</td>
      * </tr>
+     * <tr>
+     * <td>maxInFlight</td>
+     * <td>optional, the maximum number of requests of a batch sent before waiting for their responses, default 1.
+     * Used only by the "TCP/IP" connection type, see {@link #executeBatch(List)}</td>
+     * </tr>
      * </table>
      */
     @Override
@@ -215,6 +225,11 @@ public class ModbusProtocolDevice implements ModbusProtocolDeviceService {
         if (this.m_respTout < 0) {
             throw new ModbusProtocolException(ModbusProtocolErrorCode.INVALID_CONFIGURATION);
         }
+        String maxInFlight = connectionConfig.getProperty("maxInFlight");
+        this.m_maxInFlight = maxInFlight != null ? Integer.parseInt(maxInFlight) : 1;
+        if (this.m_maxInFlight < 1) {
+            throw new ModbusProtocolException(ModbusProtocolErrorCode.INVALID_CONFIGURATION);
+        }
         this.m_protConfigd = true;
 
         if (this.m_connConfigd) {
@@ -287,6 +302,23 @@ public class ModbusProtocolDevice implements ModbusProtocolDeviceService {
         abstract public int getConnectStatus();
 
         abstract public byte[] msgTransaction(byte[] msg) throws ModbusProtocolException;
+
+        /**
+         * Executes the requests one after the other, a failed request does not stop the batch.
+         */
+        public void batchTransaction(List<ModbusRequest> requests) throws ModbusProtocolException {
+            for (ModbusRequest request : requests) {
+                try {
+                    byte[] resp = msgTransaction(request.getCommand());
+                    if (resp == null) {
+                        throw new ModbusProtocolException(ModbusProtocolErrorCode.INVALID_DATA_TYPE);
+                    }
+                    request.complete(resp, 0, resp.length);
+                } catch (ModbusProtocolException e) {
+                    request.fail(e);
+                }
+            }
+        }
     }
 
     /**
@@ -329,6 +361,7 @@ public class ModbusProtocolDevice implements ModbusProtocolDeviceService {
         InputStream in;
         OutputStream out;
         CommConnection conn = null;
+        SerialFrameReader reader;
 
         public SerialCommunicate(ConnectionFactory connFactory, Properties connectionConfig)
                 throws ModbusProtocolException {
@@ -369,6 +402,13 @@ public class ModbusProtocolDevice implements ModbusProtocolDeviceService {
             } catch (Exception e) {
                 throw new ModbusProtocolException(ModbusProtocolErrorCode.CONNECTION_FAILURE, e);
             }
+
+            // start, data, parity and stop bits
+            int bitsPerChar = 1 + bits + (parity == CommURI.PARITY_NONE ? 0 : 1)
+                    + (stop == CommURI.STOPBITS_1 ? 1 : 2);
+            this.reader = new SerialFrameReader(this.in,
+                    ModbusProtocolDevice.this.m_txMode == ModbusTransmissionMode.ASCII_MODE, baud, bitsPerChar);
+            this.reader.start();
             s_logger.info("Serial connection connected");
         }
 
@@ -382,6 +422,7 @@ public class ModbusProtocolDevice implements ModbusProtocolDeviceService {
         @Override
         public void disconnect() throws ModbusProtocolException {
             if (this.conn != null) {
+                this.reader.stop();
                 try {
                     this.conn.close();
                     s_logger.debug("Serial connection closed");
@@ -485,144 +526,23 @@ public class ModbusProtocolDevice implements ModbusProtocolDeviceService {
             // Send the message
             try {
                 synchronized (this.out) {
-                    synchronized (this.in) {
-                        // flush input
-                        while (this.in.available() > 0) {
-                            this.in.read();
-                        }
-                        // send all data
-                        this.out.write(cmd, 0, cmd.length);
-                        this.out.flush();
-                        // outputStream.waitAllSent(respTout);
-
-                        // wait for and process response
-                        byte[] response = new byte[262]; // response buffer
-                        int respIndex = 0;
-                        int minimumLength = 5; // default minimum message length
-                        if (ModbusProtocolDevice.this.m_txMode == ModbusTransmissionMode.ASCII_MODE) {
-                            minimumLength = 11;
+                    this.reader.clear();
+                    // send all data
+                    this.out.write(cmd, 0, cmd.length);
+                    this.out.flush();
+
+                    // wait for and process response
+                    long deadline = System.nanoTime() + ModbusProtocolDevice.this.m_respTout * 1000000L;
+                    for (int maxLoop = 0; maxLoop < 1000; maxLoop++) {
+                        int respLength = this.reader.awaitFrame(deadline);
+                        if (respLength == 0) {
+                            String failMsg = "Recv timeout";
+                            s_logger.warn(failMsg);
+                            throw new ModbusProtocolException(ModbusProtocolErrorCode.RESPONSE_TIMEOUT, failMsg);
                         }
-                        int timeOut = ModbusProtocolDevice.this.m_respTout;
-                        for (int maxLoop = 0; maxLoop < 1000; maxLoop++) {
-                            boolean endFrame = false;
-                            // while (respIndex < minimumLength) {
-                            while (!endFrame) {
-                                long start = System.currentTimeMillis();
-                                while (this.in.available() == 0) {
-                                    try {
-                                        Thread.sleep(5);	// avoid a high cpu load
-                                    } catch (InterruptedException e) {
-                                        throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE,
-                                                "Thread interrupted");
-                                    }
-
-                                    long elapsed = System.currentTimeMillis() - start;
-                                    if (elapsed > timeOut) {
-                                        String failMsg = "Recv timeout";
-                                        s_logger.warn(failMsg + " : " + elapsed + " minimumLength=" + minimumLength
-                                                + " respIndex=" + respIndex);
-                                        throw new ModbusProtocolException(ModbusProtocolErrorCode.RESPONSE_TIMEOUT,
-                                                failMsg);
-                                    }
-                                }
-                                // address byte must match first
-                                if (respIndex == 0) {
-                                    if (ModbusProtocolDevice.this.m_txMode == ModbusTransmissionMode.ASCII_MODE) {
-                                        if ((response[0] = (byte) this.in.read()) == ':') {
-                                            respIndex++;
-                                        }
-                                    } else {
-                                        if ((response[0] = (byte) this.in.read()) == msg[0]) {
-                                            respIndex++;
-                                        }
-                                    }
-                                } else {
-                                    response[respIndex++] = (byte) this.in.read();
-                                }
-
-                                if (ModbusProtocolDevice.this.m_txMode == ModbusTransmissionMode.RTU_MODE) {
-                                    timeOut = 100; // move to character timeout
-                                    if (respIndex >= minimumLength) {
-                                        endFrame = true;
-                                    }
-                                } else {
-                                    if (response[respIndex - 1] == 10 && response[respIndex - 2] == 13) {
-                                        endFrame = true;
-                                    }
-                                }
-                            }
-                            // if ASCII mode convert response
-                            if (ModbusProtocolDevice.this.m_txMode == ModbusTransmissionMode.ASCII_MODE) {
-                                byte lrcRec = asciiLrcCalc(response, respIndex);
-                                response = convertAsciiResponseToBin(response, respIndex);
-                                byte lrcCalc = (byte) binLrcCalc(response);
-                                if (lrcRec != lrcCalc) {
-                                    throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE,
-                                            "Bad LRC");
-                                }
-                            }
-
-                            // Check first for an Exception response
-                            if ((response[1] & 0x80) == 0x80) {
-                                if (ModbusProtocolDevice.this.m_txMode == ModbusTransmissionMode.ASCII_MODE
-                                        || Crc16.getCrc16(response, 5, 0xffff) == 0) {
-                                    throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE,
-                                            "Exception response = " + Byte.toString(response[2]));
-                                }
-                            } else {
-                                // then check for a valid message
-                                switch (response[1]) {
-                                case ModbusFunctionCodes.FORCE_SINGLE_COIL:
-                                case ModbusFunctionCodes.PRESET_SINGLE_REG:
-                                case ModbusFunctionCodes.FORCE_MULTIPLE_COILS:
-                                case ModbusFunctionCodes.PRESET_MULTIPLE_REGS:
-                                    if (respIndex < 8) {
-                                        // wait for more data
-                                        minimumLength = 8;
-                                    } else if (ModbusProtocolDevice.this.m_txMode == ModbusTransmissionMode.ASCII_MODE
-                                            || Crc16.getCrc16(response, 8, 0xffff) == 0) {
-                                        byte[] ret = new byte[6];
-                                        for (int i = 0; i < 6; i++) {
-                                            ret[i] = response[i];
-                                        }
-                                        return ret;
-                                    }
-                                    break;
-                                case ModbusFunctionCodes.READ_COIL_STATUS:
-                                case ModbusFunctionCodes.READ_INPUT_STATUS:
-                                case ModbusFunctionCodes.READ_INPUT_REGS:
-                                case ModbusFunctionCodes.READ_HOLDING_REGS:
-                                    int byteCnt;
-                                    if (ModbusProtocolDevice.this.m_txMode == ModbusTransmissionMode.ASCII_MODE) {
-                                        byteCnt = (response[2] & 0xff) + 3;
-                                    } else {
-                                        byteCnt = (response[2] & 0xff) + 5;
-                                    }
-                                    if (respIndex < byteCnt) {
-                                        // wait for more data
-                                        minimumLength = byteCnt;
-                                    } else if (ModbusProtocolDevice.this.m_txMode == ModbusTransmissionMode.ASCII_MODE
-                                            || Crc16.getCrc16(response, byteCnt, 0xffff) == 0) {
-                                        byte[] ret = new byte[byteCnt];
-                                        for (int i = 0; i < byteCnt; i++) {
-                                            ret[i] = response[i];
-                                        }
-                                        return ret;
-                                    }
-                                }
-                            }
-
-                            /*
-                             * if required length then must have failed, drop
-                             * first byte and try again
-                             */
-                            if (respIndex >= minimumLength) {
-                                respIndex--;
-                                for (int i = 0; i < respIndex; i++) {
-                                    response[i] = response[i + 1];
-                                }
-                                minimumLength = 5; // reset minimum length
-                            }
+                        byte[] ret = checkResponse(msg, this.reader.getFrame(), respLength);
+                        if (ret != null) {
+                            return ret;
                         }
                     }
                 }
@@ -633,6 +553,77 @@ public class ModbusProtocolDevice implements ModbusProtocolDeviceService {
             throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE,
                     "Too much activity on recv line");
         }
+
+        /**
+         * Validates a received frame, returns the response without the CRC for a valid response to the message, or
+         * null if the frame must be ignored.
+         */
+        private byte[] checkResponse(byte[] msg, byte[] frame, int length) throws ModbusProtocolException {
+            byte[] response = frame;
+            int respLength = length;
+            // if ASCII mode convert response
+            if (ModbusProtocolDevice.this.m_txMode == ModbusTransmissionMode.ASCII_MODE) {
+                if (length < 11 || frame[0] != ':') {
+                    return null;
+                }
+                byte lrcRec = asciiLrcCalc(frame, length);
+                response = convertAsciiResponseToBin(frame, length);
+                respLength = response.length;
+                byte lrcCalc = (byte) binLrcCalc(response);
+                if (lrcRec != lrcCalc) {
+                    throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE, "Bad LRC");
+                }
+            } else if (length < 5 || response[0] != msg[0]) {
+                // address byte must match
+                return null;
+            }
+
+            // Check first for an Exception response
+            if ((response[1] & 0x80) == 0x80) {
+                if (ModbusProtocolDevice.this.m_txMode == ModbusTransmissionMode.ASCII_MODE
+                        || Crc16.getCrc16(response, 5, 0xffff) == 0) {
+                    throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE,
+                            "Exception response = " + Byte.toString(response[2]));
+                }
+                return null;
+            }
+
+            // then check for a valid message
+            switch (response[1]) {
+            case ModbusFunctionCodes.FORCE_SINGLE_COIL:
+            case ModbusFunctionCodes.PRESET_SINGLE_REG:
+            case ModbusFunctionCodes.FORCE_MULTIPLE_COILS:
+            case ModbusFunctionCodes.PRESET_MULTIPLE_REGS:
+                if (ModbusProtocolDevice.this.m_txMode == ModbusTransmissionMode.ASCII_MODE ? respLength >= 6
+                        : respLength >= 8 && Crc16.getCrc16(response, 8, 0xffff) == 0) {
+                    byte[] ret = new byte[6];
+                    System.arraycopy(response, 0, ret, 0, 6);
+                    return ret;
+                }
+                break;
+            case ModbusFunctionCodes.READ_COIL_STATUS:
+            case ModbusFunctionCodes.READ_INPUT_STATUS:
+            case ModbusFunctionCodes.READ_INPUT_REGS:
+            case ModbusFunctionCodes.READ_HOLDING_REGS:
+                int byteCnt;
+                if (ModbusProtocolDevice.this.m_txMode == ModbusTransmissionMode.ASCII_MODE) {
+                    byteCnt = (response[2] & 0xff) + 3;
+                } else {
+                    byteCnt = (response[2] & 0xff) + 5;
+                }
+                if (respLength >= byteCnt && (ModbusProtocolDevice.this.m_txMode == ModbusTransmissionMode.ASCII_MODE
+                        || Crc16.getCrc16(response, byteCnt, 0xffff) == 0)) {
+                    byte[] ret = new byte[byteCnt];
+                    System.arraycopy(response, 0, ret, 0, byteCnt);
+                    return ret;
+                }
+                break;
+            default:
+                break;
+            }
+            s_logger.debug("Discarding invalid frame");
+            return null;
+        }
     }
 
     /**
@@ -880,6 +871,122 @@ public class ModbusProtocolDevice implements ModbusProtocolDeviceService {
             }
             return null;
         }
+
+        /**
+         * With Modbus TCP, keeps up to maxInFlight requests outstanding and matches the responses to the requests by
+         * the MBAP transaction identifier, the other connection types execute the requests one after the other.
+         */
+        @Override
+        public void batchTransaction(List<ModbusRequest> requests) throws ModbusProtocolException {
+            if (!PROTOCOL_CONNECTION_TYPE_ETHER_TCP.equals(this.connType)
+                    || ModbusProtocolDevice.this.m_txMode != ModbusTransmissionMode.RTU_MODE) {
+                super.batchTransaction(requests);
+                return;
+            }
+
+            // Check connection status and connect
+            connect();
+            if (!this.connected) {
+                throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE,
+                        "Cannot transact on closed socket");
+            }
+
+            Map<Integer, ModbusRequest> inFlight = new HashMap<Integer, ModbusRequest>();
+            int next = 0;
+            byte[] header = new byte[6];
+            byte[] pdu = new byte[256];
+            try {
+                this.socket.setSoTimeout(ModbusProtocolDevice.this.m_respTout);
+                // flush input
+                while (this.inputStream.available() > 0) {
+                    this.inputStream.read();
+                }
+
+                while (next < requests.size() || !inFlight.isEmpty()) {
+                    // fill the window, the new requests are sent with a single write
+                    ByteArrayOutputStream frames = new ByteArrayOutputStream();
+                    while (next < requests.size() && inFlight.size() < ModbusProtocolDevice.this.m_maxInFlight) {
+                        ModbusRequest request = requests.get(next++);
+                        byte[] msg = request.getCommand();
+                        int index = getNextTransactionIndex();
+                        // MBAP header
+                        frames.write(index >> 8);
+                        frames.write(index);
+                        frames.write(0);
+                        frames.write(0);
+                        frames.write(msg.length >> 8);
+                        frames.write(msg.length);
+                        frames.write(msg, 0, msg.length);
+                        inFlight.put(index, request);
+                    }
+                    if (frames.size() > 0) {
+                        frames.writeTo(this.outputStream);
+                        this.outputStream.flush();
+                    }
+
+                    readFully(header, header.length);
+                    int index = (header[0] & 0xff) << 8 | header[1] & 0xff;
+                    int length = (header[4] & 0xff) << 8 | header[5] & 0xff;
+                    if (length < 2 || length > pdu.length) {
+                        throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE,
+                                "invalid MBAP length " + length);
+                    }
+                    readFully(pdu, length);
+
+                    ModbusRequest request = inFlight.remove(index);
+                    if (request == null) {
+                        s_logger.warn("Discarding response with unknown transaction id {}", index);
+                        continue;
+                    }
+                    request.complete(pdu, 0, length);
+                }
+            } catch (SocketTimeoutException e) {
+                s_logger.warn("Recv timeout");
+                failBatch(requests, next, inFlight,
+                        new ModbusProtocolException(ModbusProtocolErrorCode.RESPONSE_TIMEOUT, "Recv timeout"));
+            } catch (IOException e) {
+                s_logger.error("Socket disconnect in batch: " + e);
+                failBatch(requests, next, inFlight, new ModbusProtocolException(
+                        ModbusProtocolErrorCode.TRANSACTION_FAILURE, "Recv failure: " + e.getMessage()));
+            } catch (ModbusProtocolException e) {
+                failBatch(requests, next, inFlight, e);
+            }
+        }
+
+        /**
+         * Fails the requests without a response and closes the socket, since the responses still to come would
+         * be mixed with the following transactions.
+         */
+        private void failBatch(List<ModbusRequest> requests, int next, Map<Integer, ModbusRequest> inFlight,
+                ModbusProtocolException e) throws ModbusProtocolException {
+            disconnect();
+            for (ModbusRequest request : inFlight.values()) {
+                request.fail(e);
+            }
+            for (int i = next; i < requests.size(); i++) {
+                requests.get(i).fail(e);
+            }
+            throw e;
+        }
+
+        private void readFully(byte[] buffer, int length) throws IOException {
+            int read = 0;
+            while (read < length) {
+                int n = this.inputStream.read(buffer, read, length - read);
+                if (n < 0) {
+                    throw new EOFException("end of stream");
+                }
+                read += n;
+            }
+        }
+    }
+
+    @Override
+    public void executeBatch(List<ModbusRequest> requests) throws ModbusProtocolException {
+        if (!this.m_connConfigd) {
+            throw new ModbusProtocolException(ModbusProtocolErrorCode.NOT_CONNECTED);
+        }
+        this.m_comm.batchTransaction(requests);
     }
 
     @Override
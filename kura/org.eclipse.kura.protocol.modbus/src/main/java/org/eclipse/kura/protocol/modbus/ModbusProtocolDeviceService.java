@@ -11,6 +11,7 @@
  *******************************************************************************/
 package org.eclipse.kura.protocol.modbus;
 
+import java.util.List;
 import java.util.Properties;
 
 import org.eclipse.kura.KuraConnectionStatus;
@@ -114,6 +115,8 @@ public interface ModbusProtocolDeviceService {
      *            <li>transmissionMode : modbus transmission mode, can be RTU or ASCII, in Ethernet mode only RTU is
      *            supported
      *            <li>respTimeout : Timeout in milliseconds on a question/response request.
+     *            <li>maxInFlight : optional, maximum number of outstanding requests of a batch in "TCP/IP" mode,
+     *            default 1 (see {@link #executeBatch(List)})
      *            </ul>
      *            
      * @throws ModbusProtocolException with a {@link ModbusProtocolErrorCode#INVALID_CONFIGURATION}
@@ -374,4 +377,46 @@ public interface ModbusProtocolDeviceService {
      *             the cause of the exception
      */
     public void writeMultipleRegister(int unitAddr, int dataAddress, int[] data) throws ModbusProtocolException;
+
+    /**
+     * Executes a batch of requests and stores the result of each request in the request itself.
+     * <p>
+     * With the "TCP/IP" connection type up to <code>maxInFlight</code> requests (see
+     * {@link #configureConnection(Properties)}) are sent before waiting for their responses, which are matched to the
+     * requests by the MBAP transaction identifier, so that the batch costs a network round trip every
+     * <code>maxInFlight</code> requests instead of one per request. With the other connection types the requests are
+     * executed one after the other.
+     * <p>
+     * An exception response only fails the corresponding request.
+     * <p>
+     * The default implementation executes the requests one after the other with the single request methods of this
+     * service.
+     *
+     * @param requests
+     *            the requests to be executed
+     * @throws ModbusProtocolException with a {@link ModbusProtocolErrorCode#NOT_CONNECTED}
+     *             current connection is in a status other than <b>CONNECTED</b>
+     * @throws ModbusProtocolException with a {@link ModbusProtocolErrorCode#TRANSACTION_FAILURE} or
+     *             {@link ModbusProtocolErrorCode#RESPONSE_TIMEOUT} code if the connection failed, the requests
+     *             without a response are failed with the same exception
+     * @since 1.1
+     */
+    public default void executeBatch(List<ModbusRequest> requests) throws ModbusProtocolException {
+        for (ModbusRequest request : requests) {
+            try {
+                request.execute(this);
+            } catch (ModbusProtocolException e) {
+                if (e.getCode() != ModbusProtocolErrorCode.NOT_CONNECTED) {
+                    request.fail(e);
+                    continue;
+                }
+                for (ModbusRequest pending : requests) {
+                    if (!pending.isDone()) {
+                        pending.fail(e);
+                    }
+                }
+                throw e;
+            }
+        }
+    }
 }
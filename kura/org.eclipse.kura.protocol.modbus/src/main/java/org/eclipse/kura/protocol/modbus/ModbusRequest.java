@@ -0,0 +1,319 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.protocol.modbus;
+
+/**
+ * A Modbus request that can be executed together with other requests by
+ * {@link ModbusProtocolDeviceService#executeBatch(java.util.List)}.
+ * <p>
+ * A request is created with one of the static factory methods, its result is available once the batch has been
+ * executed: {@link #getRegisters()} for the register reads, {@link #getBits()} for the coil and discrete input reads.
+ * If the device answered with an exception response, or the response was not received, the result methods throw the
+ * corresponding {@link ModbusProtocolException}.
+ *
+ * @since 1.1
+ */
+public final class ModbusRequest {
+
+    private final byte[] command;
+    private final int count;
+
+    private boolean done;
+    private int[] registers;
+    private boolean[] bits;
+    private ModbusProtocolException exception;
+
+    private ModbusRequest(byte[] command, int count) {
+        this.command = command;
+        this.count = count;
+    }
+
+    private static byte[] newCommand(int length, int unitAddr, int functionCode, int dataAddress, int value) {
+        byte[] cmd = new byte[length];
+        cmd[0] = (byte) unitAddr;
+        cmd[1] = (byte) functionCode;
+        cmd[2] = (byte) (dataAddress >> 8);
+        cmd[3] = (byte) dataAddress;
+        cmd[4] = (byte) (value >> 8);
+        cmd[5] = (byte) value;
+        return cmd;
+    }
+
+    /**
+     * <b>Modbus function 01 (0x01)</b>, reads 1 to 2000 contiguous coils.
+     */
+    public static ModbusRequest readCoils(int unitAddr, int dataAddress, int count) {
+        return new ModbusRequest(newCommand(6, unitAddr, ModbusFunctionCodes.READ_COIL_STATUS, dataAddress, count),
+                count);
+    }
+
+    /**
+     * <b>Modbus function 02 (0x02)</b>, reads 1 to 2000 contiguous discrete inputs.
+     */
+    public static ModbusRequest readDiscreteInputs(int unitAddr, int dataAddress, int count) {
+        return new ModbusRequest(newCommand(6, unitAddr, ModbusFunctionCodes.READ_INPUT_STATUS, dataAddress, count),
+                count);
+    }
+
+    /**
+     * <b>Modbus function 03 (0x03)</b>, reads 1 to 125 contiguous holding registers.
+     */
+    public static ModbusRequest readHoldingRegisters(int unitAddr, int dataAddress, int count) {
+        return new ModbusRequest(newCommand(6, unitAddr, ModbusFunctionCodes.READ_HOLDING_REGS, dataAddress, count),
+                count);
+    }
+
+    /**
+     * <b>Modbus function 04 (0x04)</b>, reads 1 to 125 contiguous input registers.
+     */
+    public static ModbusRequest readInputRegisters(int unitAddr, int dataAddress, int count) {
+        return new ModbusRequest(newCommand(6, unitAddr, ModbusFunctionCodes.READ_INPUT_REGS, dataAddress, count),
+                count);
+    }
+
+    /**
+     * <b>Modbus function 05 (0x05)</b>, writes a single coil.
+     */
+    public static ModbusRequest writeSingleCoil(int unitAddr, int dataAddress, boolean data) {
+        return new ModbusRequest(
+                newCommand(6, unitAddr, ModbusFunctionCodes.FORCE_SINGLE_COIL, dataAddress, data ? 0xff00 : 0), 1);
+    }
+
+    /**
+     * <b>Modbus function 06 (0x06)</b>, writes a single holding register.
+     */
+    public static ModbusRequest writeSingleRegister(int unitAddr, int dataAddress, int data) {
+        return new ModbusRequest(newCommand(6, unitAddr, ModbusFunctionCodes.PRESET_SINGLE_REG, dataAddress, data),
+                1);
+    }
+
+    /**
+     * <b>Modbus function 15 (0x0F)</b>, writes 1 to 1968 contiguous coils.
+     */
+    public static ModbusRequest writeMultipleCoils(int unitAddr, int dataAddress, boolean[] data) {
+        int dataLength = (data.length + 7) / 8;
+        byte[] cmd = newCommand(dataLength + 7, unitAddr, ModbusFunctionCodes.FORCE_MULTIPLE_COILS, dataAddress,
+                data.length);
+        cmd[6] = (byte) dataLength;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i]) {
+                cmd[7 + i / 8] |= 1 << i % 8;
+            }
+        }
+        return new ModbusRequest(cmd, data.length);
+    }
+
+    /**
+     * <b>Modbus function 16 (0x10)</b>, writes 1 to 123 contiguous holding registers.
+     */
+    public static ModbusRequest writeMultipleRegister(int unitAddr, int dataAddress, int[] data) {
+        byte[] cmd = newCommand(data.length * 2 + 7, unitAddr, ModbusFunctionCodes.PRESET_MULTIPLE_REGS, dataAddress,
+                data.length);
+        cmd[6] = (byte) (data.length * 2);
+        for (int i = 0; i < data.length; i++) {
+            cmd[7 + i * 2] = (byte) (data[i] >> 8);
+            cmd[8 + i * 2] = (byte) data[i];
+        }
+        return new ModbusRequest(cmd, data.length);
+    }
+
+    public int getUnitAddress() {
+        return this.command[0] & 0xff;
+    }
+
+    public int getFunctionCode() {
+        return this.command[1];
+    }
+
+    /**
+     * Returns true if a response has been received, or the request failed.
+     */
+    public boolean isDone() {
+        return this.done;
+    }
+
+    /**
+     * Returns the exception that caused the request to fail, or null if it succeeded or was not executed yet.
+     */
+    public ModbusProtocolException getException() {
+        return this.exception;
+    }
+
+    /**
+     * Returns the registers read by a register read request.
+     *
+     * @throws ModbusProtocolException
+     *             if the request failed, or with a {@link ModbusProtocolErrorCode#NOT_AVAILABLE} code if it was not
+     *             executed yet
+     */
+    public int[] getRegisters() throws ModbusProtocolException {
+        checkResult();
+        return this.registers;
+    }
+
+    /**
+     * Returns the coils or discrete inputs read by a bit read request.
+     *
+     * @throws ModbusProtocolException
+     *             if the request failed, or with a {@link ModbusProtocolErrorCode#NOT_AVAILABLE} code if it was not
+     *             executed yet
+     */
+    public boolean[] getBits() throws ModbusProtocolException {
+        checkResult();
+        return this.bits;
+    }
+
+    /**
+     * Throws the exception that caused the request to fail, if any.
+     */
+    public void checkResult() throws ModbusProtocolException {
+        if (!this.done) {
+            throw new ModbusProtocolException(ModbusProtocolErrorCode.NOT_AVAILABLE, "Request not executed");
+        }
+        if (this.exception != null) {
+            throw this.exception;
+        }
+    }
+
+    /**
+     * Returns the request PDU, prefixed by the unit address.
+     */
+    byte[] getCommand() {
+        return this.command;
+    }
+
+    /**
+     * Executes the request with the single request methods of the device, used by the default implementation of
+     * {@link ModbusProtocolDeviceService#executeBatch(java.util.List)}.
+     */
+    void execute(ModbusProtocolDeviceService device) throws ModbusProtocolException {
+        final int unitAddr = getUnitAddress();
+        final int dataAddress = getUnsignedShort(2);
+        switch (this.command[1]) {
+        case ModbusFunctionCodes.READ_COIL_STATUS:
+            this.bits = device.readCoils(unitAddr, dataAddress, this.count);
+            break;
+        case ModbusFunctionCodes.READ_INPUT_STATUS:
+            this.bits = device.readDiscreteInputs(unitAddr, dataAddress, this.count);
+            break;
+        case ModbusFunctionCodes.READ_HOLDING_REGS:
+            this.registers = device.readHoldingRegisters(unitAddr, dataAddress, this.count);
+            break;
+        case ModbusFunctionCodes.READ_INPUT_REGS:
+            this.registers = device.readInputRegisters(unitAddr, dataAddress, this.count);
+            break;
+        case ModbusFunctionCodes.FORCE_SINGLE_COIL:
+            device.writeSingleCoil(unitAddr, dataAddress, this.command[4] != 0);
+            break;
+        case ModbusFunctionCodes.PRESET_SINGLE_REG:
+            device.writeSingleRegister(unitAddr, dataAddress, getUnsignedShort(4));
+            break;
+        case ModbusFunctionCodes.FORCE_MULTIPLE_COILS:
+            boolean[] coils = new boolean[this.count];
+            for (int i = 0; i < this.count; i++) {
+                coils[i] = (this.command[7 + i / 8] >> i % 8 & 1) == 1;
+            }
+            device.writeMultipleCoils(unitAddr, dataAddress, coils);
+            break;
+        case ModbusFunctionCodes.PRESET_MULTIPLE_REGS:
+            int[] registers = new int[this.count];
+            for (int i = 0; i < this.count; i++) {
+                registers[i] = getUnsignedShort(7 + i * 2);
+            }
+            device.writeMultipleRegister(unitAddr, dataAddress, registers);
+            break;
+        default:
+            throw new ModbusProtocolException(ModbusProtocolErrorCode.METHOD_NOT_SUPPORTED);
+        }
+        this.done = true;
+    }
+
+    private int getUnsignedShort(int offset) {
+        return (this.command[offset] & 0xff) << 8 | this.command[offset + 1] & 0xff;
+    }
+
+    void fail(ModbusProtocolException e) {
+        this.exception = e;
+        this.done = true;
+    }
+
+    /**
+     * Completes the request with the response PDU, prefixed by the unit address.
+     */
+    void complete(byte[] resp, int offset, int length) {
+        try {
+            parse(resp, offset, length);
+        } catch (ModbusProtocolException e) {
+            this.exception = e;
+        }
+        this.done = true;
+    }
+
+    private void parse(byte[] resp, int offset, int length) throws ModbusProtocolException {
+        if (length < 3) {
+            throw new ModbusProtocolException(ModbusProtocolErrorCode.INVALID_DATA_TYPE);
+        }
+        if (resp[offset] != this.command[0]) {
+            throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE,
+                    "incorrect modbus id " + String.format("%02X", resp[offset]));
+        }
+        if ((resp[offset + 1] & 0x7f) != this.command[1]) {
+            throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE,
+                    "incorrect function number " + String.format("%02X", resp[offset + 1]));
+        }
+        if ((resp[offset + 1] & 0x80) == 0x80) {
+            throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE,
+                    "Modbus responds an error = " + String.format("%02X", resp[offset + 2]));
+        }
+
+        int byteCount = resp[offset + 2] & 0xff;
+        switch (this.command[1]) {
+        case ModbusFunctionCodes.READ_COIL_STATUS:
+        case ModbusFunctionCodes.READ_INPUT_STATUS:
+            if (length < byteCount + 3) {
+                throw new ModbusProtocolException(ModbusProtocolErrorCode.INVALID_DATA_TYPE);
+            }
+            if (byteCount != (this.count + 7) / 8) {
+                throw new ModbusProtocolException(ModbusProtocolErrorCode.INVALID_DATA_ADDRESS);
+            }
+            this.bits = new boolean[this.count];
+            for (int i = 0; i < this.count; i++) {
+                this.bits[i] = (resp[offset + 3 + i / 8] >> i % 8 & 1) == 1;
+            }
+            break;
+        case ModbusFunctionCodes.READ_HOLDING_REGS:
+        case ModbusFunctionCodes.READ_INPUT_REGS:
+            if (length < byteCount + 3) {
+                throw new ModbusProtocolException(ModbusProtocolErrorCode.INVALID_DATA_TYPE);
+            }
+            if (byteCount != this.count * 2) {
+                throw new ModbusProtocolException(ModbusProtocolErrorCode.INVALID_DATA_ADDRESS);
+            }
+            this.registers = new int[this.count];
+            for (int i = 0; i < this.count; i++) {
+                this.registers[i] = (resp[offset + 3 + i * 2] & 0xff) << 8 | resp[offset + 4 + i * 2] & 0xff;
+            }
+            break;
+        default:
+            // the write responses echo the first 6 bytes of the request
+            if (length < 6) {
+                throw new ModbusProtocolException(ModbusProtocolErrorCode.INVALID_DATA_TYPE);
+            }
+            for (int i = 0; i < 6; i++) {
+                if (this.command[i] != resp[offset + i]) {
+                    throw new ModbusProtocolException(ModbusProtocolErrorCode.INVALID_DATA_TYPE);
+                }
+            }
+            break;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.protocol.modbus;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Receives the frames of a serial line with a dedicated thread blocked on the input stream, and hands them over to
+ * the thread waiting for a response as soon as they are complete.
+ * <p>
+ * In RTU mode a frame is complete when the length given by its function code has been received, or when the line has
+ * been silent for 3.5 characters if its length is not known yet. Since USB serial adapters deliver the bytes in
+ * bursts, a frame of known length that is still incomplete is only considered ended after {@link #CHAR_TIMEOUT}. In
+ * ASCII mode a frame is complete when CR LF is received.
+ * <p>
+ * The frames are received in two buffers used in turn, the buffer returned by {@link #getFrame()} is not written
+ * until the next call to {@link #awaitFrame(long)}.
+ */
+final class SerialFrameReader implements Runnable {
+
+    private static final Logger s_logger = LoggerFactory.getLogger(SerialFrameReader.class);
+
+    /** The maximum time between two characters of a frame of known length, in milliseconds */
+    static final int CHAR_TIMEOUT = 100;
+
+    private static final int MAX_FRAME_LENGTH = 513; // ASCII frame of a 256 bytes ADU
+
+    private final InputStream in;
+    private final boolean ascii;
+    private final long silenceNanos;
+    private final Thread thread;
+
+    private byte[] receiving = new byte[MAX_FRAME_LENGTH];
+    private int length;
+    private long lastByteTime;
+    private byte[] frame = new byte[MAX_FRAME_LENGTH];
+    private IOException error;
+    private volatile boolean running = true;
+
+    /**
+     * @param in
+     *            the serial input stream
+     * @param ascii
+     *            true for the ASCII transmission mode
+     * @param baudRate
+     *            the baud rate of the line
+     * @param bitsPerChar
+     *            the number of bits of a character on the line, including start, parity and stop bits
+     */
+    SerialFrameReader(InputStream in, boolean ascii, int baudRate, int bitsPerChar) {
+        this.in = in;
+        this.ascii = ascii;
+        if (baudRate > 19200) {
+            // fixed value recommended by the Modbus over serial line specification
+            this.silenceNanos = 1750000L;
+        } else {
+            this.silenceNanos = 3500000000L * bitsPerChar / baudRate;
+        }
+        this.thread = new Thread(this, "ModbusSerialFrameReader");
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        this.thread.start();
+    }
+
+    /**
+     * Stops the reader thread, the input stream must be closed by the caller to release a pending read.
+     */
+    void stop() {
+        this.running = false;
+        this.thread.interrupt();
+    }
+
+    @Override
+    public void run() {
+        byte[] buffer = new byte[MAX_FRAME_LENGTH];
+        try {
+            while (this.running) {
+                int n = this.in.read(buffer);
+                if (n < 0) {
+                    throw new EOFException("end of stream");
+                }
+                if (n > 0) {
+                    received(buffer, n);
+                }
+            }
+        } catch (IOException e) {
+            if (this.running) {
+                s_logger.error("Serial receive failure: " + e);
+                synchronized (this) {
+                    this.error = e;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    private synchronized void received(byte[] buffer, int n) {
+        long now = System.nanoTime();
+        if (this.length > 0 && !this.ascii && now - this.lastByteTime >= this.silenceNanos
+                && expectedLength() < 0) {
+            // the line has been silent, the previous frame was not waited for
+            this.length = 0;
+        }
+        if (this.length + n > this.receiving.length) {
+            s_logger.warn("Discarding oversized frame");
+            this.length = 0;
+            n = Math.min(n, this.receiving.length);
+        }
+        System.arraycopy(buffer, 0, this.receiving, this.length, n);
+        this.length += n;
+        this.lastByteTime = now;
+        notifyAll();
+    }
+
+    /**
+     * Discards the data received so far.
+     */
+    synchronized void clear() {
+        this.length = 0;
+    }
+
+    /**
+     * Waits for the next frame.
+     *
+     * @param deadline
+     *            the {@link System#nanoTime()} after which no new frame is waited for
+     * @return the frame length, or 0 if no data was received before the deadline
+     * @throws IOException
+     *             if the reader failed
+     */
+    synchronized int awaitFrame(long deadline) throws IOException {
+        try {
+            while (true) {
+                if (this.error != null) {
+                    throw this.error;
+                }
+                long now = System.nanoTime();
+                long wakeup;
+                if (this.length == 0) {
+                    if (now - deadline >= 0) {
+                        return 0;
+                    }
+                    wakeup = deadline;
+                } else if (this.ascii) {
+                    if (this.length >= 2 && this.receiving[this.length - 2] == 13
+                            && this.receiving[this.length - 1] == 10) {
+                        return handOver();
+                    }
+                    if (now - deadline >= 0) {
+                        return handOver();
+                    }
+                    wakeup = deadline;
+                } else {
+                    int expected = expectedLength();
+                    if (expected > 0 && this.length >= expected) {
+                        return handOver();
+                    }
+                    long end = this.lastByteTime
+                            + (expected > 0 ? CHAR_TIMEOUT * 1000000L : this.silenceNanos);
+                    if (now - end >= 0) {
+                        return handOver();
+                    }
+                    wakeup = end;
+                }
+                long wait = wakeup - now;
+                wait(wait / 1000000L, (int) (wait % 1000000L));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Thread interrupted");
+        }
+    }
+
+    /**
+     * Returns the buffer holding the frame returned by the last {@link #awaitFrame(long)} call.
+     */
+    byte[] getFrame() {
+        return this.frame;
+    }
+
+    private int handOver() {
+        byte[] received = this.receiving;
+        this.receiving = this.frame;
+        this.frame = received;
+        int frameLength = this.length;
+        this.length = 0;
+        return frameLength;
+    }
+
+    /**
+     * Returns the length of the RTU response being received, or -1 if it can't be determined yet.
+     */
+    private int expectedLength() {
+        if (this.length < 2) {
+            return -1;
+        }
+        int functionCode = this.receiving[1] & 0xff;
+        if ((functionCode & 0x80) == 0x80) {
+            return 5;
+        }
+        switch (functionCode) {
+        case ModbusFunctionCodes.FORCE_SINGLE_COIL:
+        case ModbusFunctionCodes.PRESET_SINGLE_REG:
+        case ModbusFunctionCodes.FORCE_MULTIPLE_COILS:
+        case ModbusFunctionCodes.PRESET_MULTIPLE_REGS:
+            return 8;
+        case ModbusFunctionCodes.READ_COIL_STATUS:
+        case ModbusFunctionCodes.READ_INPUT_STATUS:
+        case ModbusFunctionCodes.READ_INPUT_REGS:
+        case ModbusFunctionCodes.READ_HOLDING_REGS:
+            return this.length < 3 ? -1 : (this.receiving[2] & 0xff) + 5;
+        default:
+            return -1;
+        }
+    }
+}
@@ -32,8 +32,12 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.eclipse.kura.wire.graph.Constants;
+import org.eclipse.kura.wire.graph.WireComponentMetrics;
+import org.eclipse.kura.wire.graph.WireGraphMetricsService;
+import org.eclipse.kura.wire.graph.WireMetrics;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.wireadmin.Wire;
 import org.osgi.service.wireadmin.WireAdminEvent;
@@ -42,6 +46,9 @@ import org.osgi.service.wireadmin.WireConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+
 /**
  * The Class EventHandlerServlet is responsible for interacting between Event
  * Admin and Javascript through Server Sent Events (SSE). This is mainly required
@@ -57,6 +64,8 @@ public final class WiresBlinkServlet extends HttpServlet implements WireAdminLis
 
     private static final int MIN_EVENT_DELAY_MS = 400;
 
+    private static final int METRICS_INTERVAL_MS = 2000;
+
     private static final Dictionary<String, Object> WIRE_EVENT_LISTENER_PROPERTIES = new Hashtable<>();
 
     static {
@@ -180,6 +189,7 @@ public final class WiresBlinkServlet extends HttpServlet implements WireAdminLis
         private final PrintStream printStream;
         private final Map<WireEvent, Long> lastSentTimestamp = new HashMap<>();
         private final LinkedBlockingQueue<Wire> events = new LinkedBlockingQueue<>(MAX_SIZE_OF_QUEUE);
+        private long lastMetricsTimestamp;
 
         private boolean run;
 
@@ -203,6 +213,10 @@ public final class WiresBlinkServlet extends HttpServlet implements WireAdminLis
                 return false;
             }
 
+            if (System.currentTimeMillis() - this.lastMetricsTimestamp >= METRICS_INTERVAL_MS && !sendMetrics()) {
+                return false;
+            }
+
             try {
                 wire = events.poll(1, TimeUnit.SECONDS);
             } catch (final InterruptedException e) {
@@ -231,6 +245,23 @@ public final class WiresBlinkServlet extends HttpServlet implements WireAdminLis
             }
         }
 
+        private boolean sendMetrics() {
+            this.lastMetricsTimestamp = System.currentTimeMillis();
+
+            final String metrics = getMetrics();
+            if (metrics == null) {
+                return true;
+            }
+
+            try {
+                printStream.printf("event: metrics%ndata: %s%n%n", metrics);
+                printStream.flush();
+                return true;
+            } catch (final Exception e) {
+                return false;
+            }
+        }
+
         void run() {
             logger.info("Session started: {}", requestId);
 
@@ -316,6 +347,42 @@ public final class WiresBlinkServlet extends HttpServlet implements WireAdminLis
         }
     }
 
+    private static String getMetrics() {
+        final ServiceReference<WireGraphMetricsService> ref = bundleContext
+                .getServiceReference(WireGraphMetricsService.class);
+        if (ref == null) {
+            return null;
+        }
+
+        final WireGraphMetricsService metricsService = bundleContext.getService(ref);
+        if (metricsService == null) {
+            return null;
+        }
+        try {
+            final JsonObject components = new JsonObject();
+            for (final WireComponentMetrics metrics : metricsService.getWireComponentMetrics()) {
+                components.add(metrics.getPid(),
+                        new JsonObject().add("received", metrics.getReceivedEnvelopes())
+                                .add("emitted", metrics.getEmittedEnvelopes())
+                                .add("dropped", metrics.getDroppedEnvelopes()).add("queue", metrics.getQueueSize())
+                                .add("p50", TimeUnit.NANOSECONDS.toMicros(metrics.getLatency(0.5)))
+                                .add("p99", TimeUnit.NANOSECONDS.toMicros(metrics.getLatency(0.99))));
+            }
+
+            final JsonArray wires = new JsonArray();
+            for (final WireMetrics metrics : metricsService.getWireMetrics()) {
+                wires.add(new JsonObject().add("emitterPid", metrics.getEmitterPid())
+                        .add("emitterPort", metrics.getEmitterPort()).add("receiverPid", metrics.getReceiverPid())
+                        .add("receiverPort", metrics.getReceiverPort()).add("records", metrics.getRecords())
+                        .add("bytes", metrics.getBytes()));
+            }
+
+            return new JsonObject().add("components", components).add("wires", wires).toString();
+        } finally {
+            bundleContext.ungetService(ref);
+        }
+    }
+
     @Override
     public void wireAdminEvent(final WireAdminEvent event) {
 
@@ -24,9 +24,13 @@ BlinkEffect.prototype.setEnabled = function (enabled) {
 				}
 			});
 		};
+		this.eventSource.addEventListener('metrics', function(event) {
+			self.showMetrics(JSON.parse(event.data))
+		});
 	} else if (this.eventSource) {
 		this.eventSource.close();
 		this.eventSource = null;
+		this.clearMetrics();
 		var xmlHttp = new XMLHttpRequest();
 		xmlHttp.open("GET", "/sse?session=" + this.eventSourceSessionId
 				+ "&logout=" + this.eventSourceSessionId, true);
@@ -72,4 +76,83 @@ BlinkEffect.prototype.fireTransition  = function(c, port) {
 			});
 		});
 }
-	
\ No newline at end of file
+	
+BlinkEffect.prototype.showMetrics = function (metrics) {
+	var graph = this.composer.graph
+	var now = new Date().getTime()
+	var previous = this.previousMetrics
+	var elapsed = previous ? (now - previous.timestamp) / 1000 : 0
+
+	_.each(graph.getElements(), function(c) {
+		var wireComponent = c.attributes.wireComponent
+		if (!wireComponent) {
+			return
+		}
+		var m = metrics.components[wireComponent.pid]
+		var text = joint.util.breakText(wireComponent.pid, {
+			width : 100
+		})
+		if (m && m.received > 0) {
+			text += '\np50 ' + formatLatency(m.p50) + ' p99 ' + formatLatency(m.p99)
+		}
+		if (m && (m.queue > 0 || m.dropped > 0)) {
+			text += '\nqueue ' + m.queue + ' dropped ' + m.dropped
+		}
+		c.attr('.label/text', text)
+	});
+
+	_.each(graph.getLinks(), function(link) {
+		var wire = link.attributes.wire
+		if (!wire) {
+			return
+		}
+		var m = findWireMetrics(metrics, wire)
+		var p = previous ? findWireMetrics(previous.metrics, wire) : null
+		var labels = []
+		if (m && p && elapsed > 0) {
+			labels.push({
+				position : 0.5,
+				attrs : {
+					text : {
+						text : ((m.records - p.records) / elapsed).toFixed(1) + ' rec/s',
+						'font-size' : 10
+					}
+				}
+			})
+		}
+		link.set('labels', labels)
+	});
+
+	this.previousMetrics = {
+		timestamp : now,
+		metrics : metrics
+	}
+
+	function formatLatency(micros) {
+		return micros < 1000 ? micros + 'us' : (micros / 1000).toFixed(1) + 'ms'
+	}
+
+	function findWireMetrics(metrics, wire) {
+		return _.find(metrics.wires, function(w) {
+			return w.emitterPid === wire.emitterPid && w.emitterPort == wire.emitterPort
+					&& w.receiverPid === wire.receiverPid && w.receiverPort == wire.receiverPort
+		})
+	}
+}
+
+BlinkEffect.prototype.clearMetrics = function () {
+	this.previousMetrics = null
+
+	_.each(this.composer.graph.getElements(), function(c) {
+		var wireComponent = c.attributes.wireComponent
+		if (wireComponent) {
+			c.attr('.label/text', joint.util.breakText(wireComponent.pid, {
+				width : 100
+			}))
+		}
+	});
+
+	_.each(this.composer.graph.getLinks(), function(link) {
+		link.set('labels', [])
+	});
+}
@@ -27,6 +27,8 @@ import javax.script.ScriptEngine;
 import javax.script.ScriptException;
 
 import org.eclipse.kura.configuration.ConfigurableComponent;
+import org.eclipse.kura.internal.wire.expression.Expression;
+import org.eclipse.kura.internal.wire.expression.ExpressionContext;
 import org.eclipse.kura.wire.WireComponent;
 import org.eclipse.kura.wire.WireEmitter;
 import org.eclipse.kura.wire.WireEnvelope;
@@ -37,7 +39,6 @@ import org.eclipse.kura.wire.graph.EmitterPort;
 import org.eclipse.kura.wire.graph.MultiportWireSupport;
 import org.osgi.framework.ServiceReference;
 import org.osgi.service.component.ComponentContext;
-import org.osgi.service.component.ComponentException;
 import org.osgi.service.wireadmin.Wire;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,6 +66,9 @@ public final class Conditional implements WireReceiver, WireEmitter, Configurabl
     private ConditionalOptions conditionalOptions;
     private Optional<CompiledScript> script = Optional.empty();
 
+    /** The compiled condition if the expression engine is selected, evaluated without holding the component lock */
+    private volatile Expression expression;
+
     public void bindWireHelperService(final WireHelperService wireHelperService) {
         if (isNull(this.wireHelperService)) {
             this.wireHelperService = wireHelperService;
@@ -87,13 +91,6 @@ public final class Conditional implements WireReceiver, WireEmitter, Configurabl
         this.thenPort = emitterPorts.get(0);
         this.elsePort = emitterPorts.get(1);
 
-        this.scriptEngine = createEngine();
-        this.bindings = createBindings();
-
-        if (this.scriptEngine == null) {
-            throw new ComponentException("Error Getting Conditional Script Engine");
-        }
-
         updated(properties);
         logger.info("Activating Conditional component...done");
     }
@@ -101,11 +98,20 @@ public final class Conditional implements WireReceiver, WireEmitter, Configurabl
     public synchronized void updated(final Map<String, Object> properties) {
         logger.info("Updating Conditional component...");
         this.conditionalOptions = new ConditionalOptions(properties);
+        this.script = Optional.empty();
+        this.expression = null;
         try {
-            this.script = Optional.of(tryCompileScript(this.conditionalOptions.getBooleanExpression()));
+            if (this.conditionalOptions.isExpressionEngine()) {
+                this.expression = Expression.compile(this.conditionalOptions.getBooleanExpression());
+            } else {
+                if (this.scriptEngine == null) {
+                    this.scriptEngine = createEngine();
+                    this.bindings = createBindings();
+                }
+                this.script = Optional.of(tryCompileScript(this.conditionalOptions.getBooleanExpression()));
+            }
         } catch (Exception e) {
             logger.warn("Failed to compile boolean expression", e);
-            this.script = Optional.empty();
         }
         logger.info("Updating Conditional component...done");
     }
@@ -118,9 +124,38 @@ public final class Conditional implements WireReceiver, WireEmitter, Configurabl
 
     /** {@inheritDoc} */
     @Override
-    public synchronized void onWireReceive(final WireEnvelope wireEnvelope) {
+    public void onWireReceive(final WireEnvelope wireEnvelope) {
         requireNonNull(wireEnvelope, "Wire Envelope cannot be null");
 
+        final Expression currentExpression = this.expression;
+        if (currentExpression != null) {
+            evaluateExpression(currentExpression, wireEnvelope);
+        } else {
+            evaluateScript(wireEnvelope);
+        }
+    }
+
+    private void evaluateExpression(final Expression expression, final WireEnvelope wireEnvelope) {
+        try {
+            final List<WireRecord> inputRecords = wireEnvelope.getRecords();
+
+            // the properties of the first record can be referenced without the records[0] prefix
+            final ExpressionContext context = new ExpressionContext();
+            context.setEnvelope(wireEnvelope.getEmitterPid(), inputRecords);
+
+            final WireEnvelope outputEnvelope = this.wireSupport.createWireEnvelope(inputRecords);
+
+            if (expression.evaluateBoolean(context)) {
+                this.thenPort.emit(outputEnvelope);
+            } else {
+                this.elsePort.emit(outputEnvelope);
+            }
+        } catch (Exception e) {
+            logger.warn("Exception while performing decision.", e);
+        }
+    }
+
+    private synchronized void evaluateScript(final WireEnvelope wireEnvelope) {
         try {
 
             if (!this.script.isPresent()) {
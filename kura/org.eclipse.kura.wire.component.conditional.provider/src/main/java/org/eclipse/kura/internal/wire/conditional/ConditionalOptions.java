@@ -22,6 +22,12 @@ public class ConditionalOptions {
 
     private static final String CONDITION_PROPERTY_KEY = "condition";
 
+    private static final String CONDITION_ENGINE_PROPERTY_KEY = "condition.engine";
+
+    static final String JAVASCRIPT_ENGINE = "javascript";
+
+    static final String EXPRESSION_ENGINE = "expression";
+
     private static final String DEFAULT_CONDITION = "records[0].TIMER !== null && records[0].TIMER.getValue() > 10 && records[0]['TIMER'].getValue() < 30;";
 
     private final Map<String, Object> properties;
@@ -41,4 +47,8 @@ public class ConditionalOptions {
         return (String) booleanExpression;
     }
 
+    boolean isExpressionEngine() {
+        return EXPRESSION_ENGINE.equals(this.properties.getOrDefault(CONDITION_ENGINE_PROPERTY_KEY, JAVASCRIPT_ENGINE));
+    }
+
 }
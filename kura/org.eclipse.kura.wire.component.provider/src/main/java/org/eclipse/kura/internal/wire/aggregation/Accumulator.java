@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.aggregation;
+
+/**
+ * The running statistics of the values of a property. Adding a value takes constant time, and two accumulators can
+ * be merged, so that a sliding window is computed by merging the accumulators of its panes.
+ */
+final class Accumulator {
+
+    private long count;
+    private double sum;
+    private double mean;
+    // sum of the squared differences from the mean, see Welford's algorithm
+    private double m2;
+    private double min;
+    private double max;
+
+    private final QuantileSketch sketch;
+
+    Accumulator(final boolean quantiles) {
+        this.sketch = quantiles ? new QuantileSketch() : null;
+        reset();
+    }
+
+    void add(final double value) {
+        this.count++;
+        this.sum += value;
+        final double delta = value - this.mean;
+        this.mean += delta / this.count;
+        this.m2 += delta * (value - this.mean);
+        this.min = Math.min(this.min, value);
+        this.max = Math.max(this.max, value);
+        if (this.sketch != null) {
+            this.sketch.add(value);
+        }
+    }
+
+    void merge(final Accumulator other) {
+        if (other.count == 0) {
+            return;
+        }
+        final long total = this.count + other.count;
+        final double delta = other.mean - this.mean;
+        this.mean += delta * other.count / total;
+        this.m2 += other.m2 + delta * delta * this.count * other.count / total;
+        this.count = total;
+        this.sum += other.sum;
+        this.min = Math.min(this.min, other.min);
+        this.max = Math.max(this.max, other.max);
+        if (this.sketch != null && other.sketch != null) {
+            this.sketch.merge(other.sketch);
+        }
+    }
+
+    void reset() {
+        this.count = 0;
+        this.sum = 0;
+        this.mean = 0;
+        this.m2 = 0;
+        this.min = Double.POSITIVE_INFINITY;
+        this.max = Double.NEGATIVE_INFINITY;
+        if (this.sketch != null) {
+            this.sketch.reset();
+        }
+    }
+
+    boolean hasQuantiles() {
+        return this.sketch != null;
+    }
+
+    long getCount() {
+        return this.count;
+    }
+
+    double getSum() {
+        return this.sum;
+    }
+
+    double getMean() {
+        return this.count > 0 ? this.mean : Double.NaN;
+    }
+
+    double getMin() {
+        return this.count > 0 ? this.min : Double.NaN;
+    }
+
+    double getMax() {
+        return this.count > 0 ? this.max : Double.NaN;
+    }
+
+    /**
+     * Returns the population standard deviation.
+     */
+    double getStandardDeviation() {
+        return this.count > 0 ? Math.sqrt(this.m2 / this.count) : Double.NaN;
+    }
+
+    double getQuantile(final double quantile) {
+        if (this.count == 0 || this.sketch == null) {
+            return Double.NaN;
+        }
+        // the sketch is approximate, the extremes are known exactly
+        return Math.max(this.min, Math.min(this.max, this.sketch.getQuantile(quantile)));
+    }
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.aggregation;
+
+import java.util.Locale;
+
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.type.TypedValues;
+
+/**
+ * A function computed on the values of a property in a window.
+ */
+final class AggregationFunction {
+
+    enum Kind {
+        MIN,
+        MAX,
+        MEAN,
+        SUM,
+        COUNT,
+        STDDEV,
+        PERCENTILE
+    }
+
+    private final String name;
+    private final Kind kind;
+    private final double quantile;
+
+    private AggregationFunction(final String name, final Kind kind, final double quantile) {
+        this.name = name;
+        this.kind = kind;
+        this.quantile = quantile;
+    }
+
+    /**
+     * Parses a function name: min, max, mean (or avg), sum, count, stddev, or p followed by a percentile, as p99.9
+     *
+     * @throws IllegalArgumentException
+     *             if the name is not valid
+     */
+    static AggregationFunction parse(final String value) {
+        final String name = value.trim().toLowerCase(Locale.ENGLISH);
+        switch (name) {
+        case "min":
+            return new AggregationFunction(name, Kind.MIN, 0);
+        case "max":
+            return new AggregationFunction(name, Kind.MAX, 0);
+        case "mean":
+        case "avg":
+            return new AggregationFunction(name, Kind.MEAN, 0);
+        case "sum":
+            return new AggregationFunction(name, Kind.SUM, 0);
+        case "count":
+            return new AggregationFunction(name, Kind.COUNT, 0);
+        case "stddev":
+            return new AggregationFunction(name, Kind.STDDEV, 0);
+        default:
+            break;
+        }
+        if (name.startsWith("p")) {
+            try {
+                final double percentile = Double.parseDouble(name.substring(1));
+                if (percentile >= 0 && percentile <= 100) {
+                    return new AggregationFunction(name, Kind.PERCENTILE, percentile / 100);
+                }
+            } catch (NumberFormatException e) {
+                // not a percentile
+            }
+        }
+        throw new IllegalArgumentException("Unknown aggregation function: " + value);
+    }
+
+    String getName() {
+        return this.name;
+    }
+
+    Kind getKind() {
+        return this.kind;
+    }
+
+    TypedValue<?> apply(final Accumulator accumulator) {
+        switch (this.kind) {
+        case MIN:
+            return TypedValues.newDoubleValue(accumulator.getMin());
+        case MAX:
+            return TypedValues.newDoubleValue(accumulator.getMax());
+        case MEAN:
+            return TypedValues.newDoubleValue(accumulator.getMean());
+        case SUM:
+            return TypedValues.newDoubleValue(accumulator.getSum());
+        case COUNT:
+            return TypedValues.newLongValue(accumulator.getCount());
+        case STDDEV:
+            return TypedValues.newDoubleValue(accumulator.getStandardDeviation());
+        default:
+            return TypedValues.newDoubleValue(accumulator.getQuantile(this.quantile));
+        }
+    }
+}
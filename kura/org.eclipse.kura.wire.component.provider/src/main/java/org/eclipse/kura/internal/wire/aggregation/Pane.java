@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.aggregation;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.kura.internal.wire.aggregation.AggregationFunction.Kind;
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.wire.WireRecord;
+
+/**
+ * The accumulators of the records received in a part of a window, by group and property.
+ * <p>
+ * The accumulators are reused when the pane is reset, only the ones that received no value since the previous reset
+ * are discarded.
+ */
+final class Pane {
+
+    private final Map<TypedValue<?>, Map<String, Accumulator>> groups = new HashMap<>();
+    private int records;
+    private long firstTimestamp;
+    private long lastTimestamp;
+
+    void add(final WireRecord record, final long timestamp, final WindowAggregatorOptions options) {
+        final String groupBy = options.getGroupBy();
+        final Map<String, TypedValue<?>> properties = record.getProperties();
+        final TypedValue<?> group = groupBy != null ? properties.get(groupBy) : null;
+
+        final Map<String, Accumulator> accumulators = this.groups.computeIfAbsent(group, g -> new HashMap<>());
+        for (final Entry<String, TypedValue<?>> entry : properties.entrySet()) {
+            final String name = entry.getKey();
+            final Object value = entry.getValue() != null ? entry.getValue().getValue() : null;
+            final double number;
+            if (value instanceof Number) {
+                number = ((Number) value).doubleValue();
+            } else if (value instanceof Boolean) {
+                number = (Boolean) value ? 1 : 0;
+            } else {
+                continue;
+            }
+            if (name.equals(groupBy)) {
+                continue;
+            }
+            Accumulator accumulator = accumulators.get(name);
+            if (accumulator == null) {
+                final List<AggregationFunction> functions = getFunctions(options, name);
+                if (functions == null) {
+                    continue;
+                }
+                accumulator = new Accumulator(functions.stream().anyMatch(f -> f.getKind() == Kind.PERCENTILE));
+                accumulators.put(name, accumulator);
+            }
+            accumulator.add(number);
+        }
+
+        if (this.records == 0) {
+            this.firstTimestamp = timestamp;
+        }
+        this.lastTimestamp = timestamp;
+        this.records++;
+    }
+
+    /**
+     * Adds the accumulators of this pane to the provided ones.
+     */
+    void mergeInto(final Map<TypedValue<?>, Map<String, Accumulator>> target) {
+        for (final Entry<TypedValue<?>, Map<String, Accumulator>> group : this.groups.entrySet()) {
+            final Map<String, Accumulator> targetGroup = target.computeIfAbsent(group.getKey(), g -> new HashMap<>());
+            for (final Entry<String, Accumulator> entry : group.getValue().entrySet()) {
+                final Accumulator accumulator = entry.getValue();
+                if (accumulator.getCount() > 0) {
+                    targetGroup.computeIfAbsent(entry.getKey(), p -> new Accumulator(accumulator.hasQuantiles()))
+                            .merge(accumulator);
+                }
+            }
+        }
+    }
+
+    Map<TypedValue<?>, Map<String, Accumulator>> getGroups() {
+        return this.groups;
+    }
+
+    int getRecords() {
+        return this.records;
+    }
+
+    long getFirstTimestamp() {
+        return this.firstTimestamp;
+    }
+
+    long getLastTimestamp() {
+        return this.lastTimestamp;
+    }
+
+    void reset() {
+        final Iterator<Map<String, Accumulator>> groupIterator = this.groups.values().iterator();
+        while (groupIterator.hasNext()) {
+            final Map<String, Accumulator> accumulators = groupIterator.next();
+            final Iterator<Accumulator> iterator = accumulators.values().iterator();
+            while (iterator.hasNext()) {
+                final Accumulator accumulator = iterator.next();
+                if (accumulator.getCount() == 0) {
+                    iterator.remove();
+                } else {
+                    accumulator.reset();
+                }
+            }
+            if (accumulators.isEmpty()) {
+                groupIterator.remove();
+            }
+        }
+        this.records = 0;
+    }
+
+    static List<AggregationFunction> getFunctions(final WindowAggregatorOptions options, final String property) {
+        final Map<String, List<AggregationFunction>> functions = options.getFunctions();
+        final List<AggregationFunction> result = functions.get(property);
+        return result != null ? result : functions.get(WindowAggregatorOptions.WILDCARD);
+    }
+}
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.aggregation;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable quantile sketch with a relative error of 1%.
+ * <p>
+ * Values are counted in buckets whose bounds grow geometrically, as in DDSketch: bucket i holds the values whose
+ * magnitude is in (gamma^(i-1), gamma^i]. Positive and negative values have separate buckets, values too close to
+ * zero are counted as zero. Adding a value takes constant time and the memory depends only on the range of the
+ * values, not on their number.
+ */
+final class QuantileSketch {
+
+    private static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    // bounds the number of buckets, magnitudes beyond e^(+-80) lose accuracy
+    private static final int MAX_INDEX = (int) Math.ceil(80 / LOG_GAMMA);
+    private static final double MIN_MAGNITUDE = Math.pow(GAMMA, -MAX_INDEX);
+
+    private final Buckets positive = new Buckets();
+    private final Buckets negative = new Buckets();
+    private long zeroCount;
+    private long count;
+
+    void add(final double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (value >= MIN_MAGNITUDE) {
+            this.positive.add(index(value), 1);
+        } else if (value <= -MIN_MAGNITUDE) {
+            this.negative.add(index(-value), 1);
+        } else {
+            this.zeroCount++;
+        }
+        this.count++;
+    }
+
+    void merge(final QuantileSketch other) {
+        this.positive.merge(other.positive);
+        this.negative.merge(other.negative);
+        this.zeroCount += other.zeroCount;
+        this.count += other.count;
+    }
+
+    void reset() {
+        this.positive.reset();
+        this.negative.reset();
+        this.zeroCount = 0;
+        this.count = 0;
+    }
+
+    double getQuantile(final double quantile) {
+        if (this.count == 0) {
+            return Double.NaN;
+        }
+        final long rank = (long) (quantile * (this.count - 1));
+
+        // negative values, from the largest magnitude
+        long seen = 0;
+        for (int i = this.negative.counts.length - 1; i >= 0; i--) {
+            seen += this.negative.counts[i];
+            if (seen > rank) {
+                return -value(i + this.negative.offset);
+            }
+        }
+        seen += this.zeroCount;
+        if (seen > rank) {
+            return 0;
+        }
+        for (int i = 0; i < this.positive.counts.length; i++) {
+            seen += this.positive.counts[i];
+            if (seen > rank) {
+                return value(i + this.positive.offset);
+            }
+        }
+        return value(this.positive.offset + this.positive.counts.length - 1);
+    }
+
+    private static int index(final double magnitude) {
+        final int index = (int) Math.ceil(Math.log(magnitude) / LOG_GAMMA);
+        return Math.max(-MAX_INDEX, Math.min(MAX_INDEX, index));
+    }
+
+    // the value with the same relative distance from both bounds of the bucket
+    private static double value(final int index) {
+        return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+    }
+
+    /**
+     * The counts of a contiguous range of bucket indexes, grown as needed.
+     */
+    private static final class Buckets {
+
+        private long[] counts = new long[0];
+        private int offset;
+
+        void add(final int index, final long n) {
+            if (this.counts.length == 0) {
+                this.counts = new long[16];
+                this.offset = index - 8;
+            } else if (index < this.offset || index >= this.offset + this.counts.length) {
+                grow(index);
+            }
+            this.counts[index - this.offset] += n;
+        }
+
+        void merge(final Buckets other) {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0) {
+                    add(i + other.offset, other.counts[i]);
+                }
+            }
+        }
+
+        void reset() {
+            Arrays.fill(this.counts, 0);
+        }
+
+        private void grow(final int index) {
+            final int low = Math.min(index, this.offset);
+            final int high = Math.max(index, this.offset + this.counts.length - 1);
+            // leave some room in the growing direction
+            final int length = Math.max(high - low + 1, this.counts.length * 2);
+            final int newOffset = index < this.offset ? high - length + 1 : low;
+            final long[] newCounts = new long[length];
+            System.arraycopy(this.counts, 0, newCounts, this.offset - newOffset, this.counts.length);
+            this.counts = newCounts;
+            this.offset = newOffset;
+        }
+    }
+}
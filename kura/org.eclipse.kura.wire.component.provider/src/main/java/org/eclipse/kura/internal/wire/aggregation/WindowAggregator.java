@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.aggregation;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.kura.configuration.ConfigurableComponent;
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.type.TypedValues;
+import org.eclipse.kura.wire.WireComponent;
+import org.eclipse.kura.wire.WireEmitter;
+import org.eclipse.kura.wire.WireEnvelope;
+import org.eclipse.kura.wire.WireHelperService;
+import org.eclipse.kura.wire.WireReceiver;
+import org.eclipse.kura.wire.WireRecord;
+import org.eclipse.kura.wire.WireSupport;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.component.ComponentContext;
+import org.osgi.service.wireadmin.Wire;
+
+/**
+ * The Class WindowAggregator is a Wire Component that computes statistics on the numeric properties of the received
+ * {@link WireRecord}s over tumbling or sliding windows, defined by time or by number of records.
+ * <p>
+ * A window is made of panes as long as its slide, so that each received value updates a single accumulator in
+ * constant time, and a sliding window is computed by merging the accumulators of its panes when it is emitted. When a
+ * window ends, a record is emitted for each group, with the window bounds and a property named
+ * <code>&lt;property&gt;_&lt;function&gt;</code> for each configured function.
+ */
+public final class WindowAggregator implements WireEmitter, WireReceiver, ConfigurableComponent {
+
+    private static final Logger logger = LogManager.getLogger(WindowAggregator.class);
+
+    static final String WINDOW_START_PROPERTY = "window_start";
+
+    static final String WINDOW_END_PROPERTY = "window_end";
+
+    private volatile WireHelperService wireHelperService;
+
+    private WireSupport wireSupport;
+
+    private WindowAggregatorOptions options;
+
+    private Pane[] panes;
+
+    private int currentPane;
+
+    /** The end of the current pane in time mode, in milliseconds */
+    private long paneEnd;
+
+    private ScheduledExecutorService executor;
+
+    private ScheduledFuture<?> closeTask;
+
+    /** Incremented on each update, so that a timer scheduled with the previous options stops */
+    private int timerGeneration;
+
+    public void bindWireHelperService(final WireHelperService wireHelperService) {
+        if (isNull(this.wireHelperService)) {
+            this.wireHelperService = wireHelperService;
+        }
+    }
+
+    public void unbindWireHelperService(final WireHelperService wireHelperService) {
+        if (this.wireHelperService == wireHelperService) {
+            this.wireHelperService = null;
+        }
+    }
+
+    protected void activate(final ComponentContext componentContext, final Map<String, Object> properties) {
+        logger.info("Activating Window Aggregator...");
+        this.wireSupport = this.wireHelperService.newWireSupport(this,
+                (ServiceReference<WireComponent>) componentContext.getServiceReference());
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "WindowAggregator");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        updated(properties);
+        logger.info("Activating Window Aggregator... Done");
+    }
+
+    public synchronized void updated(final Map<String, Object> properties) {
+        logger.info("Updating Window Aggregator...");
+        this.options = new WindowAggregatorOptions(properties);
+
+        // the windows in progress are discarded
+        this.panes = new Pane[this.options.getPaneCount()];
+        for (int i = 0; i < this.panes.length; i++) {
+            this.panes[i] = new Pane();
+        }
+        this.currentPane = 0;
+
+        if (this.closeTask != null) {
+            this.closeTask.cancel(false);
+            this.closeTask = null;
+        }
+        this.timerGeneration++;
+        if (!this.options.isCountMode()) {
+            this.paneEnd = alignedPaneEnd(System.currentTimeMillis());
+            scheduleClose(this.timerGeneration);
+        }
+        logger.info("Updating Window Aggregator... Done");
+    }
+
+    protected void deactivate(final ComponentContext componentContext) {
+        logger.info("Deactivating Window Aggregator...");
+        this.executor.shutdownNow();
+        logger.info("Deactivating Window Aggregator... Done");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void onWireReceive(final WireEnvelope wireEnvelope) {
+        requireNonNull(wireEnvelope, "Wire Envelope cannot be null");
+
+        final long now = System.currentTimeMillis();
+        final boolean countMode = this.options.isCountMode();
+        if (!countMode) {
+            closePanes(now);
+        }
+
+        for (final WireRecord record : wireEnvelope.getRecords()) {
+            this.panes[this.currentPane].add(record, now, this.options);
+            if (countMode && this.panes[this.currentPane].getRecords() >= this.options.getPaneLength()) {
+                closePane();
+            }
+        }
+    }
+
+    private long alignedPaneEnd(final long timestamp) {
+        final long paneLength = this.options.getPaneLength();
+        return timestamp - Math.floorMod(timestamp, paneLength) + paneLength;
+    }
+
+    private void scheduleClose(final int generation) {
+        final long delay = Math.max(0, this.paneEnd - System.currentTimeMillis());
+        try {
+            this.closeTask = this.executor.schedule(() -> onCloseTimer(generation), delay, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            logger.debug("Window Aggregator deactivated", e);
+        }
+    }
+
+    private synchronized void onCloseTimer(final int generation) {
+        if (generation != this.timerGeneration) {
+            return;
+        }
+        closePanes(System.currentTimeMillis());
+        scheduleClose(generation);
+    }
+
+    /**
+     * Closes the panes that ended before the provided time.
+     */
+    private void closePanes(final long now) {
+        int closed = 0;
+        while (now >= this.paneEnd && closed < this.panes.length) {
+            closePane();
+            this.paneEnd += this.options.getPaneLength();
+            closed++;
+        }
+        if (now >= this.paneEnd) {
+            // no records for longer than a window, all the panes are empty
+            this.paneEnd = alignedPaneEnd(now);
+        }
+    }
+
+    /**
+     * Emits the window that ends with the current pane and moves to the next pane.
+     */
+    private void closePane() {
+        final Pane pane = this.panes[this.currentPane];
+        final Map<TypedValue<?>, Map<String, Accumulator>> groups;
+        if (this.panes.length == 1) {
+            groups = pane.getGroups();
+        } else {
+            groups = new HashMap<>();
+            for (final Pane p : this.panes) {
+                p.mergeInto(groups);
+            }
+        }
+
+        final long windowStart;
+        final long windowEnd;
+        if (this.options.isCountMode()) {
+            long first = Long.MAX_VALUE;
+            for (final Pane p : this.panes) {
+                if (p.getRecords() > 0) {
+                    first = Math.min(first, p.getFirstTimestamp());
+                }
+            }
+            windowStart = first;
+            windowEnd = pane.getLastTimestamp();
+        } else {
+            windowStart = this.paneEnd - (long) this.options.getPaneLength() * this.panes.length;
+            windowEnd = this.paneEnd;
+        }
+
+        final List<WireRecord> records = buildRecords(groups, windowStart, windowEnd);
+
+        // the oldest pane leaves the window, for a tumbling window this is the pane just read
+        this.currentPane = (this.currentPane + 1) % this.panes.length;
+        this.panes[this.currentPane].reset();
+
+        if (!records.isEmpty()) {
+            this.wireSupport.emit(records);
+        }
+    }
+
+    private List<WireRecord> buildRecords(final Map<TypedValue<?>, Map<String, Accumulator>> groups,
+            final long windowStart, final long windowEnd) {
+        final String groupBy = this.options.getGroupBy();
+        final List<WireRecord> records = new ArrayList<>(groups.size());
+
+        for (final Entry<TypedValue<?>, Map<String, Accumulator>> group : groups.entrySet()) {
+            final Map<String, TypedValue<?>> properties = new HashMap<>();
+            for (final Entry<String, Accumulator> entry : group.getValue().entrySet()) {
+                final Accumulator accumulator = entry.getValue();
+                if (accumulator.getCount() == 0) {
+                    continue;
+                }
+                for (final AggregationFunction function : Pane.getFunctions(this.options, entry.getKey())) {
+                    properties.put(entry.getKey() + "_" + function.getName(), function.apply(accumulator));
+                }
+            }
+            if (properties.isEmpty()) {
+                continue;
+            }
+            if (groupBy != null && group.getKey() != null) {
+                properties.put(groupBy, group.getKey());
+            }
+            properties.put(WINDOW_START_PROPERTY, TypedValues.newLongValue(windowStart));
+            properties.put(WINDOW_END_PROPERTY, TypedValues.newLongValue(windowEnd));
+            records.add(new WireRecord(properties));
+        }
+        return records;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void producersConnected(final Wire[] wires) {
+        this.wireSupport.producersConnected(wires);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void updated(final Wire wire, final Object value) {
+        this.wireSupport.updated(wire, value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object polled(final Wire wire) {
+        return this.wireSupport.polled(wire);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void consumersConnected(final Wire[] wires) {
+        this.wireSupport.consumersConnected(wires);
+    }
+}
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.aggregation;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Contains the options of the {@link WindowAggregator}.
+ */
+final class WindowAggregatorOptions {
+
+    private static final Logger logger = LogManager.getLogger(WindowAggregatorOptions.class);
+
+    static final String WILDCARD = "*";
+
+    private static final String WINDOW_TYPE = "window.type";
+    private static final String WINDOW_MODE = "window.mode";
+    private static final String WINDOW_SIZE = "window.size";
+    private static final String WINDOW_SLIDE = "window.slide";
+    private static final String FUNCTIONS = "functions";
+    private static final String GROUP_BY = "group.by";
+
+    private static final String SLIDING = "sliding";
+    private static final String COUNT = "count";
+
+    private static final int DEFAULT_WINDOW_SIZE = 60000;
+    private static final int DEFAULT_WINDOW_SLIDE = 10000;
+    private static final String DEFAULT_FUNCTIONS = "*=mean,min,max";
+
+    // bounds the memory and the cost of merging the panes of a sliding window
+    private static final int MAX_PANES = 1000;
+
+    private final boolean sliding;
+    private final boolean countMode;
+    private final int windowSize;
+    private final int windowSlide;
+    private final String groupBy;
+    private final Map<String, List<AggregationFunction>> functions;
+
+    WindowAggregatorOptions(final Map<String, Object> properties) {
+        requireNonNull(properties, "Properties cannot be null");
+
+        this.sliding = SLIDING.equals(properties.get(WINDOW_TYPE));
+        this.countMode = COUNT.equals(properties.get(WINDOW_MODE));
+        this.windowSize = getPositiveInteger(properties, WINDOW_SIZE, DEFAULT_WINDOW_SIZE);
+        final int slide = getPositiveInteger(properties, WINDOW_SLIDE, DEFAULT_WINDOW_SLIDE);
+        this.windowSlide = this.sliding ? Math.max(Math.min(slide, this.windowSize), this.windowSize / MAX_PANES)
+                : this.windowSize;
+
+        final Object groupByProperty = properties.get(GROUP_BY);
+        this.groupBy = groupByProperty instanceof String && !((String) groupByProperty).trim().isEmpty()
+                ? ((String) groupByProperty).trim() : null;
+
+        final Object functionsProperty = properties.getOrDefault(FUNCTIONS, DEFAULT_FUNCTIONS);
+        this.functions = parseFunctions(String.valueOf(functionsProperty));
+    }
+
+    /**
+     * Returns the length of a pane, the part of the window that is computed before it slides. Tumbling windows have
+     * a single pane.
+     *
+     * @return the pane length in milliseconds or records
+     */
+    int getPaneLength() {
+        return this.windowSlide;
+    }
+
+    /**
+     * Returns the number of panes of a window.
+     *
+     * @return the number of panes
+     */
+    int getPaneCount() {
+        return (this.windowSize + this.windowSlide - 1) / this.windowSlide;
+    }
+
+    boolean isCountMode() {
+        return this.countMode;
+    }
+
+    /**
+     * Returns the property whose values identify the groups aggregated separately.
+     *
+     * @return the property name, or null if the records are not grouped
+     */
+    String getGroupBy() {
+        return this.groupBy;
+    }
+
+    /**
+     * Returns the functions by property name, the {@link #WILDCARD} entry applies to the properties not listed.
+     *
+     * @return the functions
+     */
+    Map<String, List<AggregationFunction>> getFunctions() {
+        return this.functions;
+    }
+
+    // property=function,function;property=function...
+    private static Map<String, List<AggregationFunction>> parseFunctions(final String value) {
+        final Map<String, List<AggregationFunction>> result = new HashMap<>();
+        for (final String entry : value.split("[;\\n]")) {
+            final int separator = entry.indexOf('=');
+            if (separator <= 0) {
+                if (!entry.trim().isEmpty()) {
+                    logger.warn("Invalid aggregation entry: {}", entry);
+                }
+                continue;
+            }
+            final String property = entry.substring(0, separator).trim();
+            final List<AggregationFunction> functions = new ArrayList<>();
+            for (final String name : entry.substring(separator + 1).split(",")) {
+                try {
+                    functions.add(AggregationFunction.parse(name));
+                } catch (IllegalArgumentException e) {
+                    logger.warn(e.getMessage());
+                }
+            }
+            if (!functions.isEmpty()) {
+                result.put(property, Collections.unmodifiableList(functions));
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static int getPositiveInteger(final Map<String, Object> properties, final String key,
+            final int defaultValue) {
+        final Object value = properties.get(key);
+        if (value instanceof Integer && (Integer) value > 0) {
+            return (Integer) value;
+        }
+        return defaultValue;
+    }
+}
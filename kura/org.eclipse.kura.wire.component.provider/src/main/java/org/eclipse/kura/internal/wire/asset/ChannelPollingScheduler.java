@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.asset;
+
+import static org.eclipse.kura.channel.ChannelType.WRITE;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.eclipse.kura.channel.Channel;
+import org.eclipse.kura.channel.ChannelFlag;
+import org.eclipse.kura.channel.ChannelRecord;
+import org.eclipse.kura.type.DataType;
+import org.eclipse.kura.type.TypedValue;
+
+/**
+ * Decides which channels of a Wire Asset are read at each trigger, according to their
+ * {@code +poll.interval}, {@code +poll.max.interval} and {@code +deadband} properties.
+ * <p>
+ * A channel is read at the first trigger after its poll interval has elapsed, with a tolerance of half the trigger
+ * period, so that a channel with an interval equal to the trigger period is read at each trigger despite the timer
+ * jitter. If a maximum interval is configured, the interval of a channel is doubled each time its value does not
+ * change by more than the deadband, up to the maximum, and is reset to the poll interval when the value changes. A
+ * channel without a poll interval is read at each trigger.
+ */
+final class ChannelPollingScheduler {
+
+    private final Map<String, ChannelState> channels;
+
+    private long lastTrigger = -1;
+
+    private long triggerPeriod;
+
+    private ChannelPollingScheduler(final Map<String, ChannelState> channels) {
+        this.channels = channels;
+    }
+
+    /**
+     * Creates the scheduler for the enabled READ and READ_WRITE channels of an asset.
+     *
+     * @return the scheduler, or null if no channel defines a poll interval or a maximum interval, all the channels are
+     *         then read at each trigger
+     */
+    static ChannelPollingScheduler create(final Map<String, Channel> assetChannels) {
+        final Map<String, ChannelState> channels = new HashMap<>();
+        boolean scheduled = false;
+
+        for (final Channel channel : assetChannels.values()) {
+            if (!channel.isEnabled() || channel.getType() == WRITE) {
+                continue;
+            }
+            final Map<String, Object> config = channel.getConfiguration();
+            final long interval = getLong(config, WireAssetConstants.POLL_INTERVAL_PROP_NAME.value());
+            final long maxInterval = getLong(config, WireAssetConstants.POLL_MAX_INTERVAL_PROP_NAME.value());
+            final double deadband = getDouble(config, WireAssetConstants.DEADBAND_PROP_NAME.value());
+
+            channels.put(channel.getName(), new ChannelState(interval, Math.max(interval, maxInterval), deadband));
+            scheduled |= interval > 0 || maxInterval > 0;
+        }
+
+        return scheduled ? new ChannelPollingScheduler(channels) : null;
+    }
+
+    /**
+     * Returns the names of the channels to be read at a trigger.
+     */
+    synchronized Set<String> getDueChannels(final long now) {
+        this.triggerPeriod = this.lastTrigger < 0 ? 0 : Math.max(0, now - this.lastTrigger);
+        this.lastTrigger = now;
+        final long tolerance = this.triggerPeriod / 2;
+
+        final Set<String> due = new HashSet<>();
+        for (final Map.Entry<String, ChannelState> entry : this.channels.entrySet()) {
+            if (entry.getValue().nextRead - tolerance <= now) {
+                due.add(entry.getKey());
+            }
+        }
+        return due;
+    }
+
+    /**
+     * Schedules the next reads of the channels that have been read.
+     */
+    synchronized void onChannelsRead(final List<ChannelRecord> records, final long now) {
+        for (final ChannelRecord record : records) {
+            final ChannelState state = this.channels.get(record.getChannelName());
+            if (state != null) {
+                state.update(record, now, this.triggerPeriod);
+            }
+        }
+    }
+
+    private static long getLong(final Map<String, Object> config, final String key) {
+        try {
+            return Math.max(0, Long.parseLong(config.get(key).toString().trim()));
+        } catch (final Exception e) {
+            return 0;
+        }
+    }
+
+    private static double getDouble(final Map<String, Object> config, final String key) {
+        try {
+            return Math.max(0, Double.parseDouble(config.get(key).toString().trim()));
+        } catch (final Exception e) {
+            return 0;
+        }
+    }
+
+    private static final class ChannelState {
+
+        private final long interval;
+        private final long maxInterval;
+        private final double deadband;
+
+        private long currentInterval;
+        private long nextRead;
+        private TypedValue<?> lastValue;
+
+        ChannelState(final long interval, final long maxInterval, final double deadband) {
+            this.interval = interval;
+            this.maxInterval = maxInterval;
+            this.deadband = deadband;
+            this.currentInterval = interval;
+        }
+
+        void update(final ChannelRecord record, final long now, final long triggerPeriod) {
+            if (record.getChannelStatus() == null || record.getChannelStatus().getChannelFlag() != ChannelFlag.SUCCESS
+                    || record.getValue() == null) {
+                // retry at the base rate
+                this.currentInterval = this.interval;
+            } else {
+                final TypedValue<?> value = record.getValue();
+                if (this.lastValue == null || isChanged(this.lastValue, value)) {
+                    this.currentInterval = this.interval;
+                    this.lastValue = value;
+                } else {
+                    // a channel read at each trigger backs off from the trigger period
+                    final long base = this.interval > 0 ? this.interval : triggerPeriod;
+                    this.currentInterval = Math.min(Math.max(base, this.currentInterval * 2), this.maxInterval);
+                }
+            }
+            this.nextRead = now + this.currentInterval;
+        }
+
+        /**
+         * Compares the value with the last value that was considered as changed, so that a slow drift is detected
+         * once it exceeds the deadband.
+         */
+        private boolean isChanged(final TypedValue<?> previous, final TypedValue<?> value) {
+            final DataType type = value.getType();
+            if (previous.getType() != type) {
+                return true;
+            }
+            switch (type) {
+            case INTEGER:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                final double delta = ((Number) value.getValue()).doubleValue()
+                        - ((Number) previous.getValue()).doubleValue();
+                return Math.abs(delta) > this.deadband;
+            case BYTE_ARRAY:
+                return !Arrays.equals((byte[]) previous.getValue(), (byte[]) value.getValue());
+            default:
+                return !Objects.equals(previous.getValue(), value.getValue());
+            }
+        }
+    }
+}
@@ -23,6 +23,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -88,6 +90,19 @@ import org.osgi.service.wireadmin.Wire;
  * contains the typed value of this channel in the received {@link WireRecord} will be
  * considered as a WRITE Value in that specific channel in B and this value will
  * be written to {@code B}'s channel
+ * <br/>
+ * <br/>
+ * By default all the READ and READ_WRITE channels are read each time a {@link WireEnvelope} is received. If a channel
+ * defines the {@code +poll.interval} property, it is read only at the first trigger after this interval has elapsed,
+ * and if it defines {@code +poll.max.interval}, this interval is doubled each time its value does not change by more
+ * than {@code +deadband}. The channels due at a trigger are read together, and a single {@link WireRecord} with their
+ * values is emitted.
+ * <br/>
+ * <br/>
+ * If the {@code async.io} property is set to true, the reads and writes triggered by a {@link WireEnvelope} are
+ * submitted without waiting for their completion, and the values are emitted when the read completes. The assets
+ * triggered by the same envelope then access their devices in parallel, within the limits declared by their
+ * drivers.
  *
  * @see Channel
  * @see ChannelRecord
@@ -106,6 +121,10 @@ public final class WireAsset extends BaseAsset implements WireEmitter, WireRecei
 
     private PreparedEmit preparedEmit;
 
+    private volatile ChannelPollingScheduler pollingScheduler;
+
+    private final AtomicBoolean readPending = new AtomicBoolean();
+
     /**
      * Binds the Wire Helper Service.
      *
@@ -158,6 +177,7 @@ public final class WireAsset extends BaseAsset implements WireEmitter, WireRecei
         logger.debug("Updating Wire Asset...");
         this.options = new WireAssetOptions(properties);
         super.updated(properties);
+        this.pollingScheduler = ChannelPollingScheduler.create(getAssetConfiguration().getAssetChannels());
         logger.debug("Updating Wire Asset...Done");
     }
 
@@ -199,6 +219,8 @@ public final class WireAsset extends BaseAsset implements WireEmitter, WireRecei
      *
      * Both the aforementioned operations are performed as soon as this Wire Component
      * receives {@code Non Null} {@link WireEnvelop} from its upstream Wire Component(s).
+     * If {@code async.io} is enabled, the operations are submitted in the same order
+     * and this method returns without waiting for them.
      *
      * @param wireEnvelope
      *            the received {@link WireEnvelope}
@@ -209,12 +231,22 @@ public final class WireAsset extends BaseAsset implements WireEmitter, WireRecei
     public void onWireReceive(final WireEnvelope wireEnvelope) {
         requireNonNull(wireEnvelope, "Wire Envelope cannot be null");
 
-        emitAllReadChannels();
+        final boolean asyncIo = this.options.isAsyncIo();
+
+        if (asyncIo) {
+            emitAllReadChannelsAsync();
+        } else {
+            emitAllReadChannels();
+        }
 
         final List<WireRecord> records = wireEnvelope.getRecords();
         for (WireRecord wireRecord : records) {
             final List<ChannelRecord> channelRecordsToWrite = determineWritingChannels(wireRecord);
-            writeChannels(channelRecordsToWrite);
+            if (asyncIo) {
+                writeChannelsAsync(channelRecordsToWrite);
+            } else {
+                writeChannels(channelRecordsToWrite);
+            }
         }
     }
 
@@ -229,12 +261,71 @@ public final class WireAsset extends BaseAsset implements WireEmitter, WireRecei
     }
 
     private void emitAllReadChannels() {
-        if (hasReadChannels()) {
-            try {
+        if (!hasReadChannels()) {
+            return;
+        }
+        final ChannelPollingScheduler scheduler = this.pollingScheduler;
+        try {
+            if (scheduler == null) {
                 emitChannelRecords(readAllChannels());
-            } catch (final Exception e) {
-                logger.error("Error while performing read from the Wire Asset...", e);
+                return;
+            }
+
+            final long now = System.currentTimeMillis();
+            final Set<String> dueChannels = scheduler.getDueChannels(now);
+            if (dueChannels.isEmpty()) {
+                return;
+            }
+            final List<ChannelRecord> channelRecords = readPrepared(dueChannels);
+            scheduler.onChannelsRead(channelRecords, now);
+            emitChannelRecords(channelRecords);
+        } catch (final Exception e) {
+            logger.error("Error while performing read from the Wire Asset...", e);
+        }
+    }
+
+    private void emitAllReadChannelsAsync() {
+        if (!hasReadChannels()) {
+            return;
+        }
+        if (!this.readPending.compareAndSet(false, true)) {
+            logger.debug("Previous read still pending, skipping");
+            return;
+        }
+        final ChannelPollingScheduler scheduler = this.pollingScheduler;
+        final long now = System.currentTimeMillis();
+        try {
+            final CompletableFuture<List<ChannelRecord>> read;
+            if (scheduler == null) {
+                read = readAllChannelsAsync();
+            } else {
+                final Set<String> dueChannels = scheduler.getDueChannels(now);
+                if (dueChannels.isEmpty()) {
+                    this.readPending.set(false);
+                    return;
+                }
+                read = readPreparedAsync(dueChannels);
             }
+
+            read.whenComplete((channelRecords, err) -> {
+                try {
+                    if (err != null) {
+                        logger.error("Error while performing read from the Wire Asset...", err);
+                        return;
+                    }
+                    if (scheduler != null) {
+                        scheduler.onChannelsRead(channelRecords, now);
+                    }
+                    emitChannelRecords(channelRecords);
+                } catch (final Exception e) {
+                    logger.error("Error while performing read from the Wire Asset...", e);
+                } finally {
+                    this.readPending.set(false);
+                }
+            });
+        } catch (final Exception e) {
+            this.readPending.set(false);
+            logger.error("Error while performing read from the Wire Asset...", e);
         }
     }
 
@@ -330,6 +421,22 @@ public final class WireAsset extends BaseAsset implements WireEmitter, WireRecei
         }
     }
 
+    private void writeChannelsAsync(final List<ChannelRecord> channelRecordsToWrite) {
+        if (channelRecordsToWrite.isEmpty()) {
+            return;
+        }
+
+        try {
+            writeAsync(channelRecordsToWrite).whenComplete((ok, err) -> {
+                if (err != null) {
+                    logger.error("Error while performing write from the Wire Asset...", err);
+                }
+            });
+        } catch (final Exception e) {
+            logger.error("Error while performing write from the Wire Asset...", e);
+        }
+    }
+
     private boolean isListeningChannel(final Map<String, Object> properties) {
         try {
             return Boolean.parseBoolean(properties.get(WireAssetConstants.LISTEN_PROP_NAME.value()).toString());
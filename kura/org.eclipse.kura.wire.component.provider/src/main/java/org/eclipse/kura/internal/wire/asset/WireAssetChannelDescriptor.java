@@ -10,7 +10,10 @@
 
 package org.eclipse.kura.internal.wire.asset;
 
+import static org.eclipse.kura.internal.wire.asset.WireAssetConstants.DEADBAND_PROP_NAME;
 import static org.eclipse.kura.internal.wire.asset.WireAssetConstants.LISTEN_PROP_NAME;
+import static org.eclipse.kura.internal.wire.asset.WireAssetConstants.POLL_INTERVAL_PROP_NAME;
+import static org.eclipse.kura.internal.wire.asset.WireAssetConstants.POLL_MAX_INTERVAL_PROP_NAME;
 
 import org.eclipse.kura.asset.provider.BaseChannelDescriptor;
 import org.eclipse.kura.core.configuration.metatype.Tad;
@@ -33,6 +36,45 @@ public class WireAssetChannelDescriptor extends BaseChannelDescriptor {
 
         this.defaultElements.add(listen);
 
+        final Tad pollInterval = new Tad();
+        pollInterval.setName(POLL_INTERVAL_PROP_NAME.value().substring(1));
+        pollInterval.setId(POLL_INTERVAL_PROP_NAME.value());
+        pollInterval.setDescription(
+                "The minimum time between two reads of the channel in milliseconds, the channel is read at the first"
+                        + " trigger after this time. If set to 0 the channel is read at each trigger");
+        pollInterval.setType(Tscalar.LONG);
+        pollInterval.setRequired(false);
+        pollInterval.setDefault("0");
+        pollInterval.setMin("0");
+
+        this.defaultElements.add(pollInterval);
+
+        final Tad pollMaxInterval = new Tad();
+        pollMaxInterval.setName(POLL_MAX_INTERVAL_PROP_NAME.value().substring(1));
+        pollMaxInterval.setId(POLL_MAX_INTERVAL_PROP_NAME.value());
+        pollMaxInterval.setDescription(
+                "If greater than the poll interval, the time between two reads is doubled each time the value does"
+                        + " not change, up to this time in milliseconds, and is reset when the value changes");
+        pollMaxInterval.setType(Tscalar.LONG);
+        pollMaxInterval.setRequired(false);
+        pollMaxInterval.setDefault("0");
+        pollMaxInterval.setMin("0");
+
+        this.defaultElements.add(pollMaxInterval);
+
+        final Tad deadband = new Tad();
+        deadband.setName(DEADBAND_PROP_NAME.value().substring(1));
+        deadband.setId(DEADBAND_PROP_NAME.value());
+        deadband.setDescription(
+                "The change of a numeric value, in absolute value, up to which the value is considered as not changed"
+                        + " for the poll interval backoff");
+        deadband.setType(Tscalar.DOUBLE);
+        deadband.setRequired(false);
+        deadband.setDefault("0");
+        deadband.setMin("0");
+
+        this.defaultElements.add(deadband);
+
     }
 
     public static WireAssetChannelDescriptor get() {
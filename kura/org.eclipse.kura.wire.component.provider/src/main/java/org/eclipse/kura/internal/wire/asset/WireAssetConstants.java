@@ -14,6 +14,9 @@ import org.eclipse.kura.asset.provider.AssetConstants;
 public enum WireAssetConstants {
 
     LISTEN_PROP_NAME(AssetConstants.CHANNEL_DEFAULT_PROPERTY_PREFIX.value() + "listen"),
+    POLL_INTERVAL_PROP_NAME(AssetConstants.CHANNEL_DEFAULT_PROPERTY_PREFIX.value() + "poll.interval"),
+    POLL_MAX_INTERVAL_PROP_NAME(AssetConstants.CHANNEL_DEFAULT_PROPERTY_PREFIX.value() + "poll.max.interval"),
+    DEADBAND_PROP_NAME(AssetConstants.CHANNEL_DEFAULT_PROPERTY_PREFIX.value() + "deadband"),
 
     PROPERTY_SEPARATOR("_"),
 
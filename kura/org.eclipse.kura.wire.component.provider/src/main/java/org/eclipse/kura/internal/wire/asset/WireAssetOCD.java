@@ -31,6 +31,11 @@ public class WireAssetOCD extends BaseAssetOCD {
 
     private static final String EMIT_ERRORS_DESCRIPTION = "Specifies wheter errors should be included or not in the emitted envelope";
 
+    private static final String ASYNC_IO_DESCRIPTION = "If set to true, the component does not wait for the reads"
+            + " and writes triggered by a received envelope, so that the assets triggered by the same component"
+            + " access their devices in parallel, and emits the values once the read completes."
+            + " A received envelope does not trigger a read while the previous read is still pending.";
+
     private static void addOptions(Tad target, Enum<?>[] values) {
         final List<Option> options = target.getOption();
         for (Enum<?> value : values) {
@@ -80,6 +85,17 @@ public class WireAssetOCD extends BaseAssetOCD {
 
         addAD(emitErrorsAd);
 
+        final Tad asyncIoAd = new Tad();
+        asyncIoAd.setId(WireAssetOptions.ASYNC_IO_PROP_NAME);
+        asyncIoAd.setName(WireAssetOptions.ASYNC_IO_PROP_NAME);
+        asyncIoAd.setCardinality(0);
+        asyncIoAd.setType(Tscalar.BOOLEAN);
+        asyncIoAd.setDescription(ASYNC_IO_DESCRIPTION);
+        asyncIoAd.setRequired(false);
+        asyncIoAd.setDefault("false");
+
+        addAD(asyncIoAd);
+
     }
 
 }
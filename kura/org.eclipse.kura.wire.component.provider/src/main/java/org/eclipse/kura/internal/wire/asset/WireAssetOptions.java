@@ -17,10 +17,12 @@ class WireAssetOptions {
     public static final String EMIT_ALL_CHANNELS_PROP_NAME = "emit.all.channels";
     public static final String TIMESTAMP_MODE_PROP_NAME = "timestamp.mode";
     public static final String EMIT_ERRORS_PROP_NAME = "emit.errors";
+    public static final String ASYNC_IO_PROP_NAME = "async.io";
 
     private boolean emitAllChannels;
     private TimestampMode timestampMode;
     private boolean emitErrors;
+    private boolean asyncIo;
 
     public WireAssetOptions() {
     }
@@ -28,9 +30,11 @@ class WireAssetOptions {
     public WireAssetOptions(Map<String, Object> properties) {
         final Object emitAllChannels = properties.get(EMIT_ALL_CHANNELS_PROP_NAME);
         final Object emitErrors = properties.get(EMIT_ERRORS_PROP_NAME);
+        final Object asyncIo = properties.get(ASYNC_IO_PROP_NAME);
 
         this.emitAllChannels = emitAllChannels instanceof Boolean && (Boolean) emitAllChannels;
         this.emitErrors = emitErrors instanceof Boolean && (Boolean) emitErrors;
+        this.asyncIo = asyncIo instanceof Boolean && (Boolean) asyncIo;
 
         this.timestampMode = extractTimestampMode(properties);
     }
@@ -47,6 +51,10 @@ class WireAssetOptions {
         return emitErrors;
     }
 
+    public boolean isAsyncIo() {
+        return asyncIo;
+    }
+
     private static TimestampMode extractTimestampMode(final Map<String, Object> properties) {
         try {
             return TimestampMode.valueOf(properties.get(TIMESTAMP_MODE_PROP_NAME).toString());
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.expression;
+
+import static java.util.Objects.requireNonNull;
+
+import org.eclipse.kura.type.TypedValue;
+
+/**
+ * A compiled expression over the properties of wire records.
+ * <p>
+ * The expression is parsed once by {@link #compile(String)} into a tree of closures that is evaluated directly on the
+ * {@link TypedValue}s of the records, without creating wrapper objects and without boxing the intermediate results of
+ * numeric operators and comparisons. An expression is immutable and can be evaluated concurrently with different
+ * {@link ExpressionContext}s.
+ * <p>
+ * The language supports:
+ * <ul>
+ * <li>literals: integers, which are longs, floating point numbers, which are doubles, strings between single or double
+ * quotes, <code>true</code>, <code>false</code> and <code>null</code></li>
+ * <li>property references: <code>name</code> or <code>`name with spaces`</code> for a property of the current record,
+ * <code>records[index].name</code> or <code>records[index]['name']</code> for a property of another record of the
+ * envelope; a missing property is null</li>
+ * <li>the operators <code>?:</code>, <code>||</code>, <code>&amp;&amp;</code>, <code>== !=</code>,
+ * <code>&lt; &lt;= &gt; &gt;=</code>, <code>+ - * / %</code>, <code>!</code> and unary <code>-</code>, with the Java
+ * precedence; <code>===</code> and <code>!==</code> are accepted as aliases of <code>==</code> and <code>!=</code></li>
+ * <li>the functions <code>abs min max round floor ceil sqrt pow</code>, the conversions
+ * <code>int long float double string boolean</code>, the string functions
+ * <code>length lower upper contains startsWith endsWith</code>, and <code>emitterPid()</code> and
+ * <code>recordCount()</code></li>
+ * </ul>
+ * Arithmetic on integral values gives an integral result, otherwise the result is a double. <code>+</code> with a
+ * string operand concatenates. Null propagates through arithmetic and functions, is only equal to null, is neither less
+ * nor greater than any value, and is false when used as a condition.
+ */
+public final class Expression {
+
+    private final String source;
+    private final Node root;
+
+    private Expression(final String source, final Node root) {
+        this.source = source;
+        this.root = root;
+    }
+
+    /**
+     * Compiles an expression.
+     *
+     * @param source
+     *            the expression
+     * @return the compiled expression
+     * @throws ExpressionException
+     *             if the expression is not valid
+     * @throws NullPointerException
+     *             if the source is null
+     */
+    public static Expression compile(final String source) {
+        requireNonNull(source, "Expression cannot be null");
+        return new Expression(source, Parser.parseExpression(source));
+    }
+
+    /**
+     * Evaluates this expression.
+     *
+     * @param context
+     *            the records the expression is evaluated on
+     * @return the result, which is a {@link Boolean}, {@link Integer}, {@link Long}, {@link Float}, {@link Double},
+     *         {@link String}, <code>byte[]</code> or null
+     * @throws ExpressionException
+     *             if an operator or a function is applied to values of unsupported types
+     */
+    public Object evaluate(final ExpressionContext context) {
+        return this.root.evaluate(context);
+    }
+
+    /**
+     * Evaluates this expression as a condition.
+     *
+     * @param context
+     *            the records the expression is evaluated on
+     * @return the result, false if it is null
+     * @throws ExpressionException
+     *             if the result is not a boolean, or if an operator or a function is applied to values of unsupported
+     *             types
+     */
+    public boolean evaluateBoolean(final ExpressionContext context) {
+        return this.root.evaluateBoolean(context);
+    }
+
+    /**
+     * Evaluates this expression as a {@link TypedValue}. A reference to a property returns its value as is.
+     *
+     * @param context
+     *            the records the expression is evaluated on
+     * @return the result, or null
+     * @throws ExpressionException
+     *             if an operator or a function is applied to values of unsupported types
+     */
+    public TypedValue<?> evaluateTypedValue(final ExpressionContext context) {
+        return this.root.evaluateTypedValue(context);
+    }
+
+    /**
+     * Returns the source of this expression.
+     *
+     * @return the source
+     */
+    public String getSource() {
+        return this.source;
+    }
+
+    @Override
+    public String toString() {
+        return this.source;
+    }
+}
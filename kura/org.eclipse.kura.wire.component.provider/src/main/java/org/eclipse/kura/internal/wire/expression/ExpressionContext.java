@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.expression;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.wire.WireRecord;
+
+/**
+ * The data an {@link Expression} is evaluated on: the records of a wire envelope, the pid of its emitter and the
+ * current record, whose properties are referenced by name without the <code>records[index].</code> prefix.
+ * <p>
+ * A context is meant to be reused across evaluations and is not thread safe.
+ */
+public final class ExpressionContext {
+
+    private List<WireRecord> records = Collections.emptyList();
+    private String emitterPid;
+    private int currentRecord;
+
+    // registers used for passing numeric results between the nodes without boxing them
+    long longResult;
+    double doubleResult;
+
+    /**
+     * Sets the envelope the expressions are evaluated on, and makes its first record the current one.
+     *
+     * @param emitterPid
+     *            the pid of the emitter of the envelope, can be null
+     * @param records
+     *            the records of the envelope
+     * @throws NullPointerException
+     *             if the records are null
+     */
+    public void setEnvelope(final String emitterPid, final List<WireRecord> records) {
+        requireNonNull(records, "Records cannot be null");
+        this.emitterPid = emitterPid;
+        this.records = records;
+        this.currentRecord = 0;
+    }
+
+    /**
+     * Sets the record whose properties are referenced by name.
+     *
+     * @param index
+     *            the index of the record in the envelope
+     */
+    public void setCurrentRecord(final int index) {
+        this.currentRecord = index;
+    }
+
+    /**
+     * Returns the record whose properties are referenced by name.
+     *
+     * @return the current record, or null if the index set by {@link #setCurrentRecord(int)} is out of bounds
+     */
+    public WireRecord getCurrentRecord() {
+        return getRecord(this.currentRecord);
+    }
+
+    String getEmitterPid() {
+        return this.emitterPid;
+    }
+
+    int getRecordCount() {
+        return this.records.size();
+    }
+
+    int getCurrentRecordIndex() {
+        return this.currentRecord;
+    }
+
+    TypedValue<?> getProperty(final long index, final String name) {
+        final WireRecord record = getRecord(index);
+        return record != null ? record.getProperties().get(name) : null;
+    }
+
+    private WireRecord getRecord(final long index) {
+        if (index < 0 || index >= this.records.size()) {
+            return null;
+        }
+        return this.records.get((int) index);
+    }
+}
@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.expression;
+
+/**
+ * Signals that an expression cannot be compiled, or that its evaluation failed because an operator or a function has
+ * been applied to values of unsupported types.
+ */
+public class ExpressionException extends RuntimeException {
+
+    private static final long serialVersionUID = -1931385937372474452L;
+
+    /**
+     * Instantiates a new expression exception.
+     *
+     * @param message
+     *            the detail message
+     */
+    public ExpressionException(final String message) {
+        super(message);
+    }
+
+    /**
+     * Instantiates a new expression exception.
+     *
+     * @param message
+     *            the detail message
+     * @param cause
+     *            the cause
+     */
+    public ExpressionException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,387 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.expression;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The functions that can be called from an expression.
+ * <p>
+ * A function overrides {@link #apply(Node[], ExpressionContext)}, {@link #applyNumber(Node[], ExpressionContext)} or
+ * both, numeric functions override the latter so that their result is not boxed. Numeric functions return null if an
+ * argument is null.
+ */
+enum Function {
+
+    ABS("abs", 1) {
+
+        @Override
+        int applyNumber(final Node[] arguments, final ExpressionContext context) {
+            final int kind = number(arguments[0], context);
+            if (kind == Node.LONG) {
+                context.longResult = Math.abs(context.longResult);
+            } else if (kind == Node.DOUBLE) {
+                context.doubleResult = Math.abs(context.doubleResult);
+            }
+            return kind;
+        }
+    },
+    MIN("min", 2) {
+
+        @Override
+        int applyNumber(final Node[] arguments, final ExpressionContext context) {
+            return minMax(arguments, context, true);
+        }
+    },
+    MAX("max", 2) {
+
+        @Override
+        int applyNumber(final Node[] arguments, final ExpressionContext context) {
+            return minMax(arguments, context, false);
+        }
+    },
+    ROUND("round", 1) {
+
+        @Override
+        int applyNumber(final Node[] arguments, final ExpressionContext context) {
+            final int kind = number(arguments[0], context);
+            if (kind == Node.DOUBLE) {
+                context.longResult = Math.round(context.doubleResult);
+                return Node.LONG;
+            }
+            return kind;
+        }
+    },
+    FLOOR("floor", 1) {
+
+        @Override
+        int applyNumber(final Node[] arguments, final ExpressionContext context) {
+            final int kind = number(arguments[0], context);
+            if (kind == Node.DOUBLE) {
+                context.doubleResult = Math.floor(context.doubleResult);
+            }
+            return kind;
+        }
+    },
+    CEIL("ceil", 1) {
+
+        @Override
+        int applyNumber(final Node[] arguments, final ExpressionContext context) {
+            final int kind = number(arguments[0], context);
+            if (kind == Node.DOUBLE) {
+                context.doubleResult = Math.ceil(context.doubleResult);
+            }
+            return kind;
+        }
+    },
+    SQRT("sqrt", 1) {
+
+        @Override
+        int applyNumber(final Node[] arguments, final ExpressionContext context) {
+            final int kind = number(arguments[0], context);
+            if (kind == Node.NULL) {
+                return kind;
+            }
+            context.doubleResult = Math.sqrt(toDouble(kind, context));
+            return Node.DOUBLE;
+        }
+    },
+    POW("pow", 2) {
+
+        @Override
+        int applyNumber(final Node[] arguments, final ExpressionContext context) {
+            final int baseKind = number(arguments[0], context);
+            final double base = toDouble(baseKind, context);
+            final int exponentKind = number(arguments[1], context);
+            if (baseKind == Node.NULL || exponentKind == Node.NULL) {
+                return Node.NULL;
+            }
+            context.doubleResult = Math.pow(base, toDouble(exponentKind, context));
+            return Node.DOUBLE;
+        }
+    },
+    TO_INT("int", 1) {
+
+        @Override
+        Object apply(final Node[] arguments, final ExpressionContext context) {
+            final int kind = applyNumber(arguments, context);
+            return kind == Node.LONG ? (Object) (int) context.longResult : null;
+        }
+
+        @Override
+        int applyNumber(final Node[] arguments, final ExpressionContext context) {
+            final int kind = arguments[0].evaluateNumber(context);
+            if (kind == Node.DOUBLE) {
+                context.longResult = (int) context.doubleResult;
+            } else if (kind == Node.LONG) {
+                context.longResult = (int) context.longResult;
+            } else if (kind == Node.OTHER) {
+                context.longResult = Integer.parseInt(parseable(arguments[0], context));
+                return Node.LONG;
+            }
+            return kind == Node.NULL ? kind : Node.LONG;
+        }
+    },
+    TO_LONG("long", 1) {
+
+        @Override
+        int applyNumber(final Node[] arguments, final ExpressionContext context) {
+            final int kind = arguments[0].evaluateNumber(context);
+            if (kind == Node.DOUBLE) {
+                context.longResult = (long) context.doubleResult;
+            } else if (kind == Node.OTHER) {
+                context.longResult = Long.parseLong(parseable(arguments[0], context));
+                return Node.LONG;
+            }
+            return kind == Node.NULL ? kind : Node.LONG;
+        }
+    },
+    TO_FLOAT("float", 1) {
+
+        @Override
+        Object apply(final Node[] arguments, final ExpressionContext context) {
+            final int kind = applyNumber(arguments, context);
+            return kind == Node.DOUBLE ? (Object) (float) context.doubleResult : null;
+        }
+
+        @Override
+        int applyNumber(final Node[] arguments, final ExpressionContext context) {
+            final int kind = arguments[0].evaluateNumber(context);
+            if (kind == Node.NULL) {
+                return kind;
+            }
+            final double value = kind == Node.OTHER ? Float.parseFloat(parseable(arguments[0], context))
+                    : toDouble(kind, context);
+            context.doubleResult = (float) value;
+            return Node.DOUBLE;
+        }
+    },
+    TO_DOUBLE("double", 1) {
+
+        @Override
+        int applyNumber(final Node[] arguments, final ExpressionContext context) {
+            final int kind = arguments[0].evaluateNumber(context);
+            if (kind == Node.NULL) {
+                return kind;
+            }
+            context.doubleResult = kind == Node.OTHER ? Double.parseDouble(parseable(arguments[0], context))
+                    : toDouble(kind, context);
+            return Node.DOUBLE;
+        }
+    },
+    TO_STRING("string", 1) {
+
+        @Override
+        Object apply(final Node[] arguments, final ExpressionContext context) {
+            final Object value = arguments[0].evaluate(context);
+            if (value instanceof byte[]) {
+                final StringBuilder sb = new StringBuilder();
+                for (final byte b : (byte[]) value) {
+                    sb.append(Character.forDigit(b >> 4 & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+                }
+                return sb.toString();
+            }
+            return value != null ? value.toString() : null;
+        }
+    },
+    TO_BOOLEAN("boolean", 1) {
+
+        @Override
+        Object apply(final Node[] arguments, final ExpressionContext context) {
+            final Object value = arguments[0].evaluate(context);
+            if (value == null || value instanceof Boolean) {
+                return value;
+            }
+            if (value instanceof Number) {
+                return ((Number) value).doubleValue() != 0;
+            }
+            if ("true".equalsIgnoreCase(value.toString().trim())) {
+                return true;
+            }
+            if ("false".equalsIgnoreCase(value.toString().trim())) {
+                return false;
+            }
+            throw new ExpressionException("Cannot convert " + typeName(value) + " to boolean");
+        }
+    },
+    LENGTH("length", 1) {
+
+        @Override
+        int applyNumber(final Node[] arguments, final ExpressionContext context) {
+            final Object value = arguments[0].evaluate(context);
+            if (value instanceof String) {
+                context.longResult = ((String) value).length();
+            } else if (value instanceof byte[]) {
+                context.longResult = ((byte[]) value).length;
+            } else if (value == null) {
+                return Node.NULL;
+            } else {
+                throw new ExpressionException("length expects a string or a byte array, found " + typeName(value));
+            }
+            return Node.LONG;
+        }
+    },
+    LOWER("lower", 1) {
+
+        @Override
+        Object apply(final Node[] arguments, final ExpressionContext context) {
+            final String value = string(arguments[0], context);
+            return value != null ? value.toLowerCase(Locale.ROOT) : null;
+        }
+    },
+    UPPER("upper", 1) {
+
+        @Override
+        Object apply(final Node[] arguments, final ExpressionContext context) {
+            final String value = string(arguments[0], context);
+            return value != null ? value.toUpperCase(Locale.ROOT) : null;
+        }
+    },
+    CONTAINS("contains", 2) {
+
+        @Override
+        Object apply(final Node[] arguments, final ExpressionContext context) {
+            final String value = string(arguments[0], context);
+            final String part = string(arguments[1], context);
+            return value != null && part != null ? value.contains(part) : null;
+        }
+    },
+    STARTS_WITH("startsWith", 2) {
+
+        @Override
+        Object apply(final Node[] arguments, final ExpressionContext context) {
+            final String value = string(arguments[0], context);
+            final String part = string(arguments[1], context);
+            return value != null && part != null ? value.startsWith(part) : null;
+        }
+    },
+    ENDS_WITH("endsWith", 2) {
+
+        @Override
+        Object apply(final Node[] arguments, final ExpressionContext context) {
+            final String value = string(arguments[0], context);
+            final String part = string(arguments[1], context);
+            return value != null && part != null ? value.endsWith(part) : null;
+        }
+    },
+    EMITTER_PID("emitterPid", 0) {
+
+        @Override
+        Object apply(final Node[] arguments, final ExpressionContext context) {
+            return context.getEmitterPid();
+        }
+    },
+    RECORD_COUNT("recordCount", 0) {
+
+        @Override
+        int applyNumber(final Node[] arguments, final ExpressionContext context) {
+            context.longResult = context.getRecordCount();
+            return Node.LONG;
+        }
+    };
+
+    private static final Map<String, Function> FUNCTIONS = new HashMap<>();
+
+    static {
+        for (final Function function : values()) {
+            FUNCTIONS.put(function.functionName, function);
+        }
+    }
+
+    private final String functionName;
+    private final int arity;
+
+    private Function(final String functionName, final int arity) {
+        this.functionName = functionName;
+        this.arity = arity;
+    }
+
+    static Function forName(final String name) {
+        return FUNCTIONS.get(name);
+    }
+
+    String getFunctionName() {
+        return this.functionName;
+    }
+
+    int getArity() {
+        return this.arity;
+    }
+
+    /**
+     * Returns whether the result only depends on the arguments.
+     */
+    boolean isPure() {
+        return this != EMITTER_PID && this != RECORD_COUNT;
+    }
+
+    Object apply(final Node[] arguments, final ExpressionContext context) {
+        return Node.loadNumber(applyNumber(arguments, context), context);
+    }
+
+    int applyNumber(final Node[] arguments, final ExpressionContext context) {
+        return Node.storeNumber(apply(arguments, context), context);
+    }
+
+    int number(final Node argument, final ExpressionContext context) {
+        final int kind = argument.evaluateNumber(context);
+        if (kind == Node.OTHER) {
+            throw new ExpressionException(
+                    this.functionName + " expects a number, found " + typeName(argument.evaluate(context)));
+        }
+        return kind;
+    }
+
+    int minMax(final Node[] arguments, final ExpressionContext context, final boolean min) {
+        final int leftKind = number(arguments[0], context);
+        final long leftLong = context.longResult;
+        final double leftDouble = context.doubleResult;
+        final int rightKind = number(arguments[1], context);
+        if (leftKind == Node.NULL || rightKind == Node.NULL) {
+            return Node.NULL;
+        }
+        if (leftKind == Node.LONG && rightKind == Node.LONG) {
+            context.longResult = min ? Math.min(leftLong, context.longResult) : Math.max(leftLong, context.longResult);
+            return Node.LONG;
+        }
+        final double l = leftKind == Node.LONG ? leftLong : leftDouble;
+        final double r = toDouble(rightKind, context);
+        context.doubleResult = min ? Math.min(l, r) : Math.max(l, r);
+        return Node.DOUBLE;
+    }
+
+    String string(final Node argument, final ExpressionContext context) {
+        final Object value = argument.evaluate(context);
+        if (value != null && !(value instanceof String)) {
+            throw new ExpressionException(this.functionName + " expects a string, found " + typeName(value));
+        }
+        return (String) value;
+    }
+
+    String parseable(final Node argument, final ExpressionContext context) {
+        final String value = string(argument, context).trim();
+        if (value.isEmpty()) {
+            throw new ExpressionException(this.functionName + " cannot convert an empty string");
+        }
+        return value;
+    }
+
+    static double toDouble(final int kind, final ExpressionContext context) {
+        return kind == Node.LONG ? context.longResult : context.doubleResult;
+    }
+
+    static String typeName(final Object value) {
+        return Node.typeName(value);
+    }
+}
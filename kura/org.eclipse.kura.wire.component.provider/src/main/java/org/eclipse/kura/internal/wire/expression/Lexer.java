@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.expression;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the source of an expression into tokens.
+ */
+final class Lexer {
+
+    enum TokenKind {
+        NUMBER,
+        STRING,
+        IDENTIFIER,
+        QUOTED_IDENTIFIER,
+        OPERATOR,
+        END
+    }
+
+    static final class Token {
+
+        final TokenKind kind;
+        final String text;
+        final Object value;
+        final int position;
+        final boolean newlineBefore;
+
+        Token(final TokenKind kind, final String text, final Object value, final int position,
+                final boolean newlineBefore) {
+            this.kind = kind;
+            this.text = text;
+            this.value = value;
+            this.position = position;
+            this.newlineBefore = newlineBefore;
+        }
+
+        boolean is(final TokenKind kind, final String text) {
+            return this.kind == kind && this.text.equals(text);
+        }
+
+        boolean isOperator(final String operator) {
+            return is(TokenKind.OPERATOR, operator);
+        }
+    }
+
+    private static final String[] OPERATORS = { "===", "!==", "==", "!=", "<=", ">=", "&&", "||", "(", ")", "[", "]",
+            ".", ",", "?", ":", ";", "=", "<", ">", "+", "-", "*", "/", "%", "!" };
+
+    private final String source;
+    private int position;
+    private boolean newline;
+
+    private Lexer(final String source) {
+        this.source = source;
+    }
+
+    static List<Token> tokenize(final String source) {
+        final Lexer lexer = new Lexer(source);
+        final List<Token> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = lexer.next();
+            tokens.add(token);
+        } while (token.kind != TokenKind.END);
+        return tokens;
+    }
+
+    private Token next() {
+        skipWhitespaceAndComments();
+        final int start = this.position;
+        final boolean newlineBefore = this.newline;
+        this.newline = false;
+
+        if (start >= this.source.length()) {
+            return new Token(TokenKind.END, "", null, start, newlineBefore);
+        }
+
+        final char c = this.source.charAt(start);
+        if (Character.isDigit(c) || c == '.' && start + 1 < this.source.length()
+                && Character.isDigit(this.source.charAt(start + 1))) {
+            return number(start, newlineBefore);
+        }
+        if (c == '\'' || c == '"') {
+            final String value = quoted(c);
+            return new Token(TokenKind.STRING, value, value, start, newlineBefore);
+        }
+        if (c == '`') {
+            final int end = this.source.indexOf('`', start + 1);
+            if (end < 0) {
+                throw error("Unterminated quoted identifier", start);
+            }
+            this.position = end + 1;
+            return new Token(TokenKind.QUOTED_IDENTIFIER, this.source.substring(start + 1, end), null, start,
+                    newlineBefore);
+        }
+        if (Character.isJavaIdentifierStart(c)) {
+            int end = start + 1;
+            while (end < this.source.length() && Character.isJavaIdentifierPart(this.source.charAt(end))) {
+                end++;
+            }
+            this.position = end;
+            return new Token(TokenKind.IDENTIFIER, this.source.substring(start, end), null, start, newlineBefore);
+        }
+        for (final String operator : OPERATORS) {
+            if (this.source.startsWith(operator, start)) {
+                this.position += operator.length();
+                return new Token(TokenKind.OPERATOR, operator, null, start, newlineBefore);
+            }
+        }
+        throw error("Unexpected character '" + c + "'", start);
+    }
+
+    private void skipWhitespaceAndComments() {
+        while (this.position < this.source.length()) {
+            final char c = this.source.charAt(this.position);
+            if (c == '\n' || c == '\r') {
+                this.newline = true;
+                this.position++;
+            } else if (Character.isWhitespace(c)) {
+                this.position++;
+            } else if (this.source.startsWith("//", this.position)) {
+                while (this.position < this.source.length() && this.source.charAt(this.position) != '\n') {
+                    this.position++;
+                }
+            } else {
+                return;
+            }
+        }
+    }
+
+    private Token number(final int start, final boolean newlineBefore) {
+        int end = start;
+        boolean floating = false;
+        while (end < this.source.length()) {
+            final char c = this.source.charAt(end);
+            if (c == '.' || c == 'e' || c == 'E') {
+                floating = true;
+            } else if ((c == '+' || c == '-') && Character.toLowerCase(this.source.charAt(end - 1)) == 'e') {
+                // exponent sign
+            } else if (!Character.isDigit(c)) {
+                break;
+            }
+            end++;
+        }
+        this.position = end;
+        final String text = this.source.substring(start, end);
+        try {
+            final Object value = floating ? (Object) Double.parseDouble(text) : (Object) Long.parseLong(text);
+            return new Token(TokenKind.NUMBER, text, value, start, newlineBefore);
+        } catch (NumberFormatException e) {
+            throw error("Invalid number " + text, start);
+        }
+    }
+
+    private String quoted(final char quote) {
+        final int start = this.position;
+        final StringBuilder sb = new StringBuilder();
+        int i = start + 1;
+        while (i < this.source.length()) {
+            char c = this.source.charAt(i++);
+            if (c == quote) {
+                this.position = i;
+                return sb.toString();
+            }
+            if (c == '\\' && i < this.source.length()) {
+                c = this.source.charAt(i++);
+                if (c == 'n') {
+                    c = '\n';
+                } else if (c == 't') {
+                    c = '\t';
+                } else if (c == 'r') {
+                    c = '\r';
+                }
+            }
+            sb.append(c);
+        }
+        throw error("Unterminated string", start);
+    }
+
+    static ExpressionException error(final String message, final int position) {
+        return new ExpressionException(message + " at position " + position);
+    }
+}
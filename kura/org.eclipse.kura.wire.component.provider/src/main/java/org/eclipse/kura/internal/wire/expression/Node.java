@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.expression;
+
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.type.TypedValues;
+
+/**
+ * A node of a compiled expression.
+ * <p>
+ * Besides {@link #evaluate(ExpressionContext)}, which returns the result as an object, a node can be evaluated as a
+ * number with {@link #evaluateNumber(ExpressionContext)} and as a condition with
+ * {@link #evaluateBoolean(ExpressionContext)}, which do not box the intermediate results of numeric operators and
+ * comparisons.
+ */
+abstract class Node {
+
+    /** The result is null */
+    static final int NULL = 0;
+
+    /** The result is an integral number, stored in {@link ExpressionContext#longResult} */
+    static final int LONG = 1;
+
+    /** The result is a floating point number, stored in {@link ExpressionContext#doubleResult} */
+    static final int DOUBLE = 2;
+
+    /** The result is not a number, {@link #evaluate(ExpressionContext)} must be used to get it */
+    static final int OTHER = 3;
+
+    abstract Object evaluate(ExpressionContext context);
+
+    /**
+     * Evaluates this node as a number.
+     *
+     * @return the kind of the result: {@link #NULL}, {@link #LONG}, {@link #DOUBLE} or {@link #OTHER}
+     */
+    int evaluateNumber(final ExpressionContext context) {
+        return storeNumber(evaluate(context), context);
+    }
+
+    /**
+     * Evaluates this node as a condition, a null result is false.
+     *
+     * @throws ExpressionException
+     *             if the result is not a boolean
+     */
+    boolean evaluateBoolean(final ExpressionContext context) {
+        return toBoolean(evaluate(context));
+    }
+
+    TypedValue<?> evaluateTypedValue(final ExpressionContext context) {
+        final Object value = evaluate(context);
+        return value != null ? TypedValues.newTypedValue(value) : null;
+    }
+
+    /**
+     * Returns whether this node always evaluates to the same value, so that it can be replaced by a literal.
+     */
+    boolean isConstant() {
+        return false;
+    }
+
+    static int storeNumber(final Object value, final ExpressionContext context) {
+        if (value == null) {
+            return NULL;
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            context.longResult = ((Number) value).longValue();
+            return LONG;
+        }
+        if (value instanceof Double || value instanceof Float) {
+            context.doubleResult = ((Number) value).doubleValue();
+            return DOUBLE;
+        }
+        return OTHER;
+    }
+
+    static Object loadNumber(final int kind, final ExpressionContext context) {
+        if (kind == LONG) {
+            return context.longResult;
+        }
+        if (kind == DOUBLE) {
+            return context.doubleResult;
+        }
+        return null;
+    }
+
+    static boolean toBoolean(final Object value) {
+        if (value == null) {
+            return false;
+        }
+        if (!(value instanceof Boolean)) {
+            throw new ExpressionException("Expected a boolean, found " + typeName(value));
+        }
+        return (Boolean) value;
+    }
+
+    static String typeName(final Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (value instanceof byte[]) {
+            return "byte array";
+        }
+        return value.getClass().getSimpleName().toLowerCase();
+    }
+}
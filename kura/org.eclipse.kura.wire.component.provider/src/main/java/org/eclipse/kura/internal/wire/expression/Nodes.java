@@ -0,0 +1,516 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.expression;
+
+import java.util.Arrays;
+
+import org.eclipse.kura.type.BooleanValue;
+import org.eclipse.kura.type.DoubleValue;
+import org.eclipse.kura.type.FloatValue;
+import org.eclipse.kura.type.IntegerValue;
+import org.eclipse.kura.type.LongValue;
+import org.eclipse.kura.type.TypedValue;
+
+/**
+ * The nodes an expression is compiled to.
+ */
+final class Nodes {
+
+    private Nodes() {
+        // no need to instantiate
+    }
+
+    static final class Literal extends Node {
+
+        private final Object value;
+        private final int kind;
+        private final long longValue;
+        private final double doubleValue;
+
+        Literal(final Object value) {
+            this.value = value;
+            final ExpressionContext scratch = new ExpressionContext();
+            this.kind = storeNumber(value, scratch);
+            this.longValue = scratch.longResult;
+            this.doubleValue = scratch.doubleResult;
+        }
+
+        @Override
+        Object evaluate(final ExpressionContext context) {
+            return this.value;
+        }
+
+        @Override
+        int evaluateNumber(final ExpressionContext context) {
+            context.longResult = this.longValue;
+            context.doubleResult = this.doubleValue;
+            return this.kind;
+        }
+
+        @Override
+        boolean isConstant() {
+            return true;
+        }
+    }
+
+    /**
+     * A property of the current record, or of the record at the given index.
+     */
+    static final class Property extends Node {
+
+        private final Node recordIndex;
+        private final String name;
+
+        Property(final Node recordIndex, final String name) {
+            this.recordIndex = recordIndex;
+            this.name = name;
+        }
+
+        private TypedValue<?> get(final ExpressionContext context) {
+            if (this.recordIndex == null) {
+                return context.getProperty(context.getCurrentRecordIndex(), this.name);
+            }
+            if (this.recordIndex.evaluateNumber(context) != LONG) {
+                throw new ExpressionException("Record index must be an integer");
+            }
+            return context.getProperty(context.longResult, this.name);
+        }
+
+        @Override
+        Object evaluate(final ExpressionContext context) {
+            final TypedValue<?> value = get(context);
+            return value != null ? value.getValue() : null;
+        }
+
+        @Override
+        int evaluateNumber(final ExpressionContext context) {
+            final TypedValue<?> value = get(context);
+            if (value == null) {
+                return NULL;
+            }
+            switch (value.getType()) {
+            case INTEGER:
+                context.longResult = ((IntegerValue) value).getValue();
+                return LONG;
+            case LONG:
+                context.longResult = ((LongValue) value).getValue();
+                return LONG;
+            case FLOAT:
+                context.doubleResult = ((FloatValue) value).getValue();
+                return DOUBLE;
+            case DOUBLE:
+                context.doubleResult = ((DoubleValue) value).getValue();
+                return DOUBLE;
+            default:
+                return OTHER;
+            }
+        }
+
+        @Override
+        boolean evaluateBoolean(final ExpressionContext context) {
+            final TypedValue<?> value = get(context);
+            if (value instanceof BooleanValue) {
+                return ((BooleanValue) value).getValue();
+            }
+            return toBoolean(value != null ? value.getValue() : null);
+        }
+
+        @Override
+        TypedValue<?> evaluateTypedValue(final ExpressionContext context) {
+            return get(context);
+        }
+    }
+
+    /**
+     * The <code>+ - * / %</code> operators. Integral operands give an integral result, otherwise the result is a
+     * floating point number. <code>+</code> also concatenates strings. A null operand gives a null result.
+     */
+    static final class Arithmetic extends Node {
+
+        private final char operator;
+        private final Node left;
+        private final Node right;
+
+        Arithmetic(final char operator, final Node left, final Node right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object evaluate(final ExpressionContext context) {
+            final int kind = evaluateNumber(context);
+            if (kind != OTHER) {
+                return loadNumber(kind, context);
+            }
+            final Object l = this.left.evaluate(context);
+            final Object r = this.right.evaluate(context);
+            if (l == null || r == null) {
+                return null;
+            }
+            if (this.operator == '+' && (l instanceof String || r instanceof String)) {
+                return String.valueOf(l).concat(String.valueOf(r));
+            }
+            throw new ExpressionException(
+                    "Operator " + this.operator + " cannot be applied to " + typeName(l) + " and " + typeName(r));
+        }
+
+        @Override
+        int evaluateNumber(final ExpressionContext context) {
+            final int leftKind = this.left.evaluateNumber(context);
+            if (leftKind == OTHER) {
+                return OTHER;
+            }
+            final long leftLong = context.longResult;
+            final double leftDouble = context.doubleResult;
+            final int rightKind = this.right.evaluateNumber(context);
+            if (rightKind == OTHER) {
+                return OTHER;
+            }
+            if (leftKind == NULL || rightKind == NULL) {
+                return NULL;
+            }
+            if (leftKind == LONG && rightKind == LONG) {
+                context.longResult = apply(leftLong, context.longResult);
+                return LONG;
+            }
+            final double l = leftKind == LONG ? leftLong : leftDouble;
+            final double r = rightKind == LONG ? context.longResult : context.doubleResult;
+            context.doubleResult = apply(l, r);
+            return DOUBLE;
+        }
+
+        private long apply(final long l, final long r) {
+            switch (this.operator) {
+            case '+':
+                return l + r;
+            case '-':
+                return l - r;
+            case '*':
+                return l * r;
+            default:
+                if (r == 0) {
+                    throw new ExpressionException("Division by zero");
+                }
+                return this.operator == '/' ? l / r : l % r;
+            }
+        }
+
+        private double apply(final double l, final double r) {
+            switch (this.operator) {
+            case '+':
+                return l + r;
+            case '-':
+                return l - r;
+            case '*':
+                return l * r;
+            case '/':
+                return l / r;
+            default:
+                return l % r;
+            }
+        }
+
+        @Override
+        boolean isConstant() {
+            return this.left.isConstant() && this.right.isConstant();
+        }
+    }
+
+    static final class Negate extends Node {
+
+        private final Node operand;
+
+        Negate(final Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        Object evaluate(final ExpressionContext context) {
+            return loadNumber(evaluateNumber(context), context);
+        }
+
+        @Override
+        int evaluateNumber(final ExpressionContext context) {
+            final int kind = this.operand.evaluateNumber(context);
+            if (kind == LONG) {
+                context.longResult = -context.longResult;
+            } else if (kind == DOUBLE) {
+                context.doubleResult = -context.doubleResult;
+            } else if (kind == OTHER) {
+                throw new ExpressionException(
+                        "Operator - cannot be applied to " + typeName(this.operand.evaluate(context)));
+            }
+            return kind;
+        }
+
+        @Override
+        boolean isConstant() {
+            return this.operand.isConstant();
+        }
+    }
+
+    enum ComparisonOperator {
+        EQ,
+        NE,
+        LT,
+        LE,
+        GT,
+        GE;
+
+        boolean test(final int comparison) {
+            switch (this) {
+            case EQ:
+                return comparison == 0;
+            case NE:
+                return comparison != 0;
+            case LT:
+                return comparison < 0;
+            case LE:
+                return comparison <= 0;
+            case GT:
+                return comparison > 0;
+            default:
+                return comparison >= 0;
+            }
+        }
+    }
+
+    /**
+     * The comparison operators. Numbers are compared by value regardless of their type. A null operand is only equal
+     * to null and is neither less nor greater than any value.
+     */
+    static final class Comparison extends Node {
+
+        private final ComparisonOperator operator;
+        private final Node left;
+        private final Node right;
+
+        Comparison(final ComparisonOperator operator, final Node left, final Node right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object evaluate(final ExpressionContext context) {
+            return evaluateBoolean(context);
+        }
+
+        @Override
+        boolean evaluateBoolean(final ExpressionContext context) {
+            final int leftKind = this.left.evaluateNumber(context);
+            if (leftKind == OTHER) {
+                return compareObjects(context);
+            }
+            final long leftLong = context.longResult;
+            final double leftDouble = context.doubleResult;
+            final int rightKind = this.right.evaluateNumber(context);
+            if (rightKind == OTHER) {
+                return leftKind == NULL ? compareNull(false) : compareObjects(context);
+            }
+            if (leftKind == NULL || rightKind == NULL) {
+                return compareNull(leftKind == rightKind);
+            }
+            if (leftKind == LONG && rightKind == LONG) {
+                return this.operator.test(Long.compare(leftLong, context.longResult));
+            }
+            final double l = leftKind == LONG ? leftLong : leftDouble;
+            final double r = rightKind == LONG ? context.longResult : context.doubleResult;
+            return this.operator.test(Double.compare(l, r));
+        }
+
+        private boolean compareNull(final boolean bothNull) {
+            if (this.operator == ComparisonOperator.EQ) {
+                return bothNull;
+            }
+            return this.operator == ComparisonOperator.NE && !bothNull;
+        }
+
+        private boolean compareObjects(final ExpressionContext context) {
+            final Object l = this.left.evaluate(context);
+            final Object r = this.right.evaluate(context);
+            if (l == null || r == null) {
+                return compareNull(l == r);
+            }
+            if (l instanceof String && r instanceof String) {
+                return this.operator.test(((String) l).compareTo((String) r));
+            }
+            if (l instanceof Boolean && r instanceof Boolean) {
+                return this.operator.test(Boolean.compare((Boolean) l, (Boolean) r));
+            }
+            final boolean equal;
+            if (l instanceof byte[] && r instanceof byte[]) {
+                equal = Arrays.equals((byte[]) l, (byte[]) r);
+            } else {
+                equal = false;
+            }
+            if (this.operator == ComparisonOperator.EQ) {
+                return equal;
+            }
+            if (this.operator == ComparisonOperator.NE) {
+                return !equal;
+            }
+            throw new ExpressionException("Cannot compare " + typeName(l) + " and " + typeName(r));
+        }
+
+        @Override
+        boolean isConstant() {
+            return this.left.isConstant() && this.right.isConstant();
+        }
+    }
+
+    /**
+     * The <code>&amp;&amp;</code> and <code>||</code> operators, the right operand is evaluated only if needed.
+     */
+    static final class Logical extends Node {
+
+        private final boolean and;
+        private final Node left;
+        private final Node right;
+
+        Logical(final boolean and, final Node left, final Node right) {
+            this.and = and;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object evaluate(final ExpressionContext context) {
+            return evaluateBoolean(context);
+        }
+
+        @Override
+        boolean evaluateBoolean(final ExpressionContext context) {
+            if (this.and) {
+                return this.left.evaluateBoolean(context) && this.right.evaluateBoolean(context);
+            }
+            return this.left.evaluateBoolean(context) || this.right.evaluateBoolean(context);
+        }
+
+        @Override
+        boolean isConstant() {
+            return this.left.isConstant() && this.right.isConstant();
+        }
+    }
+
+    static final class Not extends Node {
+
+        private final Node operand;
+
+        Not(final Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        Object evaluate(final ExpressionContext context) {
+            return evaluateBoolean(context);
+        }
+
+        @Override
+        boolean evaluateBoolean(final ExpressionContext context) {
+            return !this.operand.evaluateBoolean(context);
+        }
+
+        @Override
+        boolean isConstant() {
+            return this.operand.isConstant();
+        }
+    }
+
+    /**
+     * The <code>condition ? a : b</code> operator.
+     */
+    static final class Choice extends Node {
+
+        private final Node condition;
+        private final Node ifTrue;
+        private final Node ifFalse;
+
+        Choice(final Node condition, final Node ifTrue, final Node ifFalse) {
+            this.condition = condition;
+            this.ifTrue = ifTrue;
+            this.ifFalse = ifFalse;
+        }
+
+        private Node choose(final ExpressionContext context) {
+            return this.condition.evaluateBoolean(context) ? this.ifTrue : this.ifFalse;
+        }
+
+        @Override
+        Object evaluate(final ExpressionContext context) {
+            return choose(context).evaluate(context);
+        }
+
+        @Override
+        int evaluateNumber(final ExpressionContext context) {
+            return choose(context).evaluateNumber(context);
+        }
+
+        @Override
+        boolean evaluateBoolean(final ExpressionContext context) {
+            return choose(context).evaluateBoolean(context);
+        }
+
+        @Override
+        TypedValue<?> evaluateTypedValue(final ExpressionContext context) {
+            return choose(context).evaluateTypedValue(context);
+        }
+
+        @Override
+        boolean isConstant() {
+            return this.condition.isConstant() && this.ifTrue.isConstant() && this.ifFalse.isConstant();
+        }
+    }
+
+    static final class Call extends Node {
+
+        private final Function function;
+        private final Node[] arguments;
+
+        Call(final Function function, final Node[] arguments) {
+            this.function = function;
+            this.arguments = arguments;
+        }
+
+        @Override
+        Object evaluate(final ExpressionContext context) {
+            try {
+                return this.function.apply(this.arguments, context);
+            } catch (NumberFormatException e) {
+                throw new ExpressionException(this.function.getFunctionName() + ": invalid number", e);
+            }
+        }
+
+        @Override
+        int evaluateNumber(final ExpressionContext context) {
+            try {
+                return this.function.applyNumber(this.arguments, context);
+            } catch (NumberFormatException e) {
+                throw new ExpressionException(this.function.getFunctionName() + ": invalid number", e);
+            }
+        }
+
+        @Override
+        boolean isConstant() {
+            if (!this.function.isPure()) {
+                return false;
+            }
+            for (final Node argument : this.arguments) {
+                if (!argument.isConstant()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
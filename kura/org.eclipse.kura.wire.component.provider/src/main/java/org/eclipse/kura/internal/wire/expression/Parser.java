@@ -0,0 +1,336 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.expression;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.kura.internal.wire.expression.Lexer.Token;
+import org.eclipse.kura.internal.wire.expression.Lexer.TokenKind;
+import org.eclipse.kura.internal.wire.expression.Nodes.ComparisonOperator;
+
+/**
+ * A recursive descent parser that compiles expressions and projection statements to trees of {@link Node}s. The
+ * sub-expressions that only involve literals are evaluated at compile time.
+ */
+final class Parser {
+
+    static final String RECORDS = "records";
+    static final String WHERE = "where";
+    static final String COPY_ALL = "*";
+
+    /**
+     * A statement of a projection: <code>name = expression</code>, <code>where expression</code> or <code>*</code>.
+     */
+    static final class Statement {
+
+        final String target;
+        final Node expression;
+
+        Statement(final String target, final Node expression) {
+            this.target = target;
+            this.expression = expression;
+        }
+
+        boolean isCondition() {
+            return this.target == null && this.expression != null;
+        }
+
+        boolean isCopyAll() {
+            return this.target == null && this.expression == null;
+        }
+    }
+
+    private final List<Token> tokens;
+    private final boolean statements;
+    private int index;
+    private int depth;
+
+    private Parser(final String source, final boolean statements) {
+        this.tokens = Lexer.tokenize(source);
+        this.statements = statements;
+    }
+
+    static Node parseExpression(final String source) {
+        final Parser parser = new Parser(source, false);
+        final Node result = parser.expression();
+        if (parser.peek().kind != TokenKind.END) {
+            throw parser.error("Unexpected " + parser.peek().text);
+        }
+        return result;
+    }
+
+    /**
+     * Parses statements separated by semicolons or new lines.
+     */
+    static List<Statement> parseStatements(final String source) {
+        final Parser parser = new Parser(source, true);
+        final List<Statement> result = new ArrayList<>();
+        while (parser.peek().kind != TokenKind.END) {
+            if (parser.accept(";")) {
+                continue;
+            }
+            result.add(parser.statement());
+            final Token next = parser.peek();
+            if (next.kind != TokenKind.END && !next.isOperator(";") && !next.newlineBefore) {
+                throw parser.error("Expected ; or a new line before " + next.text);
+            }
+        }
+        return result;
+    }
+
+    private Statement statement() {
+        final Token token = next();
+        if (token.isOperator(COPY_ALL)) {
+            return new Statement(null, null);
+        }
+        final boolean name = token.kind == TokenKind.IDENTIFIER || token.kind == TokenKind.QUOTED_IDENTIFIER;
+        if (name && accept("=")) {
+            return new Statement(token.text, expression());
+        }
+        if (token.is(TokenKind.IDENTIFIER, WHERE)) {
+            return new Statement(null, expression());
+        }
+        throw error("Expected an assignment, a where condition or *", token);
+    }
+
+    private Node expression() {
+        final Node condition = or();
+        if (atStatementEnd() || !accept("?")) {
+            return condition;
+        }
+        this.depth++;
+        final Node ifTrue = expression();
+        expect(":");
+        this.depth--;
+        return fold(new Nodes.Choice(condition, ifTrue, expression()));
+    }
+
+    private Node or() {
+        Node result = and();
+        while (!atStatementEnd() && accept("||")) {
+            result = fold(new Nodes.Logical(false, result, and()));
+        }
+        return result;
+    }
+
+    private Node and() {
+        Node result = equality();
+        while (!atStatementEnd() && accept("&&")) {
+            result = fold(new Nodes.Logical(true, result, equality()));
+        }
+        return result;
+    }
+
+    private Node equality() {
+        Node result = relational();
+        while (!atStatementEnd()) {
+            final ComparisonOperator operator;
+            if (accept("==") || accept("===")) {
+                operator = ComparisonOperator.EQ;
+            } else if (accept("!=") || accept("!==")) {
+                operator = ComparisonOperator.NE;
+            } else {
+                break;
+            }
+            result = fold(new Nodes.Comparison(operator, result, relational()));
+        }
+        return result;
+    }
+
+    private Node relational() {
+        Node result = additive();
+        while (!atStatementEnd()) {
+            final ComparisonOperator operator;
+            if (accept("<")) {
+                operator = ComparisonOperator.LT;
+            } else if (accept("<=")) {
+                operator = ComparisonOperator.LE;
+            } else if (accept(">")) {
+                operator = ComparisonOperator.GT;
+            } else if (accept(">=")) {
+                operator = ComparisonOperator.GE;
+            } else {
+                break;
+            }
+            result = fold(new Nodes.Comparison(operator, result, additive()));
+        }
+        return result;
+    }
+
+    private Node additive() {
+        Node result = multiplicative();
+        while (!atStatementEnd() && (peek().isOperator("+") || peek().isOperator("-"))) {
+            final char operator = next().text.charAt(0);
+            result = fold(new Nodes.Arithmetic(operator, result, multiplicative()));
+        }
+        return result;
+    }
+
+    private Node multiplicative() {
+        Node result = unary();
+        while (!atStatementEnd()
+                && (peek().isOperator("*") || peek().isOperator("/") || peek().isOperator("%"))) {
+            final char operator = next().text.charAt(0);
+            result = fold(new Nodes.Arithmetic(operator, result, unary()));
+        }
+        return result;
+    }
+
+    private Node unary() {
+        if (accept("!")) {
+            return fold(new Nodes.Not(unary()));
+        }
+        if (accept("-")) {
+            return fold(new Nodes.Negate(unary()));
+        }
+        if (accept("+")) {
+            return unary();
+        }
+        return primary();
+    }
+
+    private Node primary() {
+        final Token token = next();
+        switch (token.kind) {
+        case NUMBER:
+        case STRING:
+            return new Nodes.Literal(token.value);
+        case QUOTED_IDENTIFIER:
+            return new Nodes.Property(null, token.text);
+        case IDENTIFIER:
+            return identifier(token);
+        default:
+            if (token.isOperator("(")) {
+                this.depth++;
+                final Node result = expression();
+                expect(")");
+                this.depth--;
+                return result;
+            }
+            throw error(token.kind == TokenKind.END ? "Unexpected end of expression" : "Unexpected " + token.text,
+                    token);
+        }
+    }
+
+    private Node identifier(final Token token) {
+        switch (token.text) {
+        case "true":
+            return new Nodes.Literal(Boolean.TRUE);
+        case "false":
+            return new Nodes.Literal(Boolean.FALSE);
+        case "null":
+            return new Nodes.Literal(null);
+        case RECORDS:
+            return recordProperty();
+        default:
+            break;
+        }
+        if (!peek().isOperator("(")) {
+            return new Nodes.Property(null, token.text);
+        }
+
+        final Function function = Function.forName(token.text);
+        if (function == null) {
+            throw error("Unknown function " + token.text);
+        }
+        expect("(");
+        this.depth++;
+        final List<Node> arguments = new ArrayList<>();
+        if (!accept(")")) {
+            do {
+                arguments.add(expression());
+            } while (accept(","));
+            expect(")");
+        }
+        this.depth--;
+        if (arguments.size() != function.getArity()) {
+            throw error(function.getFunctionName() + " expects " + function.getArity() + " arguments");
+        }
+        return fold(new Nodes.Call(function, arguments.toArray(new Node[arguments.size()])));
+    }
+
+    // records[index].name, records[index].`name` or records[index]['name']
+    private Node recordProperty() {
+        expect("[");
+        this.depth++;
+        final Node recordIndex = expression();
+        expect("]");
+        this.depth--;
+
+        final Token name;
+        if (accept(".")) {
+            name = next();
+            if (name.kind != TokenKind.IDENTIFIER && name.kind != TokenKind.QUOTED_IDENTIFIER) {
+                throw error("Expected a property name", name);
+            }
+        } else {
+            expect("[");
+            name = next();
+            if (name.kind != TokenKind.STRING) {
+                throw error("Expected a property name", name);
+            }
+            expect("]");
+        }
+        return new Nodes.Property(recordIndex, name.text);
+    }
+
+    private Node fold(final Node node) {
+        if (!node.isConstant()) {
+            return node;
+        }
+        try {
+            return new Nodes.Literal(node.evaluate(new ExpressionContext()));
+        } catch (ExpressionException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    // a new line ends a statement, unless it is inside parentheses
+    private boolean atStatementEnd() {
+        return this.statements && this.depth == 0 && peek().newlineBefore;
+    }
+
+    private Token peek() {
+        return this.tokens.get(this.index);
+    }
+
+    private Token next() {
+        final Token token = this.tokens.get(this.index);
+        if (token.kind != TokenKind.END) {
+            this.index++;
+        }
+        return token;
+    }
+
+    private boolean accept(final String operator) {
+        if (peek().isOperator(operator)) {
+            this.index++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(final String operator) {
+        if (!accept(operator)) {
+            throw error("Expected " + operator);
+        }
+    }
+
+    private ExpressionException error(final String message) {
+        return error(message, peek());
+    }
+
+    private static ExpressionException error(final String message, final Token token) {
+        return Lexer.error(message, token.position);
+    }
+}
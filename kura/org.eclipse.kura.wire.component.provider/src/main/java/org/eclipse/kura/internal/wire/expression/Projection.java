@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.expression;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.internal.wire.expression.Parser.Statement;
+import org.eclipse.kura.wire.WireRecord;
+
+/**
+ * A compiled list of statements that computes an output record from the current record of an
+ * {@link ExpressionContext}.
+ * <p>
+ * The statements are separated by semicolons or new lines, and can be:
+ * <ul>
+ * <li><code>name = expression</code>, which sets a property of the output record, or removes it if the expression is
+ * null; the name can be quoted with backticks</li>
+ * <li><code>*</code>, which copies all the properties of the current record</li>
+ * <li><code>where expression</code>, a condition that the current record must satisfy for an output record to be
+ * produced</li>
+ * </ul>
+ * The statements are applied in order and the expressions always refer to the input records, see {@link Expression}
+ * for their syntax. A projection is immutable and can be applied concurrently with different
+ * {@link ExpressionContext}s.
+ */
+public final class Projection {
+
+    private final String source;
+    private final Node[] conditions;
+
+    /** The names of the assigned properties, null for the statements that copy all the properties */
+    private final String[] targets;
+    private final Node[] values;
+
+    private Projection(final String source, final List<Statement> statements) {
+        this.source = source;
+        final List<Node> conditionList = new ArrayList<>();
+        final List<String> targetList = new ArrayList<>();
+        final List<Node> valueList = new ArrayList<>();
+        for (final Statement statement : statements) {
+            if (statement.isCondition()) {
+                conditionList.add(statement.expression);
+            } else {
+                targetList.add(statement.target);
+                valueList.add(statement.expression);
+            }
+        }
+        if (targetList.isEmpty()) {
+            throw new ExpressionException("A projection must contain at least an assignment or *");
+        }
+        this.conditions = conditionList.toArray(new Node[conditionList.size()]);
+        this.targets = targetList.toArray(new String[targetList.size()]);
+        this.values = valueList.toArray(new Node[valueList.size()]);
+    }
+
+    /**
+     * Compiles a projection.
+     *
+     * @param source
+     *            the statements
+     * @return the compiled projection
+     * @throws ExpressionException
+     *             if the statements are not valid
+     * @throws NullPointerException
+     *             if the source is null
+     */
+    public static Projection compile(final String source) {
+        requireNonNull(source, "Projection cannot be null");
+        return new Projection(source, Parser.parseStatements(source));
+    }
+
+    /**
+     * Applies this projection to the current record of the provided context.
+     *
+     * @param context
+     *            the records the projection is applied to
+     * @return the output record, or null if the current record does not satisfy the where conditions
+     * @throws ExpressionException
+     *             if an operator or a function is applied to values of unsupported types, or if a where condition is
+     *             not a boolean
+     */
+    public WireRecord apply(final ExpressionContext context) {
+        for (final Node condition : this.conditions) {
+            if (!condition.evaluateBoolean(context)) {
+                return null;
+            }
+        }
+
+        final Map<String, TypedValue<?>> properties = new HashMap<>();
+        for (int i = 0; i < this.targets.length; i++) {
+            final String target = this.targets[i];
+            if (target == null) {
+                final WireRecord record = context.getCurrentRecord();
+                if (record != null) {
+                    properties.putAll(record.getProperties());
+                }
+                continue;
+            }
+            final TypedValue<?> value = this.values[i].evaluateTypedValue(context);
+            if (value != null) {
+                properties.put(target, value);
+            } else {
+                properties.remove(target);
+            }
+        }
+        return new WireRecord(properties);
+    }
+
+    /**
+     * Returns the source of this projection.
+     *
+     * @return the source
+     */
+    public String getSource() {
+        return this.source;
+    }
+
+    @Override
+    public String toString() {
+        return this.source;
+    }
+}
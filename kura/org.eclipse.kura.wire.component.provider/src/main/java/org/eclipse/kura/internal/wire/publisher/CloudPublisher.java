@@ -17,16 +17,20 @@ import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 import static java.util.Objects.requireNonNull;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.kura.cloudconnection.message.KuraMessage;
 import org.eclipse.kura.configuration.ConfigurableComponent;
+import org.eclipse.kura.configuration.ConfigurationService;
 import org.eclipse.kura.message.KuraPayload;
 import org.eclipse.kura.message.KuraPosition;
 import org.eclipse.kura.position.NmeaPosition;
@@ -49,15 +53,22 @@ import org.osgi.service.wireadmin.Wire;
  * <br/>
  *
  * For every {@link WireRecord} as found in {@link WireEnvelope} will be wrapped inside a Kura
- * Payload and will be sent to the Cloud Platform.
+ * Payload and will be sent to the Cloud Platform.<br/>
+ * <br/>
+ *
+ * If batching is enabled, the records received in one or more {@link WireEnvelope}s are instead packed in a single
+ * Kura Payload, until the configured number of records, size or age is reached. The metric names of the i-th record
+ * of the batch are prefixed with {@code i.} and the number of records is published in the {@code record.count}
+ * metric.
  */
 public final class CloudPublisher implements WireReceiver, ConfigurableComponent {
 
     private static final Logger logger = LogManager.getLogger(CloudPublisher.class);
 
     private static final String ASSET_NAME_PROPERTY_KEY = "assetName";
+    private static final String RECORD_COUNT_METRIC_NAME = "record.count";
 
-    private CloudPublisherOptions cloudPublisherOptions;
+    private volatile CloudPublisherOptions cloudPublisherOptions;
 
     private volatile WireHelperService wireHelperService;
     private PositionService positionService;
@@ -66,6 +77,10 @@ public final class CloudPublisher implements WireReceiver, ConfigurableComponent
 
     private org.eclipse.kura.cloudconnection.publisher.CloudPublisher cloudConnectionPublisher;
 
+    // the batching options and the executor are replaced holding the lock of the batches
+    private final Map<Map<String, Object>, RecordBatch> batches = new HashMap<>();
+    private volatile ScheduledThreadPoolExecutor batchExecutor;
+
     // ----------------------------------------------------------------
     //
     // Dependencies
@@ -132,7 +147,10 @@ public final class CloudPublisher implements WireReceiver, ConfigurableComponent
                 (ServiceReference<WireComponent>) componentContext.getServiceReference());
 
         // Update properties
-        this.cloudPublisherOptions = new CloudPublisherOptions(properties);
+        synchronized (this.batches) {
+            this.cloudPublisherOptions = new CloudPublisherOptions(properties);
+            updateBatchExecutor(properties);
+        }
 
         logger.debug("Activating Cloud Publisher Wire Component... Done");
     }
@@ -145,8 +163,16 @@ public final class CloudPublisher implements WireReceiver, ConfigurableComponent
      */
     public void updated(final Map<String, Object> properties) {
         logger.debug("Updating Cloud Publisher Wire Component...");
-        // Update properties
-        this.cloudPublisherOptions = new CloudPublisherOptions(properties);
+        // Update properties, the records received meanwhile are added to batches of the new batching policy
+        final List<RecordBatch> pending;
+        synchronized (this.batches) {
+            pending = takeBatches();
+            this.cloudPublisherOptions = new CloudPublisherOptions(properties);
+            updateBatchExecutor(properties);
+        }
+
+        // Publish the pending records with the previous batching policy
+        publishBatches(pending);
 
         logger.debug("Updating Cloud Publisher Wire Component... Done");
     }
@@ -159,7 +185,12 @@ public final class CloudPublisher implements WireReceiver, ConfigurableComponent
      */
     protected void deactivate(final ComponentContext componentContext) {
         logger.debug("Deactivating Cloud Publisher Wire Component...");
-
+        final List<RecordBatch> pending;
+        synchronized (this.batches) {
+            pending = takeBatches();
+            shutdownBatchExecutor();
+        }
+        publishBatches(pending);
         logger.debug("Deactivating Cloud Publisher Wire Component... Done");
     }
 
@@ -170,7 +201,9 @@ public final class CloudPublisher implements WireReceiver, ConfigurableComponent
 
         if (nonNull(this.cloudConnectionPublisher)) {
             final List<WireRecord> records = wireEnvelope.getRecords();
-            publish(records);
+            if (!batch(records)) {
+                publish(records);
+            }
         }
     }
 
@@ -203,6 +236,38 @@ public final class CloudPublisher implements WireReceiver, ConfigurableComponent
      */
     private KuraPayload buildKuraPayload(final WireRecord wireRecord) {
         requireNonNull(wireRecord, "Wire Record cannot be null");
+        final KuraPayload kuraPayload = newKuraPayload();
+
+        for (final Entry<String, TypedValue<?>> entry : wireRecord.getProperties().entrySet()) {
+            kuraPayload.addMetric(entry.getKey(), entry.getValue().getValue());
+        }
+
+        return kuraPayload;
+    }
+
+    /**
+     * Builds a single Kura payload from a batch of {@link WireRecord}s. The metric names of each record are prefixed
+     * with the index of the record in the batch.
+     *
+     * @param wireRecords
+     *            the batched {@link WireRecord}s
+     * @return the Kura payload
+     */
+    private KuraPayload buildKuraPayload(final List<WireRecord> wireRecords) {
+        final KuraPayload kuraPayload = newKuraPayload();
+        kuraPayload.addMetric(RECORD_COUNT_METRIC_NAME, wireRecords.size());
+
+        for (int i = 0; i < wireRecords.size(); i++) {
+            final String prefix = i + ".";
+            for (final Entry<String, TypedValue<?>> entry : wireRecords.get(i).getProperties().entrySet()) {
+                kuraPayload.addMetric(prefix + entry.getKey(), entry.getValue().getValue());
+            }
+        }
+
+        return kuraPayload;
+    }
+
+    private KuraPayload newKuraPayload() {
         final KuraPayload kuraPayload = new KuraPayload();
 
         kuraPayload.setTimestamp(new Date());
@@ -212,10 +277,6 @@ public final class CloudPublisher implements WireReceiver, ConfigurableComponent
             kuraPayload.setPosition(kuraPosition);
         }
 
-        for (final Entry<String, TypedValue<?>> entry : wireRecord.getProperties().entrySet()) {
-            kuraPayload.addMetric(entry.getKey(), entry.getValue().getValue());
-        }
-
         return kuraPayload;
     }
 
@@ -260,6 +321,130 @@ public final class CloudPublisher implements WireReceiver, ConfigurableComponent
         }
     }
 
+    /**
+     * Adds the provided {@link WireRecord}s to the batches of their topics, and publishes the batches that reached
+     * the configured number of records or size.
+     *
+     * @param wireRecords
+     *            the provided list of {@link WireRecord}s
+     * @return false if batching is disabled, the records have not been added
+     * @throws NullPointerException
+     *             if one of the arguments is null
+     */
+    private boolean batch(final List<WireRecord> wireRecords) {
+        requireNonNull(wireRecords, "Wire Records cannot be null");
+
+        final List<RecordBatch> completed = new ArrayList<>();
+        synchronized (this.batches) {
+            // the options are read under the lock, so that the records are never added to batches of a previous policy
+            final CloudPublisherOptions options = this.cloudPublisherOptions;
+            final int maxRecords = options.getBatchMaxRecords();
+            if (maxRecords <= 1) {
+                return false;
+            }
+            final int maxBytes = options.getBatchMaxBytes();
+            final int maxAge = options.getBatchMaxAge();
+
+            for (final WireRecord dataRecord : wireRecords) {
+                final Map<String, Object> properties = buildKuraMessageProperties(dataRecord);
+                RecordBatch recordBatch = this.batches.get(properties);
+                if (isNull(recordBatch)) {
+                    recordBatch = new RecordBatch(properties);
+                    this.batches.put(properties, recordBatch);
+                    scheduleFlush(recordBatch, maxAge);
+                }
+
+                recordBatch.add(dataRecord);
+                if (recordBatch.getRecordCount() >= maxRecords || recordBatch.getEstimatedSize() >= maxBytes) {
+                    this.batches.remove(properties);
+                    recordBatch.cancelFlush();
+                    completed.add(recordBatch);
+                }
+            }
+        }
+
+        // publish outside of the lock, the cloud publisher may block
+        completed.forEach(this::publishBatch);
+        return true;
+    }
+
+    private void scheduleFlush(final RecordBatch recordBatch, final int maxAge) {
+        final ScheduledThreadPoolExecutor executor = this.batchExecutor;
+        if (nonNull(executor)) {
+            recordBatch.setFlushFuture(
+                    executor.schedule(() -> flushBatch(recordBatch), maxAge, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private void flushBatch(final RecordBatch recordBatch) {
+        synchronized (this.batches) {
+            if (this.batches.get(recordBatch.getMessageProperties()) != recordBatch) {
+                // already published
+                return;
+            }
+            this.batches.remove(recordBatch.getMessageProperties());
+        }
+        publishBatch(recordBatch);
+    }
+
+    /**
+     * Removes all the pending batches, must be called holding the lock of the batches.
+     */
+    private List<RecordBatch> takeBatches() {
+        final List<RecordBatch> pending = new ArrayList<>(this.batches.values());
+        this.batches.clear();
+        return pending;
+    }
+
+    private void publishBatches(final List<RecordBatch> pending) {
+        for (final RecordBatch recordBatch : pending) {
+            recordBatch.cancelFlush();
+            publishBatch(recordBatch);
+        }
+    }
+
+    private void publishBatch(final RecordBatch recordBatch) {
+        final org.eclipse.kura.cloudconnection.publisher.CloudPublisher publisher = this.cloudConnectionPublisher;
+        if (isNull(publisher)) {
+            logger.warn("No cloud publisher available, discarding {} wire records", recordBatch.getRecordCount());
+            return;
+        }
+
+        try {
+            final KuraPayload kuraPayload = buildKuraPayload(recordBatch.getRecords());
+            publisher.publish(new KuraMessage(kuraPayload, recordBatch.getMessageProperties()));
+        } catch (final Exception e) {
+            logger.error("Error in publishing wire records using cloud publisher..", e);
+        }
+    }
+
+    /**
+     * Creates or shuts down the executor flushing the old batches, must be called holding the lock of the batches.
+     */
+    private void updateBatchExecutor(final Map<String, Object> properties) {
+        if (this.cloudPublisherOptions.getBatchMaxRecords() <= 1) {
+            shutdownBatchExecutor();
+        } else if (isNull(this.batchExecutor)) {
+            final String threadName = properties.getOrDefault(ConfigurationService.KURA_SERVICE_PID,
+                    "CloudPublisher") + "-BatchFlusher";
+            final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+                final Thread thread = new Thread(r, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            this.batchExecutor = executor;
+        }
+    }
+
+    private void shutdownBatchExecutor() {
+        final ScheduledThreadPoolExecutor executor = this.batchExecutor;
+        if (nonNull(executor)) {
+            this.batchExecutor = null;
+            executor.shutdownNow();
+        }
+    }
+
     private Map<String, Object> buildKuraMessageProperties(final WireRecord wireRecord) {
         Map<String, TypedValue<?>> wireRecordProps = wireRecord.getProperties();
 
@@ -30,6 +30,13 @@ final class CloudPublisherOptions {
     private static final Logger logger = LogManager.getLogger(CloudPublisherOptions.class);
 
     private static final String CONF_POSITION = "publish.position";
+    private static final String CONF_BATCH_MAX_RECORDS = "batch.max.records";
+    private static final String CONF_BATCH_MAX_BYTES = "batch.max.bytes";
+    private static final String CONF_BATCH_MAX_AGE = "batch.max.age";
+
+    private static final int DEFAULT_BATCH_MAX_RECORDS = 1;
+    private static final int DEFAULT_BATCH_MAX_BYTES = 16 * 1024;
+    private static final int DEFAULT_BATCH_MAX_AGE = 1000;
 
     private final Map<String, Object> properties;
 
@@ -64,4 +71,47 @@ final class CloudPublisherOptions {
         }
         return result;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the maximum number of records published in the same message. A value of 1 disables batching, every
+     * record is published in its own message.
+     *
+     * @return the maximum number of records of a batch
+     */
+    int getBatchMaxRecords() {
+        int maxRecords = DEFAULT_BATCH_MAX_RECORDS;
+        final Object configuredMaxRecords = this.properties.get(CONF_BATCH_MAX_RECORDS);
+        if (configuredMaxRecords instanceof Integer) {
+            maxRecords = Math.max(1, (Integer) configuredMaxRecords);
+        }
+        return maxRecords;
+    }
+
+    /**
+     * Returns the estimated size of the metrics, in bytes, above which a batch is published.
+     *
+     * @return the maximum size of a batch
+     */
+    int getBatchMaxBytes() {
+        int maxBytes = DEFAULT_BATCH_MAX_BYTES;
+        final Object configuredMaxBytes = this.properties.get(CONF_BATCH_MAX_BYTES);
+        if (configuredMaxBytes instanceof Integer) {
+            maxBytes = (Integer) configuredMaxBytes;
+        }
+        return maxBytes;
+    }
+
+    /**
+     * Returns the maximum time, in milliseconds, a record waits in a batch before being published.
+     *
+     * @return the maximum age of a batch
+     */
+    int getBatchMaxAge() {
+        int maxAge = DEFAULT_BATCH_MAX_AGE;
+        final Object configuredMaxAge = this.properties.get(CONF_BATCH_MAX_AGE);
+        if (configuredMaxAge instanceof Integer) {
+            maxAge = Math.max(1, (Integer) configuredMaxAge);
+        }
+        return maxAge;
+    }
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Eurotech
+ *
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.publisher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.wire.WireRecord;
+
+/**
+ * The records waiting to be published together in a single message. All the records of a batch share the same
+ * message properties, and therefore the same topic.
+ */
+final class RecordBatch {
+
+    // rough per metric overhead of the protobuf encoding: tag, type and lengths
+    private static final int METRIC_OVERHEAD = 6;
+
+    private final Map<String, Object> messageProperties;
+    private final List<WireRecord> records = new ArrayList<>();
+    private int estimatedSize;
+    private Future<?> flushFuture;
+
+    RecordBatch(final Map<String, Object> messageProperties) {
+        this.messageProperties = messageProperties;
+    }
+
+    void add(final WireRecord wireRecord) {
+        this.records.add(wireRecord);
+        for (final Map.Entry<String, TypedValue<?>> entry : wireRecord.getProperties().entrySet()) {
+            this.estimatedSize += METRIC_OVERHEAD + entry.getKey().length() + estimateSize(entry.getValue());
+        }
+    }
+
+    Map<String, Object> getMessageProperties() {
+        return this.messageProperties;
+    }
+
+    List<WireRecord> getRecords() {
+        return this.records;
+    }
+
+    int getRecordCount() {
+        return this.records.size();
+    }
+
+    /**
+     * Returns the approximate size, in bytes, of the metrics of the records once encoded.
+     */
+    int getEstimatedSize() {
+        return this.estimatedSize;
+    }
+
+    /**
+     * Sets the task that will publish the batch when it gets too old.
+     */
+    void setFlushFuture(final Future<?> flushFuture) {
+        this.flushFuture = flushFuture;
+    }
+
+    void cancelFlush() {
+        if (this.flushFuture != null) {
+            this.flushFuture.cancel(false);
+        }
+    }
+
+    private static int estimateSize(final TypedValue<?> typedValue) {
+        final Object value = typedValue.getValue();
+        if (value instanceof String) {
+            return ((String) value).length();
+        } else if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        } else if (value instanceof Boolean) {
+            return 1;
+        }
+        return 8;
+    }
+}
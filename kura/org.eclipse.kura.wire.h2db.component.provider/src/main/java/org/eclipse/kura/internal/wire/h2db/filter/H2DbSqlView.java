@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.h2db.filter;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.wire.WireRecord;
+
+/**
+ * A SQL view with named parameters.
+ * <p>
+ * A parameter is written as <code>${name}</code> and is replaced by a JDBC <code>?</code> placeholder. The
+ * {@link #HIGH_WATER_MARK_PARAMETER} parameter is bound to the last value seen by an incremental filter, the other
+ * parameters are bound to the property with the same name of the received {@link WireRecord}s. Parameters are not
+ * recognized inside quoted literals and identifiers.
+ */
+final class H2DbSqlView {
+
+    static final String HIGH_WATER_MARK_PARAMETER = "high.water.mark";
+
+    private static final Pattern PARAMETER = Pattern.compile("\\$\\{([^}]+)\\}");
+
+    private final String sql;
+
+    private final List<String> parameterNames;
+
+    H2DbSqlView(final String sqlView) {
+        requireNonNull(sqlView, "SQL view cannot be null");
+
+        final StringBuilder sb = new StringBuilder(sqlView.length());
+        final List<String> names = new ArrayList<>();
+        char quote = 0;
+        int start = 0;
+        for (int i = 0; i < sqlView.length(); i++) {
+            final char c = sqlView.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '$') {
+                final Matcher matcher = PARAMETER.matcher(sqlView).region(i, sqlView.length());
+                if (matcher.lookingAt()) {
+                    sb.append(sqlView, start, i).append('?');
+                    names.add(matcher.group(1).trim());
+                    start = matcher.end();
+                    i = start - 1;
+                }
+            }
+        }
+        sb.append(sqlView, start, sqlView.length());
+
+        this.sql = sb.toString();
+        this.parameterNames = Collections.unmodifiableList(names);
+    }
+
+    String getSql() {
+        return this.sql;
+    }
+
+    boolean hasParameters() {
+        return !this.parameterNames.isEmpty();
+    }
+
+    boolean hasHighWaterMark() {
+        return this.parameterNames.contains(HIGH_WATER_MARK_PARAMETER);
+    }
+
+    /**
+     * Returns the values of the parameters, in placeholder order.
+     *
+     * @param wireRecords
+     *            the received records, the value of a parameter is taken from the first record that has a property
+     *            with its name, or is null if there is none
+     * @param highWaterMark
+     *            the value of the {@link #HIGH_WATER_MARK_PARAMETER} parameter
+     * @return the parameter values
+     */
+    List<Object> getParameterValues(final List<WireRecord> wireRecords, final long highWaterMark) {
+        final List<Object> values = new ArrayList<>(this.parameterNames.size());
+        for (final String name : this.parameterNames) {
+            if (HIGH_WATER_MARK_PARAMETER.equals(name)) {
+                values.add(highWaterMark);
+            } else {
+                values.add(findValue(wireRecords, name));
+            }
+        }
+        return values;
+    }
+
+    private static Object findValue(final List<WireRecord> wireRecords, final String name) {
+        if (wireRecords == null) {
+            return null;
+        }
+        for (final WireRecord wireRecord : wireRecords) {
+            final TypedValue<?> value = wireRecord.getProperties().get(name);
+            if (value != null) {
+                return value.getValue();
+            }
+        }
+        return null;
+    }
+}
@@ -19,10 +19,13 @@ import static java.util.Objects.requireNonNull;
 import static org.eclipse.kura.configuration.ConfigurationService.KURA_SERVICE_PID;
 
 import java.sql.Blob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
@@ -63,6 +66,17 @@ public class H2DbWireRecordFilter implements WireEmitter, WireReceiver, Configur
 
     private static final Logger logger = LogManager.getLogger(H2DbWireRecordFilter.class);
 
+    private static final String HIGH_WATER_MARK_TABLE = "\"WR_FILTER_HIGH_WATER_MARK\"";
+
+    private static final String SQL_CREATE_HIGH_WATER_MARK_TABLE = "CREATE TABLE IF NOT EXISTS " + HIGH_WATER_MARK_TABLE
+            + " (PID VARCHAR(255) PRIMARY KEY, INCREMENTAL_COLUMN VARCHAR(255), HIGH_WATER_MARK BIGINT);";
+
+    private static final String SQL_SELECT_HIGH_WATER_MARK = "SELECT INCREMENTAL_COLUMN, HIGH_WATER_MARK FROM "
+            + HIGH_WATER_MARK_TABLE + " WHERE PID = ?;";
+
+    private static final String SQL_MERGE_HIGH_WATER_MARK = "MERGE INTO " + HIGH_WATER_MARK_TABLE
+            + " (PID, INCREMENTAL_COLUMN, HIGH_WATER_MARK) KEY (PID) VALUES (?, ?, ?);";
+
     private List<WireRecord> lastRecords;
 
     private H2DbServiceHelper dbHelper;
@@ -81,6 +95,16 @@ public class H2DbWireRecordFilter implements WireEmitter, WireReceiver, Configur
 
     private ComponentContext componentContext;
 
+    private H2DbSqlView sqlView;
+
+    private List<Object> lastParameterValues;
+
+    private String kuraServicePid;
+
+    private long highWaterMark = Long.MIN_VALUE;
+
+    private boolean highWaterMarkLoaded;
+
     public synchronized void bindDbService(H2DbService dbService) {
         this.dbHelper = H2DbServiceHelper.of(dbService);
     }
@@ -124,12 +148,14 @@ public class H2DbWireRecordFilter implements WireEmitter, WireReceiver, Configur
     protected void activate(final ComponentContext componentContext, final Map<String, Object> properties) {
         logger.debug("Activating DB Wire Record Filter...");
         this.componentContext = componentContext;
+        this.kuraServicePid = (String) properties.get(KURA_SERVICE_PID);
         this.options = new H2DbWireRecordFilterOptions(properties);
 
         this.wireSupport = this.wireHelperService.newWireSupport(this,
                 (ServiceReference<WireComponent>) componentContext.getServiceReference());
 
         this.cacheExpirationInterval = this.options.getCacheExpirationInterval();
+        initSqlView();
 
         // Initialize the lastRefreshTime and remove the cacheExpirationInterval in order to immediately have the cache
         // expired
@@ -145,7 +171,7 @@ public class H2DbWireRecordFilter implements WireEmitter, WireReceiver, Configur
      * @param properties
      *            the updated properties
      */
-    public void updated(final Map<String, Object> properties) {
+    public synchronized void updated(final Map<String, Object> properties) {
         logger.debug("Updating DB Wire Record Filter... {}", properties);
         final String oldDbServicePid = this.options.getDbServiceInstancePid();
 
@@ -156,6 +182,7 @@ public class H2DbWireRecordFilter implements WireEmitter, WireReceiver, Configur
         }
 
         this.cacheExpirationInterval = this.options.getCacheExpirationInterval();
+        initSqlView();
 
         // Initialize the lastRefreshTime and remove the cacheExpirationInterval in order to immediately have the cache
         // expired
@@ -164,6 +191,21 @@ public class H2DbWireRecordFilter implements WireEmitter, WireReceiver, Configur
         logger.debug("Updating DB Wire Record Filter... Done");
     }
 
+    private void initSqlView() {
+        final String view = this.options.getSqlView();
+        this.sqlView = view != null ? new H2DbSqlView(view) : null;
+        this.lastRecords = null;
+        this.lastParameterValues = null;
+        // the incremental column may have changed, the mark is reloaded before the next query
+        this.highWaterMarkLoaded = false;
+
+        if (this.sqlView != null && this.options.isIncremental() && this.options.getChunkSize() > 0
+                && !this.sqlView.hasHighWaterMark()) {
+            logger.warn("The SQL view does not filter on the {} parameter, the whole view is read at each query",
+                    H2DbSqlView.HIGH_WATER_MARK_PARAMETER);
+        }
+    }
+
     /**
      * OSGi service component callback for deactivation
      *
@@ -181,22 +223,113 @@ public class H2DbWireRecordFilter implements WireEmitter, WireReceiver, Configur
         this.wireSupport.consumersConnected(wires);
     }
 
-    private List<WireRecord> performSQLQuery() throws SQLException {
+    /**
+     * Runs the view and returns the resulting records. The rows are read before returning, so that nothing is emitted
+     * while the connection is in use. In the incremental mode only the rows past the high-water mark are returned,
+     * and the high-water mark of the result is the highest value of the incremental column among them.
+     *
+     * @param maxRows
+     *            the maximum number of rows to read, 0 to read the whole result
+     */
+    private QueryResult performSQLQuery(final List<Object> parameterValues, final int maxRows) throws SQLException {
+        final String sql = this.sqlView.getSql();
 
-        final String sqlView = this.options.getSqlView();
+        final QueryResult result = this.dbHelper.withConnection(c -> {
+            try (final Statement stmt = createStatement(c, sql, parameterValues)) {
+                if (maxRows > 0) {
+                    stmt.setMaxRows(maxRows);
+                }
+                try (final ResultSet rset = stmt instanceof PreparedStatement
+                        ? ((PreparedStatement) stmt).executeQuery() : stmt.executeQuery(sql)) {
+                    return readResultSet(rset);
+                }
+            }
+        });
+        logger.debug("Refreshed typed values");
+        return result;
+    }
 
-        return this.dbHelper.withConnection(c -> {
-            final List<WireRecord> dataRecords = new ArrayList<>();
+    private static Statement createStatement(final Connection c, final String sql, final List<Object> parameterValues)
+            throws SQLException {
+        if (parameterValues.isEmpty()) {
+            return c.createStatement();
+        }
+        final PreparedStatement stmt = c.prepareStatement(sql);
+        try {
+            for (int i = 0; i < parameterValues.size(); i++) {
+                stmt.setObject(i + 1, parameterValues.get(i));
+            }
+        } catch (final SQLException e) {
+            stmt.close();
+            throw e;
+        }
+        return stmt;
+    }
 
-            try (final Statement stmt = c.createStatement(); final ResultSet rset = stmt.executeQuery(sqlView)) {
-                while (rset.next()) {
-                    final WireRecord wireRecord = new WireRecord(convertSQLRowToWireRecord(rset));
-                    dataRecords.add(wireRecord);
+    private QueryResult readResultSet(final ResultSet rset) throws SQLException {
+        final boolean incremental = this.options.isIncremental();
+        final int markIndex = incremental ? findIncrementalColumn(rset) : -1;
+        long mark = this.highWaterMark;
+        int rowCount = 0;
+
+        final List<WireRecord> records = new ArrayList<>();
+        while (rset.next()) {
+            rowCount++;
+            if (incremental) {
+                final Object markValue = rset.getObject(markIndex);
+                if (markValue == null) {
+                    logger.debug("Skipping a row with a null {} column", this.options.getIncrementalColumn());
+                    continue;
+                }
+                final long value = ((Number) markValue).longValue();
+                if (value <= this.highWaterMark) {
+                    // the view does not filter on the high-water mark, or a row has been inserted out of order
+                    logger.debug("Skipping a row with {} {} not past the high-water mark {}",
+                            this.options.getIncrementalColumn(), value, this.highWaterMark);
+                    continue;
                 }
+                mark = Math.max(mark, value);
             }
-            logger.debug("Refreshed typed values");
-            return dataRecords;
-        });
+            records.add(new WireRecord(convertSQLRowToWireRecord(rset)));
+        }
+        return new QueryResult(records, rowCount, mark);
+    }
+
+    /**
+     * Returns the index of the incremental column in the result of the view. The column must have an integer type,
+     * since its values are compared with the high-water mark.
+     *
+     * @throws SQLException
+     *             if the column is not in the result of the view, or it is not an integer column
+     */
+    private int findIncrementalColumn(final ResultSet rset) throws SQLException {
+        final String column = this.options.getIncrementalColumn();
+        final ResultSetMetaData rmet = rset.getMetaData();
+        for (int i = 1; i <= rmet.getColumnCount(); i++) {
+            if (column.equalsIgnoreCase(rmet.getColumnLabel(i))) {
+                if (!isIntegerColumn(rmet, i)) {
+                    throw new SQLException("The incremental column " + column + " has type "
+                            + rmet.getColumnTypeName(i) + ", only integer columns are supported");
+                }
+                return i;
+            }
+        }
+        throw new SQLException("The incremental column " + column + " is not in the result of the view");
+    }
+
+    private static boolean isIntegerColumn(final ResultSetMetaData rmet, final int column) throws SQLException {
+        switch (rmet.getColumnType(column)) {
+        case Types.TINYINT:
+        case Types.SMALLINT:
+        case Types.INTEGER:
+        case Types.BIGINT:
+            return true;
+        case Types.DECIMAL:
+        case Types.NUMERIC:
+            return rmet.getScale(column) == 0;
+        default:
+            return false;
+        }
     }
 
     private Map<String, TypedValue<?>> convertSQLRowToWireRecord(ResultSet rset) throws SQLException {
@@ -234,6 +367,10 @@ public class H2DbWireRecordFilter implements WireEmitter, WireReceiver, Configur
      * The cache validity is determined by the {@link H2DbWireRecordFilterOptions#CONF_CACHE_EXPIRATION_INTERVAL}
      * property
      * provided by the user in the component configuration.
+     * <p>
+     * In the incremental mode only the rows added since the last database read are emitted, and nothing is emitted
+     * until the cache validity expires. If a chunk size is configured, the rows are read and emitted one chunk at a
+     * time, and the high-water mark is stored after each chunk. An empty envelope is never emitted in this mode.
      */
     @Override
     public synchronized void onWireReceive(final WireEnvelope wireEnvelope) {
@@ -244,26 +381,162 @@ public class H2DbWireRecordFilter implements WireEmitter, WireReceiver, Configur
             return;
         }
 
-        if (isCacheExpired() && this.dbHelper != null) {
-            refreshCachedRecords();
+        if (this.sqlView == null) {
+            logger.warn("SQL view not configured");
+            return;
+        }
+
+        if (this.options.isIncremental() && !loadHighWaterMark()) {
+            return;
+        }
+
+        final int chunkSize = this.options.getChunkSize();
+
+        if (this.options.isIncremental()) {
+            if (isCacheExpired()) {
+                emitIncrementally(wireEnvelope.getRecords(), chunkSize);
+            }
+            return;
         }
 
-        List<WireRecord> result;
-        if (nonNull(this.lastRecords)) {
-            result = Collections.unmodifiableList(this.lastRecords);
+        final List<Object> parameterValues = this.sqlView.getParameterValues(wireEnvelope.getRecords(),
+                this.highWaterMark);
+
+        int emitted = 0;
+        if (chunkSize > 0 && this.cacheExpirationInterval == 0) {
+            // nothing to cache, do not keep the result after emitting it
+            emitted = emitQueryResult(parameterValues, chunkSize);
         } else {
-            result = Collections.unmodifiableList(new ArrayList<WireRecord>());
+            if (isCacheExpired() || !parameterValues.equals(this.lastParameterValues)) {
+                refreshCachedRecords(parameterValues);
+            }
+            if (nonNull(this.lastRecords)) {
+                emitted = emitInChunks(this.lastRecords, chunkSize);
+            }
+        }
+
+        if (emitted == 0 && this.options.emitOnEmptyResult()) {
+            this.wireSupport.emit(Collections.unmodifiableList(new ArrayList<WireRecord>()));
+        }
+    }
+
+    private int emitQueryResult(final List<Object> parameterValues, final int chunkSize) {
+        final QueryResult result;
+        try {
+            result = performSQLQuery(parameterValues, 0);
+        } catch (SQLException e) {
+            logger.error("Error while filtering Wire Records...", e);
+            return 0;
+        }
+        this.lastRefreshedTime = Calendar.getInstance(this.lastRefreshedTime.getTimeZone());
+        return emitInChunks(result.records, chunkSize);
+    }
+
+    /**
+     * Emits the rows past the high-water mark. If a chunk size is configured and the view filters on the high-water
+     * mark, each query reads at most a chunk, and the view is queried again from the new mark until a chunk with
+     * less rows comes back.
+     */
+    private void emitIncrementally(final List<WireRecord> wireRecords, final int chunkSize) {
+        final int maxRows = this.sqlView.hasHighWaterMark() ? chunkSize : 0;
+        while (true) {
+            final List<Object> parameterValues = this.sqlView.getParameterValues(wireRecords, this.highWaterMark);
+            final QueryResult result;
+            try {
+                result = performSQLQuery(parameterValues, maxRows);
+            } catch (SQLException e) {
+                logger.error("Error while filtering Wire Records...", e);
+                return;
+            }
+            this.lastRefreshedTime = Calendar.getInstance(this.lastRefreshedTime.getTimeZone());
+            emitInChunks(result.records, chunkSize);
+            if (result.highWaterMark == this.highWaterMark) {
+                return;
+            }
+            this.highWaterMark = result.highWaterMark;
+            storeHighWaterMark();
+            if (maxRows == 0 || result.rowCount < maxRows) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Loads the high-water mark stored by a previous run of this component, unless already loaded. The stored mark
+     * is discarded if it refers to a different incremental column.
+     *
+     * @return false if the mark could not be loaded
+     */
+    private boolean loadHighWaterMark() {
+        if (this.highWaterMarkLoaded) {
+            return true;
+        }
+        if (this.kuraServicePid == null) {
+            this.highWaterMark = Long.MIN_VALUE;
+            this.highWaterMarkLoaded = true;
+            return true;
         }
+        final String column = this.options.getIncrementalColumn();
+        try {
+            this.highWaterMark = this.dbHelper.withConnection(c -> {
+                this.dbHelper.execute(c, SQL_CREATE_HIGH_WATER_MARK_TABLE);
+                try (final PreparedStatement stmt = c.prepareStatement(SQL_SELECT_HIGH_WATER_MARK)) {
+                    stmt.setString(1, this.kuraServicePid);
+                    try (final ResultSet rset = stmt.executeQuery()) {
+                        if (rset.next() && column.equalsIgnoreCase(rset.getString(1))) {
+                            return rset.getLong(2);
+                        }
+                        return Long.MIN_VALUE;
+                    }
+                }
+            });
+            this.highWaterMarkLoaded = true;
+            return true;
+        } catch (SQLException e) {
+            logger.error("Failed to load the high-water mark", e);
+            return false;
+        }
+    }
 
-        if (!result.isEmpty() || options.emitOnEmptyResult()) {
-            this.wireSupport.emit(result);
+    private void storeHighWaterMark() {
+        if (this.kuraServicePid == null) {
+            return;
         }
+        try {
+            this.dbHelper.withConnection(c -> {
+                try (final PreparedStatement stmt = c.prepareStatement(SQL_MERGE_HIGH_WATER_MARK)) {
+                    stmt.setString(1, this.kuraServicePid);
+                    stmt.setString(2, this.options.getIncrementalColumn());
+                    stmt.setLong(3, this.highWaterMark);
+                    stmt.execute();
+                }
+                c.commit();
+                return null;
+            });
+        } catch (SQLException e) {
+            logger.warn("Failed to store the high-water mark, the rows may be emitted again after a restart", e);
+        }
+    }
+
+    private int emitInChunks(final List<WireRecord> records, final int chunkSize) {
+        if (chunkSize == 0 || records.size() <= chunkSize) {
+            if (!records.isEmpty()) {
+                this.wireSupport.emit(Collections.unmodifiableList(records));
+            }
+        } else {
+            for (int i = 0; i < records.size(); i += chunkSize) {
+                this.wireSupport.emit(
+                        Collections.unmodifiableList(records.subList(i, Math.min(records.size(), i + chunkSize))));
+            }
+        }
+        return records.size();
     }
 
-    private void refreshCachedRecords() {
+    private void refreshCachedRecords(final List<Object> parameterValues) {
         try {
-            final List<WireRecord> tmpWireRecords = performSQLQuery();
+            final List<WireRecord> tmpWireRecords = performSQLQuery(parameterValues, 0).records;
             this.lastRecords = tmpWireRecords;
+            this.lastParameterValues = parameterValues;
             this.lastRefreshedTime = Calendar.getInstance(this.lastRefreshedTime.getTimeZone());
         } catch (SQLException e) {
             logger.error("Error while filtering Wire Records...", e);
@@ -340,4 +613,17 @@ public class H2DbWireRecordFilter implements WireEmitter, WireReceiver, Configur
         }
         return true;
     }
+
+    private static final class QueryResult {
+
+        private final List<WireRecord> records;
+        private final int rowCount;
+        private final long highWaterMark;
+
+        QueryResult(final List<WireRecord> records, final int rowCount, final long highWaterMark) {
+            this.records = records;
+            this.rowCount = rowCount;
+            this.highWaterMark = highWaterMark;
+        }
+    }
 }
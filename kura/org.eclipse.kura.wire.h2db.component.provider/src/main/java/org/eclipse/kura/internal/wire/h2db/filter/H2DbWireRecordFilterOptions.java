@@ -36,6 +36,16 @@ final class H2DbWireRecordFilterOptions {
 
     private static final String EMIT_ON_EMPTY_RESULT = "emit.on.empty.result";
 
+    private static final String CONF_QUERY_MODE = "query.mode";
+
+    private static final String CONF_INCREMENTAL_COLUMN = "incremental.column";
+
+    private static final String CONF_CHUNK_SIZE = "chunk.size";
+
+    private static final String QUERY_MODE_INCREMENTAL = "incremental";
+
+    private static final String DEFAULT_INCREMENTAL_COLUMN = "ID";
+
     private final Map<String, Object> properties;
 
     /**
@@ -94,4 +104,41 @@ final class H2DbWireRecordFilterOptions {
         }
         return result;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns true if only the rows added since the last query have to be emitted.
+     *
+     * @return true if the incremental query mode is configured
+     */
+    boolean isIncremental() {
+        return QUERY_MODE_INCREMENTAL.equals(this.properties.get(CONF_QUERY_MODE));
+    }
+
+    /**
+     * Returns the column whose largest value emitted so far is the high-water mark of the incremental mode.
+     *
+     * @return the configured incremental column
+     */
+    String getIncrementalColumn() {
+        String column = DEFAULT_INCREMENTAL_COLUMN;
+        final Object col = this.properties.get(CONF_INCREMENTAL_COLUMN);
+        if (nonNull(col) && col instanceof String && !((String) col).trim().isEmpty()) {
+            column = ((String) col).trim();
+        }
+        return column;
+    }
+
+    /**
+     * Returns the maximum number of records per emitted envelope, 0 if the result is emitted as a single envelope.
+     *
+     * @return the configured chunk size
+     */
+    int getChunkSize() {
+        int chunkSize = 0;
+        final Object size = this.properties.get(CONF_CHUNK_SIZE);
+        if (nonNull(size) && size instanceof Integer) {
+            chunkSize = Math.max(0, (Integer) size);
+        }
+        return chunkSize;
+    }
+}
@@ -27,10 +27,15 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.text.MessageFormat;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -85,16 +90,17 @@ public class H2DbWireRecordStore implements WireEmitter, WireReceiver, Configura
 
     private static final String SQL_ROW_COUNT_TABLE = "SELECT COUNT(*) FROM {0};";
 
-    private static final String SQL_DELETE_RANGE_TABLE = "DELETE FROM {0} WHERE rownum() <= (SELECT count(*) FROM {0}) - {1};";
+    private static final String SQL_DELETE_OLDEST_RECORDS = "DELETE FROM {0} "
+            + "WHERE ID <= (SELECT MAX(ID) FROM (SELECT ID FROM {0} ORDER BY ID LIMIT ?));";
 
     private static final String SQL_DROP_COLUMN = "ALTER TABLE {0} DROP COLUMN {1};";
 
     private static final String SQL_INSERT_RECORD = "INSERT INTO {0} ({1}) VALUES ({2});";
 
-    private static final String SQL_TRUNCATE_TABLE = "TRUNCATE TABLE {0};";
-
     private static final String[] TABLE_TYPE = new String[] { "TABLE" };
 
+    private static final int MAX_CACHED_INSERT_STATEMENTS = 64;
+
     private H2DbServiceHelper dbHelper;
 
     private H2DbWireRecordStoreOptions wireRecordStoreOptions;
@@ -107,8 +113,37 @@ public class H2DbWireRecordStore implements WireEmitter, WireReceiver, Configura
 
     private ComponentContext componentContext;
 
+    private ExecutorService truncateExecutor;
+
+    /**
+     * The number of rows in the table, not including the rows scheduled for deletion, -1 if it has to be read from
+     * the database
+     */
+    private int rowCount = -1;
+
+    /** Set when a scheduled deletion fails, the number of rows has to be read from the database */
+    private volatile boolean recountRequired;
+
+    /**
+     * The INSERT statements, keyed by the ordered column names of the records. The statements themselves are prepared
+     * again on each envelope, since the pooled connections do not outlive a
+     * {@link H2DbService#withConnection(H2DbService.ConnectionCallable)} call, but H2 finds the parsed command in the
+     * query cache of the session.
+     */
+    private final Map<List<String>, String> insertStatements = new LinkedHashMap<List<String>, String>(16, 0.75f,
+            true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<List<String>, String> eldest) {
+            return size() > MAX_CACHED_INSERT_STATEMENTS;
+        }
+    };
+
     public synchronized void bindDbService(final H2DbService dbService) {
         H2DbWireRecordStore.this.dbHelper = H2DbServiceHelper.of(dbService);
+        this.rowCount = -1;
         reconcileDB(this.wireRecordStoreOptions.getTableName());
     }
 
@@ -143,6 +178,11 @@ public class H2DbWireRecordStore implements WireEmitter, WireReceiver, Configura
 
         this.wireSupport = this.wireHelperService.newWireSupport(this,
                 (ServiceReference<WireComponent>) componentContext.getServiceReference());
+        this.truncateExecutor = Executors.newSingleThreadExecutor(r -> {
+            final Thread thread = new Thread(r, "H2DbWireRecordStore Truncate");
+            thread.setDaemon(true);
+            return thread;
+        });
 
         restartDbServiceTracker();
         logger.debug("Activating DB Wire Record Store... Done");
@@ -161,6 +201,9 @@ public class H2DbWireRecordStore implements WireEmitter, WireReceiver, Configura
 
         this.wireRecordStoreOptions = new H2DbWireRecordStoreOptions(properties);
 
+        this.rowCount = -1;
+        this.insertStatements.clear();
+
         if (oldDbServicePid.equals(this.wireRecordStoreOptions.getDbServiceInstancePid())) {
             final String tableName = this.wireRecordStoreOptions.getTableName();
             reconcileDB(tableName);
@@ -180,57 +223,84 @@ public class H2DbWireRecordStore implements WireEmitter, WireReceiver, Configura
     protected void deactivate(final ComponentContext componentContext) {
         logger.debug("Deactivating DB Wire Record Store...");
         stopDbServiceTracker();
+        this.truncateExecutor.shutdown();
         logger.debug("Deactivating DB Wire Record Store... Done");
     }
 
     /**
-     * Truncates tables containing {@link WireRecord}s
+     * Schedules the removal of the oldest records, so that the configured number of records is kept. The records
+     * inserted in the meantime are not affected. The deletion runs on the truncate executor, the rows are counted
+     * on the same executor by {@link #getTableSize()}, so that a count never includes the rows whose deletion is
+     * pending.
      */
     private void truncate() {
-        final int noOfRecordsToKeep = this.wireRecordStoreOptions.getNoOfRecordsToKeep();
+        final int noOfRecordsToKeep = Math.max(0, this.wireRecordStoreOptions.getNoOfRecordsToKeep());
+        final int noOfRecordsToDelete = this.rowCount - noOfRecordsToKeep;
+        if (noOfRecordsToDelete <= 0) {
+            return;
+        }
 
-        truncate(noOfRecordsToKeep);
+        final H2DbServiceHelper helper = this.dbHelper;
+        final String tableName = this.wireRecordStoreOptions.getTableName();
+        try {
+            this.truncateExecutor.execute(() -> deleteOldestRecords(helper, tableName, noOfRecordsToDelete));
+            this.rowCount = noOfRecordsToKeep;
+        } catch (final RejectedExecutionException e) {
+            logger.warn("Store deactivated, table {} not truncated", tableName);
+        }
     }
 
     /**
-     * Truncates the records in the table
+     * Deletes the oldest records in the table
      *
-     * @param noOfRecordsToKeep
-     *            the no of records to keep in the table
+     * @param noOfRecordsToDelete
+     *            the no of records to delete from the table
      */
-    private void truncate(final int noOfRecordsToKeep) {
-        final String tableName = this.wireRecordStoreOptions.getTableName();
-        final String sqlTableName = this.dbHelper.sanitizeSqlTableAndColumnName(tableName);
+    private void deleteOldestRecords(final H2DbServiceHelper helper, final String tableName,
+            final int noOfRecordsToDelete) {
+        final String sqlTableName = helper.sanitizeSqlTableAndColumnName(tableName);
 
         try {
-            this.dbHelper.withConnection(c -> {
-                final String catalog = c.getCatalog();
-                final DatabaseMetaData dbMetaData = c.getMetaData();
-                try (final ResultSet rsTbls = dbMetaData.getTables(catalog, null, tableName, TABLE_TYPE)) {
-                    if (rsTbls.next()) {
-                        // table does exist, truncate it
-                        if (noOfRecordsToKeep == 0) {
-                            logger.info("Truncating table {}...", sqlTableName);
-                            this.dbHelper.execute(c, MessageFormat.format(SQL_TRUNCATE_TABLE, sqlTableName));
-                        } else {
-                            logger.info("Partially emptying table {}", sqlTableName);
-                            this.dbHelper.execute(c, MessageFormat.format(SQL_DELETE_RANGE_TABLE, sqlTableName,
-                                    Integer.toString(noOfRecordsToKeep)));
-                        }
-                    }
-                }
+            helper.withConnection(c -> {
+                logger.info("Partially emptying table {}", sqlTableName);
+                helper.execute(c, MessageFormat.format(SQL_DELETE_OLDEST_RECORDS, sqlTableName),
+                        noOfRecordsToDelete);
                 return (Void) null;
             });
         } catch (final SQLException sqlException) {
             logger.error("Error in truncating the table {}...", sqlTableName, sqlException);
+            this.recountRequired = true;
         }
     }
 
     private int getTableSize() throws SQLException {
-        final String tableName = this.wireRecordStoreOptions.getTableName();
-        final String sqlTableName = this.dbHelper.sanitizeSqlTableAndColumnName(tableName);
+        if (this.rowCount < 0 || this.recountRequired) {
+            this.recountRequired = false;
+
+            final H2DbServiceHelper helper = this.dbHelper;
+            final String sqlTableName = helper
+                    .sanitizeSqlTableAndColumnName(this.wireRecordStoreOptions.getTableName());
 
-        return dbHelper.withConnection(c -> {
+            try {
+                // wait for the pending deletions, the count would include the rows that are about to be deleted
+                this.rowCount = this.truncateExecutor.submit(() -> countRows(helper, sqlTableName)).get();
+            } catch (final RejectedExecutionException e) {
+                this.rowCount = countRows(helper, sqlTableName);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException(e);
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof SQLException) {
+                    throw (SQLException) e.getCause();
+                }
+                throw new SQLException(e.getCause());
+            }
+        }
+        return this.rowCount;
+    }
+
+    private static int countRows(final H2DbServiceHelper helper, final String sqlTableName) throws SQLException {
+        return helper.withConnection(c -> {
             try (final Statement stmt = c.createStatement();
                     final ResultSet rset = stmt.executeQuery(MessageFormat.format(SQL_ROW_COUNT_TABLE, sqlTableName))) {
                 rset.next();
@@ -261,9 +331,7 @@ public class H2DbWireRecordStore implements WireEmitter, WireReceiver, Configura
                 logger.warn("Exception while trying to clean db");
             }
 
-            for (WireRecord wireRecord : records) {
-                store(wireRecord);
-            }
+            store(records);
         } else {
             logger.warn("DbService instance not attached");
         }
@@ -273,29 +341,47 @@ public class H2DbWireRecordStore implements WireEmitter, WireReceiver, Configura
     }
 
     /**
-     * Stores the provided {@link WireRecord} in the database
+     * Stores the provided {@link WireRecord}s in the database, in a single transaction
      *
-     * @param wireRecord
-     *            the {@link WireRecord} to be stored
+     * @param wireRecords
+     *            the {@link WireRecord}s to be stored
      * @throws NullPointerException
      *             if the provided argument is null
      */
-    private void store(final WireRecord wireRecord) {
-        requireNonNull(wireRecord, "Wire Record cannot be null");
+    private void store(final List<WireRecord> wireRecords) {
+        requireNonNull(wireRecords, "Wire Records cannot be null");
+        if (wireRecords.isEmpty()) {
+            return;
+        }
         int retryCount = 0;
         final String tableName = this.wireRecordStoreOptions.getTableName();
         do {
             try {
-                insertDataRecord(tableName, wireRecord);
+                insertDataRecords(tableName, wireRecords);
+                if (this.rowCount >= 0) {
+                    this.rowCount += wireRecords.size();
+                }
                 break;
             } catch (final SQLException e) {
                 logger.error("Insertion failed. Reconciling Table and Columns...", e);
-                reconcileDB(wireRecord, tableName);
+                reconcileDB(wireRecords, tableName);
                 retryCount++;
             }
         } while (retryCount < 2);
     }
 
+    private void reconcileDB(final List<WireRecord> wireRecords, final String tableName) {
+        final List<List<String>> reconciled = new ArrayList<>();
+        for (final WireRecord wireRecord : wireRecords) {
+            final List<String> columns = new ArrayList<>(wireRecord.getProperties().keySet());
+            if (!reconciled.contains(columns)) {
+                reconciled.add(columns);
+                reconcileDB(wireRecord, tableName);
+            }
+        }
+        this.rowCount = -1;
+    }
+
     /**
      * Tries to reconcile the database.
      *
@@ -424,60 +510,101 @@ public class H2DbWireRecordStore implements WireEmitter, WireReceiver, Configura
     }
 
     /**
-     * Insert the provided {@link WireRecord} to the specified table
+     * Inserts the provided {@link WireRecord}s to the specified table. Consecutive records with the same properties are
+     * inserted as a JDBC batch.
      *
      * @param tableName
      *            the table name
-     * @param wireRecord
-     *            the {@link WireRecord}
+     * @param wireRecords
+     *            the {@link WireRecord}s
      * @throws SQLException
-     *             the SQL exception
+     *             the SQL exception, in which case no record has been inserted
      * @throws NullPointerException
      *             if any of the provided arguments is null
      */
-    private void insertDataRecord(final String tableName, final WireRecord wireRecord) throws SQLException {
+    private void insertDataRecords(final String tableName, final List<WireRecord> wireRecords) throws SQLException {
         requireNonNull(tableName, "Table name cannot be null");
-        requireNonNull(wireRecord, "Wire Record cannot be null");
+        requireNonNull(wireRecords, "Wire Records cannot be null");
 
-        final Map<String, TypedValue<?>> wireRecordProperties = wireRecord.getProperties();
+        final long timestamp = System.currentTimeMillis();
 
         this.dbHelper.withConnection(c -> {
-            try (final PreparedStatement stmt = prepareStatement(c, tableName, wireRecordProperties,
-                    new Date().getTime())) {
-                stmt.execute();
+            final boolean autoCommit = c.getAutoCommit();
+            c.setAutoCommit(false);
+            try {
+                int start = 0;
+                while (start < wireRecords.size()) {
+                    final List<String> columns = new ArrayList<>(wireRecords.get(start).getProperties().keySet());
+                    int end = start + 1;
+                    while (end < wireRecords.size()
+                            && sameColumns(columns, wireRecords.get(end).getProperties().keySet())) {
+                        end++;
+                    }
+                    insertBatch(c, tableName, columns, wireRecords.subList(start, end), timestamp);
+                    start = end;
+                }
                 c.commit();
-                return (Void) null;
+            } catch (final SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(autoCommit);
             }
-
+            return (Void) null;
         });
 
-        logger.debug("Stored typed value");
+        logger.debug("Stored {} wire records", wireRecords.size());
     }
 
-    private PreparedStatement prepareStatement(Connection connection, String tableName,
-            final Map<String, TypedValue<?>> properties, long timestamp) throws SQLException {
+    private static boolean sameColumns(final List<String> columns, final Iterable<String> keys) {
+        int i = 0;
+        for (final String key : keys) {
+            if (i >= columns.size() || !columns.get(i).equals(key)) {
+                return false;
+            }
+            i++;
+        }
+        return i == columns.size();
+    }
 
-        final String sqlTableName = this.dbHelper.sanitizeSqlTableAndColumnName(tableName);
-        final StringBuilder sbCols = new StringBuilder();
-        final StringBuilder sbVals = new StringBuilder();
+    private void insertBatch(final Connection connection, final String tableName, final List<String> columns,
+            final List<WireRecord> wireRecords, final long timestamp) throws SQLException {
+        try (final PreparedStatement stmt = connection.prepareStatement(getInsertStatement(tableName, columns))) {
+            for (final WireRecord wireRecord : wireRecords) {
+                stmt.setLong(1, timestamp);
+                setParameters(stmt, wireRecord.getProperties());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
 
-        // add the timestamp
-        sbCols.append("TIMESTAMP");
-        sbVals.append("?");
+    private String getInsertStatement(final String tableName, final List<String> columns) {
+        String sqlInsert = this.insertStatements.get(columns);
+        if (sqlInsert == null) {
+            final String sqlTableName = this.dbHelper.sanitizeSqlTableAndColumnName(tableName);
+            final StringBuilder sbCols = new StringBuilder();
+            final StringBuilder sbVals = new StringBuilder();
+
+            // add the timestamp
+            sbCols.append("TIMESTAMP");
+            sbVals.append("?");
+
+            for (final String column : columns) {
+                final String sqlColName = this.dbHelper.sanitizeSqlTableAndColumnName(column);
+                sbCols.append(", ").append(sqlColName);
+                sbVals.append(", ?");
+            }
 
-        int i = 2;
-        for (Entry<String, TypedValue<?>> entry : properties.entrySet()) {
-            final String sqlColName = this.dbHelper.sanitizeSqlTableAndColumnName(entry.getKey());
-            sbCols.append(", ").append(sqlColName);
-            sbVals.append(", ?");
+            sqlInsert = MessageFormat.format(SQL_INSERT_RECORD, sqlTableName, sbCols.toString(), sbVals.toString());
+            this.insertStatements.put(columns, sqlInsert);
         }
+        return sqlInsert;
+    }
 
-        logger.debug("Storing data into table {}...", sqlTableName);
-        final String sqlInsert = MessageFormat.format(SQL_INSERT_RECORD, sqlTableName, sbCols.toString(),
-                sbVals.toString());
-        final PreparedStatement stmt = connection.prepareStatement(sqlInsert);
-        stmt.setLong(1, timestamp);
-
+    private void setParameters(final PreparedStatement stmt, final Map<String, TypedValue<?>> properties)
+            throws SQLException {
+        int i = 2;
         for (Entry<String, TypedValue<?>> entry : properties.entrySet()) {
             final DataType dataType = entry.getValue().getType();
             final Object value = entry.getValue();
@@ -510,8 +637,6 @@ public class H2DbWireRecordStore implements WireEmitter, WireReceiver, Configura
             }
             i++;
         }
-        return stmt;
-
     }
 
     protected void restartDbServiceTracker() {
@@ -0,0 +1,630 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.h2db.timeseries;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNull;
+import static org.eclipse.kura.configuration.ConfigurationService.KURA_SERVICE_PID;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.kura.KuraErrorCode;
+import org.eclipse.kura.KuraException;
+import org.eclipse.kura.configuration.ConfigurableComponent;
+import org.eclipse.kura.db.H2DbService;
+import org.eclipse.kura.internal.wire.h2db.common.H2DbServiceHelper;
+import org.eclipse.kura.internal.wire.h2db.timeseries.TimeSeriesCodec.SampleConsumer;
+import org.eclipse.kura.type.DataType;
+import org.eclipse.kura.type.LongValue;
+import org.eclipse.kura.type.StringValue;
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.wire.WireComponent;
+import org.eclipse.kura.wire.WireEmitter;
+import org.eclipse.kura.wire.WireEnvelope;
+import org.eclipse.kura.wire.WireHelperService;
+import org.eclipse.kura.wire.WireReceiver;
+import org.eclipse.kura.wire.WireRecord;
+import org.eclipse.kura.wire.WireSupport;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.component.ComponentContext;
+import org.osgi.service.component.ComponentException;
+import org.osgi.service.wireadmin.Wire;
+import org.osgi.util.tracker.ServiceTracker;
+import org.osgi.util.tracker.ServiceTrackerCustomizer;
+
+/**
+ * A wire component that stores the received {@link WireRecord}s as compressed time series.
+ * <p>
+ * Time is split in partitions of fixed duration. The values of each Wire Record property of an asset received in a
+ * partition are kept in memory and written as a single compressed row, a chunk, when the partition ends or the chunk
+ * reaches its maximum number of samples. The values are stored with the channel or asset timestamps carried by the
+ * records, as emitted by a WireAsset, or with the time of reception if the records do not carry them. Chunks older
+ * than the retention period are dropped as whole rows. Compared to the
+ * {@link org.eclipse.kura.internal.wire.h2db.store.H2DbWireRecordStore}, that writes one row per record, this
+ * reduces the size of the database and the number of pages written by orders of magnitude.
+ * <p>
+ * The samples that are still in memory are lost if the device stops without deactivating the component.
+ */
+public class H2DbTimeSeriesStore implements WireEmitter, WireReceiver, ConfigurableComponent, TimeSeriesStore {
+
+    private static final Logger logger = LogManager.getLogger(H2DbTimeSeriesStore.class);
+
+    private static final String SQL_CREATE_TABLE = "CREATE TABLE IF NOT EXISTS {0} "
+            + "(ID BIGINT AUTO_INCREMENT PRIMARY KEY, ASSET VARCHAR NOT NULL, SERIES VARCHAR NOT NULL, "
+            + "TYPE VARCHAR(16) NOT NULL, START_TS BIGINT NOT NULL, END_TS BIGINT NOT NULL, "
+            + "SAMPLES INTEGER NOT NULL, DATA VARBINARY NOT NULL);";
+
+    private static final String SQL_CREATE_INDEX = "CREATE INDEX IF NOT EXISTS {0} ON {1} (END_TS);";
+
+    private static final String SQL_INSERT_CHUNK = "INSERT INTO {0} "
+            + "(ASSET, SERIES, TYPE, START_TS, END_TS, SAMPLES, DATA) VALUES (?, ?, ?, ?, ?, ?, ?);";
+
+    // the chunks of a series are read in the order they were written, the order in which its samples were received
+    private static final String SQL_SELECT_CHUNKS = "SELECT ASSET, SERIES, TYPE, SAMPLES, DATA FROM {0} "
+            + "WHERE END_TS >= ? AND START_TS < ? AND ID <= ? ORDER BY ID;";
+
+    private static final String SQL_SELECT_LAST_CHUNK_ID = "SELECT MAX(ID) FROM {0};";
+
+    private static final String SQL_DELETE_CHUNKS = "DELETE FROM {0} WHERE END_TS < ?;";
+
+    private static final long MAINTENANCE_INTERVAL = 60000;
+
+    // bounds the memory used while the database is not available
+    private static final int MAX_PENDING_CHUNKS = 10000;
+
+    // the properties of the records emitted by a WireAsset
+    private static final String ASSET_TIMESTAMP_PROPERTY = "assetTimestamp";
+    private static final String CHANNEL_TIMESTAMP_SUFFIX = "_timestamp";
+
+    private H2DbServiceHelper dbHelper;
+
+    private H2DbTimeSeriesStoreOptions options;
+
+    private volatile WireHelperService wireHelperService;
+
+    private WireSupport wireSupport;
+
+    private ServiceTracker<H2DbService, H2DbService> dbServiceTracker;
+
+    private ComponentContext componentContext;
+
+    private ScheduledExecutorService maintenanceExecutor;
+
+    private ScheduledFuture<?> maintenanceTask;
+
+    /** The chunks being filled, by asset and series name */
+    private final Map<String, Map<String, SeriesChunk>> openChunks = new LinkedHashMap<>();
+
+    /** The chunks that are complete but have not been written yet */
+    private final List<SeriesChunk> pendingChunks = new ArrayList<>();
+
+    /** The ID of the last chunk written to the table, {@link Long#MAX_VALUE} if not known */
+    private long lastChunkId = Long.MAX_VALUE;
+
+    public synchronized void bindDbService(final H2DbService dbService) {
+        this.dbHelper = H2DbServiceHelper.of(dbService);
+        reconcileTable();
+    }
+
+    public synchronized void unbindDbService(final H2DbService dbService) {
+        this.dbHelper = null;
+    }
+
+    public void bindWireHelperService(final WireHelperService wireHelperService) {
+        if (isNull(this.wireHelperService)) {
+            this.wireHelperService = wireHelperService;
+        }
+    }
+
+    public void unbindWireHelperService(final WireHelperService wireHelperService) {
+        if (this.wireHelperService == wireHelperService) {
+            this.wireHelperService = null;
+        }
+    }
+
+    /**
+     * OSGi Service Component callback for activation.
+     *
+     * @param componentContext
+     *            the component context
+     * @param properties
+     *            the properties
+     */
+    protected void activate(final ComponentContext componentContext, final Map<String, Object> properties) {
+        logger.debug("Activating H2 Time Series Store...");
+        this.componentContext = componentContext;
+        this.options = new H2DbTimeSeriesStoreOptions(properties);
+
+        this.wireSupport = this.wireHelperService.newWireSupport(this,
+                (ServiceReference<WireComponent>) componentContext.getServiceReference());
+        this.maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "H2DbTimeSeriesStore Maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduleMaintenance();
+
+        restartDbServiceTracker();
+        logger.debug("Activating H2 Time Series Store... Done");
+    }
+
+    /**
+     * OSGi Service Component callback for updating.
+     *
+     * @param properties
+     *            the updated service component properties
+     */
+    public synchronized void updated(final Map<String, Object> properties) {
+        logger.debug("Updating H2 Time Series Store...");
+
+        // the open chunks belong to the old table and partitions
+        closeChunks(Long.MAX_VALUE);
+        writePendingChunks();
+
+        final String oldDbServicePid = this.options.getDbServiceInstancePid();
+        this.options = new H2DbTimeSeriesStoreOptions(properties);
+        scheduleMaintenance();
+
+        if (oldDbServicePid.equals(this.options.getDbServiceInstancePid())) {
+            reconcileTable();
+        } else {
+            restartDbServiceTracker();
+        }
+
+        logger.debug("Updating H2 Time Series Store... Done");
+    }
+
+    /**
+     * OSGi Service Component callback for deactivation.
+     *
+     * @param componentContext
+     *            the component context
+     */
+    protected void deactivate(final ComponentContext componentContext) {
+        logger.debug("Deactivating H2 Time Series Store...");
+        this.maintenanceExecutor.shutdown();
+        synchronized (this) {
+            closeChunks(Long.MAX_VALUE);
+            writePendingChunks();
+            if (!this.pendingChunks.isEmpty()) {
+                logger.warn("Discarding {} chunks not written to the database", this.pendingChunks.size());
+            }
+        }
+        stopDbServiceTracker();
+        logger.debug("Deactivating H2 Time Series Store... Done");
+    }
+
+    private void scheduleMaintenance() {
+        if (this.maintenanceTask != null) {
+            this.maintenanceTask.cancel(false);
+        }
+        final long interval = Math.min(this.options.getChunkDuration(), MAINTENANCE_INTERVAL);
+        this.maintenanceTask = this.maintenanceExecutor.scheduleWithFixedDelay(this::maintenance, interval, interval,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes the chunks of the partitions that have ended, even if no records are received, and drops the chunks
+     * older than the retention period.
+     */
+    private synchronized void maintenance() {
+        final long now = System.currentTimeMillis();
+        closeChunks(getPartitionStart(now));
+        writePendingChunks();
+
+        if (this.dbHelper == null) {
+            return;
+        }
+        final String sqlTableName = this.dbHelper.sanitizeSqlTableAndColumnName(this.options.getTableName());
+        try {
+            final int deleted = this.dbHelper.withConnection(c -> {
+                try (final PreparedStatement stmt = c
+                        .prepareStatement(MessageFormat.format(SQL_DELETE_CHUNKS, sqlTableName))) {
+                    stmt.setLong(1, now - this.options.getRetentionPeriod());
+                    return stmt.executeUpdate();
+                }
+            });
+            if (deleted > 0) {
+                logger.debug("Dropped {} expired chunks from {}", deleted, sqlTableName);
+            }
+        } catch (final SQLException e) {
+            logger.error("Error in dropping the expired chunks from {}", sqlTableName, e);
+        }
+    }
+
+    private synchronized void reconcileTable() {
+        if (this.dbHelper == null) {
+            return;
+        }
+        final String tableName = this.options.getTableName();
+        final String sqlTableName = this.dbHelper.sanitizeSqlTableAndColumnName(tableName);
+        final String sqlIndexName = this.dbHelper.sanitizeSqlTableAndColumnName(tableName + "_END_TS");
+        try {
+            this.lastChunkId = this.dbHelper.withConnection(c -> {
+                this.dbHelper.execute(c, MessageFormat.format(SQL_CREATE_TABLE, sqlTableName));
+                this.dbHelper.execute(c, MessageFormat.format(SQL_CREATE_INDEX, sqlIndexName, sqlTableName));
+                try (final PreparedStatement stmt = c
+                        .prepareStatement(MessageFormat.format(SQL_SELECT_LAST_CHUNK_ID, sqlTableName));
+                        final ResultSet rset = stmt.executeQuery()) {
+                    return rset.next() ? rset.getLong(1) : 0L;
+                }
+            });
+        } catch (final SQLException e) {
+            this.lastChunkId = Long.MAX_VALUE;
+            logger.error("Error in creating the table {}", sqlTableName, e);
+        }
+    }
+
+    private long getPartitionStart(final long timestamp) {
+        final long chunkDuration = this.options.getChunkDuration();
+        return timestamp - Math.floorMod(timestamp, chunkDuration);
+    }
+
+    /**
+     * Moves the open chunks of the partitions that start before the provided time to the pending chunks.
+     */
+    private void closeChunks(final long partitionStart) {
+        final Iterator<Map<String, SeriesChunk>> assetIterator = this.openChunks.values().iterator();
+        while (assetIterator.hasNext()) {
+            final Map<String, SeriesChunk> assetChunks = assetIterator.next();
+            final Iterator<SeriesChunk> iterator = assetChunks.values().iterator();
+            while (iterator.hasNext()) {
+                final SeriesChunk chunk = iterator.next();
+                if (chunk.getPartitionStart() < partitionStart) {
+                    addPendingChunk(chunk);
+                    iterator.remove();
+                }
+            }
+            if (assetChunks.isEmpty()) {
+                assetIterator.remove();
+            }
+        }
+    }
+
+    private void addPendingChunk(final SeriesChunk chunk) {
+        if (this.pendingChunks.size() >= MAX_PENDING_CHUNKS) {
+            logger.warn("Too many chunks not written to the database, discarding the oldest");
+            this.pendingChunks.remove(0);
+        }
+        this.pendingChunks.add(chunk);
+    }
+
+    private void writePendingChunks() {
+        if (this.pendingChunks.isEmpty() || this.dbHelper == null) {
+            return;
+        }
+        final String sqlTableName = this.dbHelper.sanitizeSqlTableAndColumnName(this.options.getTableName());
+        try {
+            final long chunkId = this.dbHelper.withConnection(c -> {
+                final boolean autoCommit = c.getAutoCommit();
+                c.setAutoCommit(false);
+                try (final PreparedStatement stmt = c.prepareStatement(
+                        MessageFormat.format(SQL_INSERT_CHUNK, sqlTableName), Statement.RETURN_GENERATED_KEYS)) {
+                    for (final SeriesChunk chunk : this.pendingChunks) {
+                        stmt.setString(1, chunk.getAsset());
+                        stmt.setString(2, chunk.getSeries());
+                        stmt.setString(3, chunk.getType().name());
+                        stmt.setLong(4, chunk.getMinTimestamp());
+                        stmt.setLong(5, chunk.getMaxTimestamp());
+                        stmt.setInt(6, chunk.size());
+                        stmt.setBytes(7, chunk.encode());
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                    long id = this.lastChunkId;
+                    try (final ResultSet rset = stmt.getGeneratedKeys()) {
+                        while (rset.next()) {
+                            id = rset.getLong(1);
+                        }
+                    }
+                    c.commit();
+                    return id;
+                } catch (final SQLException e) {
+                    c.rollback();
+                    throw e;
+                } finally {
+                    c.setAutoCommit(autoCommit);
+                }
+            });
+            logger.debug("Stored {} chunks", this.pendingChunks.size());
+            this.pendingChunks.clear();
+            this.lastChunkId = chunkId;
+        } catch (final SQLException e) {
+            logger.error("Error in storing chunks in {}, retrying later", sqlTableName, e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void consumersConnected(final Wire[] wires) {
+        this.wireSupport.consumersConnected(wires);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onWireReceive(final WireEnvelope wireEnvelope) {
+        requireNonNull(wireEnvelope, "Wire Envelope cannot be null");
+
+        final List<WireRecord> records = wireEnvelope.getRecords();
+        store(wireEnvelope.getEmitterPid(), records);
+
+        // emit the list of Wire Records to the downstream components
+        this.wireSupport.emit(records);
+    }
+
+    private synchronized void store(final String emitterPid, final List<WireRecord> records) {
+        final long now = System.currentTimeMillis();
+        final int maxSamples = this.options.getChunkMaxSamples();
+        boolean chunksClosed = false;
+
+        for (final WireRecord record : records) {
+            final Map<String, TypedValue<?>> properties = record.getProperties();
+            final TypedValue<?> assetName = properties.get(ASSET_NAME_PROPERTY);
+            final String asset = assetName != null && assetName.getValue() != null
+                    ? String.valueOf(assetName.getValue()) : emitterPid;
+            final long recordTimestamp = getTimestamp(properties, ASSET_TIMESTAMP_PROPERTY, now);
+            final Map<String, SeriesChunk> assetChunks = this.openChunks.computeIfAbsent(asset,
+                    a -> new LinkedHashMap<>());
+
+            for (final Entry<String, TypedValue<?>> entry : properties.entrySet()) {
+                final String name = entry.getKey();
+                final TypedValue<?> value = entry.getValue();
+                if (value == null || value.getValue() == null || isTimestampOrAssetName(name, properties)) {
+                    continue;
+                }
+                final long timestamp = getTimestamp(properties, name + CHANNEL_TIMESTAMP_SUFFIX, recordTimestamp);
+                final long partitionStart = getPartitionStart(timestamp);
+                final DataType type = value.getType();
+                SeriesChunk chunk = assetChunks.get(name);
+                if (chunk != null && (chunk.getType() != type || chunk.getPartitionStart() != partitionStart
+                        || chunk.size() >= maxSamples)) {
+                    addPendingChunk(chunk);
+                    chunksClosed = true;
+                    chunk = null;
+                }
+                if (chunk == null) {
+                    chunk = new SeriesChunk(asset, name, type, partitionStart);
+                    assetChunks.put(name, chunk);
+                }
+                chunk.add(timestamp, value);
+            }
+        }
+
+        // if the database is not available, the maintenance task retries
+        if (chunksClosed) {
+            writePendingChunks();
+        }
+    }
+
+    private static long getTimestamp(final Map<String, TypedValue<?>> properties, final String name,
+            final long defaultTimestamp) {
+        final TypedValue<?> value = properties.get(name);
+        if (value instanceof LongValue && value.getValue() != null) {
+            return ((LongValue) value).getValue();
+        }
+        return defaultTimestamp;
+    }
+
+    /**
+     * Returns true if the property carries the asset name or the timestamp of another property, rather than a value.
+     */
+    private static boolean isTimestampOrAssetName(final String name, final Map<String, TypedValue<?>> properties) {
+        if (ASSET_NAME_PROPERTY.equals(name) || ASSET_TIMESTAMP_PROPERTY.equals(name)) {
+            return true;
+        }
+        return name.endsWith(CHANNEL_TIMESTAMP_SUFFIX)
+                && properties.containsKey(name.substring(0, name.length() - CHANNEL_TIMESTAMP_SUFFIX.length()));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The database is read without holding the lock of the store, so that records can be received meanwhile. The
+     * chunks in memory and the ID of the last chunk written are taken under the lock, the chunks written after that
+     * are skipped in the database since they are read from memory.
+     */
+    @Override
+    public List<WireRecord> query(final long from, final long to, final Set<String> seriesNames) throws KuraException {
+        final H2DbServiceHelper helper;
+        final String sqlTableName;
+        final long lastWrittenChunkId;
+        final List<SeriesChunk> chunks;
+        synchronized (this) {
+            if (this.dbHelper == null) {
+                throw new KuraException(KuraErrorCode.STORE_ERROR, "H2DbService instance not attached");
+            }
+            helper = this.dbHelper;
+            sqlTableName = this.dbHelper.sanitizeSqlTableAndColumnName(this.options.getTableName());
+            lastWrittenChunkId = this.lastChunkId;
+
+            // the pending chunks do not change anymore, the open ones are still being filled
+            chunks = new ArrayList<>();
+            for (final SeriesChunk chunk : this.pendingChunks) {
+                if (seriesNames == null || seriesNames.contains(chunk.getSeries())) {
+                    chunks.add(chunk);
+                }
+            }
+            for (final Map<String, SeriesChunk> assetChunks : this.openChunks.values()) {
+                for (final SeriesChunk chunk : assetChunks.values()) {
+                    if (seriesNames == null || seriesNames.contains(chunk.getSeries())) {
+                        chunks.add(chunk.copy());
+                    }
+                }
+            }
+        }
+
+        // the samples of each series are collected in the order they were received: from the database, then from
+        // the pending chunks and finally from the open ones
+        final RecordCollector collector = new RecordCollector();
+
+        try {
+            helper.withConnection(c -> {
+                try (final PreparedStatement stmt = c
+                        .prepareStatement(MessageFormat.format(SQL_SELECT_CHUNKS, sqlTableName))) {
+                    stmt.setLong(1, from);
+                    stmt.setLong(2, to);
+                    stmt.setLong(3, lastWrittenChunkId);
+                    try (final ResultSet rset = stmt.executeQuery()) {
+                        while (rset.next()) {
+                            final String series = rset.getString(2);
+                            if (seriesNames == null || seriesNames.contains(series)) {
+                                TimeSeriesCodec.decode(DataType.valueOf(rset.getString(3)), rset.getBytes(5),
+                                        rset.getInt(4), from, to, collector.forSeries(rset.getString(1), series));
+                            }
+                        }
+                    }
+                }
+                return (Void) null;
+            });
+        } catch (final SQLException | RuntimeException e) {
+            throw new KuraException(KuraErrorCode.STORE_ERROR, e, "Error in reading the chunks from " + sqlTableName);
+        }
+
+        for (final SeriesChunk chunk : chunks) {
+            chunk.forEach(from, to, collector.forSeries(chunk.getAsset(), chunk.getSeries()));
+        }
+
+        return collector.getRecords();
+    }
+
+    protected void restartDbServiceTracker() {
+        stopDbServiceTracker();
+        try {
+            final Filter filter = FrameworkUtil
+                    .createFilter("(" + KURA_SERVICE_PID + "=" + this.options.getDbServiceInstancePid() + ")");
+            this.dbServiceTracker = new ServiceTracker<>(this.componentContext.getBundleContext(), filter,
+                    new ServiceTrackerCustomizer<H2DbService, H2DbService>() {
+
+                        @Override
+                        public H2DbService addingService(ServiceReference<H2DbService> reference) {
+                            logger.info("H2DbService instance found");
+                            H2DbService h2DbService = H2DbTimeSeriesStore.this.componentContext.getBundleContext()
+                                    .getService(reference);
+                            bindDbService(h2DbService);
+                            return h2DbService;
+                        }
+
+                        @Override
+                        public void modifiedService(ServiceReference<H2DbService> reference, H2DbService service) {
+                            logger.info("H2DbService instance updated, recreating table if needed...");
+                            reconcileTable();
+                        }
+
+                        @Override
+                        public void removedService(ServiceReference<H2DbService> reference, H2DbService service) {
+                            logger.info("H2DbService instance removed");
+                            unbindDbService(service);
+                            H2DbTimeSeriesStore.this.componentContext.getBundleContext().ungetService(reference);
+                        }
+                    });
+            this.dbServiceTracker.open();
+        } catch (InvalidSyntaxException e) {
+            throw new ComponentException(e);
+        }
+    }
+
+    private void stopDbServiceTracker() {
+        if (this.dbServiceTracker != null) {
+            this.dbServiceTracker.close();
+            this.dbServiceTracker = null;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object polled(final Wire wire) {
+        return this.wireSupport.polled(wire);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void producersConnected(final Wire[] wires) {
+        this.wireSupport.producersConnected(wires);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void updated(final Wire wire, final Object value) {
+        this.wireSupport.updated(wire, value);
+    }
+
+    /**
+     * Groups the queried samples in records by asset, timestamp and sequence. The n-th value of a series of an asset
+     * with a given timestamp belongs to the n-th record of the asset with that timestamp.
+     */
+    private static final class RecordCollector {
+
+        private static final Comparator<RecordKey> RECORD_ORDER = Comparator.<RecordKey> comparingLong(
+                k -> k.timestamp).thenComparingInt(k -> k.sequence).thenComparing(k -> k.asset);
+
+        private final TreeMap<RecordKey, Map<String, TypedValue<?>>> records = new TreeMap<>(RECORD_ORDER);
+
+        /** The number of values collected, by asset, series and timestamp */
+        private final Map<List<Object>, Integer> counts = new HashMap<>();
+
+        SampleConsumer forSeries(final String asset, final String series) {
+            return (timestamp, value) -> {
+                final int sequence = this.counts.merge(Arrays.asList(asset, series, timestamp), 1, Integer::sum) - 1;
+                this.records.computeIfAbsent(new RecordKey(asset, timestamp, sequence), k -> new HashMap<>())
+                        .put(series, value);
+            };
+        }
+
+        List<WireRecord> getRecords() {
+            final List<WireRecord> result = new ArrayList<>(this.records.size());
+            for (final Entry<RecordKey, Map<String, TypedValue<?>>> entry : this.records.entrySet()) {
+                final Map<String, TypedValue<?>> properties = entry.getValue();
+                properties.put(TIMESTAMP_PROPERTY, new LongValue(entry.getKey().timestamp));
+                properties.put(ASSET_NAME_PROPERTY, new StringValue(entry.getKey().asset));
+                result.add(new WireRecord(properties));
+            }
+            return result;
+        }
+    }
+
+    private static final class RecordKey {
+
+        private final String asset;
+        private final long timestamp;
+        private final int sequence;
+
+        RecordKey(final String asset, final long timestamp, final int sequence) {
+            this.asset = asset;
+            this.timestamp = timestamp;
+            this.sequence = sequence;
+        }
+    }
+}
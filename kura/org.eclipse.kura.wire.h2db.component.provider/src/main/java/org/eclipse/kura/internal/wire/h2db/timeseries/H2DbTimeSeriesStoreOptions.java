@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.h2db.timeseries;
+
+import static java.util.Objects.nonNull;
+import static java.util.Objects.requireNonNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.kura.db.H2DbService;
+
+/**
+ * Contains the options of the {@link H2DbTimeSeriesStore}.
+ */
+final class H2DbTimeSeriesStoreOptions {
+
+    private static final String DB_SERVICE_INSTANCE = "db.service.pid";
+
+    private static final String TABLE_NAME = "table.name";
+
+    private static final String CHUNK_DURATION = "chunk.duration";
+
+    private static final String CHUNK_MAX_SAMPLES = "chunk.max.samples";
+
+    private static final String RETENTION_PERIOD = "retention.period";
+
+    private static final String DEFAULT_TABLE_NAME = "WR_timeseries";
+
+    private static final int DEFAULT_CHUNK_DURATION = 600;
+
+    private static final int DEFAULT_CHUNK_MAX_SAMPLES = 1000;
+
+    private static final int DEFAULT_RETENTION_PERIOD = 168;
+
+    private final Map<String, Object> properties;
+
+    H2DbTimeSeriesStoreOptions(final Map<String, Object> properties) {
+        requireNonNull(properties, "Properties cannot be null");
+        this.properties = Collections.unmodifiableMap(new HashMap<>(properties));
+    }
+
+    String getTableName() {
+        String tableName = DEFAULT_TABLE_NAME;
+        final Object name = this.properties.get(TABLE_NAME);
+        if (nonNull(name) && name instanceof String) {
+            tableName = name.toString();
+        }
+        return tableName;
+    }
+
+    /**
+     * Returns the duration of a time partition.
+     *
+     * @return the chunk duration in milliseconds
+     */
+    long getChunkDuration() {
+        return getPositiveInteger(CHUNK_DURATION, DEFAULT_CHUNK_DURATION) * 1000L;
+    }
+
+    /**
+     * Returns the number of samples after which a chunk is written even if its time partition has not ended.
+     *
+     * @return the maximum number of samples of a chunk
+     */
+    int getChunkMaxSamples() {
+        return getPositiveInteger(CHUNK_MAX_SAMPLES, DEFAULT_CHUNK_MAX_SAMPLES);
+    }
+
+    /**
+     * Returns the age after which a chunk is dropped.
+     *
+     * @return the retention period in milliseconds
+     */
+    long getRetentionPeriod() {
+        return getPositiveInteger(RETENTION_PERIOD, DEFAULT_RETENTION_PERIOD) * 3600000L;
+    }
+
+    String getDbServiceInstancePid() {
+        String dbServicePid = H2DbService.DEFAULT_INSTANCE_PID;
+        final Object pid = this.properties.get(DB_SERVICE_INSTANCE);
+        if (nonNull(pid) && pid instanceof String) {
+            dbServicePid = pid.toString();
+        }
+        return dbServicePid;
+    }
+
+    private int getPositiveInteger(final String key, final int defaultValue) {
+        final Object value = this.properties.get(key);
+        if (value instanceof Integer && (Integer) value > 0) {
+            return (Integer) value;
+        }
+        return defaultValue;
+    }
+}
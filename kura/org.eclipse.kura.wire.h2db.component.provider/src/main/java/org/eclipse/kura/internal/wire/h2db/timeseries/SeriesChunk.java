@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.h2db.timeseries;
+
+import java.util.Arrays;
+
+import org.eclipse.kura.internal.wire.h2db.timeseries.TimeSeriesCodec.SampleConsumer;
+import org.eclipse.kura.type.DataType;
+import org.eclipse.kura.type.TypedValue;
+
+/**
+ * The samples of one series of an asset received in the current time partition and not yet written to the database.
+ */
+final class SeriesChunk {
+
+    private final String asset;
+    private final String series;
+    private final DataType type;
+    private final long partitionStart;
+
+    private long[] timestamps = new long[16];
+    private long[] values;
+    private Object[] objects;
+    private int size;
+
+    private long minTimestamp = Long.MAX_VALUE;
+    private long maxTimestamp = Long.MIN_VALUE;
+
+    SeriesChunk(final String asset, final String series, final DataType type, final long partitionStart) {
+        this.asset = asset;
+        this.series = series;
+        this.type = type;
+        this.partitionStart = partitionStart;
+        if (type == DataType.STRING || type == DataType.BYTE_ARRAY) {
+            this.objects = new Object[16];
+        } else {
+            this.values = new long[16];
+        }
+    }
+
+    String getAsset() {
+        return this.asset;
+    }
+
+    String getSeries() {
+        return this.series;
+    }
+
+    DataType getType() {
+        return this.type;
+    }
+
+    long getPartitionStart() {
+        return this.partitionStart;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the lowest timestamp of the samples, the samples are not necessarily received in timestamp order.
+     */
+    long getMinTimestamp() {
+        return this.minTimestamp;
+    }
+
+    long getMaxTimestamp() {
+        return this.maxTimestamp;
+    }
+
+    void add(final long timestamp, final TypedValue<?> value) {
+        if (this.size == this.timestamps.length) {
+            final int capacity = this.size * 2;
+            this.timestamps = Arrays.copyOf(this.timestamps, capacity);
+            if (this.values != null) {
+                this.values = Arrays.copyOf(this.values, capacity);
+            } else {
+                this.objects = Arrays.copyOf(this.objects, capacity);
+            }
+        }
+        this.timestamps[this.size] = timestamp;
+        this.minTimestamp = Math.min(this.minTimestamp, timestamp);
+        this.maxTimestamp = Math.max(this.maxTimestamp, timestamp);
+        if (this.values != null) {
+            this.values[this.size] = TimeSeriesCodec.toBits(value);
+        } else {
+            this.objects[this.size] = TimeSeriesCodec.toObject(value);
+        }
+        this.size++;
+    }
+
+    /**
+     * Returns a copy of this chunk, that is not affected by the samples added later to this one.
+     */
+    SeriesChunk copy() {
+        final SeriesChunk copy = new SeriesChunk(this.asset, this.series, this.type, this.partitionStart);
+        copy.timestamps = Arrays.copyOf(this.timestamps, this.size);
+        if (this.values != null) {
+            copy.values = Arrays.copyOf(this.values, this.size);
+        } else {
+            copy.objects = Arrays.copyOf(this.objects, this.size);
+        }
+        copy.size = this.size;
+        copy.minTimestamp = this.minTimestamp;
+        copy.maxTimestamp = this.maxTimestamp;
+        return copy;
+    }
+
+    byte[] encode() {
+        return TimeSeriesCodec.encode(this.type, this.timestamps, this.values, this.objects, this.size);
+    }
+
+    void forEach(final long from, final long to, final SampleConsumer consumer) {
+        for (int i = 0; i < this.size; i++) {
+            if (this.timestamps[i] >= from && this.timestamps[i] < to) {
+                consumer.accept(this.timestamps[i], TimeSeriesCodec.toTypedValue(this.type,
+                        this.values != null ? this.values[i] : 0, this.objects != null ? this.objects[i] : null));
+            }
+        }
+    }
+}
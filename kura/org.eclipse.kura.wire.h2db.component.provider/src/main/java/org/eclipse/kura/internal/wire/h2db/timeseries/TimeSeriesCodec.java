@@ -0,0 +1,389 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.h2db.timeseries;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.eclipse.kura.type.BooleanValue;
+import org.eclipse.kura.type.ByteArrayValue;
+import org.eclipse.kura.type.DataType;
+import org.eclipse.kura.type.DoubleValue;
+import org.eclipse.kura.type.FloatValue;
+import org.eclipse.kura.type.IntegerValue;
+import org.eclipse.kura.type.LongValue;
+import org.eclipse.kura.type.StringValue;
+import org.eclipse.kura.type.TypedValue;
+
+/**
+ * Encodes the samples of a series chunk as a bit stream: first all the timestamps, then all the values.
+ * <p>
+ * Timestamps, integers and longs are stored as zig-zag encoded delta-of-deltas in variable size buckets, so that
+ * samples taken at a fixed rate and counters cost one bit each. Floats and doubles are stored as the XOR with the
+ * previous value, keeping only the meaningful bits, as described in the Facebook Gorilla paper. Booleans take one bit,
+ * strings and byte arrays one bit if equal to the previous value.
+ */
+final class TimeSeriesCodec {
+
+    /**
+     * Receives the decoded samples.
+     */
+    @FunctionalInterface
+    interface SampleConsumer {
+
+        void accept(long timestamp, TypedValue<?> value);
+    }
+
+    private TimeSeriesCodec() {
+    }
+
+    /**
+     * Encodes the samples. Numeric and boolean values are passed as their {@link #toBits(TypedValue)} representation in
+     * <code>values</code>, strings and byte arrays as their <code>byte[]</code> representation in <code>objects</code>.
+     */
+    static byte[] encode(final DataType type, final long[] timestamps, final long[] values, final Object[] objects,
+            final int size) {
+        final BitWriter writer = new BitWriter(size * 2 + 16);
+
+        writeDeltaOfDeltas(writer, timestamps, size);
+
+        switch (type) {
+        case INTEGER:
+        case LONG:
+            writeDeltaOfDeltas(writer, values, size);
+            break;
+        case FLOAT:
+        case DOUBLE:
+            writeXors(writer, values, size);
+            break;
+        case BOOLEAN:
+            for (int i = 0; i < size; i++) {
+                writer.write(values[i], 1);
+            }
+            break;
+        default:
+            writeByteArrays(writer, objects, size);
+            break;
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Decodes <code>size</code> samples, passing those whose timestamp is in [from, to) to the consumer.
+     */
+    static void decode(final DataType type, final byte[] data, final int size, final long from, final long to,
+            final SampleConsumer consumer) {
+        final BitReader reader = new BitReader(data);
+        final long[] timestamps = new long[size];
+        readDeltaOfDeltas(reader, timestamps, size);
+
+        long[] values = null;
+        Object[] objects = null;
+        switch (type) {
+        case INTEGER:
+        case LONG:
+            values = new long[size];
+            readDeltaOfDeltas(reader, values, size);
+            break;
+        case FLOAT:
+        case DOUBLE:
+            values = new long[size];
+            readXors(reader, values, size);
+            break;
+        case BOOLEAN:
+            values = new long[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = reader.read(1);
+            }
+            break;
+        default:
+            objects = new Object[size];
+            readByteArrays(reader, objects, size);
+            break;
+        }
+
+        for (int i = 0; i < size; i++) {
+            if (timestamps[i] >= from && timestamps[i] < to) {
+                consumer.accept(timestamps[i], toTypedValue(type, values != null ? values[i] : 0,
+                        objects != null ? objects[i] : null));
+            }
+        }
+    }
+
+    static long toBits(final TypedValue<?> value) {
+        switch (value.getType()) {
+        case INTEGER:
+            return ((IntegerValue) value).getValue();
+        case LONG:
+            return ((LongValue) value).getValue();
+        case FLOAT:
+            // float to double is exact, doubles XOR better with the neighbouring values
+            return Double.doubleToRawLongBits(((FloatValue) value).getValue());
+        case DOUBLE:
+            return Double.doubleToRawLongBits(((DoubleValue) value).getValue());
+        case BOOLEAN:
+            return ((BooleanValue) value).getValue() ? 1 : 0;
+        default:
+            return 0;
+        }
+    }
+
+    static Object toObject(final TypedValue<?> value) {
+        switch (value.getType()) {
+        case STRING:
+            return ((StringValue) value).getValue().getBytes(StandardCharsets.UTF_8);
+        case BYTE_ARRAY:
+            return ((ByteArrayValue) value).getValue();
+        default:
+            return null;
+        }
+    }
+
+    static TypedValue<?> toTypedValue(final DataType type, final long bits, final Object object) {
+        switch (type) {
+        case INTEGER:
+            return new IntegerValue((int) bits);
+        case LONG:
+            return new LongValue(bits);
+        case FLOAT:
+            return new FloatValue((float) Double.longBitsToDouble(bits));
+        case DOUBLE:
+            return new DoubleValue(Double.longBitsToDouble(bits));
+        case BOOLEAN:
+            return new BooleanValue(bits != 0);
+        case STRING:
+            return new StringValue(new String((byte[]) object, StandardCharsets.UTF_8));
+        default:
+            return new ByteArrayValue((byte[]) object);
+        }
+    }
+
+    private static void writeDeltaOfDeltas(final BitWriter writer, final long[] values, final int size) {
+        if (size == 0) {
+            return;
+        }
+        writer.write(values[0], 64);
+        long previousDelta = 0;
+        for (int i = 1; i < size; i++) {
+            final long delta = values[i] - values[i - 1];
+            final long deltaOfDelta = delta - previousDelta;
+            final long zigZag = (deltaOfDelta << 1) ^ (deltaOfDelta >> 63);
+            if (zigZag == 0) {
+                writer.write(0, 1);
+            } else if (zigZag >>> 7 == 0) {
+                writer.write(0b10, 2);
+                writer.write(zigZag, 7);
+            } else if (zigZag >>> 9 == 0) {
+                writer.write(0b110, 3);
+                writer.write(zigZag, 9);
+            } else if (zigZag >>> 12 == 0) {
+                writer.write(0b1110, 4);
+                writer.write(zigZag, 12);
+            } else if (zigZag >>> 32 == 0) {
+                writer.write(0b11110, 5);
+                writer.write(zigZag, 32);
+            } else {
+                writer.write(0b11111, 5);
+                writer.write(zigZag, 64);
+            }
+            previousDelta = delta;
+        }
+    }
+
+    private static void readDeltaOfDeltas(final BitReader reader, final long[] values, final int size) {
+        if (size == 0) {
+            return;
+        }
+        values[0] = reader.read(64);
+        long previousDelta = 0;
+        for (int i = 1; i < size; i++) {
+            int ones = 0;
+            while (ones < 5 && reader.read(1) == 1) {
+                ones++;
+            }
+            final long zigZag;
+            switch (ones) {
+            case 0:
+                zigZag = 0;
+                break;
+            case 1:
+                zigZag = reader.read(7);
+                break;
+            case 2:
+                zigZag = reader.read(9);
+                break;
+            case 3:
+                zigZag = reader.read(12);
+                break;
+            case 4:
+                zigZag = reader.read(32);
+                break;
+            default:
+                zigZag = reader.read(64);
+                break;
+            }
+            final long delta = previousDelta + ((zigZag >>> 1) ^ -(zigZag & 1));
+            values[i] = values[i - 1] + delta;
+            previousDelta = delta;
+        }
+    }
+
+    private static void writeXors(final BitWriter writer, final long[] values, final int size) {
+        if (size == 0) {
+            return;
+        }
+        writer.write(values[0], 64);
+        int previousLeading = -1;
+        int previousTrailing = 0;
+        for (int i = 1; i < size; i++) {
+            final long xor = values[i] ^ values[i - 1];
+            if (xor == 0) {
+                writer.write(0, 1);
+                continue;
+            }
+            writer.write(1, 1);
+            final int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            final int trailing = Long.numberOfTrailingZeros(xor);
+            if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                // the meaningful bits fit in the previous window
+                writer.write(0, 1);
+                writer.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+            } else {
+                final int meaningful = 64 - leading - trailing;
+                writer.write(1, 1);
+                writer.write(leading, 5);
+                writer.write(meaningful - 1L, 6);
+                writer.write(xor >>> trailing, meaningful);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+    }
+
+    private static void readXors(final BitReader reader, final long[] values, final int size) {
+        if (size == 0) {
+            return;
+        }
+        values[0] = reader.read(64);
+        int previousLeading = 0;
+        int previousTrailing = 0;
+        for (int i = 1; i < size; i++) {
+            if (reader.read(1) == 0) {
+                values[i] = values[i - 1];
+                continue;
+            }
+            if (reader.read(1) == 1) {
+                previousLeading = (int) reader.read(5);
+                previousTrailing = 64 - previousLeading - ((int) reader.read(6) + 1);
+            }
+            final long xor = reader.read(64 - previousLeading - previousTrailing) << previousTrailing;
+            values[i] = values[i - 1] ^ xor;
+        }
+    }
+
+    private static void writeByteArrays(final BitWriter writer, final Object[] objects, final int size) {
+        for (int i = 0; i < size; i++) {
+            final byte[] bytes = (byte[]) objects[i];
+            if (i > 0 && Arrays.equals(bytes, (byte[]) objects[i - 1])) {
+                writer.write(0, 1);
+                continue;
+            }
+            writer.write(1, 1);
+            int length = bytes.length;
+            // unsigned varint
+            while (length >>> 7 != 0) {
+                writer.write((length & 0x7f) | 0x80, 8);
+                length >>>= 7;
+            }
+            writer.write(length, 8);
+            for (final byte b : bytes) {
+                writer.write(b, 8);
+            }
+        }
+    }
+
+    private static void readByteArrays(final BitReader reader, final Object[] objects, final int size) {
+        for (int i = 0; i < size; i++) {
+            if (reader.read(1) == 0) {
+                objects[i] = objects[i - 1];
+                continue;
+            }
+            int length = 0;
+            int shift = 0;
+            long b;
+            do {
+                b = reader.read(8);
+                length |= (int) (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            final byte[] bytes = new byte[length];
+            for (int j = 0; j < length; j++) {
+                bytes[j] = (byte) reader.read(8);
+            }
+            objects[i] = bytes;
+        }
+    }
+
+    private static final class BitWriter {
+
+        private byte[] buffer;
+        private int position;
+
+        BitWriter(final int initialCapacity) {
+            this.buffer = new byte[initialCapacity];
+        }
+
+        /**
+         * Writes the lowest <code>count</code> bits of <code>bits</code>, most significant first.
+         */
+        void write(final long bits, int count) {
+            if (this.position + count > this.buffer.length * 8) {
+                this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.position / 8 + 9));
+            }
+            while (count > 0) {
+                final int free = 8 - (this.position & 7);
+                final int n = Math.min(free, count);
+                final int chunk = (int) (bits >>> (count - n)) & ((1 << n) - 1);
+                this.buffer[this.position >>> 3] |= chunk << (free - n);
+                this.position += n;
+                count -= n;
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(this.buffer, (this.position + 7) / 8);
+        }
+    }
+
+    private static final class BitReader {
+
+        private final byte[] buffer;
+        private int position;
+
+        BitReader(final byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        long read(int count) {
+            long result = 0;
+            while (count > 0) {
+                final int available = 8 - (this.position & 7);
+                final int n = Math.min(available, count);
+                final int chunk = ((this.buffer[this.position >>> 3] & 0xff) >>> (available - n)) & ((1 << n) - 1);
+                result = (result << n) | chunk;
+                this.position += n;
+                count -= n;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.h2db.timeseries;
+
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.kura.KuraException;
+import org.eclipse.kura.wire.WireRecord;
+
+/**
+ * Provides time range queries on the Wire Records stored by a {@link H2DbTimeSeriesStore}. The store registers this
+ * interface with its kura.service.pid, so that other components can track it in the same way they track a
+ * H2DbService.
+ */
+public interface TimeSeriesStore {
+
+    /**
+     * Property added to the returned records, containing the timestamp of the values in milliseconds. It is the
+     * timestamp of the channel or of the asset carried by the received record if any, the time at which the record
+     * was received otherwise.
+     */
+    String TIMESTAMP_PROPERTY = "TIMESTAMP";
+
+    /**
+     * Property added to the returned records, containing the name of the asset that produced the values. It is the
+     * assetName property of the received record if any, the kura.service.pid of the emitter otherwise.
+     */
+    String ASSET_NAME_PROPERTY = "assetName";
+
+    /**
+     * Returns the records received in the provided time range, including the ones not yet written to the database.
+     * The values of an asset with the same timestamp are returned in the same record. If an asset produced more
+     * values of a series with the same timestamp, they are returned in as many records, in the order they were
+     * received.
+     *
+     * @param from
+     *            the start of the range in milliseconds, inclusive
+     * @param to
+     *            the end of the range in milliseconds, exclusive
+     * @param seriesNames
+     *            the names of the Wire Record properties to be returned, all of them if null
+     * @return the records ordered by {@link #TIMESTAMP_PROPERTY}, each of them with its {@link #ASSET_NAME_PROPERTY}
+     * @throws KuraException
+     *             if the database cannot be read
+     */
+    List<WireRecord> query(long from, long to, Set<String> seriesNames) throws KuraException;
+}
@@ -0,0 +1,322 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.helper;
+
+import static org.eclipse.kura.wire.graph.Constants.EMITTER_KURA_SERVICE_PID_PROP_NAME;
+import static org.eclipse.kura.wire.graph.Constants.RECEIVER_KURA_SERVICE_PID_PROP_NAME;
+import static org.eclipse.kura.wire.graph.Constants.WIRE_EMITTER_PORT_PROP_NAME;
+import static org.eclipse.kura.wire.graph.Constants.WIRE_RECEIVER_PORT_PROP_NAME;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.wire.WireRecord;
+import org.eclipse.kura.wire.graph.WireComponentMetrics;
+import org.eclipse.kura.wire.graph.WireMetrics;
+import org.osgi.service.wireadmin.Wire;
+
+/**
+ * Collects the metrics of a Wire Component and of its outgoing wires.
+ * <p>
+ * The recording methods are called for every envelope and do not allocate: counters are {@link LongAdder}s, the
+ * outgoing wires are looked up in an identity map replaced only when the wires change, and record sizes are summed by
+ * a per-thread visitor.
+ */
+final class ComponentMetricsRecorder {
+
+    private static final ThreadLocal<SizeEstimator> sizeEstimator = ThreadLocal.withInitial(SizeEstimator::new);
+
+    private final String kuraServicePid;
+
+    private final LongAdder receivedEnvelopes = new LongAdder();
+    private final LongAdder receivedRecords = new LongAdder();
+    private final LongAdder emittedEnvelopes = new LongAdder();
+    private final LongAdder emittedRecords = new LongAdder();
+    private final LongAdder emittedBytes = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private volatile Map<Wire, WireRecorder> wireRecorders = Collections.emptyMap();
+    private volatile WireDispatcher dispatcher;
+
+    ComponentMetricsRecorder(final String kuraServicePid) {
+        this.kuraServicePid = kuraServicePid;
+    }
+
+    void setDispatcher(final WireDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    void received(final List<WireRecord> records, final long elapsedNanos) {
+        this.receivedEnvelopes.increment();
+        this.receivedRecords.add(records.size());
+        this.latency.record(elapsedNanos);
+    }
+
+    /**
+     * Records an envelope emitted on a port and returns the estimated size of its records, to be passed to
+     * {@link #wireUpdated(Wire, int, long)} for each connected wire.
+     */
+    long emitted(final List<WireRecord> records) {
+        final SizeEstimator estimator = sizeEstimator.get();
+        estimator.size = 0;
+        if (records instanceof RandomAccess) {
+            for (int i = 0; i < records.size(); i++) {
+                records.get(i).getProperties().forEach(estimator);
+            }
+        } else {
+            for (final WireRecord record : records) {
+                record.getProperties().forEach(estimator);
+            }
+        }
+        this.emittedEnvelopes.increment();
+        this.emittedRecords.add(records.size());
+        this.emittedBytes.add(estimator.size);
+        return estimator.size;
+    }
+
+    void wireUpdated(final Wire wire, final int recordCount, final long bytes) {
+        final WireRecorder recorder = this.wireRecorders.get(wire);
+        if (recorder != null) {
+            recorder.envelopes.increment();
+            recorder.records.add(recordCount);
+            recorder.bytes.add(bytes);
+        }
+    }
+
+    /**
+     * Replaces the outgoing wires, keeping the counters of the wires that are still connected.
+     */
+    synchronized void wiresConnected(final Wire[] wires) {
+        final Map<Wire, WireRecorder> previous = this.wireRecorders;
+        final Map<Wire, WireRecorder> current = new IdentityHashMap<>();
+        if (wires != null) {
+            for (final Wire wire : wires) {
+                final WireRecorder recorder = previous.get(wire);
+                current.put(wire, recorder != null ? recorder : new WireRecorder(wire.getProperties()));
+            }
+        }
+        this.wireRecorders = current;
+    }
+
+    WireComponentMetrics getComponentMetrics() {
+        return new ComponentMetricsSnapshot(this);
+    }
+
+    void collectWireMetrics(final List<WireMetrics> result) {
+        for (final WireRecorder recorder : this.wireRecorders.values()) {
+            result.add(recorder.snapshot());
+        }
+    }
+
+    private static final class SizeEstimator implements BiConsumer<String, TypedValue<?>> {
+
+        private long size;
+
+        @Override
+        public void accept(final String key, final TypedValue<?> value) {
+            this.size += key.length();
+            if (value == null) {
+                return;
+            }
+            switch (value.getType()) {
+            case BOOLEAN:
+                this.size += 1;
+                break;
+            case INTEGER:
+            case FLOAT:
+                this.size += 4;
+                break;
+            case LONG:
+            case DOUBLE:
+                this.size += 8;
+                break;
+            case STRING:
+                this.size += ((String) value.getValue()).length();
+                break;
+            case BYTE_ARRAY:
+                this.size += ((byte[]) value.getValue()).length;
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    private static final class WireRecorder {
+
+        private final String emitterPid;
+        private final int emitterPort;
+        private final String receiverPid;
+        private final int receiverPort;
+        private final LongAdder envelopes = new LongAdder();
+        private final LongAdder records = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+
+        WireRecorder(final Dictionary<?, ?> properties) {
+            this.emitterPid = String.valueOf(properties.get(EMITTER_KURA_SERVICE_PID_PROP_NAME.value()));
+            this.emitterPort = intValue(properties.get(WIRE_EMITTER_PORT_PROP_NAME.value()));
+            this.receiverPid = String.valueOf(properties.get(RECEIVER_KURA_SERVICE_PID_PROP_NAME.value()));
+            this.receiverPort = intValue(properties.get(WIRE_RECEIVER_PORT_PROP_NAME.value()));
+        }
+
+        private static int intValue(final Object value) {
+            return value instanceof Integer ? (Integer) value : 0;
+        }
+
+        WireMetrics snapshot() {
+            return new WireMetricsSnapshot(this.emitterPid, this.emitterPort, this.receiverPid, this.receiverPort,
+                    this.envelopes.sum(), this.records.sum(), this.bytes.sum());
+        }
+    }
+
+    private static final class ComponentMetricsSnapshot implements WireComponentMetrics {
+
+        private final String pid;
+        private final long receivedEnvelopes;
+        private final long receivedRecords;
+        private final long emittedEnvelopes;
+        private final long emittedRecords;
+        private final long emittedBytes;
+        private final long droppedEnvelopes;
+        private final int queueSize;
+        private final LatencyHistogram.Snapshot latency;
+
+        ComponentMetricsSnapshot(final ComponentMetricsRecorder recorder) {
+            this.pid = recorder.kuraServicePid;
+            this.receivedEnvelopes = recorder.receivedEnvelopes.sum();
+            this.receivedRecords = recorder.receivedRecords.sum();
+            this.emittedEnvelopes = recorder.emittedEnvelopes.sum();
+            this.emittedRecords = recorder.emittedRecords.sum();
+            this.emittedBytes = recorder.emittedBytes.sum();
+            this.latency = recorder.latency.snapshot();
+
+            final WireDispatcher wireDispatcher = recorder.dispatcher;
+            this.droppedEnvelopes = wireDispatcher != null ? wireDispatcher.getDroppedCount() : 0;
+            this.queueSize = wireDispatcher != null ? wireDispatcher.getQueueSize() : 0;
+        }
+
+        @Override
+        public String getPid() {
+            return this.pid;
+        }
+
+        @Override
+        public long getReceivedEnvelopes() {
+            return this.receivedEnvelopes;
+        }
+
+        @Override
+        public long getReceivedRecords() {
+            return this.receivedRecords;
+        }
+
+        @Override
+        public long getEmittedEnvelopes() {
+            return this.emittedEnvelopes;
+        }
+
+        @Override
+        public long getEmittedRecords() {
+            return this.emittedRecords;
+        }
+
+        @Override
+        public long getEmittedBytes() {
+            return this.emittedBytes;
+        }
+
+        @Override
+        public long getDroppedEnvelopes() {
+            return this.droppedEnvelopes;
+        }
+
+        @Override
+        public int getQueueSize() {
+            return this.queueSize;
+        }
+
+        @Override
+        public long getLatency(final double quantile) {
+            return this.latency.getValueAtQuantile(quantile);
+        }
+
+        @Override
+        public long getMaxLatency() {
+            return this.latency.getMax();
+        }
+    }
+
+    private static final class WireMetricsSnapshot implements WireMetrics {
+
+        private final String emitterPid;
+        private final int emitterPort;
+        private final String receiverPid;
+        private final int receiverPort;
+        private final long envelopes;
+        private final long records;
+        private final long bytes;
+
+        WireMetricsSnapshot(final String emitterPid, final int emitterPort, final String receiverPid,
+                final int receiverPort, final long envelopes, final long records, final long bytes) {
+            this.emitterPid = emitterPid;
+            this.emitterPort = emitterPort;
+            this.receiverPid = receiverPid;
+            this.receiverPort = receiverPort;
+            this.envelopes = envelopes;
+            this.records = records;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String getEmitterPid() {
+            return this.emitterPid;
+        }
+
+        @Override
+        public int getEmitterPort() {
+            return this.emitterPort;
+        }
+
+        @Override
+        public String getReceiverPid() {
+            return this.receiverPid;
+        }
+
+        @Override
+        public int getReceiverPort() {
+            return this.receiverPort;
+        }
+
+        @Override
+        public long getEnvelopes() {
+            return this.envelopes;
+        }
+
+        @Override
+        public long getRecords() {
+            return this.records;
+        }
+
+        @Override
+        public long getBytes() {
+            return this.bytes;
+        }
+    }
+}
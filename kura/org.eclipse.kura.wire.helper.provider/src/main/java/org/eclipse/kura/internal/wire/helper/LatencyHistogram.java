@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.helper;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * A lock-free histogram of non negative values with a log-linear bucket layout: each power of two range is divided
+ * into 8 buckets, so that the relative error of the reported values is below 1/8. Recording a value does not allocate.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    void record(final long value) {
+        final long v = Math.max(0, value);
+        this.counts.incrementAndGet(indexOf(v));
+        this.max.accumulate(v);
+    }
+
+    Snapshot snapshot() {
+        final long[] snapshotCounts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshotCounts[i] = this.counts.get(i);
+            total += snapshotCounts[i];
+        }
+        return new Snapshot(snapshotCounts, total, this.max.get());
+    }
+
+    static int indexOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestValueAt(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        final long subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+
+    static final class Snapshot {
+
+        private final long[] counts;
+        private final long total;
+        private final long max;
+
+        private Snapshot(final long[] counts, final long total, final long max) {
+            this.counts = counts;
+            this.total = total;
+            this.max = max;
+        }
+
+        long getCount() {
+            return this.total;
+        }
+
+        long getMax() {
+            return this.max;
+        }
+
+        long getValueAtQuantile(final double quantile) {
+            if (this.total == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(Math.min(1, Math.max(0, quantile)) * this.total));
+            long seen = 0;
+            for (int i = 0; i < this.counts.length; i++) {
+                seen += this.counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueAt(i), this.max);
+                }
+            }
+            return this.max;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.helper;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Queues the deliveries to a receiving Wire Component and runs them on a shared executor.
+ * <p>
+ * At most one delivery per component runs at any time and deliveries run in the order they were accepted, so that
+ * components keep being called as if by a single emitter thread. Different components are called in parallel.
+ */
+final class WireDispatcher {
+
+    enum OverflowPolicy {
+        BLOCK("block"),
+        DROP_OLDEST("drop.oldest"),
+        DROP_NEWEST("drop.newest");
+
+        private final String value;
+
+        private OverflowPolicy(String value) {
+            this.value = value;
+        }
+
+        /**
+         * Returns the policy with the given configuration value, or {@link #BLOCK} if the value is not set or not
+         * valid.
+         */
+        static OverflowPolicy fromValue(Object value) {
+            if (value == null) {
+                return BLOCK;
+            }
+            for (OverflowPolicy policy : OverflowPolicy.values()) {
+                if (policy.value.equals(value)) {
+                    return policy;
+                }
+            }
+            logger.warn("Unknown receive queue policy {}, using {}", value, BLOCK.value);
+            return BLOCK;
+        }
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(WireDispatcher.class);
+
+    private final String kuraServicePid;
+    private final Executor executor;
+    private final int capacity;
+    private final OverflowPolicy policy;
+
+    private final ArrayDeque<Runnable> queue;
+    private final Lock lock = new ReentrantLock();
+    private final Condition notFull = this.lock.newCondition();
+    private boolean draining;
+    private boolean overflowing;
+    private long droppedCount;
+
+    WireDispatcher(final String kuraServicePid, final Executor executor, final int capacity,
+            final OverflowPolicy policy) {
+        requireNonNull(executor, "Executor cannot be null");
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be greater than zero");
+        }
+        this.kuraServicePid = kuraServicePid;
+        this.executor = executor;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.queue = new ArrayDeque<>(Math.min(capacity, 64));
+    }
+
+    /**
+     * Queues a delivery. Returns without waiting for the delivery to run unless the queue is full and the policy is
+     * {@link OverflowPolicy#BLOCK}, or the executor runs the queued deliveries on the calling thread.
+     */
+    void dispatch(final Runnable delivery) {
+        boolean startDrain = false;
+        this.lock.lock();
+        try {
+            if (this.queue.size() >= this.capacity && !makeRoom()) {
+                return;
+            }
+            this.queue.addLast(delivery);
+            if (!this.draining) {
+                this.draining = true;
+                startDrain = true;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+
+        if (startDrain) {
+            try {
+                this.executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                logger.warn("Dispatcher of {} is shut down, discarding pending envelopes", this.kuraServicePid);
+                this.lock.lock();
+                try {
+                    this.queue.clear();
+                    this.draining = false;
+                    this.notFull.signalAll();
+                } finally {
+                    this.lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Discards the deliveries not yet started.
+     */
+    void clear() {
+        this.lock.lock();
+        try {
+            this.queue.clear();
+            this.notFull.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    long getDroppedCount() {
+        this.lock.lock();
+        try {
+            return this.droppedCount;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    int getQueueSize() {
+        this.lock.lock();
+        try {
+            return this.queue.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // must be called with the lock held, returns false if the new delivery has to be discarded
+    private boolean makeRoom() {
+        if (this.policy == OverflowPolicy.BLOCK) {
+            try {
+                while (this.queue.size() >= this.capacity) {
+                    this.notFull.await();
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped();
+                return false;
+            }
+        }
+        dropped();
+        if (this.policy == OverflowPolicy.DROP_OLDEST) {
+            this.queue.pollFirst();
+            return true;
+        }
+        return false;
+    }
+
+    private void dropped() {
+        this.droppedCount++;
+        if (!this.overflowing) {
+            // log once per overflow episode, the queue may stay full for a long time
+            this.overflowing = true;
+            logger.warn("Receive queue of {} is full, dropping envelopes", this.kuraServicePid);
+        }
+    }
+
+    private void drain() {
+        for (;;) {
+            final Runnable next;
+            this.lock.lock();
+            try {
+                next = this.queue.pollFirst();
+                if (next == null) {
+                    this.draining = false;
+                    this.overflowing = false;
+                    return;
+                }
+                this.notFull.signal();
+            } finally {
+                this.lock.unlock();
+            }
+
+            try {
+                next.run();
+            } catch (Exception e) {
+                logger.warn("Failed to deliver envelope to {}", this.kuraServicePid, e);
+            }
+        }
+    }
+}
@@ -17,23 +17,58 @@ import static java.util.Objects.requireNonNull;
 import static org.eclipse.kura.configuration.ConfigurationService.KURA_SERVICE_PID;
 import static org.eclipse.kura.wire.graph.Constants.EMITTER_PORT_COUNT_PROP_NAME;
 import static org.eclipse.kura.wire.graph.Constants.RECEIVER_PORT_COUNT_PROP_NAME;
+import static org.eclipse.kura.wire.graph.Constants.RECEIVER_QUEUE_POLICY_PROP_NAME;
+import static org.eclipse.kura.wire.graph.Constants.RECEIVER_QUEUE_SIZE_PROP_NAME;
 import static org.osgi.framework.Constants.SERVICE_PID;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.kura.internal.wire.helper.WireDispatcher.OverflowPolicy;
 import org.eclipse.kura.util.service.ServiceUtil;
 import org.eclipse.kura.wire.WireComponent;
 import org.eclipse.kura.wire.WireEmitter;
 import org.eclipse.kura.wire.WireHelperService;
 import org.eclipse.kura.wire.WireReceiver;
 import org.eclipse.kura.wire.WireSupport;
+import org.eclipse.kura.wire.graph.WireComponentMetrics;
+import org.eclipse.kura.wire.graph.WireGraphMetricsService;
+import org.eclipse.kura.wire.graph.WireMetrics;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.ServiceReference;
 
 /**
  * The Class WireHelperServiceImpl is the implementation of
- * {@link WireHelperService}
+ * {@link WireHelperService} and {@link WireGraphMetricsService}
  */
-public final class WireHelperServiceImpl implements WireHelperService {
+public final class WireHelperServiceImpl implements WireHelperService, WireGraphMetricsService {
+
+    private static final int MAX_DISPATCH_THREADS = 4 * Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Runs the deliveries of the components with a receive queue. Each of these components uses at most one thread at
+     * a time. When all the threads are busy the queue of a component is drained by the emitting thread instead, so
+     * that a thread blocked on a full downstream queue never waits for a pool thread to drain it.
+     */
+    private final ThreadPoolExecutor dispatchExecutor = new ThreadPoolExecutor(
+            Runtime.getRuntime().availableProcessors(), MAX_DISPATCH_THREADS, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), new DispatcherThreadFactory(), WireHelperServiceImpl::runInCaller);
+
+    private final Map<String, MetricsEntry> metricsByPid = new ConcurrentHashMap<>();
+
+    protected void deactivate() {
+        this.dispatchExecutor.shutdown();
+    }
 
     /** {@inheritDoc} */
     @Override
@@ -151,6 +186,84 @@ public final class WireHelperServiceImpl implements WireHelperService {
         int emitterPortCount = getIntOrDefault(wireComponentRef.getProperty(EMITTER_PORT_COUNT_PROP_NAME.value()),
                 wireComponent instanceof WireEmitter ? 1 : 0);
 
-        return new WireSupportImpl(wireComponent, servicePid, kuraServicePid, receiverPortCount, emitterPortCount);
+        int receiverQueueSize = getIntOrDefault(wireComponentRef.getProperty(RECEIVER_QUEUE_SIZE_PROP_NAME.value()),
+                0);
+        final ComponentMetricsRecorder metrics = new ComponentMetricsRecorder(kuraServicePid);
+        WireDispatcher dispatcher = null;
+        if (receiverQueueSize > 0 && receiverPortCount > 0) {
+            final OverflowPolicy policy = OverflowPolicy
+                    .fromValue(wireComponentRef.getProperty(RECEIVER_QUEUE_POLICY_PROP_NAME.value()));
+            dispatcher = new WireDispatcher(kuraServicePid, this.dispatchExecutor, receiverQueueSize, policy);
+            metrics.setDispatcher(dispatcher);
+        }
+        this.metricsByPid.put(kuraServicePid, new MetricsEntry(wireComponentRef, metrics));
+
+        return new WireSupportImpl(wireComponent, servicePid, kuraServicePid, receiverPortCount, emitterPortCount,
+                dispatcher, metrics);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<WireComponentMetrics> getWireComponentMetrics() {
+        final List<WireComponentMetrics> result = new ArrayList<>();
+        for (final ComponentMetricsRecorder metrics : getActiveMetrics()) {
+            result.add(metrics.getComponentMetrics());
+        }
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<WireMetrics> getWireMetrics() {
+        final List<WireMetrics> result = new ArrayList<>();
+        for (final ComponentMetricsRecorder metrics : getActiveMetrics()) {
+            metrics.collectWireMetrics(result);
+        }
+        return result;
+    }
+
+    private List<ComponentMetricsRecorder> getActiveMetrics() {
+        final List<ComponentMetricsRecorder> result = new ArrayList<>();
+        final Iterator<MetricsEntry> iterator = this.metricsByPid.values().iterator();
+        while (iterator.hasNext()) {
+            final MetricsEntry entry = iterator.next();
+            // the reference has no bundle once the component has been unregistered
+            if (entry.reference.getBundle() == null) {
+                iterator.remove();
+            } else {
+                result.add(entry.metrics);
+            }
+        }
+        return result;
+    }
+
+    private static final class MetricsEntry {
+
+        private final ServiceReference<WireComponent> reference;
+        private final ComponentMetricsRecorder metrics;
+
+        MetricsEntry(final ServiceReference<WireComponent> reference, final ComponentMetricsRecorder metrics) {
+            this.reference = reference;
+            this.metrics = metrics;
+        }
+    }
+
+    private static void runInCaller(final Runnable drain, final ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Dispatch executor is shut down");
+        }
+        drain.run();
+    }
+
+    private static final class DispatcherThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "WireDispatcher " + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
     }
 }
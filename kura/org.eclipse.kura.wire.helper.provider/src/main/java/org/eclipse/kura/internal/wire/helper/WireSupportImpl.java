@@ -45,6 +45,12 @@ final class WireSupportImpl implements WireSupport, MultiportWireSupport {
 
     private static final Logger logger = LoggerFactory.getLogger(WireSupportImpl.class);
 
+    /**
+     * The time spent by the current thread updating the outgoing wires during the envelope delivery in progress, which
+     * is not accounted to the latency of the delivering component.
+     */
+    private static final ThreadLocal<long[]> nestedEmitTime = ThreadLocal.withInitial(() -> new long[1]);
+
     private final List<ReceiverPort> receiverPorts;
 
     private final List<EmitterPort> emitterPorts;
@@ -57,8 +63,26 @@ final class WireSupportImpl implements WireSupport, MultiportWireSupport {
 
     private final Map<Wire, ReceiverPortImpl> receiverPortByWire;
 
+    private final WireDispatcher dispatcher;
+
+    private final ComponentMetricsRecorder metrics;
+
     WireSupportImpl(final WireComponent wireComponent, final String servicePid, final String kuraServicePid,
             int inputPortCount, int outputPortCount) {
+        this(wireComponent, servicePid, kuraServicePid, inputPortCount, outputPortCount, null,
+                new ComponentMetricsRecorder(kuraServicePid));
+    }
+
+    /**
+     * @param dispatcher
+     *            delivers the received envelopes to the component, if null they are delivered by the thread of the
+     *            emitter
+     * @param metrics
+     *            records the envelopes received and emitted by the component
+     */
+    WireSupportImpl(final WireComponent wireComponent, final String servicePid, final String kuraServicePid,
+            int inputPortCount, int outputPortCount, final WireDispatcher dispatcher,
+            final ComponentMetricsRecorder metrics) {
         requireNonNull(wireComponent, "Wire component cannot be null");
         requireNonNull(servicePid, "service pid cannot be null");
         requireNonNull(kuraServicePid, "kura service pid cannot be null");
@@ -66,6 +90,8 @@ final class WireSupportImpl implements WireSupport, MultiportWireSupport {
         this.servicePid = servicePid;
         this.kuraServicePid = kuraServicePid;
         this.wireComponent = wireComponent;
+        this.dispatcher = dispatcher;
+        this.metrics = requireNonNull(metrics, "Metrics recorder cannot be null");
 
         if (inputPortCount < 0) {
             throw new IllegalArgumentException("Input port count must be greater or equal than zero");
@@ -104,6 +130,7 @@ final class WireSupportImpl implements WireSupport, MultiportWireSupport {
     @Override
     public synchronized void consumersConnected(final Wire[] wires) {
         clearEmitterPorts();
+        this.metrics.wiresConnected(wires);
         if (wires == null) {
             return;
         }
@@ -137,7 +164,10 @@ final class WireSupportImpl implements WireSupport, MultiportWireSupport {
     @Override
     public synchronized void producersConnected(final Wire[] wires) {
         clearReceiverPorts();
-        if (wires == null) {
+        if (wires == null || wires.length == 0) {
+            if (this.dispatcher != null) {
+                this.dispatcher.clear();
+            }
             return;
         }
         for (Wire w : wires) {
@@ -160,11 +190,31 @@ final class WireSupportImpl implements WireSupport, MultiportWireSupport {
             return;
         }
         final WireEnvelope envelope = (WireEnvelope) value;
-        if (wireComponent instanceof WireReceiver) {
-            ((WireReceiver) this.wireComponent).onWireReceive(envelope);
+        if (this.dispatcher == null) {
+            deliver(wire, envelope);
         } else {
-            final ReceiverPortImpl receiverPort = this.receiverPortByWire.get(wire);
-            receiverPort.consumer.accept(envelope);
+            this.dispatcher.dispatch(() -> deliver(wire, envelope));
+        }
+    }
+
+    private void deliver(final Wire wire, final WireEnvelope envelope) {
+        final long[] emitTime = nestedEmitTime.get();
+        final long outerEmitTime = emitTime[0];
+        emitTime[0] = 0;
+        final long start = System.nanoTime();
+        try {
+            if (this.wireComponent instanceof WireReceiver) {
+                ((WireReceiver) this.wireComponent).onWireReceive(envelope);
+            } else {
+                final ReceiverPortImpl receiverPort = this.receiverPortByWire.get(wire);
+                if (receiverPort != null) {
+                    receiverPort.consumer.accept(envelope);
+                }
+            }
+        } finally {
+            final long elapsed = System.nanoTime() - start - emitTime[0];
+            emitTime[0] = outerEmitTime;
+            this.metrics.received(envelope.getRecords(), elapsed);
         }
     }
 
@@ -192,8 +242,14 @@ final class WireSupportImpl implements WireSupport, MultiportWireSupport {
 
         @Override
         public void emit(WireEnvelope envelope) {
+            final List<WireRecord> records = envelope.getRecords();
+            final long bytes = WireSupportImpl.this.metrics.emitted(records);
+            final long[] emitTime = nestedEmitTime.get();
             for (final Wire wire : this.connectedWires) {
+                final long start = System.nanoTime();
                 wire.update(envelope);
+                emitTime[0] += System.nanoTime() - start;
+                WireSupportImpl.this.metrics.wireUpdated(wire, records.size(), bytes);
             }
         }
     }
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kura.cloudconnection.message.KuraMessage;
+import org.eclipse.kura.cloudconnection.publisher.CloudPublisher;
+import org.eclipse.kura.configuration.ConfigurableComponent;
+import org.eclipse.kura.message.KuraPayload;
+import org.eclipse.kura.wire.graph.WireComponentMetrics;
+import org.eclipse.kura.wire.graph.WireGraphMetricsService;
+import org.eclipse.kura.wire.graph.WireMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically publishes the Wire Graph metrics as a {@link KuraPayload}.
+ * <p>
+ * Component metrics are named {@code <pid>.<metric>}, wire metrics
+ * {@code wire.<emitter pid>.<emitter port>.<receiver pid>.<receiver port>.<metric>}. Latencies are in microseconds.
+ */
+public class WireGraphMetricsPublisher implements ConfigurableComponent {
+
+    private static final Logger logger = LoggerFactory.getLogger(WireGraphMetricsPublisher.class);
+
+    private static final String ENABLED_PROP_NAME = "enabled";
+    private static final String PUBLISH_INTERVAL_PROP_NAME = "publish.interval";
+    private static final int DEFAULT_PUBLISH_INTERVAL = 60;
+
+    private WireGraphMetricsService wireGraphMetricsService;
+    private volatile CloudPublisher cloudPublisher;
+
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> publishTask;
+
+    public void setWireGraphMetricsService(final WireGraphMetricsService wireGraphMetricsService) {
+        this.wireGraphMetricsService = wireGraphMetricsService;
+    }
+
+    public void unsetWireGraphMetricsService(final WireGraphMetricsService wireGraphMetricsService) {
+        this.wireGraphMetricsService = null;
+    }
+
+    public void setCloudPublisher(final CloudPublisher cloudPublisher) {
+        this.cloudPublisher = cloudPublisher;
+    }
+
+    public void unsetCloudPublisher(final CloudPublisher cloudPublisher) {
+        if (this.cloudPublisher == cloudPublisher) {
+            this.cloudPublisher = null;
+        }
+    }
+
+    protected void activate(final Map<String, Object> properties) {
+        logger.info("Activating Wire Graph Metrics Publisher...");
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "WireGraphMetricsPublisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        updated(properties);
+        logger.info("Activating Wire Graph Metrics Publisher... Done");
+    }
+
+    public synchronized void updated(final Map<String, Object> properties) {
+        if (this.publishTask != null) {
+            this.publishTask.cancel(false);
+            this.publishTask = null;
+        }
+
+        final Object enabled = properties.get(ENABLED_PROP_NAME);
+        final Object interval = properties.get(PUBLISH_INTERVAL_PROP_NAME);
+        final int publishInterval = interval instanceof Integer ? (Integer) interval : DEFAULT_PUBLISH_INTERVAL;
+
+        if (Boolean.TRUE.equals(enabled) && publishInterval > 0) {
+            this.publishTask = this.executor.scheduleAtFixedRate(this::publish, publishInterval, publishInterval,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    protected synchronized void deactivate() {
+        logger.info("Deactivating Wire Graph Metrics Publisher...");
+        this.executor.shutdownNow();
+        logger.info("Deactivating Wire Graph Metrics Publisher... Done");
+    }
+
+    private void publish() {
+        final CloudPublisher publisher = this.cloudPublisher;
+        if (publisher == null) {
+            logger.debug("No cloud publisher selected, metrics not published");
+            return;
+        }
+
+        try {
+            publisher.publish(new KuraMessage(buildPayload()));
+        } catch (Exception e) {
+            logger.warn("Failed to publish the wire graph metrics", e);
+        }
+    }
+
+    KuraPayload buildPayload() {
+        final KuraPayload payload = new KuraPayload();
+        payload.setTimestamp(new Date());
+
+        for (final WireComponentMetrics metrics : this.wireGraphMetricsService.getWireComponentMetrics()) {
+            final String prefix = metrics.getPid() + ".";
+            payload.addMetric(prefix + "received.envelopes", metrics.getReceivedEnvelopes());
+            payload.addMetric(prefix + "received.records", metrics.getReceivedRecords());
+            payload.addMetric(prefix + "emitted.envelopes", metrics.getEmittedEnvelopes());
+            payload.addMetric(prefix + "emitted.records", metrics.getEmittedRecords());
+            payload.addMetric(prefix + "emitted.bytes", metrics.getEmittedBytes());
+            payload.addMetric(prefix + "dropped.envelopes", metrics.getDroppedEnvelopes());
+            payload.addMetric(prefix + "queue.size", metrics.getQueueSize());
+            payload.addMetric(prefix + "latency.p50", toMicros(metrics.getLatency(0.5)));
+            payload.addMetric(prefix + "latency.p90", toMicros(metrics.getLatency(0.9)));
+            payload.addMetric(prefix + "latency.p99", toMicros(metrics.getLatency(0.99)));
+            payload.addMetric(prefix + "latency.max", toMicros(metrics.getMaxLatency()));
+        }
+
+        for (final WireMetrics metrics : this.wireGraphMetricsService.getWireMetrics()) {
+            final String prefix = "wire." + metrics.getEmitterPid() + "." + metrics.getEmitterPort() + "."
+                    + metrics.getReceiverPid() + "." + metrics.getReceiverPort() + ".";
+            payload.addMetric(prefix + "envelopes", metrics.getEnvelopes());
+            payload.addMetric(prefix + "records", metrics.getRecords());
+            payload.addMetric(prefix + "bytes", metrics.getBytes());
+        }
+
+        return payload;
+    }
+
+    private static long toMicros(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -356,6 +356,7 @@ public class WireGraphServiceImpl implements ConfigurableComponent, WireGraphSer
                     wireComponentProps.get("inputPortCount"));
             configurationProps.put(Constants.EMITTER_PORT_COUNT_PROP_NAME.value(),
                     wireComponentProps.get("outputPortCount"));
+            putReceiverQueueProperties(wireComponentProps, configurationProps);
             this.configurationService.createFactoryConfiguration(factoryPid, configToCreate.getPid(),
                     configurationProps, false);
         }
@@ -364,6 +365,8 @@ public class WireGraphServiceImpl implements ConfigurableComponent, WireGraphSer
         List<WireComponentConfiguration> componentsToUpdate = getComponentsToUpdate(newWireComponentConfigurations,
                 componentsToCreate);
         for (WireComponentConfiguration componentToUpdate : componentsToUpdate) {
+            putReceiverQueueProperties(componentToUpdate.getProperties(),
+                    componentToUpdate.getConfiguration().getConfigurationProperties());
             componentConfigurations.add(componentToUpdate.getConfiguration());
         }
 
@@ -377,6 +380,18 @@ public class WireGraphServiceImpl implements ConfigurableComponent, WireGraphSer
         this.configurationService.updateConfigurations(componentConfigurations, true);
     }
 
+    private static void putReceiverQueueProperties(final Map<String, Object> wireComponentProps,
+            final Map<String, Object> configurationProps) {
+        final Object queueSize = wireComponentProps.get("receiverQueueSize");
+        if (queueSize != null) {
+            configurationProps.put(Constants.RECEIVER_QUEUE_SIZE_PROP_NAME.value(), queueSize);
+        }
+        final Object queuePolicy = wireComponentProps.get("receiverQueuePolicy");
+        if (queuePolicy != null) {
+            configurationProps.put(Constants.RECEIVER_QUEUE_POLICY_PROP_NAME.value(), queuePolicy);
+        }
+    }
+
     private List<WireComponentConfiguration> getComponentsToUpdate(
             List<WireComponentConfiguration> newWireComponentConfigurations,
             List<WireComponentConfiguration> newComponents) {
@@ -9,6 +9,7 @@
  *******************************************************************************/
 package org.eclipse.kura.wire.script.filter.provider;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
@@ -22,6 +23,9 @@ import javax.script.ScriptEngine;
 import javax.script.ScriptException;
 
 import org.eclipse.kura.configuration.ConfigurableComponent;
+import org.eclipse.kura.internal.wire.expression.ExpressionContext;
+import org.eclipse.kura.internal.wire.expression.ExpressionException;
+import org.eclipse.kura.internal.wire.expression.Projection;
 import org.eclipse.kura.type.DataType;
 import org.eclipse.kura.type.TypedValue;
 import org.eclipse.kura.type.TypedValues;
@@ -47,10 +51,16 @@ public class ScriptFilter implements WireEmitter, WireReceiver, ConfigurableComp
 
     private static final String SCRIPT_PROPERTY_KEY = "script";
     private static final String SCRIPT_CONTEXT_DROP_PROPERTY_KEY = "script.context.drop";
+    private static final String SCRIPT_ENGINE_PROPERTY_KEY = "script.engine";
+
+    private static final String EXPRESSION_ENGINE = "expression";
 
     private CompiledScript script;
     private Bindings bindings;
 
+    /** The compiled script if the expression engine is selected, applied without holding the component lock */
+    private volatile Projection projection;
+
     private volatile WireHelperService wireHelperService;
     private WireSupport wireSupport;
 
@@ -74,9 +84,6 @@ public class ScriptFilter implements WireEmitter, WireReceiver, ConfigurableComp
         this.wireSupport = this.wireHelperService.newWireSupport(this,
                 (ServiceReference<WireComponent>) componentContext.getServiceReference());
 
-        this.scriptEngine = createEngine();
-        this.bindings = createBindings();
-
         updated(properties);
 
         logger.info("ActivatingScript Filter... Done");
@@ -90,6 +97,14 @@ public class ScriptFilter implements WireEmitter, WireReceiver, ConfigurableComp
     public synchronized void updated(final Map<String, Object> properties) {
         logger.info("Updating Script Filter...");
 
+        final boolean expressionEngine = EXPRESSION_ENGINE
+                .equals(properties.getOrDefault(SCRIPT_ENGINE_PROPERTY_KEY, "javascript"));
+
+        if (!expressionEngine && this.scriptEngine == null) {
+            this.scriptEngine = createEngine();
+            this.bindings = createBindings();
+        }
+
         final String scriptSource = (String) properties.get(SCRIPT_PROPERTY_KEY);
 
         if (scriptSource == null) {
@@ -98,6 +113,18 @@ public class ScriptFilter implements WireEmitter, WireReceiver, ConfigurableComp
         }
 
         this.script = null;
+        this.projection = null;
+
+        if (expressionEngine) {
+            try {
+                this.projection = Projection.compile(scriptSource);
+            } catch (ExpressionException e) {
+                logger.warn("Failed to compile script", e);
+            }
+            logger.info("Updating Script Filter... Done");
+            return;
+        }
+
         try {
             this.script = ((Compilable) this.scriptEngine).compile(scriptSource);
         } catch (ScriptException e) {
@@ -112,7 +139,39 @@ public class ScriptFilter implements WireEmitter, WireReceiver, ConfigurableComp
     }
 
     @Override
-    public synchronized void onWireReceive(WireEnvelope wireEnvelope) {
+    public void onWireReceive(WireEnvelope wireEnvelope) {
+        final Projection currentProjection = this.projection;
+        if (currentProjection != null) {
+            applyProjection(currentProjection, wireEnvelope);
+        } else {
+            executeScript(wireEnvelope);
+        }
+    }
+
+    private void applyProjection(final Projection projection, final WireEnvelope wireEnvelope) {
+        try {
+            final List<WireRecord> records = wireEnvelope.getRecords();
+            final ExpressionContext context = new ExpressionContext();
+            context.setEnvelope(wireEnvelope.getEmitterPid(), records);
+
+            final List<WireRecord> result = new ArrayList<>(records.size());
+            for (int i = 0; i < records.size(); i++) {
+                context.setCurrentRecord(i);
+                final WireRecord record = projection.apply(context);
+                if (record != null) {
+                    result.add(record);
+                }
+            }
+
+            if (!result.isEmpty()) {
+                this.wireSupport.emit(result);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to execute script", e);
+        }
+    }
+
+    private synchronized void executeScript(WireEnvelope wireEnvelope) {
         if (this.script == null) {
             logger.warn("Failed to compile script");
             return;
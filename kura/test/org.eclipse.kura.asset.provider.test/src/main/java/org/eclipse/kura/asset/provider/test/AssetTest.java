@@ -504,7 +504,8 @@ public final class AssetTest {
 
         List<AD> ads = ocd.getAD();
         assertNotNull(ads);
-        assertEquals(22, ads.size()); // description, driver, 20 from BaseChannelDescriptor and StubChannelDescriptor
+        // description, driver, I/O weight, 20 from BaseChannelDescriptor and StubChannelDescriptor
+        assertEquals(23, ads.size());
 
         assertEquals("asset.desc", ads.get(0).getId());
         assertEquals("driver.pid", ads.get(1).getId());
@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.asset.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.kura.asset.provider.AssetIoScheduler.AssetQueue;
+import org.eclipse.kura.driver.Driver;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AssetIoSchedulerTest {
+
+    private ExecutorService executor;
+    private AssetIoScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        this.executor = Executors.newCachedThreadPool();
+        this.scheduler = new AssetIoScheduler(this.executor);
+    }
+
+    @After
+    public void tearDown() {
+        this.executor.shutdownNow();
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(final List<CompletableFuture<Void>> futures) throws Exception {
+        for (final CompletableFuture<Void> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testAssetOperationsRunInOrder() throws Exception {
+        final Driver driver = mock(Driver.class);
+        this.scheduler.setDriverLimits(driver, 4, 0);
+
+        final AssetQueue asset = this.scheduler.newAssetQueue();
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final int index = i;
+            futures.add(this.scheduler.submit(asset, driver, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(1);
+                order.add(index);
+                running.decrementAndGet();
+                return null;
+            }));
+        }
+        await(futures);
+
+        assertEquals(1, maxRunning.get());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i, (int) order.get(i));
+        }
+    }
+
+    @Test
+    public void testDriverConcurrencyLimit() throws Exception {
+        final Driver driver = mock(Driver.class);
+        final Driver otherDriver = mock(Driver.class);
+        this.scheduler.setDriverLimits(driver, 2, 0);
+
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final AtomicInteger otherRunning = new AtomicInteger();
+        final AtomicInteger maxTotalRunning = new AtomicInteger();
+
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            futures.add(this.scheduler.submit(this.scheduler.newAssetQueue(), driver, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                maxTotalRunning.accumulateAndGet(running.get() + otherRunning.get(), Math::max);
+                sleep(20);
+                running.decrementAndGet();
+                return null;
+            }));
+            futures.add(this.scheduler.submit(this.scheduler.newAssetQueue(), otherDriver, () -> {
+                otherRunning.incrementAndGet();
+                maxTotalRunning.accumulateAndGet(running.get() + otherRunning.get(), Math::max);
+                sleep(20);
+                otherRunning.decrementAndGet();
+                return null;
+            }));
+        }
+        await(futures);
+
+        assertEquals(2, maxRunning.get());
+        // the driver without declared limits runs one operation at a time, in parallel with the other driver
+        assertEquals(3, maxTotalRunning.get());
+    }
+
+    @Test
+    public void testQueueDepth() throws Exception {
+        final Driver driver = mock(Driver.class);
+        this.scheduler.setDriverLimits(driver, 1, 2);
+
+        final CompletableFuture<Void> blocker = new CompletableFuture<>();
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        futures.add(this.scheduler.submit(this.scheduler.newAssetQueue(), driver, () -> blocker.get()));
+
+        // wait for the first operation to hold the driver
+        sleep(50);
+
+        for (int i = 0; i < 3; i++) {
+            futures.add(this.scheduler.submit(this.scheduler.newAssetQueue(), driver, () -> null));
+        }
+
+        try {
+            futures.get(3).get(10, TimeUnit.SECONDS);
+            fail("operation exceeding the queue depth should be rejected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+
+        blocker.complete(null);
+        await(futures.subList(0, 3));
+    }
+
+    @Test
+    public void testWeightedFairness() throws Exception {
+        final Driver driver = mock(Driver.class);
+
+        final AssetQueue light = this.scheduler.newAssetQueue();
+        final AssetQueue heavy = this.scheduler.newAssetQueue();
+        heavy.setWeight(3);
+
+        final List<AssetQueue> order = Collections.synchronizedList(new ArrayList<>());
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            for (final AssetQueue asset : new AssetQueue[] { light, heavy }) {
+                futures.add(this.scheduler.submit(asset, driver, () -> {
+                    order.add(asset);
+                    sleep(5);
+                    return null;
+                }));
+            }
+        }
+        await(futures);
+
+        // while both assets wait for the driver, the asset with weight 3 gets about 3 times the driver time
+        final List<AssetQueue> contended = order.subList(0, 40);
+        final int heavyCount = Collections.frequency(contended, heavy);
+        final int lightCount = Collections.frequency(contended, light);
+        assertTrue("heavy " + heavyCount + " light " + lightCount, heavyCount >= 2 * lightCount);
+        assertTrue("heavy " + heavyCount + " light " + lightCount, heavyCount <= 4 * lightCount);
+    }
+
+    @Test
+    public void testEqualWeightsAlternate() throws Exception {
+        final Driver driver = mock(Driver.class);
+
+        final AssetQueue first = this.scheduler.newAssetQueue();
+        final AssetQueue second = this.scheduler.newAssetQueue();
+
+        final List<AssetQueue> order = Collections.synchronizedList(new ArrayList<>());
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(this.scheduler.submit(first, driver, () -> {
+                order.add(first);
+                sleep(5);
+                return null;
+            }));
+        }
+        for (int i = 0; i < 20; i++) {
+            futures.add(this.scheduler.submit(second, driver, () -> {
+                order.add(second);
+                sleep(5);
+                return null;
+            }));
+        }
+        await(futures);
+
+        final List<AssetQueue> contended = order.subList(0, 20);
+        final int difference = Collections.frequency(contended, first) - Collections.frequency(contended, second);
+        assertTrue("difference " + difference, Math.abs(difference) <= 2);
+    }
+
+    @Test
+    public void testResultCompletedAfterDriverReleased() throws Exception {
+        final Driver driver = mock(Driver.class);
+        this.scheduler.setDriverLimits(driver, 1, 0);
+
+        final AssetQueue upstream = this.scheduler.newAssetQueue();
+        final AssetQueue downstream = this.scheduler.newAssetQueue();
+
+        final CompletableFuture<Void> started = new CompletableFuture<>();
+
+        // as a wire asset emitting to a synchronous wire asset attached to the same driver
+        final CompletableFuture<Object> nested = this.scheduler.submit(upstream, driver, () -> {
+            started.get();
+            return "value";
+        }).thenApply(value -> {
+            try {
+                return this.scheduler.submit(downstream, driver, () -> value + " emitted").get(5, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                return e;
+            }
+        });
+        started.complete(null);
+
+        assertEquals("value emitted", nested.get(10, TimeUnit.SECONDS));
+    }
+}
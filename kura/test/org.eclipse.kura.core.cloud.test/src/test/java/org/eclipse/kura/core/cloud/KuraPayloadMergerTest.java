@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.kura.core.cloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.eclipse.kura.message.KuraPayload;
+import org.junit.Test;
+
+public class KuraPayloadMergerTest {
+
+    @Test
+    public void testMerge() throws Exception {
+        KuraPayload oldest = new KuraPayload();
+        oldest.setTimestamp(new Date(1000));
+        oldest.addMetric("temperature", 20.0);
+        oldest.addMetric("humidity", 40);
+
+        KuraPayload older = new KuraPayload();
+        older.setTimestamp(new Date(2000));
+        older.addMetric("temperature", 21.0);
+        older.addMetric("pressure", 1013L);
+
+        KuraPayload newest = new KuraPayload();
+        newest.setTimestamp(new Date(3000));
+        newest.addMetric("temperature", 22.0);
+
+        byte[] merged = new KuraPayloadMerger().merge(Arrays.asList(encode(oldest), encode(older)), encode(newest));
+
+        KuraPayload result = new CloudPayloadProtoBufDecoderImpl(merged).buildFromByteArray();
+        assertEquals(new Date(3000), result.getTimestamp());
+        assertEquals(3, result.metricNames().size());
+        assertEquals(22.0, result.getMetric("temperature"));
+        assertEquals(40, result.getMetric("humidity"));
+        assertEquals(1013L, result.getMetric("pressure"));
+    }
+
+    @Test
+    public void testMergeInvalidPayload() throws Exception {
+        KuraPayload newest = new KuraPayload();
+        newest.addMetric("temperature", 22.0);
+
+        assertNull(new KuraPayloadMerger().merge(Arrays.asList(new byte[] { 1, 2, 3 }), encode(newest)));
+    }
+
+    private static byte[] encode(KuraPayload payload) throws Exception {
+        return new CloudPayloadProtoBufEncoderImpl(payload).getBytes();
+    }
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.kura.core.message.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Date;
+
+import org.eclipse.kura.KuraInvalidMetricTypeException;
+import org.eclipse.kura.core.cloud.CloudPayloadProtoBufDecoderImpl;
+import org.eclipse.kura.core.message.protobuf.KuraPayloadProto;
+import org.eclipse.kura.core.message.protobuf.KuraPayloadProto.KuraPayload.KuraMetric;
+import org.eclipse.kura.message.KuraPayload;
+import org.eclipse.kura.message.KuraPosition;
+import org.junit.Test;
+
+import com.google.protobuf.ByteString;
+
+public class KuraPayloadProtoBufWriterTest {
+
+    @Test
+    public void testSameBytesAsGeneratedCode() throws Exception {
+        KuraPosition position = new KuraPosition();
+        position.setLatitude(45.5);
+        position.setLongitude(-13.25);
+        position.setAltitude(120.0);
+        position.setTimestamp(new Date(1500000000000L));
+        position.setSatellites(7);
+        position.setStatus(-1);
+
+        KuraPayload payload = new KuraPayload();
+        payload.setTimestamp(new Date(1520000000000L));
+        payload.setPosition(position);
+        payload.addMetric("string", "caf\u00e9 \u2603");
+        payload.addMetric("double", 1.5);
+        payload.addMetric("int", -42);
+        payload.addMetric("float", 2.5f);
+        payload.addMetric("long", Long.MAX_VALUE);
+        payload.addMetric("bool", true);
+        payload.addMetric("bytes", new byte[] { 1, 2, 3 });
+        payload.setBody(new byte[300]);
+
+        KuraPayloadProto.KuraPayload.Builder expected = KuraPayloadProto.KuraPayload.newBuilder();
+        expected.setTimestamp(1520000000000L);
+        expected.setPosition(KuraPayloadProto.KuraPayload.KuraPosition.newBuilder().setLatitude(45.5)
+                .setLongitude(-13.25).setAltitude(120.0).setTimestamp(1500000000000L).setSatellites(7).setStatus(-1));
+        for (String name : payload.metricNames()) {
+            expected.addMetric(buildMetric(name, payload.getMetric(name)));
+        }
+        expected.setBody(ByteString.copyFrom(new byte[300]));
+
+        assertArrayEquals(expected.build().toByteArray(), KuraPayloadProtoBufWriter.encode(payload));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        KuraPayload payload = new KuraPayload();
+        payload.addMetric("temperature", 21.5);
+        payload.addMetric("missing", null);
+        payload.addMetric("name", "sensor");
+
+        KuraPayload decoded = new CloudPayloadProtoBufDecoderImpl(KuraPayloadProtoBufWriter.encode(payload))
+                .buildFromByteArray();
+
+        assertEquals(2, decoded.metricNames().size());
+        assertEquals(21.5, decoded.getMetric("temperature"));
+        assertEquals("sensor", decoded.getMetric("name"));
+    }
+
+    @Test
+    public void testEmptyPayload() throws Exception {
+        assertEquals(0, KuraPayloadProtoBufWriter.encode(new KuraPayload()).length);
+    }
+
+    @Test
+    public void testUnsupportedMetricType() throws Exception {
+        KuraPayload payload = new KuraPayload();
+        payload.addMetric("object", new Object());
+
+        try {
+            KuraPayloadProtoBufWriter.encode(payload);
+            fail("Exception expected");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof KuraInvalidMetricTypeException);
+        }
+
+        // the writer of the thread is still usable
+        payload.removeMetric("object");
+        payload.addMetric("int", 1);
+        assertEquals(1, new CloudPayloadProtoBufDecoderImpl(KuraPayloadProtoBufWriter.encode(payload))
+                .buildFromByteArray().getMetric("int"));
+    }
+
+    private static KuraMetric buildMetric(String name, Object value) {
+        KuraMetric.Builder metric = KuraMetric.newBuilder().setName(name);
+        if (value instanceof String) {
+            metric.setType(KuraMetric.ValueType.STRING).setStringValue((String) value);
+        } else if (value instanceof Double) {
+            metric.setType(KuraMetric.ValueType.DOUBLE).setDoubleValue((Double) value);
+        } else if (value instanceof Integer) {
+            metric.setType(KuraMetric.ValueType.INT32).setIntValue((Integer) value);
+        } else if (value instanceof Float) {
+            metric.setType(KuraMetric.ValueType.FLOAT).setFloatValue((Float) value);
+        } else if (value instanceof Long) {
+            metric.setType(KuraMetric.ValueType.INT64).setLongValue((Long) value);
+        } else if (value instanceof Boolean) {
+            metric.setType(KuraMetric.ValueType.BOOL).setBoolValue((Boolean) value);
+        } else {
+            metric.setType(KuraMetric.ValueType.BYTES).setBytesValue(ByteString.copyFrom((byte[]) value));
+        }
+        return metric.build();
+    }
+}
@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.kura.core.message.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Random;
+
+import org.eclipse.kura.core.message.codec.PayloadDictionaries.Dictionary;
+import org.eclipse.kura.core.util.GZipUtil;
+import org.eclipse.kura.message.KuraPayload;
+import org.junit.Test;
+
+public class PayloadCodecsTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        byte[] source = telemetry(0, 20);
+
+        for (PayloadCodec codec : PayloadCodecs.getCodecs()) {
+            byte[] encoded = codec.encode(source, "round/trip/" + codec.getName());
+            assertNotNull(codec.getName(), encoded);
+            assertTrue(codec.getName(), encoded.length < source.length);
+            // deflate streams are decoded by the same codec with or without dictionaries
+            assertNotNull(PayloadCodecs.getDecoder(encoded));
+            assertArrayEquals(source, PayloadCodecs.getDecoder(encoded).decode(encoded));
+        }
+    }
+
+    @Test
+    public void testGZipCompatible() throws Exception {
+        byte[] source = telemetry(0, 20);
+
+        byte[] encoded = PayloadCodecs.getCodec(PayloadCodecs.GZIP).encode(source, null);
+
+        assertTrue(GZipUtil.isCompressed(encoded));
+        assertArrayEquals(source, GZipUtil.decompress(encoded));
+    }
+
+    @Test
+    public void testIncompressible() throws Exception {
+        byte[] source = new byte[200];
+        new Random(1).nextBytes(source);
+
+        for (PayloadCodec codec : PayloadCodecs.getCodecs()) {
+            assertNull(codec.getName(), codec.encode(source, null));
+        }
+        assertNull(PayloadCodecs.getDecoder(telemetry(0, 1)));
+    }
+
+    @Test
+    public void testLzLongRuns() throws Exception {
+        PayloadCodec codec = PayloadCodecs.getCodec(PayloadCodecs.LZ);
+        byte[] source = new byte[10000];
+        for (int i = 5000; i < source.length; i++) {
+            source[i] = (byte) (i % 7);
+        }
+
+        byte[] encoded = codec.encode(source, null);
+
+        assertTrue(encoded.length < 200);
+        assertArrayEquals(source, codec.decode(encoded));
+    }
+
+    @Test
+    public void testDictionary() throws Exception {
+        PayloadDictionaries dictionaries = new PayloadDictionaries();
+        DeflaterPool pool = new DeflaterPool(false);
+        PayloadCodec encoder = new DeflatePayloadCodec(PayloadCodecs.DEFLATE_DICTIONARY, pool, dictionaries,
+                dictionaries);
+        // a receiver that only knows the dictionaries it has been sent
+        PayloadCodec decoder = new DeflatePayloadCodec(PayloadCodecs.DEFLATE_DICTIONARY, pool, null,
+                new PayloadDictionaries());
+
+        int plainLength = 0;
+        int dictionaryLength = 0;
+        for (int i = 0; i < PayloadDictionaries.TRAINING_SAMPLES + 10; i++) {
+            byte[] source = telemetry(i, 3);
+            byte[] encoded = encoder.encode(source, "telemetry");
+            if (encoded == null) {
+                continue;
+            }
+            assertArrayEquals(source, decoder.decode(encoded));
+
+            if (i == PayloadDictionaries.TRAINING_SAMPLES - 1) {
+                // the dictionary is sent with its first use
+                assertEquals(PayloadCodecs.DEFLATE_WITH_DICTIONARY_ID, encoded[2]);
+                dictionaries.confirm(PayloadCodecs.getInlineDictionary(encoded));
+            } else if (i >= PayloadDictionaries.TRAINING_SAMPLES) {
+                assertEquals(PayloadCodecs.DEFLATE_ID, encoded[2]);
+                dictionaryLength = encoded.length;
+                byte[] plain = PayloadCodecs.getCodec(PayloadCodecs.DEFLATE).encode(source, null);
+                plainLength = plain != null ? plain.length : source.length;
+            }
+        }
+        assertTrue(dictionaryLength < plainLength / 2);
+    }
+
+    @Test
+    public void testDictionaryInlineUntilConfirmed() throws Exception {
+        PayloadDictionaries dictionaries = new PayloadDictionaries();
+        DeflaterPool pool = new DeflaterPool(false);
+        PayloadCodec encoder = new DeflatePayloadCodec(PayloadCodecs.DEFLATE_DICTIONARY, pool, dictionaries,
+                dictionaries);
+        for (int i = 0; i < PayloadDictionaries.TRAINING_SAMPLES - 1; i++) {
+            encoder.encode(telemetry(i, 3), "telemetry");
+        }
+
+        // the payloads are lost, each of them carries the dictionary
+        Integer id = null;
+        for (int i = 0; i < 3; i++) {
+            id = PayloadCodecs.getInlineDictionary(encoder.encode(telemetry(10 + i, 3), "telemetry"));
+            assertNotNull(id);
+        }
+
+        // a receiver that missed them decodes the next payload
+        PayloadCodec decoder = new DeflatePayloadCodec(PayloadCodecs.DEFLATE_DICTIONARY, pool, null,
+                new PayloadDictionaries());
+        byte[] source = telemetry(20, 3);
+        byte[] encoded = encoder.encode(source, "telemetry");
+        assertEquals(id, PayloadCodecs.getInlineDictionary(encoded));
+        assertArrayEquals(source, decoder.decode(encoded));
+
+        // once delivered, the dictionary is only referenced
+        dictionaries.confirm(id);
+        source = telemetry(21, 3);
+        encoded = encoder.encode(source, "telemetry");
+        assertEquals(PayloadCodecs.DEFLATE_ID, encoded[2]);
+        assertNull(PayloadCodecs.getInlineDictionary(encoded));
+        assertArrayEquals(source, decoder.decode(encoded));
+    }
+
+    @Test
+    public void testSeparateRegistries() throws Exception {
+        PayloadCodecRegistry registry = new PayloadCodecRegistry();
+        PayloadCodec encoder = registry.getCodec(PayloadCodecs.DEFLATE_DICTIONARY);
+        for (int i = 0; i < PayloadDictionaries.TRAINING_SAMPLES; i++) {
+            byte[] encoded = encoder.encode(telemetry(i, 3), "telemetry");
+            if (i == PayloadDictionaries.TRAINING_SAMPLES - 1) {
+                registry.confirmDictionary(PayloadCodecs.getInlineDictionary(encoded));
+            }
+        }
+
+        byte[] source = telemetry(10, 3);
+        byte[] encoded = encoder.encode(source, "telemetry");
+        assertNull(PayloadCodecs.getInlineDictionary(encoded));
+        assertArrayEquals(source, registry.getDecoder(encoded).decode(encoded));
+
+        // the dictionary is only known by the registry that trained it
+        for (PayloadCodec decoder : Arrays.asList(new PayloadCodecRegistry().getDecoder(encoded),
+                PayloadCodecs.getDecoder(encoded))) {
+            try {
+                decoder.decode(encoded);
+                fail("the dictionary of another registry should be unknown");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testDictionaryChecksumCollision() throws Exception {
+        PayloadDictionaries dictionaries = new PayloadDictionaries();
+        // the same Adler-32 checksum, different bytes
+        byte[] first = { 1, 0, 1 };
+        byte[] second = { 0, 2, 0 };
+        int id = PayloadDictionaries.checksum(first, 0, first.length);
+        assertEquals(id, PayloadDictionaries.checksum(second, 0, second.length));
+
+        // the newest received dictionary replaces a received one
+        dictionaries.register(first);
+        dictionaries.register(second);
+        assertArrayEquals(second, dictionaries.get(id));
+
+        // a received dictionary never replaces a trained one
+        Dictionary trained = null;
+        for (int i = 0; trained == null; i++) {
+            trained = dictionaries.select("telemetry", telemetry(i, 3));
+        }
+        byte[] colliding = collision(trained.bytes);
+        dictionaries.register(colliding);
+        assertArrayEquals(trained.bytes, dictionaries.get(trained.id));
+
+        // a stream carrying the colliding dictionary is still decoded with it
+        DeflaterPool pool = new DeflaterPool(false);
+        byte[] source = telemetry(20, 3);
+        byte[] prefix = new byte[PayloadCodecs.HEADER_LENGTH + PayloadCodecs.varintSize(colliding.length)
+                + colliding.length];
+        int offset = PayloadCodecs.writeHeader(prefix, PayloadCodecs.DEFLATE_WITH_DICTIONARY_ID);
+        offset = PayloadCodecs.writeVarint(prefix, offset, colliding.length);
+        System.arraycopy(colliding, 0, prefix, offset, colliding.length);
+        byte[] encoded = pool.deflate(prefix, colliding, source, prefix.length + source.length * 2, 0);
+
+        PayloadCodec decoder = new DeflatePayloadCodec(PayloadCodecs.DEFLATE_DICTIONARY, pool, null, dictionaries);
+        assertArrayEquals(source, decoder.decode(encoded));
+        assertArrayEquals(trained.bytes, dictionaries.get(trained.id));
+    }
+
+    @Test
+    public void testDecodedLengthLimit() throws Exception {
+        DeflaterPool pool = new DeflaterPool(false);
+        byte[] source = new byte[100000];
+        byte[] encoded = pool.deflate(new byte[0], null, source, source.length, 0);
+
+        assertArrayEquals(source, pool.inflate(encoded, 0, id -> null, source.length));
+        try {
+            pool.inflate(encoded, 0, id -> null, source.length - 1);
+            fail("data inflating to more than the limit should be rejected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Returns a copy of the bytes with the same Adler-32 checksum: adding 1, -2 and 1 to three consecutive bytes
+     * leaves both sums of the checksum unchanged.
+     */
+    private static byte[] collision(byte[] bytes) {
+        for (int i = 0; i + 2 < bytes.length; i++) {
+            if ((bytes[i] & 0xFF) < 0xFF && (bytes[i + 1] & 0xFF) >= 2 && (bytes[i + 2] & 0xFF) < 0xFF) {
+                byte[] result = bytes.clone();
+                result[i]++;
+                result[i + 1] -= 2;
+                result[i + 2]++;
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("No collision found");
+    }
+
+    private static byte[] telemetry(int seq, int metrics) throws Exception {
+        KuraPayload payload = new KuraPayload();
+        payload.setTimestamp(new Date(1520000000000L + seq * 1000L));
+        for (int i = 0; i < metrics; i++) {
+            payload.addMetric("sensor.temperature." + i, 20.0 + i + seq / 10.0);
+            payload.addMetric("sensor.status." + i, i % 2 == 0 ? "OK" : "WARN");
+        }
+        return KuraPayloadProtoBufWriter.encode(payload);
+    }
+}
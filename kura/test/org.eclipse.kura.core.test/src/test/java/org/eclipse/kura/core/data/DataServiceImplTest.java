@@ -10,6 +10,7 @@ package org.eclipse.kura.core.data;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyObject;
@@ -22,9 +23,12 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -32,8 +36,10 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.kura.KuraConnectException;
+import org.eclipse.kura.KuraStoreCapacityReachedException;
 import org.eclipse.kura.KuraStoreException;
 import org.eclipse.kura.core.testutil.TestUtil;
+import org.eclipse.kura.data.DataServiceListener;
 import org.eclipse.kura.data.DataTransportService;
 import org.eclipse.kura.data.DataTransportToken;
 import org.eclipse.kura.db.H2DbService;
@@ -42,6 +48,7 @@ import org.eclipse.kura.status.CloudConnectionStatusService;
 import org.eclipse.kura.watchdog.WatchdogService;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.osgi.service.component.ComponentContext;
 
 public class DataServiceImplTest {
@@ -82,12 +89,12 @@ public class DataServiceImplTest {
 
         verify(storeMock, times(1)).start(dbServiceMock, hkInterval, age, capacity);
 
-        Map<DataTransportToken, Integer> ifMsgs = (Map<DataTransportToken, Integer>) TestUtil.getFieldValue(svc,
-                "inFlightMsgIds");
+        Map<DataTransportToken, DataMessage> ifMsgs = (Map<DataTransportToken, DataMessage>) TestUtil
+                .getFieldValue(svc, "inFlightMessages");
 
         assertEquals(1, ifMsgs.size());
         ifMsgs.forEach((key, value) -> {
-            assertEquals(id, (int) value);
+            assertEquals(id, value.getId());
             assertEquals(pmi, key.getMessageId());
             assertEquals(sessionId, key.getSessionId());
         });
@@ -139,14 +146,14 @@ public class DataServiceImplTest {
 
         TestUtil.setFieldValue(svc, "dataServiceOptions", dataServiceOptions);
 
-        Map<DataTransportToken, Integer> inFlightMsgIds = mock(Map.class);
-        TestUtil.setFieldValue(svc, "inFlightMsgIds", inFlightMsgIds);
+        Map<DataTransportToken, DataMessage> inFlightMessages = mock(Map.class);
+        TestUtil.setFieldValue(svc, "inFlightMessages", inFlightMessages);
 
         svc.onConnectionEstablished(true);
 
         verify(ccssMock, times(1)).updateStatus(svc, CloudConnectionStatusEnum.ON);
         verify(storeMock, times(1)).dropAllInFlightMessages();
-        verify(inFlightMsgIds, times(1)).clear();
+        verify(inFlightMessages, times(1)).clear();
     }
 
     @Test
@@ -173,14 +180,14 @@ public class DataServiceImplTest {
 
         TestUtil.setFieldValue(svc, "dataServiceOptions", dataServiceOptions);
 
-        Map<DataTransportToken, Integer> inFlightMsgIds = mock(Map.class);
-        TestUtil.setFieldValue(svc, "inFlightMsgIds", inFlightMsgIds);
+        Map<DataTransportToken, DataMessage> inFlightMessages = mock(Map.class);
+        TestUtil.setFieldValue(svc, "inFlightMessages", inFlightMessages);
 
         svc.onConnectionEstablished(true);
 
         verify(ccssMock, times(1)).updateStatus(svc, CloudConnectionStatusEnum.ON);
         verify(storeMock, times(1)).dropAllInFlightMessages();
-        verify(inFlightMsgIds, times(0)).clear();
+        verify(inFlightMessages, times(0)).clear();
     }
 
     @Test
@@ -205,14 +212,14 @@ public class DataServiceImplTest {
 
         TestUtil.setFieldValue(svc, "dataServiceOptions", dataServiceOptions);
 
-        Map<DataTransportToken, Integer> inFlightMsgIds = mock(Map.class);
-        TestUtil.setFieldValue(svc, "inFlightMsgIds", inFlightMsgIds);
+        Map<DataTransportToken, DataMessage> inFlightMessages = mock(Map.class);
+        TestUtil.setFieldValue(svc, "inFlightMessages", inFlightMessages);
 
         svc.onConnectionEstablished(true);
 
         verify(ccssMock, times(1)).updateStatus(svc, CloudConnectionStatusEnum.ON);
         verify(storeMock, times(1)).unpublishAllInFlighMessages();
-        verify(inFlightMsgIds, times(1)).clear();
+        verify(inFlightMessages, times(1)).clear();
     }
 
     @Test
@@ -239,14 +246,14 @@ public class DataServiceImplTest {
 
         TestUtil.setFieldValue(svc, "dataServiceOptions", dataServiceOptions);
 
-        Map<DataTransportToken, Integer> inFlightMsgIds = mock(Map.class);
-        TestUtil.setFieldValue(svc, "inFlightMsgIds", inFlightMsgIds);
+        Map<DataTransportToken, DataMessage> inFlightMessages = mock(Map.class);
+        TestUtil.setFieldValue(svc, "inFlightMessages", inFlightMessages);
 
         svc.onConnectionEstablished(true);
 
         verify(ccssMock, times(1)).updateStatus(svc, CloudConnectionStatusEnum.ON);
         verify(storeMock, times(1)).unpublishAllInFlighMessages();
-        verify(inFlightMsgIds, times(0)).clear();
+        verify(inFlightMessages, times(0)).clear();
     }
 
     @Test
@@ -496,8 +503,8 @@ public class DataServiceImplTest {
         String sessionId = "sess1234";
         DataTransportToken token = new DataTransportToken(msgId, sessionId);
 
-        Map<DataTransportToken, Integer> inFlightMsgIds = new HashMap<>();
-        TestUtil.setFieldValue(svc, "inFlightMsgIds", inFlightMsgIds);
+        Map<DataTransportToken, DataMessage> inFlightMessages = new HashMap<>();
+        TestUtil.setFieldValue(svc, "inFlightMessages", inFlightMessages);
 
         Map<String, Object> properties = new HashMap<>();
         properties.put("in-flight-messages.max-number", 0);
@@ -509,8 +516,8 @@ public class DataServiceImplTest {
     }
 
     @Test
-    public void testMessageConfirmedConfirmedMessageException() throws NoSuchFieldException, KuraStoreException {
-        // invokes the logger - confirmed message not found
+    public void testMessageConfirmedConfirmedMessageException() throws Throwable {
+        // invokes the logger - the store fails to confirm the message
 
         DataServiceImpl svc = new DataServiceImpl();
 
@@ -518,14 +525,20 @@ public class DataServiceImplTest {
         String sessionId = "sess1234";
         DataTransportToken token = new DataTransportToken(msgId, sessionId);
 
-        Map<DataTransportToken, Integer> inFlightMsgIds = new HashMap<>();
-        inFlightMsgIds.put(token, msgId);
-        TestUtil.setFieldValue(svc, "inFlightMsgIds", inFlightMsgIds);
+        DataMessage message = new DataMessage.Builder(msgId).withTopic("topic").build();
+        Map<DataTransportToken, DataMessage> inFlightMessages = new HashMap<>();
+        inFlightMessages.put(token, message);
+        TestUtil.setFieldValue(svc, "inFlightMessages", inFlightMessages);
 
         DataStore storeMock = mock(DataStore.class);
         TestUtil.setFieldValue(svc, "store", storeMock);
 
-        doThrow(new KuraStoreException("test")).when(storeMock).confirmed(msgId);
+        doThrow(new KuraStoreException("test")).when(storeMock).confirmed(Arrays.asList(msgId));
+
+        DataServiceListener listenerMock = mock(DataServiceListener.class);
+        ComponentContext ctxMock = mock(ComponentContext.class);
+        when(ctxMock.locateServices("DataServiceListener")).thenReturn(new Object[] { listenerMock });
+        TestUtil.setFieldValue(svc, "dataServiceListeners", new DataServiceListenerS(ctxMock));
 
         Map<String, Object> properties = new HashMap<>();
         properties.put("in-flight-messages.max-number", 0);
@@ -535,7 +548,106 @@ public class DataServiceImplTest {
 
         svc.onMessageConfirmed(token);
 
-        verify(storeMock, times(1)).confirmed(msgId);
+        // the confirmation is queued and applied to the store by the confirmation task
+        BlockingQueue<DataMessage> confirmedMessages = (BlockingQueue<DataMessage>) TestUtil.getFieldValue(svc,
+                "confirmedMessages");
+        assertEquals(Arrays.asList(message), new ArrayList<>(confirmedMessages));
+        assertTrue(inFlightMessages.isEmpty());
+
+        TestUtil.invokePrivate(svc, "applyConfirmations", new Class<?>[] { List.class },
+                new ArrayList<>(confirmedMessages));
+
+        verify(storeMock, times(1)).confirmed(Arrays.asList(msgId));
+        // the topic is kept in the in-flight message, it is not loaded from the store
+        verify(storeMock, times(0)).get(msgId);
+        verify(listenerMock, times(1)).onMessageConfirmed(msgId, "topic");
+    }
+
+    @Test
+    public void testMessageConfirmedBeforeTracking() throws Throwable {
+        // the transport may confirm a message before the publisher tracks its token
+
+        DataServiceImpl svc = new DataServiceImpl();
+
+        int msgId = 1234;
+        DataTransportToken token = new DataTransportToken(42, "sess1234");
+
+        Map<DataTransportToken, DataMessage> inFlightMessages = new ConcurrentHashMap<>();
+        TestUtil.setFieldValue(svc, "inFlightMessages", inFlightMessages);
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("in-flight-messages.max-number", 0);
+        TestUtil.setFieldValue(svc, "dataServiceOptions", new DataServiceOptions(properties));
+
+        svc.onMessageConfirmed(token);
+
+        DataMessage message = new DataMessage.Builder(msgId).withTopic("topic").build();
+        TestUtil.invokePrivate(svc, "trackInFlightMessage",
+                new Class<?>[] { DataTransportToken.class, DataMessage.class }, token, message);
+
+        BlockingQueue<DataMessage> confirmedMessages = (BlockingQueue<DataMessage>) TestUtil.getFieldValue(svc,
+                "confirmedMessages");
+        assertEquals(Arrays.asList(message), new ArrayList<>(confirmedMessages));
+        assertTrue(inFlightMessages.isEmpty());
+    }
+
+    @Test
+    public void testPublishCoalescing() throws NoSuchFieldException, KuraStoreException {
+        DataServiceImpl svc = new DataServiceImpl();
+
+        DataStore storeMock = mock(DataStore.class);
+        TestUtil.setFieldValue(svc, "store", storeMock);
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("store.coalescing.topics", "sensors/+/temperature, alarms/#");
+        TestUtil.setFieldValue(svc, "dataServiceOptions", new DataServiceOptions(properties));
+
+        String topic = "sensors/s1/temperature";
+        byte[] payload = "42".getBytes();
+        List<DataMessage> unpublished = new ArrayList<>();
+        unpublished.add(new DataMessage.Builder(1).withTopic(topic).withQos(0).build());
+        unpublished.add(new DataMessage.Builder(2).withTopic(topic).withQos(1).build());
+        when(storeMock.unpublishedMessagesNoPayload(topic)).thenReturn(unpublished);
+        when(storeMock.store(topic, payload, 0, false, 5)).thenReturn(new DataMessage.Builder(3).build());
+
+        assertEquals(3, svc.publish(topic, payload, 0, false, 5));
+
+        // the QoS 1 message is not superseded with the default maximum QoS
+        verify(storeMock, times(1)).deleteUnpublishedMessages(Arrays.asList(1));
+
+        // no coalescing for QoS 1 messages and for topics not configured
+        when(storeMock.store(topic, payload, 1, false, 5)).thenReturn(new DataMessage.Builder(4).build());
+        when(storeMock.store("sensors/s1/humidity", payload, 0, false, 5))
+                .thenReturn(new DataMessage.Builder(5).build());
+        svc.publish(topic, payload, 1, false, 5);
+        svc.publish("sensors/s1/humidity", payload, 0, false, 5);
+
+        verify(storeMock, times(1)).unpublishedMessagesNoPayload(topic);
+        verify(storeMock, times(0)).unpublishedMessagesNoPayload("sensors/s1/humidity");
+    }
+
+    @Test
+    public void testPublishLaneDepth() throws NoSuchFieldException, KuraStoreException {
+        DataServiceImpl svc = new DataServiceImpl();
+
+        DataStore storeMock = mock(DataStore.class);
+        TestUtil.setFieldValue(svc, "store", storeMock);
+        TestUtil.setFieldValue(svc, "dataServiceOptions", new DataServiceOptions(new HashMap<>()));
+        TestUtil.setFieldValue(svc, "publishLanes", PublishLanes.parse("1:8:1:0,9:1:1:0"));
+
+        byte[] payload = "42".getBytes();
+        when(storeMock.getUnpublishedMessageCount(anyInt(), anyInt())).thenReturn(1);
+        when(storeMock.store("topic", payload, 0, false, 1)).thenReturn(new DataMessage.Builder(1).build());
+
+        // the lanes of both priorities are full, only the priority 0 and 1 messages are stored
+        assertEquals(1, svc.publish("topic", payload, 0, false, 1));
+        try {
+            svc.publish("topic", payload, 0, false, 5);
+            fail("Exception expected");
+        } catch (KuraStoreCapacityReachedException e) {
+            // expected
+        }
+        verify(storeMock, times(0)).store("topic", payload, 0, false, 5);
     }
 
     @Test
@@ -636,6 +748,50 @@ public class DataServiceImplTest {
         assertEquals(6, (int) ids.get(0));
     }
 
+    @Test
+    public void testPublishBatchInternal() throws Throwable {
+        // publish a batch mixing QoS 0 and QoS 1 messages and acknowledge it to the store at once
+
+        DataServiceImpl svc = new DataServiceImpl();
+
+        Map<DataTransportToken, DataMessage> inFlightMessages = new HashMap<>();
+        TestUtil.setFieldValue(svc, "inFlightMessages", inFlightMessages);
+
+        DataStore storeMock = mock(DataStore.class);
+        TestUtil.setFieldValue(svc, "store", storeMock);
+
+        DataTransportService dtsMock = mock(DataTransportService.class);
+        svc.setDataTransportService(dtsMock);
+
+        byte[] payload = "payload".getBytes();
+        DataTransportToken token = new DataTransportToken(42, "session");
+        when(dtsMock.publish("topic/qos0", payload, 0, false)).thenReturn(null);
+        when(dtsMock.publish("topic/qos1", payload, 1, false)).thenReturn(token);
+
+        List<DataMessage> messages = new ArrayList<>();
+        messages.add(new DataMessage.Builder(1).withTopic("topic/qos0").withQos(0).withPayload(payload).build());
+        messages.add(new DataMessage.Builder(2).withTopic("topic/qos1").withQos(1).withPayload(payload).build());
+
+        TestUtil.invokePrivate(svc, "publishBatchInternal", new Class<?>[] { List.class }, messages);
+
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(storeMock, times(1)).published(captor.capture());
+
+        List<DataMessage> published = captor.getValue();
+        assertEquals(2, published.size());
+        assertEquals(1, published.get(0).getId());
+        assertEquals(-1, published.get(0).getPublishedMessageId());
+        assertNull(published.get(0).getSessionId());
+        assertEquals(2, published.get(1).getId());
+        assertEquals(42, published.get(1).getPublishedMessageId());
+        assertEquals("session", published.get(1).getSessionId());
+
+        assertEquals(1, inFlightMessages.size());
+        assertTrue(inFlightMessages.containsKey(token));
+        assertEquals(2, inFlightMessages.get(token).getId());
+        assertEquals("topic/qos1", inFlightMessages.get(token).getTopic());
+    }
+
     private DataStore expectAllMessages(DataServiceImpl svc, List<DataMessage> unpublished, List<DataMessage> inFlight,
             List<DataMessage> dropped) throws NoSuchFieldException, KuraStoreException {
 
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.kura.core.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class PublishLanesTest {
+
+    @Test
+    public void testParse() {
+        assertNull(PublishLanes.parse(""));
+        assertNull(PublishLanes.parse(null));
+
+        PublishLanes lanes = PublishLanes.parse("4:2:1000, 1:8:0:0,9:1:0:5");
+        List<PublishLanes.Lane> laneList = lanes.getLanes();
+        assertEquals(3, laneList.size());
+
+        assertEquals(Integer.MIN_VALUE, laneList.get(0).getMinPriority());
+        assertEquals(1, laneList.get(0).getMaxPriority());
+        assertEquals(8, laneList.get(0).getWeight());
+        assertNull(laneList.get(0).getRateLimit());
+
+        assertEquals(2, laneList.get(1).getMinPriority());
+        assertEquals(4, laneList.get(1).getMaxPriority());
+        assertEquals(1000, laneList.get(1).getMaxQueueDepth());
+
+        assertEquals(5, laneList.get(2).getMinPriority());
+        assertEquals(Integer.MAX_VALUE, laneList.get(2).getMaxPriority());
+        assertNotNull(laneList.get(2).getRateLimit());
+
+        assertSame(laneList.get(0), lanes.getLane(0));
+        assertSame(laneList.get(1), lanes.getLane(3));
+        assertSame(laneList.get(2), lanes.getLane(42));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseInvalidWeight() {
+        PublishLanes.parse("1:0");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseDuplicateLane() {
+        PublishLanes.parse("1:1,1:2");
+    }
+
+    @Test
+    public void testWeightedScheduling() {
+        PublishLanes lanes = PublishLanes.parse("1:3,9:1");
+        PublishLanes.Lane control = lanes.getLanes().get(0);
+
+        int controlServed = 0;
+        for (int i = 0; i < 400; i++) {
+            PublishLanes.Lane lane = lanes.getSchedulingOrder().get(0);
+            if (lane == control) {
+                controlServed++;
+            }
+            lanes.charge(lane, 1);
+        }
+
+        assertEquals(300, controlServed);
+    }
+
+    @Test
+    public void testIdleLaneDoesNotAccumulateCredit() {
+        PublishLanes lanes = PublishLanes.parse("1:1,9:1");
+        PublishLanes.Lane control = lanes.getLanes().get(0);
+        PublishLanes.Lane bulk = lanes.getLanes().get(1);
+
+        // only the bulk lane has messages for a while
+        for (int i = 0; i < 100; i++) {
+            lanes.charge(bulk, 1);
+        }
+
+        // then both lanes have messages, the control lane must not catch up on the time it was idle
+        int controlServed = 0;
+        for (int i = 0; i < 10; i++) {
+            PublishLanes.Lane lane = lanes.getSchedulingOrder().get(0);
+            if (lane == control) {
+                controlServed++;
+            }
+            lanes.charge(lane, 1);
+        }
+
+        assertEquals(6, controlServed);
+    }
+}
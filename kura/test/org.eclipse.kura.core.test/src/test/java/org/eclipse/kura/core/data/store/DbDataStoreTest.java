@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.kura.core.data.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kura.KuraStoreException;
+import org.eclipse.kura.core.data.DataMessage;
+import org.eclipse.kura.db.H2DbService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class DbDataStoreTest {
+
+    private static final String TABLE_NAME = "ds_messages_test";
+
+    private Connection connection;
+    private DbDataStore store;
+
+    @BeforeClass
+    public static void setupClass() throws SQLException {
+        DriverManager.registerDriver(new org.h2.Driver());
+    }
+
+    @Before
+    public void setup() throws SQLException, KuraStoreException {
+        this.connection = DriverManager.getConnection("jdbc:h2:mem:datastore", "SA", "");
+        this.connection.setAutoCommit(false);
+        this.connection.prepareStatement("DROP TABLE IF EXISTS \"" + TABLE_NAME + "\"").execute();
+
+        final H2DbService dbServiceMock = mock(H2DbService.class);
+        when(dbServiceMock.withConnection(anyObject())).thenAnswer(invocation -> {
+            return invocation.getArgumentAt(0, H2DbService.ConnectionCallable.class).call(this.connection);
+        });
+
+        this.store = new DbDataStore(TABLE_NAME);
+        this.store.start(dbServiceMock, 900, 60, 1000);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        this.store.stop();
+        this.connection.close();
+    }
+
+    @Test
+    public void testStore() throws KuraStoreException {
+        DataMessage first = this.store.store("topic/first", "first".getBytes(), 1, false, 5);
+        DataMessage second = this.store.store("topic/second", "second".getBytes(), 0, true, 5);
+
+        assertTrue(second.getId() > first.getId());
+        assertEquals("topic/first", this.store.get(first.getId()).getTopic());
+        assertArrayEquals("second".getBytes(), this.store.get(second.getId()).getPayload());
+    }
+
+    @Test
+    public void testBatchedStore() throws Exception {
+        final int count = 20;
+        // the linger time is long enough to collect all the requests in few batches
+        this.store.setWriteBatching(8, 200);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(count);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<DataMessage>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                final String topic = "topic/" + i;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return this.store.store(topic, topic.getBytes(), 1, false, 5);
+                }));
+            }
+            start.countDown();
+
+            // each request gets the identifier of its own row
+            final Set<Integer> ids = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                final DataMessage message = results.get(i).get(10, TimeUnit.SECONDS);
+                assertTrue(ids.add(message.getId()));
+
+                final DataMessage stored = this.store.get(message.getId());
+                assertEquals("topic/" + i, stored.getTopic());
+                assertArrayEquals(("topic/" + i).getBytes(), stored.getPayload());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(count, this.store.getNextMessages(count + 1).size());
+    }
+
+    @Test
+    public void testIdsAfterDelete() throws Exception {
+        // the identifiers are not contiguous with the ones of the deleted messages
+        DataMessage deleted = this.store.store("topic/deleted", "deleted".getBytes(), 0, false, 5);
+        assertEquals(1, this.store.deleteUnpublishedMessages(Collections.singletonList(deleted.getId())));
+
+        this.store.setWriteBatching(4, 200);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<DataMessage>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < 4; i++) {
+                final String topic = "topic/" + i;
+                results.add(executor.submit(() -> this.store.store(topic, topic.getBytes(), 0, false, 5)));
+            }
+            for (int i = 0; i < 4; i++) {
+                final DataMessage message = results.get(i).get(10, TimeUnit.SECONDS);
+                assertTrue(message.getId() > deleted.getId());
+                assertEquals("topic/" + i, this.store.get(message.getId()).getTopic());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
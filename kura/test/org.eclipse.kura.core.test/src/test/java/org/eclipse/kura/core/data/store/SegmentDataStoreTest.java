@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.kura.core.data.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.kura.KuraStoreCapacityReachedException;
+import org.eclipse.kura.KuraStoreException;
+import org.eclipse.kura.core.data.DataMessage;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SegmentDataStoreTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPriorityOrder() throws KuraStoreException {
+        SegmentDataStore store = startStore(100);
+
+        DataMessage low = store.store("topic/low", "low".getBytes(), 0, false, 7);
+        DataMessage high = store.store("topic/high", "high".getBytes(), 1, false, 1);
+        DataMessage mid = store.store("topic/mid", "mid".getBytes(), 0, true, 5);
+
+        List<DataMessage> next = store.getNextMessages(10);
+        assertEquals(3, next.size());
+        assertEquals(high.getId(), next.get(0).getId());
+        assertEquals(mid.getId(), next.get(1).getId());
+        assertEquals(low.getId(), next.get(2).getId());
+        assertArrayEquals("high".getBytes(), next.get(0).getPayload());
+
+        store.published(high.getId(), 12, "session");
+        assertEquals(mid.getId(), store.getNextMessage().getId());
+
+        store.stop();
+    }
+
+    @Test
+    public void testInFlightRecoveryAfterRestart() throws KuraStoreException {
+        SegmentDataStore store = startStore(100);
+
+        DataMessage qos1 = store.store("topic/qos1", "payload1".getBytes(), 1, false, 5);
+        DataMessage qos0 = store.store("topic/qos0", "payload0".getBytes(), 0, false, 5);
+        store.published(qos1.getId(), 42, "session");
+        store.published(qos0.getId());
+        store.stop();
+
+        store = startStore(100);
+
+        List<DataMessage> inFlight = store.allInFlightMessagesNoPayload();
+        assertEquals(1, inFlight.size());
+        assertEquals(qos1.getId(), inFlight.get(0).getId());
+        assertEquals(42, inFlight.get(0).getPublishedMessageId());
+        assertEquals("session", inFlight.get(0).getSessionId());
+        assertNull(store.getNextMessage());
+
+        store.unpublishAllInFlighMessages();
+        assertEquals(0, store.allInFlightMessagesNoPayload().size());
+
+        DataMessage next = store.getNextMessage();
+        assertEquals(qos1.getId(), next.getId());
+        assertArrayEquals("payload1".getBytes(), next.getPayload());
+
+        // a new message must not reuse a known identifier
+        DataMessage other = store.store("topic/other", new byte[0], 0, false, 5);
+        assertEquals(qos0.getId() + 1, other.getId());
+
+        store.stop();
+    }
+
+    @Test
+    public void testCapacity() throws KuraStoreException {
+        SegmentDataStore store = startStore(1);
+
+        store.store("topic", new byte[0], 0, false, 5);
+        try {
+            store.store("topic", new byte[0], 0, false, 5);
+            fail("Capacity should have been reached");
+        } catch (KuraStoreCapacityReachedException e) {
+            // expected
+        }
+        // life-cycle messages bypass the capacity check
+        assertNotNull(store.store("topic", new byte[0], 0, false, 0));
+
+        store.stop();
+    }
+
+    @Test
+    public void testSegmentReclaim() throws KuraStoreException {
+        SegmentDataStore store = startStore(1000);
+
+        for (int i = 0; i < 50; i++) {
+            DataMessage message = store.store("topic", new byte[256], 1, false, 5);
+            store.published(message.getId(), i, "session");
+            store.confirmed(message.getId());
+        }
+        assertEquals(true, countSegments() > 1);
+
+        store.deleteStaleMessages(0);
+        assertEquals(1, countSegments());
+        assertEquals(0, store.allInFlightMessagesNoPayload().size());
+
+        store.stop();
+    }
+
+    @Test
+    public void testPurgeSurvivesRestart() throws KuraStoreException {
+        SegmentDataStore store = startStore(100);
+
+        DataMessage purged = store.store("topic/purged", "purged".getBytes(), 0, false, 5);
+        DataMessage kept = store.store("topic/kept", "kept".getBytes(), 0, false, 5);
+        store.published(purged.getId());
+        store.deleteStaleMessages(0);
+        assertNull(store.get(purged.getId()));
+        store.stop();
+
+        store = startStore(100);
+
+        assertNull(store.get(purged.getId()));
+        assertEquals(kept.getId(), store.getNextMessage().getId());
+
+        store.stop();
+    }
+
+    @Test
+    public void testDeadSegmentReclaimedBehindLiveSegment() throws KuraStoreException {
+        SegmentDataStore store = startStore(1000);
+
+        DataMessage unpublished = store.store("topic/unpublished", "unpublished".getBytes(), 1, false, 5);
+        for (int i = 0; i < 50; i++) {
+            DataMessage message = store.store("topic", new byte[256], 1, false, 5);
+            store.published(message.getId(), i, "session");
+            store.confirmed(message.getId());
+        }
+        assertEquals(true, countSegments() > 3);
+
+        // the first segment is still needed by the unpublished message, the following ones are not
+        store.deleteStaleMessages(0);
+        assertEquals(2, countSegments());
+        store.stop();
+
+        store = startStore(1000);
+
+        List<DataMessage> next = store.getNextMessages(100);
+        assertEquals(1, next.size());
+        assertEquals(unpublished.getId(), next.get(0).getId());
+        assertArrayEquals("unpublished".getBytes(), next.get(0).getPayload());
+
+        store.stop();
+    }
+
+    @Test
+    public void testRepairTruncatesCorruptedTail() throws KuraStoreException, IOException {
+        SegmentDataStore store = startStore(100);
+
+        DataMessage first = store.store("t", new byte[100], 0, false, 5);
+        DataMessage corrupted = store.store("t", new byte[100], 0, false, 5);
+        // rolls a new segment
+        DataMessage last = store.store("t", new byte[4000], 0, false, 5);
+        assertEquals(2, countSegments());
+        store.stop();
+
+        // header, fixed fields, topic, payload length and payload of the first record
+        final int corruptedOffset = 9 + 22 + 1 + 4 + 100;
+        final File firstSegment = listSegments()[0];
+        try (RandomAccessFile file = new RandomAccessFile(firstSegment, "rw")) {
+            file.seek(corruptedOffset + 50);
+            file.write(0xff);
+        }
+
+        store = startStore(100);
+        assertNotNull(store.get(first.getId()));
+        assertNull(store.get(corrupted.getId()));
+        assertNotNull(store.get(last.getId()));
+
+        store.repair();
+        assertNotNull(store.get(first.getId()));
+        assertNull(store.get(corrupted.getId()));
+        assertNotNull(store.get(last.getId()));
+        store.stop();
+
+        try (RandomAccessFile file = new RandomAccessFile(firstSegment, "r")) {
+            final byte[] tail = new byte[(int) file.length() - corruptedOffset];
+            file.seek(corruptedOffset);
+            file.readFully(tail);
+            assertArrayEquals(new byte[tail.length], tail);
+        }
+    }
+
+    private SegmentDataStore startStore(int capacity) throws KuraStoreException {
+        SegmentDataStore store = new SegmentDataStore(this.folder.getRoot().toPath(), SEGMENT_SIZE);
+        store.start(null, 900, 60, capacity);
+        return store;
+    }
+
+    private int countSegments() {
+        return listSegments().length;
+    }
+
+    private File[] listSegments() {
+        File[] segments = this.folder.getRoot().listFiles((dir, name) -> name.endsWith(".seg"));
+        Arrays.sort(segments);
+        return segments;
+    }
+}
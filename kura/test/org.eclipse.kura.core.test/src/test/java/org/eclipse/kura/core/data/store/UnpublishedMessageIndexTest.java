@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.kura.core.data.store;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.eclipse.kura.core.data.DataMessage;
+import org.junit.Test;
+
+public class UnpublishedMessageIndexTest {
+
+    @Test
+    public void testOrder() {
+        UnpublishedMessageIndex index = new UnpublishedMessageIndex();
+
+        index.add(1, 5, 1000);
+        index.add(2, 1, 2000);
+        index.add(3, 5, 500);
+        index.add(4, 5, 500);
+
+        assertEquals(Arrays.asList(2, 3, 4, 1), index.first(10));
+        assertEquals(Arrays.asList(2, 3), index.first(2));
+
+        index.remove(3);
+        index.remove(42);
+        assertEquals(Arrays.asList(2, 4, 1), index.first(10));
+    }
+
+    @Test
+    public void testPriorityRange() {
+        UnpublishedMessageIndex index = new UnpublishedMessageIndex();
+
+        index.add(1, 0, 1000);
+        index.add(2, 5, 500);
+        index.add(3, 3, 2000);
+        index.add(4, 5, 100);
+        index.add(5, 9, 100);
+
+        assertEquals(Arrays.asList(3, 4, 2), index.first(10, 2, 5));
+        assertEquals(Arrays.asList(3), index.first(1, 2, 5));
+        assertEquals(3, index.size(2, 5));
+        assertEquals(5, index.size(Integer.MIN_VALUE, Integer.MAX_VALUE));
+
+        index.remove(4);
+        index.add(3, 7, 2000);
+        assertEquals(Arrays.asList(2), index.first(10, 2, 5));
+        assertEquals(1, index.size(2, 5));
+        assertEquals(2, index.size(6, 9));
+    }
+
+    @Test
+    public void testRebuild() {
+        UnpublishedMessageIndex index = new UnpublishedMessageIndex();
+        index.add(100, 0, 0);
+
+        index.rebuild(Arrays.asList(new DataMessage.Builder(7).withPriority(9).withCreatedOn(new Date(10)).build(),
+                new DataMessage.Builder(8).withPriority(2).withCreatedOn(new Date(20)).build()));
+
+        assertEquals(2, index.size());
+        assertEquals(Arrays.asList(8, 7), index.first(10));
+    }
+}
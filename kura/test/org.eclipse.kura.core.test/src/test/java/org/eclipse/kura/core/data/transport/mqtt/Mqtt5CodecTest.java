@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.kura.core.data.transport.mqtt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.kura.core.data.transport.mqtt.Mqtt5Codec.Ack;
+import org.eclipse.kura.core.data.transport.mqtt.Mqtt5Codec.Connack;
+import org.eclipse.kura.core.data.transport.mqtt.Mqtt5Codec.Packet;
+import org.eclipse.kura.core.data.transport.mqtt.Mqtt5Codec.Properties;
+import org.eclipse.kura.core.data.transport.mqtt.Mqtt5Codec.Publish;
+import org.junit.Test;
+
+public class Mqtt5CodecTest {
+
+    private static Packet read(byte[] bytes) throws IOException {
+        return Mqtt5Codec.readPacket(new ByteArrayInputStream(bytes));
+    }
+
+    private static String readString(ByteBuffer body) {
+        byte[] bytes = new byte[body.getShort() & 0xFFFF];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testConnect() throws IOException {
+        Mqtt5ConnectOptions options = new Mqtt5ConnectOptions();
+        options.setClientId("client");
+        options.setUserName("user");
+        options.setPassword("secret".toCharArray());
+        options.setKeepAliveInterval(30);
+        options.setCleanStart(true);
+        options.setSessionExpiryInterval(3600);
+        options.setReceiveMaximum(10);
+        options.setUserProperties(Collections.singletonList(new String[] { "key", "value" }));
+
+        Packet packet = read(Mqtt5Codec.encodeConnect(options));
+        assertEquals(Mqtt5Codec.CONNECT, packet.getType());
+
+        ByteBuffer body = packet.getBody();
+        assertEquals("MQTT", readString(body));
+        assertEquals(5, body.get());
+        assertEquals(0x80 | 0x40 | 0x02, body.get() & 0xFF);
+        assertEquals(30, body.getShort());
+
+        Properties properties = Mqtt5Codec.readProperties(body);
+        assertEquals(Long.valueOf(3600), properties.getLong(Mqtt5Codec.PROP_SESSION_EXPIRY_INTERVAL));
+        assertEquals(Integer.valueOf(10), properties.getInt(Mqtt5Codec.PROP_RECEIVE_MAXIMUM));
+        assertNull(properties.getLong(Mqtt5Codec.PROP_MAXIMUM_PACKET_SIZE));
+        assertEquals(1, properties.getUserProperties().size());
+        assertArrayEquals(new String[] { "key", "value" }, properties.getUserProperties().get(0));
+
+        assertEquals("client", readString(body));
+        assertEquals("user", readString(body));
+        assertEquals("secret", readString(body));
+        assertFalse(body.hasRemaining());
+    }
+
+    @Test
+    public void testConnack() throws IOException {
+        byte[] bytes = { 0x20, 9, 0x01, 0x00, 6, 0x21, 0x00, 0x05, 0x22, 0x00, 0x0A };
+
+        Connack connack = Mqtt5Codec.decodeConnack(read(bytes));
+
+        assertTrue(connack.isSessionPresent());
+        assertEquals(Mqtt5Codec.REASON_SUCCESS, connack.getReasonCode());
+        assertEquals(Integer.valueOf(5), connack.getProperties().getInt(Mqtt5Codec.PROP_RECEIVE_MAXIMUM));
+        assertEquals(Integer.valueOf(10), connack.getProperties().getInt(Mqtt5Codec.PROP_TOPIC_ALIAS_MAXIMUM));
+    }
+
+    @Test
+    public void testConnackWithoutProperties() throws IOException {
+        Connack connack = Mqtt5Codec.decodeConnack(read(new byte[] { 0x20, 2, 0x00, (byte) 0x87 }));
+
+        assertFalse(connack.isSessionPresent());
+        assertEquals(0x87, connack.getReasonCode());
+        assertTrue(connack.getProperties().getUserProperties().isEmpty());
+    }
+
+    @Test
+    public void testPublish() throws IOException {
+        byte[] payload = "payload".getBytes(StandardCharsets.UTF_8);
+        List<String[]> userProperties = Arrays.asList(new String[] { "a", "1" }, new String[] { "a", "2" });
+
+        Packet packet = read(
+                Mqtt5Codec.encodePublish("a/b", payload, 1, true, false, 42, 3, 60, userProperties));
+        assertEquals(Mqtt5Codec.PUBLISH, packet.getType());
+
+        Publish publish = Mqtt5Codec.decodePublish(packet);
+        assertEquals("a/b", publish.getTopic());
+        assertArrayEquals(payload, publish.getPayload());
+        assertEquals(1, publish.getQos());
+        assertTrue(publish.isRetain());
+        assertEquals(42, publish.getPacketId());
+
+        Properties properties = publish.getProperties();
+        assertEquals(Integer.valueOf(3), properties.getInt(Mqtt5Codec.PROP_TOPIC_ALIAS));
+        assertEquals(Long.valueOf(60), properties.getLong(Mqtt5Codec.PROP_MESSAGE_EXPIRY_INTERVAL));
+        assertEquals(2, properties.getUserProperties().size());
+        assertArrayEquals(new String[] { "a", "2" }, properties.getUserProperties().get(1));
+    }
+
+    @Test
+    public void testPublishWithLargePayload() throws IOException {
+        // the remaining length is encoded on three bytes
+        byte[] payload = new byte[20000];
+        Arrays.fill(payload, (byte) 7);
+
+        byte[] bytes = Mqtt5Codec.encodePublish("t", payload, 0, false, false, 0, 0, 0, null);
+        assertEquals(0x80, bytes[1] & 0x80);
+        assertEquals(0x80, bytes[2] & 0x80);
+        assertEquals(0, bytes[3] & 0x80);
+
+        Publish publish = Mqtt5Codec.decodePublish(read(bytes));
+        assertEquals("t", publish.getTopic());
+        assertEquals(0, publish.getPacketId());
+        assertArrayEquals(payload, publish.getPayload());
+    }
+
+    @Test
+    public void testPuback() throws IOException {
+        Packet packet = read(Mqtt5Codec.encodeAck(Mqtt5Codec.PUBACK, 1234, Mqtt5Codec.REASON_NO_MATCHING_SUBSCRIBERS));
+        assertEquals(Mqtt5Codec.PUBACK, packet.getType());
+
+        Ack ack = Mqtt5Codec.decodeAck(packet);
+        assertEquals(1234, ack.getPacketId());
+        assertEquals(Mqtt5Codec.REASON_NO_MATCHING_SUBSCRIBERS, ack.getReasonCode());
+
+        ack = Mqtt5Codec.decodeAck(read(Mqtt5Codec.encodeAck(Mqtt5Codec.PUBACK, 65535, Mqtt5Codec.REASON_SUCCESS)));
+        assertEquals(65535, ack.getPacketId());
+        assertEquals(Mqtt5Codec.REASON_SUCCESS, ack.getReasonCode());
+    }
+
+    @Test
+    public void testSuback() throws IOException {
+        Ack ack = Mqtt5Codec.decodeAck(read(new byte[] { (byte) 0x90, 4, 0x00, 0x07, 0, 0x01 }));
+
+        assertEquals(7, ack.getPacketId());
+        assertEquals(1, ack.getReasonCode());
+    }
+
+    @Test
+    public void testRemainingLengthTooLong() throws IOException {
+        byte[] bytes = { 0x30, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01 };
+        try {
+            read(bytes);
+            fail("a remaining length longer than 4 bytes should be rejected");
+        } catch (EOFException e) {
+            fail("a remaining length longer than 4 bytes should be rejected");
+        } catch (IOException e) {
+            assertEquals("Malformed remaining length", e.getMessage());
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncatedPacket() throws IOException {
+        read(new byte[] { 0x30, 10, 0x00, 0x01, 't' });
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncatedRemainingLength() throws IOException {
+        read(new byte[] { 0x30, (byte) 0x80 });
+    }
+
+    @Test(expected = IOException.class)
+    public void testPropertiesLengthTooLong() throws IOException {
+        byte[] bytes = { 0x20, 7, 0x00, 0x00, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01 };
+        Mqtt5Codec.decodeConnack(read(bytes));
+    }
+
+    @Test(expected = IOException.class)
+    public void testPropertiesExceedPacket() throws IOException {
+        Mqtt5Codec.decodeConnack(read(new byte[] { 0x20, 5, 0x00, 0x00, 10, 0x21, 0x00 }));
+    }
+
+    @Test(expected = IOException.class)
+    public void testPropertyExceedsPropertiesLength() throws IOException {
+        // the properties length covers only the first byte of the receive maximum value
+        Mqtt5Codec.decodeConnack(read(new byte[] { 0x20, 6, 0x00, 0x00, 2, 0x21, 0x00, 0x05 }));
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnknownProperty() throws IOException {
+        Mqtt5Codec.decodeConnack(read(new byte[] { 0x20, 5, 0x00, 0x00, 2, 0x7F, 0x00 }));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedPublish() throws IOException {
+        // the topic length exceeds the packet
+        Mqtt5Codec.decodePublish(read(new byte[] { 0x30, 4, 0x00, 0x10, 'a', 'b' }));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedAck() throws IOException {
+        Mqtt5Codec.decodeAck(read(new byte[] { 0x40, 1, 0x00 }));
+    }
+}
@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.kura.core.data.transport.mqtt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class Mqtt5TopicAliasesTest {
+
+    @Test
+    public void testAliasingDisabled() {
+        Mqtt5TopicAliases aliases = new Mqtt5TopicAliases(0);
+
+        Mqtt5TopicAliases.Mapping mapping = aliases.map("a/b");
+        assertEquals(0, mapping.getAlias());
+        assertFalse(mapping.isEstablished());
+        assertFalse(aliases.map("a/b").isEstablished());
+    }
+
+    @Test
+    public void testAliasReused() {
+        Mqtt5TopicAliases aliases = new Mqtt5TopicAliases(2);
+
+        Mqtt5TopicAliases.Mapping first = aliases.map("a/b");
+        assertEquals(1, first.getAlias());
+        assertFalse(first.isEstablished());
+
+        Mqtt5TopicAliases.Mapping second = aliases.map("a/b");
+        assertEquals(1, second.getAlias());
+        assertTrue(second.isEstablished());
+
+        assertEquals(2, aliases.map("c/d").getAlias());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedAliasReassigned() {
+        Mqtt5TopicAliases aliases = new Mqtt5TopicAliases(2);
+
+        aliases.map("t1");
+        aliases.map("t2");
+        aliases.map("t1");
+
+        // t2 is the least recently used topic
+        Mqtt5TopicAliases.Mapping mapping = aliases.map("t3");
+        assertEquals(2, mapping.getAlias());
+        assertFalse(mapping.isEstablished());
+        assertEquals(2, aliases.size());
+
+        assertTrue(aliases.map("t1").isEstablished());
+        assertFalse(aliases.map("t2").isEstablished());
+    }
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.kura.core.data.transport.mqtt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import javax.net.SocketFactory;
+import javax.net.ssl.HostnameVerifier;
+
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.junit.Test;
+
+public class MqttDataTransportTest {
+
+    @Test
+    public void testConnectionIndex() {
+        Set<Integer> used = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            String topic = "$EDC/account/device/app/topic" + i;
+            int index = MqttDataTransport.getConnectionIndex(topic, 4);
+            assertTrue(index >= 0 && index < 4);
+            assertEquals(index, MqttDataTransport.getConnectionIndex(topic, 4));
+            used.add(index);
+        }
+        assertEquals(4, used.size());
+
+        assertEquals(0, MqttDataTransport.getConnectionIndex("any/topic", 1));
+    }
+
+    @Test
+    public void testPooledConnectOptions() {
+        MqttConnectOptions primary = new MqttConnectOptions();
+        primary.setUserName("user");
+        primary.setPassword("secret".toCharArray());
+        primary.setKeepAliveInterval(45);
+        primary.setConnectionTimeout(15);
+        primary.setCleanSession(false);
+        primary.setMqttVersion(MqttConnectOptions.MQTT_VERSION_3_1_1);
+        primary.setMaxInflight(50);
+        SocketFactory socketFactory = SocketFactory.getDefault();
+        primary.setSocketFactory(socketFactory);
+        Properties sslProperties = new Properties();
+        sslProperties.setProperty("com.ibm.ssl.protocol", "TLSv1.2");
+        primary.setSSLProperties(sslProperties);
+        HostnameVerifier hostnameVerifier = (hostname, session) -> true;
+        primary.setSSLHostnameVerifier(hostnameVerifier);
+        primary.setWill("will/topic", "bye".getBytes(), 1, false);
+
+        MqttConnectOptions pooled = MqttDataTransport.buildPooledConnectOptions(primary);
+
+        assertEquals("user", pooled.getUserName());
+        assertArrayEquals("secret".toCharArray(), pooled.getPassword());
+        assertEquals(45, pooled.getKeepAliveInterval());
+        assertEquals(15, pooled.getConnectionTimeout());
+        assertFalse(pooled.isCleanSession());
+        assertEquals(MqttConnectOptions.MQTT_VERSION_3_1_1, pooled.getMqttVersion());
+        assertEquals(50, pooled.getMaxInflight());
+        assertSame(socketFactory, pooled.getSocketFactory());
+        assertSame(sslProperties, pooled.getSSLProperties());
+        assertSame(hostnameVerifier, pooled.getSSLHostnameVerifier());
+
+        // the last will is only set on the primary connection
+        assertNull(pooled.getWillMessage());
+        assertNull(pooled.getWillDestination());
+    }
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.kura.core.util.ProcessRunner.Priority;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ProcessRunnerTest {
+
+    @BeforeClass
+    public static void setup() {
+        Assume.assumeFalse(System.getProperty("os.name").contains("indows"));
+    }
+
+    @Test
+    public void testRunStreamsLines() throws Exception {
+        ProcessRunner runner = new ProcessRunner(2);
+        List<String> stdout = new ArrayList<>();
+        List<String> stderr = new ArrayList<>();
+
+        int exitValue = runner.run(new String[] { "/bin/sh", "-c", "echo one; echo two; echo err 1>&2; exit 3" },
+                Priority.NORMAL, 10, TimeUnit.SECONDS, stdout::add, stderr::add);
+
+        assertEquals(3, exitValue);
+        assertEquals(Arrays.asList("one", "two"), stdout);
+        assertEquals(Collections.singletonList("err"), stderr);
+        runner.shutdown();
+    }
+
+    @Test
+    public void testExecBuffersOutput() throws Exception {
+        ProcessRunner runner = new ProcessRunner(2);
+
+        SafeProcess process = runner.exec(new String[] { "/bin/sh", "-c", "echo stdout; echo stderr 1>&2" },
+                Priority.HIGH, 10, TimeUnit.SECONDS);
+
+        assertEquals(0, process.exitValue());
+        assertEquals("stdout", IOUtils.toString(process.getInputStream(), StandardCharsets.UTF_8).trim());
+        assertEquals("stderr", IOUtils.toString(process.getErrorStream(), StandardCharsets.UTF_8).trim());
+        runner.shutdown();
+    }
+
+    @Test
+    public void testTimeoutKillsProcess() throws Exception {
+        ProcessRunner runner = new ProcessRunner(1);
+
+        long start = System.currentTimeMillis();
+        try {
+            runner.run(new String[] { "sleep", "30" }, Priority.NORMAL, 200, TimeUnit.MILLISECONDS, null, null);
+            fail("Timeout expected");
+        } catch (TimeoutException e) {
+            // expected
+        }
+
+        // the slot is released once the process is killed
+        assertEquals(0, runner.run(new String[] { "true" }, Priority.NORMAL, 5, TimeUnit.SECONDS, null, null));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        runner.shutdown();
+    }
+
+    @Test
+    public void testConcurrentExecution() throws Exception {
+        ProcessRunner runner = new ProcessRunner(2);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        CountDownLatch ready = new CountDownLatch(2);
+
+        long start = System.currentTimeMillis();
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            results.add(callers.submit(() -> {
+                ready.countDown();
+                return runner.run(new String[] { "sleep", "1" }, Priority.NORMAL, 10, TimeUnit.SECONDS, null, null);
+            }));
+        }
+        for (Future<Integer> result : results) {
+            assertEquals(0, (int) result.get());
+        }
+
+        assertTrue(System.currentTimeMillis() - start < 1900);
+        callers.shutdown();
+        runner.shutdown();
+    }
+
+    @Test
+    public void testHighPriorityStartsFirst() throws Exception {
+        ProcessRunner runner = new ProcessRunner(1);
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        // occupy the only slot so that the next commands are queued
+        Future<Integer> blocker = callers.submit(() -> runner.run(new String[] { "sleep", "1" }, Priority.NORMAL, 10,
+                TimeUnit.SECONDS, null, null));
+        Thread.sleep(300);
+
+        Future<Integer> normal = callers.submit(() -> runner.run(new String[] { "echo", "normal" }, Priority.NORMAL,
+                10, TimeUnit.SECONDS, order::add, null));
+        Thread.sleep(100);
+        Future<Integer> high = callers.submit(() -> runner.run(new String[] { "echo", "high" }, Priority.HIGH, 10,
+                TimeUnit.SECONDS, order::add, null));
+
+        blocker.get();
+        normal.get();
+        high.get();
+
+        assertEquals(Arrays.asList("high", "normal"), order);
+        callers.shutdown();
+        runner.shutdown();
+    }
+}
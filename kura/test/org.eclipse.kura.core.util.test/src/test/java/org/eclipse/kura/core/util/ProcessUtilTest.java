@@ -10,10 +10,16 @@ package org.eclipse.kura.core.util;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeFalse;
 
 import java.io.File;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.IOUtils;
 import org.eclipse.kura.core.testutil.TestUtil;
@@ -168,4 +174,28 @@ public class ProcessUtilTest {
         assertNull(TestUtil.getFieldValue(process, "errBytes"));
         assertNull(TestUtil.getFieldValue(process, "process"));
     }
+
+    @Test
+    public void testExecIsSerialized() throws Exception {
+        assumeFalse(win);
+
+        // mkdir fails if another command holds the directory, that is if two commands overlap
+        final String lockDir = TEMP_SCRIPT_FILE_PATH + ".lock";
+        new File(lockDir).delete();
+        final String[] commandArray = { "/bin/sh", "-c",
+                "mkdir " + lockDir + " || exit 1; sleep 0.2; rmdir " + lockDir };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> ProcessUtil.exec(commandArray).exitValue()));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(0, (int) result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
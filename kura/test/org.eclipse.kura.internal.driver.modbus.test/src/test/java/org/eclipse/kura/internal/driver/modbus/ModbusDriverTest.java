@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.kura.internal.driver.modbus;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.kura.KuraConnectionStatus;
+import org.eclipse.kura.channel.ChannelFlag;
+import org.eclipse.kura.channel.ChannelRecord;
+import org.eclipse.kura.driver.PreparedRead;
+import org.eclipse.kura.protocol.modbus.ModbusProtocolDeviceService;
+import org.eclipse.kura.protocol.modbus.ModbusRequest;
+import org.eclipse.kura.type.DataType;
+import org.eclipse.kura.type.TypedValues;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class ModbusDriverTest {
+
+    private static ModbusDriver createTestDriver(final ModbusProtocolDeviceService device,
+            final Map<String, Object> properties) throws Exception {
+        when(device.getConnectStatus()).thenReturn(KuraConnectionStatus.CONNECTED);
+        when(device.readHoldingRegisters(anyInt(), anyInt(), anyInt())).thenAnswer(invocation -> {
+            final int address = (Integer) invocation.getArguments()[1];
+            final int[] result = new int[(Integer) invocation.getArguments()[2]];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = address + i;
+            }
+            return result;
+        });
+        when(device.readCoils(anyInt(), anyInt(), anyInt())).thenAnswer(invocation -> {
+            final int address = (Integer) invocation.getArguments()[1];
+            final boolean[] result = new boolean[(Integer) invocation.getArguments()[2]];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = (address + i) % 2 == 1;
+            }
+            return result;
+        });
+
+        final ModbusDriver driver = new ModbusDriver() {
+
+            @Override
+            protected ModbusProtocolDeviceService createDevice() {
+                return device;
+            }
+        };
+        driver.activate(properties);
+        return driver;
+    }
+
+    private static ChannelRecord createRecord(final ChannelRecord record, final int unitId,
+            final ModbusMemoryArea area, final int address, final ModbusDataType type) {
+        final Map<String, Object> config = new HashMap<>();
+        config.put(ModbusChannelDescriptor.UNIT_ID_ID, unitId);
+        config.put(ModbusChannelDescriptor.MEMORY_AREA_ID, area.name());
+        config.put(ModbusChannelDescriptor.MEMORY_ADDRESS_ID, address);
+        config.put(ModbusChannelDescriptor.MODBUS_DATA_TYPE_ID, type.name());
+        record.setChannelConfig(config);
+        return record;
+    }
+
+    private static ChannelRecord createReadRecord(final int unitId, final ModbusMemoryArea area, final int address,
+            final ModbusDataType type, final DataType valueType) {
+        return createRecord(ChannelRecord.createReadRecord("ch" + address, valueType), unitId, area, address, type);
+    }
+
+    @Test
+    public void testAdjacentRegistersAreMerged() throws Exception {
+        final ModbusProtocolDeviceService device = mock(ModbusProtocolDeviceService.class);
+        final ModbusDriver driver = createTestDriver(device, new HashMap<>());
+
+        final List<ChannelRecord> records = new ArrayList<>();
+        records.add(createReadRecord(1, ModbusMemoryArea.HOLDING_REGISTERS, 2, ModbusDataType.INT32, DataType.LONG));
+        records.add(createReadRecord(1, ModbusMemoryArea.HOLDING_REGISTERS, 0, ModbusDataType.INT16,
+                DataType.INTEGER));
+        records.add(createReadRecord(1, ModbusMemoryArea.HOLDING_REGISTERS, 1, ModbusDataType.UINT16,
+                DataType.INTEGER));
+        records.add(createReadRecord(1, ModbusMemoryArea.HOLDING_REGISTERS, 10, ModbusDataType.INT16,
+                DataType.INTEGER));
+        records.add(createReadRecord(2, ModbusMemoryArea.HOLDING_REGISTERS, 10, ModbusDataType.INT16,
+                DataType.INTEGER));
+
+        driver.read(records);
+
+        verify(device, times(1)).readHoldingRegisters(1, 0, 4);
+        verify(device, times(1)).readHoldingRegisters(1, 10, 1);
+        verify(device, times(1)).readHoldingRegisters(2, 10, 1);
+
+        assertEquals(ChannelFlag.SUCCESS, records.get(0).getChannelStatus().getChannelFlag());
+        assertEquals(2L << 16 | 3, records.get(0).getValue().getValue());
+        assertEquals(0, records.get(1).getValue().getValue());
+        assertEquals(1, records.get(2).getValue().getValue());
+        assertEquals(10, records.get(3).getValue().getValue());
+    }
+
+    @Test
+    public void testMinimumGapSize() throws Exception {
+        final ModbusProtocolDeviceService device = mock(ModbusProtocolDeviceService.class);
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put("read.minimum.gap.size", 10);
+        final ModbusDriver driver = createTestDriver(device, properties);
+
+        final List<ChannelRecord> records = new ArrayList<>();
+        records.add(createReadRecord(1, ModbusMemoryArea.HOLDING_REGISTERS, 0, ModbusDataType.INT16,
+                DataType.INTEGER));
+        records.add(createReadRecord(1, ModbusMemoryArea.HOLDING_REGISTERS, 8, ModbusDataType.INT16,
+                DataType.INTEGER));
+        records.add(createReadRecord(1, ModbusMemoryArea.COILS, 3, ModbusDataType.INT16, DataType.BOOLEAN));
+        records.add(createReadRecord(1, ModbusMemoryArea.COILS, 6, ModbusDataType.INT16, DataType.BOOLEAN));
+
+        final PreparedRead preparedRead = driver.prepareRead(records);
+        preparedRead.execute();
+        preparedRead.execute();
+
+        verify(device, times(2)).readHoldingRegisters(1, 0, 9);
+        verify(device, times(2)).readCoils(1, 3, 4);
+
+        assertEquals(8, records.get(1).getValue().getValue());
+        assertEquals(true, records.get(2).getValue().getValue());
+        assertEquals(false, records.get(3).getValue().getValue());
+    }
+
+    @Test
+    public void testBlocksAreSplitAtMaximumPduSize() throws Exception {
+        final ModbusProtocolDeviceService device = mock(ModbusProtocolDeviceService.class);
+        final ModbusDriver driver = createTestDriver(device, new HashMap<>());
+
+        final List<ChannelRecord> records = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            records.add(createReadRecord(1, ModbusMemoryArea.HOLDING_REGISTERS, i, ModbusDataType.INT16,
+                    DataType.INTEGER));
+        }
+
+        driver.read(records);
+
+        verify(device, times(1)).readHoldingRegisters(1, 0, 125);
+        verify(device, times(1)).readHoldingRegisters(1, 125, 75);
+
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i, records.get(i).getValue().getValue());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReadsAreBatchedWithMaxInFlight() throws Exception {
+        final ModbusProtocolDeviceService device = mock(ModbusProtocolDeviceService.class);
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put("max.in.flight", 4);
+        final ModbusDriver driver = createTestDriver(device, properties);
+
+        final List<ChannelRecord> records = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            records.add(createReadRecord(1, ModbusMemoryArea.HOLDING_REGISTERS, i, ModbusDataType.INT16,
+                    DataType.INTEGER));
+        }
+        records.add(createReadRecord(1, ModbusMemoryArea.COILS, 3, ModbusDataType.INT16, DataType.BOOLEAN));
+
+        driver.read(records);
+
+        final ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(device, times(1)).executeBatch(captor.capture());
+        verify(device, never()).readHoldingRegisters(anyInt(), anyInt(), anyInt());
+        verify(device, never()).readCoils(anyInt(), anyInt(), anyInt());
+
+        final List<ModbusRequest> requests = captor.getValue();
+        assertEquals(3, requests.size());
+
+        // the mock does not execute the requests, their channels fail
+        assertEquals(ChannelFlag.FAILURE, records.get(0).getChannelStatus().getChannelFlag());
+        assertEquals(ChannelFlag.FAILURE, records.get(200).getChannelStatus().getChannelFlag());
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        final ModbusProtocolDeviceService device = mock(ModbusProtocolDeviceService.class);
+        final ModbusDriver driver = createTestDriver(device, new HashMap<>());
+
+        final List<ChannelRecord> records = Arrays.asList(
+                createRecord(ChannelRecord.createWriteRecord("a", TypedValues.newIntegerValue(0x1234)), 1,
+                        ModbusMemoryArea.HOLDING_REGISTERS, 5, ModbusDataType.INT16),
+                createRecord(ChannelRecord.createWriteRecord("b", TypedValues.newIntegerValue(-1)), 1,
+                        ModbusMemoryArea.HOLDING_REGISTERS, 6, ModbusDataType.INT16),
+                createRecord(ChannelRecord.createWriteRecord("c", TypedValues.newBooleanValue(true)), 1,
+                        ModbusMemoryArea.COILS, 7, ModbusDataType.INT16),
+                createRecord(ChannelRecord.createWriteRecord("d", TypedValues.newBooleanValue(true)), 1,
+                        ModbusMemoryArea.DISCRETE_INPUTS, 7, ModbusDataType.INT16));
+
+        driver.write(records);
+
+        verify(device).writeMultipleRegister(1, 5, new int[] { 0x1234, 0xffff });
+        verify(device).writeSingleCoil(1, 7, true);
+
+        assertEquals(ChannelFlag.SUCCESS, records.get(0).getChannelStatus().getChannelFlag());
+        assertEquals(ChannelFlag.SUCCESS, records.get(2).getChannelStatus().getChannelFlag());
+        assertEquals(ChannelFlag.FAILURE, records.get(3).getChannelStatus().getChannelFlag());
+    }
+
+    @Test
+    public void testUpdatedReconnects() throws Exception {
+        final ModbusProtocolDeviceService device = mock(ModbusProtocolDeviceService.class);
+        final ModbusDriver driver = createTestDriver(device, new HashMap<>());
+
+        driver.connect();
+        driver.connect();
+
+        driver.updated(new HashMap<>());
+        driver.connect();
+
+        verify(device, times(2)).configureConnection(any());
+        verify(device, times(1)).disconnect();
+        verify(device, times(3)).getConnectStatus();
+        verifyNoMoreInteractions(device);
+    }
+}
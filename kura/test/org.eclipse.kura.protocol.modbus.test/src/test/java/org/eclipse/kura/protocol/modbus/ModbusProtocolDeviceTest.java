@@ -13,6 +13,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Properties;
 
 import org.eclipse.kura.KuraConnectionStatus;
@@ -125,4 +126,37 @@ public class ModbusProtocolDeviceTest {
         assertEquals(10, inputRegs[0]);
     }
 
+    @Test
+    public void testExecuteBatch() throws ModbusProtocolException {
+        modbusDevice.disconnect();
+        Properties connectionConfig = new Properties();
+        connectionConfig.setProperty("connectionType", ModbusProtocolDevice.PROTOCOL_CONNECTION_TYPE_ETHER_TCP);
+        connectionConfig.setProperty("ipAddress", "127.0.0.1");
+        connectionConfig.setProperty("ethport", "32345");
+        connectionConfig.setProperty("respTimeout", "10000");
+        connectionConfig.setProperty("transmissionMode", ModbusTransmissionMode.RTU);
+        connectionConfig.setProperty("maxInFlight", "2");
+        modbusDevice.configureConnection(connectionConfig);
+
+        // the responses of each window come back in reverse order, they must be matched by transaction id
+        modbusServer.setOutOfOrder(true);
+        try {
+            modbusDevice.connect();
+
+            ModbusRequest holdingRegs = ModbusRequest.readHoldingRegisters(1, 0, 1);
+            ModbusRequest coils = ModbusRequest.readCoils(1, 0, 1);
+            ModbusRequest inputRegs = ModbusRequest.readInputRegisters(1, 8, 1);
+            ModbusRequest discreteInputs = ModbusRequest.readDiscreteInputs(1, 0, 1);
+            modbusDevice.executeBatch(Arrays.asList(holdingRegs, coils, inputRegs, discreteInputs));
+
+            assertEquals(2, holdingRegs.getRegisters()[0]);
+            assertTrue(coils.getBits()[0]);
+            assertEquals(10, inputRegs.getRegisters()[0]);
+            assertTrue(discreteInputs.getBits()[0]);
+        } finally {
+            modbusDevice.disconnect();
+            modbusServer.setOutOfOrder(false);
+        }
+    }
+
 }
@@ -0,0 +1,275 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+
+package org.eclipse.kura.protocol.modbus;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kura.comm.CommConnection;
+import org.eclipse.kura.comm.CommURI;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.service.io.ConnectionFactory;
+
+/**
+ * Runs RTU transactions over a simulated serial line, the simulated slave writes the response in the given bursts,
+ * waiting the given delay before each of them.
+ */
+public class ModbusSerialFramingTest {
+
+    private static final int RESPONSE_TIMEOUT = 500;
+
+    private SerialLine line;
+
+    private ModbusProtocolDevice modbusDevice;
+
+    @Before
+    public void connect() throws ModbusProtocolException {
+        this.line = new SerialLine();
+
+        final CommConnection connection = (CommConnection) Proxy.newProxyInstance(
+                CommConnection.class.getClassLoader(), new Class<?>[] { CommConnection.class },
+                (proxy, method, args) -> {
+                    if ("openInputStream".equals(method.getName())) {
+                        return this.line.input;
+                    } else if ("openOutputStream".equals(method.getName())) {
+                        return this.line.output;
+                    } else if ("close".equals(method.getName())) {
+                        this.line.close();
+                    }
+                    return null;
+                });
+        final ConnectionFactory connectionFactory = (ConnectionFactory) Proxy.newProxyInstance(
+                ConnectionFactory.class.getClassLoader(), new Class<?>[] { ConnectionFactory.class },
+                (proxy, method, args) -> connection);
+
+        this.modbusDevice = new ModbusProtocolDevice();
+        this.modbusDevice.setConnectionFactory(connectionFactory);
+        Properties connectionConfig = new Properties();
+        connectionConfig.setProperty("connectionType", ModbusProtocolDevice.PROTOCOL_CONNECTION_TYPE_SERIAL);
+        // the port must exist, it is not opened
+        connectionConfig.setProperty("port", "/dev/null");
+        connectionConfig.setProperty("baudRate", "9600");
+        connectionConfig.setProperty("bitsPerWord", "8");
+        connectionConfig.setProperty("stopBits", String.valueOf(CommURI.STOPBITS_1));
+        connectionConfig.setProperty("parity", String.valueOf(CommURI.PARITY_NONE));
+        connectionConfig.setProperty("respTimeout", String.valueOf(RESPONSE_TIMEOUT));
+        connectionConfig.setProperty("transmissionMode", ModbusTransmissionMode.RTU);
+        this.modbusDevice.configureConnection(connectionConfig);
+        this.modbusDevice.connect();
+    }
+
+    @After
+    public void disconnect() throws ModbusProtocolException {
+        this.modbusDevice.disconnect();
+    }
+
+    @Test
+    public void testSingleFrame() throws ModbusProtocolException {
+        this.line.respond(0, readResponse(1, 0x1234));
+
+        assertArrayEquals(new int[] { 0x1234 }, this.modbusDevice.readHoldingRegisters(1, 0, 1));
+        assertArrayEquals(new byte[] { 1, 3, 0, 0, 0, 1 }, Arrays.copyOf(this.line.lastRequest(), 6));
+    }
+
+    @Test
+    public void testPartialFrames() throws ModbusProtocolException {
+        // the gaps are longer than 3.5 characters at 9600 baud, but the frame length is known from its header
+        final byte[] response = readResponse(1, 0x1234);
+        this.line.respond(0, Arrays.copyOfRange(response, 0, 3), 20, Arrays.copyOfRange(response, 3, 5), 20,
+                Arrays.copyOfRange(response, 5, response.length));
+
+        assertArrayEquals(new int[] { 0x1234 }, this.modbusDevice.readHoldingRegisters(1, 0, 1));
+    }
+
+    @Test
+    public void testInterFrameGap() throws ModbusProtocolException {
+        // a frame of unknown length, then a response from another slave, both ended by the silence on the line
+        this.line.respond(0, new byte[] { 1, 0x55, 0 }, 20, readResponse(2, 0x5678), 20, readResponse(1, 0x1234));
+
+        assertArrayEquals(new int[] { 0x1234 }, this.modbusDevice.readHoldingRegisters(1, 0, 1));
+    }
+
+    @Test
+    public void testCrcFailure() throws ModbusProtocolException {
+        final byte[] corrupted = readResponse(1, 0x1234);
+        corrupted[corrupted.length - 1] ^= 0xff;
+        this.line.respond(0, corrupted, 20, readResponse(1, 0x4321));
+
+        // the corrupted frame is discarded as a whole
+        assertArrayEquals(new int[] { 0x4321 }, this.modbusDevice.readHoldingRegisters(1, 0, 1));
+
+        this.line.respond(0, corrupted);
+        assertResponseTimeout();
+    }
+
+    @Test
+    public void testTimeout() throws ModbusProtocolException, InterruptedException {
+        this.line.respond(RESPONSE_TIMEOUT + 100, readResponse(1, 0x1111));
+        final long start = System.nanoTime();
+
+        assertResponseTimeout();
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(RESPONSE_TIMEOUT));
+
+        // the late response is not taken as the response to the next request
+        Thread.sleep(200);
+        this.line.respond(0, readResponse(1, 0x2222));
+        assertArrayEquals(new int[] { 0x2222 }, this.modbusDevice.readHoldingRegisters(1, 0, 1));
+    }
+
+    @Test
+    public void testExceptionResponse() {
+        this.line.respond(0, withCrc(new byte[] { 1, (byte) 0x83, 2 }));
+
+        try {
+            this.modbusDevice.readHoldingRegisters(1, 0, 1);
+            fail("an exception response should fail the transaction");
+        } catch (ModbusProtocolException e) {
+            assertEquals(ModbusProtocolErrorCode.TRANSACTION_FAILURE, e.getCode());
+        }
+    }
+
+    private void assertResponseTimeout() {
+        try {
+            this.modbusDevice.readHoldingRegisters(1, 0, 1);
+            fail("the transaction should time out");
+        } catch (ModbusProtocolException e) {
+            assertEquals(ModbusProtocolErrorCode.RESPONSE_TIMEOUT, e.getCode());
+        }
+    }
+
+    private static byte[] readResponse(int unitAddr, int value) {
+        return withCrc(new byte[] { (byte) unitAddr, 3, 2, (byte) (value >> 8), (byte) value });
+    }
+
+    private static byte[] withCrc(byte[] pdu) {
+        byte[] frame = Arrays.copyOf(pdu, pdu.length + 2);
+        int crc = Crc16.getCrc16(pdu, pdu.length, 0xffff);
+        frame[pdu.length] = (byte) crc;
+        frame[pdu.length + 1] = (byte) (crc >> 8);
+        return frame;
+    }
+
+    /**
+     * A simulated serial line, each request written by the device is answered with the next programmed response.
+     */
+    private static final class SerialLine {
+
+        private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        private final Deque<Object[]> responses = new ArrayDeque<>();
+        private final byte[] pending = new byte[1024];
+        private int pendingLength;
+        private boolean closed;
+        private byte[] lastRequest;
+
+        final InputStream input = new InputStream() {
+
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return SerialLine.this.read(b, off, len);
+            }
+        };
+
+        final OutputStream output = new OutputStream() {
+
+            @Override
+            public void write(int b) {
+                SerialLine.this.received.write(b);
+            }
+
+            @Override
+            public void flush() {
+                SerialLine.this.requestSent();
+            }
+        };
+
+        /**
+         * Programs the response to the next request, as delays in milliseconds followed by the bytes to write.
+         */
+        synchronized void respond(Object... bursts) {
+            this.responses.addLast(bursts);
+        }
+
+        synchronized byte[] lastRequest() {
+            return this.lastRequest;
+        }
+
+        private synchronized void requestSent() {
+            this.lastRequest = this.received.toByteArray();
+            this.received.reset();
+            final Object[] bursts = this.responses.pollFirst();
+            if (bursts == null) {
+                return;
+            }
+            final Thread slave = new Thread(() -> {
+                for (int i = 0; i < bursts.length; i += 2) {
+                    try {
+                        Thread.sleep((Integer) bursts[i]);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    write((byte[]) bursts[i + 1]);
+                }
+            });
+            slave.setDaemon(true);
+            slave.start();
+        }
+
+        private synchronized void write(byte[] bytes) {
+            System.arraycopy(bytes, 0, this.pending, this.pendingLength, bytes.length);
+            this.pendingLength += bytes.length;
+            notifyAll();
+        }
+
+        private synchronized int read(byte[] b, int off, int len) throws IOException {
+            try {
+                while (this.pendingLength == 0 && !this.closed) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (this.pendingLength == 0) {
+                return -1;
+            }
+            final int n = Math.min(len, this.pendingLength);
+            System.arraycopy(this.pending, 0, b, off, n);
+            System.arraycopy(this.pending, n, this.pending, 0, this.pendingLength - n);
+            this.pendingLength -= n;
+            return n;
+        }
+
+        private synchronized void close() {
+            this.closed = true;
+            notifyAll();
+        }
+    }
+}
@@ -9,10 +9,15 @@
 
 package org.eclipse.kura.protocol.modbus.test;
 
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,21 +27,58 @@ public class ModbusHandler extends Thread {
     private static final Logger logger = LoggerFactory.getLogger(ModbusHandler.class);
 
     private Socket socket = null;
+    private final boolean outOfOrder;
 
     public ModbusHandler(Socket socket) {
+        this(socket, false);
+    }
+
+    /**
+     * @param outOfOrder
+     *            if true, the requests pipelined by the client are answered in reverse order
+     */
+    public ModbusHandler(Socket socket, boolean outOfOrder) {
         super("ModbusHandler");
         this.socket = socket;
+        this.outOfOrder = outOfOrder;
     }
 
     public void run() {
-        try (OutputStream out = socket.getOutputStream(); InputStream in = socket.getInputStream()) {
-            byte[] input = new byte[256];
-            int length = in.read(input);
-            byte[] output = handleRequest(input);
-            out.write(output);
+        try (OutputStream out = socket.getOutputStream();
+                DataInputStream in = new DataInputStream(socket.getInputStream())) {
+            // serve the requests until the client closes the connection, several requests can be pipelined
+            while (true) {
+                byte[] input = readRequest(in);
+                if (input == null) {
+                    break;
+                }
+                List<byte[]> requests = new ArrayList<>();
+                requests.add(input);
+                if (this.outOfOrder) {
+                    // give the client the time to send the whole window
+                    Thread.sleep(100);
+                    while (in.available() > 0) {
+                        requests.add(readRequest(in));
+                    }
+                    Collections.reverse(requests);
+                }
+                for (byte[] request : requests) {
+                    byte[] output = handleRequest(request);
+                    if (output.length > 6) {
+                        // answer with the same transaction id, and only the bytes declared in the MBAP header
+                        output[0] = request[0];
+                        output[1] = request[1];
+                        output = Arrays.copyOf(output, 6 + output[5]);
+                    }
+                    out.write(output);
+                }
+                out.flush();
+            }
         } catch (IOException e) {
             logger.error("ModbusHandler", e);
             throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } finally {
             try {
                 socket.close();
@@ -46,6 +88,17 @@ public class ModbusHandler extends Thread {
         }
     }
 
+    private static byte[] readRequest(DataInputStream in) throws IOException {
+        byte[] input = new byte[262];
+        try {
+            in.readFully(input, 0, 6);
+        } catch (EOFException e) {
+            return null;
+        }
+        in.readFully(input, 6, (input[4] & 0xff) << 8 | input[5] & 0xff);
+        return input;
+    }
+
     private byte[] handleRequest(byte[] input) {
         byte command = input[7];
         switch (command) {
@@ -23,8 +23,16 @@ public class ModbusServer {
     CountDownLatch latch = new CountDownLatch(1);
 
     private boolean listening = true;
+    private volatile boolean outOfOrder;
     private ServerSocket serverSocket;
 
+    /**
+     * If true, the connections accepted from now on answer the pipelined requests in reverse order.
+     */
+    public void setOutOfOrder(boolean outOfOrder) {
+        this.outOfOrder = outOfOrder;
+    }
+
     public void start(int port) throws IOException, InterruptedException {
         new Thread() {
 
@@ -34,7 +42,7 @@ public class ModbusServer {
                     serverSocket = new ServerSocket(port);
                     latch.countDown();   // make sure server is ready before running tests
                     while (listening) {
-                        ModbusHandler modbusHandler = new ModbusHandler(serverSocket.accept());
+                        ModbusHandler modbusHandler = new ModbusHandler(serverSocket.accept(), outOfOrder);
                         modbusHandler.start();
                     }
                 } catch (IOException e) {
@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.kura.internal.wire.aggregation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.type.TypedValues;
+import org.eclipse.kura.wire.WireEnvelope;
+import org.eclipse.kura.wire.WireHelperService;
+import org.eclipse.kura.wire.WireRecord;
+import org.eclipse.kura.wire.WireSupport;
+import org.junit.Test;
+import org.osgi.service.component.ComponentContext;
+
+public class WindowAggregatorTest {
+
+    @Test
+    public void testTumblingCountWindow() {
+        List<List<WireRecord>> emitted = new ArrayList<>();
+        WindowAggregator aggregator = createAggregator("tumbling", 3, 3, "*=min,max,mean,sum,count", "", emitted);
+
+        for (int i = 1; i <= 7; i++) {
+            aggregator.onWireReceive(envelope(record("value", i)));
+        }
+
+        assertEquals(2, emitted.size());
+        Map<String, TypedValue<?>> first = emitted.get(0).get(0).getProperties();
+        assertEquals(1.0, (Double) first.get("value_min").getValue(), 0.0);
+        assertEquals(3.0, (Double) first.get("value_max").getValue(), 0.0);
+        assertEquals(2.0, (Double) first.get("value_mean").getValue(), 0.0);
+        assertEquals(6.0, (Double) first.get("value_sum").getValue(), 0.0);
+        assertEquals(3L, first.get("value_count").getValue());
+        assertTrue(first.containsKey(WindowAggregator.WINDOW_START_PROPERTY));
+        assertTrue(first.containsKey(WindowAggregator.WINDOW_END_PROPERTY));
+
+        Map<String, TypedValue<?>> second = emitted.get(1).get(0).getProperties();
+        assertEquals(4.0, (Double) second.get("value_min").getValue(), 0.0);
+        assertEquals(6.0, (Double) second.get("value_max").getValue(), 0.0);
+    }
+
+    @Test
+    public void testSlidingCountWindow() {
+        List<List<WireRecord>> emitted = new ArrayList<>();
+        WindowAggregator aggregator = createAggregator("sliding", 4, 2, "value=sum", "", emitted);
+
+        for (int i = 1; i <= 8; i++) {
+            aggregator.onWireReceive(envelope(record("value", i)));
+        }
+
+        // windows end every 2 records and cover the last 4
+        assertEquals(4, emitted.size());
+        assertEquals(3.0, (Double) emitted.get(0).get(0).getProperties().get("value_sum").getValue(), 0.0);
+        assertEquals(10.0, (Double) emitted.get(1).get(0).getProperties().get("value_sum").getValue(), 0.0);
+        assertEquals(18.0, (Double) emitted.get(2).get(0).getProperties().get("value_sum").getValue(), 0.0);
+        assertEquals(26.0, (Double) emitted.get(3).get(0).getProperties().get("value_sum").getValue(), 0.0);
+    }
+
+    @Test
+    public void testGroupBy() {
+        List<List<WireRecord>> emitted = new ArrayList<>();
+        WindowAggregator aggregator = createAggregator("tumbling", 4, 4, "value=max", "device", emitted);
+
+        aggregator.onWireReceive(envelope(record("device", "a", "value", 1, "other", 5),
+                record("device", "b", "value", 10), record("device", "a", "value", 2),
+                record("device", "b", "value", 20)));
+
+        assertEquals(1, emitted.size());
+        assertEquals(2, emitted.get(0).size());
+        for (WireRecord record : emitted.get(0)) {
+            Map<String, TypedValue<?>> properties = record.getProperties();
+            double expected = "a".equals(properties.get("device").getValue()) ? 2.0 : 20.0;
+            assertEquals(expected, (Double) properties.get("value_max").getValue(), 0.0);
+            assertTrue(properties.keySet().stream().noneMatch(name -> name.startsWith("other")));
+        }
+    }
+
+    @Test
+    public void testAccumulatorMerge() {
+        Accumulator all = new Accumulator(true);
+        Accumulator left = new Accumulator(true);
+        Accumulator right = new Accumulator(true);
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            double value = random.nextGaussian() * 10 + 50;
+            all.add(value);
+            (i % 2 == 0 ? left : right).add(value);
+        }
+
+        left.merge(right);
+
+        assertEquals(all.getCount(), left.getCount());
+        assertEquals(all.getMean(), left.getMean(), 1e-9);
+        assertEquals(all.getStandardDeviation(), left.getStandardDeviation(), 1e-9);
+        assertEquals(all.getMin(), left.getMin(), 0.0);
+        assertEquals(all.getMax(), left.getMax(), 0.0);
+        assertEquals(all.getQuantile(0.5), left.getQuantile(0.5), 0.0);
+    }
+
+    @Test
+    public void testQuantileRelativeAccuracy() {
+        QuantileSketch sketch = new QuantileSketch();
+        List<Double> values = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            double value = Math.exp(random.nextGaussian() * 3) * (i % 10 == 0 ? -1 : 1);
+            values.add(value);
+            sketch.add(value);
+        }
+        Collections.sort(values);
+
+        for (double quantile : new double[] { 0.05, 0.25, 0.5, 0.9, 0.99, 0.999 }) {
+            double expected = values.get((int) (quantile * (values.size() - 1)));
+            double actual = sketch.getQuantile(quantile);
+            assertEquals("quantile " + quantile, expected, actual, Math.abs(expected) * 0.01);
+        }
+    }
+
+    private static WindowAggregator createAggregator(String type, int size, int slide, String functions,
+            String groupBy, List<List<WireRecord>> emitted) {
+        WindowAggregator aggregator = new WindowAggregator();
+
+        WireHelperService wireHelperServiceMock = mock(WireHelperService.class);
+        WireSupport wireSupportMock = mock(WireSupport.class);
+        when(wireHelperServiceMock.newWireSupport(aggregator, null)).thenReturn(wireSupportMock);
+        doAnswer(invocation -> {
+            emitted.add(invocation.getArgumentAt(0, List.class));
+            return null;
+        }).when(wireSupportMock).emit(anyObject());
+        aggregator.bindWireHelperService(wireHelperServiceMock);
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("window.type", type);
+        properties.put("window.mode", "count");
+        properties.put("window.size", size);
+        properties.put("window.slide", slide);
+        properties.put("functions", functions);
+        properties.put("group.by", groupBy);
+
+        aggregator.activate(mock(ComponentContext.class), properties);
+        return aggregator;
+    }
+
+    private static WireEnvelope envelope(WireRecord... records) {
+        List<WireRecord> list = new ArrayList<>();
+        Collections.addAll(list, records);
+        return new WireEnvelope("pid", list);
+    }
+
+    private static WireRecord record(Object... nameValues) {
+        Map<String, TypedValue<?>> properties = new HashMap<>();
+        for (int i = 0; i < nameValues.length; i += 2) {
+            properties.put((String) nameValues[i], TypedValues.newTypedValue(nameValues[i + 1]));
+        }
+        return new WireRecord(properties);
+    }
+}
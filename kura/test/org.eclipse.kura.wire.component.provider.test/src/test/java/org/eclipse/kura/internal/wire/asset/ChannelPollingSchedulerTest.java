@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.asset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.kura.channel.Channel;
+import org.eclipse.kura.channel.ChannelFlag;
+import org.eclipse.kura.channel.ChannelRecord;
+import org.eclipse.kura.channel.ChannelStatus;
+import org.eclipse.kura.channel.ChannelType;
+import org.eclipse.kura.type.DataType;
+import org.eclipse.kura.type.TypedValues;
+import org.junit.Test;
+
+public class ChannelPollingSchedulerTest {
+
+    private static Channel createChannel(final String name, final long interval, final long maxInterval,
+            final double deadband) {
+        final Map<String, Object> config = new HashMap<>();
+        config.put(WireAssetConstants.POLL_INTERVAL_PROP_NAME.value(), interval);
+        config.put(WireAssetConstants.POLL_MAX_INTERVAL_PROP_NAME.value(), maxInterval);
+        config.put(WireAssetConstants.DEADBAND_PROP_NAME.value(), deadband);
+        final Channel channel = new Channel(name, ChannelType.READ, DataType.DOUBLE, config);
+        channel.setEnabled(true);
+        return channel;
+    }
+
+    private static Map<String, Channel> createChannels(final Channel... channels) {
+        final Map<String, Channel> result = new HashMap<>();
+        for (final Channel channel : channels) {
+            result.put(channel.getName(), channel);
+        }
+        return result;
+    }
+
+    private static List<ChannelRecord> createRecords(final double value, final String... names) {
+        final ChannelRecord[] records = new ChannelRecord[names.length];
+        for (int i = 0; i < names.length; i++) {
+            records[i] = ChannelRecord.createReadRecord(names[i], DataType.DOUBLE);
+            records[i].setValue(TypedValues.newDoubleValue(value));
+            records[i].setChannelStatus(new ChannelStatus(ChannelFlag.SUCCESS));
+        }
+        return Arrays.asList(records);
+    }
+
+    @Test
+    public void testNoPollIntervals() {
+        assertNull(ChannelPollingScheduler.create(createChannels(createChannel("a", 0, 0, 0))));
+    }
+
+    @Test
+    public void testPollInterval() {
+        final ChannelPollingScheduler scheduler = ChannelPollingScheduler
+                .create(createChannels(createChannel("fast", 0, 0, 0), createChannel("slow", 3000, 0, 0)));
+
+        for (long now = 0; now < 6000; now += 1000) {
+            final boolean slowDue = now % 3000 == 0;
+            assertEquals(slowDue ? new HashSet<>(Arrays.asList("fast", "slow")) : Collections.singleton("fast"),
+                    scheduler.getDueChannels(now));
+            scheduler.onChannelsRead(slowDue ? createRecords(1, "fast", "slow") : createRecords(1, "fast"), now);
+        }
+    }
+
+    @Test
+    public void testTriggerJitterIsTolerated() {
+        final ChannelPollingScheduler scheduler = ChannelPollingScheduler
+                .create(createChannels(createChannel("a", 1000, 0, 0)));
+
+        assertEquals(Collections.singleton("a"), scheduler.getDueChannels(0));
+        scheduler.onChannelsRead(createRecords(1, "a"), 0);
+        assertEquals(Collections.singleton("a"), scheduler.getDueChannels(990));
+    }
+
+    @Test
+    public void testBackoffWithinDeadband() {
+        final ChannelPollingScheduler scheduler = ChannelPollingScheduler
+                .create(createChannels(createChannel("a", 1000, 4000, 0.5)));
+
+        // the interval grows to 2000 and 4000 while the value does not change by more than the deadband
+        scheduler.getDueChannels(0);
+        scheduler.onChannelsRead(createRecords(1, "a"), 0);
+        scheduler.getDueChannels(1000);
+        scheduler.onChannelsRead(createRecords(1.2, "a"), 1000);
+        assertEquals(Collections.emptySet(), scheduler.getDueChannels(2000));
+        assertEquals(Collections.singleton("a"), scheduler.getDueChannels(3000));
+        scheduler.onChannelsRead(createRecords(1.4, "a"), 3000);
+        assertEquals(Collections.emptySet(), scheduler.getDueChannels(5000));
+        assertEquals(Collections.singleton("a"), scheduler.getDueChannels(7000));
+
+        // the drift from the last changed value exceeds the deadband, the interval is reset
+        scheduler.onChannelsRead(createRecords(1.6, "a"), 7000);
+        assertEquals(Collections.singleton("a"), scheduler.getDueChannels(8000));
+    }
+
+    @Test
+    public void testFailureResetsInterval() {
+        final ChannelPollingScheduler scheduler = ChannelPollingScheduler
+                .create(createChannels(createChannel("a", 1000, 8000, 0)));
+
+        scheduler.getDueChannels(0);
+        scheduler.onChannelsRead(createRecords(1, "a"), 0);
+        scheduler.getDueChannels(1000);
+        scheduler.onChannelsRead(createRecords(1, "a"), 1000);
+        assertEquals(Collections.singleton("a"), scheduler.getDueChannels(3000));
+
+        final ChannelRecord failed = ChannelRecord.createStatusRecord("a", new ChannelStatus(ChannelFlag.FAILURE));
+        scheduler.onChannelsRead(Collections.singletonList(failed), 3000);
+        assertEquals(Collections.singleton("a"), scheduler.getDueChannels(4000));
+    }
+}
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.kura.internal.wire.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.kura.type.IntegerValue;
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.type.TypedValues;
+import org.eclipse.kura.wire.WireRecord;
+import org.junit.Test;
+
+public class ExpressionTest {
+
+    @Test
+    public void testArithmetic() {
+        ExpressionContext context = context(record("a", 7, "b", 2L, "c", 0.5));
+
+        assertEquals(9L, evaluate("a + b", context));
+        assertEquals(3L, evaluate("a / b", context));
+        assertEquals(1L, evaluate("a % b", context));
+        assertEquals(3.5, evaluate("a * c", context));
+        assertEquals(-5L, evaluate("-a + b", context));
+        assertEquals(21L, evaluate("(a + b * 2) + 10", context));
+        assertEquals("x7", evaluate("'x' + a", context));
+        assertNull(evaluate("a + missing", context));
+    }
+
+    @Test
+    public void testConditions() {
+        ExpressionContext context = context(record("TIMER", 20L, "name", "pump"), record("TIMER", 5L));
+
+        assertTrue(Expression.compile("TIMER > 10 && TIMER < 30").evaluateBoolean(context));
+        assertTrue(Expression.compile("records[1].TIMER <= 5 || false").evaluateBoolean(context));
+        assertTrue(Expression.compile("records[0]['name'] == 'pump'").evaluateBoolean(context));
+        assertTrue(Expression.compile("missing == null && !(missing > 1) && !(missing < 1)").evaluateBoolean(context));
+        assertFalse(Expression.compile("records[5].TIMER > 0").evaluateBoolean(context));
+        assertTrue(Expression.compile("TIMER === 20.0 ? true : false").evaluateBoolean(context));
+        assertEquals(2L, evaluate("recordCount()", context));
+        assertEquals("emitter", evaluate("emitterPid()", context));
+    }
+
+    @Test
+    public void testFunctions() {
+        ExpressionContext context = context(record("t", 21.6, "s", " 42 ", "flag", true));
+
+        assertEquals(22L, evaluate("round(t)", context));
+        assertEquals(21.0, evaluate("floor(t)", context));
+        assertEquals(3.0, evaluate("sqrt(9)", context));
+        assertEquals(42, evaluate("int(s)", context));
+        assertEquals(21.6f, evaluate("float(t)", context));
+        assertEquals(2L, evaluate("max(1, min(2, 3))", context));
+        assertEquals(true, evaluate("contains(upper(s), '4') && flag", context));
+        assertEquals(4L, evaluate("length(s)", context));
+        assertEquals("true", evaluate("string(flag)", context));
+    }
+
+    @Test
+    public void testProjection() {
+        ExpressionContext context = context(record("id", "a", "value", 10), record("id", "b", "value", 1));
+        Projection projection = Projection.compile("*\n" //
+                + "double = value * 2 // a comment\n" //
+                + "`half value` = value / 2.0; id = null\n" //
+                + "where value > 5");
+
+        WireRecord first = projection.apply(context);
+        Map<String, TypedValue<?>> properties = first.getProperties();
+        assertEquals(new IntegerValue(10), properties.get("value"));
+        assertEquals(TypedValues.newLongValue(20), properties.get("double"));
+        assertEquals(TypedValues.newDoubleValue(5), properties.get("half value"));
+        assertFalse(properties.containsKey("id"));
+
+        context.setCurrentRecord(1);
+        assertNull(projection.apply(context));
+    }
+
+    @Test
+    public void testConstantFolding() {
+        assertEquals(14L, evaluate("2 + 3 * 4", new ExpressionContext()));
+    }
+
+    @Test(expected = ExpressionException.class)
+    public void testSyntaxError() {
+        Expression.compile("a > ");
+    }
+
+    @Test(expected = ExpressionException.class)
+    public void testDivisionByZeroConstant() {
+        Expression.compile("1 / 0");
+    }
+
+    @Test(expected = ExpressionException.class)
+    public void testUnknownFunction() {
+        Expression.compile("foo(1)");
+    }
+
+    @Test(expected = ExpressionException.class)
+    public void testNonBooleanCondition() {
+        Expression.compile("name").evaluateBoolean(context(record("name", "pump")));
+    }
+
+    private static Object evaluate(String expression, ExpressionContext context) {
+        return Expression.compile(expression).evaluate(context);
+    }
+
+    private static ExpressionContext context(WireRecord... records) {
+        ExpressionContext context = new ExpressionContext();
+        context.setEnvelope("emitter", Arrays.asList(records));
+        return context;
+    }
+
+    private static WireRecord record(Object... nameValues) {
+        Map<String, TypedValue<?>> properties = new HashMap<>();
+        for (int i = 0; i < nameValues.length; i += 2) {
+            properties.put((String) nameValues[i], TypedValues.newTypedValue(nameValues[i + 1]));
+        }
+        return new WireRecord(properties);
+    }
+}
@@ -14,11 +14,14 @@ import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -36,6 +39,7 @@ import org.eclipse.kura.wire.WireEnvelope;
 import org.eclipse.kura.wire.WireHelperService;
 import org.eclipse.kura.wire.WireRecord;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Filter;
 import org.osgi.framework.InvalidSyntaxException;
@@ -250,4 +254,96 @@ public class CloudPublisherTest {
 
         verify(cloudPublisherMock, times(1)).publish((KuraMessage) anyObject());
     }
+
+    @Test
+    public void testOnWireReceiveBatched() throws NoSuchFieldException, KuraException {
+        CloudPublisher cp = new CloudPublisher();
+        cp.bindWireHelperService(mock(WireHelperService.class));
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("publish.position", "none");
+        properties.put("batch.max.records", 3);
+        properties.put("batch.max.age", 60000);
+        cp.activate(mock(ComponentContext.class), properties);
+
+        org.eclipse.kura.cloudconnection.publisher.CloudPublisher cloudPublisherMock = mock(
+                org.eclipse.kura.cloudconnection.publisher.CloudPublisher.class);
+        TestUtil.setFieldValue(cp, "cloudConnectionPublisher", cloudPublisherMock);
+
+        cp.onWireReceive(new WireEnvelope("emitter", Arrays.asList(record("a"), record("b"))));
+        verify(cloudPublisherMock, never()).publish((KuraMessage) anyObject());
+
+        cp.onWireReceive(new WireEnvelope("emitter", Arrays.asList(record("c"), record("d"))));
+
+        ArgumentCaptor<KuraMessage> captor = ArgumentCaptor.forClass(KuraMessage.class);
+        verify(cloudPublisherMock, times(1)).publish(captor.capture());
+        KuraPayload payload = captor.getValue().getPayload();
+        assertEquals(3, payload.getMetric("record.count"));
+        assertEquals("a", payload.getMetric("0.key"));
+        assertEquals("c", payload.getMetric("2.key"));
+        assertEquals(4, payload.metrics().size());
+
+        // the pending record is published on deactivation
+        cp.deactivate(mock(ComponentContext.class));
+        verify(cloudPublisherMock, times(2)).publish(captor.capture());
+        assertEquals(1, captor.getValue().getPayload().getMetric("record.count"));
+        assertEquals("d", captor.getValue().getPayload().getMetric("0.key"));
+    }
+
+    @Test
+    public void testBatchPublishedWhenOld() throws NoSuchFieldException, KuraException {
+        CloudPublisher cp = new CloudPublisher();
+        cp.bindWireHelperService(mock(WireHelperService.class));
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("publish.position", "none");
+        properties.put("batch.max.records", 100);
+        properties.put("batch.max.age", 100);
+        cp.activate(mock(ComponentContext.class), properties);
+
+        org.eclipse.kura.cloudconnection.publisher.CloudPublisher cloudPublisherMock = mock(
+                org.eclipse.kura.cloudconnection.publisher.CloudPublisher.class);
+        TestUtil.setFieldValue(cp, "cloudConnectionPublisher", cloudPublisherMock);
+
+        cp.onWireReceive(new WireEnvelope("emitter", Arrays.asList(record("a"))));
+
+        verify(cloudPublisherMock, timeout(5000).times(1)).publish((KuraMessage) anyObject());
+        cp.deactivate(mock(ComponentContext.class));
+    }
+
+    @Test
+    public void testBatchingDisabledOnUpdate() throws NoSuchFieldException, KuraException {
+        CloudPublisher cp = new CloudPublisher();
+        cp.bindWireHelperService(mock(WireHelperService.class));
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("publish.position", "none");
+        properties.put("batch.max.records", 100);
+        properties.put("batch.max.age", 60000);
+        cp.activate(mock(ComponentContext.class), properties);
+
+        org.eclipse.kura.cloudconnection.publisher.CloudPublisher cloudPublisherMock = mock(
+                org.eclipse.kura.cloudconnection.publisher.CloudPublisher.class);
+        TestUtil.setFieldValue(cp, "cloudConnectionPublisher", cloudPublisherMock);
+
+        cp.onWireReceive(new WireEnvelope("emitter", Arrays.asList(record("a"))));
+        verify(cloudPublisherMock, never()).publish((KuraMessage) anyObject());
+
+        // the pending record is published and the executor is shut down
+        properties.put("batch.max.records", 1);
+        cp.updated(properties);
+        verify(cloudPublisherMock, times(1)).publish((KuraMessage) anyObject());
+        assertNull(TestUtil.getFieldValue(cp, "batchExecutor"));
+
+        // the next records are published without batching
+        cp.onWireReceive(new WireEnvelope("emitter", Arrays.asList(record("b"))));
+        verify(cloudPublisherMock, times(2)).publish((KuraMessage) anyObject());
+        cp.deactivate(mock(ComponentContext.class));
+    }
+
+    private static WireRecord record(String value) {
+        Map<String, TypedValue<?>> recordProps = new HashMap<>();
+        recordProps.put("key", new StringValue(value));
+        return new WireRecord(recordProps);
+    }
 }
@@ -9,30 +9,45 @@
 package org.eclipse.kura.internal.wire.h2db.filter;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.kura.core.testutil.TestUtil;
 import org.eclipse.kura.db.H2DbService;
 import org.eclipse.kura.internal.wire.h2db.common.H2DbServiceHelper;
+import org.eclipse.kura.type.LongValue;
+import org.eclipse.kura.type.TypedValue;
 import org.eclipse.kura.wire.WireEnvelope;
 import org.eclipse.kura.wire.WireHelperService;
+import org.eclipse.kura.wire.WireRecord;
 import org.eclipse.kura.wire.WireSupport;
 import org.junit.Test;
+import org.mockito.ArgumentMatcher;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.wireadmin.Wire;
 
@@ -203,6 +218,243 @@ public class H2DbWireRecordFilterTest {
         verify(mockWireSupport).emit(any());
     }
 
+    @Test
+    public void testSqlViewParameters() {
+        H2DbSqlView view = new H2DbSqlView("SELECT * FROM \"WR_${x}\" WHERE ID > ${high.water.mark}"
+                + " AND VALUE > ${ threshold } AND NAME <> '${x}'");
+
+        assertEquals("SELECT * FROM \"WR_${x}\" WHERE ID > ? AND VALUE > ? AND NAME <> '${x}'", view.getSql());
+        assertTrue(view.hasHighWaterMark());
+
+        Map<String, TypedValue<?>> properties = new HashMap<>();
+        properties.put("threshold", new LongValue(10));
+        List<WireRecord> records = Collections.singletonList(new WireRecord(properties));
+
+        assertEquals(Arrays.asList(5L, 10L), view.getParameterValues(records, 5));
+        assertEquals(Arrays.asList(5L, null), view.getParameterValues(null, 5));
+    }
+
+    @Test
+    public void testIncrementalOnWireReceive() throws SQLException {
+        Connection mockConnection = mock(Connection.class);
+
+        H2DbService mockDbService = createMockH2DbService(mockConnection);
+
+        WireHelperService mockWireHelperService = mock(WireHelperService.class);
+
+        H2DbWireRecordFilter filter = new H2DbWireRecordFilter() {
+
+            @Override
+            protected void restartDbServiceTracker() {
+                bindDbService(mockDbService);
+            }
+        };
+        filter.bindWireHelperService(mockWireHelperService);
+
+        WireSupport mockWireSupport = mock(WireSupport.class);
+        when(mockWireHelperService.newWireSupport(filter, null)).thenReturn(mockWireSupport);
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("cache.expiration.interval", 0);
+        properties.put("sql.view", "SELECT * FROM T WHERE ID > ${high.water.mark}");
+        properties.put("query.mode", "incremental");
+        properties.put("emit.on.empty.result", false);
+
+        filter.activate(mock(ComponentContext.class), properties);
+
+        ResultSetMetaData mockResultSetMetaData = mock(ResultSetMetaData.class);
+        when(mockResultSetMetaData.getColumnCount()).thenReturn(1);
+        when(mockResultSetMetaData.getColumnLabel(1)).thenReturn("ID");
+        when(mockResultSetMetaData.getColumnType(1)).thenReturn(Types.BIGINT);
+
+        // the second read returns an already emitted row
+        ResultSet mockResultSet = mock(ResultSet.class);
+        when(mockResultSet.next()).thenReturn(true, true, false, true, true, false);
+        when(mockResultSet.getMetaData()).thenReturn(mockResultSetMetaData);
+        when(mockResultSet.getObject(1)).thenReturn(1L, 1L, 2L, 2L, 2L, 3L, 3L);
+
+        PreparedStatement mockStatement = mock(PreparedStatement.class);
+        when(mockStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockConnection.prepareStatement("SELECT * FROM T WHERE ID > ?")).thenReturn(mockStatement);
+
+        WireEnvelope mockWireEnvelope = mock(WireEnvelope.class);
+        filter.onWireReceive(mockWireEnvelope);
+        filter.onWireReceive(mockWireEnvelope);
+
+        verify(mockStatement).setObject(1, Long.MIN_VALUE);
+        verify(mockStatement).setObject(1, 2L);
+        verify(mockWireSupport).emit(argThat(hasSize(2)));
+        verify(mockWireSupport).emit(argThat(hasSize(1)));
+    }
+
+    private static ArgumentMatcher<List<WireRecord>> hasSize(int size) {
+        return new ArgumentMatcher<List<WireRecord>>() {
+
+            @Override
+            public boolean matches(Object argument) {
+                return ((List<?>) argument).size() == size;
+            }
+        };
+    }
+
+    @Test
+    public void testIncrementalHighWaterMarkKept() throws SQLException {
+        DriverManager.registerDriver(new org.h2.Driver());
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:filterdb", "SA", "")) {
+            connection.prepareStatement("DROP TABLE IF EXISTS T").execute();
+            connection.prepareStatement("DROP TABLE IF EXISTS \"WR_FILTER_HIGH_WATER_MARK\"").execute();
+            connection.prepareStatement("CREATE TABLE T (ID BIGINT, V INT)").execute();
+            connection.prepareStatement("INSERT INTO T VALUES (1, 10), (2, 20)").execute();
+
+            final AtomicBoolean inConnection = new AtomicBoolean();
+            final H2DbService dbService = mock(H2DbService.class);
+            when(dbService.withConnection(anyObject())).thenAnswer(invocation -> {
+                inConnection.set(true);
+                try {
+                    return invocation.getArgumentAt(0, H2DbService.ConnectionCallable.class).call(connection);
+                } finally {
+                    inConnection.set(false);
+                }
+            });
+
+            final Map<String, Object> properties = new HashMap<>();
+            properties.put("kura.service.pid", "filter");
+            properties.put("cache.expiration.interval", 0);
+            properties.put("sql.view", "SELECT * FROM T WHERE ID > ${high.water.mark} ORDER BY ID");
+            properties.put("query.mode", "incremental");
+            properties.put("emit.on.empty.result", false);
+            properties.put("chunk.size", 1);
+
+            final List<List<WireRecord>> emitted = new ArrayList<>();
+            H2DbWireRecordFilter filter = createFilter(dbService, properties, inConnection, emitted);
+            receive(filter);
+
+            assertEquals(2, emitted.size());
+            assertEquals(2L, emitted.get(1).get(0).getProperties().get("ID").getValue());
+
+            // a configuration update keeps the mark
+            filter.updated(properties);
+            receive(filter);
+
+            assertEquals(2, emitted.size());
+
+            // a new instance resumes from the stored mark
+            connection.prepareStatement("INSERT INTO T VALUES (3, 30)").execute();
+            filter = createFilter(dbService, properties, inConnection, emitted);
+            receive(filter);
+
+            assertEquals(3, emitted.size());
+            assertEquals(3L, emitted.get(2).get(0).getProperties().get("ID").getValue());
+
+            // the mark is discarded if the incremental column changes
+            properties.put("sql.view", "SELECT * FROM T WHERE V > ${high.water.mark} ORDER BY V");
+            properties.put("incremental.column", "V");
+            filter.updated(properties);
+            receive(filter);
+
+            assertEquals(6, emitted.size());
+        }
+    }
+
+    @Test
+    public void testIncrementalChunkedQueries() throws SQLException {
+        DriverManager.registerDriver(new org.h2.Driver());
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:chunkdb", "SA", "")) {
+            connection.prepareStatement("DROP TABLE IF EXISTS T").execute();
+            connection.prepareStatement("DROP TABLE IF EXISTS \"WR_FILTER_HIGH_WATER_MARK\"").execute();
+            connection.prepareStatement("CREATE TABLE T (ID BIGINT, V VARCHAR(10))").execute();
+            connection.prepareStatement("INSERT INTO T VALUES (1, 'a'), (2, 'b'), (3, 'c'), (4, 'd'), (5, 'e')")
+                    .execute();
+
+            final AtomicBoolean inConnection = new AtomicBoolean();
+            final H2DbService dbService = createMockH2DbService(connection);
+
+            final Map<String, Object> properties = new HashMap<>();
+            properties.put("kura.service.pid", "chunked");
+            properties.put("cache.expiration.interval", 0);
+            properties.put("sql.view", "SELECT * FROM T WHERE ID > ${high.water.mark} ORDER BY ID");
+            properties.put("query.mode", "incremental");
+            properties.put("emit.on.empty.result", true);
+            properties.put("chunk.size", 2);
+
+            // records the stored mark when each chunk is emitted
+            final List<Long> storedMarks = new ArrayList<>();
+            final List<List<WireRecord>> emitted = new ArrayList<List<WireRecord>>() {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public boolean add(final List<WireRecord> records) {
+                    storedMarks.add(readHighWaterMark(connection, "chunked"));
+                    return super.add(records);
+                }
+            };
+            final H2DbWireRecordFilter filter = createFilter(dbService, properties, inConnection, emitted);
+            receive(filter);
+
+            assertEquals(3, emitted.size());
+            assertEquals(2, emitted.get(0).size());
+            assertEquals(2, emitted.get(1).size());
+            assertEquals(1, emitted.get(2).size());
+            assertEquals(Arrays.asList(null, 2L, 4L), storedMarks);
+            assertEquals(Long.valueOf(5L), readHighWaterMark(connection, "chunked"));
+
+            // no empty envelope in incremental mode
+            receive(filter);
+
+            assertEquals(3, emitted.size());
+
+            // a column that is not an integer column is rejected
+            properties.put("incremental.column", "V");
+            filter.updated(properties);
+            receive(filter);
+
+            assertEquals(3, emitted.size());
+        }
+    }
+
+    private static Long readHighWaterMark(final Connection connection, final String pid) {
+        try (PreparedStatement stmt = connection
+                .prepareStatement("SELECT HIGH_WATER_MARK FROM \"WR_FILTER_HIGH_WATER_MARK\" WHERE PID = ?")) {
+            stmt.setString(1, pid);
+            try (ResultSet rset = stmt.executeQuery()) {
+                return rset.next() ? rset.getLong(1) : null;
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private H2DbWireRecordFilter createFilter(final H2DbService dbService, final Map<String, Object> properties,
+            final AtomicBoolean inConnection, final List<List<WireRecord>> emitted) {
+        final WireHelperService mockWireHelperService = mock(WireHelperService.class);
+
+        final H2DbWireRecordFilter filter = new H2DbWireRecordFilter() {
+
+            @Override
+            protected void restartDbServiceTracker() {
+                bindDbService(dbService);
+            }
+        };
+        filter.bindWireHelperService(mockWireHelperService);
+
+        final WireSupport mockWireSupport = mock(WireSupport.class);
+        when(mockWireHelperService.newWireSupport(filter, null)).thenReturn(mockWireSupport);
+        doAnswer(invocation -> {
+            // the records are emitted after the connection has been released
+            assertFalse(inConnection.get());
+            emitted.add(invocation.getArgumentAt(0, List.class));
+            return null;
+        }).when(mockWireSupport).emit(any());
+
+        filter.activate(mock(ComponentContext.class), properties);
+        return filter;
+    }
+
+    private static void receive(final H2DbWireRecordFilter filter) {
+        filter.onWireReceive(new WireEnvelope("emitter", Collections.<WireRecord> emptyList()));
+    }
+
     @Test
     public void testPolled() {
         H2DbService mockDbService = mock(H2DbService.class);
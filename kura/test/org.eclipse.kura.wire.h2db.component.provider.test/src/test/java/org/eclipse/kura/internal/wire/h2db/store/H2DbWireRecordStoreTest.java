@@ -435,4 +435,75 @@ public class H2DbWireRecordStoreTest {
         connection.prepareStatement("SHUTDOWN").execute();
     }
 
+    @Test
+    public void testRecountWhileTruncatePending() throws SQLException {
+        // the rows are counted again while a deletion is pending, the pending deletion must not be repeated
+        Connection connection = getConnection();
+
+        H2DbService dbServiceMock = mock(H2DbService.class);
+        when(dbServiceMock.withConnection(anyObject())).thenAnswer(invocation -> {
+            if (Thread.currentThread().getName().startsWith("H2DbWireRecordStore Truncate")) {
+                // delay the operations of the truncate executor
+                Thread.sleep(200);
+            }
+            return invocation.getArgumentAt(0, H2DbService.ConnectionCallable.class).call(connection);
+        });
+
+        H2DbWireRecordStore store = new H2DbWireRecordStore() {
+
+            @Override
+            protected void restartDbServiceTracker() {
+                bindDbService(dbServiceMock);
+            }
+        };
+
+        WireHelperService whsMock = mock(WireHelperService.class);
+        WireSupport wireSupportMock = mock(WireSupport.class);
+        when(whsMock.newWireSupport(store, null)).thenReturn(wireSupportMock);
+
+        store.bindWireHelperService(whsMock);
+
+        ComponentContext ctx = mock(ComponentContext.class);
+        Map<String, Object> props = new HashMap<String, Object>();
+        String tableName = "H2_STORE_RECOUNT_TEST";
+        props.put("table.name", tableName);
+        props.put("cleanup.records.keep", 3);
+        props.put("maximum.table.size", 5);
+
+        // init
+        store.activate(ctx, props);
+
+        String emitterPid = "emitter";
+        List<WireRecord> wireRecords = new ArrayList<WireRecord>();
+        Map<String, TypedValue<?>> recordProps = new HashMap<String, TypedValue<?>>();
+        recordProps.put("key", new StringValue("val"));
+        wireRecords.add(new WireRecord(recordProps));
+        WireEnvelope wireEvelope = new WireEnvelope(emitterPid, wireRecords);
+
+        // the sixth record schedules the deletion of the 2 oldest records
+        for (int i = 0; i < 6; i++) {
+            store.onWireReceive(wireEvelope);
+        }
+
+        // the update forces the rows to be counted again, while the deletion is still pending
+        store.updated(props);
+        store.onWireReceive(wireEvelope);
+
+        // wait for the executor to do its duty and DB operation to finish
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            // OK
+        }
+
+        ResultSet resultSet = connection.prepareStatement("SELECT count(*) FROM " + tableName).executeQuery();
+        resultSet.next();
+        int count = resultSet.getInt(1);
+        assertEquals("Unexpected number of records", 5, count);
+
+        // deinit
+        store.deactivate(null);
+        connection.prepareStatement("SHUTDOWN").execute();
+    }
+
 }
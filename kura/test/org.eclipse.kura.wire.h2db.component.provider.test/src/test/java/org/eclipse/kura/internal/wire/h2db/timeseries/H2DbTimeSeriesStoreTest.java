@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.h2db.timeseries;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.kura.KuraException;
+import org.eclipse.kura.db.H2DbService;
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.type.TypedValues;
+import org.eclipse.kura.wire.WireEnvelope;
+import org.eclipse.kura.wire.WireHelperService;
+import org.eclipse.kura.wire.WireRecord;
+import org.eclipse.kura.wire.WireSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.osgi.service.component.ComponentContext;
+
+public class H2DbTimeSeriesStoreTest {
+
+    private static final String TABLE_NAME = "TS_STORE_TEST";
+
+    private Connection connection;
+    private H2DbTimeSeriesStore store;
+    private ComponentContext ctx;
+    private final AtomicReference<Runnable> beforeConnection = new AtomicReference<>();
+
+    @BeforeClass
+    public static void setupClass() throws SQLException {
+        DriverManager.registerDriver(new org.h2.Driver());
+    }
+
+    @Before
+    public void setup() throws SQLException {
+        this.connection = DriverManager.getConnection("jdbc:h2:mem:tsdb", "SA", "");
+        this.connection.prepareStatement("DROP TABLE IF EXISTS " + TABLE_NAME).execute();
+
+        final H2DbService dbServiceMock = mock(H2DbService.class);
+        when(dbServiceMock.withConnection(anyObject())).thenAnswer(invocation -> {
+            final Runnable hook = this.beforeConnection.getAndSet(null);
+            if (hook != null) {
+                hook.run();
+            }
+            return invocation.getArgumentAt(0, H2DbService.ConnectionCallable.class).call(this.connection);
+        });
+
+        this.store = new H2DbTimeSeriesStore() {
+
+            @Override
+            protected void restartDbServiceTracker() {
+                bindDbService(dbServiceMock);
+            }
+        };
+
+        final WireHelperService whsMock = mock(WireHelperService.class);
+        when(whsMock.newWireSupport(this.store, null)).thenReturn(mock(WireSupport.class));
+        this.store.bindWireHelperService(whsMock);
+
+        final Map<String, Object> props = new HashMap<>();
+        props.put("table.name", TABLE_NAME);
+        // two samples per chunk, so that most of the samples are written to the database
+        props.put("chunk.max.samples", 2);
+
+        this.ctx = mock(ComponentContext.class);
+        this.store.activate(this.ctx, props);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        this.store.deactivate(this.ctx);
+        this.connection.close();
+    }
+
+    @Test
+    public void testRoundTrip() throws KuraException, SQLException {
+        final long base = System.currentTimeMillis();
+
+        for (int i = 0; i < 5; i++) {
+            final Map<String, TypedValue<?>> properties = new HashMap<>();
+            properties.put("assetName", TypedValues.newStringValue("asset1"));
+            properties.put("assetTimestamp", TypedValues.newLongValue(base + i * 1000));
+            properties.put("temperature", TypedValues.newDoubleValue(20.5 + i));
+            properties.put("on", TypedValues.newBooleanValue(i % 2 == 0));
+            receive("emitter", properties);
+        }
+        assertTrue(countChunks() > 0);
+
+        final List<WireRecord> records = this.store.query(base, base + 5000, null);
+
+        assertEquals(5, records.size());
+        for (int i = 0; i < 5; i++) {
+            final Map<String, TypedValue<?>> properties = records.get(i).getProperties();
+            assertEquals(4, properties.size());
+            assertEquals(base + i * 1000, properties.get(TimeSeriesStore.TIMESTAMP_PROPERTY).getValue());
+            assertEquals("asset1", properties.get(TimeSeriesStore.ASSET_NAME_PROPERTY).getValue());
+            assertEquals(20.5 + i, properties.get("temperature").getValue());
+            assertEquals(i % 2 == 0, properties.get("on").getValue());
+        }
+
+        // the range end is exclusive
+        assertEquals(2, this.store.query(base + 1000, base + 3000, null).size());
+        final List<WireRecord> filtered = this.store.query(base, base + 5000, Collections.singleton("on"));
+        assertEquals(5, filtered.size());
+        assertFalse(filtered.get(0).getProperties().containsKey("temperature"));
+    }
+
+    @Test
+    public void testRecordsWithSameTimestamp() throws KuraException {
+        final long timestamp = System.currentTimeMillis();
+
+        for (int i = 0; i < 3; i++) {
+            final Map<String, TypedValue<?>> properties = new HashMap<>();
+            properties.put("assetTimestamp", TypedValues.newLongValue(timestamp));
+            properties.put("counter", TypedValues.newIntegerValue(i));
+            properties.put("label", TypedValues.newStringValue("value" + i));
+            receive("emitter", properties);
+        }
+
+        final List<WireRecord> records = this.store.query(timestamp, timestamp + 1, null);
+
+        assertEquals(3, records.size());
+        for (int i = 0; i < 3; i++) {
+            final Map<String, TypedValue<?>> properties = records.get(i).getProperties();
+            assertEquals(i, properties.get("counter").getValue());
+            assertEquals("value" + i, properties.get("label").getValue());
+        }
+    }
+
+    @Test
+    public void testSeriesNamespacedByAsset() throws KuraException {
+        final long timestamp = System.currentTimeMillis();
+
+        for (final String emitter : new String[] { "asset1", "asset2" }) {
+            final Map<String, TypedValue<?>> properties = new HashMap<>();
+            properties.put("assetTimestamp", TypedValues.newLongValue(timestamp));
+            properties.put("value", TypedValues.newStringValue(emitter + " value"));
+            receive(emitter, properties);
+        }
+
+        final List<WireRecord> records = this.store.query(timestamp, timestamp + 1, null);
+
+        assertEquals(2, records.size());
+        for (final WireRecord record : records) {
+            final Map<String, TypedValue<?>> properties = record.getProperties();
+            assertEquals(properties.get(TimeSeriesStore.ASSET_NAME_PROPERTY).getValue() + " value",
+                    properties.get("value").getValue());
+        }
+    }
+
+    @Test
+    public void testChannelTimestamps() throws KuraException {
+        final long timestamp = System.currentTimeMillis();
+
+        final Map<String, TypedValue<?>> properties = new HashMap<>();
+        properties.put("assetName", TypedValues.newStringValue("asset1"));
+        properties.put("a", TypedValues.newLongValue(1));
+        properties.put("a_timestamp", TypedValues.newLongValue(timestamp));
+        properties.put("b", TypedValues.newLongValue(2));
+        properties.put("b_timestamp", TypedValues.newLongValue(timestamp + 10));
+        receive("emitter", properties);
+
+        final List<WireRecord> records = this.store.query(timestamp, timestamp + 20, null);
+
+        assertEquals(2, records.size());
+        assertEquals(1L, records.get(0).getProperties().get("a").getValue());
+        assertEquals(timestamp, records.get(0).getProperties().get(TimeSeriesStore.TIMESTAMP_PROPERTY).getValue());
+        assertEquals(3, records.get(0).getProperties().size());
+        assertEquals(2L, records.get(1).getProperties().get("b").getValue());
+        assertEquals(timestamp + 10,
+                records.get(1).getProperties().get(TimeSeriesStore.TIMESTAMP_PROPERTY).getValue());
+    }
+
+    @Test
+    public void testQueryWhileReceiving() throws KuraException, InterruptedException {
+        final long base = System.currentTimeMillis();
+
+        // the first chunk is written, the third sample is in memory
+        for (int i = 0; i < 3; i++) {
+            receiveSample(base + i * 1000, i);
+        }
+
+        // two more samples are received, and a chunk written, while the query reads the database
+        final Thread receiver = new Thread(() -> {
+            for (int i = 3; i < 5; i++) {
+                receiveSample(base + i * 1000, i);
+            }
+        });
+        final AtomicBoolean received = new AtomicBoolean();
+        this.beforeConnection.set(() -> {
+            receiver.start();
+            try {
+                receiver.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.set(!receiver.isAlive());
+        });
+
+        final List<WireRecord> records = this.store.query(base, base + 5000, null);
+
+        assertTrue(received.get());
+        // the query sees the samples received before it started, each of them once
+        assertEquals(3, records.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, records.get(i).getProperties().get("value").getValue());
+        }
+        assertEquals(5, this.store.query(base, base + 5000, null).size());
+    }
+
+    private void receiveSample(final long timestamp, final int value) {
+        final Map<String, TypedValue<?>> properties = new HashMap<>();
+        properties.put("assetTimestamp", TypedValues.newLongValue(timestamp));
+        properties.put("value", TypedValues.newIntegerValue(value));
+        receive("asset1", properties);
+    }
+
+    private void receive(final String emitterPid, final Map<String, TypedValue<?>> properties) {
+        this.store.onWireReceive(new WireEnvelope(emitterPid, Collections.singletonList(new WireRecord(properties))));
+    }
+
+    private int countChunks() throws SQLException {
+        try (ResultSet resultSet = this.connection.prepareStatement("SELECT count(*) FROM " + TABLE_NAME)
+                .executeQuery()) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+}
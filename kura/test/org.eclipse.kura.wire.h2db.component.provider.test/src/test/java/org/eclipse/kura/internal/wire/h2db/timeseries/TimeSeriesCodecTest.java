@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.h2db.timeseries;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.kura.type.ByteArrayValue;
+import org.eclipse.kura.type.DataType;
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.type.TypedValues;
+import org.junit.Test;
+
+public class TimeSeriesCodecTest {
+
+    @Test
+    public void testRoundTrip() {
+        Random random = new Random(1);
+        Object[][] samples = new Object[][] { //
+                { DataType.INTEGER, 1, -7, Integer.MAX_VALUE, Integer.MIN_VALUE, 0 },
+                { DataType.LONG, Long.MIN_VALUE, Long.MAX_VALUE, 0L, 100L, 200L, 300L },
+                { DataType.FLOAT, 1.5f, Float.NaN, -0.0f, Float.MAX_VALUE, 1.5f },
+                { DataType.DOUBLE, 21.5, 21.5, 21.625, Double.NEGATIVE_INFINITY, random.nextDouble(), 1e-300 },
+                { DataType.BOOLEAN, true, false, false, true },
+                { DataType.STRING, "OK", "OK", "caf\u00e9", "", "OK" },
+                { DataType.BYTE_ARRAY, new byte[0], new byte[200], new byte[200], new byte[] { -1 } } };
+
+        for (Object[] series : samples) {
+            DataType type = (DataType) series[0];
+            SeriesChunk chunk = new SeriesChunk("asset", "series", type, 0);
+            // irregular timestamps, including a clock going backwards
+            long[] timestamps = new long[] { 1000, 2000, 3000, 2500, 1L << 40, (1L << 40) + 1 };
+            for (int i = 1; i < series.length; i++) {
+                chunk.add(timestamps[i - 1], TypedValues.newTypedValue(series[i]));
+            }
+
+            List<TypedValue<?>> decoded = new ArrayList<>();
+            List<Long> decodedTimestamps = new ArrayList<>();
+            TimeSeriesCodec.decode(type, chunk.encode(), chunk.size(), Long.MIN_VALUE, Long.MAX_VALUE, (t, v) -> {
+                decodedTimestamps.add(t);
+                decoded.add(v);
+            });
+
+            assertEquals(series.length - 1, decoded.size());
+            for (int i = 1; i < series.length; i++) {
+                assertEquals((long) timestamps[i - 1], (long) decodedTimestamps.get(i - 1));
+                if (type == DataType.BYTE_ARRAY) {
+                    assertArrayEquals((byte[]) series[i], ((ByteArrayValue) decoded.get(i - 1)).getValue());
+                } else {
+                    assertEquals(series[i], decoded.get(i - 1).getValue());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCompression() {
+        SeriesChunk chunk = new SeriesChunk("asset", "temperature", DataType.DOUBLE, 0);
+        for (int i = 0; i < 1000; i++) {
+            chunk.add(1520000000000L + i * 1000L, TypedValues.newDoubleValue(20.0 + (i / 60) * 0.25));
+        }
+
+        byte[] encoded = chunk.encode();
+
+        // 16 bytes per sample uncompressed
+        assertTrue(encoded.length < 1000 * 16 / 40);
+    }
+
+    @Test
+    public void testTimeRange() {
+        SeriesChunk chunk = new SeriesChunk("asset", "counter", DataType.LONG, 0);
+        for (int i = 0; i < 10; i++) {
+            chunk.add(i * 10L, TypedValues.newLongValue(i));
+        }
+
+        List<Object> decoded = new ArrayList<>();
+        TimeSeriesCodec.decode(DataType.LONG, chunk.encode(), chunk.size(), 20, 50,
+                (t, v) -> decoded.add(v.getValue()));
+
+        assertEquals(3, decoded.size());
+        assertEquals(2L, decoded.get(0));
+        assertEquals(4L, decoded.get(2));
+    }
+}
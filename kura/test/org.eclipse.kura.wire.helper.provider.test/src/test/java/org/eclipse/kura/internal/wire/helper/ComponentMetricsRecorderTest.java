@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.helper;
+
+import static org.eclipse.kura.wire.graph.Constants.EMITTER_KURA_SERVICE_PID_PROP_NAME;
+import static org.eclipse.kura.wire.graph.Constants.RECEIVER_KURA_SERVICE_PID_PROP_NAME;
+import static org.eclipse.kura.wire.graph.Constants.WIRE_EMITTER_PORT_PROP_NAME;
+import static org.eclipse.kura.wire.graph.Constants.WIRE_RECEIVER_PORT_PROP_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.type.TypedValues;
+import org.eclipse.kura.wire.WireRecord;
+import org.eclipse.kura.wire.graph.WireComponentMetrics;
+import org.eclipse.kura.wire.graph.WireMetrics;
+import org.junit.Test;
+import org.osgi.service.wireadmin.Wire;
+
+public class ComponentMetricsRecorderTest {
+
+    @Test
+    public void testReceived() {
+        final ComponentMetricsRecorder recorder = new ComponentMetricsRecorder("component");
+
+        recorder.received(Arrays.asList(newRecord(), newRecord()), 1000);
+        recorder.received(Collections.singletonList(newRecord()), 3000);
+
+        final WireComponentMetrics metrics = recorder.getComponentMetrics();
+        assertEquals("component", metrics.getPid());
+        assertEquals(2, metrics.getReceivedEnvelopes());
+        assertEquals(3, metrics.getReceivedRecords());
+        // 1000 falls in the [960, 1023] bucket
+        assertEquals(1023, metrics.getLatency(0.5));
+        assertEquals(3000, metrics.getLatency(0.99));
+        assertEquals(3000, metrics.getMaxLatency());
+        assertEquals(0, metrics.getDroppedEnvelopes());
+        assertEquals(0, metrics.getQueueSize());
+    }
+
+    @Test
+    public void testEmittedSize() {
+        final ComponentMetricsRecorder recorder = new ComponentMetricsRecorder("component");
+
+        final Map<String, TypedValue<?>> properties = new HashMap<>();
+        properties.put("s", TypedValues.newStringValue("abc"));
+        properties.put("i", TypedValues.newIntegerValue(1));
+        properties.put("f", TypedValues.newFloatValue(1));
+        properties.put("l", TypedValues.newLongValue(1));
+        properties.put("d", TypedValues.newDoubleValue(1));
+        properties.put("b", TypedValues.newBooleanValue(true));
+        properties.put("a", TypedValues.newByteArrayValue(new byte[3]));
+
+        // the keys are one character long
+        assertEquals(7 + 3 + 4 + 4 + 8 + 8 + 1 + 3,
+                recorder.emitted(Collections.singletonList(new WireRecord(properties))));
+        assertEquals(2 * (3 + 4), recorder.emitted(Arrays.asList(newRecord(), newRecord())));
+
+        final WireComponentMetrics metrics = recorder.getComponentMetrics();
+        assertEquals(2, metrics.getEmittedEnvelopes());
+        assertEquals(3, metrics.getEmittedRecords());
+        assertEquals(52, metrics.getEmittedBytes());
+        assertEquals(0, metrics.getReceivedEnvelopes());
+        assertEquals(0, metrics.getLatency(0.5));
+    }
+
+    @Test
+    public void testWireMetrics() {
+        final ComponentMetricsRecorder recorder = new ComponentMetricsRecorder("component");
+        final Wire first = newWire("component", 0, "first", 0);
+        final Wire second = newWire("component", 1, "second", 2);
+
+        recorder.wiresConnected(new Wire[] { first, second });
+        recorder.wireUpdated(first, 2, 10);
+        recorder.wireUpdated(first, 1, 5);
+        recorder.wireUpdated(second, 3, 7);
+
+        List<WireMetrics> metrics = collectWireMetrics(recorder);
+        assertEquals(2, metrics.size());
+        final WireMetrics firstMetrics = find(metrics, "first");
+        assertEquals("component", firstMetrics.getEmitterPid());
+        assertEquals(0, firstMetrics.getEmitterPort());
+        assertEquals(0, firstMetrics.getReceiverPort());
+        assertEquals(2, firstMetrics.getEnvelopes());
+        assertEquals(3, firstMetrics.getRecords());
+        assertEquals(15, firstMetrics.getBytes());
+        final WireMetrics secondMetrics = find(metrics, "second");
+        assertEquals(1, secondMetrics.getEmitterPort());
+        assertEquals(2, secondMetrics.getReceiverPort());
+        assertEquals(1, secondMetrics.getEnvelopes());
+
+        // the counters of the wires that are still connected are kept
+        recorder.wiresConnected(new Wire[] { second });
+        recorder.wireUpdated(first, 1, 1);
+
+        metrics = collectWireMetrics(recorder);
+        assertEquals(1, metrics.size());
+        assertEquals(1, find(metrics, "second").getEnvelopes());
+
+        recorder.wiresConnected(null);
+
+        assertEquals(0, collectWireMetrics(recorder).size());
+    }
+
+    private static WireRecord newRecord() {
+        return new WireRecord(Collections.singletonMap("key", TypedValues.newIntegerValue(0)));
+    }
+
+    private static Wire newWire(final String emitterPid, final int emitterPort, final String receiverPid,
+            final int receiverPort) {
+        final Hashtable<String, Object> properties = new Hashtable<>();
+        properties.put(EMITTER_KURA_SERVICE_PID_PROP_NAME.value(), emitterPid);
+        properties.put(WIRE_EMITTER_PORT_PROP_NAME.value(), emitterPort);
+        properties.put(RECEIVER_KURA_SERVICE_PID_PROP_NAME.value(), receiverPid);
+        properties.put(WIRE_RECEIVER_PORT_PROP_NAME.value(), receiverPort);
+
+        final Wire wire = mock(Wire.class);
+        when(wire.getProperties()).thenReturn(properties);
+        return wire;
+    }
+
+    private static List<WireMetrics> collectWireMetrics(final ComponentMetricsRecorder recorder) {
+        final List<WireMetrics> result = new ArrayList<>();
+        recorder.collectWireMetrics(result);
+        return result;
+    }
+
+    private static WireMetrics find(final List<WireMetrics> metrics, final String receiverPid) {
+        for (final WireMetrics wireMetrics : metrics) {
+            if (receiverPid.equals(wireMetrics.getReceiverPid())) {
+                return wireMetrics;
+            }
+        }
+        throw new AssertionError("no metrics for " + receiverPid);
+    }
+}
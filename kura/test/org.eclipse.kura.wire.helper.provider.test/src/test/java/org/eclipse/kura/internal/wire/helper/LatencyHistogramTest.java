@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testSmallValuesAreExact() {
+        for (int value = 0; value < 8; value++) {
+            assertEquals(value, LatencyHistogram.indexOf(value));
+            assertEquals(value, LatencyHistogram.highestValueAt(value));
+        }
+    }
+
+    @Test
+    public void testBucketBoundaries() {
+        // between 8 and 15 each bucket holds a single value
+        assertEquals(8, LatencyHistogram.indexOf(8));
+        assertEquals(15, LatencyHistogram.indexOf(15));
+        // between 16 and 31 each bucket holds two values
+        assertEquals(16, LatencyHistogram.indexOf(16));
+        assertEquals(16, LatencyHistogram.indexOf(17));
+        assertEquals(17, LatencyHistogram.indexOf(18));
+        assertEquals(23, LatencyHistogram.indexOf(31));
+        assertEquals(24, LatencyHistogram.indexOf(32));
+        assertEquals(17, LatencyHistogram.highestValueAt(16));
+        assertEquals(31, LatencyHistogram.highestValueAt(23));
+        assertEquals(35, LatencyHistogram.highestValueAt(24));
+
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueAt(LatencyHistogram.indexOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testBucketsAreContiguous() {
+        final int last = LatencyHistogram.indexOf(Long.MAX_VALUE);
+        for (int i = 1; i <= last; i++) {
+            final long lowest = LatencyHistogram.highestValueAt(i - 1) + 1;
+            assertEquals(i, LatencyHistogram.indexOf(lowest));
+            assertEquals(i, LatencyHistogram.indexOf(LatencyHistogram.highestValueAt(i)));
+        }
+    }
+
+    @Test
+    public void testRelativeError() {
+        final Random random = new Random(0);
+        for (int i = 0; i < 10000; i++) {
+            final long value = random.nextLong() >>> 1 + random.nextInt(63);
+            final long highest = LatencyHistogram.highestValueAt(LatencyHistogram.indexOf(value));
+            assertTrue(highest >= value);
+            assertTrue(highest - value <= value / 8);
+        }
+    }
+
+    @Test
+    public void testQuantiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(100, snapshot.getCount());
+        assertEquals(100, snapshot.getMax());
+        assertEquals(1, snapshot.getValueAtQuantile(0));
+        // 50 falls in the [48, 51] bucket
+        assertEquals(51, snapshot.getValueAtQuantile(0.5));
+        assertEquals(95, snapshot.getValueAtQuantile(0.9));
+        // the highest bucket is capped by the maximum
+        assertEquals(100, snapshot.getValueAtQuantile(0.99));
+        assertEquals(100, snapshot.getValueAtQuantile(1));
+    }
+
+    @Test
+    public void testEmpty() {
+        final LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getValueAtQuantile(0.99));
+    }
+
+    @Test
+    public void testNegativeValue() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(1, snapshot.getCount());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getValueAtQuantile(1));
+    }
+}
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.eclipse.kura.internal.wire.helper.WireDispatcher.OverflowPolicy;
+import org.junit.Test;
+
+public class WireDispatcherTest {
+
+    // collects the drain tasks, which are run by the test
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Executor executor = this.tasks::add;
+    private final List<Integer> delivered = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void testDeliveriesRunInOrder() {
+        final WireDispatcher dispatcher = new WireDispatcher("component", this.executor, 10, OverflowPolicy.BLOCK);
+
+        dispatch(dispatcher, 1, 2, 3);
+
+        // a single drain runs all the queued deliveries
+        assertEquals(1, this.tasks.size());
+        assertEquals(3, dispatcher.getQueueSize());
+        assertTrue(this.delivered.isEmpty());
+
+        runTasks();
+
+        assertEquals(Arrays.asList(1, 2, 3), this.delivered);
+        assertEquals(0, dispatcher.getQueueSize());
+
+        // a new drain starts once the queue has been emptied
+        dispatch(dispatcher, 4);
+        assertEquals(1, this.tasks.size());
+        runTasks();
+
+        assertEquals(Arrays.asList(1, 2, 3, 4), this.delivered);
+        assertEquals(0, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void testDropNewest() {
+        final WireDispatcher dispatcher = new WireDispatcher("component", this.executor, 2,
+                OverflowPolicy.DROP_NEWEST);
+
+        dispatch(dispatcher, 1, 2, 3, 4);
+
+        assertEquals(2, dispatcher.getQueueSize());
+        assertEquals(2, dispatcher.getDroppedCount());
+
+        runTasks();
+
+        assertEquals(Arrays.asList(1, 2), this.delivered);
+    }
+
+    @Test
+    public void testDropOldest() {
+        final WireDispatcher dispatcher = new WireDispatcher("component", this.executor, 2,
+                OverflowPolicy.DROP_OLDEST);
+
+        dispatch(dispatcher, 1, 2, 3, 4);
+
+        assertEquals(2, dispatcher.getQueueSize());
+        assertEquals(2, dispatcher.getDroppedCount());
+
+        runTasks();
+
+        assertEquals(Arrays.asList(3, 4), this.delivered);
+    }
+
+    @Test
+    public void testBlock() throws InterruptedException {
+        final WireDispatcher dispatcher = new WireDispatcher("component", this.executor, 1, OverflowPolicy.BLOCK);
+        dispatch(dispatcher, 1);
+
+        final Thread emitter = new Thread(() -> dispatch(dispatcher, 2));
+        emitter.start();
+        emitter.join(200);
+
+        // the emitter waits for the queue to be drained
+        assertTrue(emitter.isAlive());
+        assertEquals(1, dispatcher.getQueueSize());
+
+        runTasks();
+        emitter.join(1000);
+        assertFalse(emitter.isAlive());
+        runTasks();
+
+        assertEquals(Arrays.asList(1, 2), this.delivered);
+        assertEquals(0, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void testBlockInterrupted() throws InterruptedException {
+        final WireDispatcher dispatcher = new WireDispatcher("component", this.executor, 1, OverflowPolicy.BLOCK);
+        dispatch(dispatcher, 1);
+
+        final Thread emitter = new Thread(() -> dispatch(dispatcher, 2));
+        emitter.start();
+        emitter.join(200);
+        emitter.interrupt();
+        emitter.join(1000);
+
+        assertFalse(emitter.isAlive());
+        assertEquals(1, dispatcher.getDroppedCount());
+
+        runTasks();
+
+        assertEquals(Collections.singletonList(1), this.delivered);
+    }
+
+    @Test
+    public void testFailedDelivery() {
+        final WireDispatcher dispatcher = new WireDispatcher("component", this.executor, 10, OverflowPolicy.BLOCK);
+
+        dispatcher.dispatch(() -> {
+            throw new IllegalStateException("test");
+        });
+        dispatch(dispatcher, 1);
+        runTasks();
+
+        assertEquals(Collections.singletonList(1), this.delivered);
+    }
+
+    @Test
+    public void testClear() {
+        final WireDispatcher dispatcher = new WireDispatcher("component", this.executor, 10, OverflowPolicy.BLOCK);
+
+        dispatch(dispatcher, 1, 2);
+        dispatcher.clear();
+
+        assertEquals(0, dispatcher.getQueueSize());
+
+        runTasks();
+        dispatch(dispatcher, 3);
+        runTasks();
+
+        assertEquals(Collections.singletonList(3), this.delivered);
+    }
+
+    @Test
+    public void testExecutorShutDown() {
+        final WireDispatcher dispatcher = new WireDispatcher("component", task -> {
+            throw new RejectedExecutionException();
+        }, 10, OverflowPolicy.BLOCK);
+
+        dispatch(dispatcher, 1);
+        dispatch(dispatcher, 2);
+
+        // the deliveries are discarded instead of piling up
+        assertEquals(0, dispatcher.getQueueSize());
+        assertTrue(this.delivered.isEmpty());
+    }
+
+    @Test
+    public void testPolicyFromValue() {
+        assertEquals(OverflowPolicy.BLOCK, OverflowPolicy.fromValue("block"));
+        assertEquals(OverflowPolicy.DROP_OLDEST, OverflowPolicy.fromValue("drop.oldest"));
+        assertEquals(OverflowPolicy.DROP_NEWEST, OverflowPolicy.fromValue("drop.newest"));
+        assertEquals(OverflowPolicy.BLOCK, OverflowPolicy.fromValue(null));
+        assertEquals(OverflowPolicy.BLOCK, OverflowPolicy.fromValue("drop"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new WireDispatcher("component", this.executor, 0, OverflowPolicy.BLOCK);
+    }
+
+    private void dispatch(final WireDispatcher dispatcher, final int... values) {
+        for (final int value : values) {
+            dispatcher.dispatch(() -> this.delivered.add(value));
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = this.tasks.poll()) != null) {
+            task.run();
+        }
+    }
+}
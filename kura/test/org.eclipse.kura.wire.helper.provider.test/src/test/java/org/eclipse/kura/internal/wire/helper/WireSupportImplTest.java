@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.helper;
+
+import static org.eclipse.kura.wire.graph.Constants.WIRE_EMITTER_PORT_PROP_NAME;
+import static org.eclipse.kura.wire.graph.Constants.WIRE_RECEIVER_PORT_PROP_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kura.type.TypedValues;
+import org.eclipse.kura.wire.WireEnvelope;
+import org.eclipse.kura.wire.WireReceiver;
+import org.eclipse.kura.wire.WireRecord;
+import org.eclipse.kura.wire.graph.WireComponentMetrics;
+import org.junit.Test;
+import org.osgi.service.wireadmin.Wire;
+
+public class WireSupportImplTest {
+
+    private static final long UPSTREAM_DELAY = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final long DOWNSTREAM_DELAY = TimeUnit.MILLISECONDS.toNanos(200);
+
+    @Test
+    public void testLatencyExcludesDownstreamProcessing() {
+        final ComponentMetricsRecorder upstreamMetrics = new ComponentMetricsRecorder("upstream");
+        final ComponentMetricsRecorder downstreamMetrics = new ComponentMetricsRecorder("downstream");
+
+        final WireReceiver downstream = mock(WireReceiver.class);
+        doAnswer(invocation -> {
+            sleep(DOWNSTREAM_DELAY);
+            return null;
+        }).when(downstream).onWireReceive(anyObject());
+        final WireSupportImpl downstreamSupport = new WireSupportImpl(downstream, "downstream", "downstream", 1, 0,
+                null, downstreamMetrics);
+
+        final WireReceiver upstream = mock(WireReceiver.class);
+        final WireSupportImpl upstreamSupport = new WireSupportImpl(upstream, "upstream", "upstream", 1, 1, null,
+                upstreamMetrics);
+        doAnswer(invocation -> {
+            sleep(UPSTREAM_DELAY);
+            upstreamSupport.emit(invocation.getArgumentAt(0, WireEnvelope.class).getRecords());
+            sleep(UPSTREAM_DELAY);
+            return null;
+        }).when(upstream).onWireReceive(anyObject());
+
+        // the wire delivers the envelopes synchronously, as Wire Admin does
+        final Wire wire = newWire();
+        doAnswer(invocation -> {
+            downstreamSupport.updated(wire, invocation.getArgumentAt(0, Object.class));
+            return null;
+        }).when(wire).update(anyObject());
+        upstreamSupport.consumersConnected(new Wire[] { wire });
+        downstreamSupport.producersConnected(new Wire[] { wire });
+
+        upstreamSupport.updated(newWire(), new WireEnvelope("source", newRecords()));
+
+        final WireComponentMetrics upstreamComponentMetrics = upstreamMetrics.getComponentMetrics();
+        assertEquals(1, upstreamComponentMetrics.getReceivedEnvelopes());
+        assertEquals(1, upstreamComponentMetrics.getEmittedEnvelopes());
+        assertTrue(upstreamComponentMetrics.getMaxLatency() >= 2 * UPSTREAM_DELAY);
+        assertTrue(upstreamComponentMetrics.getMaxLatency() < DOWNSTREAM_DELAY);
+
+        final WireComponentMetrics downstreamComponentMetrics = downstreamMetrics.getComponentMetrics();
+        assertEquals(1, downstreamComponentMetrics.getReceivedEnvelopes());
+        assertTrue(downstreamComponentMetrics.getMaxLatency() >= DOWNSTREAM_DELAY);
+    }
+
+    @Test
+    public void testLatencyWithoutDownstream() {
+        final ComponentMetricsRecorder metrics = new ComponentMetricsRecorder("component");
+        final WireReceiver component = mock(WireReceiver.class);
+        doAnswer(invocation -> {
+            sleep(UPSTREAM_DELAY);
+            return null;
+        }).when(component).onWireReceive(anyObject());
+        final WireSupportImpl wireSupport = new WireSupportImpl(component, "component", "component", 1, 0, null,
+                metrics);
+
+        wireSupport.updated(newWire(), new WireEnvelope("source", newRecords()));
+        wireSupport.updated(newWire(), new WireEnvelope("source", newRecords()));
+
+        final WireComponentMetrics componentMetrics = metrics.getComponentMetrics();
+        assertEquals(2, componentMetrics.getReceivedEnvelopes());
+        assertTrue(componentMetrics.getLatency(0) >= UPSTREAM_DELAY);
+    }
+
+    private static List<WireRecord> newRecords() {
+        return Collections
+                .singletonList(new WireRecord(Collections.singletonMap("key", TypedValues.newIntegerValue(0))));
+    }
+
+    private static Wire newWire() {
+        final Hashtable<String, Object> properties = new Hashtable<>();
+        properties.put(WIRE_EMITTER_PORT_PROP_NAME.value(), 0);
+        properties.put(WIRE_RECEIVER_PORT_PROP_NAME.value(), 0);
+
+        final Wire wire = mock(Wire.class);
+        when(wire.getProperties()).thenReturn(properties);
+        return wire;
+    }
+
+    private static void sleep(final long nanos) throws InterruptedException {
+        TimeUnit.NANOSECONDS.sleep(nanos);
+    }
+}
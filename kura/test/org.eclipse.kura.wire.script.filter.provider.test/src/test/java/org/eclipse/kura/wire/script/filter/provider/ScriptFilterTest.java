@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.eclipse.kura.core.testutil.TestUtil;
+import org.eclipse.kura.type.IntegerValue;
 import org.eclipse.kura.type.StringValue;
 import org.eclipse.kura.type.TypedValue;
 import org.eclipse.kura.wire.WireEnvelope;
@@ -100,6 +101,57 @@ public class ScriptFilterTest {
         svc.deactivate();
     }
 
+    @Test
+    public void testExpressionEngine() throws NoSuchFieldException {
+        // test that the expression engine projects the records satisfying the where condition
+
+        ScriptFilter svc = new ScriptFilter();
+
+        WireHelperService whsMock = mock(WireHelperService.class);
+        svc.bindWireHelperService(whsMock);
+
+        WireSupport wsMock = mock(WireSupport.class);
+        when(whsMock.newWireSupport(svc, null)).thenReturn(wsMock);
+
+        doAnswer(invocation -> {
+            List<WireRecord> records = invocation.getArgumentAt(0, List.class);
+
+            assertEquals(1, records.size());
+
+            Map<String, TypedValue<?>> props = records.get(0).getProperties();
+            assertEquals("pump", props.get("name").getValue());
+            assertEquals(20L, props.get("doubled").getValue());
+            assertEquals("PUMP", props.get("label").getValue());
+
+            return null;
+        }).when(wsMock).emit(anyObject());
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("script.engine", "expression");
+        properties.put("script", "*\n doubled = value * 2\n label = upper(name)\n where value > 5");
+        svc.activate(mock(ComponentContext.class), properties);
+
+        assertNull(TestUtil.getFieldValue(svc, "scriptEngine"));
+        assertNotNull(TestUtil.getFieldValue(svc, "projection"));
+
+        List<WireRecord> wireRecords = new ArrayList<>();
+        Map<String, TypedValue<?>> recordProps = new HashMap<>();
+        recordProps.put("name", new StringValue("pump"));
+        recordProps.put("value", new IntegerValue(10));
+        wireRecords.add(new WireRecord(recordProps));
+
+        recordProps = new HashMap<>();
+        recordProps.put("name", new StringValue("valve"));
+        recordProps.put("value", new IntegerValue(1));
+        wireRecords.add(new WireRecord(recordProps));
+
+        svc.onWireReceive(new WireEnvelope("emitter", wireRecords));
+
+        verify(wsMock, times(1)).emit(anyObject());
+
+        svc.deactivate();
+    }
+
     @Test
     public void testNoScript() throws NoSuchFieldException {
         // test scenario where no script is provided